@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.MobilityType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javafx.scene.paint.Color;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Synthetic data generators for the benchmarks. All generators are seeded to produce the same data
+ * in every run, so results of different releases can be compared.
+ */
+public class BenchmarkData {
+
+  public static final long SEED = 42L;
+  public static final double MIN_MZ = 100d;
+  public static final double MAX_MZ = 1200d;
+
+  /**
+   * A profile spectrum with gaussian shaped m/z peaks on top of low noise
+   *
+   * @param peaks         number of m/z peaks
+   * @param pointsPerPeak data points per m/z peak
+   * @return [mzs, intensities] sorted by m/z
+   */
+  public static double[][] profileSpectrum(Random random, int peaks, int pointsPerPeak) {
+    final double[] centers = sortedUniform(random, peaks, MIN_MZ, MAX_MZ);
+    final int n = peaks * pointsPerPeak;
+    final double[] mzs = new double[n];
+    final double[] intensities = new double[n];
+    final double sigma = 0.005;
+    final double step = 8 * sigma / pointsPerPeak;
+    for (int p = 0; p < peaks; p++) {
+      final double height = logUniformIntensity(random);
+      final double start = centers[p] - 4 * sigma;
+      for (int i = 0; i < pointsPerPeak; i++) {
+        final int index = p * pointsPerPeak + i;
+        final double mz = start + i * step;
+        final double d = (mz - centers[p]) / sigma;
+        mzs[index] = mz;
+        intensities[index] = height * Math.exp(-0.5 * d * d) + random.nextDouble() * 50d;
+      }
+    }
+    // neighboring peaks may overlap
+    return sortByMz(mzs, intensities, n);
+  }
+
+  /**
+   * @param n number of centroid signals
+   * @return [mzs, intensities] sorted by m/z
+   */
+  public static double[][] centroidSpectrum(Random random, int n) {
+    final double[] mzs = sortedUniform(random, n, MIN_MZ, MAX_MZ);
+    final double[] intensities = new double[n];
+    for (int i = 0; i < n; i++) {
+      intensities[i] = logUniformIntensity(random);
+    }
+    return new double[][]{mzs, intensities};
+  }
+
+  /**
+   * @return centroid spectrum as data points sorted by m/z
+   */
+  public static DataPoint[] centroidDataPoints(Random random, int n) {
+    final double[][] data = centroidSpectrum(random, n);
+    final DataPoint[] dps = new DataPoint[n];
+    for (int i = 0; i < n; i++) {
+      dps[i] = new SimpleDataPoint(data[0][i], data[1][i]);
+    }
+    return dps;
+  }
+
+  /**
+   * A chromatogram with gaussian shaped peaks and noise. Used as input for resolvers
+   *
+   * @param scans number of data points (scans)
+   * @param peaks number of chromatographic peaks
+   * @return [retention times, intensities]
+   */
+  public static double[][] chromatogram(Random random, int scans, int peaks) {
+    final double[] rts = new double[scans];
+    final double[] intensities = new double[scans];
+    final double scanTime = 0.01; // minutes
+    for (int i = 0; i < scans; i++) {
+      rts[i] = i * scanTime;
+      intensities[i] = random.nextDouble() * 200d;
+    }
+    for (int p = 0; p < peaks; p++) {
+      final double center = random.nextDouble() * rts[scans - 1];
+      final double sigma = scanTime * (2 + random.nextDouble() * 6);
+      final double height = logUniformIntensity(random);
+      for (int i = 0; i < scans; i++) {
+        final double d = (rts[i] - center) / sigma;
+        if (Math.abs(d) < 5) {
+          intensities[i] += height * Math.exp(-0.5 * d * d);
+        }
+      }
+    }
+    return new double[][]{rts, intensities};
+  }
+
+  /**
+   * An LC-MS data file with centroided MS1 scans and mass lists. Compounds elute as gaussian peaks
+   * and each scan contains additional random noise signals.
+   *
+   * @param scans        number of MS1 scans
+   * @param compounds    number of eluting compounds
+   * @param noiseSignals random signals per scan
+   * @param storage      storage for scans and mass lists, null to keep in memory
+   */
+  public static RawDataFile lcmsDataFile(Random random, int scans, int compounds,
+      int noiseSignals, @Nullable MemoryMapStorage storage) throws IOException {
+    final RawDataFile raw = new RawDataFileImpl("synthetic_lcms", null, storage, Color.BLACK);
+    final double[] compoundMz = sortedUniform(random, compounds, MIN_MZ, MAX_MZ);
+    final double[] compoundRt = new double[compounds];
+    final double[] compoundSigma = new double[compounds];
+    final double[] compoundHeight = new double[compounds];
+    final double scanTime = 0.01;
+    for (int c = 0; c < compounds; c++) {
+      compoundRt[c] = random.nextDouble() * scans * scanTime;
+      compoundSigma[c] = scanTime * (2 + random.nextDouble() * 6);
+      compoundHeight[c] = logUniformIntensity(random);
+    }
+
+    final double[] mzBuffer = new double[compounds + noiseSignals];
+    final double[] intensityBuffer = new double[compounds + noiseSignals];
+    for (int s = 0; s < scans; s++) {
+      final double rt = s * scanTime;
+      int n = 0;
+      for (int c = 0; c < compounds; c++) {
+        final double d = (rt - compoundRt[c]) / compoundSigma[c];
+        if (Math.abs(d) < 5) {
+          // small m/z jitter between scans
+          mzBuffer[n] = compoundMz[c] + (random.nextDouble() - 0.5) * 0.001;
+          intensityBuffer[n] = compoundHeight[c] * Math.exp(-0.5 * d * d);
+          n++;
+        }
+      }
+      for (int i = 0; i < noiseSignals; i++) {
+        mzBuffer[n] = MIN_MZ + random.nextDouble() * (MAX_MZ - MIN_MZ);
+        intensityBuffer[n] = random.nextDouble() * 500d;
+        n++;
+      }
+      final double[][] sorted = sortByMz(mzBuffer, intensityBuffer, n);
+
+      final SimpleScan scan = new SimpleScan(raw, s, 1, (float) rt, null, sorted[0], sorted[1],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(MIN_MZ, MAX_MZ));
+      scan.addMassList(new SimpleMassList(storage, sorted[0], sorted[1]));
+      raw.addScan(scan);
+    }
+    return raw;
+  }
+
+  /**
+   * A single profile scan to be used as input for mass detectors
+   */
+  public static SimpleScan profileScan(Random random, int peaks, int pointsPerPeak) {
+    final RawDataFile raw = new RawDataFileImpl("synthetic_profile", null, null, Color.BLACK);
+    final double[][] data = profileSpectrum(random, peaks, pointsPerPeak);
+    return new SimpleScan(raw, 0, 1, 0f, null, data[0], data[1], MassSpectrumType.PROFILE,
+        PolarityType.POSITIVE, "", Range.closed(MIN_MZ, MAX_MZ));
+  }
+
+  /**
+   * A single centroid scan to be used as input for mass detectors
+   */
+  public static SimpleScan centroidScan(Random random, int signals) {
+    final RawDataFile raw = new RawDataFileImpl("synthetic_centroid", null, null, Color.BLACK);
+    final double[][] data = centroidSpectrum(random, signals);
+    return new SimpleScan(raw, 0, 1, 0f, null, data[0], data[1], MassSpectrumType.CENTROIDED,
+        PolarityType.POSITIVE, "", Range.closed(MIN_MZ, MAX_MZ));
+  }
+
+  /**
+   * Feature list rows with random m/z, retention time and mobility
+   */
+  public static List<FeatureListRow> featureListRows(Random random, int n) {
+    final RawDataFile raw = new RawDataFileImpl("synthetic_rows", null, null, Color.BLACK);
+    final ModularFeatureList flist = new ModularFeatureList("synthetic", null, raw);
+    final List<FeatureListRow> rows = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      final ModularFeature f = new ModularFeature(flist);
+      f.set(RawFileType.class, raw);
+      f.set(MZType.class, MIN_MZ + random.nextDouble() * (MAX_MZ - MIN_MZ));
+      f.set(RTType.class, random.nextFloat() * 30f);
+      f.set(MobilityType.class, 0.5f + random.nextFloat());
+      f.set(DetectionType.class, FeatureStatus.DETECTED);
+      rows.add(new ModularFeatureListRow(flist, i + 1, f));
+    }
+    return rows;
+  }
+
+  @NotNull
+  private static double[][] sortByMz(double[] mzs, double[] intensities, int n) {
+    final Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Double.compare(mzs[a], mzs[b]));
+    final double[] sortedMzs = new double[n];
+    final double[] sortedIntensities = new double[n];
+    for (int i = 0; i < n; i++) {
+      sortedMzs[i] = mzs[order[i]];
+      sortedIntensities[i] = intensities[order[i]];
+    }
+    return new double[][]{sortedMzs, sortedIntensities};
+  }
+
+  private static double[] sortedUniform(Random random, int n, double min, double max) {
+    final double[] values = new double[n];
+    for (int i = 0; i < n; i++) {
+      values[i] = min + random.nextDouble() * (max - min);
+    }
+    Arrays.sort(values);
+    return values;
+  }
+
+  /**
+   * @return intensity between 1E3 and 1E7
+   */
+  private static double logUniformIntensity(Random random) {
+    return Math.pow(10, 3 + random.nextDouble() * 4);
+  }
+}
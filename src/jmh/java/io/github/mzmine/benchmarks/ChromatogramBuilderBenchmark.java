@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogramBuilderParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The ADAP chromatogram builder on a synthetic LC-MS file with mass lists. Each invocation runs a
+ * full task into a new project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChromatogramBuilderBenchmark {
+
+  @Param({"1000"})
+  public int scans;
+
+  @Param({"500", "5000"})
+  public int compounds;
+
+  private RawDataFile file;
+  private ParameterSet parameters;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    file = BenchmarkData.lcmsDataFile(new Random(BenchmarkData.SEED), scans, compounds, 200,
+        null);
+
+    parameters = new ADAPChromatogramBuilderParameters().cloneParameterSet();
+    parameters.setParameter(ADAPChromatogramBuilderParameters.scanSelection, new ScanSelection(1));
+    parameters.setParameter(ADAPChromatogramBuilderParameters.minimumConsecutiveScans, 4);
+    parameters.setParameter(ADAPChromatogramBuilderParameters.minGroupIntensity, 1E3);
+    parameters.setParameter(ADAPChromatogramBuilderParameters.minHighestPoint, 5E3);
+    parameters.setParameter(ADAPChromatogramBuilderParameters.mzTolerance,
+        new MZTolerance(0.002, 10));
+    parameters.setParameter(ADAPChromatogramBuilderParameters.suffix, "chromatograms");
+  }
+
+  @Benchmark
+  public MZmineProjectImpl buildChromatograms() {
+    final MZmineProjectImpl project = new MZmineProjectImpl();
+    final var task = ModularADAPChromatogramBuilderTask.forChromatography(project, file,
+        parameters, null, Instant.now(), ModularADAPChromatogramBuilderModule.class);
+    task.run();
+    if (task.getStatus() != TaskStatus.FINISHED) {
+      throw new IllegalStateException("Chromatogram builder did not finish: " + task.getStatus());
+    }
+    return project;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import static io.github.mzmine.util.FeatureListRowSorter.MZ_ASCENDING;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.util.FeatureListUtils;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Range searches with {@link FeatureListUtils#getCandidatesWithinRanges(Range, Range, Range, List,
+ * boolean)} in a large feature list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FeatureListUtilsBenchmark {
+
+  @Param({"10000", "100000"})
+  public int rows;
+
+  private List<FeatureListRow> sortedRows;
+  private List<FeatureListRow> unsortedRows;
+  private Range<Double> mzRange;
+  private final Range<Float> rtRange = Range.closed(10f, 12f);
+  private final Range<Float> mobilityRange = Range.closed(0.8f, 1.2f);
+
+  @Setup(Level.Trial)
+  public void setup() {
+    unsortedRows = BenchmarkData.featureListRows(new Random(BenchmarkData.SEED), rows);
+    sortedRows = unsortedRows.stream().sorted(MZ_ASCENDING).toList();
+    mzRange = Range.closed(500d, 501d);
+  }
+
+  @Benchmark
+  public List<FeatureListRow> candidatesSorted() {
+    return FeatureListUtils.getCandidatesWithinRanges(mzRange, rtRange, mobilityRange, sortedRows,
+        true);
+  }
+
+  @Benchmark
+  public List<FeatureListRow> candidatesUnsorted() {
+    return FeatureListUtils.getCandidatesWithinRanges(mzRange, rtRange, mobilityRange,
+        unsortedRows, false);
+  }
+}
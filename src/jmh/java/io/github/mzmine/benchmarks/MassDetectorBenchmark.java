@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.auto.AutoMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.auto.AutoMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.exactmass.ExactMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.exactmass.ExactMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.factor_of_lowest.FactorOfLowestMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.factor_of_lowest.FactorOfLowestMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.localmaxima.LocalMaxMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.localmaxima.LocalMaxMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.recursive.RecursiveMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.recursive.RecursiveMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.wavelet.WaveletMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.wavelet.WaveletMassDetectorParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * All {@link MassDetector}s on a single spectrum. The centroid detector runs on centroid data, all
+ * others on profile data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MassDetectorBenchmark {
+
+  private static final double NOISE_LEVEL = 1E3;
+
+  @Param({"auto", "centroid", "exact", "factor_of_lowest", "local_max", "recursive", "wavelet"})
+  public String detectorName;
+
+  @Param({"2000"})
+  public int peaks;
+
+  private MassDetector detector;
+  private ParameterSet parameters;
+  private Scan scan;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final Random random = new Random(BenchmarkData.SEED);
+    scan = detectorName.equals("centroid") ? BenchmarkData.centroidScan(random, peaks)
+        : BenchmarkData.profileScan(random, peaks, 12);
+
+    switch (detectorName) {
+      case "auto" -> {
+        detector = new AutoMassDetector();
+        parameters = new AutoMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(AutoMassDetectorParameters.noiseLevel, NOISE_LEVEL);
+      }
+      case "centroid" -> {
+        detector = new CentroidMassDetector();
+        parameters = new CentroidMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(CentroidMassDetectorParameters.noiseLevel, NOISE_LEVEL);
+      }
+      case "exact" -> {
+        detector = new ExactMassDetector();
+        parameters = new ExactMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(ExactMassDetectorParameters.noiseLevel, NOISE_LEVEL);
+      }
+      case "factor_of_lowest" -> {
+        detector = new FactorOfLowestMassDetector();
+        parameters = new FactorOfLowestMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(FactorOfLowestMassDetectorParameters.noiseFactor, 2.5);
+      }
+      case "local_max" -> {
+        detector = new LocalMaxMassDetector();
+        parameters = new LocalMaxMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(LocalMaxMassDetectorParameters.noiseLevel, NOISE_LEVEL);
+      }
+      case "recursive" -> {
+        detector = new RecursiveMassDetector();
+        parameters = new RecursiveMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(RecursiveMassDetectorParameters.noiseLevel, NOISE_LEVEL);
+        parameters.setParameter(RecursiveMassDetectorParameters.minimumMZPeakWidth, 0.001);
+        parameters.setParameter(RecursiveMassDetectorParameters.maximumMZPeakWidth, 0.1);
+      }
+      case "wavelet" -> {
+        detector = new WaveletMassDetector();
+        parameters = new WaveletMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(WaveletMassDetectorParameters.noiseLevel, NOISE_LEVEL);
+        parameters.setParameter(WaveletMassDetectorParameters.scaleLevel, 5);
+        parameters.setParameter(WaveletMassDetectorParameters.waveletWindow, 0.3);
+      }
+      default -> throw new IllegalArgumentException("Unknown mass detector " + detectorName);
+    }
+  }
+
+  @Benchmark
+  public double[][] detectMasses() {
+    return detector.getMassValues(scan, parameters);
+  }
+}
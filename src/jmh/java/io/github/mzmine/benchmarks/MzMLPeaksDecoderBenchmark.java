@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import io.github.msdk.MSDKException;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLBinaryDataInfo;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLBitLength;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLCompressionType;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLPeaksDecoder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.DeflaterOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Decoding of base64 binary arrays as found in mzML files, with and without zlib compression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MzMLPeaksDecoderBenchmark {
+
+  @Param({"1000", "50000"})
+  public int length;
+
+  @Param({"true", "false"})
+  public boolean zlib;
+
+  private byte[] encoded64Bit;
+  private byte[] encoded32Bit;
+  private double[] doubleBuffer;
+  private float[] floatBuffer;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final double[][] spectrum = BenchmarkData.centroidSpectrum(new Random(BenchmarkData.SEED),
+        length);
+    final ByteBuffer doubles = ByteBuffer.allocate(length * Double.BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    final ByteBuffer floats = ByteBuffer.allocate(length * Float.BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    for (double mz : spectrum[0]) {
+      doubles.putDouble(mz);
+      floats.putFloat((float) mz);
+    }
+    encoded64Bit = encode(doubles.array());
+    encoded32Bit = encode(floats.array());
+    doubleBuffer = new double[length];
+    floatBuffer = new float[length];
+  }
+
+  @Benchmark
+  public double[] decode64BitToDouble()
+      throws MSDKException, IOException, DataFormatException {
+    return MzMLPeaksDecoder.decodeToDouble(new ByteArrayInputStream(encoded64Bit),
+        info(encoded64Bit, MzMLBitLength.SIXTY_FOUR_BIT_FLOAT), doubleBuffer);
+  }
+
+  @Benchmark
+  public float[] decode32BitToFloat() throws MSDKException, IOException, DataFormatException {
+    return MzMLPeaksDecoder.decodeToFloat(new ByteArrayInputStream(encoded32Bit),
+        info(encoded32Bit, MzMLBitLength.THIRTY_TWO_BIT_FLOAT), floatBuffer);
+  }
+
+  private MzMLBinaryDataInfo info(byte[] encoded, MzMLBitLength bitLength) {
+    final MzMLBinaryDataInfo info = new MzMLBinaryDataInfo(encoded.length, length);
+    info.setBitLength(bitLength);
+    info.setCompressionType(zlib ? MzMLCompressionType.ZLIB : MzMLCompressionType.NO_COMPRESSION);
+    return info;
+  }
+
+  private byte[] encode(byte[] raw) throws IOException {
+    byte[] data = raw;
+    if (zlib) {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+        deflater.write(raw);
+      }
+      data = out.toByteArray();
+    }
+    return Base64.getEncoder().encode(data);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogramBuilderParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderTask;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.FeatureResolverTask;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.GeneralResolverParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ResolvingDimension;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ADAPpeakpicking.ADAPResolverParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolverParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The {@link FeatureResolverTask} on a chromatogram feature list built from a synthetic LC-MS
+ * file. One thread runs the sequential path, more threads resolve chunks of rows in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelResolverBenchmark {
+
+  @Param({"local_minimum", "adap"})
+  public String resolverName;
+
+  @Param({"1", "4"})
+  public int threads;
+
+  @Param({"5000"})
+  public int compounds;
+
+  private FeatureList chromatograms;
+  private ParameterSet parameters;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final RawDataFile file = BenchmarkData.lcmsDataFile(new Random(BenchmarkData.SEED), 1000,
+        compounds, 200, null);
+
+    final ParameterSet builderParameters = new ADAPChromatogramBuilderParameters()
+        .cloneParameterSet();
+    builderParameters.setParameter(ADAPChromatogramBuilderParameters.scanSelection,
+        new ScanSelection(1));
+    builderParameters.setParameter(ADAPChromatogramBuilderParameters.minimumConsecutiveScans, 4);
+    builderParameters.setParameter(ADAPChromatogramBuilderParameters.minGroupIntensity, 1E3);
+    builderParameters.setParameter(ADAPChromatogramBuilderParameters.minHighestPoint, 5E3);
+    builderParameters.setParameter(ADAPChromatogramBuilderParameters.mzTolerance,
+        new MZTolerance(0.002, 10));
+    builderParameters.setParameter(ADAPChromatogramBuilderParameters.suffix, "chromatograms");
+
+    final MZmineProjectImpl project = new MZmineProjectImpl();
+    final var builder = ModularADAPChromatogramBuilderTask.forChromatography(project, file,
+        builderParameters, null, Instant.now(), ModularADAPChromatogramBuilderModule.class);
+    builder.run();
+    if (builder.getStatus() != TaskStatus.FINISHED) {
+      throw new IllegalStateException(
+          "Chromatogram builder did not finish: " + builder.getStatus());
+    }
+    chromatograms = project.getCurrentFeatureLists().get(0);
+
+    parameters = switch (resolverName) {
+      case "local_minimum" -> new MinimumSearchFeatureResolverParameters().cloneParameterSet();
+      case "adap" -> new ADAPResolverParameters().cloneParameterSet();
+      default -> throw new IllegalArgumentException("Unknown resolver " + resolverName);
+    };
+    parameters.setParameter(GeneralResolverParameters.dimension,
+        ResolvingDimension.RETENTION_TIME);
+    parameters.setParameter(GeneralResolverParameters.groupMS2Parameters, false);
+    parameters.setParameter(GeneralResolverParameters.handleOriginal,
+        OriginalFeatureListOption.KEEP);
+    parameters.setParameter(GeneralResolverParameters.SUFFIX, "resolved");
+
+    MZmineCore.getConfiguration().getPreferences().getParameter(MZminePreferences.numOfThreads)
+        .setValue(threads);
+  }
+
+  @Benchmark
+  public MZmineProjectImpl resolve() {
+    final MZmineProjectImpl project = new MZmineProjectImpl();
+    final FeatureResolverTask task = new FeatureResolverTask(project, null, chromatograms,
+        parameters, FeatureDataUtils.DEFAULT_CENTER_FUNCTION, Instant.now());
+    task.run();
+    if (task.getStatus() != TaskStatus.FINISHED) {
+      throw new IllegalStateException("Feature resolver did not finish: " + task.getStatus());
+    }
+    return project;
+  }
+}
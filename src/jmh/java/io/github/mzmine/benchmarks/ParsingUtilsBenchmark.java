@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import io.github.mzmine.util.ParsingUtils;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Array encoding and decoding in {@link ParsingUtils}, as used to save and load projects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParsingUtilsBenchmark {
+
+  @Param({"100", "10000"})
+  public int length;
+
+  private double[] doubles;
+  private int[] ints;
+  private String encodedDoubles;
+  private String encodedInts;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final Random random = new Random(BenchmarkData.SEED);
+    doubles = new double[length];
+    ints = new int[length];
+    for (int i = 0; i < length; i++) {
+      doubles[i] = random.nextDouble() * 1E5;
+      ints[i] = random.nextInt(100_000);
+    }
+    encodedDoubles = ParsingUtils.doubleArrayToString(doubles);
+    encodedInts = ParsingUtils.intArrayToString(ints, ints.length);
+  }
+
+  @Benchmark
+  public String encodeDoubles() {
+    return ParsingUtils.doubleArrayToString(doubles);
+  }
+
+  @Benchmark
+  public double[] decodeDoubles() {
+    return ParsingUtils.stringToDoubleArray(encodedDoubles);
+  }
+
+  @Benchmark
+  public String encodeInts() {
+    return ParsingUtils.intArrayToString(ints, ints.length);
+  }
+
+  @Benchmark
+  public int[] decodeInts() {
+    return ParsingUtils.stringToIntArray(encodedInts);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.GeneralResolverParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.Resolver;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ADAPpeakpicking.ADAPResolverParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolverParameters;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The {@link Resolver} implementations on a single synthetic chromatogram. The intensities are
+ * copied before each call because resolvers may modify the input array.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResolverBenchmark {
+
+  @Param({"local_minimum", "adap"})
+  public String resolverName;
+
+  @Param({"500", "5000"})
+  public int dataPoints;
+
+  private Resolver resolver;
+  private double[] x;
+  private double[] y;
+  private double[] yBuffer;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final double[][] data = BenchmarkData.chromatogram(new Random(BenchmarkData.SEED), dataPoints,
+        Math.max(1, dataPoints / 100));
+    x = data[0];
+    y = data[1];
+    yBuffer = new double[y.length];
+
+    final RawDataFile file = new RawDataFileImpl("resolver", null, null, Color.BLACK);
+    final ModularFeatureList flist = new ModularFeatureList("resolver", null, file);
+    final GeneralResolverParameters parameters = switch (resolverName) {
+      case "local_minimum" -> (GeneralResolverParameters) new MinimumSearchFeatureResolverParameters()
+          .cloneParameterSet();
+      case "adap" -> (GeneralResolverParameters) new ADAPResolverParameters().cloneParameterSet();
+      default -> throw new IllegalArgumentException("Unknown resolver " + resolverName);
+    };
+    resolver = parameters.getResolver(parameters, flist);
+  }
+
+  @Benchmark
+  public void resolve(Blackhole bh) {
+    System.arraycopy(y, 0, yBuffer, 0, y.length);
+    final List<Range<Double>> ranges = resolver.resolve(x, yBuffer);
+    bh.consume(ranges);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess.ScanDataType;
+import io.github.mzmine.datamodel.data_access.ScanDataAccess;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Iteration over all scans and data points of a data file with {@link ScanDataAccess}, for data in
+ * memory and in the memory mapped storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ScanDataAccessBenchmark {
+
+  @Param({"true", "false"})
+  public boolean memoryMapped;
+
+  @Param({"RAW", "CENTROID"})
+  public ScanDataType type;
+
+  private MemoryMapStorage storage;
+  private RawDataFile file;
+
+  @Setup(Level.Trial)
+  public void createFile() throws IOException {
+    storage = memoryMapped ? MemoryMapStorage.create() : null;
+    file = BenchmarkData.lcmsDataFile(new Random(BenchmarkData.SEED), 2000, 500, 300, storage);
+  }
+
+  @TearDown(Level.Trial)
+  public void discardStorage() throws IOException {
+    if (storage != null) {
+      storage.discard(null);
+    }
+  }
+
+  @Benchmark
+  public double iterateAllDataPoints() {
+    final ScanDataAccess access = EfficientDataAccess.of(file, type);
+    double sum = 0d;
+    while (access.hasNextScan()) {
+      access.nextScan();
+      final int n = access.getNumberOfDataPoints();
+      for (int i = 0; i < n; i++) {
+        sum += access.getMzValue(i) * access.getIntensityValue(i);
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
+import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarity;
+import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarityParameters;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link WeightedCosineSpectralSimilarity} between a library and a query spectrum that share part
+ * of their signals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpectralSimilarityBenchmark {
+
+  @Param({"50", "500"})
+  public int signals;
+
+  private final WeightedCosineSpectralSimilarity similarity = new WeightedCosineSpectralSimilarity();
+  private final MZTolerance mzTol = new MZTolerance(0.005, 10);
+  private ParameterSet parameters;
+  private DataPoint[] library;
+  private DataPoint[] query;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final Random random = new Random(BenchmarkData.SEED);
+    library = BenchmarkData.centroidDataPoints(random, signals);
+    // half of the query signals match the library
+    final DataPoint[] other = BenchmarkData.centroidDataPoints(random, signals);
+    query = new DataPoint[signals];
+    for (int i = 0; i < signals; i++) {
+      query[i] = i % 2 == 0 ? library[i] : other[i];
+    }
+    Arrays.sort(query, (a, b) -> Double.compare(a.getMZ(), b.getMZ()));
+    parameters = new WeightedCosineSpectralSimilarityParameters().cloneParameterSet();
+  }
+
+  @Benchmark
+  public SpectralSimilarity weightedCosine() {
+    return similarity.getSimilarity(parameters, mzTol, 0, library, query);
+  }
+}
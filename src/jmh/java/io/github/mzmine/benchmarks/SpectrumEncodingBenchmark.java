@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.StorageEncoding;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Storing and reading spectra with the different {@link StorageEncoding}s. The stored bytes per
+ * data point are logged after each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SpectrumEncodingBenchmark {
+
+  private static final Logger logger = Logger.getLogger(
+      SpectrumEncodingBenchmark.class.getName());
+
+  @Param({"DOUBLE", "FLOAT_INTENSITY", "DELTA_MZ_FLOAT_INTENSITY"})
+  public StorageEncoding encoding;
+
+  @Param({"profile", "centroid"})
+  public String spectrumType;
+
+  private double[][] data;
+  private MemoryMapStorage storage;
+  private MassList stored;
+  private double[] buffer;
+  private int[] randomIndices;
+  private long storedSpectra;
+
+  @Setup(Level.Trial)
+  public void createData() {
+    final Random random = new Random(BenchmarkData.SEED);
+    data = spectrumType.equals("profile") ? BenchmarkData.profileSpectrum(random, 500, 20)
+        : BenchmarkData.centroidSpectrum(random, 2000);
+    buffer = new double[data[0].length];
+    randomIndices = random.ints(1000, 0, data[0].length).toArray();
+  }
+
+  @Setup(Level.Iteration)
+  public void createStorage() {
+    storage = MemoryMapStorage.create(encoding);
+    stored = new SimpleMassList(storage, data[0], data[1]);
+    storedSpectra = 1;
+  }
+
+  @TearDown(Level.Iteration)
+  public void discardStorage() throws IOException {
+    final double bytesPerPoint =
+        storage.getStoredBytes() / (double) (storedSpectra * data[0].length);
+    logger.info(() -> "%s %s: %.2f bytes per data point".formatted(encoding.name(), spectrumType,
+        bytesPerPoint));
+    storage.discard(null);
+  }
+
+  @Benchmark
+  public MassList store() {
+    storedSpectra++;
+    return new SimpleMassList(storage, data[0], data[1]);
+  }
+
+  @Benchmark
+  public double[] readAllMzs() {
+    return stored.getMzValues(buffer);
+  }
+
+  @Benchmark
+  public double[] readAllIntensities() {
+    return stored.getIntensityValues(buffer);
+  }
+
+  @Benchmark
+  public double readRandomMzs() {
+    double sum = 0;
+    for (int index : randomIndices) {
+      sum += stored.getMzValue(index);
+    }
+    return sum;
+  }
+}
@@ -90,12 +90,26 @@ public abstract class FeatureDataAccess implements IonTimeSeries<Scan> {
    * @param dataFile define the data file in an aligned feature list
    */
   protected FeatureDataAccess(FeatureList flist, @Nullable RawDataFile dataFile) {
+    this(flist, dataFile, null);
+  }
+
+  /**
+   * Access the chromatographic data of a subset of rows in a feature list sorted by scan ID
+   * (usually sorted by retention time). Used to split a feature list into chunks that are processed
+   * in parallel, each with its own data access.
+   *
+   * @param flist    target feature list. Loops through all features in dataFile
+   * @param dataFile define the data file in an aligned feature list
+   * @param subset   the rows to access in this order or null to access all rows of flist
+   */
+  protected FeatureDataAccess(FeatureList flist, @Nullable RawDataFile dataFile,
+      @Nullable List<FeatureListRow> subset) {
     this.flist = flist;
     this.dataFile = dataFile;
 
     // set rows and number of features
     int totalFeatures = 0;
-    List<FeatureListRow> allRows = flist.getRows();
+    List<FeatureListRow> allRows = subset != null ? subset : flist.getRows();
     // handle aligned flist
     if (flist.getNumberOfRawDataFiles() > 1) {
       if (dataFile != null) {
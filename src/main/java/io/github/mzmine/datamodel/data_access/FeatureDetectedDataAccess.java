@@ -29,6 +29,7 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import java.util.List;
 import org.jetbrains.annotations.Nullable;
 
@@ -66,7 +67,20 @@ public class FeatureDetectedDataAccess extends FeatureDataAccess {
    * @param dataFile define the data file in an aligned feature list
    */
   protected FeatureDetectedDataAccess(FeatureList flist, @Nullable RawDataFile dataFile) {
-    super(flist, dataFile);
+    this(flist, dataFile, null);
+  }
+
+  /**
+   * Detected data access to a subset of rows, see {@link #FeatureDetectedDataAccess(FeatureList,
+   * RawDataFile)}
+   *
+   * @param flist    target feature list. Loops through all features in dataFile
+   * @param dataFile define the data file in an aligned feature list
+   * @param subset   the rows to access in this order or null to access all rows of flist
+   */
+  protected FeatureDetectedDataAccess(FeatureList flist, @Nullable RawDataFile dataFile,
+      @Nullable List<FeatureListRow> subset) {
+    super(flist, dataFile, subset);
 
     // detected data points currently on feature/chromatogram
     int detected = getMaxNumOfDetectedDataPoints();
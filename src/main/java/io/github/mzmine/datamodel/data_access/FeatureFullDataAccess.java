@@ -29,6 +29,7 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import java.util.Arrays;
 import java.util.List;
 import org.jetbrains.annotations.Nullable;
@@ -78,7 +79,20 @@ public class FeatureFullDataAccess extends FeatureDataAccess {
    * @param dataFile define the data file in an aligned feature list
    */
   protected FeatureFullDataAccess(FeatureList flist, @Nullable RawDataFile dataFile) {
-    super(flist, dataFile);
+    this(flist, dataFile, null);
+  }
+
+  /**
+   * Full data access to a subset of rows, see {@link #FeatureFullDataAccess(FeatureList,
+   * RawDataFile)}
+   *
+   * @param flist    target feature list. Loops through all features in dataFile
+   * @param dataFile define the data file in an aligned feature list
+   * @param subset   the rows to access in this order or null to access all rows of flist
+   */
+  protected FeatureFullDataAccess(FeatureList flist, @Nullable RawDataFile dataFile,
+      @Nullable List<FeatureListRow> subset) {
+    super(flist, dataFile, subset);
 
     // return all scans that were used to create the chromatograms in the first place
     int max = 0;
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.featuredata.impl;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.IntensitySeries;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.MzSeries;
+import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.ParsingUtils;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Used to store LC-MS data. Instead of a list of scans, this series only stores the indices of its
+ * scans in {@link RawDataFile#getScans()}. The indices are kept in the {@link MemoryMapStorage}
+ * next to the mz and intensity values, so a series only adds a few references to the heap. The
+ * scans are resolved lazily by {@link #getSpectra()} and looked up by a binary search over the
+ * retention time.
+ * <p>
+ * Extends {@link SimpleIonTimeSeries} so existing code (e.g. resolvers) handles both the same way.
+ */
+public class ScanIndexIonTimeSeries extends SimpleIonTimeSeries {
+
+  private final ScanIndexList scanIndexList;
+
+  /**
+   * @param storage         may be null if forceStoreInRam is true
+   * @param dataFile        the raw data file the scan indices point to
+   * @param scanIndices     indices of the scans in {@link RawDataFile#getScans()}, sorted by
+   *                        retention time
+   * @param mzValues
+   * @param intensityValues
+   */
+  public ScanIndexIonTimeSeries(@Nullable MemoryMapStorage storage, @NotNull RawDataFile dataFile,
+      @NotNull int[] scanIndices, @NotNull double[] mzValues, @NotNull double[] intensityValues) {
+    this(dataFile, StorageUtils.storeValuesToIntBuffer(storage, scanIndices),
+        StorageUtils.storeValuesToDoubleBuffer(storage, mzValues),
+        StorageUtils.storeValuesToDoubleBuffer(storage, intensityValues));
+  }
+
+  private ScanIndexIonTimeSeries(@NotNull RawDataFile dataFile, @NotNull IntBuffer scanIndices,
+      @NotNull DoubleBuffer mzValues, @NotNull DoubleBuffer intensityValues) {
+    this(new ScanIndexList(dataFile, scanIndices), mzValues, intensityValues);
+  }
+
+  private ScanIndexIonTimeSeries(@NotNull ScanIndexList scans, @NotNull DoubleBuffer mzValues,
+      @NotNull DoubleBuffer intensityValues) {
+    super(mzValues, intensityValues, scans);
+    this.scanIndexList = scans;
+  }
+
+  /**
+   * Creates a {@link ScanIndexIonTimeSeries} if all scans are part of
+   * {@link RawDataFile#getScans()} of the given file, otherwise a {@link SimpleIonTimeSeries}.
+   *
+   * @param storage         may be null if forceStoreInRam is true
+   * @param dataFile        the raw data file of the scans
+   * @param mzValues
+   * @param intensityValues
+   * @param scans           the scans, sorted by retention time
+   */
+  public static SimpleIonTimeSeries create(@Nullable MemoryMapStorage storage,
+      @NotNull RawDataFile dataFile, @NotNull double[] mzValues, @NotNull double[] intensityValues,
+      @NotNull List<Scan> scans) {
+    for (int i = 1; i < scans.size(); i++) {
+      if (scans.get(i).getRetentionTime() < scans.get(i - 1).getRetentionTime()) {
+        throw new IllegalArgumentException(
+            "Scans not sorted in retention time dimension! Cannot create chromatogram.");
+      }
+    }
+    final int[] indices = findScanIndices(dataFile.getScans(), scans);
+    if (indices == null) {
+      return new SimpleIonTimeSeries(storage, mzValues, intensityValues, scans);
+    }
+    if (mzValues.length != intensityValues.length || mzValues.length != indices.length) {
+      throw new IllegalArgumentException("Length of mz, intensity and/or scans does not match.");
+    }
+    return new ScanIndexIonTimeSeries(storage, dataFile, indices, mzValues, intensityValues);
+  }
+
+  /**
+   * Maps the scans to their indices in allScans. Consecutive scans are searched forward from the
+   * previous index, so a chromatogram only walks the range of scans it covers.
+   *
+   * @param allScans all scans of a raw data file, usually sorted by retention time
+   * @param scans    the scans to find, sorted by retention time
+   * @return the indices or null if a scan is not part of allScans.
+   */
+  @Nullable
+  static int[] findScanIndices(@NotNull List<Scan> allScans, @NotNull List<Scan> scans) {
+    final int[] indices = new int[scans.size()];
+    int start = 0;
+    for (int i = 0; i < scans.size(); i++) {
+      final Scan scan = scans.get(i);
+      if (i == 0) {
+        start = lowerBoundRt(allScans, 0, allScans.size(), scan.getRetentionTime());
+      }
+      int index = -1;
+      for (int j = start; j < allScans.size(); j++) {
+        if (allScans.get(j) == scan) {
+          index = j;
+          break;
+        }
+      }
+      if (index == -1) {
+        // scans of the raw file are not sorted by rt, fall back to a full search
+        index = indexOfIdentity(allScans, scan);
+        if (index == -1) {
+          return null;
+        }
+      }
+      indices[i] = index;
+      start = index + 1;
+    }
+    return indices;
+  }
+
+  private static int indexOfIdentity(List<Scan> list, Scan scan) {
+    for (int i = 0; i < list.size(); i++) {
+      if (list.get(i) == scan) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the first index in [from, to) with a retention time >= rt, to if there is none.
+   */
+  private static int lowerBoundRt(List<Scan> scans, int from, int to, float rt) {
+    int low = from;
+    int high = to;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (scans.get(mid).getRetentionTime() < rt) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  public RawDataFile getDataFile() {
+    return scanIndexList.dataFile;
+  }
+
+  /**
+   * @return the indices of the scans in {@link RawDataFile#getScans()}. Read only.
+   */
+  public IntBuffer getScanIndexBuffer() {
+    return scanIndexList.indices;
+  }
+
+  @Override
+  public SimpleIonTimeSeries subSeries(@Nullable MemoryMapStorage storage,
+      @NotNull List<Scan> subset) {
+    final int[] subIndices = new int[subset.size()];
+    final double[] mzs = new double[subset.size()];
+    final double[] intensities = new double[subset.size()];
+
+    int sindex = 0;
+    for (int i = 0; i < subset.size(); i++) {
+      final Scan sub = subset.get(i);
+      while (sindex < scanIndexList.size() && scanIndexList.get(sindex) != sub) {
+        sindex++;
+      }
+      if (sindex >= scanIndexList.size()) {
+        // let the default implementation throw the detailed exception
+        return super.subSeries(storage, subset);
+      }
+      subIndices[i] = scanIndexList.indices.get(sindex);
+      mzs[i] = getMZ(sindex);
+      intensities[i] = getIntensity(sindex);
+    }
+
+    return new ScanIndexIonTimeSeries(storage, scanIndexList.dataFile, subIndices, mzs,
+        intensities);
+  }
+
+  @Override
+  public IonTimeSeries<Scan> copyAndReplace(@Nullable MemoryMapStorage storage,
+      @NotNull double[] newMzValues, @NotNull double[] newIntensityValues) {
+    if (newMzValues.length != newIntensityValues.length
+        || newMzValues.length != scanIndexList.size()) {
+      throw new IllegalArgumentException("Length of mz, intensity and/or scans does not match.");
+    }
+    // the scans stay the same, share the index buffer
+    return new ScanIndexIonTimeSeries(scanIndexList,
+        StorageUtils.storeValuesToDoubleBuffer(storage, newMzValues),
+        StorageUtils.storeValuesToDoubleBuffer(storage, newIntensityValues));
+  }
+
+  @Override
+  public void saveValueToXML(XMLStreamWriter writer, List<Scan> allScans)
+      throws XMLStreamException {
+    if (allScans != scanIndexList.allScans) {
+      super.saveValueToXML(writer, allScans);
+      return;
+    }
+
+    // same format as the simple series, but the indices are already known
+    writer.writeStartElement(SimpleIonTimeSeries.XML_ELEMENT);
+
+    writer.writeStartElement(CONST.XML_SCAN_LIST_ELEMENT);
+    writer.writeAttribute(CONST.XML_NUM_VALUES_ATTR, String.valueOf(getNumberOfValues()));
+    final int[] indices = new int[scanIndexList.size()];
+    scanIndexList.indices.get(0, indices);
+    writer.writeCharacters(ParsingUtils.intArrayToString(indices, indices.length));
+    writer.writeEndElement();
+
+    IntensitySeries.saveIntensityValuesToXML(writer, this);
+    MzSeries.saveMzValuesToXML(writer, this);
+
+    writer.writeEndElement();
+  }
+
+  /**
+   * Read only view on the scans of a raw data file, defined by their indices.
+   */
+  private static class ScanIndexList extends AbstractList<Scan> implements RandomAccess {
+
+    private final RawDataFile dataFile;
+    private final List<Scan> allScans;
+    private final IntBuffer indices;
+
+    private ScanIndexList(RawDataFile dataFile, IntBuffer indices) {
+      this.dataFile = dataFile;
+      this.allScans = dataFile.getScans();
+      this.indices = indices;
+    }
+
+    @Override
+    public Scan get(int index) {
+      return allScans.get(indices.get(index));
+    }
+
+    @Override
+    public int size() {
+      return indices.limit();
+    }
+
+    /**
+     * Binary search by retention time. The series is sorted by retention time, scans with the
+     * same retention time are compared by identity.
+     */
+    @Override
+    public int indexOf(Object o) {
+      if (!(o instanceof Scan scan) || scan.getDataFile() != dataFile) {
+        return -1;
+      }
+      final float rt = scan.getRetentionTime();
+      for (int i = lowerBoundRt(this, 0, size(), rt); i < size(); i++) {
+        final Scan s = get(i);
+        if (scan.equals(s)) {
+          return i;
+        }
+        if (s.getRetentionTime() != rt) {
+          break;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return indexOf(o) != -1;
+    }
+  }
+}
@@ -86,10 +86,25 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
     this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensityValues);
   }
 
+  /**
+   * For subclasses that store their values and scans differently, e.g.
+   * {@link ScanIndexIonTimeSeries}. The scans must be sorted by retention time.
+   */
+  protected SimpleIonTimeSeries(@NotNull DoubleBuffer mzValues,
+      @NotNull DoubleBuffer intensityValues, @NotNull List<Scan> scans) {
+    if (mzValues.limit() != intensityValues.limit() || mzValues.limit() != scans.size()) {
+      throw new IllegalArgumentException("Length of mz, intensity and/or scans does not match.");
+    }
+    this.scans = scans;
+    this.mzValues = mzValues;
+    this.intensityValues = intensityValues;
+  }
+
   public static SimpleIonTimeSeries loadFromXML(XMLStreamReader reader, MemoryMapStorage storage,
       RawDataFile file) throws XMLStreamException {
 
     List<Scan> scans = null;
+    int[] indices = null;
     double[] mzs = null;
     double[] intensities = null;
 
@@ -104,14 +119,14 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
       }
       switch (reader.getLocalName()) {
         case CONST.XML_SCAN_LIST_ELEMENT -> {
-          int[] indices = ParsingUtils.stringToIntArray(reader.getElementText());
-          scans = ParsingUtils.getSublistFromIndices(file.getScans(), indices); // use all scans
+          indices = ParsingUtils.stringToIntArray(reader.getElementText());
 
           // if the scans were CachedFrames, we have to replace them when storing them to the series,
           // otherwise, we would keep the refences to cached mobility scans alive.
-          if (scans.get(0) instanceof CachedIMSFrame) {
-            scans = scans.stream().map(scan -> ((CachedIMSFrame) scan).getOriginalFrame())
-                .map(f -> (Scan) f).toList();
+          if (indices.length > 0 && file.getScan(indices[0]) instanceof CachedIMSFrame) {
+            scans = ParsingUtils.getSublistFromIndices(file.getScans(), indices).stream()
+                .map(scan -> ((CachedIMSFrame) scan).getOriginalFrame()).map(f -> (Scan) f)
+                .toList();
           }
         }
         case CONST.XML_MZ_VALUES_ELEMENT ->
@@ -121,6 +136,10 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
       }
     }
 
+    if (scans == null && indices != null) {
+      // scans are part of the raw file, only keep the indices
+      return new ScanIndexIonTimeSeries(storage, file, indices, mzs, intensities);
+    }
     return new SimpleIonTimeSeries(storage, mzs, intensities, scans);
   }
 
@@ -284,6 +284,10 @@ public class ModularFeature implements Feature, ModularDataModel {
     buffertColCharts.put(colname, node);
   }
 
+  public void removeBufferedColChart(String colname) {
+    buffertColCharts.remove(colname);
+  }
+
   public void clearBufferedColCharts() {
     buffertColCharts.forEach((k, v) -> {
       if (v instanceof Pane p && p.getParent() instanceof Pane pane) {
@@ -367,6 +367,10 @@ public class ModularFeatureListRow implements FeatureListRow {
     buffertColCharts.put(colname, node);
   }
 
+  public void removeBufferedColChart(String colname) {
+    buffertColCharts.remove(colname);
+  }
+
   public void clearBufferedColCharts() {
     buffertColCharts.forEach((k, v) -> {
       if (v instanceof Pane p && p.getParent() instanceof Pane pane) {
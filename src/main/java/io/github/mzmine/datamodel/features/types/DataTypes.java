@@ -77,6 +77,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -91,43 +92,85 @@ public class DataTypes {
 
   private static final Logger logger = Logger.getLogger(DataTypes.class.getName());
 
+  private static final String TYPES_PACKAGE = "io.github.mzmine.datamodel.features.types";
+
   // map class to instance
-  private static final HashMap<Class<? extends DataType>, DataType> TYPES = new HashMap<>();
+  private static final Map<Class<? extends DataType>, DataType> TYPES = new ConcurrentHashMap<>();
   // map unique ID to instance
-  private static final HashMap<String, DataType<?>> map = new HashMap<>();
+  private static final Map<String, DataType<?>> map = new ConcurrentHashMap<>();
+  // types are created on first use, the full class path scan is only done when all types are
+  // requested or when looking up an unknown unique ID
+  private static volatile boolean allLoaded = false;
 
-  static {
+  private DataTypes() {
+  }
+
+  /**
+   * Scans the class path for all data types. Only called if all types are needed, e.g., to load a
+   * project
+   */
+  private static synchronized void ensureAllLoaded() {
+    if (allLoaded) {
+      return;
+    }
     try {
       ClassPath classPath = ClassPath.from(DataType.class.getClassLoader());
-      classPath.getTopLevelClassesRecursive("io.github.mzmine.datamodel.features.types")
-          .forEach(classInfo -> {
-            try {
-              Object o = classInfo.load().getDeclaredConstructor().newInstance();
-              if (o instanceof DataType dt) {
-                var value = map.put(dt.getUniqueID(), dt);
-                if (value != null) {
-                  throw new IllegalStateException(
-                      "FATAL: Multiple data types with unique ID " + dt.getUniqueID() + "\n"
-                      + value.getClass().getName() + "\n" + dt.getClass().getName());
-                }
-                TYPES.put(dt.getClass(), dt);
-              }
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
-                     NoSuchMethodException e) {
-              //               can go silent
-              //              logger.log(Level.INFO, e.getMessage(), e);
-            }
-          });
+      classPath.getTopLevelClassesRecursive(TYPES_PACKAGE).forEach(classInfo -> {
+        try {
+          final Class<?> clazz = classInfo.load();
+          if (DataType.class.isAssignableFrom(clazz)) {
+            get((Class) clazz);
+          }
+        } catch (NoClassDefFoundError e) {
+          //               can go silent
+        }
+      });
     } catch (IOException e) {
       logger.severe("Cannot instantiate classPath for DataType.class. Cannot load projects.");
     }
+    allLoaded = true;
   }
 
-  private DataTypes() {
+  /**
+   * Creates the single instance of a data type. The constructor is called outside of the map as
+   * data types may access other types during construction.
+   */
+  @Nullable
+  private static DataType createInstance(Class<? extends DataType> clazz) {
+    if (!clazz.getName().startsWith(TYPES_PACKAGE + ".")) {
+      return null;
+    }
+    final DataType dt;
+    try {
+      dt = clazz.getDeclaredConstructor().newInstance();
+    } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
+             NoSuchMethodException e) {
+      //               can go silent
+      //              logger.log(Level.INFO, e.getMessage(), e);
+      return null;
+    }
+
+    final DataType existing = TYPES.putIfAbsent(clazz, dt);
+    if (existing != null) {
+      // created concurrently
+      return existing;
+    }
+    var value = map.putIfAbsent(dt.getUniqueID(), dt);
+    if (value != null) {
+      throw new IllegalStateException(
+          "FATAL: Multiple data types with unique ID " + dt.getUniqueID() + "\n"
+          + value.getClass().getName() + "\n" + dt.getClass().getName());
+    }
+    return dt;
   }
 
   @Nullable
   public static DataType<?> getTypeForId(String uniqueId) {
+    final DataType<?> type = map.get(uniqueId);
+    if (type != null || allLoaded) {
+      return type;
+    }
+    ensureAllLoaded();
     return map.get(uniqueId);
   }
 
@@ -136,17 +179,23 @@ public class DataTypes {
   }
 
   public static <T> DataType<T> get(Class<? extends DataType<T>> clazz) {
-    return TYPES.get(clazz);
+    final DataType type = TYPES.get(clazz);
+    if (type != null) {
+      return type;
+    }
+    return createInstance(clazz);
   }
 
   /**
    * @return A collection of all data type instances.
    */
   public static Collection<DataType> getInstances() {
+    ensureAllLoaded();
     return TYPES.values();
   }
 
   public static Collection<Class<? extends DataType>> getClasses() {
+    ensureAllLoaded();
     return TYPES.keySet();
   }
 
@@ -189,6 +238,6 @@ public class DataTypes {
   }
 
   public static List<DataType> getList(final Class... classes) {
-    return Arrays.stream(classes).map(c -> TYPES.get(c)).toList();
+    return Arrays.stream(classes).map(c -> (DataType) get(c)).toList();
   }
 }
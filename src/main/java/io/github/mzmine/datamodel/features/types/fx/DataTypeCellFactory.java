@@ -33,6 +33,7 @@ import io.github.mzmine.datamodel.features.types.modifiers.GraphicalColumType;
 import io.github.mzmine.datamodel.features.types.modifiers.SubColumnsFactory;
 import io.github.mzmine.datamodel.features.types.numbers.abstr.NumberRangeType;
 import io.github.mzmine.datamodel.features.types.numbers.abstr.NumberType;
+import io.github.mzmine.modules.visualization.featurelisttable_modular.FeatureTableFX;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.geometry.Pos;
@@ -99,7 +100,7 @@ public class DataTypeCellFactory implements
             // convert Boolean to boolean
             boolean cellActive = item != null && ((Boolean) item).booleanValue();
             // first handle linked graphical types (like charts) that are dependent on other data
-            Node node = ((GraphicalColumType) lgType).getCellNode(this, param, cellActive, raw);
+            Node node = getGraphicalNode((GraphicalColumType) lgType, cellActive);
             getTableColumn().setMinWidth(lgType.getColumnWidth());
             setGraphic(node);
             setText(null);
@@ -112,7 +113,7 @@ public class DataTypeCellFactory implements
               setText(null);
             } else {
               if (type instanceof GraphicalColumType graphicalColumType) {
-                Node node = graphicalColumType.getCellNode(this, param, item, raw);
+                Node node = getGraphicalNode(graphicalColumType, item);
                 getTableColumn().setMinWidth(graphicalColumType.getColumnWidth());
                 setGraphic(node);
                 setText(null);
@@ -138,6 +139,20 @@ public class DataTypeCellFactory implements
           logger.log(Level.WARNING, "Error in cell factory", ex);
         }
       }
+
+      /**
+       * The virtualized feature table renders charts from its image cache
+       */
+      @SuppressWarnings("unchecked")
+      private Node getGraphicalNode(GraphicalColumType graphicalType, Object item) {
+        final ModularFeatureListRow row = getTreeTableRow().getItem();
+        if (row != null && getTreeTableView() instanceof FeatureTableFX table
+            && table.getChartImageCache() != null) {
+          return table.getChartImageCache().getOrCreate(row, raw, param.getText(),
+              () -> graphicalType.getCellNode(this, param, item, raw));
+        }
+        return graphicalType.getCellNode(this, param, item, raw);
+      }
     };
   }
 
@@ -39,6 +39,7 @@ import io.github.mzmine.modules.io.import_rawdata_imzml.ImagingParameters;
 import io.github.mzmine.modules.visualization.featurelisttable_modular.FeatureTableFXModule;
 import io.github.mzmine.modules.visualization.featurelisttable_modular.FeatureTableFXParameters;
 import java.awt.Color;
+import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jfree.chart.axis.AxisLocation;
 import org.jfree.chart.axis.NumberAxis;
@@ -50,14 +51,28 @@ import org.jfree.data.Range;
 public class ImageChart extends BufferedChartNode {
 
   public ImageChart(@NotNull ModularFeature f, AtomicDouble progress) {
-    FeatureImageProvider<ImagingScan> prov = new FeatureImageProvider<>(f);
+    ImagingRawDataFile imagingFile = (ImagingRawDataFile) f.getRawDataFile();
+    final boolean lockOnAspectRatio = MZmineCore.getConfiguration()
+        .getModuleParameters(FeatureTableFXModule.class)
+        .getParameter(FeatureTableFXParameters.lockImagesToAspectRatio).getValue();
+    ImagingParameters param = imagingFile.getImagingParam();
+
+    final double width = lockOnAspectRatio ? Math.min(
+        GraphicalColumType.DEFAULT_IMAGE_CELL_HEIGHT / (float) param.getMaxNumberOfPixelY()
+            * param.getMaxNumberOfPixelX(), GraphicalColumType.MAXIMUM_GRAPHICAL_CELL_WIDTH)
+        : GraphicalColumType.LARGE_GRAPHICAL_CELL_WIDTH;
+
+    // render a down sampled level of the image, the cell cannot show more pixels anyway
+    final int maxImageSize = (int) Math.max(width, GraphicalColumType.DEFAULT_IMAGE_CELL_HEIGHT);
+    FeatureImageProvider<ImagingScan> prov = new FeatureImageProvider<>(f,
+        (List<ImagingScan>) f.getFeatureList().getSeletedScans(imagingFile),
+        MZmineCore.getConfiguration().getImageNormalization(), maxImageSize);
     ColoredXYZDataset ds = new ColoredXYZDataset(prov, RunOption.THIS_THREAD);
     // checked in ImagingChart.class
 
     SimpleXYZScatterPlot<FeatureImageProvider> chart = new SimpleXYZScatterPlot<>();
     chart.setRangeAxisLabel("µm");
     chart.setDomainAxisLabel("µm");
-    ImagingRawDataFile imagingFile = (ImagingRawDataFile) f.getRawDataFile();
 
     final boolean hideAxes = MZmineCore.getConfiguration()
         .getModuleParameters(FeatureTableFXModule.class).getParameter(
@@ -80,16 +95,6 @@ public class ImageChart extends BufferedChartNode {
 
     chart.setLegendVisible(!hideAxes);
 
-    final boolean lockOnAspectRatio = MZmineCore.getConfiguration()
-        .getModuleParameters(FeatureTableFXModule.class)
-        .getParameter(FeatureTableFXParameters.lockImagesToAspectRatio).getValue();
-    ImagingParameters param = imagingFile.getImagingParam();
-
-    final double width = lockOnAspectRatio ? Math.min(
-        GraphicalColumType.DEFAULT_IMAGE_CELL_HEIGHT / (float) param.getMaxNumberOfPixelY()
-            * param.getMaxNumberOfPixelX(), GraphicalColumType.MAXIMUM_GRAPHICAL_CELL_WIDTH)
-        : GraphicalColumType.LARGE_GRAPHICAL_CELL_WIDTH;
-
     chart.getXYPlot().setBackgroundPaint(Color.BLACK);
 
     setChartCreateImage(chart, (int) width, GraphicalColumType.DEFAULT_IMAGE_CELL_HEIGHT);
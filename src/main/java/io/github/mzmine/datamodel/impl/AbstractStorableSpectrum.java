@@ -29,13 +29,16 @@ import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.StorageEncoding;
 import java.nio.DoubleBuffer;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
- * An implementation of MassSpectrum that stores the data points in a MemoryMapStorage.
+ * An implementation of MassSpectrum that stores the data points in a MemoryMapStorage. The values
+ * are stored with the {@link StorageEncoding} of the storage, reduced precision encodings are
+ * decoded by the accessor methods.
  */
 public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
 
@@ -44,6 +47,10 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
 
   protected DoubleBuffer mzValues;
   protected DoubleBuffer intensityValues;
+  /**
+   * Set instead of the double buffers if the storage uses a reduced precision encoding.
+   */
+  private EncodedSpectrumValues encodedValues;
 
   /**
    * Note: mz and intensity values for a scan shall only be set once and are enforced to be
@@ -63,6 +70,21 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     setDataPoints(storage, mzValues, intensityValues);
   }
 
+  /**
+   * Uses values that are already stored. The buffers may be shared between spectra, e.g., the m/z
+   * values of all spectra in continuous mode imaging data.
+   *
+   * @param mzValues        m/z values sorted ascending
+   * @param intensityValues intensity values
+   */
+  public AbstractStorableSpectrum(@NotNull DoubleBuffer mzValues,
+      @NotNull DoubleBuffer intensityValues) {
+    assert mzValues.capacity() == intensityValues.capacity();
+    this.mzValues = mzValues;
+    this.intensityValues = intensityValues;
+    updateMzRangeAndTICValues();
+  }
+
   protected synchronized void setDataPoints(@Nullable MemoryMapStorage storage,
       @Nullable double[] mzValues, @Nullable double[] intensityValues) {
 
@@ -76,18 +98,35 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
       // allow re-generation of frame spectra
       assert this.mzValues == null;
       assert this.intensityValues == null;
+      assert this.encodedValues == null;
     }
 
     // so many data sources have unsorted spectra - so better sort the spectrum here
     // this is only done if the mzs were unsorted
     var mzsIntensities = DataPointUtils.ensureSortingMzAscendingDefault(mzValues, intensityValues);
 
-    this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzsIntensities[0]);
-    this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzsIntensities[1]);
+    final StorageEncoding encoding =
+        storage != null ? storage.getEncoding() : StorageEncoding.DOUBLE;
+    if (encoding == StorageEncoding.DOUBLE) {
+      this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzsIntensities[0]);
+      this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzsIntensities[1]);
+      this.encodedValues = null;
+    } else {
+      this.encodedValues = EncodedSpectrumValues.encode(storage, encoding, mzsIntensities[0],
+          mzsIntensities[1]);
+      this.mzValues = null;
+      this.intensityValues = null;
+    }
     updateMzRangeAndTICValues();
   }
 
+  /**
+   * @return the m/z values. Decodes all values into a new buffer if the values are encoded.
+   */
   DoubleBuffer getMzValues() {
+    if (encodedValues != null) {
+      return DoubleBuffer.wrap(getMzValues(new double[encodedValues.getNumberOfValues()]));
+    }
     if (mzValues == null) {
       return EMPTY_BUFFER;
     } else {
@@ -95,7 +134,14 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     }
   }
 
+  /**
+   * @return the intensity values. Decodes all values into a new buffer if the values are encoded.
+   */
   DoubleBuffer getIntensityValues() {
+    if (encodedValues != null) {
+      return DoubleBuffer.wrap(
+          getIntensityValues(new double[encodedValues.getNumberOfValues()]));
+    }
     if (intensityValues == null) {
       return EMPTY_BUFFER;
     } else {
@@ -103,8 +149,55 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     }
   }
 
+  @Override
+  public int getNumberOfDataPoints() {
+    if (encodedValues != null) {
+      return encodedValues.getNumberOfValues();
+    }
+    return super.getNumberOfDataPoints();
+  }
+
+  @Override
+  public double getMzValue(int index) {
+    if (encodedValues != null) {
+      return encodedValues.getMz(index);
+    }
+    return super.getMzValue(index);
+  }
+
+  @Override
+  public double getIntensityValue(int index) {
+    if (encodedValues != null) {
+      return encodedValues.getIntensity(index);
+    }
+    return super.getIntensityValue(index);
+  }
+
+  @Override
+  public @Nullable Double getBasePeakMz() {
+    if (encodedValues != null) {
+      return basePeakIndex == null ? null : encodedValues.getMz(basePeakIndex);
+    }
+    return super.getBasePeakMz();
+  }
+
+  @Override
+  public @Nullable Double getBasePeakIntensity() {
+    if (encodedValues != null) {
+      return basePeakIndex == null ? null : encodedValues.getIntensity(basePeakIndex);
+    }
+    return super.getBasePeakIntensity();
+  }
+
   @Override
   public double[] getMzValues(@NotNull double[] dst) {
+    if (encodedValues != null) {
+      if (dst.length < getNumberOfDataPoints()) {
+        dst = new double[getNumberOfDataPoints()];
+      }
+      encodedValues.getMzValues(dst);
+      return dst;
+    }
     if (mzValues == null) {
       return new double[0];
     }
@@ -117,6 +210,13 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
 
   @Override
   public double[] getIntensityValues(@NotNull double[] dst) {
+    if (encodedValues != null) {
+      if (dst.length < getNumberOfDataPoints()) {
+        dst = new double[getNumberOfDataPoints()];
+      }
+      encodedValues.getIntensityValues(dst);
+      return dst;
+    }
     if (intensityValues == null) {
       return new double[0];
     }
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import static io.github.mzmine.util.StorageEncoding.MZ_BLOCK_SIZE;
+
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.StorageEncoding;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * m/z and intensity values of a spectrum stored with a reduced precision
+ * {@link StorageEncoding}. See the encodings for the accuracy bounds.
+ * <p>
+ * {@link StorageEncoding#DELTA_MZ_FLOAT_INTENSITY}: m/z values are rounded to fixed point integers
+ * and written as unsigned variable length integers (7 bits per byte). Every block of
+ * {@link StorageEncoding#MZ_BLOCK_SIZE} values starts with the absolute value, followed by the
+ * differences to the previous value. The byte offsets of the blocks allow random access.
+ */
+final class EncodedSpectrumValues {
+
+  private static final double MZ_SCALE = 1d / StorageEncoding.MZ_FIXED_POINT_RESOLUTION;
+
+  private final int numValues;
+  private final FloatBuffer intensities;
+  /**
+   * m/z values of {@link StorageEncoding#FLOAT_INTENSITY}, otherwise null.
+   */
+  private final @Nullable DoubleBuffer mzs;
+  /**
+   * Encoded m/z values and block offsets of {@link StorageEncoding#DELTA_MZ_FLOAT_INTENSITY},
+   * otherwise null.
+   */
+  private final @Nullable ByteBuffer mzDeltas;
+  private final @Nullable IntBuffer mzBlockOffsets;
+
+  private EncodedSpectrumValues(int numValues, FloatBuffer intensities, @Nullable DoubleBuffer mzs,
+      @Nullable ByteBuffer mzDeltas, @Nullable IntBuffer mzBlockOffsets) {
+    this.numValues = numValues;
+    this.intensities = intensities;
+    this.mzs = mzs;
+    this.mzDeltas = mzDeltas;
+    this.mzBlockOffsets = mzBlockOffsets;
+  }
+
+  /**
+   * @param storage     the storage or null to keep the encoded values in ram
+   * @param encoding    the encoding, not {@link StorageEncoding#DOUBLE}
+   * @param mzs         m/z values sorted ascending
+   * @param intensities intensity values
+   */
+  static EncodedSpectrumValues encode(@Nullable MemoryMapStorage storage,
+      @NotNull StorageEncoding encoding, @NotNull double[] mzs, @NotNull double[] intensities) {
+    assert mzs.length == intensities.length;
+
+    final float[] floatIntensities = new float[intensities.length];
+    for (int i = 0; i < intensities.length; i++) {
+      floatIntensities[i] = (float) intensities[i];
+    }
+    final FloatBuffer intensityBuffer = StorageUtils.storeValuesToFloatBuffer(storage,
+        floatIntensities);
+
+    return switch (encoding) {
+      case FLOAT_INTENSITY -> new EncodedSpectrumValues(mzs.length, intensityBuffer,
+          StorageUtils.storeValuesToDoubleBuffer(storage, mzs), null, null);
+      case DELTA_MZ_FLOAT_INTENSITY -> encodeDeltaMzs(storage, mzs, intensityBuffer);
+      case DOUBLE -> throw new IllegalArgumentException(
+          "Double values are stored in double buffers directly.");
+    };
+  }
+
+  private static EncodedSpectrumValues encodeDeltaMzs(@Nullable MemoryMapStorage storage,
+      @NotNull double[] mzs, FloatBuffer intensityBuffer) {
+    final int[] blockOffsets = new int[(mzs.length + MZ_BLOCK_SIZE - 1) / MZ_BLOCK_SIZE];
+    // most deltas take 2-4 bytes, grow if needed
+    byte[] bytes = new byte[mzs.length * 4 + 16];
+    int pos = 0;
+    long previous = 0;
+    for (int i = 0; i < mzs.length; i++) {
+      if (bytes.length - pos < 10) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+      final long value = Math.round(mzs[i] * MZ_SCALE);
+      final long encoded;
+      if (i % MZ_BLOCK_SIZE == 0) {
+        blockOffsets[i / MZ_BLOCK_SIZE] = pos;
+        encoded = (value << 1) ^ (value >> 63); // zig zag, in case of negative values
+      } else {
+        encoded = value - previous;
+        if (encoded < 0) {
+          throw new IllegalArgumentException("The m/z values must be sorted in ascending order");
+        }
+      }
+      pos = writeVarLong(bytes, pos, encoded);
+      previous = value;
+    }
+
+    return new EncodedSpectrumValues(mzs.length, intensityBuffer, null,
+        StorageUtils.storeValuesToByteBuffer(storage, bytes, pos),
+        StorageUtils.storeValuesToIntBuffer(storage, blockOffsets));
+  }
+
+  private static int writeVarLong(byte[] bytes, int pos, long value) {
+    while ((value & ~0x7FL) != 0) {
+      bytes[pos++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    bytes[pos++] = (byte) value;
+    return pos;
+  }
+
+  int getNumberOfValues() {
+    return numValues;
+  }
+
+  double getIntensity(int index) {
+    return intensities.get(index);
+  }
+
+  double getMz(int index) {
+    if (mzs != null) {
+      return mzs.get(index);
+    }
+    if (index < 0 || index >= numValues) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    final ByteBuffer bytes = mzDeltas;
+    int pos = mzBlockOffsets.get(index / MZ_BLOCK_SIZE);
+    long value = 0;
+    for (int i = 0; i <= index % MZ_BLOCK_SIZE; i++) {
+      long raw = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = bytes.get(pos++);
+        raw |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      value = i == 0 ? (raw >>> 1) ^ -(raw & 1) : value + raw;
+    }
+    return value / MZ_SCALE;
+  }
+
+  /**
+   * @param dst the target array, must have at least {@link #getNumberOfValues()} elements
+   */
+  void getMzValues(double[] dst) {
+    if (mzs != null) {
+      mzs.get(0, dst, 0, numValues);
+      return;
+    }
+    final ByteBuffer bytes = mzDeltas;
+    int pos = 0;
+    long value = 0;
+    for (int i = 0; i < numValues; i++) {
+      long raw = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = bytes.get(pos++);
+        raw |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      value = i % MZ_BLOCK_SIZE == 0 ? (raw >>> 1) ^ -(raw & 1) : value + raw;
+      dst[i] = value / MZ_SCALE;
+    }
+  }
+
+  /**
+   * @param dst the target array, must have at least {@link #getNumberOfValues()} elements
+   */
+  void getIntensityValues(double[] dst) {
+    for (int i = 0; i < numValues; i++) {
+      dst[i] = intensities.get(i);
+    }
+  }
+
+  /**
+   * @return the number of bytes used by the encoded values
+   */
+  long getEncodedBytes() {
+    long bytes = (long) intensities.capacity() * Float.BYTES;
+    if (mzs != null) {
+      bytes += (long) mzs.capacity() * Double.BYTES;
+    }
+    if (mzDeltas != null && mzBlockOffsets != null) {
+      bytes += mzDeltas.capacity() + (long) mzBlockOffsets.capacity() * Integer.BYTES;
+    }
+    return bytes;
+  }
+}
@@ -32,6 +32,7 @@ import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.sql.MaldiSpotInfo;
 import io.github.mzmine.modules.io.import_rawdata_imzml.Coordinates;
+import java.nio.DoubleBuffer;
 import org.jetbrains.annotations.Nullable;
 
 
@@ -55,6 +56,24 @@ public class SimpleImagingScan extends SimpleScan implements ImagingScan {
     this.setCoordinates(coordinates);
   }
 
+  /**
+   * Imaging scan with data that was already stored, e.g., with an m/z buffer that is shared by all
+   * scans of continuous mode imaging data.
+   */
+  public SimpleImagingScan(RawDataFile dataFile, int scanNumber, int msLevel, float retentionTime,
+      double precursorMZ, int precursorCharge, DoubleBuffer mzValues, DoubleBuffer intensityValues,
+      MassSpectrumType spectrumType, PolarityType polarity, String scanDefinition,
+      Range<Double> scanMZRange, Coordinates coordinates) {
+    super(dataFile, scanNumber, msLevel, retentionTime, null, mzValues, intensityValues,
+        spectrumType, polarity, scanDefinition, scanMZRange);
+    if (Double.compare(precursorMZ, 0d) != 0) {
+      setMsMsInfo(new DDAMsMsInfoImpl(precursorMZ, precursorCharge != 0 ? precursorCharge : null,
+          null, this, null, msLevel, null, null));
+    }
+
+    this.setCoordinates(coordinates);
+  }
+
   /**
    * @return the xyz coordinates. null if no coordinates were specified
    */
@@ -34,6 +34,7 @@ import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.msms.MsMsInfo;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.scans.ScanUtils;
+import java.nio.DoubleBuffer;
 import javax.validation.constraints.Null;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -100,6 +101,29 @@ public class SimpleScan extends AbstractStorableSpectrum implements Scan {
   }
 
 
+  /**
+   * Constructor for creating a scan with data that was already stored. The m/z buffer may be shared
+   * between scans.
+   */
+  public SimpleScan(@NotNull RawDataFile dataFile, int scanNumber, int msLevel, float retentionTime,
+      @Nullable MsMsInfo msMsInfo, @NotNull DoubleBuffer mzValues,
+      @NotNull DoubleBuffer intensityValues, MassSpectrumType spectrumType, PolarityType polarity,
+      String scanDefinition, Range<Double> scanMZRange) {
+
+    super(mzValues, intensityValues);
+
+    this.dataFile = dataFile;
+    this.scanNumber = scanNumber;
+    this.msLevel = msLevel;
+    this.retentionTime = retentionTime;
+    this.polarity = polarity;
+    this.scanDefinition = scanDefinition;
+    this.scanMZRange = scanMZRange;
+    setSpectrumType(spectrumType);
+    setMsMsInfo(msMsInfo);
+    this.injectionTime = null;
+  }
+
   /**
    * @see io.github.mzmine.datamodel.Scan#getScanNumber()
    */
@@ -92,13 +92,14 @@ public class SimpleMassList extends AbstractStorableSpectrum implements MassList
   public void saveToXML(XMLStreamWriter writer) throws XMLStreamException {
     writer.writeStartElement(XML_ELEMENT);
 
+    // values may be encoded, use the accessors
+    final int numDp = getNumberOfDataPoints();
     writer.writeStartElement(CONST.XML_MZ_VALUES_ELEMENT);
-    writer.writeCharacters(
-        ParsingUtils.doubleArrayToString(DataPointUtils.getDoubleBufferAsArray(mzValues)));
+    writer.writeCharacters(ParsingUtils.doubleArrayToString(getMzValues(new double[numDp])));
     writer.writeEndElement();
     writer.writeStartElement(CONST.XML_INTENSITY_VALUES_ELEMENT);
     writer.writeCharacters(
-        ParsingUtils.doubleArrayToString(DataPointUtils.getDoubleBufferAsArray(intensityValues)));
+        ParsingUtils.doubleArrayToString(getIntensityValues(new double[numDp])));
     writer.writeEndElement();
 
     writer.writeEndElement();
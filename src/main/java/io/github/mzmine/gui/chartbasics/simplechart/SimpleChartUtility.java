@@ -30,11 +30,18 @@ import io.github.mzmine.gui.chartbasics.chartthemes.EStandardChartTheme;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.ColoredXYDataset;
 import io.github.mzmine.main.MZmineConfiguration;
 import io.github.mzmine.main.MZmineCore;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jetbrains.annotations.Nullable;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.XYPlot;
 import org.jfree.chart.renderer.AbstractRenderer;
+import org.jfree.chart.renderer.xy.XYItemRendererState;
 import org.jfree.data.xy.XYDataset;
 
 /**
@@ -111,6 +118,45 @@ public class SimpleChartUtility {
     return Ints.toArray(indices);
   }
 
+  /**
+   * Selects the level of detail of a {@link ColoredXYDataset} for the current domain range and
+   * size of the data area. Renderers call this method in their initialise method, right before the
+   * items of the dataset are drawn, and skip all items that are not selected, see
+   * {@link #isItemDrawn(BitSet, XYItemRendererState, int)}.
+   *
+   * @param plot     the plot
+   * @param dataset  the dataset to draw
+   * @param dataArea the area the data is drawn in
+   * @return the items to draw or null to draw all items
+   */
+  @Nullable
+  public static BitSet getLevelOfDetail(XYPlot plot, XYDataset dataset, Rectangle2D dataArea) {
+    if (!(dataset instanceof ColoredXYDataset colored) || plot == null || dataArea == null) {
+      return null;
+    }
+    final ValueAxis domainAxis = plot.getDomainAxisForDataset(plot.indexOf(dataset));
+    if (domainAxis == null) {
+      return null;
+    }
+    final double pixels = plot.getOrientation() == PlotOrientation.HORIZONTAL ? dataArea.getHeight()
+        : dataArea.getWidth();
+    return colored.getLevelOfDetail(domainAxis.getLowerBound(), domainAxis.getUpperBound(),
+        (int) Math.ceil(pixels));
+  }
+
+  /**
+   * The first and last visible items are always drawn, renderers finish paths on these items.
+   *
+   * @param levelOfDetail the items selected by
+   *                      {@link #getLevelOfDetail(XYPlot, XYDataset, Rectangle2D)} or null
+   * @return true if the item shall be drawn
+   */
+  public static boolean isItemDrawn(@Nullable BitSet levelOfDetail, XYItemRendererState state,
+      int item) {
+    return levelOfDetail == null || levelOfDetail.get(item) || item == state.getFirstItemIndex()
+           || item == state.getLastItemIndex();
+  }
+
   /**
    * Applies the chart theme from the {@link MZmineConfiguration} to a renderer. This method can be
    * safely used in renderer constructors to be up-to-date, all exceptions are caught.
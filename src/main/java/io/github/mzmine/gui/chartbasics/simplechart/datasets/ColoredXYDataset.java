@@ -43,6 +43,7 @@ import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.javafx.FxColorUtil;
+import java.util.BitSet;
 import java.util.logging.Logger;
 import javafx.application.Platform;
 import javafx.beans.property.ObjectProperty;
@@ -84,6 +85,11 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
   protected Range<Double> domainRange;
   protected Range<Double> rangeRange;
 
+  /**
+   * Decimation pyramid for large series, null if the series is always drawn in full resolution.
+   */
+  protected XYLevelOfDetail levelOfDetail;
+
   private ColoredXYDataset(XYValueProvider xyValueProvider,
       SeriesKeyProvider<Comparable<?>> seriesKeyProvider, LabelTextProvider labelTextProvider,
       ToolTipTextProvider toolTipTextProvider, ColorProvider colorProvider,
@@ -256,6 +262,34 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
     return -1;
   }
 
+  /**
+   * Selects the level of detail for the visible domain range. Large series are decimated to a few
+   * points per pixel, the full resolution is used when zoomed in. The item indices of this dataset
+   * do not change, renderers only skip the items that are not part of the selected level.
+   *
+   * @param lower  lower bound of the visible domain
+   * @param upper  upper bound of the visible domain
+   * @param pixels width of the data area in pixels
+   * @return the item indices to draw or null to draw all items
+   */
+  @Nullable
+  public BitSet getLevelOfDetail(double lower, double upper, int pixels) {
+    final XYLevelOfDetail lod = levelOfDetail;
+    if (lod == null || !valuesComputed) {
+      return null;
+    }
+    return lod.selectLevel(lower, upper, pixels);
+  }
+
+  /**
+   * @return true if large series may be drawn in a reduced level of detail. The decimation only
+   * keeps the extreme range values, datasets with additional values (e.g. z values) need to
+   * override this method.
+   */
+  protected boolean supportsLevelOfDetail() {
+    return true;
+  }
+
   public XYValueProvider getValueProvider() {
     return xyValueProvider;
   }
@@ -306,6 +340,7 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
       return;
     }
 
+    levelOfDetail = null;
     computedItemCount = xyValueProvider.getValueCount();
     isLocalMaximum = new boolean[computedItemCount];
     valuesComputed = true;
@@ -330,6 +365,10 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
     domainRange = computedItemCount > 0 ? Range.closed(minDomain, maxDomain) : Range.closed(0d, 1d);
     rangeRange = computedItemCount > 0 ? Range.closed(minRange, maxRange) : Range.closed(0d, 1d);
 
+    if (supportsLevelOfDetail()) {
+      levelOfDetail = XYLevelOfDetail.build(xyValueProvider, computedItemCount);
+    }
+
 //    if (setToFinished) {
     onCalculationsFinished();
 //    }
@@ -274,4 +274,12 @@ public class ColoredXYZDataset extends ColoredXYDataset implements XYZDataset, P
   protected RunOption getRunOption() {
     return runOption;
   }
+
+  /**
+   * z values are not considered by the decimation, always draw the full resolution.
+   */
+  @Override
+  protected boolean supportsLevelOfDetail() {
+    return false;
+  }
 }
@@ -180,4 +180,12 @@ public class ColoredXYZPieDataset<T> extends ColoredXYDataset implements XYZData
   protected RunOption getRunOption() {
     return runOption;
   }
+
+  /**
+   * z values are not considered by the decimation, always draw the full resolution.
+   */
+  @Override
+  protected boolean supportsLevelOfDetail() {
+    return false;
+  }
 }
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.gui.chartbasics.simplechart.datasets;
+
+import io.github.mzmine.gui.chartbasics.simplechart.providers.XYValueProvider;
+import java.util.Arrays;
+import java.util.BitSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Min-max decimation pyramid for series with ascending domain values. Each level merges
+ * {@link #REDUCTION} buckets of the previous level and keeps the indices of the lowest and highest
+ * data point of each bucket. The shape of a line (peaks, gaps, noise band) is therefore preserved
+ * on all levels, as long as at least two points per pixel are drawn. The first and the last data
+ * point are part of every level to keep the domain bounds.
+ * <p>
+ * Levels only store indices into the {@link XYValueProvider}, the full resolution level is not
+ * stored. Renderers draw all items of the dataset that are part of the selected level, so item
+ * indices of the dataset never change.
+ */
+public class XYLevelOfDetail {
+
+  /**
+   * Series with fewer values are always drawn in full resolution.
+   */
+  public static final int MIN_VALUES = 5_000;
+  /**
+   * Number of data points drawn per pixel of the data area. Min-max decimation needs at least 2.
+   */
+  public static final int POINTS_PER_PIXEL = 4;
+  private static final int REDUCTION = 4;
+  /**
+   * No coarser levels are created below this number of points.
+   */
+  private static final int MIN_LEVEL_SIZE = 500;
+
+  private final XYValueProvider provider;
+  private final int numValues;
+  /**
+   * Levels from fine to coarse. Each level is sorted by index and therefore by domain value.
+   */
+  private final int[][] levels;
+  /**
+   * The items of each level, created on first use
+   */
+  private final BitSet[] levelItems;
+
+  private XYLevelOfDetail(XYValueProvider provider, int numValues, int[][] levels) {
+    this.provider = provider;
+    this.numValues = numValues;
+    this.levels = levels;
+    levelItems = new BitSet[levels.length];
+  }
+
+  /**
+   * @param provider  values have to be computed already
+   * @param numValues the number of values in the provider
+   * @return the pyramid or null if the series is too small or the domain values are not sorted
+   */
+  @Nullable
+  public static XYLevelOfDetail build(@NotNull XYValueProvider provider, int numValues) {
+    if (numValues < MIN_VALUES) {
+      return null;
+    }
+    for (int i = 1; i < numValues; i++) {
+      if (provider.getDomainValue(i) < provider.getDomainValue(i - 1)) {
+        return null;
+      }
+    }
+
+    final int[][] levels = new int[32][];
+    int numLevels = 0;
+    // first level from the full resolution, buckets of REDUCTION values
+    int[] level = decimate(provider, null, numValues, REDUCTION);
+    while (level.length >= MIN_LEVEL_SIZE && level.length < numValues) {
+      levels[numLevels++] = level;
+      // merge REDUCTION buckets with up to two points each
+      final int[] next = decimate(provider, level, level.length, REDUCTION * 2);
+      if (next.length >= level.length) {
+        break;
+      }
+      level = next;
+    }
+    return numLevels == 0 ? null
+        : new XYLevelOfDetail(provider, numValues, Arrays.copyOf(levels, numLevels));
+  }
+
+  /**
+   * @param source     source indices or null for the full resolution
+   * @param sourceSize number of source points
+   * @param bucketSize number of source points per bucket
+   * @return indices of the min and max point per bucket, plus first and last index, ascending
+   */
+  private static int[] decimate(XYValueProvider provider, @Nullable int[] source, int sourceSize,
+      int bucketSize) {
+    final int numBuckets = (sourceSize + bucketSize - 1) / bucketSize;
+    final int[] result = new int[numBuckets * 2 + 2];
+    int n = 0;
+    final int first = source == null ? 0 : source[0];
+    final int last = source == null ? sourceSize - 1 : source[sourceSize - 1];
+    result[n++] = first;
+
+    for (int start = 0; start < sourceSize; start += bucketSize) {
+      final int end = Math.min(start + bucketSize, sourceSize);
+      int minIndex = -1;
+      int maxIndex = -1;
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int i = start; i < end; i++) {
+        final int index = source == null ? i : source[i];
+        final double y = provider.getRangeValue(index);
+        if (y < min) {
+          min = y;
+          minIndex = index;
+        }
+        if (y > max) {
+          max = y;
+          maxIndex = index;
+        }
+      }
+      if (minIndex == -1) {
+        // only NaN values, keep the first to not drop the bucket
+        minIndex = maxIndex = source == null ? start : source[start];
+      }
+      // keep order of the domain
+      final int lower = Math.min(minIndex, maxIndex);
+      final int upper = Math.max(minIndex, maxIndex);
+      if (lower > result[n - 1]) {
+        result[n++] = lower;
+      }
+      if (upper > result[n - 1]) {
+        result[n++] = upper;
+      }
+    }
+    if (last > result[n - 1]) {
+      result[n++] = last;
+    }
+    return Arrays.copyOf(result, n);
+  }
+
+  /**
+   * Selects the finest level that draws at most {@link #POINTS_PER_PIXEL} points per pixel in the
+   * visible domain range.
+   *
+   * @param lower  lower bound of the visible domain
+   * @param upper  upper bound of the visible domain
+   * @param pixels width of the data area in pixels
+   * @return the item indices of the selected level or null if the full resolution shall be used
+   */
+  @Nullable
+  public BitSet selectLevel(double lower, double upper, int pixels) {
+    if (pixels <= 0) {
+      return null;
+    }
+    final long maxPoints = (long) pixels * POINTS_PER_PIXEL;
+    if (countFull(lower, upper) <= maxPoints) {
+      return null;
+    }
+    for (int i = 0; i < levels.length; i++) {
+      if (countLevel(levels[i], lower, upper) <= maxPoints) {
+        return getLevelItems(i);
+      }
+    }
+    return getLevelItems(levels.length - 1);
+  }
+
+  /**
+   * @param level 0 is the finest reduced level
+   * @return the item indices of this level
+   */
+  public synchronized BitSet getLevelItems(int level) {
+    if (levelItems[level] == null) {
+      final BitSet items = new BitSet(numValues);
+      for (int index : levels[level]) {
+        items.set(index);
+      }
+      levelItems[level] = items;
+    }
+    return levelItems[level];
+  }
+
+  public int getNumberOfLevels() {
+    return levels.length;
+  }
+
+  /**
+   * @param level 0 is the finest reduced level
+   * @return number of points of this level
+   */
+  public int getLevelSize(int level) {
+    return levels[level].length;
+  }
+
+  private int countFull(double lower, double upper) {
+    final int from = lowerBound(null, numValues, lower);
+    final int to = upperBound(null, numValues, upper);
+    return Math.max(0, to - from);
+  }
+
+  private int countLevel(int[] level, double lower, double upper) {
+    final int from = lowerBound(level, level.length, lower);
+    final int to = upperBound(level, level.length, upper);
+    return Math.max(0, to - from);
+  }
+
+  /**
+   * @return first position with a domain value >= value
+   */
+  private int lowerBound(@Nullable int[] level, int size, double value) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (domainValue(level, mid) < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return first position with a domain value > value
+   */
+  private int upperBound(@Nullable int[] level, int size, double value) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (domainValue(level, mid) <= value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private double domainValue(@Nullable int[] level, int position) {
+    return provider.getDomainValue(level == null ? position : level[position]);
+  }
+}
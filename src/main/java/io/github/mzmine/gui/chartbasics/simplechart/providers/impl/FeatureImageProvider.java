@@ -36,10 +36,10 @@ import io.github.mzmine.gui.chartbasics.simplechart.providers.PlotXYZDataProvide
 import io.github.mzmine.gui.preferences.ImageNormalization;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.import_rawdata_imzml.ImagingParameters;
-import io.github.mzmine.modules.visualization.image.ImagingPlot;
+import io.github.mzmine.modules.visualization.image.tiles.ImagePixels;
+import io.github.mzmine.modules.visualization.image.tiles.ImageTilePyramid;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.FeatureUtils;
-import io.github.mzmine.util.MathUtils;
 import java.awt.Color;
 import java.util.List;
 import java.util.logging.Logger;
@@ -59,6 +59,8 @@ public class FeatureImageProvider<T extends ImagingScan> implements PlotXYZDataP
   private double height;
   private final List<T> selectedScans;
   private final ImageNormalization normalize;
+  private final int maxImageSize;
+  private ImagePixels pixels;
   protected PaintScale paintScale = null;
 
   public FeatureImageProvider(Feature feature) {
@@ -68,9 +70,20 @@ public class FeatureImageProvider<T extends ImagingScan> implements PlotXYZDataP
 
   public FeatureImageProvider(Feature feature, @NotNull List<T> selectedScans,
       ImageNormalization normalize) {
+    this(feature, selectedScans, normalize, 0);
+  }
+
+  /**
+   * @param maxImageSize the maximum size of the rendered image in pixels. Larger images are
+   *                     rendered from a down sampled level of the {@link ImageTilePyramid}. 0 for
+   *                     the full resolution.
+   */
+  public FeatureImageProvider(Feature feature, @NotNull List<T> selectedScans,
+      ImageNormalization normalize, int maxImageSize) {
     this.feature = feature;
     this.selectedScans = selectedScans;
     this.normalize = normalize;
+    this.maxImageSize = maxImageSize;
     if (normalize == ImageNormalization.NO_NORMALIZATION) {
       series = (IonTimeSeries<T>) feature.getFeatureData();
     }
@@ -118,43 +131,41 @@ public class FeatureImageProvider<T extends ImagingScan> implements PlotXYZDataP
     height = imagingParam.getLateralHeight() / imagingParam.getMaxNumberOfPixelY();
     width = imagingParam.getLateralWidth() / imagingParam.getMaxNumberOfPixelX();
 
+    ImageTilePyramid pyramid = null;
     try {
       final IonTimeSeries<T> featureData = (IonTimeSeries<T>) feature.getFeatureData();
-      if (normalize != null && selectedScans != null && !selectedScans.isEmpty()) {
-        series = normalize.normalize(featureData, (List<T>) selectedScans, null);
-      } else {
-        series = featureData;
-      }
+      // the pyramid is cached per feature and shared with all other views of this image
+      pyramid = ImageTilePyramid.of(featureData, normalize, selectedScans);
+      series = (IonTimeSeries<T>) pyramid.getSeries();
     } catch (ClassCastException e) {
       logger.info("Cannot cast feature data to IonTimeSeries<? extends ImagingScan> for feature "
           + FeatureUtils.featureToString(feature));
     }
 
-    if (series == null) {
+    if (pyramid == null) {
       throw new IllegalStateException(
           "Could not create image provider for feature " + FeatureUtils.featureToString(feature));
     }
 
-    double[] intensities = series.getIntensityValues(new double[series.getNumberOfValues()]);
-    final double[] quantiles = MathUtils.calcQuantile(intensities,
-        ImagingPlot.DEFAULT_IMAGING_QUANTILES);
+    pixels = pyramid.getPixels(pyramid.getLevelForMaxSize(maxImageSize));
+    final double[] quantiles = pyramid.getIntensityQuantiles();
     paintScale = MZmineCore.getConfiguration().getDefaultPaintScalePalette()
         .toPaintScale(PaintScaleTransform.LINEAR, Range.closed(quantiles[0], quantiles[1]));
   }
 
   @Override
   public double getDomainValue(int index) {
-    return series.getSpectra().get(index).getCoordinates().getX() * width;
+    return pixels.getCenterX(index) * width;
   }
 
   @Override
   public double getRangeValue(int index) {
-    return series.getSpectra().get(index).getCoordinates().getY() * height;
+    return pixels.getCenterY(index) * height;
   }
 
   @Override
   public int getValueCount() {
-    return series.getSpectra().size();
+    return pixels.getNumberOfPixels();
   }
 
   @Override
@@ -164,23 +175,23 @@ public class FeatureImageProvider<T extends ImagingScan> implements PlotXYZDataP
 
   @Override
   public double getZValue(int index) {
-    return series.getIntensity(index);
+    return pixels.intensities()[index];
   }
 
   @Nullable
   @Override
   public Double getBoxHeight() {
-    return height;
+    return height * pixels.getBlockSize();
   }
 
   @Nullable
   @Override
   public Double getBoxWidth() {
-    return width;
+    return width * pixels.getBlockSize();
   }
 
   @Override
   public T getSpectrum(int index) {
-    return series.getSpectrum(index);
+    return series.getSpectrum(pixels.sourceIndices()[index]);
   }
 }
@@ -34,6 +34,7 @@ import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
 import org.jfree.chart.LegendItem;
 import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.entity.EntityCollection;
@@ -60,6 +61,10 @@ public class ColoredXYBarRenderer extends XYBarRenderer {
 
   private boolean isTransparent;
   private XYDataset currentDataset;
+  /**
+   * Items of the current dataset to draw, null to draw all
+   */
+  private transient BitSet levelOfDetail;
 
   public ColoredXYBarRenderer(boolean isTransparent) {
     this.isTransparent = isTransparent;
@@ -78,13 +83,21 @@ public class ColoredXYBarRenderer extends XYBarRenderer {
     return null;
   }
 
+  @Override
+  public XYItemRendererState initialise(Graphics2D g2, Rectangle2D dataArea, XYPlot plot,
+      XYDataset dataset, PlotRenderingInfo info) {
+    levelOfDetail = SimpleChartUtility.getLevelOfDetail(plot, dataset, dataArea);
+    return super.initialise(g2, dataArea, plot, dataset, info);
+  }
+
   @Override
   public void drawItem(Graphics2D g2, XYItemRendererState state,
       Rectangle2D dataArea, PlotRenderingInfo info, XYPlot plot,
       ValueAxis domainAxis, ValueAxis rangeAxis, XYDataset dataset,
       int series, int item, CrosshairState crosshairState, int pass) {
 
-    if (!getItemVisible(series, item)) {
+    if (!getItemVisible(series, item) || !SimpleChartUtility.isItemDrawn(levelOfDetail, state,
+        item)) {
       return;
     }
 
@@ -34,6 +34,7 @@ import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
 import org.jfree.chart.LegendItem;
 import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.entity.EntityCollection;
@@ -62,6 +63,10 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
   private double transparency = 1.0f;
 
   private XYDataset currentDataset;
+  /**
+   * Items of the current dataset to draw, null to draw all
+   */
+  private transient BitSet levelOfDetail;
 
   public ColoredXYLineRenderer() {
     super(true, false);
@@ -80,10 +85,22 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
     super.drawItemLabel(g2, orientation, dataset, series, item, x, y, negative);
   }
 
+  @Override
+  public XYItemRendererState initialise(Graphics2D g2, Rectangle2D dataArea, XYPlot plot,
+      XYDataset dataset, PlotRenderingInfo info) {
+    // skipped items are only connected correctly if the series is drawn as one path
+    levelOfDetail = getDrawSeriesLineAsPath() ? SimpleChartUtility.getLevelOfDetail(plot, dataset,
+        dataArea) : null;
+    return super.initialise(g2, dataArea, plot, dataset, info);
+  }
+
   @Override
   public void drawItem(Graphics2D g2, XYItemRendererState state, Rectangle2D dataArea,
       PlotRenderingInfo info, XYPlot plot, ValueAxis domainAxis, ValueAxis rangeAxis,
       XYDataset dataset, int series, int item, CrosshairState crosshairState, int pass) {
+    if (!SimpleChartUtility.isItemDrawn(levelOfDetail, state, item)) {
+      return;
+    }
 
     g2.setComposite(makeComposite(transparency));
     currentDataset = dataset;
@@ -34,6 +34,7 @@ import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.Paint;
 import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
 import org.jfree.chart.LegendItem;
 import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.labels.XYSeriesLabelGenerator;
@@ -58,6 +59,10 @@ public class ColoredXYShapeRenderer extends XYAreaRenderer {
   private static final long serialVersionUID = 1L;
   private static final float OPACITY = 0.45f;
   private XYDataset currentDataset;
+  /**
+   * Items of the current dataset to draw, null to draw all
+   */
+  private transient BitSet levelOfDetail;
 
   public ColoredXYShapeRenderer() {
     super();
@@ -69,11 +74,21 @@ public class ColoredXYShapeRenderer extends XYAreaRenderer {
     return AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha);
   }
 
+  @Override
+  public XYItemRendererState initialise(Graphics2D g2, Rectangle2D dataArea, XYPlot plot,
+      XYDataset dataset, PlotRenderingInfo info) {
+    levelOfDetail = SimpleChartUtility.getLevelOfDetail(plot, dataset, dataArea);
+    return super.initialise(g2, dataArea, plot, dataset, info);
+  }
+
   @Override
   public void drawItem(final Graphics2D g2, final XYItemRendererState state,
       final Rectangle2D dataArea, final PlotRenderingInfo info, final XYPlot plot,
       final ValueAxis domainAxis, final ValueAxis rangeAxis, final XYDataset dataSet,
       final int series, final int item, final CrosshairState crosshairState, final int pass) {
+    if (!SimpleChartUtility.isItemDrawn(levelOfDetail, state, item)) {
+      return;
+    }
 
     currentDataset = dataSet;
 
@@ -35,7 +35,9 @@ import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
 import io.github.mzmine.parameters.parametertypes.HiddenParameter;
+import io.github.mzmine.parameters.parametertypes.IntegerParameter;
 import io.github.mzmine.parameters.parametertypes.OptOutParameter;
+import io.github.mzmine.parameters.parametertypes.OptionalParameter;
 import io.github.mzmine.parameters.parametertypes.WindowSettingsParameter;
 import io.github.mzmine.parameters.parametertypes.colorpalette.ColorPaletteParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.DirectoryParameter;
@@ -45,6 +47,8 @@ import io.github.mzmine.parameters.parametertypes.paintscale.PaintScalePalettePa
 import io.github.mzmine.parameters.parametertypes.submodules.OptionalModuleParameter;
 import io.github.mzmine.parameters.parametertypes.submodules.ParameterSetParameter;
 import io.github.mzmine.util.ExitCode;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.StorageEncoding;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import java.io.File;
 import java.text.DecimalFormat;
@@ -155,6 +159,25 @@ public class MZminePreferences extends SimpleParameterSet {
       KeepInMemory.ALL, KeepInMemory.MASSES_AND_FEATURES), KeepInMemory.values(),
       KeepInMemory.NONE);
 
+  public static final ComboParameter<StorageEncoding> rawDataEncoding = new ComboParameter<>(
+      "Raw data encoding",
+      "Encoding of m/z and intensity values of memory mapped raw scans. Reduced precision "
+          + "encodings need less space in the temp directory: float intensities (relative error "
+          + "< 6E-8) and delta encoded m/z values (absolute error < 5E-8). Only applies to data "
+          + "imported afterwards.", StorageEncoding.values(), StorageEncoding.DOUBLE);
+
+  public static final ComboParameter<StorageEncoding> massListEncoding = new ComboParameter<>(
+      "Mass list encoding",
+      "Encoding of m/z and intensity values of memory mapped mass lists. See raw data encoding. "
+          + "Only applies to mass lists detected afterwards.", StorageEncoding.values(),
+      StorageEncoding.DOUBLE);
+
+  public static final OptionalParameter<IntegerParameter> spectralLibraryCache =
+      new OptionalParameter<>(new IntegerParameter("Spectral library cache (GB)",
+          "Parsed spectral libraries are cached in the MZmine user directory and load faster when "
+              + "imported again. The least recently used libraries are removed from the cache "
+              + "above this size. Uncheck to disable the cache.", 5, 1, null), true);
+
   /*public static final BooleanParameter applyTimsPressureCompensation = new BooleanParameter(
       "Use MALDI-TIMS pressure compensation", """
       Specifies if mobility values from Bruker timsTOF fleX MALDI raw data shall be recalibrated using a Bruker algorithm.
@@ -184,7 +207,8 @@ public class MZminePreferences extends SimpleParameterSet {
 
   public MZminePreferences() {
     super(// start with performance
-        numOfThreads, memoryOption, tempDirectory, proxySettings, rExecPath, sendStatistics,
+        numOfThreads, memoryOption, rawDataEncoding, massListEncoding, tempDirectory,
+        spectralLibraryCache, proxySettings, rExecPath, sendStatistics,
         /*applyTimsPressureCompensation,*/
         // visuals
         // number formats
@@ -210,8 +234,9 @@ public class MZminePreferences extends SimpleParameterSet {
 
     // add groups
     dialog.addParameterGroup("General",
-        new Parameter[]{numOfThreads, memoryOption, tempDirectory, proxySettings, rExecPath,
-            sendStatistics/*, applyTimsPressureCompensation*/});
+        new Parameter[]{numOfThreads, memoryOption, rawDataEncoding, massListEncoding,
+            tempDirectory, spectralLibraryCache, proxySettings, rExecPath, sendStatistics
+            /*, applyTimsPressureCompensation*/});
     dialog.addParameterGroup("Formats",
         new Parameter[]{mzFormat, rtFormat, mobilityFormat, ccsFormat, intensityFormat, ppmFormat,
             scoreFormat, unitFormat});
@@ -237,6 +262,7 @@ public class MZminePreferences extends SimpleParameterSet {
     final KeepInMemory keepInMemory = MZmineCore.getConfiguration().getPreferences()
         .getParameter(MZminePreferences.memoryOption).getValue();
     keepInMemory.enforceToMemoryMapping();
+    applyStorageEncodings();
 
     final Themes theme = getValue(MZminePreferences.theme);
     theme.apply(MZmineCore.getDesktop().getMainWindow().getScene().getStylesheets());
@@ -272,11 +298,22 @@ public class MZminePreferences extends SimpleParameterSet {
         getValue(MZminePreferences.scoreFormat), getValue(MZminePreferences.unitFormat));
   }
 
+  /**
+   * Applies the storage encodings to new memory mapped raw data and mass lists.
+   */
+  public void applyStorageEncodings() {
+    final StorageEncoding raw = getValue(MZminePreferences.rawDataEncoding);
+    final StorageEncoding masses = getValue(MZminePreferences.massListEncoding);
+    MemoryMapStorage.setRawDataEncoding(raw != null ? raw : StorageEncoding.DOUBLE);
+    MemoryMapStorage.setMassListEncoding(masses != null ? masses : StorageEncoding.DOUBLE);
+  }
+
   @Override
   public void loadValuesFromXML(Element xmlElement) {
     super.loadValuesFromXML(xmlElement);
     updateSystemProxySettings();
     updateGuiFormat();
+    applyStorageEncodings();
   }
 
   private void updateSystemProxySettings() {
@@ -59,6 +59,7 @@ public class MZmineArgumentParser {
   private boolean loadTsfProfile = false;
   private KeepInMemory isKeepInMemory = null;
   private String numCores;
+  private @Nullable Integer serverPort;
 
   public void parse(String[] args) {
     Options options = new Options();
@@ -104,6 +105,14 @@ public class MZmineArgumentParser {
     keepRunning.setRequired(false);
     options.addOption(keepRunning);
 
+    Option server = new Option(null, "server", true, """
+        keep MZmine running in headless mode and accept batch jobs on http://localhost:<port>/jobs.
+        POST a batch file to submit a job, GET /jobs/<id> for the status and DELETE to cancel.
+        Requests need the header "Authorization: Bearer <token>" with the token from the file
+        .mzmine/batch_server_token in the user directory""");
+    server.setRequired(false);
+    options.addOption(server);
+
     Option keepInMemory = new Option("m", "memory", true,
         "keep objects (scan data, features, etc) in memory. Options: none, all, features, centroids, raw, masses_features (masses_features for features and centroids)");
     keepInMemory.setRequired(false);
@@ -194,6 +203,16 @@ public class MZmineArgumentParser {
             () -> "the -r / --running argument was set to keep MZmine alive after batch is finished");
       }
 
+      String sserver = cmd.getOptionValue(server.getLongOpt());
+      if (sserver != null) {
+        try {
+          serverPort = Integer.parseInt(sserver.trim());
+        } catch (NumberFormatException e) {
+          throw new ParseException("The --server port needs to be an integer: " + sserver);
+        }
+        logger.info(() -> "the --server argument was set to accept batch jobs on port " + sserver);
+      }
+
       String keepInData = cmd.getOptionValue(keepInMemory.getLongOpt());
       if (keepInData != null) {
         isKeepInMemory = KeepInMemory.parse(keepInData);
@@ -250,6 +269,16 @@ public class MZmineArgumentParser {
     return isKeepRunningAfterBatch;
   }
 
+  /**
+   * Run a batch job server on this port on localhost
+   *
+   * @return the port if --server was set as argument, otherwise null
+   */
+  @Nullable
+  public Integer getServerPort() {
+    return serverPort;
+  }
+
   /**
    * Keep all {@link io.github.mzmine.util.MemoryMapStorage} items in RAM (e.g., scans, features,
    * masslists)
@@ -39,6 +39,7 @@ import io.github.mzmine.main.impl.MZmineConfigurationImpl;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.modules.MZmineRunnableModule;
 import io.github.mzmine.modules.batchmode.BatchModeModule;
+import io.github.mzmine.modules.batchmode.server.BatchJobServer;
 import io.github.mzmine.modules.visualization.projectmetadata.table.MetadataTable;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.project.ProjectManager;
@@ -131,8 +132,11 @@ public final class MZmineCore {
       logger.finest("Default temporary directory is " + System.getProperty("java.io.tmpdir"));
 
       // Remove old temporary files on a new thread
-      Thread cleanupThread = new Thread(new TmpFileCleanup()); // check regular temp dir
+      Thread cleanupThread = new Thread(new TmpFileCleanup(),
+          "Temp file cleanup"); // check regular temp dir
       cleanupThread.setPriority(Thread.MIN_PRIORITY);
+      // never keep the JVM alive for clean up, e.g., after a short headless batch
+      cleanupThread.setDaemon(true);
       cleanupThread.start();
 
       MZmineArgumentParser argsParser = new MZmineArgumentParser();
@@ -198,7 +202,8 @@ public final class MZmineCore {
       File batchFile = argsParser.getBatchFile();
       File[] overrideDataFiles = argsParser.getOverrideDataFiles();
       File[] overrideSpectralLibraryFiles = argsParser.getOverrideSpectralLibrariesFiles();
-      boolean keepRunningInHeadless = argsParser.isKeepRunningAfterBatch();
+      final Integer serverPort = argsParser.getServerPort();
+      boolean keepRunningInHeadless = argsParser.isKeepRunningAfterBatch() || serverPort != null;
 
       // track version use
       String versionString = "MZmine version " + version;
@@ -235,6 +240,11 @@ public final class MZmineCore {
               overrideSpectralLibraryFiles, Instant.now());
         }
 
+        // accept batch jobs in this JVM
+        if (serverPort != null) {
+          BatchJobServer.start(serverPort);
+        }
+
         // option to keep MZmine running after the batch is finished
         // currently used to test - maybe useful to provide an API to access more data or to run other modules on demand
         if (!keepRunningInHeadless) {
@@ -537,8 +547,9 @@ public final class MZmineCore {
       logger.finest(
           () -> "Working temporary directory is " + FileAndPathUtil.getTempDir().toString());
       // check the new temp dir for old files.
-      Thread cleanupThread2 = new Thread(new TmpFileCleanup());
+      Thread cleanupThread2 = new Thread(new TmpFileCleanup(), "Temp file cleanup");
       cleanupThread2.setPriority(Thread.MIN_PRIORITY);
+      cleanupThread2.setDaemon(true);
       cleanupThread2.start();
     }
   }
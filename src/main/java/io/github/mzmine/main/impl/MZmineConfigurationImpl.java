@@ -81,15 +81,18 @@ public class MZmineConfigurationImpl implements MZmineConfiguration {
   private final EncryptionKeyParameter globalEncrypter;
 
   private final Map<Class<? extends MZmineModule>, ParameterSet> moduleParameters;
+  // module parameters from the configuration file by module class name. Modules and their
+  // parameters are only created when used for the first time
+  private final Map<String, Element> pendingModuleParameters = new Hashtable<>();
 
-  private final EStandardChartTheme standardChartTheme;
+  // created on first use to keep chart classes out of headless runs
+  private EStandardChartTheme standardChartTheme;
 
   public MZmineConfigurationImpl() {
     moduleParameters = new Hashtable<Class<? extends MZmineModule>, ParameterSet>();
     preferences = new MZminePreferences();
     lastProjects = new FileNameListSilentParameter("Last projects");
     globalEncrypter = new EncryptionKeyParameter();
-    standardChartTheme = new EStandardChartTheme("default");
   }
 
   @Override
@@ -139,6 +142,14 @@ public class MZmineConfigurationImpl implements MZmineConfiguration {
 
       // Add the parameter set to the configuration
       parameters.setModuleNameAttribute(MZmineCore.getModuleInstance(moduleClass).getName());
+      final Element pending = pendingModuleParameters.remove(moduleClass.getName());
+      if (pending != null) {
+        try {
+          parameters.loadValuesFromXML(pending);
+        } catch (Exception e) {
+          logger.log(Level.WARNING, "Failed to load configuration for module " + moduleClass, e);
+        }
+      }
       moduleParameters.put(moduleClass, parameters);
 
     }
@@ -160,6 +171,7 @@ public class MZmineConfigurationImpl implements MZmineConfiguration {
           "Given parameter set is an instance of " + parameters.getClass() + " instead of "
           + parametersClass);
     }
+    pendingModuleParameters.remove(moduleClass.getName());
     moduleParameters.put(moduleClass, parameters);
 
   }
@@ -289,26 +301,20 @@ public class MZmineConfigurationImpl implements MZmineConfiguration {
       for (int i = 0; i < nodes.getLength(); i++) {
         Element moduleElement = (Element) nodes.item(i);
         String moduleClassName = moduleElement.getAttribute("class");
+        var parameterElement = (Element) moduleElement.getElementsByTagName("parameters").item(0);
+        if (parameterElement == null) {
+          continue;
+        }
 
+        // only apply directly to modules that are already in use, all others are loaded lazily
+        final ParameterSet moduleParameters = findModuleParameters(moduleClassName);
+        if (moduleParameters == null) {
+          pendingModuleParameters.put(moduleClassName, parameterElement);
+          continue;
+        }
         try {
-          Class<? extends MZmineModule> moduleClass = (Class<? extends MZmineModule>) Class.forName(
-              moduleClassName);
-
-          ParameterSet moduleParameters = getModuleParameters(moduleClass);
-          if (moduleParameters == null) {
-            logger.info(
-                "Module %s was in the config file but was not found in the current version of MZmine".formatted(
-                    moduleClass.getName()));
-          }
-
-          MZmineModule moduleInstance = MZmineCore.getModuleInstance(moduleClass);
-          if (moduleInstance != null && moduleInstance.getParameterSetClass() == null) {
-            // some modules do not have a parameterset class
-            continue;
-          }
-          var parameterElement = (Element) moduleElement.getElementsByTagName("parameters").item(0);
           moduleParameters.loadValuesFromXML(parameterElement);
-        } catch (Exception | NoClassDefFoundError e) {
+        } catch (Exception e) {
           logger.log(Level.WARNING, "Failed to load configuration for module " + moduleClassName,
               e);
         }
@@ -320,6 +326,41 @@ public class MZmineConfigurationImpl implements MZmineConfiguration {
     }
   }
 
+  /**
+   * @return the parameters of a module that were already created or null
+   */
+  @Nullable
+  private ParameterSet findModuleParameters(String moduleClassName) {
+    for (var entry : moduleParameters.entrySet()) {
+      if (entry.getKey().getName().equals(moduleClassName)) {
+        return entry.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Creates the parameter sets of all modules that were loaded from the configuration but not
+   * used yet
+   */
+  @SuppressWarnings("unchecked")
+  private void initPendingModuleParameters() {
+    final List<String> classNames;
+    synchronized (pendingModuleParameters) {
+      classNames = new ArrayList<>(pendingModuleParameters.keySet());
+    }
+    for (String className : classNames) {
+      try {
+        getModuleParameters((Class<? extends MZmineModule>) Class.forName(className));
+      } catch (Exception | NoClassDefFoundError e) {
+        logger.info(
+            "Module %s was in the config file but was not found in the current version of MZmine".formatted(
+                className));
+      }
+      pendingModuleParameters.remove(className);
+    }
+  }
+
   @Override
   public void saveConfiguration(File file) throws IOException {
     try {
@@ -345,6 +386,11 @@ public class MZmineConfigurationImpl implements MZmineConfiguration {
       Element modulesElement = configuration.createElement("modules");
       configRoot.appendChild(modulesElement);
 
+      if (skipSensitive) {
+        // sensitive values can only be removed from initialized parameter sets
+        initPendingModuleParameters();
+      }
+
       // traverse modules
       List<MZmineModule> allModules = new ArrayList<>(MZmineCore.getAllModules());
       for (MZmineModule module : allModules) {
@@ -365,6 +411,16 @@ public class MZmineConfigurationImpl implements MZmineConfiguration {
         }
       }
 
+      // keep the loaded configuration of modules that were not used
+      synchronized (pendingModuleParameters) {
+        for (var entry : pendingModuleParameters.entrySet()) {
+          Element moduleElement = configuration.createElement("module");
+          moduleElement.setAttribute("class", entry.getKey());
+          modulesElement.appendChild(moduleElement);
+          moduleElement.appendChild(configuration.importNode(entry.getValue(), true));
+        }
+      }
+
       // save encryption key to local config only
       // ATTENTION: this should to be written after all other configs
       final SimpleParameterSet encSet = new SimpleParameterSet(globalEncrypter);
@@ -454,7 +510,10 @@ public class MZmineConfigurationImpl implements MZmineConfiguration {
   }
 
   @Override
-  public EStandardChartTheme getDefaultChartTheme() {
+  public synchronized EStandardChartTheme getDefaultChartTheme() {
+    if (standardChartTheme == null) {
+      standardChartTheme = new EStandardChartTheme("default");
+    }
     // update the theme settings first
     ChartThemeParameters ctp = this.getDefaultChartThemeParameters();
     ctp.applyToChartTheme(standardChartTheme);
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.impl.WrappedTask;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * State of a single data file that flows through the pipelined per-file steps of a batch
+ * independently of all other files. Used by {@link BatchTask} to replace the barrier after each
+ * step with one barrier after the last per-file step.
+ */
+class BatchFileLane {
+
+  /**
+   * The file to import if the first pipelined step is the data import. null otherwise
+   */
+  @Nullable
+  private final File importFile;
+  @Nullable
+  private RawDataFile dataFile;
+  @NotNull
+  private List<FeatureList> featureLists = List.of();
+  /**
+   * Index of the next batch step in the queue
+   */
+  private int nextStep;
+  @Nullable
+  private WrappedTask[] runningTasks;
+  @Nullable
+  private ParameterSet runningParameters;
+  @NotNull
+  private List<FeatureList> beforeFeatureLists = List.of();
+  /**
+   * Data files added to the project by the running step, in the order they were added
+   */
+  @NotNull
+  private final List<RawDataFile> createdDataFiles = new ArrayList<>();
+
+  BatchFileLane(@NotNull File importFile) {
+    this.importFile = importFile;
+  }
+
+  BatchFileLane(@NotNull RawDataFile dataFile, @NotNull List<FeatureList> featureLists) {
+    this.importFile = null;
+    this.dataFile = dataFile;
+    this.featureLists = featureLists;
+  }
+
+  @Nullable
+  File getImportFile() {
+    return importFile;
+  }
+
+  @Nullable
+  RawDataFile getDataFile() {
+    return dataFile;
+  }
+
+  void setDataFile(@Nullable RawDataFile dataFile) {
+    this.dataFile = dataFile;
+  }
+
+  @NotNull
+  List<FeatureList> getFeatureLists() {
+    return featureLists;
+  }
+
+  void setFeatureLists(@NotNull List<FeatureList> featureLists) {
+    this.featureLists = featureLists;
+  }
+
+  int getNextStep() {
+    return nextStep;
+  }
+
+  /**
+   * @return true if the step is running or waiting for its tasks
+   */
+  boolean isRunning() {
+    return runningParameters != null;
+  }
+
+  @Nullable
+  WrappedTask[] getRunningTasks() {
+    return runningTasks;
+  }
+
+  @Nullable
+  ParameterSet getRunningParameters() {
+    return runningParameters;
+  }
+
+  @NotNull
+  List<FeatureList> getBeforeFeatureLists() {
+    return beforeFeatureLists;
+  }
+
+  @NotNull
+  List<RawDataFile> getCreatedDataFiles() {
+    return createdDataFiles;
+  }
+
+  void addCreatedDataFiles(@NotNull List<RawDataFile> files) {
+    createdDataFiles.addAll(files);
+  }
+
+  /**
+   * Mark the next step as started
+   *
+   * @param parameters         the lane specific copy of the step parameters
+   * @param tasks              the submitted tasks, may be empty if the module did not create
+   *                           tasks
+   * @param beforeFeatureLists project feature lists before the step was started
+   */
+  void startStep(@NotNull ParameterSet parameters, @NotNull WrappedTask[] tasks,
+      @NotNull List<FeatureList> beforeFeatureLists) {
+    this.runningParameters = parameters;
+    this.runningTasks = tasks;
+    this.beforeFeatureLists = beforeFeatureLists;
+  }
+
+  void finishStep() {
+    runningParameters = null;
+    runningTasks = null;
+    beforeFeatureLists = List.of();
+    createdDataFiles.clear();
+    nextStep++;
+  }
+
+  /**
+   * @return true if any of the running tasks is not finished yet
+   */
+  boolean hasUnfinishedTasks() {
+    if (runningTasks == null) {
+      return false;
+    }
+    for (WrappedTask task : runningTasks) {
+      if (task.getActualTask().getStatus() != TaskStatus.FINISHED) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if a task of the running step is executed by the current thread
+   */
+  boolean isRunningOnCurrentThread() {
+    if (runningTasks == null) {
+      return false;
+    }
+    for (WrappedTask task : runningTasks) {
+      if (task.isRunningOnCurrentThread()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  void cancelRunningTasks() {
+    if (runningTasks == null) {
+      return;
+    }
+    for (WrappedTask task : runningTasks) {
+      task.getActualTask().cancel();
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (dataFile != null) {
+      return dataFile.getName();
+    }
+    return importFile != null ? importFile.getName() : "empty lane";
+  }
+}
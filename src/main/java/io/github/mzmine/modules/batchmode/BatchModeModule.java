@@ -35,6 +35,7 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.DialogLoggerUtil;
 import io.github.mzmine.util.ExitCode;
 import java.io.File;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -45,9 +46,11 @@ import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
 
 /**
  * Batch mode module
@@ -88,43 +91,11 @@ public class BatchModeModule implements MZmineProcessingModule {
     logger.info("Running batch from file " + batchFile);
 
     try {
-      DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-      Document parsedBatchXML = docBuilder.parse(batchFile);
-
-      List<String> errorMessages = new ArrayList<>();
-      BatchQueue newQueue = BatchQueue.loadFromXml(parsedBatchXML.getDocumentElement(),
-          errorMessages);
-
-      // versions might have changed
-      if (!errorMessages.isEmpty()) {
-        logger.log(Level.WARNING, "Warnings during batch file import:");
-        for (final String errorMessage : errorMessages) {
-          logger.log(Level.WARNING, errorMessage);
-        }
-      }
-
-      // change input files and spectral libraries, e.g., by command line arguments
-      if (overrideDataFiles != null || overrideSpectralLibraryFiles !=null) {
-        if (!newQueue.setImportFiles(overrideDataFiles, overrideSpectralLibraryFiles)) {
-          if (overrideDataFiles != null) {
-            logger.log(Level.SEVERE,
-                "Could not change the input files to " + Arrays.stream(overrideDataFiles)
-                    .map(file -> file != null ? file.getAbsolutePath() : "null")
-                    .collect(Collectors.joining("\n")));
-          }
-          if (overrideSpectralLibraryFiles != null) {
-            logger.log(Level.SEVERE,
-                "Could not change the import spectral library files to " + Arrays.stream(overrideSpectralLibraryFiles)
-                    .map(file -> file != null ? file.getAbsolutePath() : "null")
-                    .collect(Collectors.joining("\n")));
-          }
-          return ExitCode.ERROR;
-        }
+      final BatchTask batchTask = createBatchTask(project, batchFile, overrideDataFiles,
+          overrideSpectralLibraryFiles, moduleCallDate);
+      if (batchTask == null) {
+        return ExitCode.ERROR;
       }
-
-      ParameterSet parameters = new BatchModeParameters();
-      parameters.getParameter(BatchModeParameters.batchQueue).setValue(newQueue);
-      Task batchTask = new BatchTask(project, parameters, moduleCallDate);
       batchTask.run();
       if (batchTask.getStatus() == TaskStatus.FINISHED) {
         return ExitCode.OK;
@@ -138,6 +109,78 @@ public class BatchModeModule implements MZmineProcessingModule {
     }
   }
 
+  /**
+   * Loads the batch queue from a batch file and creates a batch task with the batch mode settings
+   * of the configuration. The task is not started.
+   *
+   * @param batchFile                    local file
+   * @param overrideDataFiles            change the data import to those files if not null
+   * @param overrideSpectralLibraryFiles change the spectral libraries imported
+   * @return the batch task or null if the import files could not be changed
+   */
+  @Nullable
+  public static BatchTask createBatchTask(@NotNull MZmineProject project, File batchFile,
+      @Nullable File[] overrideDataFiles, final File[] overrideSpectralLibraryFiles,
+      @NotNull Instant moduleCallDate)
+      throws ParserConfigurationException, IOException, SAXException {
+    DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+    Document parsedBatchXML = docBuilder.parse(batchFile);
+
+    List<String> errorMessages = new ArrayList<>();
+    BatchQueue newQueue = BatchQueue.loadFromXml(parsedBatchXML.getDocumentElement(),
+        errorMessages);
+
+    // versions might have changed
+    if (!errorMessages.isEmpty()) {
+      logger.log(Level.WARNING, "Warnings during batch file import:");
+      for (final String errorMessage : errorMessages) {
+        logger.log(Level.WARNING, errorMessage);
+      }
+    }
+
+    // change input files and spectral libraries, e.g., by command line arguments
+    if (overrideDataFiles != null || overrideSpectralLibraryFiles !=null) {
+      if (!newQueue.setImportFiles(overrideDataFiles, overrideSpectralLibraryFiles)) {
+        if (overrideDataFiles != null) {
+          logger.log(Level.SEVERE,
+              "Could not change the input files to " + Arrays.stream(overrideDataFiles)
+                  .map(file -> file != null ? file.getAbsolutePath() : "null")
+                  .collect(Collectors.joining("\n")));
+        }
+        if (overrideSpectralLibraryFiles != null) {
+          logger.log(Level.SEVERE,
+              "Could not change the import spectral library files to " + Arrays.stream(overrideSpectralLibraryFiles)
+                  .map(file -> file != null ? file.getAbsolutePath() : "null")
+                  .collect(Collectors.joining("\n")));
+        }
+        return null;
+      }
+    }
+
+    ParameterSet parameters = new BatchModeParameters();
+    parameters.getParameter(BatchModeParameters.batchQueue).setValue(newQueue);
+    // per-file pipelining and the run report are defined in the batch mode settings of the
+    // configuration
+    final ParameterSet configParameters = MZmineCore.getConfiguration()
+        .getModuleParameters(BatchModeModule.class);
+    if (configParameters != null && configParameters.hasParameter(
+        BatchModeParameters.pipelineFiles)) {
+      final Integer filesInFlight = configParameters.getEmbeddedParameterValue(
+          BatchModeParameters.pipelineFiles);
+      parameters.setParameter(BatchModeParameters.pipelineFiles,
+          configParameters.getValue(BatchModeParameters.pipelineFiles), filesInFlight);
+    }
+    if (configParameters != null && configParameters.hasParameter(
+        BatchModeParameters.runReport)) {
+      final var configReport = configParameters.getParameter(BatchModeParameters.runReport);
+      final var report = parameters.getParameter(BatchModeParameters.runReport);
+      report.setValue(configReport.getValue());
+      report.setEmbeddedParameters(
+          (BatchRunReportParameters) configReport.getEmbeddedParameters().cloneParameterSet());
+    }
+    return new BatchTask(project, parameters, moduleCallDate);
+  }
+
   @Override
   public @NotNull String getName() {
     return MODULE_NAME;
@@ -26,6 +26,7 @@
 package io.github.mzmine.modules.batchmode;
 
 import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.dataanalysis.projectionplots.ProjectionScoresExportModule;
 import io.github.mzmine.modules.dataanalysis.spec_chimeric_precursor.PrecursorPurityCheckerModule;
 import io.github.mzmine.modules.dataprocessing.adap_hierarchicalclustering.ADAPHierarchicalClusteringModule;
 import io.github.mzmine.modules.dataprocessing.adap_mcr.ADAPMultivariateCurveResolutionModule;
@@ -86,6 +87,7 @@ import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.multithreaded.
 import io.github.mzmine.modules.dataprocessing.gapfill_samerange.SameRangeGapFillerModule;
 import io.github.mzmine.modules.dataprocessing.group_metacorrelate.corrgrouping.CorrelateGroupingModule;
 import io.github.mzmine.modules.dataprocessing.group_metacorrelate.export.ExportCorrAnnotationModule;
+import io.github.mzmine.modules.dataprocessing.group_network_layout.NetworkLayoutModule;
 import io.github.mzmine.modules.dataprocessing.group_spectral_networking.SpectralNetworkingModule;
 import io.github.mzmine.modules.dataprocessing.id_camera.CameraSearchModule;
 import io.github.mzmine.modules.dataprocessing.id_ccscalc.CCSCalcModule;
@@ -296,6 +298,7 @@ public class BatchModeModulesList {
        */
       CorrelateGroupingModule.class, //
       SpectralNetworkingModule.class, //
+      NetworkLayoutModule.class, //
       AnnotateIsomersModule.class, //
 
       /*
@@ -357,6 +360,7 @@ public class BatchModeModulesList {
       GNPSLibraryBatchExportModule.class, //
       FeatureMLExportModularModule.class, //
       MsMsQualityExportModule.class, //
+      ProjectionScoresExportModule.class, //
 
       /*
        * needed in batch mode?
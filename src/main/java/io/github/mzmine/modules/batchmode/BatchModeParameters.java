@@ -28,7 +28,10 @@ package io.github.mzmine.modules.batchmode;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.AdvancedParametersParameter;
+import io.github.mzmine.parameters.parametertypes.IntegerParameter;
+import io.github.mzmine.parameters.parametertypes.OptionalParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNameListSilentParameter;
+import io.github.mzmine.parameters.parametertypes.submodules.OptionalModuleParameter;
 import io.github.mzmine.util.ExitCode;
 
 public class BatchModeParameters extends SimpleParameterSet {
@@ -40,8 +43,19 @@ public class BatchModeParameters extends SimpleParameterSet {
   public static final AdvancedParametersParameter<AdvancedBatchModeParameters> advanced = new AdvancedParametersParameter<>(
       new AdvancedBatchModeParameters());
 
+  public static final OptionalParameter<IntegerParameter> pipelineFiles = new OptionalParameter<>(
+      new IntegerParameter("Pipeline per-file steps",
+          "Each data file runs independently through all leading per-file steps (import, mass detection, chromatogram building, resolving, ...) up to the first step that needs all files or feature lists, e.g., alignment.\n"
+          + "The value limits the number of files in flight to bound memory consumption.", 4, 1,
+          null), false);
+
+  public static final OptionalModuleParameter<BatchRunReportParameters> runReport = new OptionalModuleParameter<>(
+      "Write run report",
+      "Writes the wall time, CPU time, allocated memory, stored data and processed items of all tasks, aggregated per batch step and data file.",
+      new BatchRunReportParameters(), false);
+
   public BatchModeParameters() {
-    super(new Parameter[]{batchQueue, advanced, lastFiles});
+    super(new Parameter[]{batchQueue, advanced, pipelineFiles, runReport, lastFiles});
   }
 
   @Override
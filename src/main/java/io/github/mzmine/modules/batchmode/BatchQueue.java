@@ -40,7 +40,6 @@ import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.util.CollectionUtils;
 import io.github.mzmine.util.javafx.ArrayObservableList;
 import java.io.File;
-import java.util.Collection;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -112,9 +111,6 @@ public class BatchQueue extends ArrayObservableList<MZmineProcessingStep<MZmineP
     // Create an empty queue.
     final BatchQueue queue = new BatchQueue();
 
-    // Get the loaded modules.
-    final Collection<MZmineModule> allModules = MZmineCore.getAllModules();
-
     // prior to versioning of batch steps
     boolean noModuleVersion = false;
 
@@ -127,25 +123,16 @@ public class BatchQueue extends ArrayObservableList<MZmineProcessingStep<MZmineP
       final String methodName = stepElement.getAttribute(METHOD_ELEMENT);
 
       logger.fine("Loading batch step: " + methodName);
-      // Find a matching module.
-      MZmineModule moduleFound = null;
-      for (MZmineModule module : allModules) {
-        if (module instanceof MZmineProcessingModule && module.getClass().getName()
-            .equals(methodName)) {
-          moduleFound = module;
-          break;
-        }
-      }
-
-      if (moduleFound == null) {
-        try {
-          moduleFound = MZmineCore.getModuleInstance(
-              (Class<MZmineModule>) Class.forName(methodName));
-        } catch (ClassNotFoundException e) {
-          logger.warning(
-              "Module not found for class " + methodName + " (maybe recreate the batch file)");
-          throw new UnknownModuleNameException(methodName, e);
-        }
+      // Find a matching module. Modules are only created when used, so only the batch steps are
+      // initialized
+      final MZmineModule moduleFound;
+      try {
+        moduleFound = MZmineCore.getModuleInstance(
+            (Class<MZmineModule>) Class.forName(methodName));
+      } catch (ClassNotFoundException e) {
+        logger.warning(
+            "Module not found for class " + methodName + " (maybe recreate the batch file)");
+        throw new UnknownModuleNameException(methodName, e);
       }
       if (moduleFound != null) {
         // Get parameters and add step to queue.
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.mzmine.taskcontrol.TaskMetrics;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.impl.WrappedTask;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.io.CSVUtils;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Collects the {@link TaskMetrics} of all tasks of a batch run and writes them aggregated per
+ * batch step and data file as JSON and CSV. Optionally samples the heap, the bytes written to the
+ * memory mapped storage and the usable space in the temporary directory periodically.
+ */
+class BatchRunReport {
+
+  private static final Logger logger = Logger.getLogger(BatchRunReport.class.getName());
+  private static final String SEP = ",";
+  /**
+   * Metrics are set by the worker thread after the task finished. The batch may already continue
+   * when the task status changes, so wait a short time for the last metrics. This is the total
+   * wait for all tasks of the report.
+   */
+  private static final long MAX_METRICS_WAIT_MILLIS = 2000;
+
+  private final Instant start = Instant.now();
+  private final List<StepTasks> steps = new ArrayList<>();
+  private final List<ResourceSample> samples = new ArrayList<>();
+  @Nullable
+  private ScheduledExecutorService sampler;
+
+  /**
+   * @param dataset    the dataset name in advanced batch mode, empty otherwise
+   * @param step       index of the step in the batch queue (starting with 0)
+   * @param module     the module name
+   * @param tasks      the tasks of this step
+   * @param inputFiles names of the data files this step was applied to. Tasks are assigned to the
+   *                   only file or the file that is named in the task description
+   */
+  synchronized void addStep(@NotNull String dataset, int step, @NotNull String module,
+      @NotNull WrappedTask[] tasks, @NotNull List<String> inputFiles) {
+    if (tasks.length > 0) {
+      steps.add(new StepTasks(dataset, step, module, tasks, inputFiles));
+    }
+  }
+
+  /**
+   * Starts sampling heap and storage usage in a daemon thread
+   *
+   * @param intervalSeconds sampling interval
+   */
+  synchronized void startSampling(int intervalSeconds) {
+    if (sampler != null) {
+      return;
+    }
+    sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread thread = new Thread(r, "Batch resource sampler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sampler.scheduleAtFixedRate(this::sample, 0, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  synchronized void stopSampling() {
+    if (sampler != null) {
+      sampler.shutdownNow();
+      sampler = null;
+      sample();
+    }
+  }
+
+  private void sample() {
+    final Runtime runtime = Runtime.getRuntime();
+    final File tempDir = FileAndPathUtil.getTempDir();
+    final var sample = new ResourceSample(System.currentTimeMillis() - start.toEpochMilli(),
+        runtime.totalMemory() - runtime.freeMemory(), runtime.maxMemory(),
+        MemoryMapStorage.getTotalStoredBytes(), tempDir != null ? tempDir.getUsableSpace() : -1L);
+    synchronized (samples) {
+      samples.add(sample);
+    }
+  }
+
+  /**
+   * Writes baseFile.json and baseFile.csv
+   *
+   * @param baseFile the report file, the format is replaced
+   */
+  void write(@NotNull File baseFile) {
+    stopSampling();
+    final List<StepFileMetrics> rows = aggregate();
+    final File jsonFile = FileAndPathUtil.getRealFilePath(baseFile, "json");
+    final File csvFile = FileAndPathUtil.getRealFilePath(baseFile, "csv");
+    try {
+      FileAndPathUtil.createDirectory(jsonFile.getAbsoluteFile().getParentFile());
+      writeJson(jsonFile, rows);
+      writeCsv(csvFile, rows);
+      logger.info("Batch run report written to " + jsonFile.getAbsolutePath());
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot write batch run report " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * @return metrics aggregated by dataset, step and file in the order of execution
+   */
+  private synchronized List<StepFileMetrics> aggregate() {
+    final Map<String, StepFileMetrics> rows = new LinkedHashMap<>();
+    final long waitEnd = System.currentTimeMillis() + MAX_METRICS_WAIT_MILLIS;
+    for (StepTasks step : steps) {
+      for (WrappedTask task : step.tasks()) {
+        final TaskMetrics metrics = awaitMetrics(task, waitEnd);
+        if (metrics == null) {
+          continue;
+        }
+        final String file = step.findFile(metrics.description());
+        final String key = step.dataset() + "\t" + step.step() + "\t" + file;
+        rows.computeIfAbsent(key,
+                k -> new StepFileMetrics(step.dataset(), step.step(), step.module(), file))
+            .add(metrics);
+      }
+    }
+    return new ArrayList<>(rows.values());
+  }
+
+  /**
+   * Only waits for tasks that finished or failed. Canceled tasks may never have started after the
+   * batch was stopped and waiting tasks never publish metrics.
+   *
+   * @param end the time in ms to stop waiting, shared by all tasks of the report
+   */
+  @Nullable
+  private static TaskMetrics awaitMetrics(WrappedTask task, long end) {
+    TaskMetrics metrics = task.getMetrics();
+    final TaskStatus status = task.getActualTask().getStatus();
+    if (metrics != null || (status != TaskStatus.FINISHED && status != TaskStatus.ERROR)) {
+      return metrics;
+    }
+    while (metrics == null && System.currentTimeMillis() < end) {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+      metrics = task.getMetrics();
+    }
+    return metrics;
+  }
+
+  private void writeJson(File file, List<StepFileMetrics> rows) throws IOException {
+    final ObjectMapper mapper = new ObjectMapper();
+    final ObjectNode root = mapper.createObjectNode();
+    root.put("start", start.toString());
+    root.put("end", Instant.now().toString());
+
+    final ArrayNode stepsNode = root.putArray("steps");
+    for (StepFileMetrics row : rows) {
+      final ObjectNode node = stepsNode.addObject();
+      node.put("dataset", row.dataset);
+      node.put("step", row.step + 1);
+      node.put("module", row.module);
+      node.put("file", row.file);
+      node.put("tasks", row.tasks);
+      node.put("unfinishedTasks", row.unfinishedTasks);
+      node.put("wallTimeMs", row.wallTimeNanos / 1_000_000d);
+      node.put("cpuTimeMs", row.cpuTimeNanos < 0 ? -1d : row.cpuTimeNanos / 1_000_000d);
+      node.put("allocatedBytes", row.allocatedBytes);
+      node.put("storedBytes", row.storedBytes);
+      node.put("processedItems", row.processedItems);
+    }
+
+    final ArrayNode samplesNode = root.putArray("samples");
+    synchronized (samples) {
+      for (ResourceSample sample : samples) {
+        final ObjectNode node = samplesNode.addObject();
+        node.put("timeMs", sample.timeMillis());
+        node.put("usedHeapBytes", sample.usedHeapBytes());
+        node.put("maxHeapBytes", sample.maxHeapBytes());
+        node.put("storedBytes", sample.storedBytes());
+        node.put("tempDirUsableBytes", sample.tempDirUsableBytes());
+      }
+    }
+    mapper.writerWithDefaultPrettyPrinter().writeValue(file, root);
+  }
+
+  private void writeCsv(File file, List<StepFileMetrics> rows) throws IOException {
+    try (Writer writer = new BufferedWriter(
+        Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+      writer.write(String.join(SEP, "dataset", "step", "module", "file", "tasks",
+          "unfinished_tasks", "wall_time_ms", "cpu_time_ms", "allocated_bytes", "stored_bytes",
+          "processed_items"));
+      writer.write("\n");
+      for (StepFileMetrics row : rows) {
+        writer.write(String.join(SEP, CSVUtils.escape(row.dataset, SEP),
+            String.valueOf(row.step + 1), CSVUtils.escape(row.module, SEP),
+            CSVUtils.escape(row.file, SEP), String.valueOf(row.tasks),
+            String.valueOf(row.unfinishedTasks), String.valueOf(row.wallTimeNanos / 1_000_000L),
+            String.valueOf(row.cpuTimeNanos < 0 ? -1L : row.cpuTimeNanos / 1_000_000L),
+            String.valueOf(row.allocatedBytes), String.valueOf(row.storedBytes),
+            String.valueOf(row.processedItems)));
+        writer.write("\n");
+      }
+    }
+  }
+
+  private record StepTasks(String dataset, int step, String module, WrappedTask[] tasks,
+                           List<String> inputFiles) {
+
+    /**
+     * @return the single input file or the first input file named in the task description, empty
+     * if the task cannot be assigned to a file
+     */
+    private String findFile(String taskDescription) {
+      if (inputFiles.size() == 1) {
+        return inputFiles.get(0);
+      }
+      for (String file : inputFiles) {
+        if (taskDescription.contains(file)) {
+          return file;
+        }
+      }
+      return "";
+    }
+  }
+
+  private record ResourceSample(long timeMillis, long usedHeapBytes, long maxHeapBytes,
+                                long storedBytes, long tempDirUsableBytes) {
+
+  }
+
+  /**
+   * Sum of the metrics of all tasks of one step and file. CPU time and allocated bytes are -1 if
+   * any of the tasks could not be measured
+   */
+  private static class StepFileMetrics {
+
+    private final String dataset;
+    private final int step;
+    private final String module;
+    private final String file;
+    private int tasks;
+    private int unfinishedTasks;
+    private long wallTimeNanos;
+    private long cpuTimeNanos;
+    private long allocatedBytes;
+    private long storedBytes;
+    private long processedItems;
+
+    private StepFileMetrics(String dataset, int step, String module, String file) {
+      this.dataset = dataset;
+      this.step = step;
+      this.module = module;
+      this.file = file;
+    }
+
+    private void add(TaskMetrics metrics) {
+      tasks++;
+      if (metrics.status() != TaskStatus.FINISHED) {
+        unfinishedTasks++;
+      }
+      wallTimeNanos += metrics.wallTimeNanos();
+      cpuTimeNanos = sumOrUnsupported(cpuTimeNanos, metrics.cpuTimeNanos());
+      allocatedBytes = sumOrUnsupported(allocatedBytes, metrics.allocatedBytes());
+      storedBytes += metrics.storedBytes();
+      if (metrics.processedItems() > 0) {
+        processedItems += metrics.processedItems();
+      }
+    }
+
+    private static long sumOrUnsupported(long sum, long value) {
+      return sum < 0 || value < 0 ? -1L : sum + value;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode;
+
+import io.github.mzmine.parameters.Parameter;
+import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.IntegerParameter;
+import io.github.mzmine.parameters.parametertypes.OptionalParameter;
+import io.github.mzmine.parameters.parametertypes.filenames.FileNameParameter;
+import io.github.mzmine.parameters.parametertypes.filenames.FileSelectionType;
+
+/**
+ * Settings of the resource report of a batch run, see {@link BatchRunReport}
+ */
+public class BatchRunReportParameters extends SimpleParameterSet {
+
+  public static final OptionalParameter<FileNameParameter> reportFile = new OptionalParameter<>(
+      new FileNameParameter("Report file",
+          "Base name of the report. A .json and a .csv file are written. By default, the report is written next to the output of the first export step.",
+          FileSelectionType.SAVE), false);
+
+  public static final OptionalParameter<IntegerParameter> sampleInterval = new OptionalParameter<>(
+      new IntegerParameter("Sample heap and storage (s)",
+          "Periodically sample the used heap memory, the total bytes written to the memory mapped storage since startup and the usable space in the temporary directory.",
+          10, 1, null), false);
+
+  public BatchRunReportParameters() {
+    super(new Parameter[]{reportFile, sampleInterval});
+  }
+}
@@ -34,15 +34,23 @@ import io.github.mzmine.modules.MZmineModuleCategory;
 import io.github.mzmine.modules.MZmineProcessingModule;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.MZmineRunnableModule;
+import io.github.mzmine.modules.dataprocessing.filter_merge.RawFileMergeModule;
 import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
+import io.github.mzmine.modules.io.import_spectral_library.SpectralLibraryImportParameters;
+import io.github.mzmine.modules.tools.sortdatafiles.SortDataFilesModule;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.EmbeddedParameterSet;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNameParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelectionType;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import io.github.mzmine.project.impl.ProjectChangeEvent;
+import io.github.mzmine.project.impl.ProjectChangeEvent.Type;
+import io.github.mzmine.project.impl.ProjectChangeListener;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskPriority;
@@ -55,15 +63,30 @@ import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Batch mode task
  */
 public class BatchTask extends AbstractTask {
 
+  /**
+   * Modules that combine multiple data files although their category usually works per file
+   */
+  private static final Set<Class<?>> CROSS_FILE_MODULES = Set.of(RawFileMergeModule.class,
+      SortDataFilesModule.class);
+
+  private static final String DEFAULT_RUN_REPORT_NAME = "batch_run_report";
+
   private final BatchQueue queue;
   // advanced parameters
   private final int stepsPerDataset;
@@ -73,6 +96,11 @@ public class BatchTask extends AbstractTask {
   private int processedSteps;
   private final boolean useAdvanced;
   private final int datasets;
+  /**
+   * Maximum number of files that run through the pipelined per-file steps at once. 0 to process
+   * all steps with a barrier after each step
+   */
+  private final int pipelineFiles;
   private List<File> subDirectories;
   private List<RawDataFile> createdDataFiles;
   private List<RawDataFile> previousCreatedDataFiles;
@@ -83,6 +111,27 @@ public class BatchTask extends AbstractTask {
   private Boolean createResultsDir;
   private File parentDir;
   private int currentDataset;
+  private String datasetName = "";
+  /**
+   * Collects the resources used by all tasks. null if no report is written
+   */
+  @Nullable
+  private final BatchRunReport runReport;
+  @Nullable
+  private final File runReportFile;
+  private final int reportSampleInterval;
+  /**
+   * Guards the assignment of created data files to lanes. A lane's tasks may add data files before
+   * the lane knows its running tasks.
+   */
+  private final Object laneLock = new Object();
+  /**
+   * The lane whose step is started by the batch thread, modules may create data files directly
+   */
+  @Nullable
+  private BatchFileLane startingLane;
+  @Nullable
+  private Thread batchThread;
 
   BatchTask(MZmineProject project, ParameterSet parameters, @NotNull Instant moduleCallDate) {
     this(project, parameters, moduleCallDate,
@@ -110,6 +159,21 @@ public class BatchTask extends AbstractTask {
     } else {
       datasets = 1;
     }
+    pipelineFiles = parameters.getEmbeddedParameterValueIfSelectedOrElse(
+        BatchModeParameters.pipelineFiles, 0);
+    if (parameters.getValue(BatchModeParameters.runReport)) {
+      final BatchRunReportParameters reportParameters = parameters.getParameter(
+          BatchModeParameters.runReport).getEmbeddedParameters();
+      runReport = new BatchRunReport();
+      runReportFile = reportParameters.getEmbeddedParameterValueIfSelectedOrElse(
+          BatchRunReportParameters.reportFile, null);
+      reportSampleInterval = reportParameters.getEmbeddedParameterValueIfSelectedOrElse(
+          BatchRunReportParameters.sampleInterval, 0);
+    } else {
+      runReport = null;
+      runReportFile = null;
+      reportSampleInterval = 0;
+    }
     stepsPerDataset = queue.size();
     totalSteps = stepsPerDataset * datasets;
     createdDataFiles = new ArrayList<>();
@@ -123,10 +187,28 @@ public class BatchTask extends AbstractTask {
 
     setStatus(TaskStatus.PROCESSING);
     logger.info("Starting a batch of " + totalSteps + " steps");
+    if (runReport != null && reportSampleInterval > 0) {
+      runReport.startSampling(reportSampleInterval);
+    }
+
+    final boolean finished = processAllSteps();
+
+    if (runReport != null) {
+      runReport.write(getRunReportFile());
+    }
+    if (finished) {
+      logger.info("Finished a batch of " + totalSteps + " steps");
+      setStatus(TaskStatus.FINISHED);
+    }
+  }
 
+  /**
+   * @return true if all steps were processed, false if the batch stopped early
+   */
+  private boolean processAllSteps() {
     int errorDataset = 0;
     currentDataset = -1;
-    String datasetName = "";
+    datasetName = "";
     // Process individual batch steps
     for (int i = 0; i < totalSteps; i++) {
       // at the end of one dataset, clear the project and start over again
@@ -154,7 +236,7 @@ public class BatchTask extends AbstractTask {
             } else {
               setStatus(TaskStatus.ERROR);
               setErrorMessage("Could not set data files in advanced batch mode. Will cancel all jobs. " + datasetName);
-              return;
+              return false;
             }
           }
           // set files to output
@@ -170,18 +252,26 @@ public class BatchTask extends AbstractTask {
           } else {
             setStatus(TaskStatus.ERROR);
             setErrorMessage("No data files found in directory: " + datasetName);
-            return;
+            return false;
           }
         }
       }
 
-      // run step
-      processQueueStep(i % stepsPerDataset);
-      processedSteps++;
+      // run step or all leading per-file steps as a pipeline
+      final int stepInDataset = i % stepsPerDataset;
+      final int pipelinedSteps = stepInDataset == 0 ? getNumberOfPipelinedSteps() : 0;
+      if (pipelinedSteps > 1) {
+        processPipelinedSteps(pipelinedSteps);
+        processedSteps += pipelinedSteps;
+        i += pipelinedSteps - 1;
+      } else {
+        processQueueStep(stepInDataset);
+        processedSteps++;
+      }
 
       // If we are canceled or ran into error, stop here
       if (isCanceled()) {
-        return;
+        return false;
       } else if (getStatus() == TaskStatus.ERROR) {
         errorDataset++;
         if (skipOnError && datasets - currentDataset > 0) {
@@ -190,13 +280,12 @@ public class BatchTask extends AbstractTask {
           processedSteps = (processedSteps / stepsPerDataset + 1) * stepsPerDataset;
           continue;
         } else {
-          return;
+          return false;
         }
       }
     }
 
-    logger.info("Finished a batch of " + totalSteps + " steps");
-    setStatus(TaskStatus.FINISHED);
+    return true;
   }
 
   private void setOutputFiles(final File parentDir, final boolean createResultsDir,
@@ -276,7 +365,8 @@ public class BatchTask extends AbstractTask {
       }
     }
 
-    if (!setBatchlastFeatureListsToParamSet(method, batchStepParameters)) {
+    if (!setBatchlastFeatureListsToParamSet(method, batchStepParameters,
+        createdFeatureLists.toArray(new FeatureList[0]))) {
       return;
     }
 
@@ -323,6 +413,10 @@ public class BatchTask extends AbstractTask {
     WrappedTask[] currentStepWrappedTasks = MZmineCore.getTaskController()
         .addTasks(currentStepTasks.toArray(new Task[0]));
     currentStepTasks = null;
+    if (runReport != null) {
+      runReport.addStep(datasetName, stepNumber, method.getName(), currentStepWrappedTasks,
+          getStepFileNames(batchStepParameters));
+    }
 
     while (!allTasksFinished) {
 
@@ -401,6 +495,411 @@ public class BatchTask extends AbstractTask {
     }
   }
 
+  /**
+   * Per-file steps can run for each data file independently. The pipeline ends before the first
+   * step that needs all data files or feature lists (e.g., alignment, blank subtraction, export) or
+   * that does not use the files or feature lists of the previous batch step.
+   *
+   * @return the number of leading steps that are pipelined per file. 0 if pipelining is off
+   */
+  private int getNumberOfPipelinedSteps() {
+    if (pipelineFiles <= 0) {
+      return 0;
+    }
+    int steps = 0;
+    for (MZmineProcessingStep<?> step : queue) {
+      if (!isPerFileStep(step, steps == 0)) {
+        break;
+      }
+      steps++;
+    }
+    return steps;
+  }
+
+  /**
+   * @param firstStep the data import can only start a pipeline
+   * @return true if the step only works on single data files or their feature lists
+   */
+  static boolean isPerFileStep(MZmineProcessingStep<?> step, boolean firstStep) {
+    final ParameterSet parameters = step.getParameterSet();
+    if (AllSpectralDataImportParameters.isParameterSetClass(parameters)) {
+      return firstStep;
+    }
+    if (!(step.getModule() instanceof MZmineRunnableModule module)
+        || CROSS_FILE_MODULES.contains(module.getClass())) {
+      return false;
+    }
+    return switch (module.getModuleCategory()) {
+      case RAWDATA, EIC_DETECTION, FEATURE_RESOLVING, ISOTOPES ->
+          usesOnlyBatchLastInput(parameters);
+      default -> false;
+    };
+  }
+
+  /**
+   * @return true if there is at least one input selection and all are set to the previous batch
+   * step
+   */
+  private static boolean usesOnlyBatchLastInput(ParameterSet parameters) {
+    boolean hasInput = false;
+    for (Parameter<?> p : parameters.getParameters()) {
+      if (p instanceof RawDataFilesParameter rdp) {
+        if (rdp.getValue() == null
+            || rdp.getValue().getSelectionType() != RawDataFilesSelectionType.BATCH_LAST_FILES) {
+          return false;
+        }
+        hasInput = true;
+      } else if (p instanceof FeatureListsParameter flp) {
+        if (flp.getValue() == null || flp.getValue().getSelectionType()
+                                      != FeatureListsSelectionType.BATCH_LAST_FEATURELISTS) {
+          return false;
+        }
+        hasInput = true;
+      }
+    }
+    return hasInput;
+  }
+
+  /**
+   * Runs the first steps of the queue for each data file independently. A file starts the next
+   * step as soon as its own tasks are finished, so one slow file does not stall all others. At most
+   * {@link #pipelineFiles} files are in flight to limit the memory consumption. The only barrier is
+   * after the last pipelined step.
+   *
+   * @param steps number of leading per-file steps, see {@link #getNumberOfPipelinedSteps()}
+   */
+  private void processPipelinedSteps(final int steps) {
+    final List<BatchFileLane> lanes = createFileLanes();
+    logger.info(
+        "Starting steps # 1-%d pipelined for %d data files with up to %d files in flight".formatted(
+            steps, lanes.size(), pipelineFiles));
+
+    // assign new data files to the lane whose step created them
+    batchThread = Thread.currentThread();
+    final ProjectChangeListener createdFilesListener = new ProjectChangeListener() {
+      @Override
+      public void dataFilesChanged(ProjectChangeEvent<RawDataFile> event) {
+        if (event.change() == Type.ADDED) {
+          assignCreatedDataFiles(lanes, event.changedLists());
+        }
+      }
+    };
+    project.addProjectListener(createdFilesListener);
+    try {
+      runLanes(lanes, steps);
+    } finally {
+      project.removeProjectListener(createdFilesListener);
+    }
+  }
+
+  private void runLanes(final List<BatchFileLane> lanes, final int steps) {
+    final List<BatchFileLane> activeLanes = new ArrayList<>();
+    int nextLane = 0;
+    while (nextLane < lanes.size() || !activeLanes.isEmpty()) {
+      // If we canceled the batch, cancel all running tasks
+      if (isCanceled()) {
+        activeLanes.forEach(BatchFileLane::cancelRunningTasks);
+        return;
+      }
+
+      while (activeLanes.size() < pipelineFiles && nextLane < lanes.size()) {
+        activeLanes.add(lanes.get(nextLane));
+        nextLane++;
+      }
+
+      for (final Iterator<BatchFileLane> it = activeLanes.iterator(); it.hasNext(); ) {
+        final BatchFileLane lane = it.next();
+        if (!advanceLane(lane, steps, lane == lanes.get(0))) {
+          activeLanes.forEach(BatchFileLane::cancelRunningTasks);
+          return;
+        }
+        if (!lane.isRunning() && lane.getNextStep() >= steps) {
+          logger.fine(() -> "Finished pipelined steps for " + lane);
+          it.remove();
+        }
+      }
+
+      // Wait before checking the tasks again
+      if (!activeLanes.isEmpty()) {
+        synchronized (this) {
+          try {
+            this.wait(250);
+          } catch (InterruptedException e) {
+            // ignore
+          }
+        }
+      }
+    }
+
+    // barrier: the next step receives the results of all files
+    createdDataFiles = lanes.stream().map(BatchFileLane::getDataFile).filter(Objects::nonNull)
+        .collect(Collectors.toCollection(ArrayList::new));
+    final Set<FeatureList> projectFeatureLists = new HashSet<>(project.getCurrentFeatureLists());
+    createdFeatureLists = lanes.stream().flatMap(lane -> lane.getFeatureLists().stream())
+        .filter(projectFeatureLists::contains).collect(Collectors.toCollection(ArrayList::new));
+    if (!createdDataFiles.isEmpty()) {
+      previousCreatedDataFiles = createdDataFiles;
+    }
+    if (!createdFeatureLists.isEmpty()) {
+      previousCreatedFeatureLists = createdFeatureLists;
+    }
+  }
+
+  /**
+   * One lane per file to import if the batch starts with the data import, otherwise one lane per
+   * data file of the previous step.
+   */
+  private List<BatchFileLane> createFileLanes() {
+    final ParameterSet firstStepParameters = queue.get(0).getParameterSet();
+    if (AllSpectralDataImportParameters.isParameterSetClass(firstStepParameters)) {
+      return AllSpectralDataImportParameters.streamValidatedFiles(firstStepParameters)
+          .map(BatchFileLane::new).toList();
+    }
+
+    final List<RawDataFile> dataFiles =
+        createdDataFiles.isEmpty() ? previousCreatedDataFiles : createdDataFiles;
+    final List<FeatureList> featureLists =
+        createdFeatureLists.isEmpty() ? previousCreatedFeatureLists : createdFeatureLists;
+    return dataFiles.stream().map(raw -> new BatchFileLane(raw,
+        featureLists.stream().filter(flist -> isFeatureListOfFile(flist, raw)).toList())).toList();
+  }
+
+  private static boolean isFeatureListOfFile(FeatureList flist, RawDataFile raw) {
+    final List<RawDataFile> files = flist.getRawDataFiles();
+    return files.size() == 1 && files.get(0) == raw;
+  }
+
+  /**
+   * Checks the running step of a lane and starts the following steps once it is finished.
+   *
+   * @param firstLane the first lane also imports the spectral libraries of the data import step
+   * @return false on error or if the batch was canceled
+   */
+  private boolean advanceLane(final BatchFileLane lane, final int steps,
+      final boolean firstLane) {
+    if (lane.isRunning()) {
+      for (WrappedTask stepTask : lane.getRunningTasks()) {
+        final Task task = stepTask.getActualTask();
+        // If there was an error, we have to stop the whole batch
+        if (task.getStatus() == TaskStatus.ERROR) {
+          setStatus(TaskStatus.ERROR);
+          setErrorMessage(
+              lane + ": " + task.getTaskDescription() + ": " + task.getErrorMessage());
+          return false;
+        }
+        // If user canceled any of the tasks, we have to cancel the whole batch
+        if (task.getStatus() == TaskStatus.CANCELED) {
+          setStatus(TaskStatus.CANCELED);
+          return false;
+        }
+      }
+      if (lane.hasUnfinishedTasks()) {
+        return true;
+      }
+      if (!finishLaneStep(lane)) {
+        return false;
+      }
+    }
+
+    // start the next step, directly continue if it did not create any tasks
+    while (!lane.isRunning() && lane.getNextStep() < steps) {
+      if (!startLaneStep(lane, firstLane)) {
+        return false;
+      }
+      if (lane.getRunningTasks().length == 0 && !finishLaneStep(lane)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Starts the next step for a single data file on a copy of the step parameters
+   *
+   * @return false on error
+   */
+  private boolean startLaneStep(final BatchFileLane lane, final boolean firstLane) {
+    final MZmineProcessingStep<?> currentStep = queue.get(lane.getNextStep());
+    final MZmineProcessingModule method = (MZmineProcessingModule) currentStep.getModule();
+    // each lane works on its own copy to keep the file selections apart
+    final ParameterSet laneParameters = currentStep.getParameterSet().cloneParameterSet();
+
+    if (lane.getImportFile() != null && AllSpectralDataImportParameters.isParameterSetClass(
+        laneParameters)) {
+      laneParameters.setParameter(AllSpectralDataImportParameters.fileNames,
+          new File[]{lane.getImportFile()});
+      // spectral libraries are only imported once
+      if (!firstLane) {
+        laneParameters.setParameter(SpectralLibraryImportParameters.dataBaseFiles, new File[0]);
+      }
+    } else {
+      final RawDataFile[] laneFiles = lane.getDataFile() == null ? new RawDataFile[0]
+          : new RawDataFile[]{lane.getDataFile()};
+      for (Parameter<?> p : laneParameters.getParameters()) {
+        if (p instanceof RawDataFilesParameter rdp && rdp.getValue() != null) {
+          rdp.getValue().setBatchLastFiles(laneFiles);
+        }
+      }
+      if (!setBatchlastFeatureListsToParamSet(method, laneParameters,
+          lane.getFeatureLists().toArray(new FeatureList[0]))) {
+        return false;
+      }
+    }
+
+    ArrayList<String> messages = new ArrayList<>();
+    if (!laneParameters.checkParameterValues(messages)) {
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage(
+          "Invalid parameter settings for module " + method.getName() + " on " + lane + ": "
+          + Arrays.toString(messages.toArray()));
+      return false;
+    }
+
+    final List<FeatureList> beforeFeatureLists = project.getCurrentFeatureLists();
+    final List<Task> laneTasks = new ArrayList<>();
+    final WrappedTask[] wrappedTasks;
+    // created data files are assigned once the lane knows its tasks
+    synchronized (laneLock) {
+      startingLane = lane;
+      try {
+        final ExitCode exitCode = method.runModule(project, laneParameters, laneTasks,
+            Instant.now());
+        if (exitCode != ExitCode.OK) {
+          setStatus(TaskStatus.ERROR);
+          setErrorMessage("Could not start batch step " + method.getName() + " on " + lane);
+          return false;
+        } else if (firstLane) {
+          // track step by module once
+          GoogleAnalyticsTracker.trackModule(method);
+        }
+
+        wrappedTasks = laneTasks.isEmpty() ? new WrappedTask[0]
+            : MZmineCore.getTaskController().addTasks(laneTasks.toArray(new Task[0]));
+        lane.startStep(laneParameters, wrappedTasks, beforeFeatureLists);
+      } finally {
+        startingLane = null;
+      }
+    }
+    if (runReport != null) {
+      runReport.addStep(datasetName, lane.getNextStep(), method.getName(), wrappedTasks,
+          List.of(lane.toString()));
+    }
+    return true;
+  }
+
+  /**
+   * Collects the data file or feature lists created by the finished step of this lane. Other lanes
+   * create data files and feature lists concurrently, so only data files added by this lane's step
+   * and new lists of this data file are kept.
+   *
+   * @return false on error
+   */
+  private boolean finishLaneStep(final BatchFileLane lane) {
+    final ParameterSet laneParameters = lane.getRunningParameters();
+    if (lane.getImportFile() != null && AllSpectralDataImportParameters.isParameterSetClass(
+        laneParameters)) {
+      final List<RawDataFile> loaded = AllSpectralDataImportParameters.getLoadedRawDataFiles(
+          project, laneParameters);
+      if (loaded.isEmpty()) {
+        setStatus(TaskStatus.ERROR);
+        setErrorMessage("Data file was not imported: " + lane.getImportFile().getAbsolutePath());
+        return false;
+      }
+      lane.setDataFile(loaded.get(0));
+    } else if (lane.getDataFile() != null) {
+      // raw data steps may create a new file (e.g., filtered scans) that the next steps work on
+      final RawDataFile createdFile = findCreatedDataFile(lane);
+      if (createdFile != null) {
+        lane.setDataFile(createdFile);
+      } else if (!project.getCurrentRawDataFiles().contains(lane.getDataFile())) {
+        setStatus(TaskStatus.ERROR);
+        setErrorMessage("Data file " + lane.getDataFile().getName()
+                        + " was removed but no new data file was found for it.");
+        return false;
+      }
+
+      final Set<FeatureList> before = new HashSet<>(lane.getBeforeFeatureLists());
+      final List<FeatureList> created = project.getCurrentFeatureLists().stream()
+          .filter(flist -> !before.contains(flist))
+          .filter(flist -> isFeatureListOfFile(flist, lane.getDataFile())).toList();
+      if (!created.isEmpty()) {
+        lane.setFeatureLists(created);
+      }
+    }
+    lane.finishStep();
+    return true;
+  }
+
+  /**
+   * Data files are added to the project by the thread of the step task that created them or by the
+   * batch thread if a module created them while its step was started. Other lanes add their files
+   * concurrently, so comparing the project files before and after a step is not enough.
+   */
+  private void assignCreatedDataFiles(final List<BatchFileLane> lanes,
+      final List<RawDataFile> files) {
+    synchronized (laneLock) {
+      final Thread thread = Thread.currentThread();
+      for (BatchFileLane lane : lanes) {
+        if ((thread == batchThread && lane == startingLane) || lane.isRunningOnCurrentThread()) {
+          lane.addCreatedDataFiles(files);
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the last data file that was added to the project by the finished step of this lane
+   * and was not removed since, or null
+   */
+  @Nullable
+  private RawDataFile findCreatedDataFile(final BatchFileLane lane) {
+    final Set<RawDataFile> current = new HashSet<>(project.getCurrentRawDataFiles());
+    final List<RawDataFile> created = lane.getCreatedDataFiles();
+    for (int i = created.size() - 1; i >= 0; i--) {
+      if (current.contains(created.get(i))) {
+        return created.get(i);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return names of the data files that are processed by a step, used to assign tasks to files in
+   * the run report
+   */
+  private List<String> getStepFileNames(ParameterSet stepParameters) {
+    if (AllSpectralDataImportParameters.isParameterSetClass(stepParameters)) {
+      final File[] files = stepParameters.getValue(AllSpectralDataImportParameters.fileNames);
+      return files == null ? List.of() : Arrays.stream(files).map(File::getName).toList();
+    }
+    return Stream.concat(createdDataFiles.stream(),
+            createdFeatureLists.stream().flatMap(flist -> flist.getRawDataFiles().stream()))
+        .map(RawDataFile::getName).distinct().toList();
+  }
+
+  /**
+   * @return the selected report file or a file next to the output of the first export step
+   */
+  private File getRunReportFile() {
+    if (runReportFile != null) {
+      return runReportFile;
+    }
+    for (MZmineProcessingStep<?> step : queue) {
+      if (step.getModule() instanceof MZmineRunnableModule mod && (
+          mod.getModuleCategory() == MZmineModuleCategory.FEATURELISTEXPORT
+          || mod.getModuleCategory() == MZmineModuleCategory.RAWDATAEXPORT)) {
+        for (final Parameter<?> p : step.getParameterSet().getParameters()) {
+          if (p instanceof FileNameParameter fnp && fnp.getValue() != null) {
+            return new File(fnp.getValue().getAbsoluteFile().getParentFile(),
+                DEFAULT_RUN_REPORT_NAME);
+          }
+        }
+      }
+    }
+    return new File(DEFAULT_RUN_REPORT_NAME);
+  }
+
   private void setLastFilesIfAllDataImportStep(final ParameterSet batchStepParameters) {
     if (AllSpectralDataImportParameters.isParameterSetClass(batchStepParameters)) {
       var loadedRawDataFiles = AllSpectralDataImportParameters.getLoadedRawDataFiles(
@@ -427,12 +926,11 @@ public class BatchTask extends AbstractTask {
    * @return false on error
    */
   private boolean setBatchlastFeatureListsToParamSet(MZmineProcessingModule method,
-      ParameterSet batchStepParameters) {
+      ParameterSet batchStepParameters, FeatureList[] createdFlists) {
     // Update the FeatureListsParameter parameters to reflect the current
     // state of the batch
     for (Parameter<?> p : batchStepParameters.getParameters()) {
       if (p instanceof FeatureListsParameter featureListsParameter) {
-        FeatureList[] createdFlists = createdFeatureLists.toArray(new FeatureList[0]);
         final FeatureListsSelection selectedFeatureLists = featureListsParameter.getValue();
         if (selectedFeatureLists == null) {
           setStatus(TaskStatus.ERROR);
@@ -442,7 +940,8 @@ public class BatchTask extends AbstractTask {
         }
         selectedFeatureLists.setBatchLastFeatureLists(createdFlists);
       } else if (p instanceof EmbeddedParameterSet embedded) {
-        if (!setBatchlastFeatureListsToParamSet(method, embedded.getEmbeddedParameters())) {
+        if (!setBatchlastFeatureListsToParamSet(method, embedded.getEmbeddedParameters(),
+            createdFlists)) {
           return false;
         }
       }
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.server;
+
+import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.File;
+import java.time.Instant;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A batch submitted to the {@link BatchJobServer}. The status is {@link TaskStatus#WAITING} while
+ * the job is queued.
+ */
+public class BatchJob {
+
+  private final long id;
+  private final @NotNull File batchFile;
+  private final @Nullable File[] overrideDataFiles;
+  private final @Nullable File[] overrideSpectralLibraryFiles;
+  private final @NotNull Instant submitted = Instant.now();
+
+  private volatile @NotNull TaskStatus status = TaskStatus.WAITING;
+  private volatile @Nullable Instant started;
+  private volatile @Nullable Instant finished;
+  private volatile @Nullable String errorMessage;
+  private volatile @Nullable Task task;
+  private volatile boolean cancelRequested;
+
+  /**
+   * @param id                           unique id of the job
+   * @param batchFile                    the batch file
+   * @param overrideDataFiles            change the data import to those files if not null
+   * @param overrideSpectralLibraryFiles change the spectral libraries imported if not null
+   */
+  public BatchJob(long id, @NotNull File batchFile, @Nullable File[] overrideDataFiles,
+      @Nullable File[] overrideSpectralLibraryFiles) {
+    this.id = id;
+    this.batchFile = batchFile;
+    this.overrideDataFiles = overrideDataFiles;
+    this.overrideSpectralLibraryFiles = overrideSpectralLibraryFiles;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  @NotNull
+  public File getBatchFile() {
+    return batchFile;
+  }
+
+  @Nullable
+  public File[] getOverrideDataFiles() {
+    return overrideDataFiles;
+  }
+
+  @Nullable
+  public File[] getOverrideSpectralLibraryFiles() {
+    return overrideSpectralLibraryFiles;
+  }
+
+  @NotNull
+  public Instant getSubmitted() {
+    return submitted;
+  }
+
+  @Nullable
+  public Instant getStarted() {
+    return started;
+  }
+
+  @Nullable
+  public Instant getFinished() {
+    return finished;
+  }
+
+  @NotNull
+  public TaskStatus getStatus() {
+    return status;
+  }
+
+  @Nullable
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  /**
+   * @return progress of the running batch task, 0 while queued and 1 when done
+   */
+  public double getProgress() {
+    return switch (status) {
+      case WAITING -> 0d;
+      case PROCESSING -> {
+        final Task current = task;
+        yield current != null ? current.getFinishedPercentage() : 0d;
+      }
+      case FINISHED, CANCELED, ERROR -> 1d;
+    };
+  }
+
+  public boolean isCancelRequested() {
+    return cancelRequested;
+  }
+
+  /**
+   * The task that runs this job. Canceling the job cancels the task.
+   */
+  public void setTask(@Nullable Task task) {
+    this.task = task;
+    if (task != null && cancelRequested) {
+      task.cancel();
+    }
+  }
+
+  /**
+   * Cancels a queued job before it starts or the task of a running job
+   */
+  public void cancel() {
+    cancelRequested = true;
+    synchronized (this) {
+      if (status == TaskStatus.WAITING) {
+        setFinished(TaskStatus.CANCELED, null);
+        return;
+      }
+    }
+    final Task current = task;
+    if (current != null) {
+      current.cancel();
+    }
+  }
+
+  /**
+   * @return false if the job was canceled before it started
+   */
+  synchronized boolean setStarted() {
+    if (status != TaskStatus.WAITING) {
+      return false;
+    }
+    started = Instant.now();
+    status = TaskStatus.PROCESSING;
+    return true;
+  }
+
+  synchronized void setFinished(@NotNull TaskStatus status, @Nullable String errorMessage) {
+    finished = Instant.now();
+    this.errorMessage = errorMessage;
+    this.status = status;
+    task = null;
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.server;
+
+import io.github.mzmine.taskcontrol.TaskStatus;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs the jobs of a {@link BatchJobServer}, one after another on the job thread of the server.
+ */
+@FunctionalInterface
+public interface BatchJobRunner {
+
+  /**
+   * Runs the job and blocks until it is done. Cancelation requests are forwarded to the task set
+   * with {@link BatchJob#setTask(io.github.mzmine.taskcontrol.Task)}.
+   *
+   * @param job the job
+   * @return the final status: {@link TaskStatus#FINISHED}, {@link TaskStatus#CANCELED} or
+   * {@link TaskStatus#ERROR}
+   */
+  @NotNull TaskStatus run(@NotNull BatchJob job) throws Exception;
+}
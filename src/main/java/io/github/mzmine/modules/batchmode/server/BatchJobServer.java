@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps MZmine running in headless mode and accepts batch jobs on a localhost HTTP endpoint. Jobs
+ * run one after another in the same JVM, so configuration, modules, spectral libraries and the JIT
+ * stay warm between jobs. The server only binds to the loopback address.
+ * <p>
+ * Every request needs the header {@code Authorization: Bearer <token>}. The token is created for
+ * each server session and written to a file that only the current user can read (by default
+ * {@code batch_server_token} in the MZmine user settings directory). Requests with an Origin header
+ * are rejected, so that web pages in a browser cannot submit or cancel jobs.
+ * <ul>
+ *   <li>POST /jobs with the batch XML as body submits a job. Optional query parameters input and
+ *   libraries replace the imported data files and spectral libraries, like the -i and -l command
+ *   line arguments.</li>
+ *   <li>GET /jobs lists all jobs, GET /jobs/{id} returns the status of a job.</li>
+ *   <li>DELETE /jobs/{id} cancels a queued or running job.</li>
+ * </ul>
+ */
+public class BatchJobServer {
+
+  private static final Logger logger = Logger.getLogger(BatchJobServer.class.getName());
+  private static final String JOBS_PATH = "/jobs";
+  private static final String TOKEN_FILE_NAME = "batch_server_token";
+
+  private final HttpServer server;
+  private final BatchJobRunner runner;
+  private final ExecutorService jobExecutor;
+  private final Map<Long, BatchJob> jobs = new LinkedHashMap<>();
+  private final AtomicLong nextId = new AtomicLong(1);
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final Path tokenFile;
+  private final byte[] authorization;
+
+  /**
+   * @param port      the port on localhost, 0 for any free port
+   * @param runner    runs the jobs
+   * @param tokenFile the session token is written to this file
+   */
+  public BatchJobServer(int port, @NotNull BatchJobRunner runner, @NotNull File tokenFile)
+      throws IOException {
+    this.runner = runner;
+    this.tokenFile = tokenFile.toPath();
+    final byte[] random = new byte[32];
+    new SecureRandom().nextBytes(random);
+    final String token = HexFormat.of().formatHex(random);
+    writeToken(this.tokenFile, token);
+    authorization = ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext(JOBS_PATH, this::handle);
+    // jobs run one after another, a batch already uses all threads
+    jobExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Batch job server"));
+  }
+
+  /**
+   * Starts a server that runs the jobs on the task controller
+   *
+   * @param port the port on localhost
+   * @return the started server
+   */
+  public static BatchJobServer start(int port) throws IOException {
+    final BatchJobServer server = new BatchJobServer(port, new TaskControllerBatchJobRunner(),
+        new File(FileAndPathUtil.getUserSettingsDir(), TOKEN_FILE_NAME));
+    server.start();
+    return server;
+  }
+
+  public void start() {
+    server.start();
+    logger.info("Batch job server listening on http://localhost:" + getPort() + JOBS_PATH
+        + ", the access token is in " + tokenFile.toAbsolutePath());
+  }
+
+  public void stop() {
+    server.stop(0);
+    synchronized (jobs) {
+      jobs.values().forEach(BatchJob::cancel);
+    }
+    jobExecutor.shutdownNow();
+    try {
+      Files.deleteIfExists(tokenFile);
+    } catch (IOException e) {
+      logger.log(Level.FINE, "Cannot delete the token file " + tokenFile, e);
+    }
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * @return the file with the token of this session
+   */
+  public File getTokenFile() {
+    return tokenFile.toFile();
+  }
+
+  /**
+   * Writes the token to a new file that only the current user can read and write
+   */
+  private static void writeToken(Path file, String token) throws IOException {
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    Files.deleteIfExists(file);
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      Files.createFile(file,
+          PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    } else {
+      Files.createFile(file);
+      final File f = file.toFile();
+      if (!(f.setReadable(false, false) && f.setReadable(true, true) && f.setWritable(false, false)
+          && f.setWritable(true, true))) {
+        logger.warning("Cannot restrict the access to the token file " + file);
+      }
+    }
+    Files.writeString(file, token, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Queues a job
+   *
+   * @param batchFile                    the batch file
+   * @param overrideDataFiles            change the data import to those files if not null
+   * @param overrideSpectralLibraryFiles change the spectral libraries imported if not null
+   * @return the queued job
+   */
+  public BatchJob submit(@NotNull File batchFile, @Nullable File[] overrideDataFiles,
+      @Nullable File[] overrideSpectralLibraryFiles) {
+    return submit(batchFile, overrideDataFiles, overrideSpectralLibraryFiles, false);
+  }
+
+  private BatchJob submit(@NotNull File batchFile, @Nullable File[] overrideDataFiles,
+      @Nullable File[] overrideSpectralLibraryFiles, boolean deleteBatchFile) {
+    final BatchJob job = new BatchJob(nextId.getAndIncrement(), batchFile, overrideDataFiles,
+        overrideSpectralLibraryFiles);
+    synchronized (jobs) {
+      jobs.put(job.getId(), job);
+    }
+    jobExecutor.execute(() -> runJob(job, deleteBatchFile));
+    logger.info(() -> "Queued batch job " + job.getId());
+    return job;
+  }
+
+  @Nullable
+  public BatchJob getJob(long id) {
+    synchronized (jobs) {
+      return jobs.get(id);
+    }
+  }
+
+  public List<BatchJob> getJobs() {
+    synchronized (jobs) {
+      return new ArrayList<>(jobs.values());
+    }
+  }
+
+  private void runJob(BatchJob job, boolean deleteBatchFile) {
+    try {
+      if (!job.setStarted()) {
+        // canceled while queued
+        return;
+      }
+      final TaskStatus status = runner.run(job);
+      job.setFinished(job.isCancelRequested() ? TaskStatus.CANCELED : status, null);
+    } catch (Throwable e) {
+      logger.log(Level.WARNING, "Batch job " + job.getId() + " failed: " + e.getMessage(), e);
+      job.setFinished(TaskStatus.ERROR, e.getMessage());
+    } finally {
+      if (deleteBatchFile) {
+        try {
+          Files.deleteIfExists(job.getBatchFile().toPath());
+        } catch (IOException e) {
+          logger.log(Level.FINE, "Cannot delete batch file of job " + job.getId(), e);
+        }
+      }
+    }
+    logger.info(() -> "Batch job " + job.getId() + " " + job.getStatus());
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      // browsers send an Origin header, requests of web pages are not allowed
+      if (exchange.getRequestHeaders().containsKey("Origin")) {
+        sendError(exchange, 403, "Cross-origin requests are not allowed");
+        return;
+      }
+      final String auth = exchange.getRequestHeaders().getFirst("Authorization");
+      if (auth == null || !MessageDigest.isEqual(authorization,
+          auth.getBytes(StandardCharsets.UTF_8))) {
+        sendError(exchange, 401, "Missing or wrong token, see " + tokenFile.toAbsolutePath());
+        return;
+      }
+
+      final String path = exchange.getRequestURI().getPath();
+      final String method = exchange.getRequestMethod();
+      if (path.equals(JOBS_PATH) || path.equals(JOBS_PATH + "/")) {
+        switch (method) {
+          case "GET" -> sendJson(exchange, 200, jobsToJson(getJobs()));
+          case "POST" -> handleSubmit(exchange);
+          default -> sendError(exchange, 405, "Method not allowed");
+        }
+        return;
+      }
+
+      final BatchJob job = parseJob(path);
+      if (job == null) {
+        sendError(exchange, 404, "Unknown job " + path);
+        return;
+      }
+      switch (method) {
+        case "GET" -> sendJson(exchange, 200, jobToJson(job));
+        case "DELETE" -> {
+          job.cancel();
+          sendJson(exchange, 200, jobToJson(job));
+        }
+        default -> sendError(exchange, 405, "Method not allowed");
+      }
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Error in batch job server request: " + e.getMessage(), e);
+    }
+  }
+
+  private void handleSubmit(HttpExchange exchange) throws IOException {
+    final Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+    final File[] dataFiles;
+    final File[] libraries;
+    try {
+      dataFiles = parseFiles(query.get("input"));
+      libraries = parseFiles(query.get("libraries"));
+    } catch (IOException e) {
+      sendError(exchange, 400, "Cannot find files: " + e.getMessage());
+      return;
+    }
+
+    final Path batchFile = FileAndPathUtil.createTempFile("mzmine_job", ".mzbatch").toPath();
+    try (InputStream body = exchange.getRequestBody()) {
+      Files.copy(body, batchFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+    if (Files.size(batchFile) == 0) {
+      Files.deleteIfExists(batchFile);
+      sendError(exchange, 400, "The request body has to contain the batch file");
+      return;
+    }
+
+    final BatchJob job = submit(batchFile.toFile(), dataFiles, libraries, true);
+    sendJson(exchange, 201, jobToJson(job));
+  }
+
+  @Nullable
+  private static File[] parseFiles(@Nullable String argument) throws IOException {
+    return argument == null || argument.isBlank() ? null
+        : FileAndPathUtil.parseFileInputArgument(argument);
+  }
+
+  @Nullable
+  private BatchJob parseJob(String path) {
+    if (!path.startsWith(JOBS_PATH + "/")) {
+      return null;
+    }
+    try {
+      return getJob(Long.parseLong(path.substring(JOBS_PATH.length() + 1)));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static Map<String, String> parseQuery(@Nullable String rawQuery) {
+    final Map<String, String> query = new HashMap<>();
+    if (rawQuery == null) {
+      return query;
+    }
+    for (String pair : rawQuery.split("&")) {
+      final int eq = pair.indexOf('=');
+      if (eq > 0) {
+        query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+            URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+      }
+    }
+    return query;
+  }
+
+  private ArrayNode jobsToJson(List<BatchJob> jobs) {
+    final ArrayNode array = mapper.createArrayNode();
+    jobs.forEach(job -> array.add(jobToJson(job)));
+    return array;
+  }
+
+  private ObjectNode jobToJson(BatchJob job) {
+    final ObjectNode node = mapper.createObjectNode();
+    node.put("id", job.getId());
+    node.put("status", job.getStatus().toString());
+    node.put("progress", job.getProgress());
+    node.put("submitted", job.getSubmitted().toString());
+    if (job.getStarted() != null) {
+      node.put("started", job.getStarted().toString());
+    }
+    if (job.getFinished() != null) {
+      node.put("finished", job.getFinished().toString());
+    }
+    if (job.getErrorMessage() != null) {
+      node.put("error", job.getErrorMessage());
+    }
+    return node;
+  }
+
+  private void sendError(HttpExchange exchange, int code, String message) throws IOException {
+    final ObjectNode node = mapper.createObjectNode();
+    node.put("error", message);
+    sendJson(exchange, code, node);
+  }
+
+  private void sendJson(HttpExchange exchange, int code, Object json) throws IOException {
+    final byte[] bytes = mapper.writeValueAsBytes(json);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(code, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
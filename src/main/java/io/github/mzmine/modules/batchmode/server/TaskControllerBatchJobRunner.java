@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.server;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.batchmode.BatchModeModule;
+import io.github.mzmine.modules.batchmode.BatchTask;
+import io.github.mzmine.project.ProjectManager;
+import io.github.mzmine.taskcontrol.TaskPriority;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs every job in a new project on the {@link io.github.mzmine.taskcontrol.TaskController}. The
+ * new project only keeps the spectral libraries of the previous project, so libraries that did not
+ * change are not imported again. Clearing the project does not close any files, therefore the
+ * memory mapped storages that were registered during the previous job are released before the
+ * next job starts. Only the storages of kept spectral libraries remain.
+ */
+public class TaskControllerBatchJobRunner implements BatchJobRunner {
+
+  private static final Logger logger = Logger.getLogger(
+      TaskControllerBatchJobRunner.class.getName());
+
+  private static volatile boolean runningJob = false;
+
+  /**
+   * Storages registered during previous jobs that were not discarded yet
+   */
+  private final List<MemoryMapStorage> jobStorages = new ArrayList<>();
+
+  /**
+   * @return true while a job of the batch job server is running
+   */
+  public static boolean isRunningJob() {
+    return runningJob;
+  }
+
+  @Override
+  public @NotNull TaskStatus run(@NotNull BatchJob job) throws Exception {
+    final ProjectManager projectManager = MZmineCore.getProjectManager();
+    projectManager.clearProject();
+    final MZmineProject project = projectManager.getCurrentProject();
+    discardJobStorages(project);
+
+    final List<MemoryMapStorage> storages = MZmineCore.getStorageList();
+    final Set<MemoryMapStorage> storagesBefore = Collections.newSetFromMap(
+        new IdentityHashMap<>());
+    synchronized (storages) {
+      storagesBefore.addAll(storages);
+    }
+
+    runningJob = true;
+    try {
+      return runTask(job, project);
+    } finally {
+      runningJob = false;
+      synchronized (storages) {
+        for (MemoryMapStorage storage : storages) {
+          if (!storagesBefore.contains(storage)) {
+            jobStorages.add(storage);
+          }
+        }
+      }
+    }
+  }
+
+  private @NotNull TaskStatus runTask(@NotNull BatchJob job, MZmineProject project)
+      throws Exception {
+    final BatchTask task = BatchModeModule.createBatchTask(project, job.getBatchFile(),
+        job.getOverrideDataFiles(), job.getOverrideSpectralLibraryFiles(), Instant.now());
+    if (task == null) {
+      return TaskStatus.ERROR;
+    }
+
+    final CountDownLatch done = new CountDownLatch(1);
+    task.addTaskStatusListener((t, newStatus, oldStatus) -> {
+      if (newStatus == TaskStatus.FINISHED || newStatus == TaskStatus.CANCELED
+          || newStatus == TaskStatus.ERROR) {
+        done.countDown();
+      }
+    });
+    job.setTask(task);
+    logger.info(() -> "Starting batch job " + job.getId());
+    // high priority, otherwise the batch task blocks its own steps if only one task may run
+    MZmineCore.getTaskController().addTask(task, TaskPriority.HIGH);
+    done.await();
+
+    if (task.getStatus() == TaskStatus.ERROR && task.getErrorMessage() != null) {
+      throw new IllegalStateException(task.getErrorMessage());
+    }
+    return task.getStatus();
+  }
+
+  /**
+   * Releases the storages of previous jobs: removes them from {@link MZmineCore#getStorageList()}
+   * and deletes their temporary files. The storages are not unmapped, because canceled steps of the
+   * previous job may still run and access their buffers. The mappings are freed by the garbage
+   * collector once the storages are no longer used. Files that cannot be deleted while mapped
+   * (Windows) are deleted on exit. The storages of spectral libraries in the project are kept until
+   * the library is removed.
+   *
+   * @param project the new project with the kept libraries
+   */
+  private void discardJobStorages(@NotNull MZmineProject project) {
+    if (jobStorages.isEmpty()) {
+      return;
+    }
+    final Set<MemoryMapStorage> libraryStorages = Collections.newSetFromMap(
+        new IdentityHashMap<>());
+    for (SpectralLibrary library : project.getCurrentSpectralLibraries()) {
+      libraryStorages.add(library.getStorage());
+    }
+
+    final List<MemoryMapStorage> discarded = new ArrayList<>();
+    for (MemoryMapStorage storage : jobStorages) {
+      if (libraryStorages.contains(storage)) {
+        continue;
+      }
+      try {
+        // no unmapping, deleting mapped files is safe
+        storage.discard(null);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Cannot discard temporary files: " + e.getMessage(), e);
+      }
+      discarded.add(storage);
+    }
+    jobStorages.removeAll(discarded);
+    MZmineCore.getStorageList().removeAll(discarded);
+    logger.fine(() -> "Released %d storages of the previous job".formatted(discarded.size()));
+  }
+}
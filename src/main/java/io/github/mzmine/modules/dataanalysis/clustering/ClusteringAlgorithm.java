@@ -33,4 +33,11 @@ public interface ClusteringAlgorithm extends MZmineModule {
 
   public ClusteringResult performClustering(Instances dataset, ParameterSet parameters);
 
+  /**
+   * Clustering on the primitive matrix. By default, the matrix is converted to a Weka data set.
+   */
+  default ClusteringResult performClustering(ClusteringData data, ParameterSet parameters) {
+    return performClustering(data.toWekaInstances(false), parameters);
+  }
+
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.clustering;
+
+import org.jetbrains.annotations.NotNull;
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+/**
+ * The matrix of items (samples or variables) to cluster.
+ *
+ * @param matrix  [item][attribute]
+ * @param names   item names for the dendrogram
+ * @param threads number of threads for the native clustering algorithms
+ */
+public record ClusteringData(@NotNull double[][] matrix, @NotNull String[] names, int threads) {
+
+  public int numItems() {
+    return matrix.length;
+  }
+
+  public int numAttributes() {
+    return matrix.length == 0 ? 0 : matrix[0].length;
+  }
+
+  /**
+   * Converts the matrix to a Weka data set for the algorithms that are not implemented natively.
+   *
+   * @param withNames adds the names as a string attribute (used for the Newick output of Weka)
+   */
+  public Instances toWekaInstances(boolean withNames) {
+    FastVector attributes = new FastVector();
+    final int numAttributes = numAttributes();
+    for (int i = 0; i < numAttributes; i++) {
+      attributes.addElement(new Attribute("Var" + i));
+    }
+    if (withNames) {
+      attributes.addElement(new Attribute("name", (FastVector) null));
+    }
+    Instances data = new Instances("Dataset", attributes, matrix.length);
+
+    for (int i = 0; i < matrix.length; i++) {
+      double[] values = new double[data.numAttributes()];
+      System.arraycopy(matrix[i], 0, values, 0, numAttributes);
+      if (withNames) {
+        values[data.numAttributes() - 1] = data.attribute("name").addStringValue(names[i]);
+      }
+      Instance inst = new SparseInstance(1.0, values);
+      data.add(inst);
+    }
+    return data;
+  }
+}
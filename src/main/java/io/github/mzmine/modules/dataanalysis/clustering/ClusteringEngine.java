@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.clustering;
+
+import io.github.mzmine.modules.dataanalysis.clustering.hierarchical.DistanceType;
+import io.github.mzmine.modules.dataanalysis.clustering.hierarchical.LinkType;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Clustering on primitive matrices. Replaces the conversion to Weka instances for k-means and
+ * hierarchical clustering:
+ * <ul>
+ *   <li>k-means with the random seeding and the iterations of the Weka SimpleKMeans. Lloyd
+ *   iterations or mini-batch updates (Sculley 2010), the assignment step runs in parallel.</li>
+ *   <li>Hierarchical clustering with the nearest-neighbor-chain algorithm on a condensed float
+ *   distance matrix (n(n-1)/2 values). The distance matrix is computed in parallel. Only the
+ *   reducible link types single, complete and average are supported. The Ward link of Weka sums
+ *   unsquared distances to the centroids and is not reducible.</li>
+ * </ul>
+ * Like the Weka distances, attributes should be normalized to their range before (see
+ * {@link #normalizeRanges(double[][])}).
+ */
+public class ClusteringEngine {
+
+  private static final int BLOCK_SIZE = 64;
+  private static final double MINI_BATCH_TOLERANCE = 1E-10;
+
+  private final int threads;
+
+  public ClusteringEngine(int threads) {
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * @return true if the link type is reducible and supported by
+   * {@link #hierarchical(float[], int, LinkType)}
+   */
+  public static boolean isSupported(@NotNull LinkType link) {
+    return switch (link) {
+      case SINGLE, COMPLETE, AVERAGE -> true;
+      default -> false;
+    };
+  }
+
+  /**
+   * Scales all attributes to 0-1 by their range, constant attributes are set to 0. This is the
+   * default normalization of the Weka distance functions.
+   *
+   * @return a normalized copy
+   */
+  public static double[][] normalizeRanges(@NotNull double[][] data) {
+    final int n = data.length;
+    final int p = n == 0 ? 0 : data[0].length;
+    final double[] min = new double[p];
+    final double[] max = new double[p];
+    Arrays.fill(min, Double.POSITIVE_INFINITY);
+    Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    for (double[] row : data) {
+      for (int j = 0; j < p; j++) {
+        min[j] = Math.min(min[j], row[j]);
+        max[j] = Math.max(max[j], row[j]);
+      }
+    }
+    final double[][] normalized = new double[n][p];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < p; j++) {
+        final double range = max[j] - min[j];
+        normalized[i][j] = range > 0 ? (data[i][j] - min[j]) / range : 0d;
+      }
+    }
+    return normalized;
+  }
+
+  /**
+   * Index of the pair i < j in a condensed distance matrix of n items.
+   */
+  static int condensedIndex(int i, int j, int n) {
+    return (int) ((long) i * n - (long) i * (i + 1) / 2 + (j - i - 1));
+  }
+
+  static double distance(double[] a, double[] b, DistanceType type) {
+    double result = 0d;
+    for (int k = 0; k < a.length; k++) {
+      final double d = Math.abs(a[k] - b[k]);
+      switch (type) {
+        case CHEBYSHEV -> result = Math.max(result, d);
+        case MANHATTAN -> result += d;
+        // Minkowski with the Weka default order 2
+        case EUCLIDIAN, MINKOWSKI -> result += d * d;
+      }
+    }
+    return type == DistanceType.EUCLIDIAN || type == DistanceType.MINKOWSKI ? Math.sqrt(result)
+        : result;
+  }
+
+  private static double squaredEuclidean(double[] a, double[] b) {
+    double sum = 0d;
+    for (int k = 0; k < a.length; k++) {
+      final double d = a[k] - b[k];
+      sum += d * d;
+    }
+    return sum;
+  }
+
+  /**
+   * Computes all pairwise distances in parallel.
+   *
+   * @return condensed distance matrix, see {@link #condensedIndex(int, int, int)}
+   * @throws IllegalArgumentException if the matrix does not fit into an array
+   */
+  public float[] distanceMatrix(@NotNull double[][] data, @NotNull DistanceType type) {
+    final int n = data.length;
+    final long size = (long) n * (n - 1) / 2;
+    if (size > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException(
+          "Too many items (" + n + ") for the distance matrix of hierarchical clustering");
+    }
+    final float[] distances = new float[(int) size];
+    runInPool(() -> {
+      // pair short and long rows of the triangle to balance the work
+      IntStream.range(0, (n + 1) / 2).parallel().forEach(i -> {
+        computeRow(data, type, distances, i);
+        if (n - 1 - i != i) {
+          computeRow(data, type, distances, n - 1 - i);
+        }
+      });
+      return null;
+    });
+    return distances;
+  }
+
+  private static void computeRow(double[][] data, DistanceType type, float[] distances, int i) {
+    final int n = data.length;
+    for (int j = i + 1; j < n; j++) {
+      distances[condensedIndex(i, j, n)] = (float) distance(data[i], data[j], type);
+    }
+  }
+
+  /**
+   * Agglomerative clustering with the nearest-neighbor-chain algorithm. Only reducible link types
+   * are supported, see {@link #isSupported(LinkType)}.
+   *
+   * @param distances condensed distance matrix, is overwritten
+   * @param n         number of items
+   * @return the dendrogram
+   */
+  public Dendrogram hierarchical(@NotNull float[] distances, int n, @NotNull LinkType link) {
+    if (!isSupported(link)) {
+      throw new IllegalArgumentException("Link type " + link + " is not supported");
+    }
+
+    final int merges = Math.max(0, n - 1);
+    final int[] mergeA = new int[merges];
+    final int[] mergeB = new int[merges];
+    final double[] mergeHeight = new double[merges];
+
+    final int[] size = new int[n];
+    Arrays.fill(size, 1);
+    final boolean[] active = new boolean[n];
+    Arrays.fill(active, true);
+    final int[] chain = new int[n];
+    int chainLength = 0;
+    int firstActive = 0;
+
+    for (int m = 0; m < merges; m++) {
+      if (chainLength == 0) {
+        while (!active[firstActive]) {
+          firstActive++;
+        }
+        chain[chainLength++] = firstActive;
+      }
+
+      int a;
+      int b;
+      double best;
+      while (true) {
+        a = chain[chainLength - 1];
+        final int previous = chainLength > 1 ? chain[chainLength - 2] : -1;
+        // prefer the previous element on ties, otherwise the chain may loop
+        b = previous;
+        best = previous >= 0 ? get(distances, a, previous, n) : Double.POSITIVE_INFINITY;
+        for (int k = 0; k < n; k++) {
+          if (k == a || !active[k]) {
+            continue;
+          }
+          final double d = get(distances, a, k, n);
+          if (d < best) {
+            best = d;
+            b = k;
+          }
+        }
+        if (b == previous) {
+          break;
+        }
+        chain[chainLength++] = b;
+      }
+      chainLength -= 2;
+
+      mergeA[m] = a;
+      mergeB[m] = b;
+      mergeHeight[m] = best;
+
+      // the merged cluster stays in slot b
+      final int sizeA = size[a];
+      final int sizeB = size[b];
+      active[a] = false;
+      for (int k = 0; k < n; k++) {
+        if (!active[k] || k == b) {
+          continue;
+        }
+        final double dka = get(distances, k, a, n);
+        final double dkb = get(distances, k, b, n);
+        final double updated = switch (link) {
+          case SINGLE -> Math.min(dka, dkb);
+          case COMPLETE -> Math.max(dka, dkb);
+          case AVERAGE -> (sizeA * dka + sizeB * dkb) / (sizeA + sizeB);
+          default -> throw new IllegalStateException();
+        };
+        set(distances, k, b, n, (float) updated);
+      }
+      size[b] = sizeA + sizeB;
+    }
+    return Dendrogram.fromUnsortedMerges(n, mergeA, mergeB, mergeHeight);
+  }
+
+  private static double get(float[] distances, int i, int j, int n) {
+    return i < j ? distances[condensedIndex(i, j, n)] : distances[condensedIndex(j, i, n)];
+  }
+
+  private static void set(float[] distances, int i, int j, int n, float value) {
+    if (i < j) {
+      distances[condensedIndex(i, j, n)] = value;
+    } else {
+      distances[condensedIndex(j, i, n)] = value;
+    }
+  }
+
+  /**
+   * k-means on the euclidean distance like the Weka SimpleKMeans: random seeding, Lloyd
+   * iterations until no item changes its cluster, empty clusters are removed.
+   *
+   * @param k             number of clusters
+   * @param maxIterations maximum number of iterations
+   * @param miniBatchSize number of random items per mini-batch update, full Lloyd iterations if
+   *                      &le; 0 or larger than the number of items
+   * @param seed          seed for the seeding and the mini-batches
+   * @return the cluster of each item, clusters are numbered in the order of their seeds
+   */
+  public int[] kMeans(@NotNull double[][] data, int k, int maxIterations, int miniBatchSize,
+      long seed) {
+    final int n = data.length;
+    if (n == 0 || k <= 0) {
+      return new int[n];
+    }
+    return runInPool(() -> {
+      final Random random = new Random(seed);
+      double[][] centers = seedRandomly(data, k, random);
+      if (miniBatchSize > 0 && miniBatchSize < n) {
+        miniBatchKMeans(data, centers, maxIterations, miniBatchSize, random);
+      } else {
+        centers = lloydKMeans(data, centers, maxIterations);
+      }
+      final int[] assignment = new int[n];
+      assign(data, centers, assignment);
+      return removeEmptyClusters(assignment, centers.length);
+    });
+  }
+
+  /**
+   * Random seeding of the Weka SimpleKMeans: draws items without replacement by a backwards
+   * shuffle and skips items that equal a previous seed.
+   */
+  private static double[][] seedRandomly(double[][] data, int k, Random random) {
+    final int n = data.length;
+    final int[] order = IntStream.range(0, n).toArray();
+    final List<double[]> centers = new ArrayList<>();
+    final Set<List<Double>> seeds = new HashSet<>();
+    for (int j = n - 1; j >= 0; j--) {
+      final int index = random.nextInt(j + 1);
+      final double[] item = data[order[index]];
+      if (seeds.add(Arrays.stream(item).boxed().toList())) {
+        centers.add(item.clone());
+      }
+      final int swap = order[j];
+      order[j] = order[index];
+      order[index] = swap;
+      if (centers.size() == k) {
+        break;
+      }
+    }
+    return centers.toArray(double[][]::new);
+  }
+
+  /**
+   * Lloyd iterations like the Weka SimpleKMeans. Items keep the cluster numbers of the previous
+   * iteration when empty clusters are removed, so changed numbers count as changed clusters.
+   *
+   * @return the centers after the last update
+   */
+  private double[][] lloydKMeans(double[][] data, double[][] centers, int maxIterations) {
+    final int n = data.length;
+    final int p = data[0].length;
+    final int[] assignment = new int[n];
+
+    for (int iteration = 1; ; iteration++) {
+      final int k = centers.length;
+      final int changed = assign(data, centers, assignment);
+
+      final int[] counts = new int[k];
+      for (int c : assignment) {
+        counts[c]++;
+      }
+      // new centers, blocks of attributes in parallel
+      final double[][] current = centers;
+      final int blocks = (p + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      IntStream.range(0, blocks).parallel().forEach(block -> {
+        final int from = block * BLOCK_SIZE;
+        final int to = Math.min(p, from + BLOCK_SIZE);
+        final double[][] sums = new double[k][to - from];
+        for (int i = 0; i < n; i++) {
+          final double[] sum = sums[assignment[i]];
+          final double[] x = data[i];
+          for (int j = from; j < to; j++) {
+            sum[j - from] += x[j];
+          }
+        }
+        for (int c = 0; c < k; c++) {
+          if (counts[c] > 0) {
+            for (int j = from; j < to; j++) {
+              current[c][j] = sums[c][j - from] / counts[c];
+            }
+          }
+        }
+      });
+      centers = IntStream.range(0, k).filter(c -> counts[c] > 0).mapToObj(c -> current[c])
+          .toArray(double[][]::new);
+
+      if (changed == 0 || iteration >= maxIterations) {
+        return centers;
+      }
+    }
+  }
+
+  private void miniBatchKMeans(double[][] data, double[][] centers, int maxIterations,
+      int batchSize, Random random) {
+    final int n = data.length;
+    final int k = centers.length;
+    final int p = data[0].length;
+    final long[] counts = new long[k];
+    final int[] batch = new int[batchSize];
+    final int[] batchAssignment = new int[batchSize];
+
+    for (int iteration = 0; iteration < maxIterations; iteration++) {
+      for (int b = 0; b < batchSize; b++) {
+        batch[b] = random.nextInt(n);
+      }
+      forEachBlock(batchSize, b -> batchAssignment[b] = nearest(data[batch[b]], centers));
+
+      double moved = 0d;
+      for (int b = 0; b < batchSize; b++) {
+        final int c = batchAssignment[b];
+        final double eta = 1d / ++counts[c];
+        final double[] center = centers[c];
+        final double[] x = data[batch[b]];
+        for (int j = 0; j < p; j++) {
+          final double step = eta * (x[j] - center[j]);
+          center[j] += step;
+          moved += step * step;
+        }
+      }
+      if (moved < MINI_BATCH_TOLERANCE) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Assigns all items to their nearest center in parallel.
+   *
+   * @return the number of changed assignments
+   */
+  private int assign(double[][] data, double[][] centers, int[] assignment) {
+    final int n = data.length;
+    final int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    return IntStream.range(0, blocks).parallel().map(block -> {
+      int changed = 0;
+      final int to = Math.min(n, (block + 1) * BLOCK_SIZE);
+      for (int i = block * BLOCK_SIZE; i < to; i++) {
+        final int c = nearest(data[i], centers);
+        if (c != assignment[i]) {
+          assignment[i] = c;
+          changed++;
+        }
+      }
+      return changed;
+    }).sum();
+  }
+
+  private static int nearest(double[] x, double[][] centers) {
+    int best = 0;
+    double bestDistance = Double.POSITIVE_INFINITY;
+    for (int c = 0; c < centers.length; c++) {
+      final double d = squaredEuclidean(x, centers[c]);
+      if (d < bestDistance) {
+        bestDistance = d;
+        best = c;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Removes empty clusters and keeps the order of the other clusters.
+   */
+  static int[] removeEmptyClusters(int[] assignment, int numClusters) {
+    final int[] mapping = new int[numClusters];
+    for (int c : assignment) {
+      mapping[c] = 1;
+    }
+    int next = 0;
+    for (int c = 0; c < numClusters; c++) {
+      mapping[c] = mapping[c] == 1 ? next++ : -1;
+    }
+    final int[] labels = new int[assignment.length];
+    for (int i = 0; i < assignment.length; i++) {
+      labels[i] = mapping[assignment[i]];
+    }
+    return labels;
+  }
+
+  private static void forEachBlock(int size, IntConsumer consumer) {
+    final int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    IntStream.range(0, blocks).parallel().forEach(block -> {
+      final int to = Math.min(size, (block + 1) * BLOCK_SIZE);
+      for (int i = block * BLOCK_SIZE; i < to; i++) {
+        consumer.accept(i);
+      }
+    });
+  }
+
+  /**
+   * Runs the computation in the shared task pool, parallel streams use this pool.
+   */
+  private <T> T runInPool(Supplier<T> computation) {
+    try {
+      return TaskThreadPool.invoke(threads, computation::get);
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException("Error during clustering: " + e.getMessage(), e);
+    }
+  }
+}
@@ -33,12 +33,13 @@ import io.github.mzmine.gui.Desktop;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.AbstractTaskXYDataset;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineProcessingStep;
-import io.github.mzmine.modules.dataanalysis.clustering.hierarchical.HierarClusterer;
 import io.github.mzmine.modules.dataanalysis.projectionplots.ProjectionPlotDataset;
 import io.github.mzmine.modules.dataanalysis.projectionplots.ProjectionPlotWindow;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -53,11 +54,6 @@ import jmprojection.PCA;
 import jmprojection.Preprocess;
 import jmprojection.ProjectionStatus;
 import jmprojection.Sammons;
-import weka.core.Attribute;
-import weka.core.FastVector;
-import weka.core.Instance;
-import weka.core.Instances;
-import weka.core.SparseInstance;
 import weka.gui.hierarchyvisualizer.HierarchyVisualizer;
 
 public class ClusteringTask extends AbstractTaskXYDataset implements ProjectionPlotDataset {
@@ -81,7 +77,6 @@ public class ClusteringTask extends AbstractTaskXYDataset implements ProjectionP
   private ProjectionStatus projectionStatus;
   private final MZmineProcessingStep<ClusteringAlgorithm> clusteringStep;
   private final ClusteringDataType typeOfData;
-  private Instances dataset;
   private int progress;
   private final FeatureList featureList;
 
@@ -194,21 +189,30 @@ public class ClusteringTask extends AbstractTaskXYDataset implements ProjectionP
     logger.info("Clustering");
 
     double[][] rawData;
+    String[] names;
 
-    // Creating weka dataset using samples or metabolites (variables)
+    // Creating the data set using samples or metabolites (variables)
 
     if (typeOfData == ClusteringDataType.VARIABLES) {
       rawData = createMatrix(false);
-      dataset = createVariableWekaDataset(rawData);
+      names = createVariableNames();
     } else {
       rawData = createMatrix(true);
-      dataset = createSampleWekaDataset(rawData);
+      names = Arrays.stream(selectedRawDataFiles).map(RawDataFile::getName)
+          .toArray(String[]::new);
     }
+    final ClusteringData dataset = new ClusteringData(rawData, names,
+        TaskThreadPool.getMaxThreads());
 
     // Run the clustering algorithm
     ClusteringAlgorithm clusteringAlgorithm = clusteringStep.getModule();
     ParameterSet clusteringParameters = clusteringStep.getParameterSet();
     ClusteringResult result = clusteringAlgorithm.performClustering(dataset, clusteringParameters);
+    if (result == null) {
+      setErrorMessage("Clustering with " + clusteringAlgorithm.getName() + " failed");
+      setStatus(TaskStatus.ERROR);
+      return;
+    }
 
     String cluster = "";
     if (clusteringAlgorithm.getName().equals("Hierarchical clusterer")) {
@@ -426,75 +430,17 @@ public class ClusteringTask extends AbstractTaskXYDataset implements ProjectionP
   }
 
   /**
-   * Creates the weka data set for clustering of samples
-   *
-   * @param rawData Data extracted from selected Raw data files and rows.
-   * @return Weka library data set
+   * Names of the variables (metabolites) for the dendrogram
    */
-  private Instances createSampleWekaDataset(double[][] rawData) {
-    FastVector attributes = new FastVector();
-
-    for (int i = 0; i < rawData[0].length; i++) {
-      String varName = "Var" + i;
-      Attribute var = new Attribute(varName);
-      attributes.addElement(var);
-    }
-
-    if (clusteringStep.getModule().getClass().equals(HierarClusterer.class)) {
-      Attribute name = new Attribute("name", (FastVector) null);
-      attributes.addElement(name);
-    }
-    Instances data = new Instances("Dataset", attributes, 0);
-
-    for (int i = 0; i < rawData.length; i++) {
-      double[] values = new double[data.numAttributes()];
-      System.arraycopy(rawData[i], 0, values, 0, rawData[0].length);
-      if (clusteringStep.getModule().getClass().equals(HierarClusterer.class)) {
-        values[data.numAttributes() - 1] = data.attribute("name")
-            .addStringValue(this.selectedRawDataFiles[i].getName());
-      }
-      Instance inst = new SparseInstance(1.0, values);
-      data.add(inst);
-    }
-    return data;
-  }
-
-  /**
-   * Creates the weka data set for clustering of variables (metabolites)
-   *
-   * @param rawData Data extracted from selected Raw data files and rows.
-   * @return Weka library data set
-   */
-  private Instances createVariableWekaDataset(double[][] rawData) {
-    FastVector attributes = new FastVector();
-
-    for (int i = 0; i < this.selectedRawDataFiles.length; i++) {
-      String varName = "Var" + i;
-      Attribute var = new Attribute(varName);
-      attributes.addElement(var);
-    }
-
-    if (clusteringStep.getModule().getClass().equals(HierarClusterer.class)) {
-      Attribute name = new Attribute("name", (FastVector) null);
-      attributes.addElement(name);
-    }
-    Instances data = new Instances("Dataset", attributes, 0);
-
+  private String[] createVariableNames() {
+    String[] names = new String[selectedRows.length];
+    DecimalFormat twoDForm = new DecimalFormat("#.##");
     for (int i = 0; i < selectedRows.length; i++) {
-      double[] values = new double[data.numAttributes()];
-      System.arraycopy(rawData[i], 0, values, 0, rawData[0].length);
-
-      if (clusteringStep.getModule().getClass().equals(HierarClusterer.class)) {
-        DecimalFormat twoDForm = new DecimalFormat("#.##");
-        double MZ = Double.valueOf(twoDForm.format(selectedRows[i].getAverageMZ()));
-        double RT = Double.valueOf(twoDForm.format(selectedRows[i].getAverageRT()));
-        String rowName = "MZ->" + MZ + "/RT->" + RT;
-        values[data.numAttributes() - 1] = data.attribute("name").addStringValue(rowName);
-      }
-      Instance inst = new SparseInstance(1.0, values);
-      data.add(inst);
+      double MZ = Double.valueOf(twoDForm.format(selectedRows[i].getAverageMZ()));
+      double RT = Double.valueOf(twoDForm.format(selectedRows[i].getAverageRT()));
+      names[i] = "MZ->" + MZ + "/RT->" + RT;
     }
-    return data;
+    return names;
   }
 
   @Override
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.clustering;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Result of hierarchical clustering. Items are the nodes 0 to n-1, merge i creates node n+i. The
+ * merges are sorted by height.
+ */
+public class Dendrogram {
+
+  private final int numItems;
+  private final int[] left;
+  private final int[] right;
+  private final double[] height;
+
+  private Dendrogram(int numItems, int[] left, int[] right, double[] height) {
+    this.numItems = numItems;
+    this.left = left;
+    this.right = right;
+    this.height = height;
+  }
+
+  /**
+   * @param mergeA      an item of the first merged cluster
+   * @param mergeB      an item of the second merged cluster
+   * @param mergeHeight distance of the merge
+   */
+  static Dendrogram fromUnsortedMerges(int numItems, int[] mergeA, int[] mergeB,
+      double[] mergeHeight) {
+    final int merges = mergeA.length;
+    final Integer[] order = new Integer[merges];
+    for (int i = 0; i < merges; i++) {
+      order[i] = i;
+    }
+    // stable sort keeps the merge order for equal heights
+    Arrays.sort(order, (a, b) -> Double.compare(mergeHeight[a], mergeHeight[b]));
+
+    // union find from items to the current node
+    final int[] parent = new int[numItems + merges];
+    for (int i = 0; i < parent.length; i++) {
+      parent[i] = i;
+    }
+    final int[] left = new int[merges];
+    final int[] right = new int[merges];
+    final double[] height = new double[merges];
+    for (int m = 0; m < merges; m++) {
+      final int index = order[m];
+      final int a = find(parent, mergeA[index]);
+      final int b = find(parent, mergeB[index]);
+      left[m] = Math.min(a, b);
+      right[m] = Math.max(a, b);
+      height[m] = mergeHeight[index];
+      parent[a] = numItems + m;
+      parent[b] = numItems + m;
+    }
+    return new Dendrogram(numItems, left, right, height);
+  }
+
+  private static int find(int[] parent, int node) {
+    int root = node;
+    while (parent[root] != root) {
+      root = parent[root];
+    }
+    // path compression
+    while (parent[node] != root) {
+      final int next = parent[node];
+      parent[node] = root;
+      node = next;
+    }
+    return root;
+  }
+
+  public int getNumItems() {
+    return numItems;
+  }
+
+  public int getNumMerges() {
+    return left.length;
+  }
+
+  public int getLeft(int merge) {
+    return left[merge];
+  }
+
+  public int getRight(int merge) {
+    return right[merge];
+  }
+
+  public double getHeight(int merge) {
+    return height[merge];
+  }
+
+  /**
+   * @return the root nodes after cutting the tree into a number of clusters, ordered by their
+   * first item
+   */
+  private int[] roots(int numClusters) {
+    final int clusters = Math.max(1, Math.min(numClusters, numItems));
+    final int[] parent = new int[numItems + left.length];
+    for (int i = 0; i < parent.length; i++) {
+      parent[i] = i;
+    }
+    for (int m = 0; m < numItems - clusters; m++) {
+      parent[left[m]] = numItems + m;
+      parent[right[m]] = numItems + m;
+    }
+    final int[] roots = new int[clusters];
+    int found = 0;
+    final boolean[] seen = new boolean[parent.length];
+    for (int i = 0; i < numItems; i++) {
+      final int root = find(parent, i);
+      if (!seen[root]) {
+        seen[root] = true;
+        roots[found++] = root;
+      }
+    }
+    return roots;
+  }
+
+  /**
+   * @return the cluster of each item after cutting the tree into a number of clusters. Clusters
+   * are numbered by their first item.
+   */
+  public int[] cut(int numClusters) {
+    final int[] roots = roots(numClusters);
+    final int[] clusters = new int[numItems];
+    for (int c = 0; c < roots.length; c++) {
+      for (int item : items(roots[c])) {
+        clusters[item] = c;
+      }
+    }
+    return clusters;
+  }
+
+  private int[] items(int node) {
+    final int[] items = new int[size(node)];
+    int count = 0;
+    final Deque<Integer> stack = new ArrayDeque<>();
+    stack.push(node);
+    while (!stack.isEmpty()) {
+      final int current = stack.pop();
+      if (current < numItems) {
+        items[count++] = current;
+      } else {
+        stack.push(right[current - numItems]);
+        stack.push(left[current - numItems]);
+      }
+    }
+    return items;
+  }
+
+  private int size(int node) {
+    int size = 0;
+    final Deque<Integer> stack = new ArrayDeque<>();
+    stack.push(node);
+    while (!stack.isEmpty()) {
+      final int current = stack.pop();
+      if (current < numItems) {
+        size++;
+      } else {
+        stack.push(right[current - numItems]);
+        stack.push(left[current - numItems]);
+      }
+    }
+    return size;
+  }
+
+  private double nodeHeight(int node) {
+    return node < numItems ? 0d : height[node - numItems];
+  }
+
+  /**
+   * Newick format of all clusters after cutting the tree, in the format of the Weka hierarchical
+   * clusterer ("Cluster i" followed by the tree of each cluster).
+   */
+  public String toNewick(int numClusters, @NotNull String[] names) {
+    final StringBuilder b = new StringBuilder();
+    final int[] roots = roots(numClusters);
+    for (int c = 0; c < roots.length; c++) {
+      b.append("Cluster ").append(c).append("\n");
+      appendNewick(b, roots[c], names);
+      b.append("\n");
+    }
+    return b.toString();
+  }
+
+  /**
+   * Iterative to support deep trees (e.g., chains of single linkage).
+   */
+  private void appendNewick(StringBuilder b, int root, String[] names) {
+    // negative values close the node -(node+1)
+    final Deque<int[]> stack = new ArrayDeque<>();
+    stack.push(new int[]{root, 0});
+    while (!stack.isEmpty()) {
+      final int[] state = stack.peek();
+      final int node = state[0];
+      if (node < numItems) {
+        b.append(names[node]);
+        stack.pop();
+        continue;
+      }
+      final int merge = node - numItems;
+      switch (state[1]++) {
+        case 0 -> {
+          b.append("(");
+          stack.push(new int[]{left[merge], 0});
+        }
+        case 1 -> {
+          b.append(":").append(height[merge] - nodeHeight(left[merge])).append(",");
+          stack.push(new int[]{right[merge], 0});
+        }
+        default -> {
+          b.append(":").append(height[merge] - nodeHeight(right[merge])).append(")");
+          stack.pop();
+        }
+      }
+    }
+  }
+}
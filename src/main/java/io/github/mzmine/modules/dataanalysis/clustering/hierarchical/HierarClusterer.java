@@ -31,7 +31,10 @@ import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 
 import io.github.mzmine.modules.dataanalysis.clustering.ClusteringAlgorithm;
+import io.github.mzmine.modules.dataanalysis.clustering.ClusteringData;
+import io.github.mzmine.modules.dataanalysis.clustering.ClusteringEngine;
 import io.github.mzmine.modules.dataanalysis.clustering.ClusteringResult;
+import io.github.mzmine.modules.dataanalysis.clustering.Dendrogram;
 import io.github.mzmine.parameters.ParameterSet;
 import weka.clusterers.HierarchicalClusterer;
 import weka.core.Instances;
@@ -41,6 +44,8 @@ public class HierarClusterer implements ClusteringAlgorithm {
   private Logger logger = Logger.getLogger(this.getClass().getName());
 
   private static final String MODULE_NAME = "Hierarchical clusterer";
+  // same as the Weka default
+  private static final int NUMBER_OF_CLUSTERS = 2;
 
   @Override
   public @NotNull String getName() {
@@ -92,6 +97,32 @@ public class HierarClusterer implements ClusteringAlgorithm {
     }
   }
 
+  /**
+   * Single, complete and average linkage are computed natively on a condensed distance matrix.
+   * The other link types use Weka.
+   */
+  @Override
+  public ClusteringResult performClustering(ClusteringData data, ParameterSet parameters) {
+    final LinkType link = parameters.getValue(HierarClustererParameters.linkType);
+    if (!ClusteringEngine.isSupported(link)) {
+      return performClustering(data.toWekaInstances(true), parameters);
+    }
+    final DistanceType distanceType = parameters.getValue(HierarClustererParameters.distanceType);
+
+    try {
+      final ClusteringEngine engine = new ClusteringEngine(data.threads());
+      final double[][] normalized = ClusteringEngine.normalizeRanges(data.matrix());
+      final float[] distances = engine.distanceMatrix(normalized, distanceType);
+      final Dendrogram dendrogram = engine.hierarchical(distances, data.numItems(), link);
+      final int numClusters = Math.min(NUMBER_OF_CLUSTERS, data.numItems());
+      return new ClusteringResult(null, dendrogram.toNewick(numClusters, data.names()),
+          numClusters, null);
+    } catch (Exception ex) {
+      logger.log(Level.SEVERE, null, ex);
+      return null;
+    }
+  }
+
   @Override
   public @NotNull Class<? extends ParameterSet> getParameterSetClass() {
     return HierarClustererParameters.class;
@@ -26,6 +26,7 @@
 package io.github.mzmine.modules.dataanalysis.clustering.simplekmeans;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.logging.Level;
@@ -34,6 +35,8 @@ import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 
 import io.github.mzmine.modules.dataanalysis.clustering.ClusteringAlgorithm;
+import io.github.mzmine.modules.dataanalysis.clustering.ClusteringData;
+import io.github.mzmine.modules.dataanalysis.clustering.ClusteringEngine;
 import io.github.mzmine.modules.dataanalysis.clustering.ClusteringResult;
 import io.github.mzmine.modules.dataanalysis.clustering.em.EMClustererParameters;
 import io.github.mzmine.parameters.ParameterSet;
@@ -46,6 +49,9 @@ public class SimpleKMeansClusterer implements ClusteringAlgorithm {
   private Logger logger = Logger.getLogger(this.getClass().getName());
 
   private static final String MODULE_NAME = "Simple KMeans";
+  // same as the Weka defaults
+  private static final int MAX_ITERATIONS = 500;
+  private static final long SEED = 10;
 
   @Override
   public @NotNull String getName() {
@@ -81,6 +87,29 @@ public class SimpleKMeansClusterer implements ClusteringAlgorithm {
     }
   }
 
+  /**
+   * Native k-means with the seeding, iterations and cluster numbers of the Weka SimpleKMeans. The
+   * mini-batch mode is not available in Weka.
+   */
+  @Override
+  public ClusteringResult performClustering(ClusteringData data, ParameterSet parameters) {
+    final int numberOfGroups = parameters.getValue(SimpleKMeansClustererParameters.numberOfGroups);
+    final int miniBatchSize = parameters.getEmbeddedParameterValueIfSelectedOrElse(
+        SimpleKMeansClustererParameters.miniBatchSize, 0);
+
+    try {
+      final double[][] normalized = ClusteringEngine.normalizeRanges(data.matrix());
+      final int[] clusters = new ClusteringEngine(data.threads()).kMeans(normalized,
+          numberOfGroups, MAX_ITERATIONS, miniBatchSize, SEED);
+      final int numClusters = Arrays.stream(clusters).max().orElse(-1) + 1;
+      return new ClusteringResult(Arrays.stream(clusters).boxed().toList(), null, numClusters,
+          parameters.getValue(SimpleKMeansClustererParameters.visualization));
+    } catch (Exception ex) {
+      logger.log(Level.SEVERE, null, ex);
+      return null;
+    }
+  }
+
   @Override
   public @NotNull Class<? extends ParameterSet> getParameterSetClass() {
     return SimpleKMeansClustererParameters.class;
@@ -28,7 +28,6 @@ package io.github.mzmine.modules.dataanalysis.projectionplots;
 import io.github.mzmine.datamodel.AbundanceMeasure;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
-import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.AbstractTaskXYDataset;
@@ -39,7 +38,6 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import java.util.Vector;
 import java.util.logging.Logger;
 import jmprojection.CDA;
-import jmprojection.Preprocess;
 import jmprojection.ProjectionStatus;
 
 public class CDADataset extends AbstractTaskXYDataset implements ProjectionPlotDataset {
@@ -68,6 +66,7 @@ public class CDADataset extends AbstractTaskXYDataset implements ProjectionPlotD
   private final int yAxisDimension;
 
   private ProjectionStatus projectionStatus;
+  private ProjectionEngine engine;
 
   public CDADataset(MZmineProject project, ParameterSet parameters) {
 
@@ -238,34 +237,24 @@ public class CDADataset extends AbstractTaskXYDataset implements ProjectionPlotD
     logger.info("Computing projection plot");
 
     // Generate matrix of raw data (input to CDA)
-    boolean useArea =
-        parameters.getParameter(ProjectionPlotParameters.featureMeasurementType).getValue()
-            == AbundanceMeasure.Area;
-
-    double[][] rawData = new double[selectedRawDataFiles.length][selectedRows.length];
-    for (int rowIndex = 0; rowIndex < selectedRows.length; rowIndex++) {
-      FeatureListRow featureListRow = selectedRows[rowIndex];
-      for (int fileIndex = 0; fileIndex < selectedRawDataFiles.length; fileIndex++) {
-        RawDataFile rawDataFile = selectedRawDataFiles[fileIndex];
-        Feature p = featureListRow.getFeature(rawDataFile);
-        if (p != null) {
-          if (useArea) {
-            rawData[fileIndex][rowIndex] = p.getArea();
-          } else {
-            rawData[fileIndex][rowIndex] = p.getHeight();
-          }
-        }
-      }
-    }
+    engine = ProjectionEngine.create(this::isCanceled);
+    final AbundanceMeasure measure = parameters.getParameter(
+        ProjectionPlotParameters.featureMeasurementType).getValue();
+    double[][] rawData = engine.buildDataMatrix(selectedRows, selectedRawDataFiles, measure);
 
     int numComponents = xAxisDimension;
     if (yAxisDimension > numComponents) {
       numComponents = yAxisDimension;
     }
 
-    // Scale data and do CDA
-    Preprocess.scaleToUnityVariance(rawData);
+    // Scale data and do CDA on the principal components
+    engine.autoscale(rawData);
+    rawData = engine.reduceDimensions(rawData);
+    if (rawData == null || isCanceled()) {
+      return;
+    }
     CDA cdaProj = new CDA(rawData);
+    projectionStatus = cdaProj.getProjectionStatus();
     cdaProj.iterate(100);
 
     if (isCanceled()) {
@@ -304,10 +293,10 @@ public class CDADataset extends AbstractTaskXYDataset implements ProjectionPlotD
 
   @Override
   public double getFinishedPercentage() {
-    if (projectionStatus == null) {
-      return 0;
+    if (projectionStatus != null) {
+      return projectionStatus.getFinishedPercentage();
     }
-    return projectionStatus.getFinishedPercentage();
+    return engine == null ? 0 : engine.getProgress();
   }
 
 }
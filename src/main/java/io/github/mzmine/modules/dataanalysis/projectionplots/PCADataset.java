@@ -28,7 +28,6 @@ package io.github.mzmine.modules.dataanalysis.projectionplots;
 import io.github.mzmine.datamodel.AbundanceMeasure;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
-import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.AbstractTaskXYDataset;
@@ -38,9 +37,6 @@ import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import java.util.Vector;
 import java.util.logging.Logger;
-import jmprojection.PCA;
-import jmprojection.Preprocess;
-import jmprojection.ProjectionStatus;
 
 public class PCADataset extends AbstractTaskXYDataset implements ProjectionPlotDataset {
 
@@ -67,7 +63,7 @@ public class PCADataset extends AbstractTaskXYDataset implements ProjectionPlotD
   private final int xAxisPC;
   private final int yAxisPC;
 
-  private ProjectionStatus projectionStatus;
+  private ProjectionEngine engine;
 
   public PCADataset(MZmineProject project, ParameterSet parameters) {
 
@@ -225,11 +221,6 @@ public class PCADataset extends AbstractTaskXYDataset implements ProjectionPlotD
 
     logger.info("Computing PCA projection plot");
 
-    // Generate matrix of raw data (input to PCA)
-    final boolean useArea = (
-        parameters.getParameter(ProjectionPlotParameters.featureMeasurementType).getValue()
-            == AbundanceMeasure.Area);
-
     if (selectedRows.length == 0) {
       setStatus(TaskStatus.ERROR);
       errorMessage = "No features selected for PCA plot";
@@ -241,46 +232,22 @@ public class PCADataset extends AbstractTaskXYDataset implements ProjectionPlotD
       return;
     }
 
-    double[][] rawData = new double[selectedRawDataFiles.length][selectedRows.length];
-    for (int rowIndex = 0; rowIndex < selectedRows.length; rowIndex++) {
-      FeatureListRow featureListRow = selectedRows[rowIndex];
-      for (int fileIndex = 0; fileIndex < selectedRawDataFiles.length; fileIndex++) {
-        RawDataFile rawDataFile = selectedRawDataFiles[fileIndex];
-        Feature p = featureListRow.getFeature(rawDataFile);
-        if (p != null) {
-          if (useArea) {
-            rawData[fileIndex][rowIndex] = p.getArea();
-          } else {
-            rawData[fileIndex][rowIndex] = p.getHeight();
-          }
-        }
-      }
-    }
+    // Generate matrix of raw data (input to PCA)
+    engine = ProjectionEngine.create(this::isCanceled);
+    final AbundanceMeasure measure = parameters.getParameter(
+        ProjectionPlotParameters.featureMeasurementType).getValue();
+    double[][] rawData = engine.buildDataMatrix(selectedRows, selectedRawDataFiles, measure);
 
     int numComponents = xAxisPC;
     if (yAxisPC > numComponents) {
       numComponents = yAxisPC;
     }
 
-    // Scale data and do PCA
-    Preprocess.scaleToUnityVariance(rawData);
-
-    // Replace NaN values with 0.0
-    for (int i = 0; i < rawData.length; i++) {
-      for (int j = 0; j < rawData[i].length; j++) {
-        if (Double.isNaN(rawData[i][j])) {
-          rawData[i][j] = 0.0;
-        }
-      }
-    }
-
-    PCA pcaProj = new PCA(rawData, numComponents);
-
-    projectionStatus = pcaProj.getProjectionStatus();
+    // Scale data and do a truncated PCA, only the plotted components are computed
+    engine.autoscale(rawData);
+    double[][] result = engine.pca(rawData, numComponents);
 
-    double[][] result = pcaProj.getState();
-
-    if (isCanceled()) {
+    if (result == null || isCanceled()) {
       return;
     }
 
@@ -295,14 +262,6 @@ public class PCADataset extends AbstractTaskXYDataset implements ProjectionPlotD
 
   }
 
-  @Override
-  public void cancel() {
-    if (projectionStatus != null) {
-      projectionStatus.cancel();
-    }
-    super.cancel();
-  }
-
   @Override
   public String getTaskDescription() {
     return "PCA projection";
@@ -310,10 +269,7 @@ public class PCADataset extends AbstractTaskXYDataset implements ProjectionPlotD
 
   @Override
   public double getFinishedPercentage() {
-    if (projectionStatus == null) {
-      return 0;
-    }
-    return projectionStatus.getFinishedPercentage();
+    return engine == null ? 0 : engine.getProgress();
   }
 
 }
@@ -0,0 +1,595 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.projectionplots;
+
+import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Computes projections of large samples x features matrices without the full decomposition of
+ * jmprojection. The matrix is assembled and processed in parallel.
+ * <ul>
+ *   <li>PCA: truncated randomized SVD (Halko, Martinsson, Tropp 2011) that only computes the
+ *   first k components. Memory is linear in the matrix size.</li>
+ *   <li>Sammon's mapping: runs on the first {@link #MAX_REDUCED_DIMENSIONS} principal components
+ *   and is started from the PCA scores. The input distances are cached in a packed triangular
+ *   matrix for up to {@link #MAX_CACHED_DISTANCES} pairs, otherwise computed on the fly. Each
+ *   iteration updates blocks of samples in parallel.</li>
+ * </ul>
+ * Scores are returned as [component][sample], like jmprojection. Methods return null if the task
+ * was canceled.
+ */
+public class ProjectionEngine {
+
+  /**
+   * Number of principal components used as input for non-linear projections.
+   */
+  public static final int MAX_REDUCED_DIMENSIONS = 50;
+  static final long MAX_CACHED_DISTANCES = 25_000_000L;
+  private static final int OVERSAMPLING = 10;
+  private static final int POWER_ITERATIONS = 2;
+  private static final double SAMMON_STEP = 0.3;
+  private static final int BLOCK_SIZE = 64;
+  private static final long SEED = 42L;
+
+  private final int threads;
+  private final BooleanSupplier isCanceled;
+  private volatile double progress;
+
+  /**
+   * @param threads    number of threads
+   * @param isCanceled checked between the steps, the computation stops if true
+   */
+  public ProjectionEngine(int threads, @NotNull BooleanSupplier isCanceled) {
+    this.threads = Math.max(1, threads);
+    this.isCanceled = isCanceled;
+  }
+
+  /**
+   * @param isCanceled checked between the steps, the computation stops if true
+   * @return an engine with the number of threads set in the preferences
+   */
+  public static ProjectionEngine create(@NotNull BooleanSupplier isCanceled) {
+    return new ProjectionEngine(TaskThreadPool.getMaxThreads(), isCanceled);
+  }
+
+  /**
+   * @return the progress of the current computation (0-1)
+   */
+  public double getProgress() {
+    return progress;
+  }
+
+  /**
+   * Creates the samples x features matrix. Missing features are 0.
+   *
+   * @return [file][row] abundances
+   */
+  public double[][] buildDataMatrix(@NotNull FeatureListRow[] rows, @NotNull RawDataFile[] files,
+      @NotNull AbundanceMeasure measure) {
+    final double[][] data = new double[files.length][rows.length];
+    return runInPool(() -> {
+      forEachBlock(rows.length, rowIndex -> {
+        final FeatureListRow row = rows[rowIndex];
+        for (int f = 0; f < files.length; f++) {
+          final Feature feature = row.getFeature(files[f]);
+          if (feature == null) {
+            continue;
+          }
+          final Float value =
+              measure == AbundanceMeasure.Area ? feature.getArea() : feature.getHeight();
+          if (value != null && !value.isNaN()) {
+            data[f][rowIndex] = value;
+          }
+        }
+      });
+      return data;
+    });
+  }
+
+  /**
+   * Centers every feature (column) to mean 0 and scales it to unit variance. Constant features are
+   * set to 0.
+   */
+  public void autoscale(@NotNull double[][] data) {
+    if (data.length == 0) {
+      return;
+    }
+    final int n = data.length;
+    final int p = data[0].length;
+    runInPool(() -> {
+      // blocks of columns, the rows are read sequentially
+      final int blocks = (p + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      IntStream.range(0, blocks).parallel().forEach(block -> {
+        final int from = block * BLOCK_SIZE;
+        final int to = Math.min(p, from + BLOCK_SIZE);
+        final double[] sum = new double[to - from];
+        final double[] sumSq = new double[to - from];
+        for (double[] sample : data) {
+          for (int j = from; j < to; j++) {
+            sum[j - from] += sample[j];
+          }
+        }
+        for (int j = from; j < to; j++) {
+          sum[j - from] /= n;
+        }
+        for (double[] sample : data) {
+          for (int j = from; j < to; j++) {
+            final double d = sample[j] - sum[j - from];
+            sumSq[j - from] += d * d;
+          }
+        }
+        for (int j = from; j < to; j++) {
+          final double sd = n > 1 ? Math.sqrt(sumSq[j - from] / (n - 1)) : 0d;
+          final double mean = sum[j - from];
+          for (double[] sample : data) {
+            sample[j] = sd > 0 && Double.isFinite(sd) ? (sample[j] - mean) / sd : 0d;
+          }
+        }
+      });
+      return null;
+    });
+  }
+
+  /**
+   * Principal component scores by a truncated randomized SVD. Exact if the number of samples or
+   * features is at most components + 10.
+   *
+   * @param data       [sample][feature], should be centered (see {@link #autoscale(double[][])})
+   * @param components number of components
+   * @return [component][sample] scores or null if canceled
+   */
+  @Nullable
+  public double[][] pca(@NotNull double[][] data, int components) {
+    progress = 0d;
+    return runInPool(() -> pcaInPool(data, components));
+  }
+
+  @Nullable
+  private double[][] pcaInPool(@NotNull double[][] data, int components) {
+    final int n = data.length;
+    final int p = n == 0 ? 0 : data[0].length;
+    final int l = Math.min(components + OVERSAMPLING, Math.min(n, p));
+    final int k = Math.min(components, l);
+    if (k <= 0) {
+      return new double[components][n];
+    }
+
+    final Random random = new Random(SEED);
+    final double[][] omega = new double[p][l];
+    for (double[] row : omega) {
+      for (int c = 0; c < l; c++) {
+        row[c] = random.nextGaussian();
+      }
+    }
+
+    // range finder with power iterations
+    final int steps = 2 * POWER_ITERATIONS + 3;
+    double[][] y = multiply(data, omega);
+    for (int i = 0; i < POWER_ITERATIONS; i++) {
+      if (isCanceled.getAsBoolean()) {
+        return null;
+      }
+      orthonormalizeColumns(y);
+      final double[][] z = multiplyTransposed(data, y);
+      orthonormalizeColumns(z);
+      y = multiply(data, z);
+      progress = (2d * i + 2) / steps;
+    }
+    orthonormalizeColumns(y);
+    final double[][] q = y;
+
+    // B = Q^T A, stored transposed as [feature][l]
+    final double[][] bt = multiplyTransposed(data, q);
+    progress = (steps - 1d) / steps;
+    if (isCanceled.getAsBoolean()) {
+      return null;
+    }
+
+    // B B^T = U S^2 U^T
+    final double[][] gram = new double[l][l];
+    for (double[] row : bt) {
+      for (int c = 0; c < l; c++) {
+        for (int d = c; d < l; d++) {
+          gram[c][d] += row[c] * row[d];
+        }
+      }
+    }
+    for (int c = 0; c < l; c++) {
+      for (int d = 0; d < c; d++) {
+        gram[c][d] = gram[d][c];
+      }
+    }
+    final double[][] eigenvectors = new double[l][l];
+    final double[] eigenvalues = symmetricEigen(gram, eigenvectors);
+
+    // scores = Q U S
+    final double[][] scores = new double[components][n];
+    for (int c = 0; c < k; c++) {
+      final double sigma = Math.sqrt(Math.max(0d, eigenvalues[c]));
+      double maxAbs = 0d;
+      for (int i = 0; i < n; i++) {
+        double s = 0d;
+        for (int m = 0; m < l; m++) {
+          s += q[i][m] * eigenvectors[m][c];
+        }
+        scores[c][i] = s * sigma;
+        if (Math.abs(scores[c][i]) > Math.abs(maxAbs)) {
+          maxAbs = scores[c][i];
+        }
+      }
+      // deterministic sign: largest absolute score is positive
+      if (maxAbs < 0) {
+        for (int i = 0; i < n; i++) {
+          scores[c][i] = -scores[c][i];
+        }
+      }
+    }
+    progress = 1d;
+    return scores;
+  }
+
+  /**
+   * Reduces the data to its first {@link #MAX_REDUCED_DIMENSIONS} principal components. Returns
+   * the data if it has fewer features.
+   *
+   * @return [sample][component] or null if canceled
+   */
+  @Nullable
+  public double[][] reduceDimensions(@NotNull double[][] data) {
+    if (data.length == 0 || data[0].length <= MAX_REDUCED_DIMENSIONS) {
+      return data;
+    }
+    final double[][] scores = pca(data, Math.min(MAX_REDUCED_DIMENSIONS, data.length));
+    return scores == null ? null : transpose(scores);
+  }
+
+  /**
+   * Sammon's mapping of the samples.
+   *
+   * @param data       [sample][feature], should be autoscaled
+   * @param dimensions number of output dimensions
+   * @param iterations number of iterations
+   * @return [dimension][sample] coordinates or null if canceled
+   */
+  @Nullable
+  public double[][] sammons(@NotNull double[][] data, int dimensions, int iterations) {
+    final double[][] reduced = reduceDimensions(data);
+    if (reduced == null) {
+      return null;
+    }
+    // start from the PCA scores
+    final double[][] start = pca(reduced, dimensions);
+    if (start == null) {
+      return null;
+    }
+    progress = 0d;
+    return runInPool(() -> sammonsInPool(reduced, start, iterations));
+  }
+
+  @Nullable
+  private double[][] sammonsInPool(double[][] input, double[][] start, int iterations) {
+    final int n = input.length;
+    final int dims = start.length;
+    final InputDistances distances = new InputDistances(input);
+
+    double[][] y = transpose(start);
+    for (int it = 0; it < iterations && n > 1; it++) {
+      if (isCanceled.getAsBoolean()) {
+        return null;
+      }
+      final double[][] current = y;
+      final double[][] next = new double[n][dims];
+      forEachBlock(n, i -> {
+        final double[] grad = new double[dims];
+        final double[] hess = new double[dims];
+        final double[] yi = current[i];
+        for (int j = 0; j < n; j++) {
+          if (j == i) {
+            continue;
+          }
+          final double dStar = Math.max(distances.get(i, j), 1E-12);
+          final double[] yj = current[j];
+          double d = 0d;
+          for (int k = 0; k < dims; k++) {
+            final double delta = yi[k] - yj[k];
+            d += delta * delta;
+          }
+          d = Math.max(Math.sqrt(d), 1E-12);
+          final double diff = dStar - d;
+          final double dd = dStar * d;
+          for (int k = 0; k < dims; k++) {
+            final double delta = yi[k] - yj[k];
+            grad[k] += diff / dd * delta;
+            hess[k] += (diff - delta * delta / d * (1d + diff / d)) / dd;
+          }
+        }
+        for (int k = 0; k < dims; k++) {
+          // the constant factor -2/c cancels out in grad/|hess|
+          next[i][k] = hess[k] != 0d ? yi[k] + SAMMON_STEP * grad[k] / Math.abs(hess[k]) : yi[k];
+        }
+      });
+      y = next;
+      progress = (it + 1d) / iterations;
+    }
+    return transpose(y);
+  }
+
+  /**
+   * Euclidean distances between the input samples, cached in a packed triangular matrix if
+   * possible.
+   */
+  private final class InputDistances {
+
+    private final double[][] input;
+    private final int n;
+    private final float[] cache;
+
+    private InputDistances(double[][] input) {
+      this.input = input;
+      this.n = input.length;
+      final long pairs = (long) n * (n - 1) / 2;
+      if (pairs <= MAX_CACHED_DISTANCES) {
+        cache = new float[(int) pairs];
+        forEachBlock(n, i -> {
+          for (int j = i + 1; j < n; j++) {
+            cache[index(i, j)] = (float) compute(i, j);
+          }
+        });
+      } else {
+        cache = null;
+      }
+    }
+
+    private int index(int i, int j) {
+      // i < j
+      return (int) ((long) i * n - (long) i * (i + 1) / 2 + (j - i - 1));
+    }
+
+    private double compute(int i, int j) {
+      final double[] a = input[i];
+      final double[] b = input[j];
+      double sum = 0d;
+      for (int k = 0; k < a.length; k++) {
+        final double d = a[k] - b[k];
+        sum += d * d;
+      }
+      return Math.sqrt(sum);
+    }
+
+    double get(int i, int j) {
+      if (cache == null) {
+        return compute(i, j);
+      }
+      return i < j ? cache[index(i, j)] : cache[index(j, i)];
+    }
+  }
+
+  /**
+   * @return a * b, [a rows][b columns], rows are computed in parallel
+   */
+  private double[][] multiply(double[][] a, double[][] b) {
+    final int cols = b[0].length;
+    final double[][] result = new double[a.length][cols];
+    forEachBlock(a.length, i -> {
+      final double[] ai = a[i];
+      final double[] ri = result[i];
+      for (int j = 0; j < ai.length; j++) {
+        final double v = ai[j];
+        if (v == 0d) {
+          continue;
+        }
+        final double[] bj = b[j];
+        for (int c = 0; c < cols; c++) {
+          ri[c] += v * bj[c];
+        }
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return a^T * b, [a columns][b columns], blocks of a's columns are computed in parallel
+   */
+  private double[][] multiplyTransposed(double[][] a, double[][] b) {
+    final int p = a[0].length;
+    final int cols = b[0].length;
+    final double[][] result = new double[p][cols];
+    final int blocks = (p + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    IntStream.range(0, blocks).parallel().forEach(block -> {
+      final int from = block * BLOCK_SIZE;
+      final int to = Math.min(p, from + BLOCK_SIZE);
+      for (int i = 0; i < a.length; i++) {
+        final double[] ai = a[i];
+        final double[] bi = b[i];
+        for (int j = from; j < to; j++) {
+          final double v = ai[j];
+          if (v == 0d) {
+            continue;
+          }
+          final double[] rj = result[j];
+          for (int c = 0; c < cols; c++) {
+            rj[c] += v * bi[c];
+          }
+        }
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Modified Gram-Schmidt with re-orthogonalization. Linearly dependent columns are set to 0.
+   */
+  static void orthonormalizeColumns(double[][] x) {
+    final int rows = x.length;
+    final int cols = x[0].length;
+    for (int c = 0; c < cols; c++) {
+      for (int pass = 0; pass < 2; pass++) {
+        for (int d = 0; d < c; d++) {
+          double dot = 0d;
+          for (double[] row : x) {
+            dot += row[d] * row[c];
+          }
+          for (double[] row : x) {
+            row[c] -= dot * row[d];
+          }
+        }
+      }
+      double norm = 0d;
+      for (double[] row : x) {
+        norm += row[c] * row[c];
+      }
+      norm = Math.sqrt(norm);
+      for (int r = 0; r < rows; r++) {
+        x[r][c] = norm > 1E-12 ? x[r][c] / norm : 0d;
+      }
+    }
+  }
+
+  /**
+   * Cyclic Jacobi eigenvalue algorithm for a small symmetric matrix.
+   *
+   * @param matrix       symmetric matrix, destroyed
+   * @param eigenvectors output, eigenvectors as columns sorted by the eigenvalues
+   * @return the eigenvalues in descending order
+   */
+  static double[] symmetricEigen(double[][] matrix, double[][] eigenvectors) {
+    final int m = matrix.length;
+    final double[][] a = matrix;
+    final double[][] v = new double[m][m];
+    for (int i = 0; i < m; i++) {
+      v[i][i] = 1d;
+    }
+    for (int sweep = 0; sweep < 100; sweep++) {
+      double off = 0d;
+      double total = 0d;
+      for (int i = 0; i < m; i++) {
+        for (int j = 0; j < m; j++) {
+          total += a[i][j] * a[i][j];
+          if (i != j) {
+            off += a[i][j] * a[i][j];
+          }
+        }
+      }
+      if (off <= 1E-22 * total || off == 0d) {
+        break;
+      }
+      for (int pIdx = 0; pIdx < m - 1; pIdx++) {
+        for (int q = pIdx + 1; q < m; q++) {
+          if (a[pIdx][q] == 0d) {
+            continue;
+          }
+          final double theta = (a[q][q] - a[pIdx][pIdx]) / (2d * a[pIdx][q]);
+          final double t = Math.signum(theta == 0d ? 1d : theta) / (Math.abs(theta) + Math.sqrt(
+              theta * theta + 1d));
+          final double c = 1d / Math.sqrt(t * t + 1d);
+          final double s = t * c;
+          for (int k = 0; k < m; k++) {
+            final double akp = a[k][pIdx];
+            final double akq = a[k][q];
+            a[k][pIdx] = c * akp - s * akq;
+            a[k][q] = s * akp + c * akq;
+          }
+          for (int k = 0; k < m; k++) {
+            final double apk = a[pIdx][k];
+            final double aqk = a[q][k];
+            a[pIdx][k] = c * apk - s * aqk;
+            a[q][k] = s * apk + c * aqk;
+          }
+          for (int k = 0; k < m; k++) {
+            final double vkp = v[k][pIdx];
+            final double vkq = v[k][q];
+            v[k][pIdx] = c * vkp - s * vkq;
+            v[k][q] = s * vkp + c * vkq;
+          }
+        }
+      }
+    }
+
+    final Integer[] order = new Integer[m];
+    for (int i = 0; i < m; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (i, j) -> Double.compare(a[j][j], a[i][i]));
+    final double[] values = new double[m];
+    for (int c = 0; c < m; c++) {
+      values[c] = a[order[c]][order[c]];
+      for (int r = 0; r < m; r++) {
+        eigenvectors[r][c] = v[r][order[c]];
+      }
+    }
+    return values;
+  }
+
+  static double[][] transpose(double[][] x) {
+    if (x.length == 0) {
+      return new double[0][0];
+    }
+    final double[][] t = new double[x[0].length][x.length];
+    for (int i = 0; i < x.length; i++) {
+      for (int j = 0; j < x[i].length; j++) {
+        t[j][i] = x[i][j];
+      }
+    }
+    return t;
+  }
+
+  /**
+   * Runs the consumer for all indices, blocks of indices are processed in parallel.
+   */
+  private void forEachBlock(int size, IntConsumer consumer) {
+    final int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    IntStream.range(0, blocks).parallel().forEach(block -> {
+      final int to = Math.min(size, (block + 1) * BLOCK_SIZE);
+      for (int i = block * BLOCK_SIZE; i < to; i++) {
+        consumer.accept(i);
+      }
+    });
+  }
+
+  /**
+   * Runs the computation in the shared task pool, parallel streams use this pool.
+   */
+  private <T> T runInPool(Supplier<T> computation) {
+    try {
+      return TaskThreadPool.invoke(threads, computation::get);
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException("Error during projection: " + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.projectionplots;
+
+import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.ComboParameter;
+import io.github.mzmine.parameters.parametertypes.IntegerParameter;
+import io.github.mzmine.parameters.parametertypes.filenames.FileNameParameter;
+import io.github.mzmine.parameters.parametertypes.filenames.FileSelectionType;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParameter;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesParameter;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import java.util.List;
+import javafx.stage.FileChooser.ExtensionFilter;
+
+public class ProjectionScoresExportParameters extends SimpleParameterSet {
+
+  public static final FeatureListsParameter featureLists = new FeatureListsParameter(1, 1);
+
+  public static final RawDataFilesParameter dataFiles = new RawDataFilesParameter(
+      new RawDataFilesSelection(RawDataFilesSelectionType.ALL_FILES));
+
+  public static final ComboParameter<AbundanceMeasure> featureMeasurementType = new ComboParameter<>(
+      "Peak measurement type", "Measure features using", AbundanceMeasure.values(),
+      AbundanceMeasure.Height);
+
+  public static final ComboParameter<ProjectionMethod> method = new ComboParameter<>("Method",
+      "The projection method. Sammon's mapping and CDA are computed on the first "
+          + ProjectionEngine.MAX_REDUCED_DIMENSIONS + " principal components.",
+      ProjectionMethod.values(), ProjectionMethod.PCA);
+
+  public static final IntegerParameter components = new IntegerParameter("Number of components",
+      "Number of exported components (dimensions). CDA always exports its default dimensions.", 3,
+      1, ProjectionEngine.MAX_REDUCED_DIMENSIONS);
+
+  public static final FileNameParameter file = new FileNameParameter("Export file",
+      "CSV file with one line of scores per raw data file.",
+      List.of(new ExtensionFilter("csv", "*.csv")), FileSelectionType.SAVE);
+
+  public ProjectionScoresExportParameters() {
+    super(featureLists, dataFiles, featureMeasurementType, method, components, file);
+  }
+
+}
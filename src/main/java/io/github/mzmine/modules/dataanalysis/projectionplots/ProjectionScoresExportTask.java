@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.projectionplots;
+
+import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.io.CSVUtils;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jmprojection.CDA;
+import jmprojection.ProjectionStatus;
+import org.jetbrains.annotations.NotNull;
+
+public class ProjectionScoresExportTask extends AbstractTask {
+
+  private static final Logger logger = Logger.getLogger(
+      ProjectionScoresExportTask.class.getName());
+  private static final String separator = ",";
+
+  private final FeatureList featureList;
+  private final RawDataFile[] dataFiles;
+  private final AbundanceMeasure measure;
+  private final ProjectionMethod method;
+  private final int components;
+  private final File exportFile;
+  private ProjectionEngine engine;
+  private ProjectionStatus projectionStatus;
+
+  protected ProjectionScoresExportTask(@NotNull ParameterSet parameters,
+      @NotNull Instant moduleCallDate) {
+    super(null, moduleCallDate);
+    featureList = parameters.getValue(ProjectionScoresExportParameters.featureLists)
+        .getMatchingFeatureLists()[0];
+    dataFiles = parameters.getValue(ProjectionScoresExportParameters.dataFiles)
+        .getMatchingRawDataFiles();
+    measure = parameters.getValue(ProjectionScoresExportParameters.featureMeasurementType);
+    method = parameters.getValue(ProjectionScoresExportParameters.method);
+    components = parameters.getValue(ProjectionScoresExportParameters.components);
+    exportFile = FileAndPathUtil.getRealFilePath(
+        parameters.getValue(ProjectionScoresExportParameters.file), "csv");
+  }
+
+  @Override
+  public String getTaskDescription() {
+    return "Computing " + method + " scores of " + featureList.getName();
+  }
+
+  @Override
+  public double getFinishedPercentage() {
+    if (projectionStatus != null) {
+      return projectionStatus.getFinishedPercentage();
+    }
+    return engine == null ? 0 : engine.getProgress();
+  }
+
+  @Override
+  public void cancel() {
+    if (projectionStatus != null) {
+      projectionStatus.cancel();
+    }
+    super.cancel();
+  }
+
+  @Override
+  public void run() {
+    setStatus(TaskStatus.PROCESSING);
+
+    if (dataFiles.length == 0 || featureList.getNumberOfRows() == 0) {
+      setErrorMessage("No raw data files or features selected for " + method);
+      setStatus(TaskStatus.ERROR);
+      return;
+    }
+
+    engine = ProjectionEngine.create(this::isCanceled);
+    final FeatureListRow[] rows = featureList.getRows().toArray(FeatureListRow[]::new);
+    final double[][] data = engine.buildDataMatrix(rows, dataFiles, measure);
+    engine.autoscale(data);
+
+    final double[][] scores = switch (method) {
+      case PCA -> engine.pca(data, components);
+      case SAMMONS -> engine.sammons(data, components, 100);
+      case CDA -> cda(data);
+    };
+    if (scores == null || isCanceled()) {
+      return;
+    }
+
+    final File directory = exportFile.getParentFile();
+    if (directory != null && !FileAndPathUtil.createDirectory(directory)) {
+      setErrorMessage("Could not create directory " + directory);
+      setStatus(TaskStatus.ERROR);
+      return;
+    }
+
+    final int exported = Math.min(components, scores.length);
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(exportFile))) {
+      writer.write("raw_data_file");
+      for (int c = 1; c <= exported; c++) {
+        writer.write(separator + "component_" + c);
+      }
+      writer.newLine();
+
+      for (int i = 0; i < dataFiles.length; i++) {
+        writer.write(CSVUtils.escape(dataFiles[i].getName(), separator));
+        for (int c = 0; c < exported; c++) {
+          writer.write(separator + scores[c][i]);
+        }
+        writer.newLine();
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Error exporting projection scores.", e);
+      setErrorMessage("Could not export projection scores: " + e.getMessage());
+      setStatus(TaskStatus.ERROR);
+      return;
+    }
+
+    setStatus(TaskStatus.FINISHED);
+  }
+
+  private double[][] cda(double[][] data) {
+    final double[][] reduced = engine.reduceDimensions(data);
+    if (reduced == null || isCanceled()) {
+      return null;
+    }
+    final CDA cda = new CDA(reduced);
+    projectionStatus = cda.getProjectionStatus();
+    cda.iterate(100);
+    return isCanceled() ? null : cda.getState();
+  }
+}
@@ -28,7 +28,6 @@ package io.github.mzmine.modules.dataanalysis.projectionplots;
 import io.github.mzmine.datamodel.AbundanceMeasure;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
-import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.AbstractTaskXYDataset;
@@ -37,9 +36,6 @@ import io.github.mzmine.parameters.UserParameter;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import java.util.Vector;
 import java.util.logging.Logger;
-import jmprojection.Preprocess;
-import jmprojection.ProjectionStatus;
-import jmprojection.Sammons;
 
 public class SammonsDataset extends AbstractTaskXYDataset implements ProjectionPlotDataset {
 
@@ -66,7 +62,7 @@ public class SammonsDataset extends AbstractTaskXYDataset implements ProjectionP
   private final int xAxisDimension;
   private final int yAxisDimension;
 
-  private ProjectionStatus projectionStatus;
+  private ProjectionEngine engine;
 
   public SammonsDataset(MZmineProject project, ParameterSet parameters) {
 
@@ -231,46 +227,21 @@ public class SammonsDataset extends AbstractTaskXYDataset implements ProjectionP
     logger.info("Computing projection plot");
 
     // Generate matrix of raw data (input to Sammon's projection)
-    boolean useArea =
-        parameters.getParameter(ProjectionPlotParameters.featureMeasurementType).getValue()
-            == AbundanceMeasure.Area;
-
-    double[][] rawData = new double[selectedRawDataFiles.length][selectedRows.length];
-    for (int rowIndex = 0; rowIndex < selectedRows.length; rowIndex++) {
-      FeatureListRow featureListRow = selectedRows[rowIndex];
-      for (int fileIndex = 0; fileIndex < selectedRawDataFiles.length; fileIndex++) {
-        RawDataFile rawDataFile = selectedRawDataFiles[fileIndex];
-        Feature p = featureListRow.getFeature(rawDataFile);
-        if (p != null) {
-          if (useArea) {
-            rawData[fileIndex][rowIndex] = p.getArea();
-          } else {
-            rawData[fileIndex][rowIndex] = p.getHeight();
-          }
-        }
-      }
-    }
+    engine = ProjectionEngine.create(this::isCanceled);
+    final AbundanceMeasure measure = parameters.getParameter(
+        ProjectionPlotParameters.featureMeasurementType).getValue();
+    double[][] rawData = engine.buildDataMatrix(selectedRows, selectedRawDataFiles, measure);
 
     int numComponents = xAxisDimension;
     if (yAxisDimension > numComponents) {
       numComponents = yAxisDimension;
     }
 
-    // Scale data and do Sammon's mapping
-    Preprocess.scaleToUnityVariance(rawData);
-    Sammons sammonsProj = new Sammons(rawData);
-
-    projectionStatus = sammonsProj.getProjectionStatus();
-
-    sammonsProj.iterate(100);
-
-    if (isCanceled()) {
-      return;
-    }
-
-    double[][] result = sammonsProj.getState();
+    // Scale data and do Sammon's mapping on the principal components
+    engine.autoscale(rawData);
+    double[][] result = engine.sammons(rawData, numComponents, 100);
 
-    if (isCanceled()) {
+    if (result == null || isCanceled()) {
       return;
     }
 
@@ -285,14 +256,6 @@ public class SammonsDataset extends AbstractTaskXYDataset implements ProjectionP
 
   }
 
-  @Override
-  public void cancel() {
-    if (projectionStatus != null) {
-      projectionStatus.cancel();
-    }
-    super.cancel();
-  }
-
   @Override
   public String getTaskDescription() {
     return "Sammon's projection";
@@ -300,10 +263,7 @@ public class SammonsDataset extends AbstractTaskXYDataset implements ProjectionP
 
   @Override
   public double getFinishedPercentage() {
-    if (projectionStatus == null) {
-      return 0;
-    }
-    return projectionStatus.getFinishedPercentage();
+    return engine == null ? 0 : engine.getProgress();
   }
 
 }
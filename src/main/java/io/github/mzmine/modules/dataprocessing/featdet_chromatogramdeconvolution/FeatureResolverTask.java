@@ -25,6 +25,7 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution;
 
+import com.google.common.collect.Lists;
 import io.github.mzmine.datamodel.ImagingRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
@@ -35,6 +36,7 @@ import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
@@ -48,6 +50,7 @@ import io.github.mzmine.modules.dataprocessing.filter_groupms2.GroupMS2Task;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
 import io.github.mzmine.util.DataTypeUtils;
 import io.github.mzmine.util.FeatureConvertors;
 import io.github.mzmine.util.FeatureListUtils;
@@ -57,7 +60,10 @@ import io.github.mzmine.util.R.RSessionWrapper;
 import io.github.mzmine.util.R.RSessionWrapperException;
 import io.github.mzmine.util.maths.CenterFunction;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -66,6 +72,8 @@ public class FeatureResolverTask extends AbstractTask {
 
   // Logger.
   private static final Logger logger = Logger.getLogger(FeatureResolverTask.class.getName());
+  // smaller feature lists are resolved on a single thread
+  private static final int MIN_ROWS_PER_CHUNK = 250;
 
   // Feature lists.
   private final MZmineProject project;
@@ -76,7 +84,7 @@ public class FeatureResolverTask extends AbstractTask {
   private final CenterFunction mzCenterFunction;
   private FeatureList newPeakList;
   // Counters.
-  private int processedRows;
+  private final AtomicInteger processedRows = new AtomicInteger(0);
   private int totalRows;
   private RSessionWrapper rSession;
   private String errorMsg;
@@ -102,7 +110,6 @@ public class FeatureResolverTask extends AbstractTask {
     parameters = parameterSet;
     originalPeakList = list;
     newPeakList = null;
-    processedRows = 0;
     totalRows = 0;
     this.mzCenterFunction = mzCenterFunction;
   }
@@ -120,7 +127,7 @@ public class FeatureResolverTask extends AbstractTask {
     if (groupMS2Task != null) {
       return groupMS2Task.getFinishedPercentage();
     }
-    return totalRows == 0 ? 0.0 : processedRows / (double) totalRows;
+    return totalRows == 0 ? 0.0 : processedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -242,7 +249,8 @@ public class FeatureResolverTask extends AbstractTask {
     newPeakList = resolvePeaks((ModularFeatureList) originalPeakList, this.rSession);
   }
 
-  private void dimensionIndependentResolve(ModularFeatureList originalFeatureList) {
+  private void dimensionIndependentResolve(ModularFeatureList originalFeatureList)
+      throws InterruptedException, ExecutionException {
     final Resolver resolver = ((GeneralResolverParameters) parameters).getResolver(parameters,
         originalFeatureList);
     if (resolver == null) {
@@ -254,21 +262,29 @@ public class FeatureResolverTask extends AbstractTask {
     final RawDataFile dataFile = originalFeatureList.getRawDataFile(0);
     final ModularFeatureList resolvedFeatureList = createNewFeatureList(originalFeatureList);
 
-    final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
-        EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile);
-
-    processedRows = 0;
+    processedRows.set(0);
     totalRows = originalFeatureList.getNumberOfRows();
-    int peakId = 1;
-
-    int c = 0;
 
-    while (access.hasNextFeature()) {
-      final ModularFeature originalFeature = (ModularFeature) access.nextFeature();
-      final List<IonTimeSeries<? extends Scan>> resolvedSeries = resolver.resolve(access,
-          getMemoryMapStorage());
+    final int threads = TaskThreadPool.getMaxThreads();
+    final List<ResolvedFeature> resolvedFeatures;
+    if (threads > 1 && totalRows >= 2 * MIN_ROWS_PER_CHUNK) {
+      resolvedFeatures = parallelResolve(originalFeatureList, dataFile, threads);
+    } else {
+      final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
+          EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile);
+      resolvedFeatures = resolveAll(resolver, access);
+    }
+    if (isCanceled()) {
+      return;
+    }
 
-      for (IonTimeSeries<? extends Scan> resolved : resolvedSeries) {
+    // rows are created in the order of the original features, independent of the chunking.
+    // This way, IDs and row order are the same for sequential and parallel resolving
+    int peakId = 1;
+    int c = 0;
+    for (ResolvedFeature resolvedFeature : resolvedFeatures) {
+      final ModularFeature originalFeature = resolvedFeature.original();
+      for (IonTimeSeries<? extends Scan> resolved : resolvedFeature.resolved()) {
         final ModularFeatureListRow newRow = new ModularFeatureListRow(resolvedFeatureList,
             peakId++);
         final ModularFeature f = new ModularFeature(resolvedFeatureList,
@@ -289,7 +305,6 @@ public class FeatureResolverTask extends AbstractTask {
           c++;
         }
       }
-      processedRows++;
     }
     logger.info(c + "/" + resolvedFeatureList.getNumberOfRows()
         + " have less than 4 scans (frames for IMS data)");
@@ -302,6 +317,55 @@ public class FeatureResolverTask extends AbstractTask {
     newPeakList = resolvedFeatureList;
   }
 
+  /**
+   * Splits the rows into chunks that are resolved in parallel. {@link Resolver}s and
+   * {@link FeatureDataAccess} keep internal buffers and are not thread safe, therefore every chunk
+   * uses its own instances.
+   *
+   * @return the resolved features in the order of the original rows
+   */
+  private List<ResolvedFeature> parallelResolve(ModularFeatureList originalFeatureList,
+      RawDataFile dataFile, int threads) throws InterruptedException, ExecutionException {
+    final List<FeatureListRow> rows = originalFeatureList.getRows();
+    // a few chunks per thread to balance chromatograms of different complexity
+    final int chunkSize = Math.max(MIN_ROWS_PER_CHUNK,
+        (int) Math.ceil(rows.size() / (double) (threads * 4)));
+    final List<List<FeatureListRow>> chunks = Lists.partition(rows, chunkSize);
+    logger.finest(() -> "Resolving " + rows.size() + " rows in " + chunks.size() + " chunks on "
+        + threads + " threads");
+
+    // map keeps the chunk order
+    final List<List<ResolvedFeature>> resolvedChunks = TaskThreadPool.invoke(threads,
+        () -> chunks.parallelStream().map(chunk -> {
+          final Resolver resolver = ((GeneralResolverParameters) parameters).getResolver(
+              parameters, originalFeatureList);
+          final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
+              EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile, chunk);
+          return resolveAll(resolver, access);
+        }).toList());
+
+    final List<ResolvedFeature> resolvedFeatures = new ArrayList<>(rows.size());
+    resolvedChunks.forEach(resolvedFeatures::addAll);
+    return resolvedFeatures;
+  }
+
+  /**
+   * Resolves all features of the data access
+   *
+   * @return the resolved features in the order of the data access
+   */
+  private List<ResolvedFeature> resolveAll(Resolver resolver, FeatureDataAccess access) {
+    final List<ResolvedFeature> resolvedFeatures = new ArrayList<>();
+    while (access.hasNextFeature() && !isCanceled()) {
+      final ModularFeature originalFeature = (ModularFeature) access.nextFeature();
+      final List<IonTimeSeries<? extends Scan>> resolvedSeries = resolver.resolve(access,
+          getMemoryMapStorage());
+      resolvedFeatures.add(new ResolvedFeature(originalFeature, resolvedSeries));
+      processedRows.incrementAndGet();
+    }
+    return resolvedFeatures;
+  }
+
   @Override
   public void cancel() {
     super.cancel();
@@ -329,7 +393,7 @@ public class FeatureResolverTask extends AbstractTask {
 
     final FeatureResolver resolver = ((GeneralResolverParameters) parameters).getResolver();
 
-    processedRows = 0;
+    processedRows.set(0);
     totalRows = originalFeatureList.getNumberOfRows();
     int peakId = 1;
     final Integer minNumDp = parameters.getValue(
@@ -360,7 +424,7 @@ public class FeatureResolverTask extends AbstractTask {
         newRow.setFeatureInformation(peak.getPeakInformation());
         resolvedFeatureList.addRow(newRow);
       }
-      processedRows++;
+      processedRows.incrementAndGet();
     }
 
     resolvedFeatureList.addDescriptionOfAppliedTask(
@@ -409,4 +473,12 @@ public class FeatureResolverTask extends AbstractTask {
 
     return resolvedFeatureList;
   }
+
+  /**
+   * The features resolved from one original feature (chromatogram)
+   */
+  private record ResolvedFeature(ModularFeature original,
+                                 List<IonTimeSeries<? extends Scan>> resolved) {
+
+  }
 }
@@ -0,0 +1,609 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Native implementation of the continuous wavelet transform (CWT) peak detection of xcms
+ * findPeaks.centWave on a single chromatogram. Regions of interest (ROI) are consecutive non-zero
+ * intensities. The chromatogram is transformed with Mexican hat wavelets, local maxima of the
+ * coefficients are connected to ridge lines across scales and every ridge above the local noise
+ * level results in a peak. Peak boundaries are found by descending to the next minimum in the
+ * wavelet coefficients (smoothed data) or in the raw intensities.
+ * <p>
+ * Small scales are convolved directly with precomputed kernels, large scales are multiplied with
+ * the analytic wavelet spectrum after a FFT. Instances keep the kernels and are not thread safe.
+ */
+public class CentWaveDetector {
+
+  // the mexican hat is practically zero beyond 5 scales
+  private static final double KERNEL_SUPPORT = 5d;
+  // 2 / (sqrt(3) * pi^(1/4))
+  private static final double MEXICAN_HAT_NORM = 2d / (Math.sqrt(3d) * Math.pow(Math.PI, 0.25));
+  // minimum window size of local maxima in the wavelet coefficients (as in MassSpecWavelet)
+  private static final int MIN_LOCAL_MAX_WINDOW = 5;
+  // scales that may be skipped by a ridge line before it ends
+  private static final int RIDGE_GAP_THRESHOLD = 3;
+  // consecutive points above zero that belong to a signal and are excluded from the noise
+  private static final int PREFILTER_POINTS = 3;
+  // below this scale the sampled spectrum aliases and the kernel is always convolved directly
+  private static final int MIN_FFT_SCALE = 4;
+
+  private final int[] scales;
+  private final double[][] kernels;
+
+  // buffers
+  private double[] fftRe;
+  private double[] fftIm;
+  private double[] dataRe;
+  private double[] dataIm;
+
+  /**
+   * @param scales wavelet scales in number of scans, ascending
+   */
+  public CentWaveDetector(int[] scales) {
+    if (scales.length == 0) {
+      throw new IllegalArgumentException("At least one wavelet scale is required");
+    }
+    this.scales = scales.clone();
+    kernels = new double[scales.length][];
+    for (int i = 0; i < scales.length; i++) {
+      kernels[i] = mexicanHat(scales[i]);
+    }
+  }
+
+  /**
+   * Converts the peak width range to wavelet scales the same way as xcms: half the peak width in
+   * scans, rounded half to even, in steps of two.
+   *
+   * @param minPeakWidth minimum peak width (same unit as scanInterval)
+   * @param maxPeakWidth maximum peak width (same unit as scanInterval)
+   * @param scanInterval average time between two scans
+   * @return the scales or an empty array if the peak widths are below a single scan
+   */
+  public static int[] scales(double minPeakWidth, double maxPeakWidth, double scanInterval) {
+    final int lower = (int) Math.rint(minPeakWidth / scanInterval / 2d);
+    final int upper = (int) Math.rint(maxPeakWidth / scanInterval / 2d);
+    if (upper <= 0) {
+      return new int[0];
+    }
+    if (lower <= 0 || lower >= upper) {
+      return new int[]{upper};
+    }
+    final int[] scales = new int[(upper - lower) / 2 + 1];
+    for (int i = 0; i < scales.length; i++) {
+      scales[i] = lower + 2 * i;
+    }
+    return scales;
+  }
+
+  /**
+   * The sampled Mexican hat wavelet, scaled by 1/sqrt(scale). The mean is removed to correct the
+   * discretisation, so that a constant signal results in zero coefficients.
+   */
+  static double[] mexicanHat(int scale) {
+    final int half = (int) Math.ceil(KERNEL_SUPPORT * scale);
+    final double[] kernel = new double[2 * half + 1];
+    final double norm = MEXICAN_HAT_NORM / Math.sqrt(scale);
+    double sum = 0d;
+    for (int i = -half; i <= half; i++) {
+      final double t2 = (i / (double) scale) * (i / (double) scale);
+      kernel[i + half] = norm * (1d - t2) * Math.exp(-t2 / 2d);
+      sum += kernel[i + half];
+    }
+    final double mean = sum / kernel.length;
+    for (int i = 0; i < kernel.length; i++) {
+      kernel[i] -= mean;
+    }
+    return kernel;
+  }
+
+  public int[] getScales() {
+    return scales.clone();
+  }
+
+  /**
+   * Detects peaks in a chromatogram
+   *
+   * @param y                intensities, zero for scans without signal
+   * @param numValues        number of values in y
+   * @param snThreshold      signal to noise threshold
+   * @param integrateRawData find peak boundaries in the raw data instead of the wavelet
+   *                         coefficients
+   * @return list of {left, right} (inclusive) index bounds sorted by left index
+   */
+  public List<int[]> detectPeaks(double[] y, int numValues, double snThreshold,
+      boolean integrateRawData) {
+    final List<int[]> rois = findRegionsOfInterest(y, numValues);
+    if (rois.isEmpty()) {
+      return List.of();
+    }
+
+    // local noise of each ROI and prefilter
+    final int noiseRange = scales[scales.length - 1] * 3;
+    final boolean[] signal = markSignals(y, numValues);
+    final double[][] noise = new double[rois.size()][];
+    boolean anyRoi = false;
+    for (int r = 0; r < rois.size(); r++) {
+      final int[] roi = rois.get(r);
+      final double[] roiNoise = estimateLocalNoise(y, numValues, signal, roi[0], roi[1],
+          noiseRange);
+      final double threshold = roiNoise[0] + roiNoise[1] * snThreshold;
+      for (int i = roi[0]; i <= roi[1]; i++) {
+        if (y[i] >= threshold) {
+          noise[r] = roiNoise;
+          anyRoi = true;
+          break;
+        }
+      }
+    }
+    if (!anyRoi) {
+      return List.of();
+    }
+
+    final double[][] coefficients = cwt(y, numValues);
+    final int[] roiOfIndex = new int[numValues];
+    Arrays.fill(roiOfIndex, -1);
+    for (int r = 0; r < rois.size(); r++) {
+      Arrays.fill(roiOfIndex, rois.get(r)[0], rois.get(r)[1] + 1, r);
+    }
+
+    final int intensityRange = (int) Math.ceil(scales[0] / 2d);
+    final int maxDescOutliers = scales[0] / 2;
+    final List<Candidate> candidates = new ArrayList<>();
+    for (final int[] ridge : findRidges(coefficients, numValues)) {
+      // the ridge position with the highest summed intensity defines the best scale
+      int bestScale = -1;
+      double bestIntensity = -1d;
+      for (int s = 0; s < ridge.length; s++) {
+        if (ridge[s] < 0) {
+          continue;
+        }
+        final double intensity = sum(y, ridge[s] - intensityRange, ridge[s] + intensityRange,
+            numValues);
+        if (intensity > bestIntensity) {
+          bestIntensity = intensity;
+          bestScale = s;
+        }
+      }
+      final int center = ridge[bestScale];
+      final int r = roiOfIndex[center];
+      if (r < 0 || noise[r] == null) {
+        continue;
+      }
+      final double baseline = noise[r][0];
+      final double sdNoise = noise[r][1];
+
+      // any wavelet coefficient along the ridge has to be above the threshold
+      boolean significant = false;
+      for (int s = 0; s < ridge.length && !significant; s++) {
+        significant = ridge[s] >= 0
+            && coefficients[s][ridge[s]] - baseline >= sdNoise * snThreshold;
+      }
+      if (!significant) {
+        continue;
+      }
+
+      final int scale = scales[bestScale];
+      final double maxIntensity = max(y, center - scale, center + scale, numValues);
+      if ((maxIntensity - baseline) / sdNoise < snThreshold) {
+        continue;
+      }
+
+      int[] bounds = null;
+      if (!integrateRawData) {
+        bounds = descendMin(coefficients[bestScale], numValues, center);
+        if (bounds[0] == bounds[1] || max(y, bounds[0], bounds[1], numValues) <= 0d) {
+          bounds = null;
+        }
+      }
+      if (bounds == null) {
+        bounds = descendMinTol(y, numValues, center, maxDescOutliers);
+      }
+
+      // skip zeros at the peak edges
+      int left = bounds[0];
+      int right = bounds[1];
+      while (left < right && y[left] <= 0d) {
+        left++;
+      }
+      while (right > left && y[right] <= 0d) {
+        right--;
+      }
+      if (y[left] <= 0d) {
+        continue;
+      }
+      candidates.add(new Candidate(left, right, sum(y, left, right, numValues)));
+    }
+
+    // remove overlapping peaks, keep the larger one
+    candidates.sort(Comparator.comparingDouble(Candidate::area).reversed());
+    final List<int[]> peaks = new ArrayList<>();
+    for (final Candidate candidate : candidates) {
+      boolean overlaps = false;
+      for (final int[] peak : peaks) {
+        if (candidate.left() <= peak[1] && candidate.right() >= peak[0]) {
+          overlaps = true;
+          break;
+        }
+      }
+      if (!overlaps) {
+        peaks.add(new int[]{candidate.left(), candidate.right()});
+      }
+    }
+    peaks.sort(Comparator.comparingInt(p -> p[0]));
+    return peaks;
+  }
+
+  /**
+   * Continuous wavelet transform of the first numValues values. Values outside are zero.
+   *
+   * @return coefficients [scale index][value index]
+   */
+  double[][] cwt(double[] y, int numValues) {
+    final double[][] coefficients = new double[scales.length][numValues];
+    final int maxHalf = (int) Math.ceil(KERNEL_SUPPORT * scales[scales.length - 1]);
+    final int fftSize = Integer.highestOneBit(Math.max(1, numValues + maxHalf - 1)) << 1;
+    final double fftCost = 2d * fftSize * (Integer.numberOfTrailingZeros(fftSize) + 1);
+    boolean dataTransformed = false;
+
+    for (int s = 0; s < scales.length; s++) {
+      final double[] kernel = kernels[s];
+      if (scales[s] < MIN_FFT_SCALE || (double) kernel.length * numValues <= fftCost) {
+        convolve(y, numValues, kernel, coefficients[s]);
+        continue;
+      }
+
+      if (!dataTransformed) {
+        dataRe = ensureCapacity(dataRe, fftSize);
+        dataIm = ensureCapacity(dataIm, fftSize);
+        fftRe = ensureCapacity(fftRe, fftSize);
+        fftIm = ensureCapacity(fftIm, fftSize);
+        System.arraycopy(y, 0, dataRe, 0, numValues);
+        Arrays.fill(dataRe, numValues, fftSize, 0d);
+        Arrays.fill(dataIm, 0, fftSize, 0d);
+        fft(dataRe, dataIm, fftSize, false);
+        dataTransformed = true;
+      }
+
+      // spectrum of the wavelet: sqrt(a) * psi^(a * omega), psi^(w) = c * sqrt(2 pi) w^2 e^(-w^2/2)
+      final double scale = scales[s];
+      final double norm = Math.sqrt(scale) * MEXICAN_HAT_NORM * Math.sqrt(2d * Math.PI);
+      for (int f = 0; f < fftSize; f++) {
+        final double omega = 2d * Math.PI * Math.min(f, fftSize - f) / fftSize * scale;
+        final double omega2 = omega * omega;
+        final double k = norm * omega2 * Math.exp(-omega2 / 2d);
+        fftRe[f] = dataRe[f] * k;
+        fftIm[f] = dataIm[f] * k;
+      }
+      fft(fftRe, fftIm, fftSize, true);
+      System.arraycopy(fftRe, 0, coefficients[s], 0, numValues);
+    }
+    return coefficients;
+  }
+
+  private static void convolve(double[] y, int numValues, double[] kernel, double[] result) {
+    final int half = kernel.length / 2;
+    for (int i = 0; i < numValues; i++) {
+      final int from = Math.max(0, i - half);
+      final int to = Math.min(numValues - 1, i + half);
+      double sum = 0d;
+      for (int j = from; j <= to; j++) {
+        sum += y[j] * kernel[j - i + half];
+      }
+      result[i] = sum;
+    }
+  }
+
+  /**
+   * In place radix-2 FFT. The inverse transform is scaled by 1/n.
+   */
+  private static void fft(double[] re, double[] im, int n, boolean inverse) {
+    // bit reversal permutation
+    for (int i = 1, j = 0; i < n; i++) {
+      int bit = n >> 1;
+      for (; (j & bit) != 0; bit >>= 1) {
+        j ^= bit;
+      }
+      j ^= bit;
+      if (i < j) {
+        double tmp = re[i];
+        re[i] = re[j];
+        re[j] = tmp;
+        tmp = im[i];
+        im[i] = im[j];
+        im[j] = tmp;
+      }
+    }
+
+    for (int length = 2; length <= n; length <<= 1) {
+      final double angle = 2d * Math.PI / length * (inverse ? 1 : -1);
+      final int halfLength = length >> 1;
+      for (int k = 0; k < halfLength; k++) {
+        final double wRe = Math.cos(angle * k);
+        final double wIm = Math.sin(angle * k);
+        for (int i = k; i < n; i += length) {
+          final int j = i + halfLength;
+          final double vRe = re[j] * wRe - im[j] * wIm;
+          final double vIm = re[j] * wIm + im[j] * wRe;
+          re[j] = re[i] - vRe;
+          im[j] = im[i] - vIm;
+          re[i] += vRe;
+          im[i] += vIm;
+        }
+      }
+    }
+
+    if (inverse) {
+      for (int i = 0; i < n; i++) {
+        re[i] /= n;
+        im[i] /= n;
+      }
+    }
+  }
+
+  /**
+   * Connects local maxima of the wavelet coefficients from the largest to the smallest scale.
+   *
+   * @return ridges as the position at each scale index or -1
+   */
+  private List<int[]> findRidges(double[][] coefficients, int numValues) {
+    final List<int[]> ridges = new ArrayList<>();
+    // current position and number of skipped scales of active ridges
+    final List<int[]> active = new ArrayList<>();
+    final List<int[]> activeState = new ArrayList<>();
+
+    for (int s = scales.length - 1; s >= 0; s--) {
+      final int[] maxima = localMaxima(coefficients[s], numValues,
+          Math.max(MIN_LOCAL_MAX_WINDOW / 2, scales[s]));
+      final boolean[] claimed = new boolean[maxima.length];
+      final int tolerance = Math.max(MIN_LOCAL_MAX_WINDOW / 2, scales[s] / 2);
+
+      for (int r = 0; r < active.size(); r++) {
+        final int[] state = activeState.get(r);
+        final int m = nearestUnclaimed(maxima, claimed, state[0], tolerance);
+        if (m >= 0) {
+          claimed[m] = true;
+          state[0] = maxima[m];
+          state[1] = 0;
+          active.get(r)[s] = maxima[m];
+        } else {
+          state[1]++;
+        }
+      }
+      for (int r = active.size() - 1; r >= 0; r--) {
+        if (activeState.get(r)[1] > RIDGE_GAP_THRESHOLD) {
+          ridges.add(active.remove(r));
+          activeState.remove(r);
+        }
+      }
+
+      for (int m = 0; m < maxima.length; m++) {
+        if (!claimed[m]) {
+          final int[] ridge = new int[scales.length];
+          Arrays.fill(ridge, -1);
+          ridge[s] = maxima[m];
+          active.add(ridge);
+          activeState.add(new int[]{maxima[m], 0});
+        }
+      }
+    }
+    ridges.addAll(active);
+    return ridges;
+  }
+
+  private static int nearestUnclaimed(int[] maxima, boolean[] claimed, int position,
+      int tolerance) {
+    int insert = Arrays.binarySearch(maxima, position);
+    if (insert < 0) {
+      insert = -insert - 1;
+    }
+    int best = -1;
+    int bestDistance = Integer.MAX_VALUE;
+    for (int i = insert - 1; i >= 0 && position - maxima[i] <= tolerance; i--) {
+      if (!claimed[i]) {
+        best = i;
+        bestDistance = position - maxima[i];
+        break;
+      }
+    }
+    for (int i = insert; i < maxima.length && maxima[i] - position <= tolerance; i++) {
+      if (!claimed[i]) {
+        if (maxima[i] - position < bestDistance) {
+          best = i;
+        }
+        break;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Positive values that are the maximum in a window of +-halfWindow. Uses a monotonic queue for
+   * the sliding window maximum.
+   *
+   * @return sorted indices of local maxima
+   */
+  private static int[] localMaxima(double[] values, int numValues, int halfWindow) {
+    final int[] queue = new int[numValues];
+    int head = 0;
+    int tail = 0;
+    int next = 0;
+    final int[] maxima = new int[numValues];
+    int count = 0;
+    for (int i = 0; i < numValues; i++) {
+      // add values up to i + halfWindow
+      final int to = Math.min(numValues - 1, i + halfWindow);
+      for (; next <= to; next++) {
+        while (tail > head && values[queue[tail - 1]] < values[next]) {
+          tail--;
+        }
+        queue[tail++] = next;
+      }
+      // remove values before i - halfWindow
+      while (queue[head] < i - halfWindow) {
+        head++;
+      }
+      // the first index of the window maximum is the local maximum
+      if (queue[head] == i && values[i] > 0d) {
+        maxima[count++] = i;
+      }
+    }
+    return Arrays.copyOf(maxima, count);
+  }
+
+  /**
+   * Descends from start to both sides as long as the values are decreasing.
+   */
+  private static int[] descendMin(double[] values, int numValues, int start) {
+    int left = start;
+    while (left > 0 && values[left - 1] < values[left]) {
+      left--;
+    }
+    int right = start;
+    while (right < numValues - 1 && values[right + 1] < values[right]) {
+      right++;
+    }
+    return new int[]{left, right};
+  }
+
+  /**
+   * Descends from start to both sides to the lowest value, allowing for maxOutliers consecutive
+   * values above the current minimum.
+   */
+  private static int[] descendMinTol(double[] values, int numValues, int start, int maxOutliers) {
+    int left = start;
+    int outliers = 0;
+    for (int i = start - 1; i >= 0 && outliers <= maxOutliers; i--) {
+      if (values[i] <= values[left]) {
+        left = i;
+        outliers = 0;
+      } else {
+        outliers++;
+      }
+    }
+    int right = start;
+    outliers = 0;
+    for (int i = start + 1; i < numValues && outliers <= maxOutliers; i++) {
+      if (values[i] <= values[right]) {
+        right = i;
+        outliers = 0;
+      } else {
+        outliers++;
+      }
+    }
+    return new int[]{left, right};
+  }
+
+  /**
+   * Regions of consecutive non-zero intensities
+   */
+  private static List<int[]> findRegionsOfInterest(double[] y, int numValues) {
+    final List<int[]> rois = new ArrayList<>();
+    for (int start = 0; start < numValues; start++) {
+      if (y[start] > 0d) {
+        int end = start;
+        while (end + 1 < numValues && y[end + 1] > 0d) {
+          end++;
+        }
+        rois.add(new int[]{start, end});
+        start = end;
+      }
+    }
+    return rois;
+  }
+
+  /**
+   * Marks values in runs of at least {@link #PREFILTER_POINTS} values above zero. These are
+   * considered signals and are excluded from the noise estimation.
+   */
+  private static boolean[] markSignals(double[] y, int numValues) {
+    final boolean[] signal = new boolean[numValues];
+    for (final int[] roi : findRegionsOfInterest(y, numValues)) {
+      if (roi[1] - roi[0] + 1 >= PREFILTER_POINTS) {
+        Arrays.fill(signal, roi[0], roi[1] + 1, true);
+      }
+    }
+    return signal;
+  }
+
+  /**
+   * Estimates baseline and standard deviation of the noise from the values around a ROI that do
+   * not belong to any signal (as xcms getLocalNoiseEstimate). Both are at least 1.
+   *
+   * @return {baseline, sd}
+   */
+  private static double[] estimateLocalNoise(double[] y, int numValues, boolean[] signal,
+      int roiStart, int roiEnd, int noiseRange) {
+    final int from = Math.max(0, roiStart - noiseRange);
+    final int to = Math.min(numValues - 1, roiEnd + noiseRange);
+    int n = 0;
+    double mean = 0d;
+    double m2 = 0d;
+    for (int i = from; i <= to; i++) {
+      if ((i >= roiStart && i <= roiEnd) || signal[i]) {
+        continue;
+      }
+      // Welford
+      n++;
+      final double delta = y[i] - mean;
+      mean += delta / n;
+      m2 += delta * (y[i] - mean);
+    }
+    if (n < 2) {
+      return new double[]{1d, 1d};
+    }
+    return new double[]{Math.max(1d, mean), Math.max(1d, Math.sqrt(m2 / (n - 1)))};
+  }
+
+  private static double sum(double[] y, int from, int to, int numValues) {
+    double sum = 0d;
+    for (int i = Math.max(0, from); i <= Math.min(numValues - 1, to); i++) {
+      sum += y[i];
+    }
+    return sum;
+  }
+
+  private static double max(double[] y, int from, int to, int numValues) {
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = Math.max(0, from); i <= Math.min(numValues - 1, to); i++) {
+      max = Math.max(max, y[i]);
+    }
+    return max;
+  }
+
+  private static double[] ensureCapacity(double[] buffer, int size) {
+    return buffer == null || buffer.length < size ? new double[size] : buffer;
+  }
+
+  private record Candidate(int left, int right, double area) {
+
+  }
+}
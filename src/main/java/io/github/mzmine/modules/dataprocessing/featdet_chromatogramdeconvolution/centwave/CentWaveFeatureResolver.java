@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave;
+
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.INTEGRATION_METHOD;
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.MIN_NUMBER_OF_DATAPOINTS;
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.PEAK_DURATION;
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.PEAK_SCALES;
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.SN_THRESHOLD;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.AbstractResolver;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.PeakIntegrationMethod;
+import io.github.mzmine.parameters.ParameterSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Native Java implementation of xcms findPeaks.centWave, see {@link CentWaveDetector}. Replaces the
+ * R based {@link CentWaveResolver}.
+ */
+public class CentWaveFeatureResolver extends AbstractResolver {
+
+  private final double snThreshold;
+  private final Range<Double> peakWidth;
+  private final Range<Double> peakDuration;
+  private final boolean integrateRawData;
+  private final int minDataPoints;
+  // kernels are reused as long as the scan interval results in the same scales
+  private CentWaveDetector detector;
+
+  public CentWaveFeatureResolver(@NotNull ParameterSet parameters,
+      @NotNull ModularFeatureList flist) {
+    super(parameters, flist);
+    snThreshold = parameters.getParameter(SN_THRESHOLD).getValue();
+    peakWidth = parameters.getParameter(PEAK_SCALES).getValue();
+    peakDuration = parameters.getParameter(PEAK_DURATION).getValue();
+    integrateRawData = parameters.getParameter(INTEGRATION_METHOD).getValue()
+        == PeakIntegrationMethod.UseRawData;
+    minDataPoints = parameters.getParameter(MIN_NUMBER_OF_DATAPOINTS).getValue();
+  }
+
+  @Override
+  public Class<? extends MZmineProcessingModule> getModuleClass() {
+    return CentWaveResolverModule.class;
+  }
+
+  /**
+   * @param x retention times (strictly increasing). Buffers may be longer than the data, trailing
+   *          values that are not increasing are ignored.
+   * @param y intensities, 0 for scans without signal
+   * @return the retention time ranges of resolved features
+   */
+  @Override
+  @NotNull
+  public List<Range<Double>> resolve(double[] x, double[] y) {
+    int numValues = Math.min(x.length, y.length);
+    while (numValues > 1 && x[numValues - 1] <= x[numValues - 2]) {
+      numValues--;
+    }
+    if (numValues < 3) {
+      return List.of();
+    }
+
+    final double scanInterval = (x[numValues - 1] - x[0]) / (numValues - 1);
+    final int[] scales = CentWaveDetector.scales(peakWidth.lowerEndpoint(),
+        peakWidth.upperEndpoint(), scanInterval);
+    if (scales.length == 0) {
+      return List.of();
+    }
+    if (detector == null || !Arrays.equals(detector.getScales(), scales)) {
+      detector = new CentWaveDetector(scales);
+    }
+
+    final List<Range<Double>> resolved = new ArrayList<>();
+    for (int[] peak : detector.detectPeaks(y, numValues, snThreshold, integrateRawData)) {
+      // partition into sections bounded by zero intensities, as the R implementation
+      for (int start = peak[0]; start <= peak[1]; start++) {
+        if (y[start] <= 0d) {
+          continue;
+        }
+        int end = start;
+        while (end < peak[1] && y[end + 1] > 0d) {
+          end++;
+        }
+        if (end > start && end - start + 1 >= minDataPoints && peakDuration.contains(
+            x[end] - x[start])) {
+          resolved.add(Range.closed(x[start], x[end]));
+        }
+        start = end;
+      }
+    }
+    return resolved;
+  }
+}
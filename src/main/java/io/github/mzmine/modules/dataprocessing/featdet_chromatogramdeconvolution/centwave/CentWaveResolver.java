@@ -51,7 +51,8 @@ import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * Use XCMS findPeaks.centWave to identify peaks.
+ * Use XCMS findPeaks.centWave to identify peaks. Only used if the R engine is selected, otherwise
+ * the native {@link CentWaveFeatureResolver} is used.
  */
 public class CentWaveResolver implements FeatureResolver {
 
@@ -26,16 +26,21 @@
 package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave;
 
 import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.FeatureResolver;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.FeatureResolverSetupDialog;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.GeneralResolverParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.Resolver;
 import io.github.mzmine.parameters.Parameter;
+import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
 import io.github.mzmine.parameters.parametertypes.DoubleParameter;
 import io.github.mzmine.parameters.parametertypes.ranges.DoubleRangeParameter;
 import io.github.mzmine.util.ExitCode;
 import java.text.NumberFormat;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Element;
 
 /**
  * Parameters used by CentWaveDetector.
@@ -92,13 +97,34 @@ public class CentWaveResolverParameters extends GeneralResolverParameters {
           "Type of data used during peak reconstruction", PeakIntegrationMethod.values(),
           PeakIntegrationMethod.UseSmoothedData);
 
+  /**
+   * The native implementation is the default, xcms is optional.
+   */
+  public static final ComboParameter<CentWaveEngine> ENGINE = new ComboParameter<>(
+      "Computation engine",
+      "Java runs the native centWave implementation, also in parallel. "
+      + "R calls xcms findPeaks.centWave and requires a local R installation with xcms. "
+      + "Parameter sets without this parameter use R.", CentWaveEngine.values(),
+      CentWaveEngine.JAVA);
+
   public CentWaveResolverParameters() {
 
     super(new Parameter[]{PEAK_LISTS, SUFFIX, handleOriginal, groupMS2Parameters, SN_THRESHOLD,
-        PEAK_SCALES, PEAK_DURATION, INTEGRATION_METHOD, RENGINE_TYPE, MIN_NUMBER_OF_DATAPOINTS},
+        PEAK_SCALES, PEAK_DURATION, INTEGRATION_METHOD, ENGINE, RENGINE_TYPE,
+        MIN_NUMBER_OF_DATAPOINTS},
         "https://mzmine.github.io/mzmine_documentation/module_docs/featdet_resolver_centwave/centwave-resolver.html");
   }
 
+  /**
+   * Batch files and projects from before the Java engine was added do not contain the engine
+   * parameter. They keep using R instead of the current default of this parameter set.
+   */
+  @Override
+  public void loadValuesFromXML(Element xmlElement) {
+    setParameter(ENGINE, CentWaveEngine.R);
+    super.loadValuesFromXML(xmlElement);
+  }
+
   @Override
   public ExitCode showSetupDialog(boolean valueCheckRequired) {
 
@@ -112,4 +138,16 @@ public class CentWaveResolverParameters extends GeneralResolverParameters {
   public FeatureResolver getResolver() {
     return new CentWaveResolver();
   }
+
+  /**
+   * @return the native resolver or null to use the R based legacy {@link CentWaveResolver}
+   */
+  @Nullable
+  @Override
+  public Resolver getResolver(ParameterSet parameters, ModularFeatureList flist) {
+    if (parameters.getParameter(ENGINE).getValue() == CentWaveEngine.R) {
+      return null;
+    }
+    return new CentWaveFeatureResolver(parameters, flist);
+  }
 }
@@ -42,10 +42,8 @@ import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.MemoryMapStorage;
-import io.github.mzmine.util.scans.ScanUtils;
+import io.github.mzmine.util.scans.MSnTreeIndex;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -114,9 +112,8 @@ public class MsnTreeFeatureDetectionTask extends AbstractTask {
     }
 
     // get trees sorted ascending
-    final List<PrecursorIonTree> trees = new ArrayList<>(
-        ScanUtils.getMSnFragmentTrees(dataFile, mzTol));
-    trees.sort(Comparator.comparingDouble(PrecursorIonTree::getPrecursorMz));
+    final List<PrecursorIonTree> trees = MSnTreeIndex.of(dataFile, mzTol)
+        .getTreesByPrecursorMz();
     List<Range<Double>> mzRanges = trees.stream().mapToDouble(PrecursorIonTree::getPrecursorMz)
         .mapToObj(mzTol::getToleranceRange).toList();
 
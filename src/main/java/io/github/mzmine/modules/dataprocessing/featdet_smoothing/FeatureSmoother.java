@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_smoothing;
+
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.ModifiableSpectra;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilogramTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.SummedIntensityMobilitySeries;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.util.MemoryMapStorage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Smooths features with a {@link SmoothingAlgorithm} and reuses the buffer of the smoothed
+ * intensities for all features. Not thread safe, every thread should use its own instance. The
+ * {@link SmoothingAlgorithm} itself may be shared.
+ */
+public class FeatureSmoother {
+
+  private final SmoothingAlgorithm smoother;
+  private double[] smoothed = new double[0];
+
+  public FeatureSmoother(@NotNull SmoothingAlgorithm smoother) {
+    this.smoother = smoother;
+  }
+
+  /**
+   * Creates a new smoothed series for the given feature. The intensities are smoothed with the
+   * settings of the {@link SmoothingAlgorithm}. Smooths intensity in rt and mobility dimension.
+   *
+   * @param storage    The storage of the new series.
+   * @param dataAccess The series to smooth, usually the feature data with zeros for all scans.
+   * @param feature    The feature.
+   * @return The smoothed series.
+   */
+  public IonTimeSeries<? extends Scan> smoothFeature(@Nullable final MemoryMapStorage storage,
+      @NotNull final IonTimeSeries<?> dataAccess, @NotNull final Feature feature) {
+    final IonTimeSeries<? extends Scan> originalSeries = feature.getFeatureData();
+    final int numValues = originalSeries.getNumberOfValues();
+
+    final double[] smoothedIntensities = smoother.smoothRt(dataAccess, smoothed);
+    final double[] newIntensities = new double[numValues];
+    if (smoothedIntensities == null) {
+      // rt should not be smoothed, so just copy the old values.
+      originalSeries.getIntensityValues(newIntensities);
+    } else {
+      smoothed = smoothedIntensities;
+      // the data access contains additional scans with zero intensity, pick the detected scans
+      int newIndex = 0;
+      for (int i = 0; i < dataAccess.getNumberOfValues() && newIndex < numValues; i++) {
+        if (dataAccess.getSpectrum(i) == originalSeries.getSpectrum(newIndex)) {
+          newIntensities[newIndex] = smoothedIntensities[i];
+          newIndex++;
+        }
+      }
+    }
+
+    final double[] originalMzs = new double[numValues];
+    originalSeries.getMzValues(originalMzs);
+    if (originalSeries instanceof IonMobilogramTimeSeries imts) {
+      final SummedIntensityMobilitySeries smoothedMobilogram = smoother.smoothSummedMobilogram(
+          storage, imts.getSummedMobilogram());
+      return new SimpleIonMobilogramTimeSeries(storage, originalMzs, newIntensities,
+          ((SimpleIonMobilogramTimeSeries) originalSeries).getMobilogramsModifiable(),
+          ((ModifiableSpectra) originalSeries).getSpectraModifiable(), smoothedMobilogram);
+    }
+
+    return (IonTimeSeries<? extends Scan>) originalSeries.copyAndReplace(storage, originalMzs,
+        newIntensities);
+  }
+}
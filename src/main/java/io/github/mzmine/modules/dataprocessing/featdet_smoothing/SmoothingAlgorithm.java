@@ -28,11 +28,8 @@ package io.github.mzmine.modules.dataprocessing.featdet_smoothing;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.data_access.FeatureFullDataAccess;
 import io.github.mzmine.datamodel.featuredata.IntensitySeries;
-import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.MobilitySeries;
-import io.github.mzmine.datamodel.featuredata.impl.ModifiableSpectra;
-import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.SummedIntensityMobilitySeries;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.modules.MZmineModule;
@@ -58,58 +55,32 @@ public interface SmoothingAlgorithm extends MZmineModule {
   public <T extends IntensitySeries & MobilitySeries> double[] smoothMobility(
       @NotNull final T mobilogram);
 
+  /**
+   * Smooths the intensities in rt dimension into a buffer that is reused for all features of a
+   * {@link FeatureSmoother}. Implementations that do not support buffers allocate a new array.
+   *
+   * @param series The series.
+   * @param buffer A buffer for the smoothed values or null. Only used if it is large enough.
+   * @return The smoothed intensity values in the first {@link IonTimeSeries#getNumberOfValues()}
+   * elements or null if rt shall not be smoothed.
+   */
+  @Nullable
+  public default <T extends Scan> double[] smoothRt(@NotNull final IonTimeSeries<T> series,
+      @Nullable final double[] buffer) {
+    return smoothRt(series);
+  }
+
   /**
    * Creates a new smoothed series for the given feature. The intensities are smoothed with the
    * settings of this {@link SmoothingAlgorithm}. Smooths intensity in rt and mobility dimension.
    *
    * @return The smoothed series.
+   * @see FeatureSmoother to smooth many features with reused buffers
    */
   public default IonTimeSeries<? extends Scan> smoothFeature(
       @Nullable final MemoryMapStorage storage, @NotNull final IonTimeSeries<?> dataAccess,
       @NotNull final Feature feature, ZeroHandlingType zht) {
-
-    double[] smoothedIntensities = this.smoothRt(dataAccess);
-
-    final IonTimeSeries<? extends Scan> originalSeries = feature.getFeatureData();
-    final double[] originalIntensities = new double[originalSeries.getNumberOfValues()];
-    final double[] newIntensities;
-
-    originalSeries.getIntensityValues(originalIntensities);
-
-    if (smoothedIntensities == null) {
-      // rt should not be smoothed, so just copy the old values.
-      newIntensities = originalIntensities;
-    } else {
-      newIntensities = new double[originalSeries.getNumberOfValues()];
-      int newIntensitiesIndex = 0;
-      for (int i = 0; i < dataAccess.getNumberOfValues() && newIntensitiesIndex < originalSeries
-          .getNumberOfValues(); i++) {
-        // check if we originally did have an intensity at the current index. I know that the data
-        // access contains more zeros and the zeros of different indices will be matched, but the
-        // newIntensitiesIndex will "catch" up, once real intensities are reached.
-        if (Double.compare(dataAccess.getIntensity(i), originalIntensities[newIntensitiesIndex])
-            == 0) {
-          newIntensities[newIntensitiesIndex] = smoothedIntensities[i];
-          newIntensitiesIndex++;
-        }
-        if (newIntensitiesIndex == originalIntensities.length - 1) {
-          break;
-        }
-      }
-    }
-
-    double[] originalMzs = new double[originalSeries.getNumberOfValues()];
-    originalSeries.getMzValues(originalMzs);
-    if (originalSeries instanceof IonMobilogramTimeSeries imts) {
-      final SummedIntensityMobilitySeries smoothedMobilogram = smoothSummedMobilogram(storage,
-          imts.getSummedMobilogram());
-      return new SimpleIonMobilogramTimeSeries(storage, originalMzs, newIntensities,
-          ((SimpleIonMobilogramTimeSeries) originalSeries).getMobilogramsModifiable(),
-          ((ModifiableSpectra) originalSeries).getSpectraModifiable(), smoothedMobilogram);
-    }
-
-    return (IonTimeSeries<? extends Scan>) originalSeries
-        .copyAndReplace(storage, originalMzs, newIntensities);
+    return new FeatureSmoother(this).smoothFeature(storage, dataAccess, feature);
   }
 
   /**
@@ -25,6 +25,7 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_smoothing;
 
+import com.google.common.collect.Lists;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.MobilityScan;
@@ -40,6 +41,7 @@ import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilitySeries;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
@@ -47,12 +49,14 @@ import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
 import io.github.mzmine.util.DataTypeUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import java.lang.reflect.InvocationTargetException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -62,6 +66,8 @@ import org.jetbrains.annotations.Nullable;
 public class SmoothingTask extends AbstractTask {
 
   private static final Logger logger = Logger.getLogger(SmoothingTask.class.getName());
+  // smaller feature lists are smoothed on a single thread
+  private static final int MIN_ROWS_PER_CHUNK = 500;
 
   private final ModularFeatureList flist;
   private final ParameterSet parameters;
@@ -122,25 +128,36 @@ public class SmoothingTask extends AbstractTask {
       return;
     }
 
-    // include zeros
-    final FeatureDataAccess dataAccess = EfficientDataAccess
-        .of(smoothedList, FeatureDataType.INCLUDE_ZEROS);
-
-    while (dataAccess.hasNextFeature()) {
-      final ModularFeature feature = (ModularFeature) dataAccess.nextFeature();
-
-      final IonTimeSeries<? extends Scan> smoothedSeries = smoother
-          .smoothFeature(getMemoryMapStorage(), dataAccess, feature, zht);
-      feature.set(io.github.mzmine.datamodel.features.types.FeatureDataType.class, smoothedSeries);
-      FeatureDataUtils.recalculateIonSeriesDependingTypes(feature);
-
-      processedFeatures.getAndIncrement();
+    final int threads = TaskThreadPool.getMaxThreads();
+    final List<SmoothedFeature> smoothedFeatures;
+    try {
+      if (threads > 1 && numFeatures >= 2 * MIN_ROWS_PER_CHUNK) {
+        smoothedFeatures = parallelSmooth(smoothedList, smoother, threads);
+      } else {
+        // include zeros
+        final FeatureDataAccess dataAccess = EfficientDataAccess.of(smoothedList,
+            FeatureDataType.INCLUDE_ZEROS);
+        smoothedFeatures = smoothAll(smoother, dataAccess);
+      }
+    } catch (InterruptedException | ExecutionException e) {
+      logger.log(Level.SEVERE, "Error during smoothing of " + flist.getName(), e);
+      setErrorMessage(e.getMessage());
+      setStatus(TaskStatus.ERROR);
+      return;
     }
 
     if (isCanceled()) {
       return;
     }
 
+    // features are updated on this thread, the series were already stored
+    for (SmoothedFeature smoothed : smoothedFeatures) {
+      final ModularFeature feature = smoothed.feature();
+      feature.set(io.github.mzmine.datamodel.features.types.FeatureDataType.class,
+          smoothed.series());
+      FeatureDataUtils.recalculateIonSeriesDependingTypes(feature);
+    }
+
     smoothedList.getAppliedMethods().add(
         new SimpleFeatureListAppliedMethod(SmoothingModule.class, parameters, getModuleCallDate()));
 
@@ -150,6 +167,51 @@ public class SmoothingTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * Splits the rows into chunks that are smoothed in parallel. {@link FeatureDataAccess} and
+   * {@link FeatureSmoother} keep internal buffers and are not thread safe, therefore every chunk
+   * uses its own instances. The {@link SmoothingAlgorithm} is shared.
+   *
+   * @return the smoothed features in the order of the rows
+   */
+  private List<SmoothedFeature> parallelSmooth(ModularFeatureList smoothedList,
+      SmoothingAlgorithm smoother, int threads) throws InterruptedException, ExecutionException {
+    final List<FeatureListRow> rows = smoothedList.getRows();
+    final int chunkSize = Math.max(MIN_ROWS_PER_CHUNK,
+        (int) Math.ceil(rows.size() / (double) (threads * 4)));
+    final List<List<FeatureListRow>> chunks = Lists.partition(rows, chunkSize);
+
+    // map keeps the chunk order
+    final List<List<SmoothedFeature>> smoothedChunks = TaskThreadPool.invoke(threads,
+        () -> chunks.parallelStream().map(chunk -> smoothAll(smoother,
+                // null data file to access all features like the sequential data access
+                EfficientDataAccess.of(smoothedList, FeatureDataType.INCLUDE_ZEROS, null, chunk)))
+            .toList());
+
+    final List<SmoothedFeature> smoothedFeatures = new ArrayList<>(rows.size());
+    smoothedChunks.forEach(smoothedFeatures::addAll);
+    return smoothedFeatures;
+  }
+
+  /**
+   * Smooths all features of the data access
+   *
+   * @return the smoothed features in the order of the data access
+   */
+  private List<SmoothedFeature> smoothAll(SmoothingAlgorithm smoother,
+      FeatureDataAccess dataAccess) {
+    final FeatureSmoother featureSmoother = new FeatureSmoother(smoother);
+    final List<SmoothedFeature> smoothedFeatures = new ArrayList<>(dataAccess.getNumOfFeatures());
+    while (dataAccess.hasNextFeature() && !isCanceled()) {
+      final ModularFeature feature = (ModularFeature) dataAccess.nextFeature();
+      final IonTimeSeries<? extends Scan> smoothedSeries = featureSmoother.smoothFeature(
+          getMemoryMapStorage(), dataAccess, feature);
+      smoothedFeatures.add(new SmoothedFeature(feature, smoothedSeries));
+      processedFeatures.getAndIncrement();
+    }
+    return smoothedFeatures;
+  }
+
   @Nullable
   private SmoothingAlgorithm initialiseSmoother() {
     final SmoothingAlgorithm smoother;
@@ -268,6 +330,10 @@ public class SmoothingTask extends AbstractTask {
     return null;
   }
 
+  private record SmoothedFeature(ModularFeature feature, IonTimeSeries<? extends Scan> series) {
+
+  }
+
   public enum SmoothingDimension {
     RETENTION_TIME("Retention time"), MOBILITY("Mobility");
     private final String name;
@@ -25,8 +25,10 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_smoothing.savitzkygolay;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utilities for the Savitzky-Golay smoother.
@@ -55,6 +57,9 @@ public class SavitzkyGolayFilter {
     VALUES.put(25, new int[] {467, 462, 447, 422, 387, 343, 287, 222, 147, 62, -33, -138, -253});
   }
 
+  // normalized weights by filter width, computed once
+  private static final Map<Integer, double[]> NORMALIZED_WEIGHTS = new ConcurrentHashMap<>();
+
   /**
    * Utility class - no public constructor.
    */
@@ -64,12 +69,21 @@ public class SavitzkyGolayFilter {
   }
 
   /**
-   * Gets the normalized Savitzky-Golay filter weights.
+   * Gets the normalized Savitzky-Golay filter weights. The weights are computed once per width and
+   * shared, so the returned array must not be modified.
    *
    * @param width the full width of the filter.
    * @return the filter weights (normalized).
    */
   public static double[] getNormalizedWeights(final int width) {
+    final double[] weights = NORMALIZED_WEIGHTS.get(width);
+    if (weights != null) {
+      return weights;
+    }
+    return NORMALIZED_WEIGHTS.computeIfAbsent(width, SavitzkyGolayFilter::computeNormalizedWeights);
+  }
+
+  private static double[] computeNormalizedWeights(final int width) {
 
     if (width == 0) {
       return new double[]{1d};
@@ -113,26 +127,39 @@ public class SavitzkyGolayFilter {
    * @return the convolution results.
    */
   public static double[] convolve(final double[] intensities, final double[] weights) {
+    final double[] convolved = new double[intensities.length];
+    convolve(intensities, intensities.length, weights, convolved);
+    return convolved;
+  }
 
-    // Initialise.
+  /**
+   * Convolve a set of weights with the first numPoints intensities without allocating new arrays.
+   * The outer loop runs over the filter weights and the inner loop over the data points, so the
+   * inner loop is a simple multiply-add over contiguous arrays that the JIT can vectorise. Every
+   * point still sums up the weighted intensities in the order of the weights, the results are the
+   * same as for a point-by-point convolution.
+   *
+   * @param intensities the intensities, at least numPoints long.
+   * @param numPoints   the number of intensities to convolve.
+   * @param weights     the filter weights.
+   * @param dst         the destination for the convolution results, at least numPoints long.
+   * @return dst
+   */
+  public static double[] convolve(final double[] intensities, final int numPoints,
+      final double[] weights, final double[] dst) {
     final int fullWidth = weights.length;
     final int halfWidth = (fullWidth - 1) / 2;
-    final int numPoints = intensities.length;
-
-    // Convolve.
-    final double[] convolved = new double[numPoints];
-    for (int i = 0; i < numPoints; i++) {
 
-      double sum = 0.0;
-      final int k = i - halfWidth;
-      for (int j = Math.max(0, -k); j < Math.min(fullWidth, numPoints - k); j++) {
-        sum += intensities[k + j] * weights[j];
+    Arrays.fill(dst, 0, numPoints, 0d);
+    for (int j = 0; j < fullWidth; j++) {
+      final double weight = weights[j];
+      final int offset = j - halfWidth;
+      final int start = Math.max(0, -offset);
+      final int end = Math.min(numPoints, numPoints - offset);
+      for (int i = start; i < end; i++) {
+        dst[i] += intensities[i + offset] * weight;
       }
-
-      // Set the result.
-      convolved[i] = sum;
     }
-
-    return convolved;
+    return dst;
   }
 }
@@ -26,6 +26,7 @@
 package io.github.mzmine.modules.dataprocessing.featdet_smoothing.savitzkygolay;
 
 import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.FeatureFullDataAccess;
 import io.github.mzmine.datamodel.featuredata.IntensitySeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.MobilitySeries;
@@ -73,30 +74,37 @@ public class SavitzkyGolaySmoothing implements SmoothingAlgorithm {
    * @return
    */
   public double[] smooth(@NotNull final IntensitySeries access, double[] normWeights) {
+    return smooth(access, normWeights, null);
+  }
+
+  /**
+   * @param access      The intensity series to be smoothed. Ideally an instance of {@link
+   *                    FeatureFullDataAccess} for best performance.
+   * @param normWeights the normalized filter weights
+   * @param buffer      used for the results if it is large enough, may be null
+   * @return the smoothed values in the first {@link IntensitySeries#getNumberOfValues()} elements
+   */
+  public double[] smooth(@NotNull final IntensitySeries access, double[] normWeights,
+      @Nullable double[] buffer) {
     if (normWeights == null) {
       throw new IllegalArgumentException(
           "No smoothing weights specified. Was the smoother initialised correctly?");
     }
 
-    // Initialise.
     final int numPoints = access.getNumberOfValues();
-    final int fullWidth = normWeights.length;
-    final int halfWidth = (fullWidth - 1) / 2;
+    // the full data access exposes its internal buffer, no need to copy
+    final double[] intensities = access instanceof FeatureFullDataAccess full
+        ? full.getIntensityValues() : access.getIntensityValues(new double[numPoints]);
+    final double[] smoothed =
+        buffer != null && buffer.length >= numPoints ? buffer : new double[numPoints];
 
-    double[] smoothed = new double[numPoints];
+    SavitzkyGolayFilter.convolve(intensities, numPoints, normWeights, smoothed);
     for (int i = 0; i < numPoints; i++) {
-      final int k = i - halfWidth;
-      for (int j = Math.max(0, -k); j < Math.min(fullWidth, numPoints - k); j++) {
-        smoothed[i] += access.getIntensity(k + j) * normWeights[j];
-      }
-
       if (smoothed[i] < 0d) {
         smoothed[i] = 0d;
       }
-
-//      if (/*zht == ZeroHandlingType.KEEP &&*/ Double.compare(access.getIntensity(i), 0d) == 0) {
       // if values that were previously 0 shall remain 0, we process that here.
-      if (Double.compare(access.getIntensity(i), 0d) == 0) {
+      if (Double.compare(intensities[i], 0d) == 0) {
         smoothed[i] = 0;
       }
     }
@@ -110,6 +118,13 @@ public class SavitzkyGolaySmoothing implements SmoothingAlgorithm {
     return smoothRt ? smooth(series, rtWeights) : null;
   }
 
+  @Override
+  @Nullable
+  public <T extends Scan> double[] smoothRt(@NotNull IonTimeSeries<T> series,
+      @Nullable double[] buffer) {
+    return smoothRt ? smooth(series, rtWeights, buffer) : null;
+  }
+
   @Override
   @Nullable
   public <T extends IntensitySeries & MobilitySeries> double[] smoothMobility(
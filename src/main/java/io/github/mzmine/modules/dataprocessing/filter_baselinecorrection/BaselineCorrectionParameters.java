@@ -43,6 +43,7 @@ import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesParamete
 import io.github.mzmine.parameters.parametertypes.submodules.ModuleComboParameter;
 import io.github.mzmine.util.ExitCode;
 import io.github.mzmine.util.R.REngineType;
+import org.w3c.dom.Element;
 
 /**
  * Holds baseline correction module COMMON parameters. See
@@ -122,23 +123,46 @@ public class BaselineCorrectionParameters extends SimpleParameterSet {
       "Remove source file after baseline correction",
       "If checked, original file will be replaced by the corrected version", true);
 
+  /**
+   * Baseline computation engine. The native correctors are the default, R is optional.
+   */
+  public static final ComboParameter<BaselineEngine> ENGINE = new ComboParameter<>(
+      "Computation engine",
+      "Java computes the baselines natively and in parallel for all m/z bins. Known deviations of the Java engine: "
+      + "peak detection approximates the peakDetection method of the R package baseline and "
+      + "the spline option of rubber band uses a Whittaker smoother instead of smooth.spline. "
+      + "R uses the original R packages of the correction methods and requires a local R installation. "
+      + "Parameter sets without this parameter use R.", BaselineEngine.values(),
+      BaselineEngine.JAVA);
+
   /**
    * R engine type.
    */
   public static final ComboParameter<REngineType> RENGINE_TYPE = new ComboParameter<REngineType>(
-      "R engine", "The R engine to be used for communicating with R.", REngineType.values(),
-      REngineType.RCALLER);
+      "R engine",
+      "The R engine to be used for communicating with R. Only used if the computation engine is R.",
+      REngineType.values(), REngineType.RCALLER);
 
   /**
    * Create the parameter set.
    */
   public BaselineCorrectionParameters() {
     super(new Parameter[]{dataFiles, SUFFIX, CHROMOTAGRAM_TYPE, MS_LEVEL, USE_MZ_BINS, MZ_BIN_WIDTH,
-            BASELINE_CORRECTORS, RENGINE_TYPE, REMOVE_ORIGINAL},
+            BASELINE_CORRECTORS, ENGINE, RENGINE_TYPE, REMOVE_ORIGINAL},
         "https://mzmine.github.io/mzmine_documentation/module_docs/filter_raw_data/baseline-corrections.html");
     thisParameters = null;
   }
 
+  /**
+   * Batch files and projects from before the Java engine was added do not contain the engine
+   * parameter. They keep using R instead of the current default of this parameter set.
+   */
+  @Override
+  public void loadValuesFromXML(Element xmlElement) {
+    setParameter(ENGINE, BaselineEngine.R);
+    super.loadValuesFromXML(xmlElement);
+  }
+
   /**
    * Use an InstantUpdateSetupDialog setup dialog instead of the regular one.
    */
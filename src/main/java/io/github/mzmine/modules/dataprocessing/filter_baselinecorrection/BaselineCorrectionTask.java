@@ -74,6 +74,7 @@ public class BaselineCorrectionTask extends AbstractTask {
   private RSessionWrapper rSession;
   private String errorMsg;
 
+  private final BaselineEngine engine;
   private REngineType rEngineType;
 
   /**
@@ -95,6 +96,7 @@ public class BaselineCorrectionTask extends AbstractTask {
     this.baselineCorrectorProcStep =
         parameters.getParameter(BaselineCorrectionParameters.BASELINE_CORRECTORS).getValue();
 
+    this.engine = parameters.getParameter(BaselineCorrectionParameters.ENGINE).getValue();
     this.rEngineType =
         parameters.getParameter(BaselineCorrectionParameters.RENGINE_TYPE).getValue();
 
@@ -121,12 +123,14 @@ public class BaselineCorrectionTask extends AbstractTask {
 
     try {
 
-      // Check R availability, by trying to open the connection.
-      String[] reqPackages = this.baselineCorrectorProcStep.getModule().getRequiredRPackages();
-      String callerFeatureName = this.baselineCorrectorProcStep.getModule().getName();
-      this.rSession = new RSessionWrapper(rEngineType, callerFeatureName, reqPackages, null);
+      if (engine == BaselineEngine.R) {
+        // Check R availability, by trying to open the connection.
+        String[] reqPackages = this.baselineCorrectorProcStep.getModule().getRequiredRPackages();
+        String callerFeatureName = this.baselineCorrectorProcStep.getModule().getName();
+        this.rSession = new RSessionWrapper(rEngineType, callerFeatureName, reqPackages, null);
 
-      this.rSession.open();
+        this.rSession.open();
+      }
 
       this.baselineCorrectorProcStep.getModule().initProgress(origDataFile);
 
@@ -158,13 +162,17 @@ public class BaselineCorrectionTask extends AbstractTask {
         logger.info("Baseline corrected " + origDataFile.getName());
       }
       // Turn off R instance, once task ended gracefully.
-      if (!isCanceled())
+      if (!isCanceled() && this.rSession != null)
         this.rSession.close(false);
 
-    } catch (IOException | RSessionWrapperException e) {
+    } catch (RSessionWrapperException e) {
       if (!isCanceled()) {
         errorMsg = "'R computing error' during baseline correction. \n" + e.getMessage();
       }
+    } catch (IOException e) {
+      if (!isCanceled()) {
+        errorMsg = "'I/O error' during baseline correction. \n" + e.getMessage();
+      }
     } catch (Exception e) {
       if (!isCanceled()) {
         errorMsg = "'Unknown error' during baseline correction. \n" + e.getMessage();
@@ -175,7 +183,7 @@ public class BaselineCorrectionTask extends AbstractTask {
 
     // Turn off R instance, once task ended UNgracefully.
     try {
-      if (!isCanceled())
+      if (!isCanceled() && this.rSession != null)
         this.rSession.close(isCanceled());
     } catch (RSessionWrapperException e) {
       if (!isCanceled()) {
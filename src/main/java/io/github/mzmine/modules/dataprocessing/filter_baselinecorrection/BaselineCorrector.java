@@ -29,6 +29,7 @@ import io.github.mzmine.util.MemoryMapStorage;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.RawDataFile;
@@ -66,6 +67,7 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
   private String suffix;
 
   // General parameters (common to all baseline correction methods).
+  private BaselineEngine engine;
   private REngineType rEgineType;
   private ChromatogramType chromatogramType;
   private double binWidth;
@@ -99,6 +101,7 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
       generalParameters = BaselineCorrectionParameters.getBaselineCorrectionParameters();
     }
     // Get common parameters.
+    engine = generalParameters.getParameter(BaselineCorrectionParameters.ENGINE).getValue();
     rEgineType =
         generalParameters.getParameter(BaselineCorrectionParameters.RENGINE_TYPE).getValue();
     suffix = generalParameters.getParameter(BaselineCorrectionParameters.SUFFIX).getValue();
@@ -109,11 +112,14 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     msLevel = generalParameters.getParameter(BaselineCorrectionParameters.MS_LEVEL).getValue();
   }
 
-  public final RawDataFile correctDatafile(final RSessionWrapper rSession,
+  /**
+   * @param rSession the R session or null to compute the baselines natively in Java
+   */
+  public final RawDataFile correctDatafile(@Nullable final RSessionWrapper rSession,
       final RawDataFile dataFile, final ParameterSet parameters,
       final ParameterSet commonParameters, @Nullable MemoryMapStorage storage) throws IOException, RSessionWrapperException {
 
-    if (isAborted(dataFile) || !rSession.isSessionRunning())
+    if (isAborted(dataFile) || (rSession != null && !rSession.isSessionRunning()))
       return null;
     // Get very last information from root module setup
     // this.setGeneralParameters(MZmineCore.getConfiguration().getModuleParameters(BaselineCorrectionModule.class));
@@ -251,11 +257,7 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     // Calculate baselines: done in-place, i.e. overwrite chromatograms to
     // save memory.
     logger.finest("Calculating baselines.");
-    for (int binIndex = 0; !isAborted(origDataFile) && binIndex < numBins; binIndex++) {
-      baseChrom[binIndex] =
-          computeBaseline(rSession, origDataFile, baseChrom[binIndex], parameters);
-      progressMap.get(origDataFile)[0]++;
-    }
+    computeBaselines(rSession, origDataFile, baseChrom, parameters, false);
 
     // Subtract baselines.
     logger.finest("Subtracting baselines.");
@@ -302,22 +304,7 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     // Calculate baselines: done in-place, i.e. overwrite chromatograms to
     // save memory.
     logger.finest("Calculating baselines.");
-    for (int binIndex = 0; !isAborted(origDataFile) && binIndex < numBins; binIndex++) {
-
-      // Calculate baseline.
-      // final double[] baseline = asymBaseline(baseChrom[binIndex]);
-      final double[] baseline =
-          computeBaseline(rSession, origDataFile, baseChrom[binIndex], parameters);
-
-      // Normalize the baseline w.r.t. chromatogram (TIC).
-      for (int scanIndex = 0; !isAborted(origDataFile) && scanIndex < numScans; scanIndex++) {
-        final double bc = baseChrom[binIndex][scanIndex];
-        if (bc != 0.0) {
-          baseChrom[binIndex][scanIndex] = baseline[scanIndex] / bc;
-        }
-      }
-      progressMap.get(origDataFile)[0]++;
-    }
+    computeBaselines(rSession, origDataFile, baseChrom, parameters, true);
 
     // Subtract baselines.
     logger.finest("Subtracting baselines.");
@@ -339,6 +326,60 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
 
   }
 
+  /**
+   * Computes the baselines of all m/z bins and replaces the chromatograms by their baselines.
+   * Natively computed baselines are processed in parallel, R sessions are used sequentially.
+   *
+   * @param rSession      the R session or null to compute the baselines natively in Java
+   * @param chromatograms the chromatograms as double[number of bins][number of scans]. Replaced by
+   *                      the baselines.
+   * @param parameters    parameters specific to the actual method for baseline computing.
+   * @param normalize     normalize the baselines w.r.t. the chromatograms (TIC)
+   * @throws RSessionWrapperException
+   */
+  private void computeBaselines(@Nullable final RSessionWrapper rSession,
+      final RawDataFile origDataFile, final double[][] chromatograms,
+      final ParameterSet parameters, final boolean normalize) throws RSessionWrapperException {
+
+    if (rSession == null) {
+      IntStream.range(0, chromatograms.length).parallel().forEach(binIndex -> {
+        if (!isAborted(origDataFile)) {
+          final double[] chromatogram = chromatograms[binIndex];
+          chromatograms[binIndex] = applyBaseline(chromatogram,
+              computeBaseline(chromatogram, parameters), normalize);
+          incrementProgress(origDataFile);
+        }
+      });
+      return;
+    }
+
+    for (int binIndex = 0; !isAborted(origDataFile) && binIndex < chromatograms.length;
+        binIndex++) {
+      final double[] chromatogram = chromatograms[binIndex];
+      chromatograms[binIndex] = applyBaseline(chromatogram,
+          computeBaseline(rSession, origDataFile, chromatogram, parameters), normalize);
+      incrementProgress(origDataFile);
+    }
+  }
+
+  /**
+   * @param normalize normalize the baseline w.r.t. the chromatogram (TIC)
+   * @return the baseline or the normalized baseline (stored in the chromatogram array)
+   */
+  private static double[] applyBaseline(final double[] chromatogram, final double[] baseline,
+      final boolean normalize) {
+    if (!normalize) {
+      return baseline;
+    }
+    for (int scanIndex = 0; scanIndex < chromatogram.length; scanIndex++) {
+      final double bc = chromatogram[scanIndex];
+      if (bc != 0.0) {
+        chromatogram[scanIndex] = baseline[scanIndex] / bc;
+      }
+    }
+    return chromatogram;
+  }
+
   /**
    * Constructs base peak (max) chromatograms - one for each m/z bin.
    *
@@ -497,6 +538,20 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     progressMap.put(origDataFile, new int[] {0, 0, 0});
   }
 
+  /**
+   * Increments the progress, may be called from multiple threads.
+   *
+   * @param origDataFile dataFile of concern.
+   */
+  private void incrementProgress(final RawDataFile origDataFile) {
+    final int[] progress = progressMap.get(origDataFile);
+    if (progress != null) {
+      synchronized (progress) {
+        progress[0]++;
+      }
+    }
+  }
+
   /**
    * Getting progress.
    *
@@ -544,6 +599,10 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     progressMap.remove(origDataFile);
   }
 
+  public BaselineEngine getEngine() {
+    return this.engine;
+  }
+
   public REngineType getRengineType() {
     return this.rEgineType;
   }
@@ -49,4 +49,13 @@ public interface BaselineProvider {
   public double[] computeBaseline(final RSessionWrapper rSession, final RawDataFile origDataFile,
       final double[] chromatogram, ParameterSet parameters) throws RSessionWrapperException;
 
+  /**
+   * Returns a baseline for correcting the given chromatogram, computed natively in Java. Has to be
+   * thread safe, baselines of multiple m/z bins are computed in parallel.
+   *
+   * @param chromatogram the chromatogram (one value per scan), must not be modified
+   * @return the baseline (one value per scan)
+   */
+  public double[] computeBaseline(final double[] chromatogram, ParameterSet parameters);
+
 }
@@ -25,6 +25,7 @@
 
 package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
 
+import java.util.Arrays;
 import org.jetbrains.annotations.NotNull;
 
 import io.github.mzmine.datamodel.RawDataFile;
@@ -35,12 +36,17 @@ import io.github.mzmine.util.R.RSessionWrapperException;
 
 /**
  * @description Asymmetric baseline corrector. Estimates a trend based on asymmetric least squares.
- *              Uses "asysm" feature from "ptw" R-package
+ *              Natively implemented or uses "asysm" feature from "ptw" R-package
  *              (http://cran.r-project.org/web/packages/ptw/ptw.pdf).
  * 
  */
 public class AsymmetryCorrector extends BaselineCorrector {
 
+  /**
+   * Maximum number of iterations, same as in "ptw".
+   */
+  private static final int MAX_ITERATIONS = 25;
+
   @Override
   public String[] getRequiredRPackages() {
     return new String[] { /* "rJava", "Rserve", */"ptw"};
@@ -81,6 +87,48 @@ public class AsymmetryCorrector extends BaselineCorrector {
     return baseline;
   }
 
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, final ParameterSet parameters) {
+    final double smoothing =
+        parameters.getParameter(AsymmetryCorrectorParameters.SMOOTHING).getValue();
+    final double asymmetry =
+        parameters.getParameter(AsymmetryCorrectorParameters.ASYMMETRY).getValue();
+    return asysm(chromatogram, smoothing, asymmetry);
+  }
+
+  /**
+   * Asymmetric least squares baseline, equivalent to "asysm" of "ptw". Iteratively fits a Whittaker
+   * smoother with second order differences, points above the trend get the weight p, points below
+   * 1 - p.
+   *
+   * @param y         the chromatogram
+   * @param lambda    the smoothing factor
+   * @param asymmetry the weight p for points above the trend
+   * @return the baseline
+   */
+  public static double[] asysm(final double[] y, final double lambda, final double asymmetry) {
+    final int n = y.length;
+    final double[] weights = new double[n];
+    Arrays.fill(weights, 1d);
+
+    double[] z = y;
+    for (int it = 0; it < MAX_ITERATIONS; it++) {
+      z = BaselineMath.whittaker(y, weights, lambda);
+      boolean changed = false;
+      for (int i = 0; i < n; i++) {
+        final double w = y[i] > z[i] ? asymmetry : 1d - asymmetry;
+        if (w != weights[i]) {
+          weights[i] = w;
+          changed = true;
+        }
+      }
+      if (!changed) {
+        break;
+      }
+    }
+    return z;
+  }
+
   @Override
   public @NotNull String getName() {
     return "Asymmetric baseline corrector";
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
+
+import java.util.Arrays;
+
+/**
+ * Primitive array functions shared by the native baseline correctors. Windows are centered and
+ * truncated at the borders of the data.
+ */
+final class BaselineMath {
+
+  private BaselineMath() {
+  }
+
+  /**
+   * @param halfWidth the window covers [i - halfWidth, i + halfWidth]
+   * @return the minimum of each window, O(n)
+   */
+  static double[] movingMin(final double[] y, final int halfWidth) {
+    return movingExtreme(y, halfWidth, false);
+  }
+
+  /**
+   * @param halfWidth the window covers [i - halfWidth, i + halfWidth]
+   * @return the maximum of each window, O(n)
+   */
+  static double[] movingMax(final double[] y, final int halfWidth) {
+    return movingExtreme(y, halfWidth, true);
+  }
+
+  private static double[] movingExtreme(final double[] y, final int halfWidth, final boolean max) {
+    final int n = y.length;
+    final double[] result = new double[n];
+    // monotonic queue of indices, each index is added once
+    final int[] queue = new int[n];
+    int head = 0;
+    int tail = 0;
+    int next = 0;
+    for (int i = 0; i < n; i++) {
+      final int upper = Math.min(n - 1, i + halfWidth);
+      for (; next <= upper; next++) {
+        final double value = y[next];
+        while (tail > head && (max ? y[queue[tail - 1]] <= value : y[queue[tail - 1]] >= value)) {
+          tail--;
+        }
+        queue[tail++] = next;
+      }
+      final int lower = i - halfWidth;
+      while (queue[head] < lower) {
+        head++;
+      }
+      result[i] = y[queue[head]];
+    }
+    return result;
+  }
+
+  /**
+   * @param halfWidth the window covers [i - halfWidth, i + halfWidth]
+   * @return the mean of each window, O(n)
+   */
+  static double[] movingMean(final double[] y, final int halfWidth) {
+    final int n = y.length;
+    final double[] cumulative = new double[n + 1];
+    for (int i = 0; i < n; i++) {
+      cumulative[i + 1] = cumulative[i] + y[i];
+    }
+    final double[] result = new double[n];
+    for (int i = 0; i < n; i++) {
+      final int lower = Math.max(0, i - halfWidth);
+      final int upper = Math.min(n - 1, i + halfWidth);
+      result[i] = (cumulative[upper + 1] - cumulative[lower]) / (upper - lower + 1);
+    }
+    return result;
+  }
+
+  /**
+   * @param halfWidth the window covers [i - halfWidth, i + halfWidth]
+   * @return the median of each window, O(n * halfWidth)
+   */
+  static double[] movingMedian(final double[] y, final int halfWidth) {
+    final int n = y.length;
+    final double[] result = new double[n];
+    if (n == 0) {
+      return result;
+    }
+    // sorted window, updated by removing the leaving and inserting the entering value
+    final double[] window = new double[Math.min(n, 2 * halfWidth + 1)];
+    int size = 0;
+    int next = 0;
+    for (int i = 0; i < n; i++) {
+      final int lower = i - halfWidth;
+      if (lower > 0) {
+        size = remove(window, size, y[lower - 1]);
+      }
+      final int upper = Math.min(n - 1, i + halfWidth);
+      for (; next <= upper; next++) {
+        size = insert(window, size, y[next]);
+      }
+      result[i] = (size & 1) == 1 ? window[size / 2]
+          : (window[size / 2 - 1] + window[size / 2]) / 2d;
+    }
+    return result;
+  }
+
+  private static int insert(final double[] sorted, final int size, final double value) {
+    int pos = Arrays.binarySearch(sorted, 0, size, value);
+    if (pos < 0) {
+      pos = -pos - 1;
+    }
+    System.arraycopy(sorted, pos, sorted, pos + 1, size - pos);
+    sorted[pos] = value;
+    return size + 1;
+  }
+
+  private static int remove(final double[] sorted, final int size, final double value) {
+    final int pos = Arrays.binarySearch(sorted, 0, size, value);
+    System.arraycopy(sorted, pos + 1, sorted, pos, size - pos - 1);
+    return size - 1;
+  }
+
+  /**
+   * Linear interpolation through the support points with constant extrapolation at both ends.
+   *
+   * @param x   ascending x values of the support points
+   * @param y   values of the support points
+   * @param n   number of points to interpolate, x = 0, ..., n-1
+   * @param num number of support points
+   */
+  static double[] interpolateLinear(final double[] x, final double[] y, final int num,
+      final int n) {
+    final double[] result = new double[n];
+    if (num == 0) {
+      return result;
+    }
+    int k = 0;
+    for (int i = 0; i < n; i++) {
+      if (i <= x[0]) {
+        result[i] = y[0];
+      } else if (i >= x[num - 1]) {
+        result[i] = y[num - 1];
+      } else {
+        while (x[k + 1] < i) {
+          k++;
+        }
+        final double dx = x[k + 1] - x[k];
+        result[i] = dx == 0 ? y[k] : y[k] + (y[k + 1] - y[k]) * (i - x[k]) / dx;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Weighted Whittaker smoother with a second order difference penalty. Solves (W + lambda D'D) z
+   * = W y with a banded Cholesky decomposition in O(n).
+   *
+   * @param y       the values
+   * @param weights non-negative weights, at least three weights should be > 0
+   * @param lambda  the smoothing factor
+   * @return the smoothed values
+   */
+  static double[] whittaker(final double[] y, final double[] weights, final double lambda) {
+    final int n = y.length;
+    if (n < 3) {
+      return Arrays.copyOf(y, n);
+    }
+    // A = W + lambda D'D is symmetric and pentadiagonal: diagonal a0, first and second
+    // off-diagonals a1[i] = A[i][i-1], a2[i] = A[i][i-2]
+    final double[] a0 = new double[n];
+    final double[] a1 = new double[n];
+    final double[] a2 = new double[n];
+    for (int k = 0; k < n - 2; k++) {
+      // difference row k: (1, -2, 1) at k, k+1, k+2
+      a0[k] += lambda;
+      a0[k + 1] += 4 * lambda;
+      a0[k + 2] += lambda;
+      a1[k + 1] += -2 * lambda;
+      a1[k + 2] += -2 * lambda;
+      a2[k + 2] += lambda;
+    }
+    final double[] b = new double[n];
+    for (int i = 0; i < n; i++) {
+      a0[i] += weights[i];
+      b[i] = weights[i] * y[i];
+    }
+
+    // Cholesky A = L L', L has the diagonal l0 and the sub-diagonals l1 and l2
+    final double[] l0 = new double[n];
+    final double[] l1 = new double[n];
+    final double[] l2 = new double[n];
+    for (int i = 0; i < n; i++) {
+      l2[i] = i >= 2 ? a2[i] / l0[i - 2] : 0d;
+      l1[i] = i >= 1 ? (a1[i] - (i >= 2 ? l2[i] * l1[i - 1] : 0d)) / l0[i - 1] : 0d;
+      l0[i] = Math.sqrt(Math.max(a0[i] - l1[i] * l1[i] - l2[i] * l2[i], Double.MIN_NORMAL));
+    }
+    // forward substitution L v = b
+    final double[] v = new double[n];
+    for (int i = 0; i < n; i++) {
+      double sum = b[i];
+      if (i >= 1) {
+        sum -= l1[i] * v[i - 1];
+      }
+      if (i >= 2) {
+        sum -= l2[i] * v[i - 2];
+      }
+      v[i] = sum / l0[i];
+    }
+    // back substitution L' z = v
+    final double[] z = new double[n];
+    for (int i = n - 1; i >= 0; i--) {
+      double sum = v[i];
+      if (i + 1 < n) {
+        sum -= l1[i + 1] * z[i + 1];
+      }
+      if (i + 2 < n) {
+        sum -= l2[i + 2] * z[i + 2];
+      }
+      z[i] = sum / l0[i];
+    }
+    return z;
+  }
+}
@@ -25,6 +25,8 @@
 
 package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
 
+import java.util.Arrays;
+import org.apache.commons.math3.analysis.interpolation.LoessInterpolator;
 import org.jetbrains.annotations.NotNull;
 
 import io.github.mzmine.datamodel.RawDataFile;
@@ -34,8 +36,8 @@ import io.github.mzmine.util.R.RSessionWrapper;
 import io.github.mzmine.util.R.RSessionWrapperException;
 
 /**
- * @description Local Minima + LOESS (smoothed low-percentile intensity) baseline corrector. Uses
- *              "bslnoff" feature from "PROcess" R/Bioconductor package
+ * @description Local Minima + LOESS (smoothed low-percentile intensity) baseline corrector.
+ *              Natively implemented or uses "bslnoff" feature from "PROcess" R/Bioconductor package
  *              (http://bioconductor.org/packages/release/ bioc/manuals/PROcess/man/PROcess.pdf).
  * 
  */
@@ -86,6 +88,102 @@ public class LocMinLoessCorrector extends BaselineCorrector {
     return baseline;
   }
 
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, final ParameterSet parameters) {
+    final String method = parameters.getParameter(LocMinLoessCorrectorParameters.METHOD).getValue();
+    final double bw = parameters.getParameter(LocMinLoessCorrectorParameters.BW).getValue();
+    final int breaks = parameters.getParameter(LocMinLoessCorrectorParameters.BREAKS).getValue();
+    final int breaksWidth =
+        parameters.getParameter(LocMinLoessCorrectorParameters.BREAK_WIDTH).getValue();
+    final double qntl = parameters.getParameter(LocMinLoessCorrectorParameters.QNTL).getValue();
+
+    final int numBreaks = breaksWidth > 0 ? (int) Math.round(
+        (double) (chromatogram.length - 1) / (double) breaksWidth) : breaks;
+    return locMinLoess(chromatogram, method.equals("loess"), bw, numBreaks, qntl);
+  }
+
+  /**
+   * Local minima + LOESS baseline as in "bslnoff" of "PROcess". The scan range is cut into equally
+   * sized breaks. Each break contributes one support point: the local minimum (qntl = 0) or the
+   * qntl quantile of the intensities at the median scan. The support points are smoothed by a
+   * local linear LOESS or linearly interpolated. The baseline never exceeds the chromatogram.
+   *
+   * @param y      the chromatogram
+   * @param loess  smooth the support points with LOESS, otherwise linear interpolation
+   * @param bw     the LOESS bandwidth (span)
+   * @param breaks the number of breaks
+   * @param qntl   0 for local minima, otherwise the quantile (0-1]
+   * @return the baseline
+   */
+  public static double[] locMinLoess(final double[] y, final boolean loess, final double bw,
+      final int breaks, final double qntl) {
+    final int n = y.length;
+    if (n < 2) {
+      return y.clone();
+    }
+    final int numBreaks = Math.max(1, Math.min(breaks, n));
+    // breaks are right closed (as cut in R)
+    final double breakWidth = (n - 1d) / numBreaks;
+    final int[] starts = new int[numBreaks + 1];
+    Arrays.fill(starts, n);
+    for (int i = n - 1; i >= 0; i--) {
+      final int b = Math.min(numBreaks - 1, Math.max(0, (int) Math.ceil(i / breakWidth) - 1));
+      starts[b] = i;
+    }
+    for (int b = numBreaks - 1; b >= 0; b--) {
+      starts[b] = Math.min(starts[b], starts[b + 1]);
+    }
+
+    final double[] knotX = new double[numBreaks];
+    final double[] knotY = new double[numBreaks];
+    int numKnots = 0;
+    for (int b = 0; b < numBreaks; b++) {
+      final int from = starts[b];
+      final int to = starts[b + 1];
+      if (from >= to) {
+        continue;
+      }
+      if (qntl <= 0) {
+        int minIndex = from;
+        for (int i = from + 1; i < to; i++) {
+          if (y[i] < y[minIndex]) {
+            minIndex = i;
+          }
+        }
+        knotX[numKnots] = minIndex;
+        knotY[numKnots] = y[minIndex];
+      } else {
+        knotX[numKnots] = (from + to - 1) / 2d;
+        knotY[numKnots] = quantile(Arrays.copyOfRange(y, from, to), qntl);
+      }
+      numKnots++;
+    }
+
+    double[] smoothed = knotY;
+    if (loess && numKnots >= 3) {
+      // LOESS needs at least two points in the bandwidth
+      final double span = Math.min(1d, Math.max(bw, 2d / numKnots));
+      smoothed = new LoessInterpolator(span, 0).smooth(Arrays.copyOf(knotX, numKnots),
+          Arrays.copyOf(knotY, numKnots));
+    }
+    final double[] baseline = BaselineMath.interpolateLinear(knotX, smoothed, numKnots, n);
+    for (int i = 0; i < n; i++) {
+      baseline[i] = Math.min(baseline[i], y[i]);
+    }
+    return baseline;
+  }
+
+  /**
+   * Quantile with linear interpolation (type 7, default in R).
+   */
+  private static double quantile(final double[] values, final double probability) {
+    Arrays.sort(values);
+    final double h = (values.length - 1) * probability;
+    final int lower = (int) Math.floor(h);
+    final int upper = Math.min(values.length - 1, lower + 1);
+    return values[lower] + (h - lower) * (values[upper] - values[lower]);
+  }
+
   @Override
   public @NotNull String getName() {
     return "Local minima + LOESS baseline corrector";
@@ -36,8 +36,8 @@ import io.github.mzmine.util.R.RSessionWrapperException;
 /**
  * @description Feature Detection baseline corrector. Feature detection is done in several steps
  *              sorting out real peaks through different criteria. Peaks are removed from spectra
- *              and minimums and medians are used to smooth the remaining parts of the spectra. Uses
- *              "peakDetection" feature from "baseline" R-package
+ *              and minimums and medians are used to smooth the remaining parts of the spectra.
+ *              Natively implemented or uses "peakDetection" feature from "baseline" R-package
  *              (http://cran.r-project.org/web/packages/baseline/baseline.pdf). (A translation from
  *              Kevin R. Coombes et al.'s MATLAB code for detecting peaks and removing baselines).
  * 
@@ -97,6 +97,95 @@ public class PeakDetectionCorrector extends BaselineCorrector {
     return baseline;
   }
 
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, final ParameterSet parameters) {
+    final int left = parameters.getParameter(PeakDetectionCorrectorParameters.LEFT).getValue();
+    final int right = parameters.getParameter(PeakDetectionCorrectorParameters.RIGHT).getValue();
+    final int lwin = parameters.getParameter(PeakDetectionCorrectorParameters.LWIN).getValue();
+    final int rwin = parameters.getParameter(PeakDetectionCorrectorParameters.RWIN).getValue();
+    final double snminimum =
+        parameters.getParameter(PeakDetectionCorrectorParameters.SNMINIMUM).getValue();
+    final double mono = parameters.getParameter(PeakDetectionCorrectorParameters.MONO).getValue();
+    final double multiplier =
+        parameters.getParameter(PeakDetectionCorrectorParameters.MULTIPLIER).getValue();
+    return peakDetection(chromatogram, left, right, lwin, rwin, snminimum, mono, multiplier);
+  }
+
+  /**
+   * Peak detection baseline following the idea of "peakDetection" in "baseline": peaks are removed
+   * from the chromatogram and the remaining parts are smoothed by minimums and medians.
+   * <ol>
+   *   <li>Apexes are maxima within +-left scans. A peak extends to the next local minimum on each
+   *   side, at most right scans.</li>
+   *   <li>Peaks with a relative height (apex - higher bounding minimum) / apex of at least snminimum
+   *   are removed and linearly interpolated.</li>
+   *   <li>The result is smoothed by a moving minimum (+-lwin scans) and a moving median (+-rwin
+   *   scans).</li>
+   *   <li>If mono > 0, the baseline is forced to be monotonically decreasing.</li>
+   * </ol>
+   * All window sizes are scaled by the multiplier.
+   *
+   * @return the baseline
+   */
+  public static double[] peakDetection(final double[] y, final int left, final int right,
+      final int lwin, final int rwin, final double snminimum, final double mono,
+      final double multiplier) {
+    final int n = y.length;
+    if (n < 3) {
+      return y.clone();
+    }
+    final int apexWidth = Math.max(1, (int) Math.round(left * multiplier));
+    final int maxPeakWidth = Math.max(1, (int) Math.round(right * multiplier));
+    final int minWidth = Math.max(0, (int) Math.round(lwin * multiplier));
+    final int medianWidth = Math.max(0, (int) Math.round(rwin * multiplier));
+
+    // find and remove peaks
+    final double[] maxima = BaselineMath.movingMax(y, apexWidth);
+    final boolean[] removed = new boolean[n];
+    for (int i = 1; i < n - 1; i++) {
+      if (y[i] <= 0 || y[i] < maxima[i] || y[i] <= y[i - 1]) {
+        continue;
+      }
+      int start = i;
+      while (start > 0 && i - start < maxPeakWidth && y[start - 1] <= y[start]) {
+        start--;
+      }
+      int end = i;
+      while (end < n - 1 && end - i < maxPeakWidth && y[end + 1] <= y[end]) {
+        end++;
+      }
+      final double height = y[i] - Math.max(y[start], y[end]);
+      if (height > 0 && height / y[i] >= snminimum) {
+        for (int j = start + 1; j < end; j++) {
+          removed[j] = true;
+        }
+      }
+    }
+
+    final double[] supportX = new double[n];
+    final double[] supportY = new double[n];
+    int numSupport = 0;
+    for (int i = 0; i < n; i++) {
+      if (!removed[i]) {
+        supportX[numSupport] = i;
+        supportY[numSupport] = y[i];
+        numSupport++;
+      }
+    }
+    double[] baseline = BaselineMath.interpolateLinear(supportX, supportY, numSupport, n);
+
+    // smooth by minimums and medians
+    baseline = BaselineMath.movingMin(baseline, minWidth);
+    baseline = BaselineMath.movingMedian(baseline, medianWidth);
+
+    if (mono > 0) {
+      for (int i = 1; i < n; i++) {
+        baseline[i] = Math.min(baseline[i], baseline[i - 1]);
+      }
+    }
+    return baseline;
+  }
+
   @Override
   public @NotNull String getName() {
     return "PeakDetection baseline corrector";
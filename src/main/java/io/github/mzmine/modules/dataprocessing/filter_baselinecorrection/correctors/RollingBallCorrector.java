@@ -35,7 +35,7 @@ import io.github.mzmine.util.R.RSessionWrapperException;
 
 /**
  * @description Rolling Ball baseline corrector. Estimates a trend based on Rolling Ball algorithm.
- *              Uses "rollingBall" feature from "baseline" R-package
+ *              Natively implemented or uses "rollingBall" feature from "baseline" R-package
  *              (http://cran.r-project.org/web/packages/baseline/baseline.pdf). (Ideas from Rolling
  *              Ball algorithm for X-ray spectra by M.A.Kneen and H.J. Annegarn. Variable window
  *              width has been left out).
@@ -89,6 +89,32 @@ public class RollingBallCorrector extends BaselineCorrector {
     return baseline;
   }
 
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, final ParameterSet parameters) {
+    final int wm = parameters.getParameter(RollingBallCorrectorParameters.MIN_MAX_WIDTH).getValue();
+    final int ws = parameters.getParameter(RollingBallCorrectorParameters.SMOOTHING).getValue();
+    return rollingBall(chromatogram, wm, ws);
+  }
+
+  /**
+   * Rolling ball baseline as in "rollingBall" of "baseline": moving minimum, moving maximum of the
+   * minima (both with window width 2 * wm + 1) and moving average (window width 2 * ws + 1). At the
+   * borders, the windows are truncated to the data.
+   *
+   * @param y  the chromatogram
+   * @param wm half width of the min/max window
+   * @param ws half width of the smoothing window
+   * @return the baseline
+   */
+  public static double[] rollingBall(final double[] y, final int wm, final int ws) {
+    if (y.length == 0) {
+      return new double[0];
+    }
+    final double[] minima = BaselineMath.movingMin(y, wm);
+    final double[] maxima = BaselineMath.movingMax(minima, wm);
+    return BaselineMath.movingMean(maxima, ws);
+  }
+
   @Override
   public @NotNull String getName() {
     return "RollingBall baseline corrector";
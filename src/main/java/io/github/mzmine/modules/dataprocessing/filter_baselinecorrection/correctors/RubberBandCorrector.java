@@ -25,6 +25,9 @@
 
 package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
 
+import java.util.Arrays;
+import org.apache.commons.math3.analysis.interpolation.SplineInterpolator;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
 import org.jetbrains.annotations.NotNull;
 
 import io.github.mzmine.datamodel.RawDataFile;
@@ -35,8 +38,8 @@ import io.github.mzmine.util.R.RSessionWrapperException;
 
 /**
  * @description Rubber Band baseline corrector. Estimates a trend based on Rubber Band algorithm
- *              (which determines a convex envelope for the spectra - underneath side). Uses
- *              "spc.rubberband" feature from "hyperSpec" R-package
+ *              (which determines a convex envelope for the spectra - underneath side). Natively
+ *              implemented or uses "spc.rubberband" feature from "hyperSpec" R-package
  *              (http://cran.r-project.org/web/packages /hyperSpec/vignettes/baseline.pdf).
  * 
  */
@@ -87,6 +90,150 @@ public class RubberBandCorrector extends BaselineCorrector {
     return baseline;
   }
 
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, final ParameterSet parameters) {
+    final double noise = parameters.getParameter(RubberBandCorrectorParameters.NOISE).getValue();
+    final boolean autoNoise =
+        parameters.getParameter(RubberBandCorrectorParameters.AUTO_NOISE).getValue();
+    final double df = parameters.getParameter(RubberBandCorrectorParameters.DF).getValue();
+    final boolean spline = parameters.getParameter(RubberBandCorrectorParameters.SPLINE).getValue();
+    final double bend =
+        parameters.getParameter(RubberBandCorrectorParameters.BEND_FACTOR).getValue();
+
+    double usedNoise = noise;
+    if (autoNoise) {
+      usedNoise = Double.POSITIVE_INFINITY;
+      for (double v : chromatogram) {
+        usedNoise = Math.min(usedNoise, v);
+      }
+    }
+    return rubberBand(chromatogram, usedNoise, df, spline, bend);
+  }
+
+  /**
+   * Rubber band baseline as in "spc.rubberband" of "hyperSpec". The support points are the points
+   * of the lower convex hull of the chromatogram. A bend (bend * x^2 with x normalized to [0, 1])
+   * is added before and removed after the hull calculation.
+   * <p>
+   * Linear: the baseline linearly connects the support points.<br> Spline: all points less than
+   * noise above the linear baseline are added to the support points. If df > 2, a smoothing with
+   * approximately df degrees of freedom is fitted through the support points (second order
+   * Whittaker smoother instead of the smoothing spline of R), otherwise a natural cubic spline
+   * interpolates the support points.
+   *
+   * @param y      the chromatogram
+   * @param noise  the noise level, only used for splines
+   * @param df     the degrees of freedom of the smoothing, only used for splines
+   * @param spline interpolate the support points with a spline
+   * @param bend   the bend factor, 0 for no bend
+   * @return the baseline
+   */
+  public static double[] rubberBand(final double[] y, final double noise, final double df,
+      final boolean spline, final double bend) {
+    final int n = y.length;
+    if (n < 3) {
+      return y.clone();
+    }
+
+    final double[] bent = new double[n];
+    final double[] bendValues = new double[n];
+    for (int i = 0; i < n; i++) {
+      final double x = i / (n - 1d);
+      bendValues[i] = bend * x * x;
+      bent[i] = y[i] + bendValues[i];
+    }
+
+    // lower convex hull (monotone chain), x values are the indices
+    final int[] hull = new int[n];
+    int numHull = 0;
+    for (int i = 0; i < n; i++) {
+      while (numHull >= 2 && cross(bent, hull[numHull - 2], hull[numHull - 1], i) <= 0) {
+        numHull--;
+      }
+      hull[numHull++] = i;
+    }
+    final double[] hullX = new double[numHull];
+    final double[] hullY = new double[numHull];
+    for (int i = 0; i < numHull; i++) {
+      hullX[i] = hull[i];
+      hullY[i] = bent[hull[i]];
+    }
+    double[] baseline = BaselineMath.interpolateLinear(hullX, hullY, numHull, n);
+
+    if (spline) {
+      final boolean[] support = new boolean[n];
+      for (int i = 0; i < n; i++) {
+        support[i] = bent[i] < baseline[i] + noise;
+      }
+      for (int i = 0; i < numHull; i++) {
+        support[hull[i]] = true;
+      }
+      final double[] supportX = new double[n];
+      final double[] supportY = new double[n];
+      final double[] weights = new double[n];
+      int numSupport = 0;
+      for (int i = 0; i < n; i++) {
+        if (support[i]) {
+          supportX[numSupport] = i;
+          supportY[numSupport] = bent[i];
+          numSupport++;
+          weights[i] = 1d;
+        }
+      }
+
+      if (df > 2) {
+        baseline = BaselineMath.whittaker(bent, weights, lambdaForDegreesOfFreedom(df, n));
+      } else if (numSupport >= 3) {
+        final PolynomialSplineFunction function = new SplineInterpolator().interpolate(
+            Arrays.copyOf(supportX, numSupport), Arrays.copyOf(supportY, numSupport));
+        for (int i = 0; i < n; i++) {
+          baseline[i] = function.value(i);
+        }
+      }
+    }
+
+    for (int i = 0; i < n; i++) {
+      baseline[i] -= bendValues[i];
+    }
+    return baseline;
+  }
+
+  /**
+   * @return > 0 if a, b, c is a counter-clockwise turn
+   */
+  private static double cross(final double[] y, final int a, final int b, final int c) {
+    return (double) (b - a) * (y[c] - y[a]) - (y[b] - y[a]) * (double) (c - a);
+  }
+
+  /**
+   * The degrees of freedom of a second order Whittaker smoother with n equidistant points are the
+   * trace of its hat matrix, sum(1 / (1 + lambda * mu_k)) with the eigenvalues mu_k = (2 - 2 cos(pi
+   * k / n))^2 of the penalty.
+   *
+   * @return the smoothing factor lambda for the degrees of freedom
+   */
+  private static double lambdaForDegreesOfFreedom(final double df, final int n) {
+    final double target = Math.min(Math.max(df, 2d), n);
+    double logLower = -10;
+    double logUpper = 20;
+    for (int it = 0; it < 60; it++) {
+      final double logLambda = (logLower + logUpper) / 2;
+      final double lambda = Math.pow(10, logLambda);
+      double trace = 0;
+      for (int k = 0; k < n; k++) {
+        final double mu = 2 - 2 * Math.cos(Math.PI * k / n);
+        trace += 1d / (1d + lambda * mu * mu);
+      }
+      // more smoothing - less degrees of freedom
+      if (trace > target) {
+        logLower = logLambda;
+      } else {
+        logUpper = logLambda;
+      }
+    }
+    return Math.pow(10, (logLower + logUpper) / 2);
+  }
+
   @Override
   public @NotNull String getName() {
     return "RubberBand baseline corrector";
@@ -49,6 +49,7 @@ import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
 import io.github.mzmine.util.FeatureListRowSorter;
 import io.github.mzmine.util.FeatureUtils;
 import io.github.mzmine.util.MemoryMapStorage;
@@ -56,7 +57,6 @@ import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
 import java.time.Instant;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -78,8 +78,10 @@ public class DuplicateFilterTask extends AbstractTask {
   private final ParameterSet parameters;
   private FeatureList filteredPeakList;
   // Counters.
-  private int processedRows;
   private int totalRows;
+  // the current search for duplicates
+  @Nullable
+  private volatile DuplicateRowSweep sweep;
 
   public DuplicateFilterTask(final MZmineProject project, final FeatureList list,
       final ParameterSet params, @Nullable MemoryMapStorage storage,
@@ -92,7 +94,6 @@ public class DuplicateFilterTask extends AbstractTask {
     peakList = list;
     filteredPeakList = null;
     totalRows = 0;
-    processedRows = 0;
   }
 
   @Override
@@ -104,7 +105,9 @@ public class DuplicateFilterTask extends AbstractTask {
   @Override
   public double getFinishedPercentage() {
 
-    return totalRows == 0 ? 0.0 : (double) processedRows / (double) totalRows;
+    final DuplicateRowSweep sweep = this.sweep;
+    return totalRows == 0 || sweep == null ? 0.0
+        : (double) sweep.getProcessedRows() / (double) totalRows;
   }
 
   @Override
@@ -185,7 +188,6 @@ public class DuplicateFilterTask extends AbstractTask {
 
     // filter by average mz and rt
     totalRows = rowCount;
-    processedRows = 0;
     // sort rows
     final int removedDuplicates = switch (mode) {
       case OLD_AVERAGE ->
@@ -233,44 +235,26 @@ public class DuplicateFilterTask extends AbstractTask {
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.Area, SortingDirection.Descending));
 
-    // Loop through all feature list rows
-    int removedDuplicates = 0;
-    for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
-      if (isCanceled()) {
-        return -1;
-      }
-
-      final ModularFeatureListRow firstRow = peakListRows[firstRowIndex];
-
-      if (firstRow != null) {
-        for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
-          }
-
-          final FeatureListRow secondRow = peakListRows[secondRowIndex];
-          if (secondRow != null) {
-            // Compare identifications
-            final boolean sameID =
-                !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
-
-            final boolean sameMZRT = checkSameAverageRTMZ(firstRow, secondRow, mzTolerance,
-                rtTolerance);
-
-            final boolean sameMobility = checkMobility(firstRow, secondRow, mobilityTolerance);
-
-            // Duplicate peaks?
-            if (sameID && sameMZRT && sameMobility) {
-              // second row deleted
-              removedDuplicates++;
-              peakListRows[secondRowIndex] = null;
-            }
-          }
-        }
-      }
-      processedRows++;
+    // each row removes all following rows in its m/z window
+    final double[] mzs = new double[rowCount];
+    final double[] lowerMzs = new double[rowCount];
+    final double[] upperMzs = new double[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      mzs[i] = peakListRows[i].getAverageMZ();
+      setWindow(mzTolerance.getToleranceRange(mzs[i]), i, lowerMzs, upperMzs);
     }
-    return removedDuplicates;
+
+    sweep = new DuplicateRowSweep(mzs, lowerMzs, upperMzs, (first, second) -> {
+      final ModularFeatureListRow firstRow = peakListRows[first];
+      final ModularFeatureListRow secondRow = peakListRows[second];
+      // Compare identifications
+      final boolean sameID = !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
+      return sameID && checkSameAverageRTMZ(firstRow, secondRow, mzTolerance, rtTolerance)
+          && checkMobility(firstRow, secondRow, mobilityTolerance);
+    }, TaskThreadPool.getMaxThreads(), this::isCanceled);
+
+    // second rows are deleted
+    return removeDuplicates(peakListRows, sweep.filterInPriorityOrder());
   }
 
 
@@ -281,64 +265,47 @@ public class DuplicateFilterTask extends AbstractTask {
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.MZ, SortingDirection.Ascending));
 
-    // Loop through all feature list rows
-    int n = 0;
-    for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
-      if (isCanceled()) {
-        return -1;
-      }
-
-      final ModularFeatureListRow firstRow = peakListRows[firstRowIndex];
-
-      if (firstRow != null) {
+    // the m/z of rows only changes when they are merged as first rows, which happens after they
+    // were compared as second rows
+    final double[] mzs = new double[rowCount];
+    final double[] lowerMzs = new double[rowCount];
+    final double[] upperMzs = new double[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      mzs[i] = peakListRows[i].getAverageMZ();
+      setWindow(mzTolerance.getToleranceRange(mzs[i]), i, lowerMzs, upperMzs);
+    }
 
-        final double averageMZ1 = firstRow.getAverageMZ();
-        final Range<Double> mzRange = mzTolerance.getToleranceRange(averageMZ1);
-        double lowerMZ = mzRange.lowerEndpoint();
-        double upperMZ = mzRange.upperEndpoint();
+    sweep = new DuplicateRowSweep(mzs, lowerMzs, upperMzs, new DuplicateRowSweep.RowMatcher() {
+      @Override
+      public boolean isDuplicate(int first, int second) {
+        final ModularFeatureListRow firstRow = peakListRows[first];
+        final ModularFeatureListRow secondRow = peakListRows[second];
+        // Compare identifications
+        final boolean sameID =
+            !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
+        // the RT of the first row changes with merging
+        return sameID && rtTolerance.checkWithinTolerance(firstRow.getAverageRT(),
+            secondRow.getAverageRT()) && checkMobility(firstRow, secondRow, mobilityTolerance);
+      }
 
-        for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
-          }
+      @Override
+      public void onDuplicate(int first, int second) {
+        // create consensus row in new filter
+        // copy all detected features of row2 into row1
+        // to exchange gap-filled against detected
+        // features
+        createConsensusFirstRow(newPeakList, rawFiles, peakListRows[first],
+            peakListRows[second]);
+      }
 
-          final FeatureListRow secondRow = peakListRows[secondRowIndex];
-          if (secondRow != null) {
-            // check mz first to stop loop
-            final double averageMZ2 = secondRow.getAverageMZ();
-            if (averageMZ2 < lowerMZ) {
-              continue;
-            }
-            if (averageMZ2 > upperMZ) {
-              break;
-            }
-
-            // Compare identifications
-            final boolean sameID =
-                !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
-
-            final boolean sameRT = rtTolerance.checkWithinTolerance(firstRow.getAverageRT(),
-                secondRow.getAverageRT());
-
-            final boolean sameMobility = checkMobility(firstRow, secondRow, mobilityTolerance);
-
-            // Duplicate peaks?
-            if (sameID && sameRT && sameMobility) {
-              // create consensus row in new filter
-              // copy all detected features of row2 into row1
-              // to exchange gap-filled against detected
-              // features
-              createConsensusFirstRow(newPeakList, rawFiles, firstRow, secondRow);
-              // second row deleted
-              n++;
-              peakListRows[secondRowIndex] = null;
-            }
-          }
-        }
+      @Override
+      public boolean mergesRows() {
+        return true;
       }
-      processedRows++;
-    }
-    return n;
+    }, TaskThreadPool.getMaxThreads(), this::isCanceled);
+
+    // second rows are deleted
+    return removeDuplicates(peakListRows, sweep.filterInMzOrder());
   }
 
   /**
@@ -353,75 +320,78 @@ public class DuplicateFilterTask extends AbstractTask {
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.MZ, SortingDirection.Ascending));
 
-    // Loop through all feature list rows
-    int n = 0;
-    for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
-      if (isCanceled()) {
-        return -1;
+    // the window of a row spans the m/z of all its features
+    final double[] mzs = new double[rowCount];
+    final double[] lowerMzs = new double[rowCount];
+    final double[] upperMzs = new double[rowCount];
+    final FeatureBounds bounds = new FeatureBounds(rowCount, mzTolerance, rtTolerance);
+    for (int i = 0; i < rowCount; i++) {
+      mzs[i] = peakListRows[i].getAverageMZ();
+      bounds.update(i, peakListRows[i]);
+      lowerMzs[i] = mzTolerance.getToleranceRange(bounds.minMz[i]).lowerEndpoint();
+      upperMzs[i] = mzTolerance.getToleranceRange(bounds.maxMz[i]).upperEndpoint();
+    }
+
+    sweep = new DuplicateRowSweep(mzs, lowerMzs, upperMzs, new DuplicateRowSweep.RowMatcher() {
+      @Override
+      public boolean isDuplicate(int first, int second) {
+        // fast check on the m/z and RT ranges of the features
+        if (!bounds.mayHaveMatchingFeatures(first, second)) {
+          return false;
+        }
+        final ModularFeatureListRow firstRow = peakListRows[first];
+        final ModularFeatureListRow secondRow = peakListRows[second];
+        // Compare identifications
+        final boolean sameID =
+            !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
+        return sameID && checkSameSingleFeatureRTMZ(rawFiles, firstRow, secondRow, mzTolerance,
+            rtTolerance) && checkMobility(firstRow, secondRow, mobilityTolerance);
       }
 
-      final ModularFeatureListRow firstRow = peakListRows[firstRowIndex];
+      @Override
+      public void onDuplicate(int first, int second) {
+        // create consensus row in new filter
+        // copy all detected features of row2 into row1
+        // to exchange gap-filled against detected
+        // features
+        createConsensusFirstRow(newPeakList, rawFiles, peakListRows[first],
+            peakListRows[second]);
+        bounds.update(first, peakListRows[first]);
+      }
 
-      if (firstRow != null) {
+      @Override
+      public boolean mergesRows() {
+        return true;
+      }
+    }, TaskThreadPool.getMaxThreads(), this::isCanceled);
 
-        final List<ModularFeature> firstFeatures = firstRow.getFeatures();
-        double minMZ = Double.MAX_VALUE;
-        double maxMZ = Double.NEGATIVE_INFINITY;
-        for (int i = 0; i < firstFeatures.size(); i++) {
-          Double mz = firstFeatures.get(i).getMZ();
-          if (mz == null) {
-            continue;
-          }
-          if (mz < minMZ) {
-            minMZ = mz;
-          }
-          if (mz > maxMZ) {
-            maxMZ = mz;
-          }
-        }
-        double lowerMZ = mzTolerance.getToleranceRange(minMZ).lowerEndpoint();
-        double upperMZ = mzTolerance.getToleranceRange(maxMZ).upperEndpoint();
+    // second rows are deleted
+    return removeDuplicates(peakListRows, sweep.filterInMzOrder());
+  }
 
-        for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
-          }
+  private static void setWindow(Range<Double> window, int index, double[] lowerMzs,
+      double[] upperMzs) {
+    lowerMzs[index] = window.lowerEndpoint();
+    upperMzs[index] = window.upperEndpoint();
+  }
 
-          final FeatureListRow secondRow = peakListRows[secondRowIndex];
-          if (secondRow != null) {
-            // check mz first to stop loop
-            final double averageMZ2 = secondRow.getAverageMZ();
-            if (averageMZ2 < lowerMZ) {
-              continue;
-            }
-            if (averageMZ2 > upperMZ) {
-              break;
-            }
-
-            // Compare identifications
-            final boolean sameID =
-                !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
-
-            final boolean sameRT = checkSameSingleFeatureRTMZ(rawFiles, firstRow, secondRow,
-                mzTolerance, rtTolerance);
-
-            final boolean sameMobility = checkMobility(firstRow, secondRow, mobilityTolerance);
-
-            // Duplicate peaks?
-            if (sameID && sameRT && sameMobility) {
-              // create consensus row in new filter
-              // copy all detected features of row2 into row1
-              // to exchange gap-filled against detected
-              // features
-              createConsensusFirstRow(newPeakList, rawFiles, firstRow, secondRow);
-              // second row deleted
-              n++;
-              peakListRows[secondRowIndex] = null;
-            }
-          }
-        }
+  /**
+   * Sets all duplicate rows to null
+   *
+   * @param duplicates flags of duplicate rows or null if canceled
+   * @return the number of duplicates or -1 if canceled
+   */
+  private static int removeDuplicates(ModularFeatureListRow[] peakListRows,
+      boolean @Nullable [] duplicates) {
+    if (duplicates == null) {
+      return -1;
+    }
+    int n = 0;
+    for (int i = 0; i < duplicates.length; i++) {
+      if (duplicates[i]) {
+        peakListRows[i] = null;
+        n++;
       }
-      processedRows++;
     }
     return n;
   }
@@ -509,4 +479,76 @@ public class DuplicateFilterTask extends AbstractTask {
         Objects.requireNonNullElse(rowB.getAverageMobility(), 1f));
   }
 
+  /**
+   * The m/z and RT ranges of the features of each row. Two rows can only share a matching
+   * feature if their ranges overlap within the tolerances. The bounds are slightly widened to
+   * stay exact despite rounding.
+   */
+  private static class FeatureBounds {
+
+    private static final double EPSILON = 1E-6;
+    private final MZTolerance mzTolerance;
+    private final RTTolerance rtTolerance;
+    private final double[] minMz;
+    private final double[] maxMz;
+    private final float[] minRt;
+    private final float[] maxRt;
+    // tolerance windows of the ranges
+    private final double[] lowerMz;
+    private final double[] upperMz;
+    private final double[] lowerRt;
+    private final double[] upperRt;
+
+    private FeatureBounds(int rows, MZTolerance mzTolerance, RTTolerance rtTolerance) {
+      this.mzTolerance = mzTolerance;
+      this.rtTolerance = rtTolerance;
+      minMz = new double[rows];
+      maxMz = new double[rows];
+      minRt = new float[rows];
+      maxRt = new float[rows];
+      lowerMz = new double[rows];
+      upperMz = new double[rows];
+      lowerRt = new double[rows];
+      upperRt = new double[rows];
+    }
+
+    private void update(int index, FeatureListRow row) {
+      double minMZ = Double.MAX_VALUE;
+      double maxMZ = Double.NEGATIVE_INFINITY;
+      float minRT = Float.MAX_VALUE;
+      float maxRT = Float.NEGATIVE_INFINITY;
+      for (Feature feature : row.getFeatures()) {
+        final Double mz = feature.getMZ();
+        if (mz != null) {
+          minMZ = Math.min(minMZ, mz);
+          maxMZ = Math.max(maxMZ, mz);
+        }
+        final Float rt = feature.getRT();
+        if (rt != null) {
+          minRT = Math.min(minRT, rt);
+          maxRT = Math.max(maxRT, rt);
+        }
+      }
+      minMz[index] = minMZ;
+      maxMz[index] = maxMZ;
+      minRt[index] = minRT;
+      maxRt[index] = maxRT;
+      if (minMZ > maxMZ || minRT > maxRT) {
+        // no feature can match
+        lowerMz[index] = Double.POSITIVE_INFINITY;
+        upperMz[index] = Double.NEGATIVE_INFINITY;
+        return;
+      }
+      lowerMz[index] = mzTolerance.getToleranceRange(minMZ).lowerEndpoint() - EPSILON;
+      upperMz[index] = mzTolerance.getToleranceRange(maxMZ).upperEndpoint() + EPSILON;
+      lowerRt[index] = rtTolerance.getToleranceRange(minRT).lowerEndpoint() - EPSILON;
+      upperRt[index] = rtTolerance.getToleranceRange(maxRT).upperEndpoint() + EPSILON;
+    }
+
+    private boolean mayHaveMatchingFeatures(int first, int second) {
+      return maxMz[second] >= lowerMz[first] && minMz[second] <= upperMz[first]
+          && maxRt[second] >= lowerRt[first] && minRt[second] <= upperRt[first];
+    }
+  }
+
 }
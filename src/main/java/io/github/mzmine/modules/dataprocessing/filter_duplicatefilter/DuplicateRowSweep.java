@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_duplicatefilter;
+
+import io.github.mzmine.taskcontrol.TaskThreadPool;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Finds duplicate rows by a sweep over the rows sorted by m/z instead of comparing all pairs of
+ * rows. Each row defines an m/z window and can only have duplicates with an m/z in this window.
+ * The sorted rows are split into blocks that cannot share duplicates, which are processed in
+ * parallel.
+ * <p>
+ * Rows are compared in the same order as by comparing all pairs of rows: a row that is not a
+ * duplicate itself marks all following rows as duplicates that match it. This greedy assignment
+ * is kept on purpose, merging transitive chains of matches would change the results.
+ * <p>
+ * Each duplicate is passed to {@link RowMatcher#onDuplicate(int, int)} right after it was found,
+ * before the first row is compared to the next row, like in the loop over all pairs. Matchers that
+ * merge rows into shared state process the blocks one after another on the calling thread.
+ */
+public class DuplicateRowSweep {
+
+  private final double[] mz;
+  private final double[] lower;
+  private final double[] upper;
+  private final RowMatcher matcher;
+  private final int threads;
+  private final BooleanSupplier isCanceled;
+  private final AtomicInteger processedRows = new AtomicInteger(0);
+
+  /**
+   * @param mz         m/z of each row
+   * @param lower      lower m/z of the window of each row
+   * @param upper      upper m/z of the window of each row
+   * @param matcher    compares two rows. Rows of different blocks are compared concurrently,
+   *                   unless the matcher merges rows.
+   * @param threads    number of threads for the blocks
+   * @param isCanceled stops the sweep if true
+   */
+  public DuplicateRowSweep(double @NotNull [] mz, double @NotNull [] lower,
+      double @NotNull [] upper, @NotNull RowMatcher matcher, int threads,
+      @NotNull BooleanSupplier isCanceled) {
+    if (mz.length != lower.length || mz.length != upper.length) {
+      throw new IllegalArgumentException("All arrays need the same length");
+    }
+    this.mz = mz;
+    this.lower = lower;
+    this.upper = upper;
+    this.matcher = matcher;
+    this.threads = threads;
+    this.isCanceled = isCanceled;
+  }
+
+  /**
+   * Rows are given in priority order (any m/z order). Each row that is not a duplicate itself
+   * marks all following rows as duplicates that match. Same as comparing all pairs of rows in
+   * this order.
+   *
+   * @return the duplicate flag for each row or null if canceled
+   */
+  public boolean @Nullable [] filterInPriorityOrder() {
+    return filter(false);
+  }
+
+  /**
+   * Rows are given sorted by ascending m/z and are only compared with following rows. The loop
+   * over following rows stops at the first m/z above the window, rows below the window are
+   * skipped. Same as comparing all pairs of rows in this order.
+   *
+   * @return the duplicate flag for each row or null if canceled
+   */
+  public boolean @Nullable [] filterInMzOrder() {
+    return filter(true);
+  }
+
+  private boolean @Nullable [] filter(boolean mzOrder) {
+    final int n = mz.length;
+    final boolean[] duplicates = new boolean[n];
+    // positions sorted by m/z, stable for equal values
+    final int[] order = mzOrder ? IntStream.range(0, n).toArray()
+        : IntStream.range(0, n).boxed().sorted(Comparator.comparingDouble(i -> mz[i]))
+            .mapToInt(Integer::intValue).toArray();
+    final List<int[]> blocks = findBlocks(mz, lower, upper, order);
+
+    final Consumer<int[]> sweep = mzOrder ? block -> sweepMzOrderedBlock(block, duplicates)
+        : block -> sweepPriorityBlock(block, duplicates);
+    // merging changes shared state like the feature list
+    if (threads <= 1 || blocks.size() <= 1 || matcher.mergesRows()) {
+      blocks.forEach(sweep);
+    } else {
+      try {
+        TaskThreadPool.invoke(threads, () -> {
+          blocks.parallelStream().forEach(sweep);
+          return null;
+        });
+      } catch (InterruptedException | ExecutionException e) {
+        throw new IllegalStateException("Error during duplicate search: " + e.getMessage(), e);
+      }
+    }
+    return isCanceled.getAsBoolean() ? null : duplicates;
+  }
+
+  /**
+   * Splits the rows into blocks of consecutive m/z. Rows of different blocks cannot be
+   * duplicates, because no window reaches into another block.
+   *
+   * @param order row indices sorted by m/z
+   * @return the row indices of each block in m/z order
+   */
+  static List<int[]> findBlocks(double[] mz, double[] lower, double[] upper, int[] order) {
+    final int n = order.length;
+    final List<int[]> blocks = new ArrayList<>();
+    if (n == 0) {
+      return blocks;
+    }
+    // the min lower m/z of all following rows
+    final double[] suffixMinLower = new double[n];
+    suffixMinLower[n - 1] = lower[order[n - 1]];
+    for (int p = n - 2; p >= 0; p--) {
+      suffixMinLower[p] = Math.min(suffixMinLower[p + 1], lower[order[p]]);
+    }
+
+    int start = 0;
+    double prefixMaxUpper = Double.NEGATIVE_INFINITY;
+    for (int p = 0; p < n - 1; p++) {
+      prefixMaxUpper = Math.max(prefixMaxUpper, upper[order[p]]);
+      // no window of a previous row reaches a following row and vice versa
+      if (prefixMaxUpper < mz[order[p + 1]] && suffixMinLower[p + 1] > mz[order[p]]) {
+        blocks.add(Arrays.copyOfRange(order, start, p + 1));
+        start = p + 1;
+      }
+    }
+    blocks.add(Arrays.copyOfRange(order, start, n));
+    return blocks;
+  }
+
+  /**
+   * Rows in priority order. Candidates are found in the m/z window of a row and compared in
+   * priority order.
+   *
+   * @param block row indices sorted by m/z
+   */
+  private void sweepPriorityBlock(int[] block, boolean[] duplicates) {
+    final int size = block.length;
+    final double[] blockMz = new double[size];
+    for (int p = 0; p < size; p++) {
+      blockMz[p] = mz[block[p]];
+    }
+    final int[] priorityOrder = block.clone();
+    Arrays.sort(priorityOrder);
+
+    int[] candidates = new int[16];
+    for (final int first : priorityOrder) {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      if (!duplicates[first]) {
+        // all rows in the m/z window with lower priority
+        final int from = lowerBound(blockMz, lower[first]);
+        final int to = upperBound(blockMz, upper[first]);
+        int numCandidates = 0;
+        for (int p = from; p < to; p++) {
+          final int second = block[p];
+          if (second > first && !duplicates[second]) {
+            if (numCandidates == candidates.length) {
+              candidates = Arrays.copyOf(candidates, numCandidates * 2);
+            }
+            candidates[numCandidates++] = second;
+          }
+        }
+        Arrays.sort(candidates, 0, numCandidates);
+
+        for (int c = 0; c < numCandidates; c++) {
+          final int second = candidates[c];
+          if (matcher.isDuplicate(first, second)) {
+            duplicates[second] = true;
+            matcher.onDuplicate(first, second);
+          }
+        }
+      }
+      processedRows.incrementAndGet();
+    }
+  }
+
+  /**
+   * Rows sorted by m/z, each row is compared to the following rows in its window.
+   *
+   * @param block row indices in ascending order
+   */
+  private void sweepMzOrderedBlock(int[] block, boolean[] duplicates) {
+    final int size = block.length;
+    for (int p = 0; p < size; p++) {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      final int first = block[p];
+      if (!duplicates[first]) {
+        final double lowerMz = lower[first];
+        final double upperMz = upper[first];
+        for (int q = p + 1; q < size; q++) {
+          final int second = block[q];
+          if (duplicates[second]) {
+            continue;
+          }
+          // check mz first to stop loop
+          if (mz[second] < lowerMz) {
+            continue;
+          }
+          if (mz[second] > upperMz) {
+            break;
+          }
+          if (matcher.isDuplicate(first, second)) {
+            duplicates[second] = true;
+            matcher.onDuplicate(first, second);
+          }
+        }
+      }
+      processedRows.incrementAndGet();
+    }
+  }
+
+  /**
+   * @return the first index with a value >= key
+   */
+  private static int lowerBound(double[] sorted, double key) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sorted[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the first index with a value > key
+   */
+  private static int upperBound(double[] sorted, double key) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sorted[mid] <= key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  public int getProcessedRows() {
+    return processedRows.get();
+  }
+
+  /**
+   * Compares two rows by their index. Rows outside the m/z window of the first row must never be
+   * duplicates.
+   */
+  public interface RowMatcher {
+
+    /**
+     * @return true if the second row is a duplicate of the first row
+     */
+    boolean isDuplicate(int first, int second);
+
+    /**
+     * Called for each second row that was marked as a duplicate of the first row, e.g., to merge
+     * the rows. Called before the first row is compared to the next row.
+     */
+    default void onDuplicate(int first, int second) {
+    }
+
+    /**
+     * @return true if {@link #onDuplicate(int, int)} changes shared state. All rows are then
+     * processed on the calling thread.
+     */
+    default boolean mergesRows() {
+      return false;
+    }
+  }
+}
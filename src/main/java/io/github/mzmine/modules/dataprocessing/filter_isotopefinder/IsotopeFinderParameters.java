@@ -30,6 +30,7 @@ import io.github.mzmine.parameters.UserParameter;
 import io.github.mzmine.parameters.dialogs.ParameterSetupDialog;
 import io.github.mzmine.parameters.impl.IonMobilitySupport;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
 import io.github.mzmine.parameters.parametertypes.IntegerParameter;
 import io.github.mzmine.parameters.parametertypes.elements.ElementsParameter;
@@ -61,8 +62,14 @@ public class IsotopeFinderParameters extends SimpleParameterSet {
           + " or within all scans in full-width at half maximum range.", ScanRange.values(),
       ScanRange.SINGLE_MOST_INTENSE);
 
+  public static final BooleanParameter scanSweep = new BooleanParameter("Sweep scans in order",
+      "Sorts all features by their best scan and reads the scans once in ascending order. Features "
+          + "of the same scan are processed together and blocks of scans are processed in parallel.\n"
+          + "If unchecked, rows are processed in feature list order on a single thread.", true);
+
   public IsotopeFinderParameters() {
-    super(new UserParameter[]{featureLists, elements, isotopeMzTolerance, maxCharge, scanRange},
+    super(new UserParameter[]{featureLists, elements, isotopeMzTolerance, maxCharge, scanRange,
+            scanSweep},
         "https://mzmine.github.io/mzmine_documentation/module_docs/filter_isotope_finder/isotope_finder.html");
   }
 
@@ -44,7 +44,10 @@ import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.types.IsotopePatternType;
 import io.github.mzmine.datamodel.features.types.MobilityUnitType;
+import io.github.mzmine.datamodel.features.types.numbers.CCSType;
+import io.github.mzmine.datamodel.features.types.numbers.ChargeType;
 import io.github.mzmine.datamodel.impl.MultiChargeStateIsotopePattern;
 import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.datamodel.impl.SimpleIsotopePattern;
@@ -55,16 +58,22 @@ import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
 import io.github.mzmine.util.IonMobilityUtils;
 import io.github.mzmine.util.IsotopesUtils;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.openscience.cdk.Element;
@@ -75,6 +84,10 @@ import org.openscience.cdk.Element;
 class IsotopeFinderTask extends AbstractTask {
 
   private static final Logger logger = Logger.getLogger(IsotopeFinderTask.class.getName());
+  /**
+   * Minimum number of features per parallel block of the scan sweep
+   */
+  private static final int MIN_SWEEP_BLOCK = 500;
   private final ModularFeatureList featureList;
 
   // parameter values
@@ -84,7 +97,9 @@ class IsotopeFinderTask extends AbstractTask {
   private final List<Element> isotopeElements;
   private final String isotopes;
   private final ScanRange scanRange;
-  private int processedRows, totalRows;
+  private final boolean scanSweep;
+  private final AtomicInteger processedRows = new AtomicInteger(0);
+  private int totalRows;
 
 
   IsotopeFinderTask(MZmineProject project, ModularFeatureList featureList, ParameterSet parameters,
@@ -98,6 +113,7 @@ class IsotopeFinderTask extends AbstractTask {
     scanRange = parameters.getValue(IsotopeFinderParameters.scanRange);
     isotopeMaxCharge = parameters.getValue(IsotopeFinderParameters.maxCharge);
     isoMzTolerance = parameters.getValue(IsotopeFinderParameters.isotopeMzTolerance);
+    scanSweep = parameters.getValue(IsotopeFinderParameters.scanSweep);
     isotopes = isotopeElements.stream().map(Objects::toString).collect(Collectors.joining(","));
   }
 
@@ -111,7 +127,7 @@ class IsotopeFinderTask extends AbstractTask {
     if (totalRows == 0) {
       return 0.0d;
     }
-    return (double) processedRows / (double) totalRows;
+    return processedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -148,143 +164,23 @@ class IsotopeFinderTask extends AbstractTask {
 
     // start processing
     totalRows = featureList.getNumberOfRows();
-    processedRows = 0;
+    processedRows.set(0);
     RawDataFile raw = featureList.getRawDataFile(0);
 
-    // Loop through all rows
-    final ScanDataAccess scans = EfficientDataAccess.of(raw, ScanDataType.CENTROID,
-        featureList.getSeletedScans(raw));
-
-    final MobilityScanDataAccess mobScans = initMobilityScanDataAccess(raw);
-
     int missingValues = 0;
-    int detected = 0;
+    int detected;
 
     try {
-      // find for all rows the isotope pattern
-      for (FeatureListRow row : featureList.getRows()) {
-        if (isCanceled()) {
-          return;
-        }
-
-        // start at max intensity signal
-        Feature feature = row.getFeature(raw);
-        Scan scan = feature.getRepresentativeScan();
-        // no MS1 scan available
-        if (scan == null) {
-          continue;
-        }
-
-        double mz = feature.getMZ();
-        scan = findBestScanOrMobilityScan(scans, mobScans, feature);
-
-        // find candidate isotope pattern in max scan
-        // for each charge state to determine best charge
-        // merge afterward to get one isotope patten with all possible isotopes
-        int maxFoundIsotopes = 0;
-        int bestCharge = 0;
-        IsotopePattern pattern = null;
-
-        for (int i = 0; i < isotopeMaxCharge; i++) {
-          // charge is zero indexed but always starts at 1 -> max charge
-          final int charge = i + 1;
-          final DoubleArrayList currentChargeDiffs = isoMzDiffsForCharge[i];
-          final double currentMaxDiff = maxIsoMzDiff[i];
-          final SimpleDataPoint featureDp = new SimpleDataPoint(mz, feature.getHeight());
-          List<DataPoint> candidates = IsotopesUtils.findIsotopesInScan(currentChargeDiffs,
-              currentMaxDiff, isoMzTolerance, scan, featureDp);
-
-          if (scan instanceof MobilityScan && !candidates.isEmpty()) {
-            candidates = normalizeImsIntensities(candidates, scan, featureDp);
-          }
-
-          if (candidates.size() > 1) { // feature itself is always in cadidates
-            IsotopePattern newPattern = new SimpleIsotopePattern(candidates.toArray(new DataPoint[0]),
-                charge, IsotopePatternStatus.DETECTED, IsotopeFinderModule.MODULE_NAME);
-            if (pattern == null) {
-              pattern = newPattern;
-            } else if (pattern instanceof SimpleIsotopePattern) {
-              // combine 2 isotope pattern
-              pattern = new MultiChargeStateIsotopePattern(pattern, newPattern);
-            } else if (pattern instanceof MultiChargeStateIsotopePattern multi) {
-              // add next patterns
-              multi.addPattern(newPattern);
-            } else {
-              throw new IllegalStateException("Isotope pattern type is not handled.");
-            }
-
-            if (candidates.size() > maxFoundIsotopes) {
-              maxFoundIsotopes = candidates.size();
-              // charge is zero indexed but always starts at 1 -> max charge
-              bestCharge = charge;
-            }
-          }
-        }
-        if (pattern == null) {
-          // no pattern found
-          continue;
-        }
-
-        if (scanRange == ScanRange.SINGLE_MOST_INTENSE) {
-          // add isotope pattern and charge
-          feature.setIsotopePattern(pattern);
-          feature.setCharge(bestCharge);
-          //Final CCS Calculation
-          RawDataFile data = feature.getRawDataFile();
-          Float mobility = feature.getMobility();
-          MobilityType mobilityType = feature.getMobilityUnit();
-          if (data instanceof IMSRawDataFile imsfile) {
-            if (CCSUtils.hasValidMobilityType(imsfile) && mobility != null && bestCharge > 0 && mobilityType != null) {
-              Float ccs = CCSUtils.calcCCS(mz, mobility, mobilityType, bestCharge, imsfile);
-              if (ccs != null) {
-                feature.setCCS(ccs);
-              }
-            }
-          }//end
-          detected++;
-        } else {
-          // find pattern in FWHM
-          //      Float fwhmDiff = feature.getFWHM();
-          //      if (fwhmDiff != null) {
-          //        fwhmDiff /= 2f;
-          //
-          //        if (candidates.size() > 1) {
-          //          int next = 1;
-          //          while (scanIndex + next < totalScans || scanIndex - next >= 0) {
-          //            if (scanIndex + next < totalScans) {
-          //              scans.jumpToIndex(scanIndex + next);
-          //              if (checkRetentionTime(scans.getCurrentScan(), maxRT, fwhmDiff)) {
-          //                checkCandidatesInScan(scans, candidates);
-          //              }
-          //            }
-          //            if (scanIndex - next >= 0) {
-          //              scans.jumpToIndex(scanIndex - next);
-          //              if (checkRetentionTime(scans.getCurrentScan(), maxRT, fwhmDiff)) {
-          //                checkCandidatesInScan(scans, candidates);
-          //              }
-          //            }
-          //            next++;
-          //          }
-          //        }
-          //        // all scans in FWHMN checked... add isotope pattern
-          //        if (candidates.size() > 1) {
-          //          feature.setIsotopePattern(new SimpleIsotopePattern(
-          //              candidates.stream().map(d -> new SimpleDataPoint(d.getMZ(), d.getIntensity()))
-          //                  .toArray(DataPoint[]::new), IsotopePatternStatus.DETECTED, "Pattern finder"));
-          //          detected++;
-          //        }
-          //      } else {
-          //        // missing FWHM
-          //        missingValues++;
-          //      }
-        }
-        processedRows++;
-      }
+      detected = scanSweep ? sweepScans(raw, isoMzDiffsForCharge, maxIsoMzDiff)
+          : processRowsInOrder(raw, isoMzDiffsForCharge, maxIsoMzDiff);
     } catch (Exception ex) {
       logger.log(Level.WARNING, "Error in isotope finder "+ ex.getMessage(), ex);
       setStatus(TaskStatus.ERROR);
       return;
     }
+    if (isCanceled()) {
+      return;
+    }
 
     if (missingValues > 0) {
       logger.info(String.format("There were %d missing FWHM values in %d features", missingValues,
@@ -302,6 +198,281 @@ class IsotopeFinderTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * Processes the rows in feature list order and jumps to the best scan of each feature
+   *
+   * @return the number of detected isotope patterns
+   */
+  private int processRowsInOrder(RawDataFile raw, DoubleArrayList[] isoMzDiffsForCharge,
+      double[] maxIsoMzDiff) {
+    final ScanDataAccess scans = EfficientDataAccess.of(raw, ScanDataType.CENTROID,
+        featureList.getSeletedScans(raw));
+
+    final MobilityScanDataAccess mobScans = initMobilityScanDataAccess(raw);
+
+    int detected = 0;
+    // find for all rows the isotope pattern
+    for (FeatureListRow row : featureList.getRows()) {
+      if (isCanceled()) {
+        return detected;
+      }
+
+      // start at max intensity signal
+      Feature feature = row.getFeature(raw);
+      Scan scan = feature.getRepresentativeScan();
+      // no MS1 scan available
+      if (scan == null) {
+        continue;
+      }
+
+      scan = findBestScanOrMobilityScan(scans, mobScans, feature);
+      if (findIsotopePattern(feature, scan, isoMzDiffsForCharge, maxIsoMzDiff)) {
+        detected++;
+      }
+      processedRows.incrementAndGet();
+    }
+    return detected;
+  }
+
+  /**
+   * Sorts all features by the index of their best scan (and mobility scan) and sweeps the data
+   * access once in ascending order. All features of one scan are processed on the loaded data. The
+   * sorted features are split into consecutive blocks that are swept in parallel, each with its
+   * own data access.
+   *
+   * @return the number of detected isotope patterns
+   */
+  private int sweepScans(RawDataFile raw, DoubleArrayList[] isoMzDiffsForCharge,
+      double[] maxIsoMzDiff) {
+    final List<? extends Scan> selectedScans = featureList.getSeletedScans(raw);
+    final Object2IntOpenHashMap<Scan> scanIndexMap = new Object2IntOpenHashMap<>(
+        selectedScans.size());
+    scanIndexMap.defaultReturnValue(-1);
+    for (int i = 0; i < selectedScans.size(); i++) {
+      scanIndexMap.put(selectedScans.get(i), i);
+    }
+
+    final boolean useMobility = raw instanceof IMSRawDataFile && featureList.getFeatureTypes()
+        .containsKey(MobilityUnitType.class);
+    final List<SweepFeature> sorted = new ArrayList<>(featureList.getNumberOfRows());
+    for (FeatureListRow row : featureList.getRows()) {
+      final Feature feature = row.getFeature(raw);
+      final Scan scan = feature == null ? null : feature.getRepresentativeScan();
+      final int scanIndex = scan == null ? -1 : scanIndexMap.getInt(scan);
+      if (scanIndex < 0) {
+        continue;
+      }
+      final MobilityScan mobilityScan =
+          useMobility && feature.getMobility() != null ? IonMobilityUtils.getBestMobilityScan(
+              feature) : null;
+      sorted.add(new SweepFeature(feature, scanIndex, mobilityScan));
+    }
+    sorted.sort(Comparator.comparingInt(SweepFeature::scanIndex).thenComparingInt(
+        f -> f.mobilityScan() == null ? -1 : f.mobilityScan().getMobilityScanNumber()));
+
+    // types are added before parallel processing
+    featureList.addFeatureType(new IsotopePatternType(), new ChargeType());
+    if (useMobility) {
+      featureList.addFeatureType(new CCSType());
+    }
+
+    final int threads = TaskThreadPool.getMaxThreads();
+    final int blocks = Math.max(1, Math.min(threads, sorted.size() / MIN_SWEEP_BLOCK));
+    try {
+      return TaskThreadPool.invoke(threads,
+          () -> IntStream.range(0, blocks).parallel().map(block -> {
+            final int from = splitIndex(sorted, block, blocks);
+            final int to = splitIndex(sorted, block + 1, blocks);
+            return sweepBlock(raw, selectedScans, sorted.subList(from, to), isoMzDiffsForCharge,
+                maxIsoMzDiff);
+          }).sum());
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException("Error during isotope finder: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Split index of the sorted features that does not separate features of the same scan
+   */
+  private static int splitIndex(List<SweepFeature> sorted, int block, int blocks) {
+    int index = (int) ((long) sorted.size() * block / blocks);
+    while (index > 0 && index < sorted.size()
+        && sorted.get(index).scanIndex() == sorted.get(index - 1).scanIndex()) {
+      index++;
+    }
+    return index;
+  }
+
+  private int sweepBlock(RawDataFile raw, List<? extends Scan> selectedScans,
+      List<SweepFeature> features, DoubleArrayList[] isoMzDiffsForCharge, double[] maxIsoMzDiff) {
+    if (features.isEmpty()) {
+      return 0;
+    }
+    final ScanDataAccess scans = EfficientDataAccess.of(raw, ScanDataType.CENTROID,
+        selectedScans);
+    final MobilityScanDataAccess mobScans = initMobilityScanDataAccess(raw);
+
+    int detected = 0;
+    int currentScanIndex = -1;
+    for (SweepFeature sweepFeature : features) {
+      if (isCanceled()) {
+        return detected;
+      }
+
+      final Scan scan;
+      if (mobScans != null && sweepFeature.mobilityScan() != null
+          && moveToMobilityScan(mobScans, sweepFeature.mobilityScan())) {
+        scan = mobScans;
+      } else {
+        // only load the scan once for all features of this scan
+        if (currentScanIndex != sweepFeature.scanIndex()) {
+          scans.jumpToIndex(sweepFeature.scanIndex());
+          currentScanIndex = sweepFeature.scanIndex();
+        }
+        scan = scans;
+      }
+
+      if (findIsotopePattern(sweepFeature.feature(), scan, isoMzDiffsForCharge, maxIsoMzDiff)) {
+        detected++;
+      }
+      processedRows.incrementAndGet();
+    }
+    return detected;
+  }
+
+  /**
+   * Moves forward to the target mobility scan. The frame data is only loaded if the frame changes
+   * or the target lies before the current mobility scan.
+   *
+   * @return true if the data access points to the target mobility scan
+   */
+  private static boolean moveToMobilityScan(MobilityScanDataAccess mobScans, MobilityScan target) {
+    final MobilityScan current = mobScans.getFrame() == target.getFrame()
+        ? mobScans.getCurrentMobilityScan() : null;
+    if (current == null || current.getMobilityScanNumber() > target.getMobilityScanNumber()) {
+      return mobScans.jumpToMobilityScan(target) != null;
+    }
+    MobilityScan mobilityScan = current;
+    while (mobilityScan != null
+        && mobilityScan.getMobilityScanNumber() < target.getMobilityScanNumber()) {
+      mobilityScan = mobScans.nextMobilityScan();
+    }
+    return mobilityScan != null;
+  }
+
+  /**
+   * Searches isotope signals of the feature in the scan for all charge states and sets the pattern
+   * and charge to the feature
+   *
+   * @param scan the best scan or mobility scan of the feature (may be a data access)
+   * @return true if an isotope pattern was detected
+   */
+  private boolean findIsotopePattern(Feature feature, Scan scan,
+      DoubleArrayList[] isoMzDiffsForCharge, double[] maxIsoMzDiff) {
+    double mz = feature.getMZ();
+    // find candidate isotope pattern in max scan
+    // for each charge state to determine best charge
+    // merge afterward to get one isotope patten with all possible isotopes
+    int maxFoundIsotopes = 0;
+    int bestCharge = 0;
+    IsotopePattern pattern = null;
+
+    for (int i = 0; i < isotopeMaxCharge; i++) {
+      // charge is zero indexed but always starts at 1 -> max charge
+      final int charge = i + 1;
+      final DoubleArrayList currentChargeDiffs = isoMzDiffsForCharge[i];
+      final double currentMaxDiff = maxIsoMzDiff[i];
+      final SimpleDataPoint featureDp = new SimpleDataPoint(mz, feature.getHeight());
+      List<DataPoint> candidates = IsotopesUtils.findIsotopesInScan(currentChargeDiffs,
+          currentMaxDiff, isoMzTolerance, scan, featureDp);
+
+      if (scan instanceof MobilityScan && !candidates.isEmpty()) {
+        candidates = normalizeImsIntensities(candidates, scan, featureDp);
+      }
+
+      if (candidates.size() > 1) { // feature itself is always in cadidates
+        IsotopePattern newPattern = new SimpleIsotopePattern(candidates.toArray(new DataPoint[0]),
+            charge, IsotopePatternStatus.DETECTED, IsotopeFinderModule.MODULE_NAME);
+        if (pattern == null) {
+          pattern = newPattern;
+        } else if (pattern instanceof SimpleIsotopePattern) {
+          // combine 2 isotope pattern
+          pattern = new MultiChargeStateIsotopePattern(pattern, newPattern);
+        } else if (pattern instanceof MultiChargeStateIsotopePattern multi) {
+          // add next patterns
+          multi.addPattern(newPattern);
+        } else {
+          throw new IllegalStateException("Isotope pattern type is not handled.");
+        }
+
+        if (candidates.size() > maxFoundIsotopes) {
+          maxFoundIsotopes = candidates.size();
+          // charge is zero indexed but always starts at 1 -> max charge
+          bestCharge = charge;
+        }
+      }
+    }
+    if (pattern == null) {
+      // no pattern found
+      return false;
+    }
+
+    if (scanRange == ScanRange.SINGLE_MOST_INTENSE) {
+      // add isotope pattern and charge
+      feature.setIsotopePattern(pattern);
+      feature.setCharge(bestCharge);
+      //Final CCS Calculation
+      RawDataFile data = feature.getRawDataFile();
+      Float mobility = feature.getMobility();
+      MobilityType mobilityType = feature.getMobilityUnit();
+      if (data instanceof IMSRawDataFile imsfile) {
+        if (CCSUtils.hasValidMobilityType(imsfile) && mobility != null && bestCharge > 0 && mobilityType != null) {
+          Float ccs = CCSUtils.calcCCS(mz, mobility, mobilityType, bestCharge, imsfile);
+          if (ccs != null) {
+            feature.setCCS(ccs);
+          }
+        }
+      }//end
+      return true;
+    } else {
+      // find pattern in FWHM
+      //      Float fwhmDiff = feature.getFWHM();
+      //      if (fwhmDiff != null) {
+      //        fwhmDiff /= 2f;
+      //
+      //        if (candidates.size() > 1) {
+      //          int next = 1;
+      //          while (scanIndex + next < totalScans || scanIndex - next >= 0) {
+      //            if (scanIndex + next < totalScans) {
+      //              scans.jumpToIndex(scanIndex + next);
+      //              if (checkRetentionTime(scans.getCurrentScan(), maxRT, fwhmDiff)) {
+      //                checkCandidatesInScan(scans, candidates);
+      //              }
+      //            }
+      //            if (scanIndex - next >= 0) {
+      //              scans.jumpToIndex(scanIndex - next);
+      //              if (checkRetentionTime(scans.getCurrentScan(), maxRT, fwhmDiff)) {
+      //                checkCandidatesInScan(scans, candidates);
+      //              }
+      //            }
+      //            next++;
+      //          }
+      //        }
+      //        // all scans in FWHMN checked... add isotope pattern
+      //        if (candidates.size() > 1) {
+      //          feature.setIsotopePattern(new SimpleIsotopePattern(
+      //              candidates.stream().map(d -> new SimpleDataPoint(d.getMZ(), d.getIntensity()))
+      //                  .toArray(DataPoint[]::new), IsotopePatternStatus.DETECTED, "Pattern finder"));
+      //          detected++;
+      //        }
+      //      } else {
+      //        // missing FWHM
+      //        missingValues++;
+      //      }
+    }
+    return false;
+  }
+
   private List<DataPoint> normalizeImsIntensities(List<DataPoint> candidates, Scan scan,
       SimpleDataPoint featureDp) {
     final int i = scan.binarySearch(featureDp.getMZ(), true);
@@ -379,4 +550,11 @@ class IsotopeFinderTask extends AbstractTask {
   private boolean checkRetentionTime(Scan scan, float maxRT, Float fwhmDiff) {
     return scan != null && Math.abs(scan.getRetentionTime() - maxRT) <= fwhmDiff;
   }
+
+  /**
+   * Feature with the index of its best scan in the selected scans and the best mobility scan
+   */
+  private record SweepFeature(Feature feature, int scanIndex, @Nullable MobilityScan mobilityScan) {
+
+  }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_network_layout;
+
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.types.networking.NetworkLayoutHashType;
+import io.github.mzmine.datamodel.features.types.networking.NetworkLayoutXType;
+import io.github.mzmine.datamodel.features.types.networking.NetworkLayoutYType;
+import io.github.mzmine.modules.visualization.networking.visual.FeatureNetworkGenerator;
+import io.github.mzmine.modules.visualization.networking.visual.layout.FeatureNetworkLayout;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
+import java.time.Instant;
+import java.util.logging.Logger;
+import org.graphstream.graph.implementations.MultiGraph;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Computes the layout of the full network of a feature list and stores the coordinates on the
+ * rows
+ */
+public class NetworkLayoutTask extends AbstractTask {
+
+  private static final Logger logger = Logger.getLogger(NetworkLayoutTask.class.getName());
+
+  private final ParameterSet parameters;
+  private final FeatureList flist;
+  private String description;
+  private double progress = 0;
+
+  public NetworkLayoutTask(@NotNull ParameterSet parameters, @NotNull FeatureList flist,
+      @NotNull Instant moduleCallDate) {
+    super(null, moduleCallDate); // no new data stored -> null
+    this.parameters = parameters;
+    this.flist = flist;
+    description = "Creating network of " + flist.getName();
+  }
+
+  @Override
+  public String getTaskDescription() {
+    return description;
+  }
+
+  @Override
+  public double getFinishedPercentage() {
+    return progress;
+  }
+
+  @Override
+  public void run() {
+    setStatus(TaskStatus.PROCESSING);
+
+    final MultiGraph graph = new FeatureNetworkGenerator().createNewGraph(flist, false, false);
+    if (isCanceled()) {
+      return;
+    }
+
+    progress = 0.2;
+    description = "Computing network layout of %d nodes and %d edges in %s".formatted(
+        graph.getNodeCount(), graph.getEdgeCount(), flist.getName());
+    flist.addRowType(new NetworkLayoutXType());
+    flist.addRowType(new NetworkLayoutYType());
+    flist.addRowType(new NetworkLayoutHashType());
+    FeatureNetworkLayout.computeLayout(graph, TaskThreadPool.getMaxThreads(), true);
+    logger.fine(() -> "Computed network layout for " + flist.getName());
+
+    flist.getAppliedMethods().add(
+        new SimpleFeatureListAppliedMethod(NetworkLayoutModule.class, parameters,
+            getModuleCallDate()));
+    progress = 1;
+    setStatus(TaskStatus.FINISHED);
+  }
+}
@@ -61,6 +61,8 @@ public class IonNetworkLibrary {
   private final IonModification[] selectedAdducts;
   private final IonModification[] selectedMods;
   private List<IonType> allAdducts = new ArrayList<>();
+  // sorted neutral mass differences of all valid pairs in allAdducts
+  private IonTypeDeltaTable deltaTable;
   private final boolean isPositive;
   private final int maxCharge;
   private final int maxMolecules;
@@ -132,6 +134,12 @@ public class IonNetworkLibrary {
     for (IonType a : allAdducts) {
       LOG.finest("Adding modification: " + a.toString());
     }
+
+    // do not check if MOL = MOL and MOL>1
+    // only one can be modified
+    deltaTable = new IonTypeDeltaTable(allAdducts,
+        (a, b) -> checkMolCount(a, b) && checkMaxMod(a, b) && checkMultiChargeDifference(a, b)
+                  && checkSameAdducts(a, b));
   }
 
   /**
@@ -154,51 +162,102 @@ public class IonNetworkLibrary {
   public @NotNull
   List<IonIdentity[]> findAdducts(final FeatureList featureList, final FeatureListRow row1,
       final FeatureListRow row2, int z1, int z2, final CheckMode mode, final double minHeight) {
+    return addAdductIdentities(row1, row2,
+        findAdductPairs(featureList, row1, row2, z1, z2, mode, minHeight));
+  }
+
+  /**
+   * Finds all possible adduct pairs between row1 and row2 without changing the rows. Only the ion
+   * type pairs within the neutral mass window of the {@link IonTypeDeltaTable} are checked.
+   *
+   * @param z1 -1 or 0 if not set (charge state always positive)
+   * @param z2 -1 or 0 if not set (charge state always positive)
+   * @return list of matching ion types [row1, row2] in the order of the library
+   */
+  public @NotNull
+  List<IonType[]> findAdductPairs(final FeatureList featureList, final FeatureListRow row1,
+      final FeatureListRow row2, int z1, int z2, final CheckMode mode, final double minHeight) {
     z1 = Math.abs(z1);
     z2 = Math.abs(z2);
-    List<IonIdentity[]> list = new ArrayList<>();
-    // check all combinations of adducts
-    for (IonType adduct : allAdducts) {
-      for (IonType adduct2 : allAdducts) {
-        if (adduct.equals(adduct2)) {
-          continue;
-        }
+    // m/z values that are compared
+    final double[] mzRange1 = getComparedMzRange(featureList, row1, mode, minHeight);
+    final double[] mzRange2 = getComparedMzRange(featureList, row2, mode, minHeight);
+    if (mzRange1 == null || mzRange2 == null) {
+      return List.of();
+    }
 
-        // do not check if MOL = MOL and MOL>1
-        // only one can be modified
-        // check charge state if absCharge is not -1 or 0 (no charge detected)
-        if (checkMolCount(adduct, adduct2) //
-            && checkMaxMod(adduct, adduct2) //
-            && checkChargeStates(adduct, adduct2, z1, z2) //
-            && checkMultiChargeDifference(adduct, adduct2) //
-            && checkSameAdducts(adduct, adduct2)) {
-          // checks each raw file - only true if all m/z are in range
-          if (checkAdduct(featureList, row1, row2, adduct, adduct2, mode, minHeight)) {
-            // is a2 a modification of a1? (same adducts - different mods
-            if (adduct2.isModificationOf(adduct)) {
-              IonType mod = adduct2.subtractMods(adduct);
-              IonType undefined =
-                  new IonType(IonModification.getUndefinedforCharge(adduct.getCharge()));
-              list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, undefined, row1, mod));
-            } else if (adduct.isModificationOf(adduct2)) {
-              IonType mod = adduct.subtractMods(adduct2);
-              IonType undefined =
-                  new IonType(IonModification.getUndefinedforCharge(adduct2.getCharge()));
-              list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, mod, row2, undefined));
-            } else {
-              // Add adduct identity and notify GUI.
-              // only if not already present
-              list.add(
-                  IonIdentity.addAdductIdentityToRow(mzTolerance, row1, adduct, row2, adduct2));
-            }
-          }
-        }
+    final int numIons = deltaTable.getNumIons();
+    List<IonType[]> list = new ArrayList<>();
+    // check charge state if absCharge is not -1 or 0 (no charge detected)
+    for (int pair : deltaTable.findCandidates(mzRange1[0], mzRange1[1], mzRange2[0], mzRange2[1],
+        z1, z2, mzTolerance)) {
+      final IonType adduct = allAdducts.get(pair / numIons);
+      final IonType adduct2 = allAdducts.get(pair % numIons);
+      // checks each raw file - only true if all m/z are in range
+      if (checkAdduct(featureList, row1, row2, adduct, adduct2, mode, minHeight)) {
+        list.add(new IonType[]{adduct, adduct2});
+      }
+    }
+    return list;
+  }
+
+  /**
+   * Adds the adduct identities of {@link #findAdductPairs} to the rows
+   *
+   * @param pairs ion types [row1, row2]
+   * @return returns list of adducts for [row1, row2]
+   */
+  public @NotNull
+  List<IonIdentity[]> addAdductIdentities(final FeatureListRow row1, final FeatureListRow row2,
+      final List<IonType[]> pairs) {
+    List<IonIdentity[]> list = new ArrayList<>();
+    for (IonType[] pair : pairs) {
+      final IonType adduct = pair[0];
+      final IonType adduct2 = pair[1];
+      // is a2 a modification of a1? (same adducts - different mods
+      if (adduct2.isModificationOf(adduct)) {
+        IonType mod = adduct2.subtractMods(adduct);
+        IonType undefined =
+            new IonType(IonModification.getUndefinedforCharge(adduct.getCharge()));
+        list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, undefined, row1, mod));
+      } else if (adduct.isModificationOf(adduct2)) {
+        IonType mod = adduct.subtractMods(adduct2);
+        IonType undefined =
+            new IonType(IonModification.getUndefinedforCharge(adduct2.getCharge()));
+        list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, mod, row2, undefined));
+      } else {
+        // Add adduct identity and notify GUI.
+        // only if not already present
+        list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, adduct, row2, adduct2));
       }
     }
-    // no adduct to be found
     return list;
   }
 
+  /**
+   * The minimum and maximum m/z that {@link #checkAdduct} compares for a row
+   *
+   * @return [min, max] or null if no feature of the row can match
+   */
+  @Nullable
+  private double[] getComparedMzRange(final FeatureList featureList, final FeatureListRow row,
+      final CheckMode mode, final double minHeight) {
+    if (mode.equals(CheckMode.AVGERAGE)) {
+      final double mz = row.getAverageMZ();
+      return new double[]{mz, mz};
+    }
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (RawDataFile raw : featureList.getRawDataFiles()) {
+      Feature f = row.getFeature(raw);
+      if (f != null && f.getHeight() >= minHeight) {
+        min = Math.min(min, f.getMZ());
+        max = Math.max(max, f.getMZ());
+      }
+    }
+    return min <= max ? new double[]{min, max} : null;
+  }
+
 
   /**
    * Searches for an IonType for row that matches in network
@@ -273,19 +332,6 @@ public class IonNetworkLibrary {
     return a.getMolecules() != b.getMolecules() || (a.getMolecules() == 1 && b.getMolecules() == 1);
   }
 
-  /**
-   * True if a charge state was not detected or if it fits to the adduct
-   *
-   * @param adduct
-   * @param adduct2
-   * @param z1
-   * @param z2
-   * @return
-   */
-  private boolean checkChargeStates(IonType adduct, IonType adduct2, int z1, int z2) {
-    return (z1 == 0 || adduct.getAbsCharge() == z1) && (z2 == 0 || adduct2.getAbsCharge() == z2);
-  }
-
   /**
    * Only one adduct can have modifications
    *
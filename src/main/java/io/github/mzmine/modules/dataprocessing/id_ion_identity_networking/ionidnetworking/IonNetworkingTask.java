@@ -28,12 +28,14 @@ package io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionid
 import com.google.common.util.concurrent.AtomicDouble;
 import io.github.msdk.MSDKRuntimeException;
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.RowGroup;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.annotations.iin.IonIdentityListType;
 import io.github.mzmine.datamodel.identities.iontype.IonIdentity;
 import io.github.mzmine.datamodel.identities.iontype.IonNetworkLogic;
+import io.github.mzmine.datamodel.identities.iontype.IonType;
 import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking.IonNetworkLibrary.CheckMode;
 import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.refinement.IonNetworkRefinementParameters;
 import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.refinement.IonNetworkRefinementTask;
@@ -43,18 +45,26 @@ import io.github.mzmine.parameters.parametertypes.ionidentity.IonLibraryParamete
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 
 public class IonNetworkingTask extends AbstractTask {
 
   // Logger.
   private static final Logger LOG = Logger.getLogger(IonNetworkingTask.class.getName());
+  /**
+   * Row pairs of groups with at least this size are matched in parallel
+   */
+  private static final int MIN_PARALLEL_GROUP_SIZE = 50;
   private final ModularFeatureList featureList;
   private final ParameterSet parameters;
   private final MZmineProject project;
@@ -151,13 +161,21 @@ public class IonNetworkingTask extends AbstractTask {
     //
     AtomicInteger compared = new AtomicInteger(0);
     AtomicInteger annotPairs = new AtomicInteger(0);
-    // for all groups
-    groups.parallelStream().forEach(g -> {
-      if (!this.isCanceled()) {
-        annotateGroup(g, compared, annotPairs);
-        stageProgress.addAndGet(1d / groups.size());
-      }
-    });
+    // for all groups in the shared pool, the matching of large groups runs in the same pool
+    try {
+      TaskThreadPool.invoke(TaskThreadPool.getMaxThreads(), () -> {
+        groups.parallelStream().forEach(g -> {
+          if (!this.isCanceled()) {
+            annotateGroup(g, compared, annotPairs);
+            stageProgress.addAndGet(1d / groups.size());
+          }
+        });
+        return null;
+      });
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException("Error during ion identity networking: " + e.getMessage(),
+          e);
+    }
     LOG.info("Corr: A total of " + compared.get() + " row2row adduct comparisons with " + annotPairs
         .get() + " annotation pairs");
 
@@ -165,29 +183,76 @@ public class IonNetworkingTask extends AbstractTask {
   }
 
   /**
-   * Annotates all rows in a group
+   * Annotates all rows in a group. The pairs of large groups are matched in parallel in the shared
+   * task thread pool and the identities are added afterwards in the same order as for small
+   * groups.
    *
    * @param g
    * @param compared
    * @param annotPairs
    */
   private void annotateGroup(RowGroup g, AtomicInteger compared, AtomicInteger annotPairs) {
-    for (int i = 0; i < g.size() - 1; i++) {
-      // check against existing networks
-      for (int k = i + 1; k < g.size(); k++) {
-        // only if row i and k are correlated
-        if (g.isCorrelated(i, k)) {
-          compared.incrementAndGet();
-          // check for adducts in library
-          List<IonIdentity[]> id = library
-              .findAdducts(featureList, g.get(i), g.get(k), adductCheckMode, minHeight);
-          if (!id.isEmpty()) {
-            annotPairs.incrementAndGet();
+    if (g.size() < MIN_PARALLEL_GROUP_SIZE) {
+      for (int i = 0; i < g.size() - 1; i++) {
+        // check against existing networks
+        for (int k = i + 1; k < g.size(); k++) {
+          // only if row i and k are correlated
+          if (g.isCorrelated(i, k)) {
+            compared.incrementAndGet();
+            // check for adducts in library
+            List<IonIdentity[]> id = library
+                .findAdducts(featureList, g.get(i), g.get(k), adductCheckMode, minHeight);
+            if (!id.isEmpty()) {
+              annotPairs.incrementAndGet();
+            }
           }
         }
       }
-      // finished.incrementAndGet();
+      return;
+    }
+
+    // matching does not change the rows and runs in parallel for each row i
+    final List<List<MatchedPair>> matches;
+    try {
+      matches = TaskThreadPool.invoke(TaskThreadPool.getMaxThreads(),
+          () -> IntStream.range(0, g.size() - 1).parallel().mapToObj(i -> {
+            final List<MatchedPair> rowMatches = new ArrayList<>();
+            for (int k = i + 1; k < g.size() && !isCanceled(); k++) {
+              if (g.isCorrelated(i, k)) {
+                compared.incrementAndGet();
+                final FeatureListRow a = g.get(i);
+                final FeatureListRow b = g.get(k);
+                final List<IonType[]> pairs = library.findAdductPairs(featureList, a, b,
+                    a.getRowCharge(), b.getRowCharge(), adductCheckMode, minHeight);
+                if (!pairs.isEmpty()) {
+                  rowMatches.add(new MatchedPair(a, b, pairs));
+                }
+              }
+            }
+            return rowMatches;
+          }).toList());
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException("Error during ion identity networking: " + e.getMessage(),
+          e);
     }
+
+    // add identities in order
+    for (List<MatchedPair> rowMatches : matches) {
+      for (MatchedPair match : rowMatches) {
+        List<IonIdentity[]> id = library.addAdductIdentities(match.row1(), match.row2(),
+            match.pairs());
+        if (!id.isEmpty()) {
+          annotPairs.incrementAndGet();
+        }
+      }
+    }
+  }
+
+  /**
+   * Matching ion types of two rows
+   */
+  private record MatchedPair(FeatureListRow row1, FeatureListRow row2, List<IonType[]> pairs) {
+
   }
 
 
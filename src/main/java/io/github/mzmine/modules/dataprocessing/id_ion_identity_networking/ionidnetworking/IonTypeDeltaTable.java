@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking;
+
+import io.github.mzmine.datamodel.identities.iontype.IonType;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sorted table of the neutral mass differences between all valid pairs of {@link IonType}s.
+ * <p>
+ * The neutral mass of an ion is M = (mz * |z| - d) / n with the mass difference d, the absolute
+ * charge |z| and the number of molecules n. For two ions with the same (|z|, n) classes, the
+ * difference of both neutral masses splits into a part that only depends on the two m/z values and
+ * a part that only depends on the ion types:
+ * <pre>M1 - M2 = (mz1 * |z1| / n1 - mz2 * |z2| / n2) - (d1 / n1 - d2 / n2)</pre>
+ * The ion type part is precomputed and sorted for each combination of classes (usually only a few
+ * charge states and molecule counts). Matching two rows is then a single binary search per class
+ * combination instead of testing all ion type pairs.
+ */
+class IonTypeDeltaTable {
+
+  // small margin for rounding differences to the direct neutral mass comparison
+  private static final double EPSILON = 1E-9;
+
+  private final int numIons;
+  private final List<ClassPair> classPairs = new ArrayList<>();
+
+  /**
+   * @param ions      all ion types of the library
+   * @param validPair checks if two different ion types may form an annotation pair (independent of
+   *                  the rows)
+   */
+  IonTypeDeltaTable(@NotNull List<IonType> ions, @NotNull BiPredicate<IonType, IonType> validPair) {
+    numIons = ions.size();
+    // group ions by their class of charge and molecules
+    final Map<Long, IntArrayList> classes = new LinkedHashMap<>();
+    for (int i = 0; i < ions.size(); i++) {
+      final IonType ion = ions.get(i);
+      classes.computeIfAbsent(classKey(ion), k -> new IntArrayList()).add(i);
+    }
+
+    for (IntArrayList class1 : classes.values()) {
+      for (IntArrayList class2 : classes.values()) {
+        final ClassPair pair = createClassPair(ions, class1, class2, validPair);
+        if (pair != null) {
+          classPairs.add(pair);
+        }
+      }
+    }
+  }
+
+  private static long classKey(IonType ion) {
+    return ((long) ion.getAbsCharge() << 32) | ion.getMolecules();
+  }
+
+  private ClassPair createClassPair(List<IonType> ions, IntArrayList class1, IntArrayList class2,
+      BiPredicate<IonType, IonType> validPair) {
+    final List<long[]> entries = new ArrayList<>();
+    final List<Double> deltas = new ArrayList<>();
+    final IonType first1 = ions.get(class1.getInt(0));
+    final IonType first2 = ions.get(class2.getInt(0));
+    final int n1 = first1.getMolecules();
+    final int n2 = first2.getMolecules();
+    double maxAbsDelta1 = 0;
+    for (int i1 : class1) {
+      final IonType a = ions.get(i1);
+      for (int i2 : class2) {
+        final IonType b = ions.get(i2);
+        if (i1 == i2 || a.equals(b) || !validPair.test(a, b)) {
+          continue;
+        }
+        deltas.add(a.getMassDifference() / n1 - b.getMassDifference() / n2);
+        entries.add(new long[]{i1, i2});
+        maxAbsDelta1 = Math.max(maxAbsDelta1, Math.abs(a.getMassDifference() / n1));
+      }
+    }
+    if (entries.isEmpty()) {
+      return null;
+    }
+
+    // sort by delta
+    final Integer[] order = new Integer[entries.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (x, y) -> Double.compare(deltas.get(x), deltas.get(y)));
+    final double[] sortedDeltas = new double[order.length];
+    final int[] pairIndex = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      sortedDeltas[i] = deltas.get(order[i]);
+      final long[] entry = entries.get(order[i]);
+      pairIndex[i] = (int) (entry[0] * numIons + entry[1]);
+    }
+    return new ClassPair(first1.getAbsCharge(), n1, first2.getAbsCharge(), n2, maxAbsDelta1,
+        sortedDeltas, pairIndex);
+  }
+
+  /**
+   * Candidate ion type pairs for two rows. Each candidate needs to be checked exactly afterwards.
+   * The m/z ranges cover all m/z values that are compared (the average m/z or the m/z of all
+   * features).
+   *
+   * @param z1 charge of row 1 or 0 if not set (absolute value)
+   * @param z2 charge of row 2 or 0 if not set (absolute value)
+   * @return pair indices (ion1 * numIons + ion2) sorted ascending, which equals the order of two
+   * nested loops over all ions
+   */
+  @NotNull
+  IntArrayList findCandidates(double minMz1, double maxMz1, double minMz2, double maxMz2, int z1,
+      int z2, @NotNull MZTolerance mzTolerance) {
+    final IntArrayList candidates = new IntArrayList();
+    for (ClassPair pair : classPairs) {
+      if ((z1 != 0 && pair.charge1 != z1) || (z2 != 0 && pair.charge2 != z2)) {
+        continue;
+      }
+      // row part of the neutral mass difference
+      final double scaled1Min = minMz1 * pair.charge1 / pair.molecules1;
+      final double scaled1Max = maxMz1 * pair.charge1 / pair.molecules1;
+      final double scaled2Min = minMz2 * pair.charge2 / pair.molecules2;
+      final double scaled2Max = maxMz2 * pair.charge2 / pair.molecules2;
+      // tolerance is applied to the neutral mass of row 1 and increases with the mass
+      final double tolerance =
+          mzTolerance.getMzToleranceForMass(Math.abs(scaled1Max) + pair.maxAbsDelta1) + EPSILON;
+      final double lower = scaled1Min - scaled2Max - tolerance;
+      final double upper = scaled1Max - scaled2Min + tolerance;
+
+      int i = Arrays.binarySearch(pair.deltas, lower);
+      i = i < 0 ? -i - 1 : i;
+      while (i > 0 && pair.deltas[i - 1] >= lower) {
+        i--;
+      }
+      for (; i < pair.deltas.length && pair.deltas[i] <= upper; i++) {
+        candidates.add(pair.pairIndex[i]);
+      }
+    }
+    candidates.sort(null);
+    return candidates;
+  }
+
+  int getNumIons() {
+    return numIons;
+  }
+
+  /**
+   * All valid ion type pairs of two classes of charge and molecules, sorted by the ion type part of
+   * the neutral mass difference
+   */
+  private record ClassPair(int charge1, int molecules1, int charge2, int molecules2,
+                           double maxAbsDelta1, double[] deltas, int[] pairIndex) {
+
+  }
+}
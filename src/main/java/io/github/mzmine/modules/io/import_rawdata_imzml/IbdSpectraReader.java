@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_imzml;
+
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.datamodel.impl.SimpleImagingScan;
+import io.github.mzmine.modules.io.import_rawdata_imzml.ImzMLSpectrum.BinaryArray;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
+import io.github.mzmine.util.scans.ScanUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads the spectra of an imzML file from the binary .ibd file. Spectra are split into chunks of
+ * consecutive spectra, each chunk is memory mapped and decoded in parallel. In continuous mode, all
+ * spectra share the same m/z array. This array is only decoded and stored once.
+ */
+public class IbdSpectraReader {
+
+  private static final Logger logger = Logger.getLogger(IbdSpectraReader.class.getName());
+
+  /**
+   * Maximum number of spectra and mapped bytes per chunk. A mapped region must be smaller than 2 GB.
+   */
+  static final int MAX_SPECTRA_PER_CHUNK = 1000;
+  static final long MAX_BYTES_PER_CHUNK = 256L * 1024 * 1024;
+
+  private final File ibdFile;
+  private final ImzMLMetadata metadata;
+  private final RawDataFile dataFile;
+  private final int threads;
+  private final AtomicInteger processedSpectra = new AtomicInteger(0);
+
+  /**
+   * shared m/z buffers in continuous mode (offset of the m/z array to buffer)
+   */
+  private final Map<Long, SharedMzs> sharedMzs = new HashMap<>();
+
+  public IbdSpectraReader(@NotNull File ibdFile, @NotNull ImzMLMetadata metadata,
+      @NotNull RawDataFile dataFile, int threads) {
+    this.ibdFile = ibdFile;
+    this.metadata = metadata;
+    this.dataFile = dataFile;
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * The binary data file next to the imzML file.
+   *
+   * @return the .ibd file or null if it does not exist
+   */
+  @Nullable
+  public static File findIbdFile(@NotNull File imzML) {
+    final String name = imzML.getName();
+    final int dot = name.lastIndexOf('.');
+    final String baseName = dot > 0 ? name.substring(0, dot) : name;
+    for (String extension : new String[]{".ibd", ".IBD", ".Ibd"}) {
+      final File ibd = new File(imzML.getParentFile(), baseName + extension);
+      if (ibd.exists()) {
+        return ibd;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the number of spectra decoded so far
+   */
+  public int getProcessedSpectra() {
+    return processedSpectra.get();
+  }
+
+  /**
+   * Reads all spectra.
+   *
+   * @param isCanceled stops the remaining chunks if true
+   * @return the scans in the order of the imzML file or an empty list if canceled
+   */
+  public List<SimpleImagingScan> readScans(@NotNull BooleanSupplier isCanceled)
+      throws IOException {
+    final List<ImzMLSpectrum> spectra = metadata.spectra();
+    try (FileChannel channel = FileChannel.open(ibdFile.toPath(), StandardOpenOption.READ)) {
+      if (metadata.continuous()) {
+        readSharedMzs(channel, spectra);
+      }
+
+      final List<List<ImzMLSpectrum>> chunks = createChunks(spectra);
+      logger.finest(() -> "Reading " + spectra.size() + " spectra in " + chunks.size()
+          + " chunks on " + threads + " threads from " + ibdFile);
+
+      try {
+        // map keeps the chunk order
+        final List<List<SimpleImagingScan>> scanChunks = TaskThreadPool.invoke(threads,
+            () -> chunks.parallelStream().map(chunk -> {
+              if (isCanceled.getAsBoolean()) {
+                return List.<SimpleImagingScan>of();
+              }
+              try {
+                return readChunk(channel, chunk);
+              } catch (IOException e) {
+                throw new IllegalStateException(e);
+              }
+            }).toList());
+
+        if (isCanceled.getAsBoolean()) {
+          return List.of();
+        }
+        final List<SimpleImagingScan> scans = new ArrayList<>(spectra.size());
+        scanChunks.forEach(scans::addAll);
+        return scans;
+      } catch (InterruptedException | ExecutionException e) {
+        if (e.getCause() instanceof IllegalStateException ise
+            && ise.getCause() instanceof IOException io) {
+          throw io;
+        }
+        throw new IOException("Error while reading " + ibdFile, e);
+      }
+    }
+  }
+
+  /**
+   * Decodes and stores the m/z arrays that are shared by all spectra in continuous mode. Usually,
+   * there is only a single m/z array in the file.
+   */
+  private void readSharedMzs(FileChannel channel, List<ImzMLSpectrum> spectra) throws IOException {
+    for (ImzMLSpectrum spectrum : spectra) {
+      final BinaryArray mzArray = spectrum.mzArray();
+      if (sharedMzs.containsKey(mzArray.offset())) {
+        continue;
+      }
+      final MappedByteBuffer buffer = map(channel, mzArray.offset(), mzArray.end());
+      final double[] mzs = new double[mzArray.length()];
+      mzArray.dataType().decode(buffer, 0, mzs);
+
+      // only share sorted m/z values, otherwise every spectrum is sorted on its own
+      final DoubleBuffer stored = isSortedAscending(mzs) ? StorageUtils.storeValuesToDoubleBuffer(
+          dataFile.getMemoryMapStorage(), mzs) : null;
+      sharedMzs.put(mzArray.offset(), new SharedMzs(mzs, stored));
+    }
+  }
+
+  /**
+   * Splits the spectra into chunks of consecutive spectra. The mapped region of a chunk does not
+   * exceed {@link #MAX_BYTES_PER_CHUNK}, unless a single spectrum is larger.
+   */
+  List<List<ImzMLSpectrum>> createChunks(List<ImzMLSpectrum> spectra) {
+    final List<List<ImzMLSpectrum>> chunks = new ArrayList<>();
+    List<ImzMLSpectrum> current = new ArrayList<>();
+    long start = Long.MAX_VALUE;
+    long end = Long.MIN_VALUE;
+    for (ImzMLSpectrum spectrum : spectra) {
+      final long spectrumStart = start(spectrum);
+      final long spectrumEnd = end(spectrum);
+      final long newStart = Math.min(start, spectrumStart);
+      final long newEnd = Math.max(end, spectrumEnd);
+      if (!current.isEmpty() && (current.size() >= MAX_SPECTRA_PER_CHUNK
+          || newEnd - newStart > MAX_BYTES_PER_CHUNK)) {
+        chunks.add(current);
+        current = new ArrayList<>();
+        start = spectrumStart;
+        end = spectrumEnd;
+      } else {
+        start = newStart;
+        end = newEnd;
+      }
+      current.add(spectrum);
+    }
+    if (!current.isEmpty()) {
+      chunks.add(current);
+    }
+    return chunks;
+  }
+
+  private List<SimpleImagingScan> readChunk(FileChannel channel, List<ImzMLSpectrum> chunk)
+      throws IOException {
+    long start = Long.MAX_VALUE;
+    long end = Long.MIN_VALUE;
+    for (ImzMLSpectrum spectrum : chunk) {
+      start = Math.min(start, start(spectrum));
+      end = Math.max(end, end(spectrum));
+    }
+    final MappedByteBuffer buffer = map(channel, start, end);
+
+    final List<SimpleImagingScan> scans = new ArrayList<>(chunk.size());
+    for (ImzMLSpectrum spectrum : chunk) {
+      final BinaryArray intensityArray = spectrum.intensityArray();
+      final double[] intensities = new double[intensityArray.length()];
+      intensityArray.dataType().decode(buffer, (int) (intensityArray.offset() - start),
+          intensities);
+
+      final SharedMzs shared = metadata.continuous() ? sharedMzs.get(spectrum.mzArray().offset())
+          : null;
+      final double[] mzs;
+      if (shared != null) {
+        mzs = shared.mzs();
+      } else {
+        final BinaryArray mzArray = spectrum.mzArray();
+        mzs = new double[mzArray.length()];
+        mzArray.dataType().decode(buffer, (int) (mzArray.offset() - start), mzs);
+      }
+
+      // Auto-detect whether this scan is centroided
+      final MassSpectrumType spectrumType = ScanUtils.detectSpectrumType(mzs, intensities);
+
+      final SimpleImagingScan scan;
+      if (shared != null && shared.stored() != null && mzs.length == intensities.length) {
+        scan = new SimpleImagingScan(dataFile, spectrum.scanNumber(), spectrum.msLevel(),
+            spectrum.retentionTime(), spectrum.precursorMz(), spectrum.precursorCharge(),
+            shared.stored(),
+            StorageUtils.storeValuesToDoubleBuffer(dataFile.getMemoryMapStorage(), intensities),
+            spectrumType, spectrum.polarity(), spectrum.scanDefinition(), null,
+            spectrum.coordinates());
+      } else {
+        scan = new SimpleImagingScan(dataFile, spectrum.scanNumber(), spectrum.msLevel(),
+            spectrum.retentionTime(), spectrum.precursorMz(), spectrum.precursorCharge(),
+            shared != null ? mzs.clone() : mzs, intensities, spectrumType, spectrum.polarity(),
+            spectrum.scanDefinition(), null, spectrum.coordinates());
+      }
+      scans.add(scan);
+      processedSpectra.incrementAndGet();
+    }
+    return scans;
+  }
+
+  private MappedByteBuffer map(FileChannel channel, long start, long end) throws IOException {
+    if (end - start > Integer.MAX_VALUE) {
+      throw new IOException(
+          "Cannot map " + (end - start) + " bytes of " + ibdFile + " at once. Spectrum too large.");
+    }
+    if (end > channel.size()) {
+      throw new IOException(
+          "Binary data ends at byte " + end + " but " + ibdFile + " only has " + channel.size()
+              + " bytes.");
+    }
+    final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, start, end - start);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    return buffer;
+  }
+
+  /**
+   * First byte of the spectrum in this chunk. The shared m/z array in continuous mode is not part of
+   * the chunk.
+   */
+  private long start(ImzMLSpectrum spectrum) {
+    final long intensityStart = spectrum.intensityArray().offset();
+    return metadata.continuous() ? intensityStart
+        : Math.min(intensityStart, spectrum.mzArray().offset());
+  }
+
+  private long end(ImzMLSpectrum spectrum) {
+    final long intensityEnd = spectrum.intensityArray().end();
+    return metadata.continuous() ? intensityEnd
+        : Math.max(intensityEnd, spectrum.mzArray().end());
+  }
+
+  private static boolean isSortedAscending(double[] values) {
+    for (int i = 1; i < values.length; i++) {
+      if (values[i] < values[i - 1]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param mzs    the decoded m/z values
+   * @param stored the stored values or null if the values are not sorted and every spectrum needs
+   *               to be sorted
+   */
+  private record SharedMzs(double[] mzs, @Nullable DoubleBuffer stored) {
+
+  }
+}
@@ -74,6 +74,18 @@ public class ImagingParameters {
   private Pattern pattern;
   private ScanDirection scanDirection;
 
+  /**
+   * Default parameters (1 spectrum per pixel, top left start, horizontal fly back). Used by parsers
+   * that set the values individually.
+   */
+  public ImagingParameters() {
+    spectraPerPixel = 1;
+    vStart = VerticalStart.TOP;
+    hStart = HorizontalStart.LEFT;
+    pattern = Pattern.FLY_BACK;
+    scanDirection = ScanDirection.HORIZONTAL;
+  }
+
   public ImagingParameters(TDFMetaDataTable metaDataTable,
       TDFMaldiFrameInfoTable maldiFrameInfoTable, TDFMaldiFrameLaserInfoTable laserInfoTable) {
     try {
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_imzml;
+
+import java.nio.ByteBuffer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Binary data types of arrays in the imzML .ibd file. Values are stored little endian.
+ */
+public enum ImzMLDataType {
+
+  FLOAT32("MS:1000521", 4), FLOAT64("MS:1000523", 8), INT32("MS:1000519", 4), INT64("MS:1000522",
+      8);
+
+  private final String accession;
+  private final int bytes;
+
+  ImzMLDataType(String accession, int bytes) {
+    this.accession = accession;
+    this.bytes = bytes;
+  }
+
+  @Nullable
+  public static ImzMLDataType forAccession(String accession) {
+    for (ImzMLDataType type : values()) {
+      if (type.accession.equals(accession)) {
+        return type;
+      }
+    }
+    return null;
+  }
+
+  public int getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Decodes values from a little endian buffer
+   *
+   * @param buffer   the source buffer
+   * @param position absolute position of the first value in the buffer
+   * @param dst      the destination
+   */
+  public void decode(ByteBuffer buffer, int position, double[] dst) {
+    switch (this) {
+      case FLOAT32 -> {
+        for (int i = 0; i < dst.length; i++) {
+          dst[i] = buffer.getFloat(position + i * 4);
+        }
+      }
+      case FLOAT64 -> {
+        for (int i = 0; i < dst.length; i++) {
+          dst[i] = buffer.getDouble(position + i * 8);
+        }
+      }
+      case INT32 -> {
+        for (int i = 0; i < dst.length; i++) {
+          dst[i] = buffer.getInt(position + i * 4);
+        }
+      }
+      case INT64 -> {
+        for (int i = 0; i < dst.length; i++) {
+          dst[i] = buffer.getLong(position + i * 8);
+        }
+      }
+    }
+  }
+}
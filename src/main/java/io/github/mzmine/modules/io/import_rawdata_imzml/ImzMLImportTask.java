@@ -26,6 +26,7 @@
 package io.github.mzmine.modules.io.import_rawdata_imzml;
 
 import com.alanmrace.jimzmlparser.imzml.ImzML;
+import com.google.common.collect.Range;
 import com.alanmrace.jimzmlparser.mzml.BinaryDataArray;
 import com.alanmrace.jimzmlparser.mzml.BinaryDataArrayList;
 import com.alanmrace.jimzmlparser.mzml.CVParam;
@@ -49,6 +50,7 @@ import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
 import io.github.mzmine.util.ExceptionUtils;
 import io.github.mzmine.util.scans.ScanUtils;
 import java.io.File;
@@ -57,15 +59,18 @@ import java.time.Instant;
 import java.util.Date;
 import java.util.Hashtable;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * This class reads mzML 1.0 and 1.1.0 files (http://www.psidev.info/index.php?q=node/257) using the
- * jmzml library (http://code.google.com/p/jmzml/).
+ * Reads imzML files. The metadata is parsed from the XML and the spectra are read from the memory
+ * mapped .ibd file in parallel (see {@link IbdSpectraReader}). Files that are not supported by this
+ * reader (e.g., compressed binary data) are parsed with the jimzMLParser library.
  */
 public class ImzMLImportTask extends AbstractTask {
 
@@ -77,6 +82,7 @@ public class ImzMLImportTask extends AbstractTask {
   private final ParameterSet parameters;
   private final Class<? extends MZmineModule> module;
   private int totalScans = 0, parsedScans;
+  private IbdSpectraReader ibdReader;
 
   private int lastScanNumber = 0;
 
@@ -105,7 +111,9 @@ public class ImzMLImportTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
-    return totalScans == 0 ? 0 : (double) parsedScans / totalScans;
+    final IbdSpectraReader reader = ibdReader;
+    final int parsed = reader != null ? reader.getProcessedSpectra() : parsedScans;
+    return totalScans == 0 ? 0 : (double) parsed / totalScans;
   }
 
   /**
@@ -117,6 +125,20 @@ public class ImzMLImportTask extends AbstractTask {
     setStatus(TaskStatus.PROCESSING);
     logger.info("Started parsing file " + file);
 
+    try {
+      final ImzMLMetadata metadata = ImzMLMetadataParser.parse(file);
+      final File ibdFile = IbdSpectraReader.findIbdFile(file);
+      if (metadata.unsupported() == null && ibdFile != null) {
+        importFromIbd(metadata, ibdFile);
+        return;
+      }
+      logger.info(() -> "Using the imzML library to parse " + file + ": " + (ibdFile == null
+          ? "no .ibd file found" : metadata.unsupported()));
+    } catch (Exception e) {
+      logger.log(Level.WARNING,
+          "Cannot read the imzML metadata of " + file + ", using the imzML library instead", e);
+    }
+
     ImzML imzml;
     try {
       imzml = ImzMLHandler.parseimzML(file.getAbsolutePath());
@@ -205,6 +227,58 @@ public class ImzMLImportTask extends AbstractTask {
 
   }
 
+  /**
+   * Reads the spectra directly from the memory mapped .ibd file in parallel. Only the metadata is
+   * parsed from the imzML file.
+   */
+  private void importFromIbd(ImzMLMetadata metadata, File ibdFile) {
+    try {
+      totalScans = metadata.spectra().size();
+      ibdReader = new IbdSpectraReader(ibdFile, metadata, newMZmineFile,
+          TaskThreadPool.getMaxThreads());
+      final List<SimpleImagingScan> scans = ibdReader.readScans(this::isCanceled);
+      if (isCanceled()) {
+        return;
+      }
+
+      double minMZ = Double.POSITIVE_INFINITY;
+      double maxMZ = Double.NEGATIVE_INFINITY;
+      for (SimpleImagingScan scan : scans) {
+        newMZmineFile.addScan(scan);
+        final Range<Double> mzRange = scan.getDataPointMZRange();
+        if (mzRange != null) {
+          minMZ = Math.min(minMZ, mzRange.lowerEndpoint());
+          maxMZ = Math.max(maxMZ, mzRange.upperEndpoint());
+        }
+      }
+      parsedScans = scans.size();
+
+      final ImagingParameters imagingParameters = metadata.imagingParameters();
+      if (Double.isFinite(minMZ)) {
+        imagingParameters.setMinMZ(minMZ);
+        imagingParameters.setMaxMZ(maxMZ);
+      }
+      newMZmineFile.setImagingParam(imagingParameters);
+      newMZmineFile.getAppliedMethods()
+          .add(new SimpleFeatureListAppliedMethod(module, parameters, getModuleCallDate()));
+      project.addFile(newMZmineFile);
+    } catch (Throwable e) {
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage("Error parsing imzML: " + ExceptionUtils.exceptionToString(e));
+      logger.log(Level.SEVERE, "Error parsing imzML " + file, e);
+      return;
+    }
+
+    if (parsedScans == 0) {
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage("No scans found");
+      return;
+    }
+
+    logger.info("Finished parsing " + file + ", parsed " + parsedScans + " scans");
+    setStatus(TaskStatus.FINISHED);
+  }
+
   private int convertScanIdToScanNumber(String scanId) {
 
     if (scanIdTable.containsKey(scanId)) {
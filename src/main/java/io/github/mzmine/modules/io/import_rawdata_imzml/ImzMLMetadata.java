@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_imzml;
+
+import java.util.List;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The metadata of an imzML file without any spectral data, see {@link ImzMLMetadataParser}.
+ *
+ * @param continuous        continuous mode files share one m/z array for all spectra, processed
+ *                          mode files have an m/z array for each spectrum
+ * @param imagingParameters the image dimensions and scan settings
+ * @param spectra           all MS spectra in the order of the file
+ * @param unsupported       reason why the binary data cannot be read directly (e.g., compression)
+ *                          or null
+ */
+public record ImzMLMetadata(boolean continuous, ImagingParameters imagingParameters,
+                            List<ImzMLSpectrum> spectra, @Nullable String unsupported) {
+
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_imzml;
+
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.modules.io.import_rawdata_imzml.ImagingParameters.HorizontalStart;
+import io.github.mzmine.modules.io.import_rawdata_imzml.ImagingParameters.Pattern;
+import io.github.mzmine.modules.io.import_rawdata_imzml.ImagingParameters.ScanDirection;
+import io.github.mzmine.modules.io.import_rawdata_imzml.ImagingParameters.VerticalStart;
+import io.github.mzmine.modules.io.import_rawdata_imzml.ImzMLSpectrum.BinaryArray;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streams through the imzML XML and only reads the metadata: scan settings, coordinates and the
+ * offsets and lengths of the binary arrays in the .ibd file. The spectral data is read by
+ * {@link IbdSpectraReader}.
+ */
+public class ImzMLMetadataParser {
+
+  private static final java.util.regex.Pattern SCAN_NUMBER_PATTERN = java.util.regex.Pattern.compile(
+      "scan=([0-9]+)");
+
+  // file content
+  private static final String CONTINUOUS = "IMS:1000030";
+  private static final String PROCESSED = "IMS:1000031";
+  // scan settings
+  private static final String MAX_PIXEL_X = "IMS:1000042";
+  private static final String MAX_PIXEL_Y = "IMS:1000043";
+  private static final String MAX_DIMENSION_X = "IMS:1000044";
+  private static final String MAX_DIMENSION_Y = "IMS:1000045";
+  private static final String PIXEL_SIZE_X = "IMS:1000046";
+  private static final String PIXEL_SIZE_Y = "IMS:1000047";
+  private static final String SCAN_PATTERN_MEANDERING = "IMS:1000410";
+  private static final String SCAN_PATTERN_RANDOM_ACCESS = "IMS:1000412";
+  private static final String SCAN_PATTERN_FLYBACK = "IMS:1000413";
+  private static final String SCAN_TYPE_VERTICAL = "IMS:1000481";
+  private static final String LINE_SCAN_RIGHT_LEFT = "IMS:1000490";
+  private static final String LINE_SCAN_BOTTOM_UP = "IMS:1000492";
+  // spectrum
+  private static final String MS_LEVEL = "MS:1000511";
+  private static final String POSITIVE = "MS:1000130";
+  private static final String NEGATIVE = "MS:1000129";
+  private static final String FILTER_STRING = "MS:1000512";
+  private static final String NOT_MS_SPECTRUM = "MS:1000804";
+  private static final String SCAN_START_TIME = "MS:1000016";
+  private static final String POSITION_X = "IMS:1000050";
+  private static final String POSITION_Y = "IMS:1000051";
+  private static final String POSITION_Z = "IMS:1000052";
+  private static final String SELECTED_ION_MZ = "MS:1000744";
+  private static final String SELECTED_ION_MZ_OLD = "MS:1000040";
+  private static final String CHARGE = "MS:1000041";
+  // binary data arrays
+  private static final String MZ_ARRAY = "MS:1000514";
+  private static final String INTENSITY_ARRAY = "MS:1000515";
+  private static final String ZLIB_COMPRESSION = "MS:1000574";
+  private static final String EXTERNAL_OFFSET = "IMS:1000102";
+  private static final String EXTERNAL_LENGTH = "IMS:1000103";
+  private static final String EXTERNAL_ENCODED_LENGTH = "IMS:1000104";
+
+  private final Map<String, List<String[]>> paramGroups = new HashMap<>();
+  private final Map<String, Integer> scanIdTable = new HashMap<>();
+  private final ImagingParameters imagingParameters = new ImagingParameters();
+  private final List<ImzMLSpectrum> spectra = new ArrayList<>();
+  private boolean continuous = false;
+  private String unsupported = null;
+  private int lastScanNumber = 0;
+  private boolean pixelSizeY = false;
+
+  // current element state
+  private String currentGroup;
+  private Element context = Element.NONE;
+  private SpectrumBuilder spectrum;
+  private ArrayBuilder array;
+
+  private ImzMLMetadataParser() {
+  }
+
+  /**
+   * Parses the metadata of an imzML file
+   *
+   * @param imzML the imzML file
+   * @return the metadata
+   */
+  public static ImzMLMetadata parse(File imzML) throws IOException, XMLStreamException {
+    final ImzMLMetadataParser parser = new ImzMLMetadataParser();
+    try (InputStream in = new BufferedInputStream(new FileInputStream(imzML))) {
+      parser.read(in);
+    }
+    return parser.finish();
+  }
+
+  /**
+   * Parses the metadata from a stream
+   */
+  static ImzMLMetadata parse(InputStream in) throws XMLStreamException {
+    final ImzMLMetadataParser parser = new ImzMLMetadataParser();
+    parser.read(in);
+    return parser.finish();
+  }
+
+  private void read(InputStream in) throws XMLStreamException {
+    final XMLInputFactory xif = XMLInputFactory.newInstance();
+    final XMLStreamReader reader = xif.createXMLStreamReader(in);
+    try {
+      while (reader.hasNext()) {
+        final int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          startElement(reader);
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          endElement(reader.getLocalName());
+        }
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private void startElement(XMLStreamReader reader) {
+    switch (reader.getLocalName()) {
+      case "referenceableParamGroup" -> {
+        currentGroup = reader.getAttributeValue(null, "id");
+        paramGroups.put(currentGroup, new ArrayList<>());
+      }
+      case "fileContent" -> context = Element.FILE_CONTENT;
+      case "scanSettings" -> context = Element.SCAN_SETTINGS;
+      case "spectrum" -> {
+        spectrum = new SpectrumBuilder(reader.getAttributeValue(null, "id"));
+        context = Element.SPECTRUM;
+      }
+      case "scan" -> context = spectrum != null ? Element.SCAN : context;
+      case "selectedIon" -> context = spectrum != null ? Element.SELECTED_ION : context;
+      case "binaryDataArray" -> {
+        if (spectrum != null) {
+          array = new ArrayBuilder();
+          context = Element.BINARY_DATA_ARRAY;
+        }
+      }
+      case "cvParam" -> {
+        final String accession = reader.getAttributeValue(null, "accession");
+        final String value = reader.getAttributeValue(null, "value");
+        if (currentGroup != null) {
+          paramGroups.get(currentGroup).add(new String[]{accession, value});
+        } else {
+          handleCvParam(accession, value);
+        }
+      }
+      case "referenceableParamGroupRef" -> {
+        final List<String[]> group = paramGroups.get(reader.getAttributeValue(null, "ref"));
+        if (group != null) {
+          for (String[] param : group) {
+            handleCvParam(param[0], param[1]);
+          }
+        }
+      }
+      default -> {
+      }
+    }
+  }
+
+  private void endElement(String name) {
+    switch (name) {
+      case "referenceableParamGroup" -> currentGroup = null;
+      case "fileContent", "scanSettings" -> context = Element.NONE;
+      case "scan", "selectedIon" -> context = spectrum != null ? Element.SPECTRUM : Element.NONE;
+      case "binaryDataArray" -> {
+        if (spectrum != null) {
+          if (array.isMz) {
+            spectrum.mzArray = array;
+          } else if (array.isIntensity) {
+            spectrum.intensityArray = array;
+          }
+          array = null;
+          context = Element.SPECTRUM;
+        }
+      }
+      case "spectrum" -> {
+        addSpectrum(spectrum);
+        spectrum = null;
+        context = Element.NONE;
+      }
+      default -> {
+      }
+    }
+  }
+
+  private void handleCvParam(String accession, String value) {
+    switch (context) {
+      case FILE_CONTENT -> {
+        if (CONTINUOUS.equals(accession)) {
+          continuous = true;
+        } else if (PROCESSED.equals(accession)) {
+          continuous = false;
+        }
+      }
+      case SCAN_SETTINGS -> handleScanSetting(accession, value);
+      case SPECTRUM -> {
+        switch (accession) {
+          case MS_LEVEL -> spectrum.msLevel = Integer.parseInt(value);
+          case POSITIVE -> spectrum.polarity = PolarityType.POSITIVE;
+          case NEGATIVE -> spectrum.polarity = PolarityType.NEGATIVE;
+          case FILTER_STRING -> spectrum.scanDefinition = value;
+          case NOT_MS_SPECTRUM -> spectrum.isMs = false;
+          default -> {
+          }
+        }
+      }
+      case SCAN -> {
+        switch (accession) {
+          case SCAN_START_TIME -> spectrum.retentionTime = Float.parseFloat(value);
+          case POSITION_X -> spectrum.x = Integer.parseInt(value) - 1;
+          case POSITION_Y -> spectrum.y = Integer.parseInt(value) - 1;
+          case POSITION_Z -> spectrum.z = Integer.parseInt(value) - 1;
+          case POSITIVE -> spectrum.polarity = PolarityType.POSITIVE;
+          case NEGATIVE -> spectrum.polarity = PolarityType.NEGATIVE;
+          case FILTER_STRING -> spectrum.scanDefinition = value;
+          default -> {
+          }
+        }
+      }
+      case SELECTED_ION -> {
+        switch (accession) {
+          case SELECTED_ION_MZ, SELECTED_ION_MZ_OLD -> {
+            if (spectrum.precursorMz == 0d) {
+              spectrum.precursorMz = Double.parseDouble(value);
+            }
+          }
+          case CHARGE -> spectrum.precursorCharge = Integer.parseInt(value);
+          default -> {
+          }
+        }
+      }
+      case BINARY_DATA_ARRAY -> {
+        switch (accession) {
+          case MZ_ARRAY -> array.isMz = true;
+          case INTENSITY_ARRAY -> array.isIntensity = true;
+          case EXTERNAL_OFFSET -> array.offset = Long.parseLong(value);
+          case EXTERNAL_LENGTH -> array.length = Integer.parseInt(value);
+          case EXTERNAL_ENCODED_LENGTH -> array.encodedLength = Long.parseLong(value);
+          case ZLIB_COMPRESSION -> unsupported = "Compressed binary data";
+          default -> {
+            final ImzMLDataType type = ImzMLDataType.forAccession(accession);
+            if (type != null) {
+              array.dataType = type;
+            }
+          }
+        }
+      }
+      case NONE -> {
+      }
+    }
+  }
+
+  private void handleScanSetting(String accession, String value) {
+    switch (accession) {
+      case MAX_PIXEL_X -> imagingParameters.setMaxNumberOfPixelX(Integer.parseInt(value));
+      case MAX_PIXEL_Y -> imagingParameters.setMaxNumberOfPixelY(Integer.parseInt(value));
+      case MAX_DIMENSION_X -> imagingParameters.setLateralWidth(Double.parseDouble(value));
+      case MAX_DIMENSION_Y -> imagingParameters.setLateralHeight(Double.parseDouble(value));
+      case PIXEL_SIZE_X -> {
+        imagingParameters.setPixelWidth(Double.parseDouble(value));
+        if (!pixelSizeY) {
+          imagingParameters.setPixelHeight(Double.parseDouble(value));
+        }
+      }
+      case PIXEL_SIZE_Y -> {
+        imagingParameters.setPixelHeight(Double.parseDouble(value));
+        pixelSizeY = true;
+      }
+      case SCAN_PATTERN_MEANDERING -> imagingParameters.setPattern(Pattern.MEANDER);
+      case SCAN_PATTERN_FLYBACK -> imagingParameters.setPattern(Pattern.FLY_BACK);
+      case SCAN_PATTERN_RANDOM_ACCESS -> imagingParameters.setPattern(Pattern.RANDOM);
+      case SCAN_TYPE_VERTICAL -> imagingParameters.setScanDirection(ScanDirection.VERTICAL);
+      case LINE_SCAN_RIGHT_LEFT -> imagingParameters.sethStart(HorizontalStart.RIGHT);
+      case LINE_SCAN_BOTTOM_UP -> imagingParameters.setvStart(VerticalStart.BOTTOM);
+      default -> {
+      }
+    }
+  }
+
+  private void addSpectrum(SpectrumBuilder builder) {
+    // Ignore spectra that are not MS, e.g. UV
+    if (!builder.isMs) {
+      return;
+    }
+    if (builder.mzArray == null || builder.intensityArray == null) {
+      unsupported = "Spectrum " + builder.id + " has no external m/z or intensity array";
+      return;
+    }
+    if (builder.mzArray.dataType == null || builder.intensityArray.dataType == null) {
+      unsupported = "Spectrum " + builder.id + " has an unknown binary data type";
+      return;
+    }
+
+    final Coordinates coordinates =
+        builder.x >= 0 && builder.y >= 0 ? new Coordinates(builder.x, builder.y,
+            Math.max(builder.z, 0)) : null;
+    spectra.add(new ImzMLSpectrum(convertScanIdToScanNumber(builder.id), builder.msLevel,
+        builder.retentionTime, builder.polarity,
+        builder.scanDefinition != null ? builder.scanDefinition : builder.id, builder.precursorMz,
+        builder.precursorCharge, coordinates, builder.mzArray.build(),
+        builder.intensityArray.build()));
+  }
+
+  private int convertScanIdToScanNumber(String scanId) {
+    final Integer known = scanIdTable.get(scanId);
+    if (known != null) {
+      return known;
+    }
+
+    // Some vendors include scan=XX in the ID, some don't
+    final Matcher matcher = SCAN_NUMBER_PATTERN.matcher(scanId);
+    final int scanNumber;
+    if (matcher.find()) {
+      scanNumber = Integer.parseInt(matcher.group(1));
+    } else {
+      scanNumber = ++lastScanNumber;
+    }
+    scanIdTable.put(scanId, scanNumber);
+    return scanNumber;
+  }
+
+  private ImzMLMetadata finish() {
+    // image dimensions from coordinates if not specified in the scan settings
+    int maxX = 0;
+    int maxY = 0;
+    int maxZ = 0;
+    for (ImzMLSpectrum s : spectra) {
+      if (s.coordinates() != null) {
+        maxX = Math.max(maxX, s.coordinates().getX() + 1);
+        maxY = Math.max(maxY, s.coordinates().getY() + 1);
+        maxZ = Math.max(maxZ, s.coordinates().getZ() + 1);
+      }
+    }
+    if (imagingParameters.getMaxNumberOfPixelX() <= 0) {
+      imagingParameters.setMaxNumberOfPixelX(maxX);
+    }
+    if (imagingParameters.getMaxNumberOfPixelY() <= 0) {
+      imagingParameters.setMaxNumberOfPixelY(maxY);
+    }
+    imagingParameters.setMaxNumberOfPixelZ(Math.max(1, maxZ));
+    if (Double.compare(imagingParameters.getLateralWidth(), 0d) == 0) {
+      imagingParameters.setLateralWidth(
+          imagingParameters.getMaxNumberOfPixelX() * imagingParameters.getPixelWidth());
+    }
+    if (Double.compare(imagingParameters.getLateralHeight(), 0d) == 0) {
+      imagingParameters.setLateralHeight(
+          imagingParameters.getMaxNumberOfPixelY() * imagingParameters.getPixelHeight());
+    }
+    return new ImzMLMetadata(continuous, imagingParameters, List.copyOf(spectra), unsupported);
+  }
+
+  private enum Element {
+    NONE, FILE_CONTENT, SCAN_SETTINGS, SPECTRUM, SCAN, SELECTED_ION, BINARY_DATA_ARRAY
+  }
+
+  private static class SpectrumBuilder {
+
+    private final String id;
+    private int msLevel = 1;
+    private float retentionTime = 0f;
+    private PolarityType polarity = PolarityType.UNKNOWN;
+    private String scanDefinition;
+    private double precursorMz = 0d;
+    private int precursorCharge = 0;
+    private int x = -1;
+    private int y = -1;
+    private int z = -1;
+    private boolean isMs = true;
+    private ArrayBuilder mzArray;
+    private ArrayBuilder intensityArray;
+
+    private SpectrumBuilder(String id) {
+      this.id = id;
+    }
+  }
+
+  private static class ArrayBuilder {
+
+    private boolean isMz;
+    private boolean isIntensity;
+    private long offset;
+    private int length;
+    private long encodedLength;
+    private ImzMLDataType dataType;
+
+    private BinaryArray build() {
+      return new BinaryArray(offset, length, encodedLength, dataType);
+    }
+  }
+}
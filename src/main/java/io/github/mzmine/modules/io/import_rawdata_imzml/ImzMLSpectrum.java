@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_imzml;
+
+import io.github.mzmine.datamodel.PolarityType;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Metadata of a single spectrum in an imzML file and the location of its data in the .ibd file.
+ *
+ * @param scanNumber      scan number derived from the spectrum id
+ * @param retentionTime   scan start time
+ * @param precursorMz     precursor m/z or 0
+ * @param precursorCharge precursor charge or 0
+ * @param coordinates     pixel coordinates (0 based) or null
+ */
+public record ImzMLSpectrum(int scanNumber, int msLevel, float retentionTime,
+                            PolarityType polarity, String scanDefinition, double precursorMz,
+                            int precursorCharge, @Nullable Coordinates coordinates,
+                            BinaryArray mzArray, BinaryArray intensityArray) {
+
+  /**
+   * Location of a binary data array in the .ibd file
+   *
+   * @param offset        byte offset in the .ibd file
+   * @param length        number of values
+   * @param encodedLength number of bytes
+   * @param dataType      the binary data type
+   */
+  public record BinaryArray(long offset, int length, long encodedLength, ImzMLDataType dataType) {
+
+    public long end() {
+      return offset + (long) length * dataType.getBytes();
+    }
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_mzxml;
+
+import com.google.common.base.Strings;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.modules.io.import_rawdata_mzxml.MzXMLScanDecoder.MzXMLScan;
+import io.github.mzmine.util.CompressionUtils;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.zip.DataFormatException;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.Duration;
+import org.jetbrains.annotations.NotNull;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Sequential SAX parser for mzXML files without a valid scan index. Scans are passed to the
+ * consumer in the order of their start tags, nested scans after their parent scan.
+ */
+class MzXMLSaxHandler extends DefaultHandler {
+
+  private final IntConsumer scanCountConsumer;
+  private final ScanConsumer scanConsumer;
+  private final BooleanSupplier isCanceled;
+  private final DatatypeFactory dataTypeFactory;
+  private final Date currentDate = new Date();
+
+  // 256 kilo-chars buffer
+  private final StringBuilder charBuffer = new StringBuilder(1 << 18);
+  // scans of the current top level scan in the order of their start tags
+  private final List<ScanValues> scans = new ArrayList<>();
+  // currently open scan elements
+  private final Deque<ScanValues> openScans = new ArrayDeque<>();
+  private boolean compressed;
+  private boolean doublePrecision;
+
+  /**
+   * @param scanCountConsumer receives the number of scans if specified in the file
+   * @param scanConsumer      receives the scans in file order
+   * @param isCanceled        stops parsing if true
+   */
+  MzXMLSaxHandler(@NotNull IntConsumer scanCountConsumer, @NotNull ScanConsumer scanConsumer,
+      @NotNull BooleanSupplier isCanceled) {
+    this.scanCountConsumer = scanCountConsumer;
+    this.scanConsumer = scanConsumer;
+    this.isCanceled = isCanceled;
+    try {
+      dataTypeFactory = DatatypeFactory.newInstance();
+    } catch (DatatypeConfigurationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void startElement(String namespaceURI, String lName, String qName, Attributes attrs)
+      throws SAXException {
+    if (isCanceled.getAsBoolean()) {
+      throw new SAXException("Parsing Cancelled");
+    }
+
+    // <msRun>
+    if (qName.equals("msRun")) {
+      final String s = attrs.getValue("scanCount");
+      if (s != null) {
+        scanCountConsumer.accept(Integer.parseInt(s));
+      }
+    }
+
+    // <scan>
+    if (qName.equalsIgnoreCase("scan")) {
+      final ScanValues scan = new ScanValues();
+      /*
+       * Only num, msLevel & peaksCount values are required according with mzxml standard, the
+       * others are optional
+       */
+      scan.scanNumber = Integer.parseInt(attrs.getValue("num"));
+
+      // mzXML files with empty msLevel attribute do exist, so we use 1 as default
+      if (!Strings.isNullOrEmpty(attrs.getValue("msLevel"))) {
+        scan.msLevel = Integer.parseInt(attrs.getValue("msLevel"));
+      }
+      if (scan.msLevel > 9) {
+        throw new SAXException("The value of msLevel is bigger than 10");
+      }
+
+      final String filterLine = attrs.getValue("filterLine");
+      scan.scanDefinition =
+          Strings.isNullOrEmpty(filterLine) ? attrs.getValue("scanType") : filterLine;
+
+      final String polarity = attrs.getValue("polarity");
+      if (polarity != null && polarity.length() == 1) {
+        scan.polarity = PolarityType.fromSingleChar(polarity);
+      }
+      scan.peaksCount = Integer.parseInt(attrs.getValue("peaksCount"));
+
+      final String retentionTime = attrs.getValue("retentionTime");
+      if (retentionTime == null) {
+        throw new SAXException("This file does not contain retentionTime for scans");
+      }
+      final Duration dur = dataTypeFactory.newDuration(retentionTime.trim());
+      scan.retentionTime = (float) (dur.getTimeInMillis(currentDate) / 1000d / 60d);
+
+      scans.add(scan);
+      openScans.push(scan);
+    }
+
+    // <peaks>
+    if (qName.equalsIgnoreCase("peaks")) {
+      // clean the current char buffer for the new element
+      charBuffer.setLength(0);
+      final String compressionType = attrs.getValue("compressionType");
+      compressed = compressionType != null && !compressionType.equals("none");
+      doublePrecision = "64".equals(attrs.getValue("precision"));
+    }
+
+    // <precursorMz>
+    if (qName.equalsIgnoreCase("precursorMz")) {
+      // clean the current char buffer for the new element
+      charBuffer.setLength(0);
+      final String precursorCharge = attrs.getValue("precursorCharge");
+      if (!Strings.isNullOrEmpty(precursorCharge) && !openScans.isEmpty()) {
+        openScans.peek().precursorCharge = Integer.parseInt(precursorCharge);
+      }
+    }
+  }
+
+  @Override
+  public void endElement(String namespaceURI, String sName, String qName) throws SAXException {
+    // </scan>
+    if (qName.equalsIgnoreCase("scan")) {
+      openScans.pop();
+      // the top level scan and all its nested scans are complete
+      if (openScans.isEmpty()) {
+        try {
+          for (ScanValues scan : scans) {
+            scanConsumer.accept(scan.build());
+          }
+        } catch (IOException e) {
+          throw new SAXException("Parsing error: " + e.getMessage(), e);
+        }
+        scans.clear();
+      }
+      return;
+    }
+
+    if (openScans.isEmpty()) {
+      return;
+    }
+    final ScanValues scan = openScans.peek();
+
+    // <precursorMz>
+    if (qName.equalsIgnoreCase("precursorMz")) {
+      final String textContent = charBuffer.toString().trim();
+      scan.precursorMz = textContent.isEmpty() ? 0d : Double.parseDouble(textContent);
+      return;
+    }
+
+    // <peaks>
+    if (qName.equalsIgnoreCase("peaks")) {
+      readPeaks(scan);
+    }
+  }
+
+  private void readPeaks(ScanValues scan) throws SAXException {
+    byte[] peakBytes = Base64.getMimeDecoder().decode(charBuffer.toString());
+    if (compressed) {
+      try {
+        peakBytes = CompressionUtils.decompress(peakBytes);
+      } catch (DataFormatException e) {
+        throw new SAXException("Corrupt compressed peaks in scan " + scan.scanNumber, e);
+      }
+    }
+
+    // Always respect this order pairOrder="m/z-int"
+    final DataInputStream peakStream = new DataInputStream(new ByteArrayInputStream(peakBytes));
+    scan.mzs = new double[scan.peaksCount];
+    scan.intensities = new double[scan.peaksCount];
+    try {
+      for (int i = 0; i < scan.peaksCount; i++) {
+        if (doublePrecision) {
+          scan.mzs[i] = peakStream.readDouble();
+          scan.intensities[i] = peakStream.readDouble();
+        } else {
+          scan.mzs[i] = peakStream.readFloat();
+          scan.intensities[i] = peakStream.readFloat();
+        }
+      }
+    } catch (IOException eof) {
+      throw new SAXException("Corrupt mzXML file, scan " + scan.scanNumber, eof);
+    }
+  }
+
+  @Override
+  public void characters(char[] buf, int offset, int len) {
+    charBuffer.append(buf, offset, len);
+  }
+
+  /**
+   * Receives the parsed scans
+   */
+  @FunctionalInterface
+  interface ScanConsumer {
+
+    void accept(MzXMLScan scan) throws IOException;
+  }
+
+  private static class ScanValues {
+
+    private int scanNumber;
+    private int msLevel = 1;
+    private float retentionTime;
+    private PolarityType polarity = PolarityType.UNKNOWN;
+    private String scanDefinition;
+    private double precursorMz = 0d;
+    private int precursorCharge = 0;
+    private int peaksCount;
+    private double[] mzs = new double[0];
+    private double[] intensities = new double[0];
+
+    private MzXMLScan build() {
+      return new MzXMLScan(scanNumber, msLevel, retentionTime, polarity, scanDefinition,
+          precursorMz, precursorCharge, mzs, intensities);
+    }
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_mzxml;
+
+import com.google.common.base.Strings;
+import io.github.mzmine.datamodel.PolarityType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.Duration;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Decodes single scan elements of an mzXML file. The scan attributes are read with a StAX reader,
+ * the base64 encoded peaks are decoded directly from the file bytes. All buffers are reused between
+ * scans, therefore, an instance must only be used by one thread.
+ */
+public class MzXMLScanDecoder implements AutoCloseable {
+
+  private static final byte[] BASE64_VALUES = new byte[128];
+
+  static {
+    Arrays.fill(BASE64_VALUES, (byte) -1);
+    final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    for (int i = 0; i < alphabet.length(); i++) {
+      BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+    }
+  }
+
+  private final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+  private final DatatypeFactory dataTypeFactory;
+  private final Inflater inflater = new Inflater();
+  private final Date currentDate = new Date();
+  private byte[] fragment = new byte[1 << 16];
+  private byte[] decoded = new byte[1 << 16];
+  private byte[] inflated = new byte[1 << 16];
+
+  public MzXMLScanDecoder() {
+    try {
+      dataTypeFactory = DatatypeFactory.newInstance();
+    } catch (DatatypeConfigurationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Decodes the scan that starts at the start offset. The scan element is not required to end
+   * before the end offset, e.g., for scans with nested MS2 scans, but the peaks need to.
+   *
+   * @param channel the mzXML file
+   * @param start   the start of the scan element
+   * @param end     the start of the next scan element or the end of the file
+   */
+  public MzXMLScan decode(@NotNull FileChannel channel, long start, long end)
+      throws IOException, XMLStreamException {
+    final long fragmentLength = end - start;
+    if (fragmentLength > Integer.MAX_VALUE - 8) {
+      throw new IOException("Scan at offset " + start + " is too large");
+    }
+    final int length = (int) fragmentLength;
+    if (fragment.length < length) {
+      fragment = new byte[length];
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(fragment, 0, length);
+    MzXMLScanOffsets.readFully(channel, buffer, start);
+    final int read = buffer.position();
+
+    final int peaksTagStart = indexOf(fragment, "<peaks", 0, read);
+    final int peaksTagEnd = peaksTagStart < 0 ? -1 : indexOf(fragment, ">", peaksTagStart, read);
+    final int peaksEnd = peaksTagEnd < 0 ? -1 : indexOf(fragment, "<", peaksTagEnd, read);
+    if (peaksEnd < 0) {
+      throw new IOException("No peaks found for scan at offset " + start);
+    }
+
+    // only the part until the end of the peaks start tag is parsed as xml
+    final MzXMLScanBuilder builder = new MzXMLScanBuilder();
+    final XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(
+        new ByteArrayInputStream(fragment, 0, peaksTagEnd + 1), "UTF-8");
+    try {
+      while (reader.hasNext()) {
+        final int event = reader.next();
+        if (event != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        final String name = reader.getLocalName();
+        if (name.equals("scan")) {
+          readScanAttributes(reader, builder);
+        } else if (name.equals("precursorMz")) {
+          final String charge = reader.getAttributeValue(null, "precursorCharge");
+          if (!Strings.isNullOrEmpty(charge)) {
+            builder.precursorCharge = Integer.parseInt(charge);
+          }
+          final String text = reader.getElementText().trim();
+          builder.precursorMz = text.isEmpty() ? 0d : Double.parseDouble(text);
+        } else if (name.equals("peaks")) {
+          builder.doublePrecision = "64".equals(reader.getAttributeValue(null, "precision"));
+          final String compression = reader.getAttributeValue(null, "compressionType");
+          builder.compressed = compression != null && !compression.equals("none");
+          break;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+
+    return decodePeaks(builder, peaksTagEnd + 1, peaksEnd);
+  }
+
+  private void readScanAttributes(XMLStreamReader reader, MzXMLScanBuilder builder)
+      throws IOException {
+    /*
+     * Only num, msLevel & peaksCount values are required according with mzxml standard, the
+     * others are optional
+     */
+    builder.scanNumber = Integer.parseInt(reader.getAttributeValue(null, "num"));
+
+    // mzXML files with empty msLevel attribute do exist, so we use 1 as default
+    final String msLevel = reader.getAttributeValue(null, "msLevel");
+    if (!Strings.isNullOrEmpty(msLevel)) {
+      builder.msLevel = Integer.parseInt(msLevel);
+    }
+    if (builder.msLevel > 9) {
+      throw new IOException("The value of msLevel is bigger than 10");
+    }
+
+    final String filterLine = reader.getAttributeValue(null, "filterLine");
+    builder.scanDefinition = Strings.isNullOrEmpty(filterLine) ? reader.getAttributeValue(null,
+        "scanType") : filterLine;
+
+    final String polarity = reader.getAttributeValue(null, "polarity");
+    if (polarity != null && polarity.length() == 1) {
+      builder.polarity = PolarityType.fromSingleChar(polarity);
+    }
+
+    builder.peaksCount = Integer.parseInt(reader.getAttributeValue(null, "peaksCount"));
+
+    final String retentionTime = reader.getAttributeValue(null, "retentionTime");
+    if (retentionTime == null) {
+      throw new IOException("This file does not contain retentionTime for scans");
+    }
+    final Duration dur = dataTypeFactory.newDuration(retentionTime.trim());
+    builder.retentionTime = (float) (dur.getTimeInMillis(currentDate) / 1000d / 60d);
+  }
+
+  private MzXMLScan decodePeaks(MzXMLScanBuilder builder, int from, int to) throws IOException {
+    final int valueBytes = builder.doublePrecision ? 8 : 4;
+    final int expectedBytes = builder.peaksCount * 2 * valueBytes;
+
+    int decodedLength = decodeBase64(from, to);
+    byte[] data = decoded;
+    if (builder.compressed) {
+      if (inflated.length < expectedBytes) {
+        inflated = new byte[expectedBytes];
+      }
+      inflater.reset();
+      inflater.setInput(decoded, 0, decodedLength);
+      try {
+        decodedLength = 0;
+        while (decodedLength < expectedBytes && !inflater.finished()) {
+          final int n = inflater.inflate(inflated, decodedLength, expectedBytes - decodedLength);
+          if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          decodedLength += n;
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Corrupt compressed peaks in scan " + builder.scanNumber, e);
+      }
+      data = inflated;
+    }
+    if (decodedLength < expectedBytes) {
+      throw new IOException("Corrupt mzXML file, scan " + builder.scanNumber + " has "
+          + decodedLength + " instead of " + expectedBytes + " bytes of peak data");
+    }
+
+    // Always respect this order pairOrder="m/z-int", mzXML uses network byte order
+    final ByteBuffer values = ByteBuffer.wrap(data).order(ByteOrder.BIG_ENDIAN);
+    final double[] mzs = new double[builder.peaksCount];
+    final double[] intensities = new double[builder.peaksCount];
+    for (int i = 0; i < builder.peaksCount; i++) {
+      if (builder.doublePrecision) {
+        mzs[i] = values.getDouble(i * 16);
+        intensities[i] = values.getDouble(i * 16 + 8);
+      } else {
+        mzs[i] = values.getFloat(i * 8);
+        intensities[i] = values.getFloat(i * 8 + 4);
+      }
+    }
+    return builder.build(mzs, intensities);
+  }
+
+  /**
+   * Decodes base64 encoded bytes of the fragment into the decoded buffer. White space is skipped.
+   *
+   * @return the number of decoded bytes
+   */
+  private int decodeBase64(int from, int to) throws IOException {
+    final int maxLength = (to - from) / 4 * 3 + 3;
+    if (decoded.length < maxLength) {
+      decoded = new byte[maxLength];
+    }
+
+    int length = 0;
+    int bits = 0;
+    int collected = 0;
+    for (int i = from; i < to; i++) {
+      final byte c = fragment[i];
+      if (c == '=') {
+        break;
+      }
+      if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+        continue;
+      }
+      final int value = c >= 0 ? BASE64_VALUES[c] : -1;
+      if (value < 0) {
+        throw new IOException("Illegal base64 character " + (char) c);
+      }
+      bits = bits << 6 | value;
+      collected++;
+      if (collected == 4) {
+        decoded[length++] = (byte) (bits >> 16);
+        decoded[length++] = (byte) (bits >> 8);
+        decoded[length++] = (byte) bits;
+        bits = 0;
+        collected = 0;
+      }
+    }
+    // padding
+    if (collected == 2) {
+      decoded[length++] = (byte) (bits >> 4);
+    } else if (collected == 3) {
+      decoded[length++] = (byte) (bits >> 10);
+      decoded[length++] = (byte) (bits >> 2);
+    }
+    return length;
+  }
+
+  @Override
+  public void close() {
+    inflater.end();
+  }
+
+  private static int indexOf(byte[] bytes, String pattern, int from, int to) {
+    final int last = to - pattern.length();
+    outer:
+    for (int i = from; i <= last; i++) {
+      for (int j = 0; j < pattern.length(); j++) {
+        if (bytes[i + j] != pattern.charAt(j)) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+
+  /**
+   * A decoded scan
+   */
+  public record MzXMLScan(int scanNumber, int msLevel, float retentionTime, PolarityType polarity,
+                          String scanDefinition, double precursorMz, int precursorCharge,
+                          double[] mzs, double[] intensities) {
+
+  }
+
+  private static class MzXMLScanBuilder {
+
+    private int scanNumber;
+    private int msLevel = 1;
+    private float retentionTime;
+    private PolarityType polarity = PolarityType.UNKNOWN;
+    private String scanDefinition;
+    private double precursorMz = 0d;
+    private int precursorCharge = 0;
+    private int peaksCount;
+    private boolean doublePrecision;
+    private boolean compressed;
+
+    private MzXMLScan build(double[] mzs, double[] intensities) {
+      return new MzXMLScan(scanNumber, msLevel, retentionTime, polarity, scanDefinition,
+          precursorMz, precursorCharge, mzs, intensities);
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_mzxml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Byte offsets of all {@code <scan>} elements in an mzXML file. The offsets are read from the
+ * {@code <index name="scan">} at the end of the file and validated. Files with a missing or
+ * invalid index are parsed sequentially by the {@link MzXMLSaxHandler} instead.
+ */
+public class MzXMLScanOffsets {
+
+  private static final Logger logger = Logger.getLogger(MzXMLScanOffsets.class.getName());
+
+  private static final Pattern INDEX_OFFSET_PATTERN = Pattern.compile(
+      "<indexOffset>\\s*([0-9]+)\\s*</indexOffset>");
+  private static final byte[] SCAN_TAG = "<scan".getBytes(StandardCharsets.US_ASCII);
+  private static final int TAIL_BYTES = 4096;
+
+  private MzXMLScanOffsets() {
+  }
+
+  /**
+   * @param channel the mzXML file
+   * @return the start offsets of all scans in document order followed by the end offset of the
+   * last scan. The length of the array is the number of scans + 1. Null if there is no valid scan
+   * index.
+   */
+  @Nullable
+  public static long[] read(@NotNull FileChannel channel) throws IOException {
+    try {
+      return fromIndex(channel);
+    } catch (XMLStreamException | NumberFormatException e) {
+      logger.fine(() -> "Cannot read the mzXML scan index: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Reads the scan offsets from the index
+   *
+   * @return the offsets or null if there is no valid index
+   */
+  @Nullable
+  static long[] fromIndex(@NotNull FileChannel channel) throws IOException, XMLStreamException {
+    final long size = channel.size();
+    final int tailLength = (int) Math.min(TAIL_BYTES, size);
+    final ByteBuffer tail = ByteBuffer.allocate(tailLength);
+    readFully(channel, tail, size - tailLength);
+    final Matcher matcher = INDEX_OFFSET_PATTERN.matcher(
+        new String(tail.array(), 0, tail.position(), StandardCharsets.US_ASCII));
+    if (!matcher.find()) {
+      return null;
+    }
+    final long indexOffset = Long.parseLong(matcher.group(1));
+    if (indexOffset <= 0 || indexOffset >= size) {
+      return null;
+    }
+
+    long[] offsets = new long[1024];
+    int n = 0;
+    // the channel is not closed by the stream, the index is the root element of the sub-document
+    final InputStream in = Channels.newInputStream(channel.position(indexOffset));
+    final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+    try {
+      boolean scanIndex = false;
+      while (reader.hasNext()) {
+        final int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          if (reader.getLocalName().equals("index")) {
+            scanIndex = "scan".equals(reader.getAttributeValue(null, "name"));
+          } else if (scanIndex && reader.getLocalName().equals("offset")) {
+            if (n == offsets.length) {
+              offsets = Arrays.copyOf(offsets, n * 2);
+            }
+            offsets[n++] = Long.parseLong(reader.getElementText().trim());
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName()
+            .equals("index")) {
+          break;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+
+    if (n == 0) {
+      return null;
+    }
+    // the last scan ends before the index
+    final long[] result = Arrays.copyOf(offsets, n + 1);
+    Arrays.sort(result, 0, n);
+    result[n] = indexOffset;
+
+    // some converters write wrong offsets, e.g., after changing line endings
+    final ByteBuffer tag = ByteBuffer.allocate(SCAN_TAG.length);
+    for (int i = 0; i < n; i++) {
+      if (result[i] == result[i + 1]) {
+        logger.fine(() -> "The mzXML index contains duplicate offsets");
+        return null;
+      }
+      tag.clear();
+      readFully(channel, tag, result[i]);
+      if (!Arrays.equals(tag.array(), SCAN_TAG)) {
+        logger.fine(() -> "The mzXML index does not point to scan elements");
+        return null;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Reads from the absolute position until the buffer is full or the end of the file is reached
+   */
+  static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, position);
+      if (read < 0) {
+        break;
+      }
+      position += read;
+    }
+  }
+}
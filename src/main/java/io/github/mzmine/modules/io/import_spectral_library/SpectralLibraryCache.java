@@ -0,0 +1,498 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_spectral_library;
+
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.parameters.parametertypes.IntegerParameter;
+import io.github.mzmine.parameters.parametertypes.OptionalParameter;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Binary cache of parsed spectral libraries. A cache file is written after a library was parsed
+ * and is used instead of the library file as long as the path, size and modification time of the
+ * library file and the {@link #getSchemaKey() parser and field schema} are unchanged. The least
+ * recently used cache files are deleted when the cache directory exceeds its maximum size.
+ * <p>
+ * Format (version {@link #VERSION}): magic, version, schema key, offset of the data section, source
+ * path, size and modification time, number of entries, number of data points per entry, a string
+ * pool and one column per {@link DBEntryField}. The data section holds all m/z values followed by
+ * all intensity values. The data points are copied to the storage of the library on load, so the
+ * cache file is not mapped and can be replaced or deleted while the library is in use.
+ */
+public class SpectralLibraryCache {
+
+  private static final Logger logger = Logger.getLogger(SpectralLibraryCache.class.getName());
+
+  private static final int MAGIC = 0x4D5A4C43; // MZLC
+  static final int VERSION = 2;
+  /**
+   * Increase if a parser creates different entries or values from the same library file
+   */
+  static final int PARSER_VERSION = 1;
+  private static final String EXTENSION = ".mzlibcache";
+  // magic, version, schema key, data offset
+  private static final int HEADER_BYTES = 20;
+  /**
+   * Number of values read from the data section at once
+   */
+  private static final int READ_BUFFER_VALUES = 1 << 16;
+
+  // value types in the field columns
+  private static final byte NONE = 0;
+  private static final byte STRING = 1;
+  private static final byte DOUBLE = 2;
+  private static final byte FLOAT = 3;
+  private static final byte INTEGER = 4;
+  private static final byte LONG = 5;
+  private static final byte BOOLEAN = 6;
+  private static final byte ENUM = 7;
+
+  private final File cacheDir;
+  private final long maxBytes;
+
+  public SpectralLibraryCache(@NotNull File cacheDir) {
+    this(cacheDir, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param cacheDir the cache directory
+   * @param maxBytes the maximum size of all cache files
+   */
+  public SpectralLibraryCache(@NotNull File cacheDir, long maxBytes) {
+    this.cacheDir = cacheDir;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @return the cache in the mzmine user directory or null if the cache is disabled in the
+   * preferences
+   */
+  @Nullable
+  public static SpectralLibraryCache getDefault() {
+    final OptionalParameter<IntegerParameter> parameter = MZmineCore.getConfiguration()
+        .getPreferences().getParameter(MZminePreferences.spectralLibraryCache);
+    final Integer maxGb = parameter.getEmbeddedParameter().getValue();
+    if (!parameter.getValue() || maxGb == null) {
+      return null;
+    }
+    return new SpectralLibraryCache(new File(FileAndPathUtil.getUserSettingsDir(), "library_cache"),
+        (long) maxGb << 30);
+  }
+
+  /**
+   * Key of everything that changes the parsed entries besides the library file. Cache files with
+   * another key are parsed again.
+   */
+  static int getSchemaKey() {
+    int key = PARSER_VERSION;
+    for (DBEntryField field : DBEntryField.values()) {
+      key = 31 * key + field.name().hashCode();
+    }
+    return key;
+  }
+
+  /**
+   * @param source the library file
+   * @return the cache file for the library file, which may not exist
+   */
+  @NotNull
+  public File getCacheFile(@NotNull File source) {
+    final String path = source.getAbsolutePath();
+    final String id = UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)).toString();
+    return new File(cacheDir, source.getName() + "_" + id + EXTENSION);
+  }
+
+  /**
+   * Loads the library from the cache
+   *
+   * @param source  the library file
+   * @param storage the storage of the library. If null, the data points are kept in RAM.
+   * @return the library or null if there is no valid cache for the library file
+   */
+  @Nullable
+  public SpectralLibrary load(@NotNull File source, @Nullable MemoryMapStorage storage) {
+    final File cacheFile = getCacheFile(source);
+    if (!cacheFile.exists()) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+      final SpectralLibrary library = read(channel, source, storage);
+      if (library != null) {
+        logger.fine(() -> "Loaded " + library.size() + " library entries from cache " + cacheFile);
+        // last use for the eviction
+        cacheFile.setLastModified(System.currentTimeMillis());
+      }
+      return library;
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Cannot read library cache " + cacheFile, e);
+      return null;
+    }
+  }
+
+  @Nullable
+  private SpectralLibrary read(FileChannel channel, File source, MemoryMapStorage storage)
+      throws IOException, ReflectiveOperationException {
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    readFully(channel, header, 0);
+    header.flip();
+    if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC
+        || header.getInt() != VERSION || header.getInt() != getSchemaKey()) {
+      return null;
+    }
+    final long dataOffset = header.getLong();
+    if (dataOffset < HEADER_BYTES || dataOffset - HEADER_BYTES > Integer.MAX_VALUE) {
+      return null;
+    }
+    final ByteBuffer meta = ByteBuffer.allocate((int) (dataOffset - HEADER_BYTES));
+    readFully(channel, meta, HEADER_BYTES);
+    meta.flip();
+
+    // outdated?
+    if (!readString(meta).equals(source.getAbsolutePath()) || meta.getLong() != source.length()
+        || meta.getLong() != source.lastModified()) {
+      return null;
+    }
+
+    final int numEntries = meta.getInt();
+    final int[] numPoints = new int[numEntries];
+    long totalPoints = 0;
+    for (int i = 0; i < numEntries; i++) {
+      numPoints[i] = meta.getInt();
+      totalPoints += numPoints[i];
+    }
+
+    final String[] pool = new String[meta.getInt()];
+    for (int i = 0; i < pool.length; i++) {
+      pool[i] = readString(meta);
+    }
+
+    final List<Map<DBEntryField, Object>> fields = new ArrayList<>(numEntries);
+    for (int i = 0; i < numEntries; i++) {
+      fields.add(new EnumMap<>(DBEntryField.class));
+    }
+    final int numColumns = meta.getInt();
+    for (int c = 0; c < numColumns; c++) {
+      final DBEntryField field = DBEntryField.valueOf(pool[meta.getInt()]);
+      for (int i = 0; i < numEntries; i++) {
+        final Object value = readValue(meta, pool);
+        if (value != null) {
+          fields.get(i).put(field, value);
+        }
+      }
+    }
+
+    final SpectralLibrary library = new SpectralLibrary(storage, source);
+    final List<SpectralLibraryEntry> entries = library.getEntries();
+    final DoubleReader mzs = new DoubleReader(channel, dataOffset);
+    final DoubleReader intensities = new DoubleReader(channel, dataOffset + totalPoints * 8);
+    for (int i = 0; i < numEntries; i++) {
+      final double[] mzValues = mzs.read(numPoints[i]);
+      final double[] intensityValues = intensities.read(numPoints[i]);
+      entries.add(new SpectralDBEntry(storage, mzValues, intensityValues, fields.get(i)));
+    }
+    return library;
+  }
+
+  /**
+   * Writes the library to the cache. Replaces an existing cache file of the same library file.
+   *
+   * @param source  the library file that was parsed
+   * @param library the parsed library
+   */
+  public void write(@NotNull File source, @NotNull SpectralLibrary library) throws IOException {
+    final List<SpectralLibraryEntry> entries = library.getEntries();
+    final ByteArrayOutputStream metaBytes = new ByteArrayOutputStream();
+    final DataOutputStream meta = new DataOutputStream(metaBytes);
+    writeString(meta, source.getAbsolutePath());
+    meta.writeLong(source.length());
+    meta.writeLong(source.lastModified());
+
+    meta.writeInt(entries.size());
+    for (SpectralLibraryEntry entry : entries) {
+      meta.writeInt(entry.getNumberOfDataPoints());
+    }
+
+    // string pool and columns
+    final Map<String, Integer> poolIndex = new HashMap<>();
+    final List<String> pool = new ArrayList<>();
+    final ByteArrayOutputStream columnBytes = new ByteArrayOutputStream();
+    final DataOutputStream columns = new DataOutputStream(columnBytes);
+    int numColumns = 0;
+    for (DBEntryField field : DBEntryField.values()) {
+      if (entries.stream().noneMatch(e -> e.getFields().get(field) != null)) {
+        continue;
+      }
+      numColumns++;
+      columns.writeInt(poolIndex(field.name(), poolIndex, pool));
+      for (SpectralLibraryEntry entry : entries) {
+        writeValue(columns, entry.getFields().get(field), poolIndex, pool);
+      }
+    }
+    meta.writeInt(pool.size());
+    for (String s : pool) {
+      writeString(meta, s);
+    }
+    meta.writeInt(numColumns);
+    columns.flush();
+    columnBytes.writeTo(meta);
+    meta.flush();
+
+    final long dataOffset = align(HEADER_BYTES + metaBytes.size());
+
+    Files.createDirectories(cacheDir.toPath());
+    final File cacheFile = getCacheFile(source);
+    final Path tmp = Files.createTempFile(cacheDir.toPath(), cacheFile.getName(), ".tmp");
+    try {
+      try (OutputStream fileOut = Files.newOutputStream(tmp); DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(fileOut, 1 << 16))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(getSchemaKey());
+        out.writeLong(dataOffset);
+        metaBytes.writeTo(out);
+        for (long i = HEADER_BYTES + metaBytes.size(); i < dataOffset; i++) {
+          out.writeByte(0);
+        }
+
+        double[] buffer = new double[0];
+        for (SpectralLibraryEntry entry : entries) {
+          buffer = entry.getMzValues(buffer);
+          for (int i = 0; i < entry.getNumberOfDataPoints(); i++) {
+            out.writeDouble(buffer[i]);
+          }
+        }
+        for (SpectralLibraryEntry entry : entries) {
+          buffer = entry.getIntensityValues(buffer);
+          for (int i = 0; i < entry.getNumberOfDataPoints(); i++) {
+            out.writeDouble(buffer[i]);
+          }
+        }
+      }
+      try {
+        Files.move(tmp, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+    logger.fine(() -> "Wrote library cache " + cacheFile + " for " + source);
+    evict(cacheFile);
+  }
+
+  /**
+   * Deletes the least recently used cache files until all cache files fit into the maximum size
+   *
+   * @param keep the cache file that was just written
+   */
+  void evict(@NotNull File keep) {
+    final File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(EXTENSION));
+    if (files == null) {
+      return;
+    }
+    long totalBytes = Arrays.stream(files).mapToLong(File::length).sum();
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (File file : files) {
+      if (totalBytes <= maxBytes) {
+        break;
+      }
+      if (file.equals(keep)) {
+        continue;
+      }
+      final long length = file.length();
+      if (file.delete()) {
+        totalBytes -= length;
+        logger.fine(() -> "Removed library cache " + file + " to limit the cache size");
+      }
+    }
+  }
+
+  private static void writeValue(DataOutputStream out, @Nullable Object value,
+      Map<String, Integer> poolIndex, List<String> pool) throws IOException {
+    switch (value) {
+      case null -> out.writeByte(NONE);
+      case String s -> {
+        out.writeByte(STRING);
+        out.writeInt(poolIndex(s, poolIndex, pool));
+      }
+      case Double d -> {
+        out.writeByte(DOUBLE);
+        out.writeDouble(d);
+      }
+      case Float f -> {
+        out.writeByte(FLOAT);
+        out.writeFloat(f);
+      }
+      case Integer i -> {
+        out.writeByte(INTEGER);
+        out.writeInt(i);
+      }
+      case Long l -> {
+        out.writeByte(LONG);
+        out.writeLong(l);
+      }
+      case Boolean b -> {
+        out.writeByte(BOOLEAN);
+        out.writeBoolean(b);
+      }
+      case Enum<?> e -> {
+        out.writeByte(ENUM);
+        out.writeInt(poolIndex(e.getDeclaringClass().getName(), poolIndex, pool));
+        out.writeInt(poolIndex(e.name(), poolIndex, pool));
+      }
+      default -> throw new IOException(
+          "Cannot cache library values of type " + value.getClass().getName());
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @Nullable
+  private static Object readValue(ByteBuffer in, String[] pool)
+      throws IOException, ReflectiveOperationException {
+    final byte type = in.get();
+    return switch (type) {
+      case NONE -> null;
+      case STRING -> pool[in.getInt()];
+      case DOUBLE -> in.getDouble();
+      case FLOAT -> in.getFloat();
+      case INTEGER -> in.getInt();
+      case LONG -> in.getLong();
+      case BOOLEAN -> in.get() != 0;
+      case ENUM -> {
+        final Class enumClass = Class.forName(pool[in.getInt()]);
+        yield Enum.valueOf(enumClass, pool[in.getInt()]);
+      }
+      default -> throw new IOException("Unknown value type " + type);
+    };
+  }
+
+  private static int poolIndex(String s, Map<String, Integer> poolIndex, List<String> pool) {
+    return poolIndex.computeIfAbsent(s, key -> {
+      pool.add(key);
+      return pool.size() - 1;
+    });
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer in) {
+    final byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static long align(long offset) {
+    return (offset + 7) / 8 * 8;
+  }
+
+  /**
+   * Reads from the absolute position until the buffer is full or the end of the file is reached
+   */
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, position);
+      if (read < 0) {
+        break;
+      }
+      position += read;
+    }
+  }
+
+  /**
+   * Sequentially reads double values from a section of the file with a reused buffer
+   */
+  private static class DoubleReader {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_VALUES * 8);
+    private long position;
+
+    private DoubleReader(FileChannel channel, long position) {
+      this.channel = channel;
+      this.position = position;
+      buffer.limit(0);
+    }
+
+    private double[] read(int length) throws IOException {
+      final double[] values = new double[length];
+      int index = 0;
+      while (index < length) {
+        if (buffer.remaining() < 8) {
+          buffer.compact();
+          final int read = channel.read(buffer, position);
+          buffer.flip();
+          if (read <= 0) {
+            throw new IOException("Library cache ends before all data points were read");
+          }
+          position += read;
+        }
+        final int n = Math.min(length - index, buffer.remaining() / 8);
+        buffer.asDoubleBuffer().get(values, index, n);
+        buffer.position(buffer.position() + n * 8);
+        index += n;
+      }
+      return values;
+    }
+  }
+}
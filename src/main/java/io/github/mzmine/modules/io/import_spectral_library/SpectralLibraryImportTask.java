@@ -26,6 +26,7 @@
 package io.github.mzmine.modules.io.import_spectral_library;
 
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.modules.batchmode.server.TaskControllerBatchJobRunner;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.MemoryMapStorage;
@@ -40,6 +41,7 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class SpectralLibraryImportTask extends AbstractTask {
 
@@ -74,6 +76,16 @@ public class SpectralLibraryImportTask extends AbstractTask {
   public void run() {
     setStatus(TaskStatus.PROCESSING);
 
+    // libraries are kept when the project is cleared between jobs of the batch job server
+    final SpectralLibrary loaded =
+        TaskControllerBatchJobRunner.isRunningJob() ? findLoadedLibrary() : null;
+    if (loaded != null) {
+      logger.info(() -> "Library %s is already loaded with %d entries".formatted(dataBaseFile,
+          loaded.size()));
+      setStatus(TaskStatus.FINISHED);
+      return;
+    }
+
     try {
       // will block until all library spectra are added to entries list
       SpectralLibrary library = parseFile(dataBaseFile);
@@ -96,18 +108,48 @@ public class SpectralLibraryImportTask extends AbstractTask {
   }
 
   /**
-   * Load all library entries from data base file
+   * @return a library of the project that was loaded from the same unchanged file or null
+   */
+  @Nullable
+  private SpectralLibrary findLoadedLibrary() {
+    for (SpectralLibrary library : project.getCurrentSpectralLibraries()) {
+      if (library.getPath().equals(dataBaseFile) && library.isSourceUnchanged()
+          && library.size() > 0) {
+        return library;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Load all library entries from the library cache or from the data base file. Parsed libraries
+   * are written to the cache if enabled in the preferences.
    *
    * @param dataBaseFile the target database file
    */
   private SpectralLibrary parseFile(File dataBaseFile)
       throws UnsupportedFormatException, IOException {
-    //
-    SpectralLibrary library = new SpectralLibrary(MemoryMapStorage.forMassList(), dataBaseFile);
+    final MemoryMapStorage storage = MemoryMapStorage.forMassList();
+    // null if disabled in the preferences
+    final SpectralLibraryCache cache = SpectralLibraryCache.getDefault();
+    final SpectralLibrary cached = cache == null ? null : cache.load(dataBaseFile, storage);
+    if (cached != null) {
+      logger.info(() -> "Loaded library %s from cache".formatted(dataBaseFile));
+      return cached;
+    }
+
+    SpectralLibrary library = new SpectralLibrary(storage, dataBaseFile);
     final List<SpectralLibraryEntry> entries = library.getEntries();
     parser = new AutoLibraryParser(1000, (list, alreadyProcessed) -> entries.addAll(list));
     // return tasks
-    parser.parse(this, dataBaseFile, library);
+    boolean parsed = parser.parse(this, dataBaseFile, library);
+    if (cache != null && parsed && !isCanceled() && !entries.isEmpty()) {
+      try {
+        cache.write(dataBaseFile, library);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Cannot write library cache for " + dataBaseFile, e);
+      }
+    }
     return library;
   }
 
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.featurelisttable_modular;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Bounded least-recently-used cache of rendered chart cells for the virtualized
+ * {@link FeatureTableFX}. Charts are created once, rendered to an image after their first layout
+ * and then released, so the rows and features do not keep chart nodes for the lifetime of the
+ * feature list. Only used on the JavaFX thread.
+ */
+public class ChartImageCache {
+
+  // layout pulses to wait for a chart with a size before the node is released without an image
+  private static final int MAX_LAYOUT_PULSES = 3;
+
+  private final int maxImages;
+  private final Map<CellKey, Image> images;
+  private long hits = 0;
+  private long misses = 0;
+
+  public ChartImageCache(int maxImages) {
+    this.maxImages = Math.max(1, maxImages);
+    images = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<CellKey, Image> eldest) {
+        return size() > ChartImageCache.this.maxImages;
+      }
+    };
+  }
+
+  /**
+   * @param row          the row of the cell
+   * @param raw          the raw data file for feature columns, null for row columns
+   * @param column       the column header, as used by the graphical data types to buffer nodes
+   * @param nodeSupplier creates the chart node if there is no image
+   * @return an image view of the cached chart or the new chart node
+   */
+  @Nullable
+  public Node getOrCreate(@NotNull ModularFeatureListRow row, @Nullable RawDataFile raw,
+      @NotNull String column, @NotNull Supplier<Node> nodeSupplier) {
+    final CellKey key = new CellKey(row, raw, column);
+    final Image image = images.get(key);
+    if (image != null) {
+      hits++;
+      return new ImageView(image);
+    }
+
+    misses++;
+    final Node node = nodeSupplier.get();
+    if (node instanceof Pane pane) {
+      snapshotWhenRendered(pane, key);
+    }
+    return node;
+  }
+
+  /**
+   * The graphical types fill a placeholder pane once the chart was created on a task thread. The
+   * image is taken after the next layout pass of the chart.
+   */
+  private void snapshotWhenRendered(@NotNull Pane pane, @NotNull CellKey key) {
+    if (!pane.getChildren().isEmpty()) {
+      snapshotAfterLayout(pane, key);
+      return;
+    }
+    pane.getChildren().addListener(new ListChangeListener<>() {
+      @Override
+      public void onChanged(Change<? extends Node> c) {
+        if (!pane.getChildren().isEmpty()) {
+          pane.getChildren().removeListener(this);
+          snapshotAfterLayout(pane, key);
+        }
+      }
+    });
+  }
+
+  private void snapshotAfterLayout(@NotNull Pane pane, @NotNull CellKey key) {
+    final Scene scene = pane.getScene();
+    if (scene == null) {
+      // not visible anymore - release the node, the chart is created again when it is shown
+      releaseBufferedNode(key);
+      return;
+    }
+    scene.addPostLayoutPulseListener(new Runnable() {
+      private int pulses = 0;
+
+      @Override
+      public void run() {
+        if (pane.getScene() != scene) {
+          scene.removePostLayoutPulseListener(this);
+          releaseBufferedNode(key);
+          return;
+        }
+        if (pane.getWidth() <= 0 || pane.getHeight() <= 0) {
+          // the first layout pass may not have sized the chart yet
+          if (++pulses >= MAX_LAYOUT_PULSES) {
+            scene.removePostLayoutPulseListener(this);
+            releaseBufferedNode(key);
+          }
+          return;
+        }
+        scene.removePostLayoutPulseListener(this);
+        final WritableImage image = pane.snapshot(null, null);
+        images.put(key, image);
+        releaseBufferedNode(key);
+      }
+    });
+  }
+
+  private static void releaseBufferedNode(@NotNull CellKey key) {
+    if (key.raw() == null) {
+      key.row().removeBufferedColChart(key.column());
+    } else if (key.row().getFeature(key.raw()) instanceof ModularFeature feature) {
+      feature.removeBufferedColChart(key.column());
+    }
+  }
+
+  /**
+   * Removes the images of a column, e.g., after the column was resized
+   *
+   * @param column the column header
+   */
+  public void invalidateColumn(@NotNull String column) {
+    images.keySet().removeIf(key -> key.column().equals(column));
+  }
+
+  /**
+   * Removes the images of all cells of a row, e.g., after the data of a feature changed
+   */
+  public void invalidateRow(@NotNull ModularFeatureListRow row) {
+    images.keySet().removeIf(key -> key.row() == row);
+  }
+
+  public void clear() {
+    images.clear();
+  }
+
+  public int size() {
+    return images.size();
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  @Override
+  public String toString() {
+    return "%d chart images (max %d), %d hits, %d misses".formatted(images.size(), maxImages, hits,
+        misses);
+  }
+
+  private record CellKey(@NotNull ModularFeatureListRow row, @Nullable RawDataFile raw,
+                         @NotNull String column) {
+
+  }
+}
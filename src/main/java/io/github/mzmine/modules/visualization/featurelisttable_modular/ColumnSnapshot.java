@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.featurelisttable_modular;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Values of one sort column for all rows, extracted once so that sorting does not access the data
+ * model or the JavaFX cell value factories for every comparison. Numbers are stored as primitive
+ * doubles. Missing values are always sorted to the end.
+ */
+public final class ColumnSnapshot {
+
+  private final double @Nullable [] numbers;
+  private final Object @Nullable [] values;
+  @Nullable
+  private final Comparator<Object> comparator;
+  private final boolean descending;
+
+  private ColumnSnapshot(double @Nullable [] numbers, Object @Nullable [] values,
+      @Nullable Comparator<Object> comparator, boolean descending) {
+    this.numbers = numbers;
+    this.values = values;
+    this.comparator = comparator;
+    this.descending = descending;
+  }
+
+  /**
+   * @param values     the value of each row, null for missing values
+   * @param comparator used for non-numeric values
+   * @param descending sort order
+   */
+  public static ColumnSnapshot of(@NotNull List<?> values, @NotNull Comparator<Object> comparator,
+      boolean descending) {
+    final int n = values.size();
+    boolean allNumbers = true;
+    for (Object value : values) {
+      if (value != null && !(value instanceof Number)) {
+        allNumbers = false;
+        break;
+      }
+    }
+
+    if (allNumbers) {
+      final double[] numbers = new double[n];
+      for (int i = 0; i < n; i++) {
+        numbers[i] = values.get(i) instanceof Number num ? num.doubleValue() : Double.NaN;
+      }
+      return new ColumnSnapshot(numbers, null, null, descending);
+    }
+    return new ColumnSnapshot(null, values.toArray(), comparator, descending);
+  }
+
+  /**
+   * @return the number of rows
+   */
+  public int size() {
+    return numbers != null ? numbers.length : values.length;
+  }
+
+  /**
+   * Compares two rows by their index
+   */
+  public int compare(int a, int b) {
+    if (numbers != null) {
+      final double va = numbers[a];
+      final double vb = numbers[b];
+      final boolean missingA = Double.isNaN(va);
+      final boolean missingB = Double.isNaN(vb);
+      if (missingA || missingB) {
+        return Boolean.compare(missingA, missingB);
+      }
+      final int result = Double.compare(va, vb);
+      return descending ? -result : result;
+    }
+
+    final Object va = values[a];
+    final Object vb = values[b];
+    if (va == null || vb == null) {
+      return Boolean.compare(va == null, vb == null);
+    }
+    final int result = comparator.compare(va, vb);
+    return descending ? -result : result;
+  }
+
+  /**
+   * Stable sort of all rows by the columns in priority order
+   *
+   * @param numRows number of rows
+   * @param columns sort columns, the first column has the highest priority
+   * @return the row indices in sorted order
+   */
+  public static int[] sortedOrder(int numRows, @NotNull List<ColumnSnapshot> columns) {
+    final Integer[] order = new Integer[numRows];
+    for (int i = 0; i < numRows; i++) {
+      order[i] = i;
+    }
+    if (!columns.isEmpty()) {
+      Arrays.sort(order, (a, b) -> {
+        for (ColumnSnapshot column : columns) {
+          final int result = column.compare(a, b);
+          if (result != 0) {
+            return result;
+          }
+        }
+        return 0;
+      });
+    }
+    return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+  }
+}
@@ -28,8 +28,10 @@ package io.github.mzmine.modules.visualization.featurelisttable_modular;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.ImagingRawDataFile;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.DataTypeValueChangeListener;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularDataModel;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
@@ -37,6 +39,7 @@ import io.github.mzmine.datamodel.features.types.AreaBarType;
 import io.github.mzmine.datamodel.features.types.AreaShareType;
 import io.github.mzmine.datamodel.features.types.DataType;
 import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.FeatureDataType;
 import io.github.mzmine.datamodel.features.types.FeatureShapeIonMobilityRetentionTimeHeatMapType;
 import io.github.mzmine.datamodel.features.types.FeatureShapeMobilogramType;
 import io.github.mzmine.datamodel.features.types.FeatureShapeType;
@@ -58,6 +61,7 @@ import io.github.mzmine.datamodel.features.types.annotations.iin.IonTypeType;
 import io.github.mzmine.datamodel.features.types.fx.ColumnID;
 import io.github.mzmine.datamodel.features.types.fx.ColumnType;
 import io.github.mzmine.datamodel.features.types.modifiers.ExpandableType;
+import io.github.mzmine.datamodel.features.types.modifiers.GraphicalColumType;
 import io.github.mzmine.datamodel.features.types.modifiers.SubColumnsFactory;
 import io.github.mzmine.datamodel.features.types.numbers.AreaType;
 import io.github.mzmine.datamodel.features.types.numbers.HeightType;
@@ -79,6 +83,7 @@ import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.datatype.DataTypeCheckListParameter;
 import io.github.mzmine.util.javafx.FxIconUtil;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -90,8 +95,16 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import javafx.animation.PauseTransition;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableValue;
@@ -103,11 +116,14 @@ import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
+import javafx.scene.Parent;
 import javafx.scene.control.Label;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.SelectionMode;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeTableColumn;
+import javafx.scene.control.TreeTableColumn.CellDataFeatures;
+import javafx.scene.control.TreeTableColumn.SortType;
 import javafx.scene.control.TreeTablePosition;
 import javafx.scene.control.TreeTableView;
 import javafx.scene.image.ImageView;
@@ -120,6 +136,8 @@ import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.paint.Color;
+import javafx.util.Callback;
+import javafx.util.Duration;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -143,6 +161,28 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
   private final Map<TreeTableColumn<ModularFeatureListRow, ?>, ColumnID> newColumnMap;
   private final ObjectProperty<ModularFeatureList> featureListProperty = new SimpleObjectProperty<>();
 
+  // virtualized mode for large feature lists: filter and sort on a background thread, render
+  // charts as cached images
+  private final ViewportRenderStats viewportRenderStats = new ViewportRenderStats();
+  // only the latest background row update is applied
+  private final AtomicLong rowUpdateVersion = new AtomicLong();
+  private boolean virtualized = false;
+  @Nullable
+  private ChartImageCache chartImageCache;
+  // cached chart images of rows with changed feature data are removed in one FX update
+  private final Set<ModularFeatureListRow> changedChartRows = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean chartRowsUpdateScheduled = new AtomicBoolean(false);
+  private final DataTypeValueChangeListener<?> chartDataListener = this::onFeatureDataChanged;
+  // shows the charts of resized columns again once resizing stopped
+  private final PauseTransition chartResizeRefresh = new PauseTransition(Duration.millis(300));
+  @Nullable
+  private Predicate<ModularFeatureListRow> rowFilter;
+  @Nullable
+  private ExecutorService rowUpdateExecutor;
+  @Nullable
+  private Parent virtualFlow;
+  private long layoutStartNanos = -1;
+
   public FeatureTableFX() {
     // add dummy root
     TreeItem<ModularFeatureListRow> root = new TreeItem<>();
@@ -155,6 +195,9 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
     setTableEditable(true);
 
     initFeatureListListener();
+    initVirtualizedSortPolicy();
+    chartResizeRefresh.setOnFinished(event -> refresh());
+    initViewportRenderTiming();
 
     parameters = MZmineCore.getConfiguration().getModuleParameters(FeatureTableFXModule.class);
     rowTypesParameter = parameters.getParameter(FeatureTableFXParameters.showRowTypeColumns);
@@ -459,15 +502,13 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
     }
 
     MZmineCore.runLater(() -> {
-      getRoot().getChildren().clear();
-      rowItems.clear();
-      // add rows
-      for (FeatureListRow row : featureListProperty.get().getRows()) {
-        final ModularFeatureListRow mrow = (ModularFeatureListRow) row;
-        rowItems.add(new TreeItem<>(mrow));
+      setRowItems(featureListProperty.get());
+      if (virtualized) {
+        updateRowsInBackground();
+      } else {
+        getRoot().getChildren().setAll(filteredRowItems);
+        this.sort();
       }
-      getRoot().getChildren().addAll(filteredRowItems);
-      this.sort();
     });
   }
 
@@ -583,6 +624,9 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
   private void registerColumn(@NotNull TreeTableColumn<ModularFeatureListRow, ?> column,
       @NotNull ColumnType type, @NotNull DataType<?> dataType, @Nullable RawDataFile file) {
     newColumnMap.put(column, new ColumnID(dataType, type, file, -1));
+    if (dataType instanceof GraphicalColumType) {
+      initChartColumnResize(column);
+    }
 
     // add all sub columns to the list (not for range types - no need to only show one)
     // the main data type is set to subcolumns as data type.
@@ -659,6 +703,236 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
     return filteredRowItems;
   }
 
+  /**
+   * Filters the shown rows. Runs on a background thread in the virtualized mode.
+   *
+   * @param filter the row filter or null to show all rows
+   */
+  public void setRowFilter(@Nullable Predicate<ModularFeatureListRow> filter) {
+    rowFilter = filter;
+    if (virtualized) {
+      updateRowsInBackground();
+      return;
+    }
+    filteredRowItems.setPredicate(filter == null ? null : item -> filter.test(item.getValue()));
+    getRoot().getChildren().setAll(filteredRowItems);
+  }
+
+  /**
+   * Creates all row items in one change instead of one change per row
+   */
+  private void setRowItems(@Nullable ModularFeatureList flist) {
+    if (flist == null) {
+      rowItems.clear();
+      return;
+    }
+    final List<TreeItem<ModularFeatureListRow>> items = new ArrayList<>(flist.getNumberOfRows());
+    for (FeatureListRow row : flist.getRows()) {
+      items.add(new TreeItem<>((ModularFeatureListRow) row));
+    }
+    rowItems.setAll(items);
+  }
+
+  /**
+   * Large feature lists use the virtualized mode
+   */
+  private void initVirtualizedMode(@Nullable ModularFeatureList oldList,
+      @Nullable ModularFeatureList flist) {
+    final int minRows = parameters.getValue(FeatureTableFXParameters.virtualizeGreaterNRows);
+    virtualized = flist != null && flist.getNumberOfRows() > minRows;
+    if (chartImageCache != null) {
+      chartImageCache.clear();
+    }
+    if (oldList != null) {
+      oldList.removeFeatureTypeListener(new FeatureDataType(), chartDataListener);
+    }
+    chartImageCache = virtualized ? new ChartImageCache(
+        parameters.getValue(FeatureTableFXParameters.maxCachedChartImages)) : null;
+    viewportRenderStats.reset();
+    if (virtualized) {
+      flist.addFeatureTypeListener(new FeatureDataType(), chartDataListener);
+      logger.info(() -> "Using the virtualized feature table for %d rows".formatted(
+          flist.getNumberOfRows()));
+    }
+  }
+
+  /**
+   * The chart images show the feature data. Changes may come from any thread and are collected
+   * to invalidate the images in one update on the FX thread.
+   */
+  private void onFeatureDataChanged(ModularDataModel dataModel, DataType<?> type,
+      Object oldValue, Object newValue) {
+    if (!(dataModel instanceof ModularFeature feature)
+        || !(feature.getRow() instanceof ModularFeatureListRow row)) {
+      return;
+    }
+    changedChartRows.add(row);
+    if (chartRowsUpdateScheduled.compareAndSet(false, true)) {
+      MZmineCore.runLater(() -> {
+        chartRowsUpdateScheduled.set(false);
+        final List<ModularFeatureListRow> rows = List.copyOf(changedChartRows);
+        changedChartRows.removeAll(rows);
+        if (chartImageCache != null) {
+          rows.forEach(chartImageCache::invalidateRow);
+          refresh();
+        }
+      });
+    }
+  }
+
+  /**
+   * Chart images of a column are rendered for the column width and are invalidated on resize
+   */
+  private void initChartColumnResize(@NotNull TreeTableColumn<ModularFeatureListRow, ?> column) {
+    column.widthProperty().addListener((observable, oldValue, newValue) -> {
+      if (chartImageCache != null) {
+        chartImageCache.invalidateColumn(column.getText());
+        chartResizeRefresh.playFromStart();
+      }
+    });
+  }
+
+  /**
+   * In the virtualized mode, sorting is done on a background thread on snapshots of the sort
+   * columns
+   */
+  private void initVirtualizedSortPolicy() {
+    final Callback<TreeTableView<ModularFeatureListRow>, Boolean> defaultSortPolicy = getSortPolicy();
+    setSortPolicy(table -> {
+      if (!virtualized) {
+        return defaultSortPolicy.call(table);
+      }
+      updateRowsInBackground();
+      return true;
+    });
+  }
+
+  /**
+   * Filters and sorts all rows on a background thread and shows the result. Only the latest
+   * update is applied.
+   */
+  private void updateRowsInBackground() {
+    final long version = rowUpdateVersion.incrementAndGet();
+    final List<TreeItem<ModularFeatureListRow>> items = List.copyOf(rowItems);
+    final Predicate<ModularFeatureListRow> filter = rowFilter;
+    final List<TreeTableColumn<ModularFeatureListRow, ?>> sortColumns = List.copyOf(getSortOrder());
+    final List<Boolean> descending = sortColumns.stream()
+        .map(col -> col.getSortType() == SortType.DESCENDING).toList();
+
+    if (rowUpdateExecutor == null) {
+      rowUpdateExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Feature table rows");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    rowUpdateExecutor.submit(() -> {
+      try {
+        final long start = System.nanoTime();
+        List<TreeItem<ModularFeatureListRow>> result =
+            filter == null ? items : items.stream().filter(item -> filter.test(item.getValue()))
+                .toList();
+
+        if (!sortColumns.isEmpty() && version == rowUpdateVersion.get()) {
+          final List<ColumnSnapshot> snapshots = new ArrayList<>(sortColumns.size());
+          for (int i = 0; i < sortColumns.size(); i++) {
+            snapshots.add(createColumnSnapshot(sortColumns.get(i), result, descending.get(i)));
+          }
+          final int[] order = ColumnSnapshot.sortedOrder(result.size(), snapshots);
+          final List<TreeItem<ModularFeatureListRow>> unsorted = result;
+          result = Arrays.stream(order).mapToObj(unsorted::get).toList();
+        }
+
+        final List<TreeItem<ModularFeatureListRow>> rows = result;
+        logger.fine(() -> "Filtered and sorted %d rows in %d ms".formatted(rows.size(),
+            (System.nanoTime() - start) / 1_000_000));
+        MZmineCore.runLater(() -> {
+          if (version == rowUpdateVersion.get()) {
+            getRoot().getChildren().setAll(rows);
+          }
+        });
+      } catch (Exception ex) {
+        logger.log(Level.WARNING, "Error while filtering and sorting the feature table", ex);
+      }
+    });
+  }
+
+  /**
+   * Extracts the values of a column with its cell value factory, which does not depend on the
+   * JavaFX thread.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private ColumnSnapshot createColumnSnapshot(TreeTableColumn column,
+      List<TreeItem<ModularFeatureListRow>> items, boolean descending) {
+    final Callback<CellDataFeatures, ObservableValue> valueFactory = column.getCellValueFactory();
+    final List<Object> values = new ArrayList<>(items.size());
+    for (TreeItem<ModularFeatureListRow> item : items) {
+      final ObservableValue value =
+          valueFactory == null ? null : valueFactory.call(new CellDataFeatures(this, column, item));
+      values.add(value == null ? null : value.getValue());
+    }
+    return ColumnSnapshot.of(values, column.getComparator(), descending);
+  }
+
+  /**
+   * Measures the layout passes of the visible rows in the virtualized mode
+   */
+  private void initViewportRenderTiming() {
+    final Runnable preLayout = () -> {
+      if (!virtualized) {
+        return;
+      }
+      if (virtualFlow == null && lookup(".virtual-flow") instanceof Parent flow) {
+        virtualFlow = flow;
+      }
+      layoutStartNanos = virtualFlow != null && virtualFlow.isNeedsLayout() ? System.nanoTime() : -1;
+    };
+    final Runnable postLayout = () -> {
+      if (layoutStartNanos < 0) {
+        return;
+      }
+      viewportRenderStats.add(System.nanoTime() - layoutStartNanos);
+      layoutStartNanos = -1;
+      if (viewportRenderStats.getPasses() % 500 == 0) {
+        logger.info(() -> "Feature table: " + viewportRenderStats);
+      }
+    };
+    sceneProperty().addListener((observable, oldScene, newScene) -> {
+      if (oldScene != null) {
+        oldScene.removePreLayoutPulseListener(preLayout);
+        oldScene.removePostLayoutPulseListener(postLayout);
+      }
+      if (newScene != null) {
+        newScene.addPreLayoutPulseListener(preLayout);
+        newScene.addPostLayoutPulseListener(postLayout);
+      }
+    });
+  }
+
+  /**
+   * @return true if rows are filtered and sorted in the background and charts are cached as
+   * images
+   */
+  public boolean isVirtualized() {
+    return virtualized;
+  }
+
+  /**
+   * @return the chart image cache of the virtualized mode, otherwise null
+   */
+  @Nullable
+  public ChartImageCache getChartImageCache() {
+    return chartImageCache;
+  }
+
+  /**
+   * @return the render times of the visible rows, only measured in the virtualized mode
+   */
+  @NotNull
+  public ViewportRenderStats getViewportRenderStats() {
+    return viewportRenderStats;
+  }
+
   /**
    * Sets visibility of all data type columns.
    *
@@ -950,15 +1224,16 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
           showCompactChromatographyColumns();
         }
 
+        initVirtualizedMode(oldValue, newValue);
+
         // add rows
-        for (FeatureListRow row : newValue.getRows()) {
-          final ModularFeatureListRow mrow = (ModularFeatureListRow) row;
-          rowItems.add(new TreeItem<>(mrow));
+        setRowItems(newValue);
+        if (virtualized) {
+          updateRowsInBackground();
+        } else {
+          getRoot().getChildren().setAll(filteredRowItems);
         }
 
-        TreeItem<ModularFeatureListRow> root = getRoot();
-        root.getChildren().addAll(filteredRowItems);
-
         // reflect the changes to the feature list in the table
         newValue.getRows().addListener(this);
       });
@@ -1033,6 +1308,18 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
       return;
     }
     flist.getRows().removeListener(this);
+    flist.removeFeatureTypeListener(new FeatureDataType(), chartDataListener);
+    chartResizeRefresh.stop();
+    if (virtualized) {
+      logger.info(() -> "Closing feature table: " + viewportRenderStats + "; " + chartImageCache);
+    }
+    if (chartImageCache != null) {
+      chartImageCache.clear();
+    }
+    if (rowUpdateExecutor != null) {
+      rowUpdateExecutor.shutdownNow();
+      rowUpdateExecutor = null;
+    }
     flist.modularStream().forEach(ModularFeatureListRow::clearBufferedColCharts);
     flist.streamFeatures().forEach(ModularFeature::clearBufferedColCharts);
   }
@@ -73,10 +73,20 @@ public class FeatureTableFXParameters extends SimpleParameterSet {
   public static final BooleanParameter hideImageAxes = new BooleanParameter("Hide image axes",
       "If ticked, the axes of image plots will be hidden.", false);
 
+  public static final IntegerParameter virtualizeGreaterNRows = new IntegerParameter(
+      "Virtualized table >N rows",
+      "Above N rows, the table sorts and filters on a background thread and renders charts as "
+          + "cached images. Applied when opening a new feature table.", 20_000, 0, null);
+
+  public static final IntegerParameter maxCachedChartImages = new IntegerParameter(
+      "Cached chart images", "Maximum number of chart images kept by a virtualized table.", 500,
+      1, null);
+
   public FeatureTableFXParameters() {
     super(showRowTypeColumns, showFeatureTypeColumns, defaultAbundanceMeasure,
         defaultVisibilityOfImsFeature, defaultVisibilityOfImages, defaultVisibilityOfShapes,
-        deactivateShapesGreaterNSamples, lockImagesToAspectRatio, hideImageAxes);
+        deactivateShapesGreaterNSamples, lockImagesToAspectRatio, hideImageAxes,
+        virtualizeGreaterNRows, maxCachedChartImages);
   }
 
 }
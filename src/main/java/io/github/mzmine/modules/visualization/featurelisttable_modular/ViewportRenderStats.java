@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.featurelisttable_modular;
+
+/**
+ * Timing of the layout passes of the virtualized {@link FeatureTableFX}. Each pass creates or
+ * updates the cells of the visible rows, so the duration is the time to render the viewport.
+ */
+public class ViewportRenderStats {
+
+  private long passes = 0;
+  private long totalNanos = 0;
+  private long maxNanos = 0;
+  private long lastNanos = 0;
+
+  public synchronized void add(long nanos) {
+    passes++;
+    totalNanos += nanos;
+    maxNanos = Math.max(maxNanos, nanos);
+    lastNanos = nanos;
+  }
+
+  public synchronized long getPasses() {
+    return passes;
+  }
+
+  public synchronized double getAverageMillis() {
+    return passes == 0 ? 0d : totalNanos / (double) passes / 1_000_000d;
+  }
+
+  public synchronized double getMaxMillis() {
+    return maxNanos / 1_000_000d;
+  }
+
+  public synchronized double getLastMillis() {
+    return lastNanos / 1_000_000d;
+  }
+
+  public synchronized void reset() {
+    passes = 0;
+    totalNanos = 0;
+    maxNanos = 0;
+    lastNanos = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "%d viewport renders, average %.1f ms, max %.1f ms, last %.1f ms".formatted(passes,
+        getAverageMillis(), getMaxMillis(), getLastMillis());
+  }
+}
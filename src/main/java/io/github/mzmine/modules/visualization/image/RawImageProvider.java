@@ -45,15 +45,19 @@ import io.github.mzmine.gui.preferences.ImageNormalization;
 import io.github.mzmine.gui.preferences.UnitFormat;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.import_rawdata_imzml.ImagingParameters;
+import io.github.mzmine.modules.visualization.image.tiles.ImagePixels;
+import io.github.mzmine.modules.visualization.image.tiles.ImageTilePyramid;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.util.MathUtils;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import java.awt.Color;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 import javafx.beans.property.Property;
 import org.jetbrains.annotations.NotNull;
@@ -68,6 +72,24 @@ import org.jfree.chart.renderer.PaintScale;
 public class RawImageProvider implements PlotXYZDataProvider {
 
   private static final Logger logger = Logger.getLogger(RawImageProvider.class.getName());
+
+  /**
+   * Recently extracted images, so going back to a previous m/z range does not extract it again.
+   * Evicted images are disposed, which removes their tiles from the shared tile cache.
+   */
+  private static final int MAX_CACHED_IMAGES = 8;
+  private static final Map<RawImageKey, ImageTilePyramid> recentImages = Collections.synchronizedMap(
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<RawImageKey, ImageTilePyramid> eldest) {
+          if (size() > MAX_CACHED_IMAGES) {
+            eldest.getValue().dispose();
+            return true;
+          }
+          return false;
+        }
+      });
+
   protected final NumberFormat mzFormat;
   protected final NumberFormat mobilityFormat;
   protected final NumberFormat intensityFormat;
@@ -84,7 +106,7 @@ public class RawImageProvider implements PlotXYZDataProvider {
   private final double height;
   protected PaintScale paintScale;
   // output
-  private IonTimeSeries<Scan> series;
+  private ImagePixels pixels;
   private double finishedPercentage;
 
   public RawImageProvider(ImagingRawDataFile raw, ParameterSet parameters) {
@@ -146,18 +168,17 @@ public class RawImageProvider implements PlotXYZDataProvider {
 
   @Override
   public double getDomainValue(int index) {
-    // already filtered for ImagingScan
-    return ((ImagingScan) series.getSpectrum(index)).getCoordinates().getX() * width;
+    return pixels.getCenterX(index) * width;
   }
 
   @Override
   public double getRangeValue(int index) {
-    return ((ImagingScan) series.getSpectrum(index)).getCoordinates().getY() * height;
+    return pixels.getCenterY(index) * height;
   }
 
   @Override
   public int getValueCount() {
-    return series.getSpectra().size();
+    return pixels.getNumberOfPixels();
   }
 
   @Override
@@ -167,7 +188,7 @@ public class RawImageProvider implements PlotXYZDataProvider {
 
   @Override
   public double getZValue(int index) {
-    return series.getIntensity(index);
+    return pixels.intensities()[index];
   }
 
   @Nullable
@@ -184,15 +205,31 @@ public class RawImageProvider implements PlotXYZDataProvider {
 
   @Override
   public void computeValues(Property<TaskStatus> status) {
-    series = extractIonTimeSeries();
+    final RawImageKey key = new RawImageKey(raw, scanSelection, mzRange,
+        useMobility && raw instanceof IMSRawDataFile ? mobilityRange : null, normalize);
+    // pixels are read while holding the lock, so the pyramid is not disposed by another image
+    ImageTilePyramid pyramid;
+    synchronized (recentImages) {
+      pyramid = recentImages.get(key);
+      if (pyramid != null) {
+        pixels = pyramid.getPixels(0);
+      }
+    }
+    if (pyramid == null) {
+      IonTimeSeries<Scan> series = extractIonTimeSeries();
 
-    if (normalize != null) {
-      series = normalize.normalize(series, scanSelection.getMatchingScans(raw.getScans()), null);
+      if (normalize != null) {
+        series = normalize.normalize(series, scanSelection.getMatchingScans(raw.getScans()), null);
+      }
+      pyramid = new ImageTilePyramid(series);
+      synchronized (recentImages) {
+        recentImages.put(key, pyramid);
+        pixels = pyramid.getPixels(0);
+      }
     }
+    finishedPercentage = 1d;
 
-    double[] intensities = series.getIntensityValues(new double[series.getNumberOfValues()]);
-    final double[] quantiles = MathUtils.calcQuantile(intensities,
-        ImagingPlot.DEFAULT_IMAGING_QUANTILES);
+    final double[] quantiles = pyramid.getIntensityQuantiles();
     paintScale = MZmineCore.getConfiguration().getDefaultPaintScalePalette()
         .toPaintScale(PaintScaleTransform.LINEAR, Range.closed(quantiles[0], quantiles[1]));
   }
@@ -313,4 +350,13 @@ public class RawImageProvider implements PlotXYZDataProvider {
     finishedPercentage = 1;
     return new SimpleIonTimeSeries(null, mzs.toDoubleArray(), intensities.toDoubleArray(), scans);
   }
+
+  /**
+   * Identifies an extracted image. The mobility range is null if mobility is not used.
+   */
+  private record RawImageKey(ImagingRawDataFile raw, ScanSelection scanSelection,
+                             Range<Double> mzRange, @Nullable Range<Double> mobilityRange,
+                             @Nullable ImageNormalization normalize) {
+
+  }
 }
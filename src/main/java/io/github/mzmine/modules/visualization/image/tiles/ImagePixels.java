@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.image.tiles;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * All non-empty pixels of one {@link ImageTilePyramid} level, collected from the cached tiles.
+ * Coordinates are given in image pixels (level 0) and point to the first pixel of each block.
+ *
+ * @param level         the pyramid level
+ * @param x             x coordinate of each block in image pixels
+ * @param y             y coordinate of each block in image pixels
+ * @param intensities   the maximum intensity of each block
+ * @param sourceIndices the index of the spectrum in the ion series that provided the intensity
+ */
+public record ImagePixels(int level, @NotNull int[] x, @NotNull int[] y,
+                          @NotNull float[] intensities, @NotNull int[] sourceIndices) {
+
+  /**
+   * @return the number of image pixels covered by a block in x and y
+   */
+  public int getBlockSize() {
+    return 1 << level;
+  }
+
+  public int getNumberOfPixels() {
+    return intensities.length;
+  }
+
+  /**
+   * @return the center of a block in image pixel coordinates. Equals the pixel coordinate on
+   * level 0.
+   */
+  public double getCenterX(int index) {
+    return x[index] + (getBlockSize() - 1) / 2d;
+  }
+
+  /**
+   * @return the center of a block in image pixel coordinates. Equals the pixel coordinate on
+   * level 0.
+   */
+  public double getCenterY(int index) {
+    return y[index] + (getBlockSize() - 1) / 2d;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.image.tiles;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A square section of one level of an {@link ImageTilePyramid}. Values are stored row major,
+ * pixels without a spectrum have an intensity of {@link Float#NaN} and a source index of -1.
+ *
+ * @param level         the pyramid level, each pixel covers 2^level x 2^level image pixels
+ * @param x0            first column of this tile in level coordinates
+ * @param y0            first row of this tile in level coordinates
+ * @param width         number of columns in this tile
+ * @param height        number of rows in this tile
+ * @param intensities   the (maximum) intensity of each pixel
+ * @param sourceIndices the index of the spectrum in the ion series that provided the intensity
+ */
+public record ImageTile(int level, int x0, int y0, int width, int height,
+                        @NotNull float[] intensities, @NotNull int[] sourceIndices) {
+
+  public float getIntensity(int x, int y) {
+    return intensities[y * width + x];
+  }
+
+  public int getSourceIndex(int x, int y) {
+    return sourceIndices[y * width + x];
+  }
+
+  public boolean isEmpty(int x, int y) {
+    return sourceIndices[y * width + x] < 0;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.image.tiles;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Least recently used cache of {@link ImageTile}s. A single instance is shared by the image
+ * visualizer and the image column of the feature table, so the memory of decoded tiles is bounded
+ * independent of the number of open images.
+ */
+public class ImageTileCache {
+
+  /**
+   * 128 full tiles of 256x256 pixels take about 64 MB
+   */
+  public static final int DEFAULT_MAX_TILES = 128;
+
+  private static final ImageTileCache instance = new ImageTileCache(DEFAULT_MAX_TILES);
+
+  private final Map<TileKey, ImageTile> tiles;
+
+  public ImageTileCache(int maxTiles) {
+    tiles = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<TileKey, ImageTile> eldest) {
+        return size() > maxTiles;
+      }
+    };
+  }
+
+  public static ImageTileCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * @param loader creates the tile if it is not cached. Called outside the lock, so slow tiles do
+   *               not block other images.
+   * @return the cached or newly loaded tile
+   */
+  @NotNull
+  public ImageTile get(@NotNull ImageTilePyramid pyramid, int level, int tileX, int tileY,
+      @NotNull Supplier<ImageTile> loader) {
+    final TileKey key = new TileKey(pyramid, level, tileX, tileY);
+    synchronized (tiles) {
+      final ImageTile tile = tiles.get(key);
+      if (tile != null) {
+        return tile;
+      }
+    }
+
+    final ImageTile tile = loader.get();
+    synchronized (tiles) {
+      final ImageTile other = tiles.putIfAbsent(key, tile);
+      return other != null ? other : tile;
+    }
+  }
+
+  /**
+   * Removes all tiles of a pyramid, e.g., when the underlying image is not displayed anymore.
+   */
+  public void invalidate(@NotNull ImageTilePyramid pyramid) {
+    synchronized (tiles) {
+      tiles.keySet().removeIf(key -> key.pyramid() == pyramid);
+    }
+  }
+
+  public int size() {
+    synchronized (tiles) {
+      return tiles.size();
+    }
+  }
+
+  public void clear() {
+    synchronized (tiles) {
+      tiles.clear();
+    }
+  }
+
+  /**
+   * Pyramids do not override equals, so tiles are identified by the pyramid instance.
+   */
+  private record TileKey(ImageTilePyramid pyramid, int level, int tileX, int tileY) {
+
+  }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.image.tiles;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.github.mzmine.datamodel.ImagingScan;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.gui.preferences.ImageNormalization;
+import io.github.mzmine.modules.io.import_rawdata_imzml.Coordinates;
+import io.github.mzmine.modules.visualization.image.ImagingPlot;
+import io.github.mzmine.util.MathUtils;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Pixel grid of an ion image with a pyramid of down sampled levels. Level 0 holds one value per
+ * measured image pixel, every following level halves the resolution and keeps the maximum
+ * intensity of each 2x2 block together with the index of the spectrum it came from. Level 0 is
+ * built on creation, all other levels are built in the background.
+ * <p>
+ * Levels are sparse and only store the sorted indices of non-empty pixels and their spectrum
+ * index. Intensities are read from the ion series. Levels are read in tiles of
+ * {@link #TILE_SIZE} pixels through the shared {@link ImageTileCache}.
+ */
+public class ImageTilePyramid {
+
+  public static final int TILE_SIZE = 256;
+
+  /**
+   * No further levels are created once a level fits into this size.
+   */
+  private static final int MIN_LEVEL_SIZE = 16;
+
+  /**
+   * One pyramid per feature data and normalization. Soft values, because the pyramid references
+   * the feature data if it is not normalized.
+   */
+  private static final Cache<IonTimeSeries<?>, Map<ImageNormalization, ImageTilePyramid>> featurePyramids = CacheBuilder.newBuilder()
+      .weakKeys().softValues().build();
+
+  private final IonTimeSeries<? extends Scan> series;
+  private final int minX;
+  private final int minY;
+  private final int width;
+  private final int height;
+  private final double[] quantiles;
+  private final CompletableFuture<PixelLevel>[] levels;
+  private volatile boolean disposed = false;
+
+  /**
+   * @param series an ion series of {@link ImagingScan}s. Spectra that are no imaging scans are
+   *               skipped.
+   */
+  public ImageTilePyramid(@NotNull IonTimeSeries<? extends Scan> series) {
+    this.series = series;
+
+    final int numValues = series.getNumberOfValues();
+    final int[] xs = new int[numValues];
+    final int[] ys = new int[numValues];
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    for (int i = 0; i < numValues; i++) {
+      final Coordinates coordinates = series.getSpectrum(i) instanceof ImagingScan imagingScan
+          ? imagingScan.getCoordinates() : null;
+      if (coordinates == null) {
+        xs[i] = -1;
+        continue;
+      }
+      xs[i] = coordinates.getX();
+      ys[i] = coordinates.getY();
+      minX = Math.min(minX, xs[i]);
+      minY = Math.min(minY, ys[i]);
+      maxX = Math.max(maxX, xs[i]);
+      maxY = Math.max(maxY, ys[i]);
+    }
+
+    if (minX > maxX) {
+      // no imaging scans
+      minX = minY = maxX = maxY = 0;
+    }
+    this.minX = minX;
+    this.minY = minY;
+    width = maxX - minX + 1;
+    height = maxY - minY + 1;
+
+    final int[] pixels = new int[numValues];
+    final int[] sourceIndices = new int[numValues];
+    int size = 0;
+    for (int i = 0; i < numValues; i++) {
+      if (xs[i] < 0) {
+        continue;
+      }
+      pixels[size] = (ys[i] - minY) * width + xs[i] - minX;
+      sourceIndices[size] = i;
+      size++;
+    }
+
+    quantiles = MathUtils.calcQuantile(series.getIntensityValues(new double[numValues]),
+        ImagingPlot.DEFAULT_IMAGING_QUANTILES);
+
+    int numLevels = 1;
+    while (Math.max(getLevelWidth(numLevels - 1), getLevelHeight(numLevels - 1))
+        > MIN_LEVEL_SIZE) {
+      numLevels++;
+    }
+    levels = new CompletableFuture[numLevels];
+    levels[0] = CompletableFuture.completedFuture(
+        createLevel(width, height, pixels, sourceIndices, size));
+    for (int i = 1; i < numLevels; i++) {
+      levels[i] = levels[i - 1].thenApplyAsync(this::downsample);
+    }
+  }
+
+  /**
+   * The pyramid is cached as long as the feature data is in use.
+   *
+   * @param featureData   the feature data of an imaging feature
+   * @param normalize     the normalization or null
+   * @param selectedScans the selected scans used for normalization. No normalization is applied
+   *                      if null or empty.
+   * @return the pyramid of the (normalized) feature data
+   */
+  @NotNull
+  public static <T extends ImagingScan> ImageTilePyramid of(@NotNull IonTimeSeries<T> featureData,
+      @Nullable ImageNormalization normalize, @Nullable List<T> selectedScans) {
+    final ImageNormalization normalization =
+        normalize == null || selectedScans == null || selectedScans.isEmpty()
+            ? ImageNormalization.NO_NORMALIZATION : normalize;
+
+    final Map<ImageNormalization, ImageTilePyramid> pyramids = featurePyramids.asMap()
+        .computeIfAbsent(featureData, k -> new EnumMap<>(ImageNormalization.class));
+    synchronized (pyramids) {
+      return pyramids.computeIfAbsent(normalization, n -> new ImageTilePyramid(
+          n.normalize(featureData, selectedScans, null)));
+    }
+  }
+
+  /**
+   * Keeps the maximum of each 2x2 block.
+   */
+  private PixelLevel downsample(@NotNull PixelLevel previous) {
+    final int size = previous.pixels().length;
+    final int[] pixels = previous.pixels().clone();
+
+    final int width = (previous.width() + 1) / 2;
+    final int height = (previous.height() + 1) / 2;
+    for (int i = 0; i < size; i++) {
+      final int x = pixels[i] % previous.width();
+      final int y = pixels[i] / previous.width();
+      pixels[i] = (y >> 1) * width + (x >> 1);
+    }
+    return createLevel(width, height, pixels, previous.sourceIndices(), size);
+  }
+
+  /**
+   * Sorts the pixels and keeps the spectrum with the maximum intensity of each pixel. Of equal
+   * intensities, the first one is kept.
+   *
+   * @param pixels        the pixel index (y * width + x) of each spectrum
+   * @param sourceIndices the index of each spectrum in the series
+   * @param size          the number of used values in the arrays
+   */
+  private PixelLevel createLevel(int width, int height, int[] pixels, int[] sourceIndices,
+      int size) {
+    // sort by pixel and keep the order of equal pixels
+    final long[] sorted = new long[size];
+    for (int i = 0; i < size; i++) {
+      sorted[i] = ((long) pixels[i] << 32) | i;
+    }
+    Arrays.sort(sorted);
+
+    final int[] levelPixels = new int[size];
+    final int[] levelSources = new int[size];
+    int levelSize = 0;
+    double maxIntensity = 0;
+    for (long value : sorted) {
+      final int pixel = (int) (value >>> 32);
+      final int source = sourceIndices[(int) value];
+      final double intensity = series.getIntensity(source);
+      if (levelSize > 0 && levelPixels[levelSize - 1] == pixel) {
+        if (intensity > maxIntensity) {
+          levelSources[levelSize - 1] = source;
+          maxIntensity = intensity;
+        }
+        continue;
+      }
+      levelPixels[levelSize] = pixel;
+      levelSources[levelSize] = source;
+      maxIntensity = intensity;
+      levelSize++;
+    }
+
+    return new PixelLevel(width, height, Arrays.copyOf(levelPixels, levelSize),
+        Arrays.copyOf(levelSources, levelSize));
+  }
+
+  /**
+   * Removes all tiles of this pyramid from the {@link ImageTileCache}. The pyramid cannot be used
+   * afterwards.
+   */
+  public void dispose() {
+    disposed = true;
+    ImageTileCache.getInstance().invalidate(this);
+  }
+
+  /**
+   * @return the ion series this pyramid was built from. Source indices point into this series.
+   */
+  @NotNull
+  public IonTimeSeries<? extends Scan> getSeries() {
+    return series;
+  }
+
+  /**
+   * @return the intensities at {@link ImagingPlot#DEFAULT_IMAGING_QUANTILES}
+   */
+  public double[] getIntensityQuantiles() {
+    return quantiles;
+  }
+
+  public int getMinX() {
+    return minX;
+  }
+
+  public int getMinY() {
+    return minY;
+  }
+
+  public int getNumberOfLevels() {
+    return levels.length;
+  }
+
+  public int getLevelWidth(int level) {
+    return (width + (1 << level) - 1) >> level;
+  }
+
+  public int getLevelHeight(int level) {
+    return (height + (1 << level) - 1) >> level;
+  }
+
+  /**
+   * @param maxSize the maximum number of pixels in x and y, e.g., the size of the chart. 0 or less
+   *                for the full resolution.
+   * @return the coarsest level that still resolves maxSize pixels, so no details are lost in the
+   * rendered image.
+   */
+  public int getLevelForMaxSize(int maxSize) {
+    if (maxSize <= 0) {
+      return 0;
+    }
+    int level = 0;
+    while (level < levels.length - 1
+        && Math.max(getLevelWidth(level + 1), getLevelHeight(level + 1)) >= maxSize) {
+      level++;
+    }
+    return level;
+  }
+
+  public int getNumTilesX(int level) {
+    return (getLevelWidth(level) + TILE_SIZE - 1) / TILE_SIZE;
+  }
+
+  public int getNumTilesY(int level) {
+    return (getLevelHeight(level) + TILE_SIZE - 1) / TILE_SIZE;
+  }
+
+  /**
+   * Waits for the level if it is still built in the background.
+   *
+   * @return the tile from the shared {@link ImageTileCache}
+   */
+  @NotNull
+  public ImageTile getTile(int level, int tileX, int tileY) {
+    return ImageTileCache.getInstance()
+        .get(this, level, tileX, tileY, () -> createTile(level, tileX, tileY));
+  }
+
+  /**
+   * Collects all non-empty pixels of a level from the cached tiles.
+   */
+  @NotNull
+  public ImagePixels getPixels(int level) {
+    final IntArrayList xs = new IntArrayList();
+    final IntArrayList ys = new IntArrayList();
+    final FloatArrayList intensities = new FloatArrayList();
+    final IntArrayList sourceIndices = new IntArrayList();
+
+    for (int tileY = 0; tileY < getNumTilesY(level); tileY++) {
+      for (int tileX = 0; tileX < getNumTilesX(level); tileX++) {
+        final ImageTile tile = getTile(level, tileX, tileY);
+        for (int y = 0; y < tile.height(); y++) {
+          for (int x = 0; x < tile.width(); x++) {
+            if (tile.isEmpty(x, y)) {
+              continue;
+            }
+            xs.add(minX + ((tile.x0() + x) << level));
+            ys.add(minY + ((tile.y0() + y) << level));
+            intensities.add(tile.getIntensity(x, y));
+            sourceIndices.add(tile.getSourceIndex(x, y));
+          }
+        }
+      }
+    }
+    return new ImagePixels(level, xs.toIntArray(), ys.toIntArray(), intensities.toFloatArray(),
+        sourceIndices.toIntArray());
+  }
+
+  @NotNull
+  private ImageTile createTile(int level, int tileX, int tileY) {
+    if (disposed) {
+      throw new IllegalStateException("The image pyramid was already disposed");
+    }
+    final PixelLevel grid = levels[level].join();
+    final int x0 = tileX * TILE_SIZE;
+    final int y0 = tileY * TILE_SIZE;
+    final int tileWidth = Math.min(TILE_SIZE, grid.width() - x0);
+    final int tileHeight = Math.min(TILE_SIZE, grid.height() - y0);
+    if (tileWidth <= 0 || tileHeight <= 0) {
+      throw new IndexOutOfBoundsException(
+          "Tile " + tileX + "/" + tileY + " is outside of level " + level);
+    }
+
+    final float[] intensities = new float[tileWidth * tileHeight];
+    final int[] sourceIndices = new int[tileWidth * tileHeight];
+    Arrays.fill(intensities, Float.NaN);
+    Arrays.fill(sourceIndices, -1);
+    final int[] pixels = grid.pixels();
+    for (int y = 0; y < tileHeight; y++) {
+      final int start = (y0 + y) * grid.width() + x0;
+      final int end = start + tileWidth;
+      for (int i = lowerBound(pixels, start); i < pixels.length && pixels[i] < end; i++) {
+        final int tilePixel = y * tileWidth + pixels[i] - start;
+        final int source = grid.sourceIndices()[i];
+        sourceIndices[tilePixel] = source;
+        intensities[tilePixel] = (float) series.getIntensity(source);
+      }
+    }
+    return new ImageTile(level, x0, y0, tileWidth, tileHeight, intensities, sourceIndices);
+  }
+
+  /**
+   * @return the first index of a value >= key in the sorted array
+   */
+  private static int lowerBound(@NotNull int[] sorted, int key) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sorted[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Sparse level with the sorted pixel indices (y * width + x) of all non-empty pixels and the
+   * index of the spectrum that provided the (maximum) intensity.
+   */
+  private record PixelLevel(int width, int height, int[] pixels, int[] sourceIndices) {
+
+  }
+
+}
@@ -32,13 +32,21 @@ import static io.github.mzmine.modules.visualization.networking.visual.enums.Gra
 
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.visualization.networking.visual.enums.EdgeAtt;
 import io.github.mzmine.modules.visualization.networking.visual.enums.GraphElementAttr;
 import io.github.mzmine.modules.visualization.networking.visual.enums.GraphObject;
 import io.github.mzmine.modules.visualization.networking.visual.enums.GraphStyleAttribute;
 import io.github.mzmine.modules.visualization.networking.visual.enums.NodeAtt;
+import io.github.mzmine.modules.visualization.networking.visual.layout.FeatureNetworkLayout;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
 import java.io.IOException;
+import java.time.Instant;
 import java.util.Collection;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.animation.PauseTransition;
 import javafx.beans.property.ObjectProperty;
@@ -49,6 +57,7 @@ import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.Spinner;
 import javafx.scene.control.SpinnerValueFactory;
@@ -62,7 +71,9 @@ import org.controlsfx.control.SearchableComboBox;
 import org.controlsfx.control.ToggleSwitch;
 import org.controlsfx.control.textfield.TextFields;
 import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.MultiGraph;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Loads FeatureNetworkPane.fxml
@@ -115,14 +126,89 @@ public class FeatureNetworkController {
     // create graph and add to center
     FeatureNetworkGenerator generator = new FeatureNetworkGenerator();
     var fullGraph = generator.createNewGraph(flist, false, false);
+    // positions are stored on the rows - only computed once per feature list and network
+    boolean hasLayout = FeatureNetworkLayout.applyStoredLayout(fullGraph);
     networkPane = new FeatureNetworkPane(this, flist, focussedRows, generator, fullGraph);
-    mainPane.setCenter(networkPane);
+    if (hasLayout) {
+      mainPane.setCenter(networkPane);
+    } else {
+      mainPane.setCenter(new Label("Computing network layout..."));
+      computeLayout(flist, fullGraph);
+    }
 
     addMenuOptions();
     addAnnotationFilterOptions(flist);
     addBindings();
   }
 
+  /**
+   * Computes the layout in a task and shows the network pane when done. If the task is canceled or
+   * fails, the network pane is shown without the precomputed layout and lays out the visible nodes
+   * itself.
+   */
+  private void computeLayout(final @NotNull FeatureList flist, final @NotNull MultiGraph graph) {
+    final int numNodes = graph.getNodeCount();
+    final int[][] edges = FeatureNetworkLayout.getEdgeIndices(graph);
+
+    Task layoutTask = new AbstractTask(null, Instant.now()) {
+      // only replace the placeholder once, on the FX thread
+      private boolean shown = false;
+
+      @Override
+      public void run() {
+        setStatus(TaskStatus.PROCESSING);
+        final double[][] xy;
+        try {
+          xy = FeatureNetworkLayout.computeCoordinates(numNodes, edges,
+              TaskThreadPool.getMaxThreads());
+        } catch (Throwable t) {
+          logger.log(Level.WARNING, "Network layout error: " + t.getMessage(), t);
+          setErrorMessage("Cannot compute the network layout: " + t.getMessage());
+          setStatus(TaskStatus.ERROR);
+          MZmineCore.runLater(() -> showNetworkPane(null));
+          return;
+        }
+        if (isCanceled()) {
+          return;
+        }
+        MZmineCore.runLater(() -> showNetworkPane(xy));
+        setStatus(TaskStatus.FINISHED);
+      }
+
+      @Override
+      public void cancel() {
+        super.cancel();
+        // also if the task did not start yet
+        MZmineCore.runLater(() -> showNetworkPane(null));
+      }
+
+      private void showNetworkPane(final double @Nullable [][] xy) {
+        if (shown) {
+          return;
+        }
+        shown = true;
+        if (xy != null) {
+          FeatureNetworkLayout.applyCoordinates(graph, xy, true);
+        }
+        mainPane.setCenter(networkPane);
+        networkPane.showFocussedRows();
+      }
+
+      @Override
+      public String getTaskDescription() {
+        return "Computing network layout of %d nodes for %s".formatted(numNodes,
+            flist.getName());
+      }
+
+      @Override
+      public double getFinishedPercentage() {
+        return 0;
+      }
+    };
+
+    MZmineCore.getTaskController().addTask(layoutTask);
+  }
+
   private void addBindings() {
     getSelectedNodes().addListener(
         (ListChangeListener<? super Node>) c -> btnFocusSelectedNodes.setText(
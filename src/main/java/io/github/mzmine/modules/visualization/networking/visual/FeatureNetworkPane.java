@@ -162,6 +162,13 @@ public class FeatureNetworkPane extends NetworkPane {
     showNodesNeighbors(nodes);
   }
 
+  /**
+   * Shows the neighbors of the focussed rows again, e.g., after the layout was computed
+   */
+  public void showFocussedRows() {
+    showNodesNeighbors(getNodes(focussedRows));
+  }
+
   private void showNodesNeighbors(final List<Node> selected) {
     logger.fine(() -> "Showing neighboring nodes distance %d of selected nodes %d".formatted(
         getNeighborDistance(), selected.size()));
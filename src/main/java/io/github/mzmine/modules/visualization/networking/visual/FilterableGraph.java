@@ -25,6 +25,7 @@
 
 package io.github.mzmine.modules.visualization.networking.visual;
 
+import io.github.mzmine.modules.visualization.networking.visual.layout.FeatureNetworkLayout;
 import io.github.mzmine.util.GraphStreamUtils;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -118,9 +119,6 @@ public class FilterableGraph extends MultiGraph {
   private MultiGraph copyNetworkApplyLayout(final Collection<Node> neighboringNodes,
       final @Nullable Node frozen) {
     MultiGraph gl = new MultiGraph("layout_graph");
-    Layout layout = new SpringBox(false);
-    layout.setForce(1);
-    layout.setQuality(0.75);
 
     for (Node n : neighboringNodes) {
       addCopy(gl, n);
@@ -135,7 +133,13 @@ public class FilterableGraph extends MultiGraph {
       });
     }
 
-    Toolkit.computeLayout(gl, layout, 0.75);
+    // use the precomputed layout of the full network and only fall back to a live layout
+    if (!FeatureNetworkLayout.hasLayout(neighboringNodes)) {
+      Layout layout = new SpringBox(false);
+      layout.setForce(1);
+      layout.setQuality(0.75);
+      Toolkit.computeLayout(gl, layout, 0.75);
+    }
 
     final double[] origin =
         frozen == null ? new double[]{0, 0} : Toolkit.nodePosition(gl.getNode(frozen.getId()));
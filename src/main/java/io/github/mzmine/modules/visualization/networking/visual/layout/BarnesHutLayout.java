@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.networking.visual.layout;
+
+import io.github.mzmine.taskcontrol.TaskThreadPool;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Offline force-directed layout (Fruchterman-Reingold) for large networks. Repulsion is
+ * approximated by a Barnes-Hut quadtree (O(n log n) per iteration). Each connected component is
+ * laid out independently and in parallel, large components also compute the forces in parallel.
+ * Finally, all components are packed into rows, largest first. The ideal edge length is 1.
+ */
+public class BarnesHutLayout {
+
+  private static final double THETA = 0.9;
+  private static final int MAX_TREE_DEPTH = 32;
+  private static final int PARALLEL_NODES = 2000;
+  private static final double COMPONENT_MARGIN = 2d;
+  private static final long SEED = 42L;
+
+  private final int threads;
+
+  public BarnesHutLayout(int threads) {
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * @param numNodes   number of nodes
+   * @param edgeSource source node of each edge
+   * @param edgeTarget target node of each edge
+   * @return [x, y] coordinates of each node
+   */
+  public double[][] layout(int numNodes, @NotNull int[] edgeSource, @NotNull int[] edgeTarget) {
+    final double[] x = new double[numNodes];
+    final double[] y = new double[numNodes];
+    if (numNodes == 0) {
+      return new double[][]{x, y};
+    }
+    final int[][] adjacency = adjacency(numNodes, edgeSource, edgeTarget);
+    final List<int[]> components = connectedComponents(numNodes, adjacency);
+    // large components first for a better load balance
+    components.sort(Comparator.<int[]>comparingInt(c -> -c.length).thenComparingInt(c -> c[0]));
+
+    try {
+      TaskThreadPool.invoke(threads, () -> {
+        components.parallelStream()
+            .forEach(component -> layoutComponent(component, adjacency, x, y));
+        return null;
+      });
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException("Error during network layout: " + e.getMessage(), e);
+    }
+
+    packComponents(components, x, y);
+    return new double[][]{x, y};
+  }
+
+  /**
+   * Undirected adjacency lists without self loops, duplicate edges are kept (stronger
+   * attraction).
+   */
+  static int[][] adjacency(int numNodes, int[] edgeSource, int[] edgeTarget) {
+    final int[] degree = new int[numNodes];
+    for (int e = 0; e < edgeSource.length; e++) {
+      if (edgeSource[e] != edgeTarget[e]) {
+        degree[edgeSource[e]]++;
+        degree[edgeTarget[e]]++;
+      }
+    }
+    final int[][] adjacency = new int[numNodes][];
+    for (int i = 0; i < numNodes; i++) {
+      adjacency[i] = new int[degree[i]];
+    }
+    Arrays.fill(degree, 0);
+    for (int e = 0; e < edgeSource.length; e++) {
+      final int a = edgeSource[e];
+      final int b = edgeTarget[e];
+      if (a != b) {
+        adjacency[a][degree[a]++] = b;
+        adjacency[b][degree[b]++] = a;
+      }
+    }
+    return adjacency;
+  }
+
+  /**
+   * @return the nodes of each component in ascending order
+   */
+  static List<int[]> connectedComponents(int numNodes, int[][] adjacency) {
+    final int[] component = new int[numNodes];
+    Arrays.fill(component, -1);
+    final List<int[]> components = new ArrayList<>();
+    final int[] queue = new int[numNodes];
+    for (int start = 0; start < numNodes; start++) {
+      if (component[start] != -1) {
+        continue;
+      }
+      final int id = components.size();
+      int head = 0;
+      int tail = 0;
+      queue[tail++] = start;
+      component[start] = id;
+      while (head < tail) {
+        final int node = queue[head++];
+        for (int neighbor : adjacency[node]) {
+          if (component[neighbor] == -1) {
+            component[neighbor] = id;
+            queue[tail++] = neighbor;
+          }
+        }
+      }
+      final int[] nodes = Arrays.copyOf(queue, tail);
+      Arrays.sort(nodes);
+      components.add(nodes);
+    }
+    return components;
+  }
+
+  private static void layoutComponent(int[] nodes, int[][] adjacency, double[] globalX,
+      double[] globalY) {
+    final int n = nodes.length;
+    if (n == 1) {
+      globalX[nodes[0]] = 0;
+      globalY[nodes[0]] = 0;
+      return;
+    }
+    // local indices
+    final int[][] localAdjacency = new int[n][];
+    for (int i = 0; i < n; i++) {
+      final int[] neighbors = adjacency[nodes[i]];
+      localAdjacency[i] = new int[neighbors.length];
+      for (int k = 0; k < neighbors.length; k++) {
+        localAdjacency[i][k] = Arrays.binarySearch(nodes, neighbors[k]);
+      }
+    }
+
+    final double side = Math.sqrt(n);
+    final Random random = new Random(SEED + nodes[0]);
+    final double[] x = new double[n];
+    final double[] y = new double[n];
+    for (int i = 0; i < n; i++) {
+      x[i] = random.nextDouble() * side;
+      y[i] = random.nextDouble() * side;
+    }
+
+    final double[] dx = new double[n];
+    final double[] dy = new double[n];
+    final int iterations = n <= PARALLEL_NODES ? 300 : 150;
+    final double startTemperature = side / 5d + 0.5d;
+    for (int iteration = 0; iteration < iterations; iteration++) {
+      final double temperature = startTemperature * (1d - iteration / (double) iterations) + 0.01;
+      final QuadTree tree = new QuadTree(x, y);
+      final IntStream indices =
+          n > PARALLEL_NODES ? IntStream.range(0, n).parallel() : IntStream.range(0, n);
+      indices.forEach(i -> {
+        final double[] force = tree.repulsion(i);
+        double fx = force[0];
+        double fy = force[1];
+        // attraction d^2 / k along the edges
+        for (int j : localAdjacency[i]) {
+          final double ex = x[i] - x[j];
+          final double ey = y[i] - y[j];
+          final double d = Math.sqrt(ex * ex + ey * ey);
+          fx -= ex * d;
+          fy -= ey * d;
+        }
+        dx[i] = fx;
+        dy[i] = fy;
+      });
+      for (int i = 0; i < n; i++) {
+        final double length = Math.sqrt(dx[i] * dx[i] + dy[i] * dy[i]);
+        if (length > 0) {
+          final double move = Math.min(length, temperature) / length;
+          x[i] += dx[i] * move;
+          y[i] += dy[i] * move;
+        }
+      }
+    }
+
+    for (int i = 0; i < n; i++) {
+      globalX[nodes[i]] = x[i];
+      globalY[nodes[i]] = y[i];
+    }
+  }
+
+  /**
+   * Shelf packing of the component bounding boxes, components are already sorted by size.
+   */
+  private static void packComponents(List<int[]> components, double[] x, double[] y) {
+    final int numComponents = components.size();
+    final double[][] boxes = new double[numComponents][];
+    double area = 0;
+    double maxWidth = 0;
+    for (int c = 0; c < numComponents; c++) {
+      double minX = Double.POSITIVE_INFINITY;
+      double minY = Double.POSITIVE_INFINITY;
+      double maxX = Double.NEGATIVE_INFINITY;
+      double maxY = Double.NEGATIVE_INFINITY;
+      for (int node : components.get(c)) {
+        minX = Math.min(minX, x[node]);
+        minY = Math.min(minY, y[node]);
+        maxX = Math.max(maxX, x[node]);
+        maxY = Math.max(maxY, y[node]);
+      }
+      final double width = maxX - minX + COMPONENT_MARGIN;
+      final double height = maxY - minY + COMPONENT_MARGIN;
+      boxes[c] = new double[]{minX, minY, width, height};
+      area += width * height;
+      maxWidth = Math.max(maxWidth, width);
+    }
+
+    final double rowWidth = Math.max(maxWidth, Math.sqrt(area));
+    double cursorX = 0;
+    double cursorY = 0;
+    double rowHeight = 0;
+    for (int c = 0; c < numComponents; c++) {
+      final double[] box = boxes[c];
+      if (cursorX > 0 && cursorX + box[2] > rowWidth) {
+        cursorX = 0;
+        cursorY += rowHeight;
+        rowHeight = 0;
+      }
+      final double shiftX = cursorX - box[0];
+      final double shiftY = cursorY - box[1];
+      for (int node : components.get(c)) {
+        x[node] += shiftX;
+        y[node] += shiftY;
+      }
+      cursorX += box[2];
+      rowHeight = Math.max(rowHeight, box[3]);
+    }
+  }
+
+  /**
+   * Quadtree with the center of mass of each cell. Rebuilt in each iteration.
+   */
+  private static final class QuadTree {
+
+    private final double[] x;
+    private final double[] y;
+    private final Cell root;
+
+    private QuadTree(double[] x, double[] y) {
+      this.x = x;
+      this.y = y;
+      double minX = Double.POSITIVE_INFINITY;
+      double minY = Double.POSITIVE_INFINITY;
+      double maxX = Double.NEGATIVE_INFINITY;
+      double maxY = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < x.length; i++) {
+        minX = Math.min(minX, x[i]);
+        minY = Math.min(minY, y[i]);
+        maxX = Math.max(maxX, x[i]);
+        maxY = Math.max(maxY, y[i]);
+      }
+      root = new Cell(minX, minY, Math.max(maxX - minX, maxY - minY) + 1E-9);
+      for (int i = 0; i < x.length; i++) {
+        insert(root, i, 0);
+      }
+    }
+
+    private void insert(Cell cell, int i, int depth) {
+      while (true) {
+        cell.count++;
+        cell.sumX += x[i];
+        cell.sumY += y[i];
+        if (cell.count == 1) {
+          cell.point = i;
+          return;
+        }
+        if (cell.children == null) {
+          if (depth >= MAX_TREE_DEPTH) {
+            // coincident points stay aggregated
+            cell.point = -1;
+            return;
+          }
+          cell.split();
+          final int existing = cell.point;
+          cell.point = -1;
+          final Cell child = cell.childFor(x[existing], y[existing]);
+          child.count = 1;
+          child.sumX = x[existing];
+          child.sumY = y[existing];
+          child.point = existing;
+        }
+        cell = cell.childFor(x[i], y[i]);
+        depth++;
+      }
+    }
+
+    /**
+     * Repulsion k^2 / d of all other nodes on node i
+     */
+    private double[] repulsion(int i) {
+      final double xi = x[i];
+      final double yi = y[i];
+      double fx = 0;
+      double fy = 0;
+      final Cell[] stack = new Cell[4 * MAX_TREE_DEPTH + 4];
+      int size = 0;
+      stack[size++] = root;
+      while (size > 0) {
+        final Cell cell = stack[--size];
+        if (cell.count == 0 || cell.point == i) {
+          continue;
+        }
+        final double cx = cell.sumX / cell.count;
+        final double cy = cell.sumY / cell.count;
+        final double ex = xi - cx;
+        final double ey = yi - cy;
+        final double d2 = ex * ex + ey * ey;
+        if (cell.children == null || cell.size * cell.size < THETA * THETA * d2) {
+          if (d2 > 1E-12) {
+            // count * k^2 / d in direction of e / d
+            fx += cell.count * ex / d2;
+            fy += cell.count * ey / d2;
+          } else if (cell.children == null) {
+            // coincident nodes, push apart deterministically
+            fx += 1E-3 * ((i & 1) == 0 ? 1 : -1);
+            fy += 1E-3 * ((i & 2) == 0 ? 1 : -1);
+          }
+          continue;
+        }
+        for (Cell child : cell.children) {
+          if (child.count > 0) {
+            stack[size++] = child;
+          }
+        }
+      }
+      return new double[]{fx, fy};
+    }
+  }
+
+  private static final class Cell {
+
+    private final double minX;
+    private final double minY;
+    private final double size;
+    private int count;
+    private double sumX;
+    private double sumY;
+    private int point = -1;
+    private Cell[] children;
+
+    private Cell(double minX, double minY, double size) {
+      this.minX = minX;
+      this.minY = minY;
+      this.size = size;
+    }
+
+    private void split() {
+      final double half = size / 2;
+      children = new Cell[]{new Cell(minX, minY, half), new Cell(minX + half, minY, half),
+          new Cell(minX, minY + half, half), new Cell(minX + half, minY + half, half)};
+    }
+
+    private Cell childFor(double px, double py) {
+      final double half = size / 2;
+      final int index = (px >= minX + half ? 1 : 0) + (py >= minY + half ? 2 : 0);
+      return children[index];
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.networking.visual.layout;
+
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.types.networking.NetworkLayoutHashType;
+import io.github.mzmine.datamodel.features.types.networking.NetworkLayoutXType;
+import io.github.mzmine.datamodel.features.types.networking.NetworkLayoutYType;
+import io.github.mzmine.modules.visualization.networking.visual.enums.NodeAtt;
+import java.util.List;
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.MultiGraph;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Precomputed layout of the full feature network. The coordinates are set as the "xy" attribute
+ * of the nodes and stored on the rows ({@link NetworkLayoutXType}, {@link NetworkLayoutYType}),
+ * so that they are saved with the project and the view does not need to run a live layout. The
+ * {@link NetworkLayoutHashType} of the edges of each row node invalidates the stored layout when
+ * the network changed, e.g., after new annotations or correlation results.
+ */
+public class FeatureNetworkLayout {
+
+  /**
+   * Attribute read by the GraphStream viewer
+   */
+  public static final String XY = "xy";
+
+  private FeatureNetworkLayout() {
+  }
+
+  /**
+   * Computes the layout of all nodes with {@link BarnesHutLayout}
+   *
+   * @param storeOnRows store the coordinates of row nodes on the rows
+   */
+  public static void computeLayout(@NotNull MultiGraph graph, int threads, boolean storeOnRows) {
+    final int[][] edges = getEdgeIndices(graph);
+    final double[][] xy = computeCoordinates(graph.getNodeCount(), edges, threads);
+    applyCoordinates(graph, xy, storeOnRows);
+  }
+
+  /**
+   * @return the source and target node index of each edge
+   */
+  public static int[][] getEdgeIndices(@NotNull MultiGraph graph) {
+    final List<Edge> edges = graph.edges().toList();
+    final int[] source = new int[edges.size()];
+    final int[] target = new int[edges.size()];
+    for (int e = 0; e < edges.size(); e++) {
+      source[e] = edges.get(e).getNode0().getIndex();
+      target[e] = edges.get(e).getNode1().getIndex();
+    }
+    return new int[][]{source, target};
+  }
+
+  /**
+   * Computes the layout with {@link BarnesHutLayout} without accessing the graph, e.g., on a
+   * background thread
+   *
+   * @param edges source and target node indices, see {@link #getEdgeIndices(MultiGraph)}
+   * @return the x and y coordinates of each node index
+   */
+  public static double[][] computeCoordinates(int numNodes, int[][] edges, int threads) {
+    return new BarnesHutLayout(threads).layout(numNodes, edges[0], edges[1]);
+  }
+
+  /**
+   * Sets the coordinates as node attributes
+   *
+   * @param xy          the x and y coordinates of each node index
+   * @param storeOnRows store the coordinates of row nodes on the rows
+   */
+  public static void applyCoordinates(@NotNull MultiGraph graph, double[][] xy,
+      boolean storeOnRows) {
+    for (Node node : graph.nodes().toList()) {
+      final double x = xy[0][node.getIndex()];
+      final double y = xy[1][node.getIndex()];
+      node.setAttribute(XY, x, y);
+      final FeatureListRow row = getRow(node);
+      if (storeOnRows && row != null) {
+        row.set(NetworkLayoutXType.class, (float) x);
+        row.set(NetworkLayoutYType.class, (float) y);
+        row.set(NetworkLayoutHashType.class, edgeHash(node));
+      }
+    }
+  }
+
+  /**
+   * Sets the coordinates stored on the rows. Other nodes (e.g., neutral molecules) are placed at
+   * the center of their positioned neighbors.
+   *
+   * @return true if all nodes were positioned, false if the layout needs to be computed because
+   * positions are missing or the edges of a row node changed since the layout was computed
+   */
+  public static boolean applyStoredLayout(@NotNull MultiGraph graph) {
+    final List<Node> nodes = graph.nodes().toList();
+    final double[] x = new double[nodes.size()];
+    final double[] y = new double[nodes.size()];
+    final boolean[] positioned = new boolean[nodes.size()];
+    for (Node node : nodes) {
+      final FeatureListRow row = getRow(node);
+      if (row == null) {
+        continue;
+      }
+      final Float rowX = row.get(NetworkLayoutXType.class);
+      final Float rowY = row.get(NetworkLayoutYType.class);
+      final Integer hash = row.get(NetworkLayoutHashType.class);
+      if (rowX == null || rowY == null || hash == null || hash != edgeHash(node)) {
+        return false;
+      }
+      x[node.getIndex()] = rowX;
+      y[node.getIndex()] = rowY;
+      positioned[node.getIndex()] = true;
+    }
+
+    for (Node node : nodes) {
+      if (positioned[node.getIndex()]) {
+        continue;
+      }
+      final int[] count = {0};
+      node.neighborNodes().filter(n -> positioned[n.getIndex()]).forEach(n -> {
+        x[node.getIndex()] += x[n.getIndex()];
+        y[node.getIndex()] += y[n.getIndex()];
+        count[0]++;
+      });
+      if (count[0] == 0) {
+        return false;
+      }
+      x[node.getIndex()] /= count[0];
+      y[node.getIndex()] /= count[0];
+    }
+
+    for (Node node : nodes) {
+      node.setAttribute(XY, x[node.getIndex()], y[node.getIndex()]);
+    }
+    return true;
+  }
+
+  /**
+   * @return true if all nodes have a position
+   */
+  public static boolean hasLayout(@NotNull Iterable<Node> nodes) {
+    for (Node node : nodes) {
+      if (!node.hasAttribute(XY)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return a hash of the edge IDs of a node. The IDs contain the IDs of both nodes and the edge
+   * type.
+   */
+  private static int edgeHash(@NotNull Node node) {
+    return node.edges().map(Edge::getId).sorted().toList().hashCode();
+  }
+
+  @Nullable
+  private static FeatureListRow getRow(Node node) {
+    return node.getAttribute(NodeAtt.ROW.toString()) instanceof FeatureListRow row ? row : null;
+  }
+}
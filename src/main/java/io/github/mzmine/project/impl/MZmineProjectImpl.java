@@ -36,6 +36,7 @@ import io.github.mzmine.modules.visualization.projectmetadata.table.MetadataTabl
 import io.github.mzmine.parameters.UserParameter;
 import io.github.mzmine.project.impl.ProjectChangeEvent.Type;
 import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.scans.MSnTreeIndex;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import java.io.File;
 import java.util.ArrayList;
@@ -229,6 +230,7 @@ public class MZmineProjectImpl implements MZmineProject {
       for (RawDataFile f : file) {
         // Remove the file from the metadata table
         projectMetadata.removeFile(f);
+        MSnTreeIndex.invalidate(f);
 
         // Close the data file, which also removed the temporary data
         f.close();
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.taskcontrol;
+
+import io.github.mzmine.util.MemoryMapStorage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Resources used by a single task. CPU time, allocated bytes and stored bytes only cover the work
+ * done in the thread that executed the task, not in parallel streams or other threads started by
+ * the task. Values are -1 if the JVM does not support the measurement.
+ *
+ * @param description    task description at the end of the task
+ * @param status         final status of the task
+ * @param wallTimeNanos  elapsed time
+ * @param cpuTimeNanos   CPU time of the executing thread
+ * @param allocatedBytes bytes allocated on the heap by the executing thread
+ * @param storedBytes    bytes written to any {@link MemoryMapStorage} by the executing thread
+ * @param processedItems processed items if the task is a {@link ProcessedItemsCounter}, otherwise
+ *                       -1
+ */
+public record TaskMetrics(@NotNull String description, @NotNull TaskStatus status,
+                          long wallTimeNanos, long cpuTimeNanos, long allocatedBytes,
+                          long storedBytes, int processedItems) {
+
+  /**
+   * Starts the measurement in the current thread. {@link Stopwatch#stop(Task)} needs to be called
+   * from the same thread.
+   */
+  public static Stopwatch start() {
+    return new Stopwatch();
+  }
+
+  public static final class Stopwatch {
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private final long startWall;
+    private final long startCpu;
+    private final long startAllocated;
+    private final long startStored;
+
+    private Stopwatch() {
+      startWall = System.nanoTime();
+      startCpu = cpuTime();
+      startAllocated = allocatedBytes();
+      startStored = MemoryMapStorage.getCurrentThreadStoredBytes();
+    }
+
+    private static long cpuTime() {
+      return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime()
+          : -1L;
+    }
+
+    private static long allocatedBytes() {
+      if (threadBean instanceof com.sun.management.ThreadMXBean sunBean
+          && sunBean.isThreadAllocatedMemorySupported()
+          && sunBean.isThreadAllocatedMemoryEnabled()) {
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+      return -1L;
+    }
+
+    private static long diff(long start, long end) {
+      return start < 0 || end < 0 ? -1L : end - start;
+    }
+
+    /**
+     * @param task the measured task
+     * @return the resources used since the start of this stopwatch
+     */
+    public TaskMetrics stop(@NotNull Task task) {
+      final long wall = System.nanoTime() - startWall;
+      final long cpu = diff(startCpu, cpuTime());
+      final long allocated = diff(startAllocated, allocatedBytes());
+      final long stored = MemoryMapStorage.getCurrentThreadStoredBytes() - startStored;
+      final int items = task instanceof ProcessedItemsCounter counter ? counter.getProcessedItems()
+          : -1;
+      return new TaskMetrics(String.valueOf(task.getTaskDescription()), task.getStatus(), wall,
+          cpu, allocated, stored, items);
+    }
+  }
+}
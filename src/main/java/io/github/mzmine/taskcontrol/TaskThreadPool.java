@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.taskcontrol;
+
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.gui.preferences.NumOfThreadsParameter;
+import io.github.mzmine.main.MZmineCore;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Thread count and a shared fork join pool for tasks that parallelize their work internally.
+ * The task controller already runs up to the number of threads set in the preferences, so every
+ * task that creates its own pool of that size oversubscribes the CPU. All tasks share one pool
+ * that is bounded by the preferences instead.
+ */
+public final class TaskThreadPool {
+
+  /**
+   * Same as the default of the fork join pool for threads blocked in joins
+   */
+  private static final int MAX_COMPENSATION_THREADS = 256;
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  private static ForkJoinPool pool;
+
+  private TaskThreadPool() {
+  }
+
+  /**
+   * @return the number of threads set in the preferences or the available processors if set to
+   * automatic
+   */
+  public static int getMaxThreads() {
+    final NumOfThreadsParameter parameter = MZmineCore.getConfiguration().getPreferences()
+        .getParameter(MZminePreferences.numOfThreads);
+    if (parameter.isAutomatic() || parameter.getValue() == null) {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    return Math.max(1, parameter.getValue());
+  }
+
+  /**
+   * The shared pool, recreated if the number of threads changed in the preferences. A replaced
+   * pool finishes its running computations and its idle workers time out.
+   *
+   * @return the shared pool with {@link #getMaxThreads()} parallelism
+   */
+  @NotNull
+  public static synchronized ForkJoinPool getPool() {
+    final int threads = getMaxThreads();
+    if (pool == null || pool.getParallelism() != threads) {
+      // no shutdown, other tasks may still submit to the old pool
+      pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null,
+          false, 0, threads + MAX_COMPENSATION_THREADS, 1, null, KEEP_ALIVE_SECONDS,
+          TimeUnit.SECONDS);
+    }
+    return pool;
+  }
+
+  /**
+   * Runs the computation in the shared pool, parallel streams within use this pool. Calls from
+   * within a pool run directly to not block a worker thread. A lower number of threads than the
+   * shared pool runs in a separate pool of that size.
+   *
+   * @param threads     maximum number of threads for this computation
+   * @param computation the computation
+   * @return the result of the computation
+   * @throws ExecutionException   wraps the exception thrown by the computation
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public static <T> T invoke(int threads, @NotNull Callable<T> computation)
+      throws ExecutionException, InterruptedException {
+    if (Thread.currentThread() instanceof ForkJoinWorkerThread) {
+      try {
+        return computation.call();
+      } catch (Exception e) {
+        throw new ExecutionException(e);
+      }
+    }
+    final ForkJoinPool shared = getPool();
+    if (threads >= shared.getParallelism()) {
+      return shared.submit(computation).get();
+    }
+    final ForkJoinPool limited = new ForkJoinPool(Math.max(1, threads));
+    try {
+      return limited.submit(computation).get();
+    } finally {
+      limited.shutdown();
+    }
+  }
+}
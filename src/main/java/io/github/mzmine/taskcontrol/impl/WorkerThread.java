@@ -27,6 +27,7 @@ package io.github.mzmine.taskcontrol.impl;
 
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskMetrics;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.ExceptionUtils;
 import java.util.logging.Level;
@@ -54,6 +55,7 @@ class WorkerThread extends Thread {
   public void run() {
 
     Task actualTask = wrappedTask.getActualTask();
+    final TaskMetrics.Stopwatch stopwatch = TaskMetrics.start();
 
     try {
 
@@ -62,6 +64,7 @@ class WorkerThread extends Thread {
 
       // Process the actual task
       actualTask.run();
+      wrappedTask.setMetrics(stopwatch.stop(actualTask));
 
       // Check if task finished with an error
       if (actualTask.getStatus() == TaskStatus.ERROR) {
@@ -102,6 +105,10 @@ class WorkerThread extends Thread {
       MZmineCore.getDesktop().displayErrorMessage("Unhandled exception in task "
           + actualTask.getTaskDescription() + ": " + ExceptionUtils.exceptionToString(e));
 
+      if (wrappedTask.getMetrics() == null) {
+        wrappedTask.setMetrics(stopwatch.stop(actualTask));
+      }
+
     }
 
     /*
@@ -27,6 +27,7 @@ package io.github.mzmine.taskcontrol.impl;
 
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskMetrics;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import javafx.beans.property.Property;
 import javafx.beans.property.SimpleObjectProperty;
@@ -55,6 +56,7 @@ public class WrappedTask {
   private Task task;
   private Property<TaskPriority> priority;
   private WorkerThread assignedTo;
+  private volatile TaskMetrics metrics;
 
   public WrappedTask(Task task, TaskPriority priority) {
     this.task = task;
@@ -96,6 +98,13 @@ public class WrappedTask {
     assignedTo = thread;
   }
 
+  /**
+   * @return true if this task is executed by the current thread
+   */
+  public boolean isRunningOnCurrentThread() {
+    return assignedTo != null && assignedTo == Thread.currentThread();
+  }
+
   /**
    * @return Returns the task.
    */
@@ -107,6 +116,18 @@ public class WrappedTask {
     return task.getTaskDescription();
   }
 
+  /**
+   * @return the resources used by the task or null if the task was not executed yet or is still
+   * running
+   */
+  public TaskMetrics getMetrics() {
+    return metrics;
+  }
+
+  void setMetrics(TaskMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   synchronized void removeTaskReference() {
     task = new FinishedTask(task);
   }
@@ -39,6 +39,7 @@ import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.IonMobilogramTimeSeriesFactory;
+import io.github.mzmine.datamodel.featuredata.impl.ScanIndexIonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilitySeries;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
@@ -99,8 +100,17 @@ public class FeatureConvertors {
           "Number of data points does not match number of scan numbers");
     }
 
-    SimpleIonTimeSeries timeSeries = createSimpleTimeSeries(featureList.getMemoryMapStorage(),
-        new ArrayList<>(dataPoints), new ArrayList<>(scans));
+    final double[] mzs = new double[dataPoints.size()];
+    final double[] intensities = new double[dataPoints.size()];
+    int i = 0;
+    for (DataPoint dp : dataPoints) {
+      mzs[i] = dp.getMZ();
+      intensities[i] = dp.getIntensity();
+      i++;
+    }
+    // chromatograms only reference scans of the raw file, store their indices instead of a list
+    SimpleIonTimeSeries timeSeries = ScanIndexIonTimeSeries.create(
+        featureList.getMemoryMapStorage(), dataFile, mzs, intensities, new ArrayList<>(scans));
     ModularFeature modularFeature = new ModularFeature(featureList, dataFile, timeSeries,
         FeatureStatus.DETECTED);
 
@@ -430,11 +430,12 @@ public class IsotopesUtils {
       return List.of();
     }
 
-    int dp = spectrum.getNumberOfDataPoints() - 1;
-
     List<DataPoint> candidates = new ArrayList<>();
     // add the actual data point in the scan, so we don't end up with duplicates.
     final int targetIndex = spectrum.binarySearch(target.getMZ(), true);
+    // signals above the target cannot be preceding isotopes, start the negative direction at the
+    // target instead of the last data point
+    int dp = targetIndex;
     candidates.add(new SimpleDataPoint(spectrum.getMzValue(targetIndex),
         spectrum.getIntensityValue(targetIndex)));
 
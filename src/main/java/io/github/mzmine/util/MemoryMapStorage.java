@@ -40,6 +40,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -79,6 +80,15 @@ public class MemoryMapStorage {
   private static boolean storeFeaturesInRam = false;
   private static boolean storeRawFilesInRam = false;
   private static boolean storeMassListsInRam = false;
+  private static StorageEncoding rawDataEncoding = StorageEncoding.DOUBLE;
+  private static StorageEncoding massListEncoding = StorageEncoding.DOUBLE;
+  /**
+   * Bytes stored by all storages and by the current thread. Used to report the storage usage of
+   * tasks, see {@link io.github.mzmine.taskcontrol.TaskMetrics}
+   */
+  private static final AtomicLong totalStoredBytes = new AtomicLong();
+  private static final ThreadLocal<long[]> threadStoredBytes = ThreadLocal.withInitial(
+      () -> new long[1]);
   private final Logger logger = Logger.getLogger(this.getClass().getName());
   private final Set<File> temporaryFiles = new HashSet<>();
   private final List<MappedByteBuffer> mappedByteBufferList = new ArrayList<>();
@@ -86,8 +96,14 @@ public class MemoryMapStorage {
    * The file that we are currently writing into.
    */
   private MappedByteBuffer currentMappedFile = null;
+  private long storedBytes = 0L;
+  /**
+   * Encoding of spectral data stored in this storage.
+   */
+  private final StorageEncoding encoding;
 
-  private MemoryMapStorage() {
+  private MemoryMapStorage(@NotNull StorageEncoding encoding) {
+    this.encoding = encoding;
     // register this storage to MZmineCore, so we can delete all temp files later.
     MZmineCore.registerStorage(this);
   }
@@ -97,7 +113,7 @@ public class MemoryMapStorage {
    */
   @Nullable
   public static MemoryMapStorage forFeatureList() {
-    return storeFeaturesInRam ? null : new MemoryMapStorage();
+    return storeFeaturesInRam ? null : new MemoryMapStorage(StorageEncoding.DOUBLE);
   }
 
   /**
@@ -105,7 +121,7 @@ public class MemoryMapStorage {
    */
   @Nullable
   public static MemoryMapStorage forRawDataFile() {
-    return storeRawFilesInRam ? null : new MemoryMapStorage();
+    return storeRawFilesInRam ? null : new MemoryMapStorage(rawDataEncoding);
   }
 
   /**
@@ -113,12 +129,20 @@ public class MemoryMapStorage {
    */
   @Nullable
   public static MemoryMapStorage forMassList() {
-    return storeMassListsInRam ? null : new MemoryMapStorage();
+    return storeMassListsInRam ? null : new MemoryMapStorage(massListEncoding);
   }
 
   @NotNull
   public static MemoryMapStorage create() {
-    return new MemoryMapStorage();
+    return new MemoryMapStorage(StorageEncoding.DOUBLE);
+  }
+
+  /**
+   * @param encoding the encoding of spectral data in this storage
+   */
+  @NotNull
+  public static MemoryMapStorage create(@NotNull StorageEncoding encoding) {
+    return new MemoryMapStorage(encoding);
   }
 
   public static boolean isStoreFeaturesInRam() {
@@ -145,6 +169,40 @@ public class MemoryMapStorage {
     MemoryMapStorage.storeMassListsInRam = storeMassListsInRam;
   }
 
+  public static StorageEncoding getRawDataEncoding() {
+    return rawDataEncoding;
+  }
+
+  /**
+   * Only applies to raw data files that are created afterwards.
+   *
+   * @param rawDataEncoding encoding of scans in memory mapped raw data files
+   */
+  public static void setRawDataEncoding(@NotNull StorageEncoding rawDataEncoding) {
+    MemoryMapStorage.rawDataEncoding = rawDataEncoding;
+  }
+
+  public static StorageEncoding getMassListEncoding() {
+    return massListEncoding;
+  }
+
+  /**
+   * Only applies to mass lists that are created afterwards.
+   *
+   * @param massListEncoding encoding of memory mapped mass lists
+   */
+  public static void setMassListEncoding(@NotNull StorageEncoding massListEncoding) {
+    MemoryMapStorage.massListEncoding = massListEncoding;
+  }
+
+  /**
+   * @return the encoding of spectral data in this storage
+   */
+  @NotNull
+  public StorageEncoding getEncoding() {
+    return encoding;
+  }
+
   /**
    * Store everything in RAM instead of using MemoryMapStorage
    *
@@ -156,6 +214,33 @@ public class MemoryMapStorage {
     storeRawFilesInRam = state;
   }
 
+  /**
+   * @return the number of bytes stored by all storages since the start of mzmine
+   */
+  public static long getTotalStoredBytes() {
+    return totalStoredBytes.get();
+  }
+
+  /**
+   * @return the number of bytes stored by the calling thread in any storage
+   */
+  public static long getCurrentThreadStoredBytes() {
+    return threadStoredBytes.get()[0];
+  }
+
+  /**
+   * @return the number of bytes stored in this storage
+   */
+  public synchronized long getStoredBytes() {
+    return storedBytes;
+  }
+
+  private void countStoredBytes(long bytes) {
+    storedBytes += bytes;
+    totalStoredBytes.addAndGet(bytes);
+    threadStoredBytes.get()[0] += bytes;
+  }
+
   /**
    * Creates a new temporary file, maps it into memory, and returns the corresponding
    * MappedByteBuffer. The capacity of the buffer is STORAGE_FILE_CAPACITY bytes.
@@ -240,6 +325,8 @@ public class MemoryMapStorage {
     // Update the position and the main buffer so we are ready to store the next array
     currentMappedFile.position(savedPosition + length * Double.BYTES);
 
+    countStoredBytes((long) length * Double.BYTES);
+
     // Create a read-only version of the new buffer slice
     final DoubleBuffer readOnlySlice = sliceDoubleView.asReadOnlyBuffer();
 
@@ -297,6 +384,8 @@ public class MemoryMapStorage {
     // Update the position and the main buffer so we are ready to store the next array
     currentMappedFile.position(savedPosition + length * Float.BYTES);
 
+    countStoredBytes((long) length * Float.BYTES);
+
     // Create a read-only version of the new buffer slice
     final FloatBuffer readOnlySlice = sliceFloatView.asReadOnlyBuffer();
 
@@ -304,6 +393,48 @@ public class MemoryMapStorage {
 
   }
 
+  /**
+   * Store the given byte[] array in a memory-mapped temporary file and return a read-only
+   * ByteBuffer that can access the data. The next array starts at a multiple of 8 bytes, so that
+   * double values remain aligned.
+   *
+   * @param data   the byte[] array with the data
+   * @param offset offset of the stored portion of the data[] array
+   * @param length size of the stored portion of the data[] array
+   * @return a read-only ByteBuffer that is directly mapped to the stored data on the disk
+   * @throws IOException
+   */
+  @NotNull
+  public synchronized ByteBuffer storeData(@NotNull final byte data[], int offset, int length)
+      throws IOException {
+    final int alignedLength = (length + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+
+    // If we have no storage file or if the current file is full, create a new one
+    if ((currentMappedFile == null)
+        || (currentMappedFile.position() + alignedLength > STORAGE_FILE_CAPACITY)) {
+      currentMappedFile = createNewMappedFile();
+    }
+
+    // Save the current position in the storage file
+    final int savedPosition = currentMappedFile.position();
+
+    // Set the limit to the end of the new array and create a buffer slice
+    currentMappedFile.limit(savedPosition + length);
+    final ByteBuffer slice = currentMappedFile.slice();
+
+    // Copy the data to the memory mapped storage
+    slice.put(data, offset, length);
+
+    // Update the position and the main buffer so we are ready to store the next array
+    currentMappedFile.limit(currentMappedFile.capacity());
+    currentMappedFile.position(savedPosition + alignedLength);
+
+    countStoredBytes(alignedLength);
+
+    // Create a read-only version of the new buffer slice
+    return slice.flip().asReadOnlyBuffer();
+  }
+
   /**
    * Store the given int[] array in a memory-mapped temporary file and return a read-only IntBuffer
    * that can access the data.
@@ -353,6 +484,8 @@ public class MemoryMapStorage {
     // Update the position and the main buffer so we are ready to store the next array
     currentMappedFile.position(savedPosition + length * Integer.BYTES);
 
+    countStoredBytes((long) length * Integer.BYTES);
+
     // Create a read-only version of the new buffer slice
     final IntBuffer readOnlySlice = sliceIntView.asReadOnlyBuffer();
 
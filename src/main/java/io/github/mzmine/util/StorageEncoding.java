@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util;
+
+/**
+ * How spectral data (m/z and intensity values) are encoded in a {@link MemoryMapStorage}. The
+ * encoding is selected per data kind, see {@link MemoryMapStorage#setRawDataEncoding} and
+ * {@link MemoryMapStorage#setMassListEncoding}. Decoding is transparent through the
+ * {@link io.github.mzmine.datamodel.MassSpectrum} accessors.
+ */
+public enum StorageEncoding {
+
+  /**
+   * 8 byte doubles for m/z and intensity. Lossless, 16 bytes per data point.
+   */
+  DOUBLE("Double (lossless)"),
+
+  /**
+   * 8 byte doubles for m/z, 4 byte floats for intensities. m/z values are lossless, intensities
+   * have a relative error of at most 2^-24 (6E-8). 12 bytes per data point.
+   */
+  FLOAT_INTENSITY("Float intensities"),
+
+  /**
+   * m/z values are rounded to a fixed point resolution of {@link #MZ_FIXED_POINT_RESOLUTION} and
+   * stored as variable length deltas (similar to MS-Numpress), intensities as 4 byte floats. The
+   * absolute m/z error is at most 5E-8 (half the resolution), intensities have a relative error of
+   * at most 2^-24 (6E-8). About 6-8 bytes per data point, depending on the distance between
+   * consecutive m/z values. Random access to single values decodes up to one block of
+   * {@link #MZ_BLOCK_SIZE} deltas.
+   */
+  DELTA_MZ_FLOAT_INTENSITY("Delta m/z, float intensities");
+
+  /**
+   * Resolution of the fixed point m/z values of {@link #DELTA_MZ_FLOAT_INTENSITY}.
+   */
+  public static final double MZ_FIXED_POINT_RESOLUTION = 1E-7;
+
+  /**
+   * Number of m/z values per block of {@link #DELTA_MZ_FLOAT_INTENSITY}. Each block starts with an
+   * absolute value.
+   */
+  public static final int MZ_BLOCK_SIZE = 32;
+
+  private final String label;
+
+  StorageEncoding(String label) {
+    this.label = label;
+  }
+
+  @Override
+  public String toString() {
+    return label;
+  }
+}
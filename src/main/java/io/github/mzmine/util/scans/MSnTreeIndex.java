@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans;
+
+import com.google.common.collect.Range;
+import com.google.common.util.concurrent.AtomicDouble;
+import io.github.mzmine.datamodel.PrecursorIonTree;
+import io.github.mzmine.datamodel.PrecursorIonTreeNode;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.MSnInfoImpl;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import javafx.collections.ListChangeListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Index of all MSn precursor ion trees of a list of scans. The MS2 precursor m/z values are kept in
+ * primitive arrays and are hashed into a grid of m/z bins that are at least as wide as the m/z
+ * tolerance, so a tolerance lookup only checks the neighboring bins.
+ * <p>
+ * Indices of raw data files are cached per file and tolerance by {@link #of(RawDataFile,
+ * MZTolerance)} and are invalidated once the scans of the file change or the file is removed from
+ * the project. The indices reference the scans and thereby the file, so they are only softly
+ * reachable from the cache to not keep the weak file keys alive. An index is built outside of the
+ * lock and is only cached if the file was not invalidated in the meantime.
+ */
+public class MSnTreeIndex {
+
+  private static final Logger logger = Logger.getLogger(MSnTreeIndex.class.getName());
+
+  private static final Map<RawDataFile, SoftReference<Map<MZTolerance, MSnTreeIndex>>> CACHE =
+      new WeakHashMap<>();
+  private static final Set<RawDataFile> OBSERVED_FILES = Collections.newSetFromMap(
+      new WeakHashMap<>());
+  // number of invalidations per file, an index is only cached if it did not change during the build
+  private static final Map<RawDataFile, Integer> MODIFICATIONS = new WeakHashMap<>();
+
+  private final MZTolerance mzTol;
+  // sorted by the natural order of trees (descending precursor m/z)
+  private final List<PrecursorIonTree> trees;
+  // ascending precursor m/z
+  private final List<PrecursorIonTree> treesByMz;
+  private final double[] precursorMzs;
+  // trees in order of creation, matches the indices of the grid
+  private final List<PrecursorIonTree> gridTrees;
+  private final PrecursorGrid grid;
+
+  private MSnTreeIndex(MZTolerance mzTol, List<PrecursorIonTreeNode> nodes, PrecursorGrid grid) {
+    this.mzTol = mzTol;
+    this.grid = grid;
+
+    final List<PrecursorIonTree> list = new ArrayList<>(nodes.size());
+    for (PrecursorIonTreeNode node : nodes) {
+      final PrecursorIonTree tree = new PrecursorIonTree(node);
+      tree.sort();
+      list.add(tree);
+    }
+    final int[] order = IntStream.range(0, list.size()).boxed()
+        .sorted((a, b) -> Double.compare(grid.mz(a), grid.mz(b))).mapToInt(Integer::intValue)
+        .toArray();
+    precursorMzs = new double[order.length];
+    final PrecursorIonTree[] byMz = new PrecursorIonTree[order.length];
+    for (int i = 0; i < order.length; i++) {
+      precursorMzs[i] = grid.mz(order[i]);
+      byMz[i] = list.get(order[i]);
+    }
+    treesByMz = List.of(byMz);
+    trees = list.stream().sorted().toList();
+    gridTrees = Collections.unmodifiableList(list);
+  }
+
+  /**
+   * Cached index of all scans of a raw data file. Built once per file and tolerance and
+   * invalidated when the scans of the file change.
+   */
+  @NotNull
+  public static MSnTreeIndex of(@NotNull RawDataFile raw, @NotNull MZTolerance mzTol) {
+    return of(raw, mzTol, null);
+  }
+
+  /**
+   * Cached index of all scans of a raw data file. Built once per file and tolerance and
+   * invalidated when the scans of the file change.
+   *
+   * @param progress is only updated if the index is built
+   */
+  @NotNull
+  public static MSnTreeIndex of(@NotNull RawDataFile raw, @NotNull MZTolerance mzTol,
+      @Nullable AtomicDouble progress) {
+    final int modification;
+    final List<Scan> scans;
+    synchronized (CACHE) {
+      final var indices = getCachedIndices(raw);
+      final MSnTreeIndex index = indices == null ? null : indices.get(mzTol);
+      if (index != null) {
+        return index;
+      }
+      if (OBSERVED_FILES.add(raw)) {
+        raw.getScans().addListener((ListChangeListener<Scan>) change -> invalidate(raw));
+      }
+      modification = MODIFICATIONS.getOrDefault(raw, 0);
+      scans = List.copyOf(raw.getScans());
+    }
+
+    final MSnTreeIndex index = build(scans, mzTol, progress);
+    synchronized (CACHE) {
+      if (modification != MODIFICATIONS.getOrDefault(raw, 0)) {
+        // the scans changed during the build, the next call builds a new index
+        return index;
+      }
+      var indices = getCachedIndices(raw);
+      if (indices == null) {
+        indices = new HashMap<>();
+        CACHE.put(raw, new SoftReference<>(indices));
+      }
+      return indices.computeIfAbsent(mzTol, key -> index);
+    }
+  }
+
+  /**
+   * @return the cached indices or null if there are none or if they were garbage collected. Call
+   * while holding the lock on {@link #CACHE}.
+   */
+  @Nullable
+  private static Map<MZTolerance, MSnTreeIndex> getCachedIndices(@NotNull RawDataFile raw) {
+    final var ref = CACHE.get(raw);
+    return ref == null ? null : ref.get();
+  }
+
+  /**
+   * Removes all cached indices of this file
+   */
+  public static void invalidate(@NotNull RawDataFile raw) {
+    synchronized (CACHE) {
+      CACHE.remove(raw);
+      MODIFICATIONS.merge(raw, 1, Integer::sum);
+    }
+  }
+
+  /**
+   * Builds a new index without caching. MSn scans are added to the latest MS2 precursor node within
+   * the m/z tolerance of their MS2 precursor m/z.
+   */
+  @NotNull
+  public static MSnTreeIndex build(@Nullable List<Scan> scans, @NotNull MZTolerance mzTol,
+      @Nullable AtomicDouble progress) {
+    if (scans == null || scans.isEmpty()) {
+      return new MSnTreeIndex(mzTol, List.of(), new PrecursorGrid(mzTol, 1d));
+    }
+
+    // first pass: maximum precursor m/z defines the bin width of the grid
+    double maxMz = 0;
+    for (Scan scan : scans) {
+      final Double precursorMz = scan.getMSLevel() == 2 ? scan.getPrecursorMz() : null;
+      if (precursorMz != null) {
+        maxMz = Math.max(maxMz, precursorMz);
+      }
+    }
+
+    final PrecursorGrid grid = new PrecursorGrid(mzTol, maxMz);
+    final List<PrecursorIonTreeNode> nodes = new ArrayList<>();
+    final int totalScans = scans.size();
+
+    for (Scan scan : scans) {
+      if (progress != null) {
+        progress.addAndGet(1d / totalScans);
+      }
+      if (scan.getMSLevel() <= 1) {
+        continue;
+      }
+      // add MS2 scans to existing or create new
+      if (scan.getMSLevel() == 2) {
+        final Double ms2PrecursorMz = scan.getPrecursorMz();
+        if (ms2PrecursorMz != null) {
+          int node = grid.find(ms2PrecursorMz);
+          if (node < 0) {
+            node = grid.add(ms2PrecursorMz);
+            nodes.add(new PrecursorIonTreeNode(2, ms2PrecursorMz, null));
+          }
+          nodes.get(node).addFragmentScan(scan);
+        }
+      } else if (scan.getMsMsInfo() instanceof MSnInfoImpl msn) {
+        // add MSn scans to MS2 precursor
+        final double ms2PrecursorMz = msn.getMS2PrecursorMz();
+        final int node = grid.find(ms2PrecursorMz);
+        if (node >= 0) {
+          boolean added = nodes.get(node).addChildFragmentScan(scan, msn);
+          if (!added) {
+            logger.warning(
+                () -> String.format("Scan#%d was not added to parent %.4f", scan.getScanNumber(),
+                    ms2PrecursorMz));
+          }
+        } else {
+          logger.warning(
+              () -> String.format("Scan#%d: Cannot find MS2 precursor scan for m/z: %.4f",
+                  scan.getScanNumber(), ms2PrecursorMz));
+        }
+      }
+    }
+    return new MSnTreeIndex(mzTol, nodes, grid);
+  }
+
+  /**
+   * @return all trees sorted by descending precursor m/z (natural order of the trees)
+   */
+  @NotNull
+  public List<PrecursorIonTree> getTrees() {
+    return trees;
+  }
+
+  /**
+   * @return all trees sorted by ascending precursor m/z
+   */
+  @NotNull
+  public List<PrecursorIonTree> getTreesByPrecursorMz() {
+    return treesByMz;
+  }
+
+  /**
+   * @return trees with a precursor m/z within the range sorted by ascending m/z
+   */
+  @NotNull
+  public List<PrecursorIonTree> getTrees(@NotNull Range<Double> precursorMzRange) {
+    int from = Arrays.binarySearch(precursorMzs, precursorMzRange.lowerEndpoint());
+    from = from < 0 ? -from - 1 : from;
+    // first occurrence of equal values
+    while (from > 0 && precursorMzs[from - 1] >= precursorMzRange.lowerEndpoint()) {
+      from--;
+    }
+    int to = from;
+    while (to < precursorMzs.length && precursorMzs[to] <= precursorMzRange.upperEndpoint()) {
+      to++;
+    }
+    final List<PrecursorIonTree> result = new ArrayList<>(to - from);
+    for (int i = from; i < to; i++) {
+      if (precursorMzRange.contains(precursorMzs[i])) {
+        result.add(treesByMz.get(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the tree of the precursor m/z within the m/z tolerance or null
+   */
+  @Nullable
+  public PrecursorIonTree getTree(double precursorMz) {
+    final int index = grid.find(precursorMz);
+    return index < 0 ? null : gridTrees.get(index);
+  }
+
+  public MZTolerance getMzTolerance() {
+    return mzTol;
+  }
+
+  public int size() {
+    return trees.size();
+  }
+
+  /**
+   * Precursor m/z values hashed into bins of the maximum tolerance width. Values are checked
+   * against the tolerance range around each precursor m/z, equal to
+   * {@link MZTolerance#getToleranceRange(double)}.
+   */
+  private static final class PrecursorGrid {
+
+    private final MZTolerance mzTol;
+    private final double binWidth;
+    private final Long2ObjectOpenHashMap<IntArrayList> bins = new Long2ObjectOpenHashMap<>();
+    private final DoubleArrayList mzs = new DoubleArrayList();
+
+    private PrecursorGrid(MZTolerance mzTol, double maxMz) {
+      this.mzTol = mzTol;
+      // tolerance grows with m/z, the maximum tolerance covers all ranges
+      binWidth = Math.max(mzTol.getMzToleranceForMass(maxMz), 1E-9);
+    }
+
+    private long bin(double mz) {
+      return (long) Math.floor(mz / binWidth);
+    }
+
+    private double mz(int index) {
+      return mzs.getDouble(index);
+    }
+
+    private int add(double mz) {
+      final int index = mzs.size();
+      mzs.add(mz);
+      bins.computeIfAbsent(bin(mz), k -> new IntArrayList(2)).add(index);
+      return index;
+    }
+
+    /**
+     * @return the index of the latest added precursor whose tolerance range contains mz or -1
+     */
+    private int find(double mz) {
+      final long bin = bin(mz);
+      int best = -1;
+      for (long b = bin - 1; b <= bin + 1; b++) {
+        final IntArrayList indices = bins.get(b);
+        if (indices == null) {
+          continue;
+        }
+        for (int i = indices.size() - 1; i >= 0; i--) {
+          final int index = indices.getInt(i);
+          final double center = mzs.getDouble(index);
+          if (index > best && Math.abs(mz - center) <= mzTol.getMzToleranceForMass(center)) {
+            best = index;
+            break;
+          }
+        }
+      }
+      return best;
+    }
+  }
+}
@@ -41,7 +41,6 @@ import io.github.mzmine.datamodel.MergedMassSpectrum.MergingType;
 import io.github.mzmine.datamodel.MergedMsMsSpectrum;
 import io.github.mzmine.datamodel.MobilityScan;
 import io.github.mzmine.datamodel.PrecursorIonTree;
-import io.github.mzmine.datamodel.PrecursorIonTreeNode;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
@@ -49,7 +48,6 @@ import io.github.mzmine.datamodel.data_access.ScanDataAccess;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
-import io.github.mzmine.datamodel.impl.MSnInfoImpl;
 import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.datamodel.msms.DDAMsMsInfo;
 import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
@@ -57,7 +55,6 @@ import io.github.mzmine.gui.chartbasics.simplechart.providers.impl.spectra.Cache
 import io.github.mzmine.gui.preferences.UnitFormat;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
-import io.github.mzmine.parameters.parametertypes.tolerances.MZToleranceRangeMap;
 import io.github.mzmine.util.DataPointSorter;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
@@ -1092,9 +1089,13 @@ public class ScanUtils {
     return getMSnFragmentTrees(raw, mzTol, null);
   }
 
+  /**
+   * The trees are taken from the cached {@link MSnTreeIndex} of the raw data file, which is built
+   * once per tolerance and invalidated when the scans of the file change
+   */
   public static List<PrecursorIonTree> getMSnFragmentTrees(RawDataFile raw, MZTolerance mzTol,
       AtomicDouble progress) {
-    return getMSnFragmentTrees(raw.getScans(), mzTol, progress);
+    return MSnTreeIndex.of(raw, mzTol, progress).getTrees();
   }
 
 
@@ -1121,55 +1122,7 @@ public class ScanUtils {
 
   public static List<PrecursorIonTree> getMSnFragmentTrees(List<Scan> scans, MZTolerance mzTol,
       AtomicDouble progress) {
-    if (scans == null || scans.isEmpty()) {
-      return List.of();
-    }
-
-    // at any time in the flow there should only be the latest precursor with the same m/z
-    MZToleranceRangeMap<PrecursorIonTreeNode> ms2Nodes = new MZToleranceRangeMap<>(mzTol);
-
-    PrecursorIonTreeNode parent = null;
-    final int totalScans = scans.size();
-
-    for (Scan scan : scans) {
-      if (scan.getMSLevel() <= 1) {
-        continue;
-      }
-      // add MS2 scans to existing or create new
-      if (scan.getMSLevel() == 2) {
-        Double ms2PrecursorMz = scan.getPrecursorMz();
-        if (ms2PrecursorMz != null) {
-          PrecursorIonTreeNode node = ms2Nodes.computeIfAbsent(ms2PrecursorMz,
-              (key) -> new PrecursorIonTreeNode(2, ms2PrecursorMz, null));
-          node.addFragmentScan(scan);
-        }
-      } else if (scan.getMsMsInfo() instanceof MSnInfoImpl msn) {
-        // add MSn scans to MS2 precursor
-        Double ms2PrecursorMz = msn.getMS2PrecursorMz();
-        if ((parent = ms2Nodes.get(ms2PrecursorMz)) != null) {
-          boolean added = parent.addChildFragmentScan(scan, msn);
-          if (!added) {
-            logger.warning(
-                () -> String.format("Scan#%d was not added to parent %.4f", scan.getScanNumber(),
-                    ms2PrecursorMz));
-          }
-        } else {
-          logger.warning(
-              () -> String.format("Scan#%d: Cannot find MS2 precursor scan for m/z: %.4f",
-                  scan.getScanNumber(), ms2PrecursorMz));
-        }
-        //
-        if (progress != null) {
-          progress.addAndGet(1d / totalScans);
-        }
-      }
-    }
-    // get all values
-    List<PrecursorIonTree> result = ms2Nodes.asMapOfRanges().values().stream()
-        .map(PrecursorIonTree::new).sorted().toList();
-    // sort
-    result.forEach(PrecursorIonTree::sort);
-    return result;
+    return MSnTreeIndex.build(scans, mzTol, progress).getTrees();
   }
 
   private static long getMzKey(double precursorMZ) {
@@ -46,6 +46,9 @@ public class SpectralLibrary {
 
   private final @NotNull String name;
   private final @NotNull File path;
+  // state of the source file when the library was created
+  private final long sourceLength;
+  private final long sourceLastModified;
   // spectra
   private final @NotNull List<SpectralLibraryEntry> entries = new ArrayList<>();
 
@@ -64,6 +67,8 @@ public class SpectralLibrary {
     this.storage = storage;
     this.path = path;
     this.name = name;
+    sourceLength = path.length();
+    sourceLastModified = path.lastModified();
   }
 
   @NotNull
@@ -118,6 +123,15 @@ public class SpectralLibrary {
     return lib != null && lib.getPath().equals(this.getPath());
   }
 
+  /**
+   * @return true if the source file still has the size and modification time from when this
+   * library was created
+   */
+  public boolean isSourceUnchanged() {
+    return path.exists() && path.length() == sourceLength
+        && path.lastModified() == sourceLastModified;
+  }
+
   public int getNumEntries() {
     return getEntries().size();
   }
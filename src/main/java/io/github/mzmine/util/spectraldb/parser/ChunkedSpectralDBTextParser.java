@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.parser;
+
+import com.google.common.collect.Lists;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.TaskThreadPool;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.io.BufferedReader;
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Parses text based libraries in chunks on multiple threads. The file is split at record boundaries
+ * (see {@link RecordSeparator}) by scanning the memory mapped file. Chunks are parsed in parallel
+ * and the entries are added in the order of the file, so that the {@link LibraryEntryProcessor}
+ * receives them in batches of {@link #bufferEntries} as before.
+ */
+public abstract class ChunkedSpectralDBTextParser extends SpectralDBTextParser {
+
+  private static final Logger logger = Logger.getLogger(
+      ChunkedSpectralDBTextParser.class.getName());
+
+  /**
+   * Target size of a chunk, the chunk ends at the next record boundary
+   */
+  static final long DEFAULT_CHUNK_BYTES = 4L << 20;
+  /**
+   * Size of the mapped windows when searching for record boundaries
+   */
+  private static final int SEARCH_WINDOW_BYTES = 1 << 20;
+
+  private final RecordSeparator separator;
+  private final AtomicLong processedBytes = new AtomicLong(0L);
+  private long totalBytes = 0L;
+  private long chunkBytes = DEFAULT_CHUNK_BYTES;
+  private int threads = 0;
+
+  protected ChunkedSpectralDBTextParser(int bufferEntries, LibraryEntryProcessor processor,
+      @NotNull RecordSeparator separator) {
+    super(bufferEntries, processor);
+    this.separator = separator;
+  }
+
+  /**
+   * Parses all lines of a chunk. Called by multiple threads at the same time.
+   *
+   * @param reader  the lines of a chunk. The chunk contains only complete records.
+   * @param library the library of all entries
+   * @return the entries in the order of the chunk and the number of errors
+   */
+  protected abstract ChunkResult parseChunk(BufferedReader reader, SpectralLibrary library)
+      throws IOException;
+
+  /**
+   * Called after every group of parsed chunks to detect files of the wrong format early.
+   *
+   * @param correct number of parsed entries so far
+   * @param errors  number of errors so far
+   * @return false to stop parsing
+   */
+  protected boolean isValidFormat(int correct, int errors) {
+    return true;
+  }
+
+  @Override
+  public boolean parse(AbstractTask mainTask, File dataBaseFile, SpectralLibrary library)
+      throws IOException {
+    final Charset charset = Charset.defaultCharset();
+    final int threads = getThreads();
+    int correct = 0;
+    int errors = 0;
+    try (FileChannel channel = FileChannel.open(dataBaseFile.toPath(), StandardOpenOption.READ)) {
+      totalBytes = channel.size();
+      final List<Chunk> chunks = split(channel, separator, chunkBytes);
+      logger.fine(() -> "Parsing " + dataBaseFile.getName() + " in " + chunks.size()
+          + " chunks on " + threads + " threads");
+
+      try {
+        // only a few chunks are held in memory at the same time
+        for (List<Chunk> group : Lists.partition(chunks, threads * 2)) {
+          // main task was canceled?
+          if (mainTask != null && mainTask.isCanceled()) {
+            return false;
+          }
+
+          // map keeps the chunk order
+          final List<ChunkResult> results = TaskThreadPool.invoke(threads,
+              () -> group.parallelStream().map(chunk -> {
+                try {
+                  final ChunkResult result = parseChunk(read(channel, chunk, charset), library);
+                  processedBytes.addAndGet(chunk.end() - chunk.start());
+                  return result;
+                } catch (IOException e) {
+                  throw new IllegalStateException(e);
+                }
+              }).toList());
+
+          for (ChunkResult result : results) {
+            correct += result.entries().size();
+            errors += result.errors();
+            for (SpectralLibraryEntry entry : result.entries()) {
+              addLibraryEntry(entry);
+            }
+          }
+
+          if (!isValidFormat(correct, errors)) {
+            return false;
+          }
+        }
+      } catch (InterruptedException | ExecutionException e) {
+        if (e.getCause() instanceof IllegalStateException ise
+            && ise.getCause() instanceof IOException io) {
+          throw io;
+        }
+        throw new IOException("Error while parsing " + dataBaseFile, e);
+      }
+    }
+    if (errors > 0) {
+      logger.warning(
+          "There were " + errors + " errors while parsing " + dataBaseFile.getAbsolutePath());
+    }
+    // finish and process last entries
+    finish();
+    return true;
+  }
+
+  private static BufferedReader read(FileChannel channel, Chunk chunk, Charset charset)
+      throws IOException {
+    final long length = chunk.end() - chunk.start();
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Library record at byte " + chunk.start() + " is too large");
+    }
+    final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, chunk.start(), length);
+    final CharBuffer chars = charset.decode(buffer);
+    if (chars.hasArray()) {
+      return new BufferedReader(
+          new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(),
+              chars.remaining()));
+    }
+    return new BufferedReader(new StringReader(chars.toString()));
+  }
+
+  /**
+   * Splits the file into chunks of about chunkBytes that end at a record boundary
+   */
+  static List<Chunk> split(FileChannel channel, RecordSeparator separator, long chunkBytes)
+      throws IOException {
+    final long size = channel.size();
+    final List<Chunk> chunks = new ArrayList<>();
+    long start = 0;
+    while (start < size) {
+      final long candidate = start + chunkBytes;
+      final long end = candidate >= size ? size : findRecordEnd(channel, separator, candidate);
+      chunks.add(new Chunk(start, end));
+      start = end;
+    }
+    return chunks;
+  }
+
+  /**
+   * Searches the first record boundary at or after the position
+   *
+   * @return the position after the last line of the record or the file size
+   */
+  static long findRecordEnd(FileChannel channel, RecordSeparator separator, long position)
+      throws IOException {
+    final MappedWindow window = new MappedWindow(channel);
+    final long size = channel.size();
+    long lineStart = position;
+    // skip the rest of the current line if the position is within a line
+    if (position > 0 && window.get(position - 1) != '\n') {
+      lineStart = window.nextLineStart(position);
+    }
+
+    while (lineStart < size) {
+      if (separator == RecordSeparator.LINE) {
+        return lineStart;
+      }
+      final long nextLineStart = window.nextLineStart(lineStart);
+      long contentEnd = nextLineStart;
+      if (contentEnd > lineStart && window.get(contentEnd - 1) == '\n') {
+        contentEnd--;
+      }
+      if (contentEnd > lineStart && window.get(contentEnd - 1) == '\r') {
+        contentEnd--;
+      }
+      if (separator.isRecordEnd(window, lineStart, contentEnd)) {
+        return nextLineStart;
+      }
+      lineStart = nextLineStart;
+    }
+    return size;
+  }
+
+  @Override
+  public double getProgress() {
+    return totalBytes == 0 ? 0 : processedBytes.get() / (double) totalBytes;
+  }
+
+  /**
+   * @param threads the number of threads, values < 1 use the number of threads in the preferences
+   */
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  void setChunkBytes(long chunkBytes) {
+    this.chunkBytes = chunkBytes;
+  }
+
+  private int getThreads() {
+    return threads > 0 ? threads : TaskThreadPool.getMaxThreads();
+  }
+
+  /**
+   * Defines the last line of a record
+   */
+  public enum RecordSeparator {
+    /**
+     * Every line is a record, e.g., json lines
+     */
+    LINE,
+    /**
+     * An empty line or a line with a single character ends a record (msp)
+     */
+    BLANK_LINE,
+    /**
+     * END IONS ends a record (mgf)
+     */
+    END_IONS,
+    /**
+     * A line that contains END ends a record (jdx)
+     */
+    CONTAINS_END;
+
+    private static final byte[] END_IONS_BYTES = "END IONS".getBytes();
+    private static final byte[] END_BYTES = "END".getBytes();
+
+    private boolean isRecordEnd(MappedWindow window, long start, long end) throws IOException {
+      return switch (this) {
+        case LINE -> true;
+        case BLANK_LINE -> end - start <= 1;
+        case END_IONS -> {
+          if (end - start != END_IONS_BYTES.length) {
+            yield false;
+          }
+          for (int i = 0; i < END_IONS_BYTES.length; i++) {
+            if (Character.toUpperCase(window.get(start + i)) != END_IONS_BYTES[i]) {
+              yield false;
+            }
+          }
+          yield true;
+        }
+        case CONTAINS_END -> {
+          for (long i = start; i <= end - END_BYTES.length; i++) {
+            if (window.get(i) == END_BYTES[0] && window.get(i + 1) == END_BYTES[1]
+                && window.get(i + 2) == END_BYTES[2]) {
+              yield true;
+            }
+          }
+          yield false;
+        }
+      };
+    }
+  }
+
+  /**
+   * Byte range of a chunk
+   */
+  record Chunk(long start, long end) {
+
+  }
+
+  /**
+   * The entries of a chunk
+   *
+   * @param entries the entries in the order of the chunk
+   * @param errors  the number of errors
+   */
+  protected record ChunkResult(List<SpectralLibraryEntry> entries, int errors) {
+
+  }
+
+  /**
+   * Maps windows of the file to read single bytes
+   */
+  private static class MappedWindow {
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer buffer;
+    private long bufferStart = -1;
+
+    private MappedWindow(FileChannel channel) throws IOException {
+      this.channel = channel;
+      this.size = channel.size();
+    }
+
+    private char get(long position) throws IOException {
+      if (buffer == null || position < bufferStart || position >= bufferStart + buffer.limit()) {
+        bufferStart = position;
+        buffer = channel.map(MapMode.READ_ONLY, position,
+            Math.min(SEARCH_WINDOW_BYTES, size - position));
+      }
+      return (char) (buffer.get((int) (position - bufferStart)) & 0xff);
+    }
+
+    /**
+     * @return the position after the next line break or the file size
+     */
+    private long nextLineStart(long position) throws IOException {
+      for (long i = position; i < size; i++) {
+        if (get(i) == '\n') {
+          return i + 1;
+        }
+      }
+      return size;
+    }
+  }
+}
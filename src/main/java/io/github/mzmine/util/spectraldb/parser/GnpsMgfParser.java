@@ -25,16 +25,15 @@
 
 package io.github.mzmine.util.spectraldb.parser;
 
-import io.github.mzmine.datamodel.DataPoint;
-import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.modules.io.spectraldbsubmit.AdductParser;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.EnumMap;
@@ -48,10 +47,10 @@ import java.util.logging.Logger;
  *
  * @author Robin Schmid
  */
-public class GnpsMgfParser extends SpectralDBTextParser {
+public class GnpsMgfParser extends ChunkedSpectralDBTextParser {
 
   public GnpsMgfParser(int bufferEntries, LibraryEntryProcessor processor) {
-    super(bufferEntries, processor);
+    super(bufferEntries, processor, RecordSeparator.END_IONS);
   }
 
   private final static Logger logger = Logger.getLogger(GnpsMgfParser.class.getName());
@@ -59,9 +58,12 @@ public class GnpsMgfParser extends SpectralDBTextParser {
   @Override
   public boolean parse(AbstractTask mainTask, File dataBaseFile, SpectralLibrary library)
       throws IOException {
-    super.parse(mainTask, dataBaseFile, library);
     logger.info("Parsing mgf spectral library " + dataBaseFile.getAbsolutePath());
+    return super.parse(mainTask, dataBaseFile, library);
+  }
 
+  @Override
+  protected ChunkResult parseChunk(BufferedReader br, SpectralLibrary library) throws IOException {
     // BEGIN IONS
     // meta data
     // SCANS=1 .... n (the scan ID; could be used to put all spectra of the
@@ -69,115 +71,111 @@ public class GnpsMgfParser extends SpectralDBTextParser {
     // data
     // END IONS
 
-    int correct = 0;
+    final List<SpectralLibraryEntry> entries = new ArrayList<>();
+    int errors = 0;
     State state = State.WAIT_FOR_META;
     Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
-    List<DataPoint> dps = new ArrayList<>();
+    final DoubleArrayList mzs = new DoubleArrayList();
+    final DoubleArrayList intensities = new DoubleArrayList();
     int sep = -1;
-    // create db
-    try (BufferedReader br = new BufferedReader(new FileReader(dataBaseFile))) {
-      for (String l; (l = br.readLine()) != null; ) {
-        // main task was canceled?
-        if (mainTask != null && mainTask.isCanceled()) {
-          return false;
-        }
-        try {
-          if (l.length() > 1) {
-            // meta data start?
-            if (state.equals(State.WAIT_FOR_META)) {
-              if (l.equalsIgnoreCase("BEGIN IONS")) {
-                fields = new EnumMap<>(fields);
-                dps.clear();
-                state = State.META;
+    for (String l; (l = br.readLine()) != null; ) {
+      try {
+        if (l.length() > 1) {
+          // meta data start?
+          if (state.equals(State.WAIT_FOR_META)) {
+            if (l.equalsIgnoreCase("BEGIN IONS")) {
+              fields = new EnumMap<>(DBEntryField.class);
+              mzs.clear();
+              intensities.clear();
+              state = State.META;
+            }
+          } else {
+            if (l.equalsIgnoreCase("END IONS")) {
+              // add entry and reset
+              if (fields.size() > 1 && mzs.size() > 1) {
+                entries.add(new SpectralDBEntry(library.getStorage(), mzs.toDoubleArray(),
+                    intensities.toDoubleArray(), fields));
               }
+              state = State.WAIT_FOR_META;
             } else {
-              if (l.equalsIgnoreCase("END IONS")) {
-                // add entry and reset
-                if (fields.size() > 1 && dps.size() > 1) {
-                  SpectralLibraryEntry entry = SpectralLibraryEntry.create(library.getStorage(),
-                      fields, dps.toArray(new DataPoint[dps.size()]));
-                  // add and push
-                  addLibraryEntry(entry);
-                  correct++;
-                }
-                state = State.WAIT_FOR_META;
-              } else {
-                sep = l.indexOf('=');
-                if (sep == -1) {
-                  // data starts
-                  state = State.DATA;
-                }
-                switch (state) {
-                  case WAIT_FOR_META:
-                    // wait for next entry
-                    break;
-                  case DATA:
-                    // split for any white space (tab or space ...)
-                    String[] data = l.split("\\s+");
-                    dps.add(new SimpleDataPoint(Double.parseDouble(data[0]),
-                        Double.parseDouble(data[1])));
-                    break;
-                  case META:
-                    if (sep != -1 && sep < l.length() - 1) {
-                      DBEntryField field = DBEntryField.forMgfID(l.substring(0, sep));
-                      if (field != null) {
-                        String content = l.substring(sep + 1);
-                        if (!content.isBlank()) {
-                          try {
-                            // allow 1+ as 1 and 2- as -2
-                            if (field.equals(DBEntryField.CHARGE)) {
-                              content = parseCharge(content);
-                            }
+              sep = l.indexOf('=');
+              if (sep == -1) {
+                // data starts
+                state = State.DATA;
+              }
+              switch (state) {
+                case WAIT_FOR_META:
+                  // wait for next entry
+                  break;
+                case DATA:
+                  // split for any white space (tab or space ...)
+                  String[] data = l.split("\\s+");
+                  final double mz = Double.parseDouble(data[0]);
+                  final double intensity = Double.parseDouble(data[1]);
+                  mzs.add(mz);
+                  intensities.add(intensity);
+                  break;
+                case META:
+                  if (sep != -1 && sep < l.length() - 1) {
+                    extractMetaData(fields, l, sep);
+                  }
+                  break;
+              }
+            }
+          }
+        }
+      } catch (Exception ex) {
+        logger.log(Level.WARNING, "Error for entry", ex);
+        errors++;
+        state = State.WAIT_FOR_META;
+      }
+    }
+    return new ChunkResult(entries, errors);
+  }
 
-                            Object value = field.convertValue(content);
+  private void extractMetaData(Map<DBEntryField, Object> fields, String l, int sep) {
+    DBEntryField field = DBEntryField.forMgfID(l.substring(0, sep));
+    if (field == null) {
+      return;
+    }
+    String content = l.substring(sep + 1);
+    if (content.isBlank()) {
+      return;
+    }
+    try {
+      // allow 1+ as 1 and 2- as -2
+      if (field.equals(DBEntryField.CHARGE)) {
+        content = parseCharge(content);
+      }
 
-                            // name
-                            if (field.equals(DBEntryField.NAME)) {
-                              String name = ((String) value);
-                              int lastSpace = name.lastIndexOf(' ');
-                              if (lastSpace != -1 && lastSpace < name.length() - 2) {
-                                String adductCandidate = name.substring(lastSpace + 1);
-                                // check for valid
-                                // adduct with the
-                                // adduct parser
-                                // from export
-                                // use as adduct
-                                String adduct = AdductParser.parse(adductCandidate);
-                                if (adduct != null && !adduct.isEmpty()) {
-                                  fields.put(DBEntryField.ION_TYPE, adduct);
-                                }
-                              }
-                            }
-                            // retention time is in seconds, mzmine uses minutes
-                            if (field.equals(DBEntryField.RT)) {
-                              value = ((Float) value) / 60.f;
-                            }
+      Object value = field.convertValue(content);
 
-                            if (value != null) {
-                              fields.put(field, value);
-                            }
-                          } catch (Exception e) {
-                            logger.log(Level.WARNING,
-                                "Cannot convert value type of " + content + " to "
-                                + field.getObjectClass().toString(), e);
-                          }
-                        }
-                      }
-                    }
-                    break;
-                }
-              }
-            }
+      // name
+      if (field.equals(DBEntryField.NAME)) {
+        String name = ((String) value);
+        int lastSpace = name.lastIndexOf(' ');
+        if (lastSpace != -1 && lastSpace < name.length() - 2) {
+          String adductCandidate = name.substring(lastSpace + 1);
+          // check for valid adduct with the adduct parser from export
+          // use as adduct
+          String adduct = AdductParser.parse(adductCandidate);
+          if (adduct != null && !adduct.isEmpty()) {
+            fields.put(DBEntryField.ION_TYPE, adduct);
           }
-        } catch (Exception ex) {
-          logger.log(Level.WARNING, "Error for entry", ex);
-          state = State.WAIT_FOR_META;
         }
-        processedLines.incrementAndGet();
       }
-      // finish and process all entries
-      finish();
-      return true;
+      // retention time is in seconds, mzmine uses minutes
+      if (field.equals(DBEntryField.RT)) {
+        value = ((Float) value) / 60.f;
+      }
+
+      if (value != null) {
+        fields.put(field, value);
+      }
+    } catch (Exception e) {
+      logger.log(Level.WARNING,
+          "Cannot convert value type of " + content + " to " + field.getObjectClass().toString(),
+          e);
     }
   }
 
@@ -32,7 +32,6 @@ import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.EnumMap;
@@ -46,87 +45,102 @@ import java.util.logging.Logger;
  *
  * @author Ansgar Korf (ansgar.korf@uni-muenster.de)
  */
-public class JdxParser extends SpectralDBTextParser {
+public class JdxParser extends ChunkedSpectralDBTextParser {
 
   public JdxParser(int bufferEntries, LibraryEntryProcessor processor) {
-    super(bufferEntries, processor);
+    super(bufferEntries, processor, RecordSeparator.CONTAINS_END);
   }
 
   private static final Logger logger = Logger.getLogger(NistMspParser.class.getName());
 
+  /**
+   * Metadata of the last added entry. Entries keep the metadata of the previous entries that they
+   * do not define themselves.
+   */
+  private Map<DBEntryField, Object> previousFields = new EnumMap<>(DBEntryField.class);
+
   @Override
   public boolean parse(AbstractTask mainTask, File dataBaseFile, SpectralLibrary library)
       throws IOException {
-    super.parse(mainTask, dataBaseFile, library);
     logger.info("Parsing jdx spectral library " + dataBaseFile.getAbsolutePath());
+    previousFields = new EnumMap<>(DBEntryField.class);
+    return super.parse(mainTask, dataBaseFile, library);
+  }
 
+  @Override
+  protected ChunkResult parseChunk(BufferedReader br, SpectralLibrary library) throws IOException {
+    final List<SpectralLibraryEntry> entries = new ArrayList<>();
+    int errors = 0;
     boolean isData = false;
     Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
     List<DataPoint> dps = new ArrayList<>();
-    // create db
     int sep = -1;
-    try (BufferedReader br = new BufferedReader(new FileReader(dataBaseFile))) {
-      for (String l; (l = br.readLine()) != null; ) {
-        // main task was canceled?
-        if (mainTask.isCanceled()) {
-          return false;
-        }
-
-        try {
-          // meta data?
-          sep = isData ? -1 : l.indexOf("=");
-          if (sep != -1) {
-            DBEntryField field = DBEntryField.forJdxID(l.substring(0, sep));
-            if (field != null) {
-              String content = l.substring(sep + 1);
-              if (content.length() > 0) {
-                try {
-                  Object value = field.convertValue(content);
-                  fields.put(field, value);
-                } catch (Exception e) {
-                  logger.log(Level.WARNING,
-                      "Cannot convert value type of " + content + " to " + field.getObjectClass()
-                          .toString(), e);
-                }
+    for (String l; (l = br.readLine()) != null; ) {
+      try {
+        // meta data?
+        sep = isData ? -1 : l.indexOf("=");
+        if (sep != -1) {
+          DBEntryField field = DBEntryField.forJdxID(l.substring(0, sep));
+          if (field != null) {
+            String content = l.substring(sep + 1);
+            if (content.length() > 0) {
+              try {
+                Object value = field.convertValue(content);
+                fields.put(field, value);
+              } catch (Exception e) {
+                logger.log(Level.WARNING,
+                    "Cannot convert value type of " + content + " to " + field.getObjectClass()
+                        .toString(), e);
               }
             }
-          } else {
-            // data?
-            String[] dataPairs = l.split(" ");
-            for (String dataPair : dataPairs) {
-              String[] data = dataPair.split(",");
-              if (data.length == 2) {
-                try {
-                  dps.add(new SimpleDataPoint(Double.parseDouble(data[0]),
-                      Double.parseDouble(data[1])));
-                  isData = true;
-                } catch (Exception e) {
-                }
+          }
+        } else {
+          // data?
+          String[] dataPairs = l.split(" ");
+          for (String dataPair : dataPairs) {
+            String[] data = dataPair.split(",");
+            if (data.length == 2) {
+              try {
+                dps.add(new SimpleDataPoint(Double.parseDouble(data[0]),
+                    Double.parseDouble(data[1])));
+                isData = true;
+              } catch (Exception e) {
               }
             }
           }
-          if (l.contains("END")) {
-            // row with END
-            // add entry and reset
-            SpectralLibraryEntry entry = SpectralLibraryEntry.create(library.getStorage(), fields,
-                dps.toArray(new DataPoint[dps.size()]));
-            fields = new EnumMap<>(fields);
-            dps.clear();
-            addLibraryEntry(entry);
-            // reset
-            isData = false;
-          }
-        } catch (Exception ex) {
-          logger.log(Level.WARNING, "Error for entry", ex);
         }
-        processedLines.incrementAndGet();
+        if (l.contains("END")) {
+          // row with END
+          // add entry and reset
+          entries.add(SpectralLibraryEntry.create(library.getStorage(), fields,
+              dps.toArray(new DataPoint[dps.size()])));
+          fields = new EnumMap<>(DBEntryField.class);
+          dps.clear();
+          // reset
+          isData = false;
+        }
+      } catch (Exception ex) {
+        logger.log(Level.WARNING, "Error for entry", ex);
+        errors++;
       }
     }
+    return new ChunkResult(entries, errors);
+  }
 
-    // finish and push last entries
-    finish();
-
-    return true;
+  /**
+   * Called in the order of the file. Adds the metadata of the previous entries that is not defined
+   * by this entry.
+   */
+  @Override
+  protected boolean addLibraryEntry(SpectralLibraryEntry entry) {
+    previousFields.forEach((field, value) -> {
+      if (entry.getField(field).isEmpty()) {
+        entry.putIfNotNull(field, value);
+      }
+    });
+    previousFields = new EnumMap<>(DBEntryField.class);
+    previousFields.putAll(entry.getFields());
+    return super.addLibraryEntry(entry);
   }
 
 }
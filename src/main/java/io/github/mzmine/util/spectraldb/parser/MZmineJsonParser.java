@@ -39,71 +39,62 @@ import jakarta.json.JsonReader;
 import jakarta.json.JsonValue;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.Nullable;
 
-public class MZmineJsonParser extends SpectralDBTextParser {
+public class MZmineJsonParser extends ChunkedSpectralDBTextParser {
 
   private final static Logger logger = Logger.getLogger(MZmineJsonParser.class.getName());
 
   public MZmineJsonParser(int bufferEntries, LibraryEntryProcessor processor) {
-    super(bufferEntries, processor);
+    super(bufferEntries, processor, RecordSeparator.LINE);
   }
 
   @Override
   public boolean parse(AbstractTask mainTask, File dataBaseFile, SpectralLibrary library)
       throws IOException {
-    super.parse(mainTask, dataBaseFile, library);
-
     logger.info("Parsing MZmine spectral library " + dataBaseFile.getAbsolutePath());
+    return super.parse(mainTask, dataBaseFile, library);
+  }
 
-    int correct = 0;
+  @Override
+  protected ChunkResult parseChunk(BufferedReader br, SpectralLibrary library) throws IOException {
+    final List<SpectralLibraryEntry> entries = new ArrayList<>();
     int error = 0;
-    // create db
-    try (BufferedReader br = new BufferedReader(new FileReader(dataBaseFile))) {
-      for (String l; (l = br.readLine()) != null; ) {
-        // main task was canceled?
-        if (mainTask != null && mainTask.isCanceled()) {
-          return false;
-        }
-
-        JsonReader reader = null;
-        try {
-          reader = Json.createReader(new StringReader(l));
-          JsonObject json = reader.readObject();
-          SpectralLibraryEntry entry = getDBEntry(library, json);
-          if (entry != null) {
-            correct++;
-            // add entry and process
-            addLibraryEntry(entry);
-          } else {
-            error++;
-          }
-        } catch (Exception ex) {
+    for (String l; (l = br.readLine()) != null; ) {
+      if (l.isBlank()) {
+        continue;
+      }
+      try (JsonReader reader = Json.createReader(new StringReader(l))) {
+        JsonObject json = reader.readObject();
+        SpectralLibraryEntry entry = getDBEntry(library, json);
+        if (entry != null) {
+          entries.add(entry);
+        } else {
           error++;
-          logger.log(Level.WARNING, "Error for entry", ex);
-        } finally {
-          if (reader != null) {
-            reader.close();
-          }
-        }
-        // to many errors? wrong data format?
-        if (error > 5 && correct < 5) {
-          logger.log(Level.WARNING, "This file was no MZmine spectral json library");
-          return false;
         }
-        processedLines.incrementAndGet();
+      } catch (Exception ex) {
+        error++;
+        logger.log(Level.WARNING, "Error for entry", ex);
       }
     }
-    // finish and process last entries
-    finish();
+    return new ChunkResult(entries, error);
+  }
 
+  @Override
+  protected boolean isValidFormat(int correct, int errors) {
+    // to many errors? wrong data format?
+    if (errors > 5 && correct < 5) {
+      logger.log(Level.WARNING, "This file was no MZmine spectral json library");
+      return false;
+    }
     return true;
   }
 
@@ -25,15 +25,14 @@
 
 package io.github.mzmine.util.spectraldb.parser;
 
-import io.github.mzmine.datamodel.DataPoint;
-import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.EnumMap;
@@ -41,114 +40,112 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.jetbrains.annotations.Nullable;
 
-public class NistMspParser extends SpectralDBTextParser {
+public class NistMspParser extends ChunkedSpectralDBTextParser {
 
   private static final Logger logger = Logger.getLogger(NistMspParser.class.getName());
 
   public NistMspParser(int bufferEntries, LibraryEntryProcessor processor) {
-    super(bufferEntries, processor);
+    super(bufferEntries, processor, RecordSeparator.BLANK_LINE);
   }
 
 
   @Override
   public boolean parse(AbstractTask mainTask, File dataBaseFile, SpectralLibrary library)
       throws IOException {
-    super.parse(mainTask, dataBaseFile, library);
     logger.info("Parsing NIST msp spectral library " + dataBaseFile.getAbsolutePath());
+    return super.parse(mainTask, dataBaseFile, library);
+  }
 
+  @Override
+  protected ChunkResult parseChunk(BufferedReader br, SpectralLibrary library) throws IOException {
+    final List<SpectralLibraryEntry> entries = new ArrayList<>();
+    int errors = 0;
     // metadata fields and data points
     Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
-    List<DataPoint> dps = new ArrayList<>();
+    final DoubleArrayList mzs = new DoubleArrayList();
+    final DoubleArrayList intensities = new DoubleArrayList();
     // separation index (metadata is separated by ': '
     int sep = -1;
     // currently loading data?
     boolean isData = false;
 
-    // read DB file
-    try (BufferedReader br = new BufferedReader(new FileReader(dataBaseFile))) {
-      for (String l; (l = br.readLine()) != null; ) {
-        // main task was canceled?
-        if (mainTask != null && mainTask.isCanceled()) {
-          return false;
-        }
-        try {
-          if (l.length() > 1) {
-            // meta data?
-            sep = isData ? -1 : l.indexOf(": ");
-            if (sep != -1 && sep < l.length() - 2) {
-              extractMetaData(fields, l, sep);
-            } else {
-              // data?
-              DataPoint dp = extractDataPoint(l);
-              if (dp != null) {
-                dps.add(dp);
-                isData = true;
-              } else {
-                isData = false;
-              }
-            }
+    for (String l; (l = br.readLine()) != null; ) {
+      try {
+        if (l.length() > 1) {
+          // meta data?
+          sep = isData ? -1 : l.indexOf(": ");
+          if (sep != -1 && sep < l.length() - 2) {
+            extractMetaData(fields, l, sep);
           } else {
-            // empty row
-            if (isData) {
-              // empty row after data
-              // add entry and reset
-              SpectralLibraryEntry entry = SpectralLibraryEntry.create(library.getStorage(), fields,
-                  dps.toArray(new DataPoint[dps.size()]));
-              // add and push
-              addLibraryEntry(entry);
-              // reset
-              fields = new EnumMap<>(fields);
-              dps.clear();
-              isData = false;
-            }
+            // data?
+            isData = extractDataPoint(l, mzs, intensities);
+          }
+        } else {
+          // empty row
+          if (isData) {
+            // empty row after data
+            // add entry and reset
+            entries.add(new SpectralDBEntry(library.getStorage(), mzs.toDoubleArray(),
+                intensities.toDoubleArray(), fields));
+            // reset
+            fields = new EnumMap<>(DBEntryField.class);
+            mzs.clear();
+            intensities.clear();
+            isData = false;
           }
-        } catch (Exception ex) {
-          logger.log(Level.WARNING, "Error for entry", ex);
-          // reset on error
-          isData = false;
-          fields = new EnumMap<>(fields);
-          dps.clear();
         }
-        processedLines.incrementAndGet();
+      } catch (Exception ex) {
+        logger.log(Level.WARNING, "Error for entry", ex);
+        errors++;
+        // reset on error
+        isData = false;
+        fields = new EnumMap<>(DBEntryField.class);
+        mzs.clear();
+        intensities.clear();
       }
-      // finish and process all entries
-      finish();
-      return true;
     }
+    // last entry of the file without a trailing empty row
+    if (isData) {
+      entries.add(new SpectralDBEntry(library.getStorage(), mzs.toDoubleArray(),
+          intensities.toDoubleArray(), fields));
+    }
+    return new ChunkResult(entries, errors);
   }
 
   /**
    * Extract data point
    *
-   * @param line
-   * @return DataPoint or null
+   * @param line        the line
+   * @param mzs         adds the m/z value
+   * @param intensities adds the intensity
+   * @return true if the line was a data point
    */
-  @Nullable
-  private DataPoint extractDataPoint(String line) {
+  private boolean extractDataPoint(String line, DoubleArrayList mzs,
+      DoubleArrayList intensities) {
     // comment possible as mz intensity"
     String[] dataAndComment = line.split("\"");
     // split by space
     String[] data = dataAndComment[0].split(" ");
-    if (data.length == 2) {
-      try {
-        return new SimpleDataPoint(Double.parseDouble(data[0]), Double.parseDouble(data[1]));
-      } catch (Exception e) {
-        logger.log(Level.WARNING, "Cannot parse data point", e);
-      }
+    if (data.length == 2 && addDataPoint(data, mzs, intensities)) {
+      return true;
     }
 
     data = dataAndComment[0].split("\t");
-    if (data.length == 2) {
-      try {
-        return new SimpleDataPoint(Double.parseDouble(data[0]), Double.parseDouble(data[1]));
-      } catch (Exception e) {
-        logger.log(Level.WARNING, "Cannot parse data point", e);
-      }
-    }
+    return data.length == 2 && addDataPoint(data, mzs, intensities);
+  }
 
-    return null;
+  private boolean addDataPoint(String[] data, DoubleArrayList mzs, DoubleArrayList intensities) {
+    try {
+      final double mz = Double.parseDouble(data[0]);
+      final double intensity = Double.parseDouble(data[1]);
+      mzs.add(mz);
+      intensities.add(intensity);
+      return true;
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Cannot parse data point", e);
+      return false;
+    }
   }
 
   /**
@@ -36,6 +36,7 @@ import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeriesUtils;
 import io.github.mzmine.datamodel.featuredata.impl.IonMobilogramTimeSeriesFactory;
+import io.github.mzmine.datamodel.featuredata.impl.ScanIndexIonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilitySeries;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
 import io.github.mzmine.datamodel.impl.BuildingMobilityScan;
@@ -384,6 +385,50 @@ class IonTimeSeriesTest {
     testSortedSeries(IonTimeSeriesUtils.getIntensitySortedIndices(i3), i3);
   }
 
+  @Test
+  void testScanIndexSeries() throws IOException {
+    final RawDataFile file = new RawDataFileImpl("test", null, null);
+    final List<Scan> allScans = makeSomeScans(file, 20);
+    for (Scan scan : allScans) {
+      file.addScan(scan);
+    }
+
+    final List<Scan> scans = allScans.subList(5, 15);
+    final double[] mzs = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+    final double[] intensities = {10, 20, 30, 40, 50, 60, 70, 80, 90, 100};
+    final SimpleIonTimeSeries series = ScanIndexIonTimeSeries.create(null, file, mzs, intensities,
+        scans);
+    Assertions.assertTrue(series instanceof ScanIndexIonTimeSeries);
+    Assertions.assertEquals(new SimpleIonTimeSeries(null, mzs, intensities, scans), series);
+    Assertions.assertEquals(scans, series.getSpectra());
+
+    for (int i = 0; i < scans.size(); i++) {
+      Assertions.assertEquals(i, series.getSpectra().indexOf(scans.get(i)));
+      Assertions.assertEquals(intensities[i], series.getIntensityForSpectrum(scans.get(i)));
+      Assertions.assertEquals(mzs[i], series.getMzForSpectrum(scans.get(i)));
+    }
+    Assertions.assertEquals(0d, series.getIntensityForSpectrum(allScans.get(2)));
+    Assertions.assertEquals(0d, series.getIntensityForSpectrum(allScans.get(17)));
+
+    final SimpleIonTimeSeries sub = series.subSeries(null, allScans.subList(7, 10));
+    Assertions.assertTrue(sub instanceof ScanIndexIonTimeSeries);
+    Assertions.assertEquals(allScans.subList(7, 10), sub.getSpectra());
+    Assertions.assertEquals(30d, sub.getIntensity(0));
+    Assertions.assertEquals(50d, sub.getIntensity(2));
+
+    final IonTimeSeries<Scan> copy = series.copyAndReplace(null, mzs, mzs);
+    Assertions.assertTrue(copy instanceof ScanIndexIonTimeSeries);
+    Assertions.assertEquals(scans, copy.getSpectra());
+    Assertions.assertEquals(mzs[3], copy.getIntensityForSpectrum(scans.get(3)));
+
+    // scans of another file are stored as a list
+    final RawDataFile other = new RawDataFileImpl("other", null, null);
+    final SimpleIonTimeSeries simple = ScanIndexIonTimeSeries.create(null, other, mzs, intensities,
+        scans);
+    Assertions.assertFalse(simple instanceof ScanIndexIonTimeSeries);
+    Assertions.assertEquals(scans, simple.getSpectra());
+  }
+
   public List<Scan> makeSomeScans(RawDataFile file, int numFrames) {
     final List<Scan> scans = new ArrayList<>();
     for (int i = 0; i < numFrames; i++) {
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.data_access;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Lists;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess.FeatureDataType;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class FeatureDataAccessTest {
+
+  /**
+   * Parallel tasks access chunks of rows. Without a data file, the chunks of an aligned feature
+   * list have to cover the features of all raw data files.
+   */
+  @Test
+  void testRowChunksOfAlignedList() {
+    final List<RawDataFile> files = List.of(mock(RawDataFile.class), mock(RawDataFile.class));
+    final List<FeatureListRow> rows = new ArrayList<>();
+    final Set<Feature> expected = new HashSet<>();
+    for (int i = 0; i < 10; i++) {
+      final FeatureListRow row = mock(FeatureListRow.class);
+      final List<ModularFeature> features = new ArrayList<>();
+      for (RawDataFile file : files) {
+        final ModularFeature feature = mock(ModularFeature.class);
+        doReturn(mock(IonTimeSeries.class)).when(feature).getFeatureData();
+        when(feature.getNumberOfDataPoints()).thenReturn(5);
+        when(row.getFeature(file)).thenReturn(feature);
+        when(row.hasFeature(file)).thenReturn(true);
+        features.add(feature);
+      }
+      when(row.getRawDataFiles()).thenReturn(files);
+      when(row.getFeatures()).thenReturn(features);
+      when(row.getNumberOfFeatures()).thenReturn(features.size());
+      expected.addAll(features);
+      rows.add(row);
+    }
+    final FeatureList flist = mock(FeatureList.class);
+    when(flist.getNumberOfRawDataFiles()).thenReturn(files.size());
+    when(flist.getRows()).thenReturn(rows);
+
+    final List<Feature> accessed = new ArrayList<>();
+    for (List<FeatureListRow> chunk : Lists.partition(rows, 4)) {
+      final FeatureDataAccess access = EfficientDataAccess.of(flist,
+          FeatureDataType.ONLY_DETECTED, null, chunk);
+      Assertions.assertEquals(chunk.size() * files.size(), access.getNumOfFeatures());
+      while (access.hasNextFeature()) {
+        accessed.add(access.nextFeature());
+      }
+    }
+
+    Assertions.assertEquals(expected.size(), accessed.size());
+    Assertions.assertEquals(expected, new HashSet<>(accessed));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import io.github.mzmine.util.StorageEncoding;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class EncodedSpectrumValuesTest {
+
+  private static final double MZ_TOLERANCE = StorageEncoding.MZ_FIXED_POINT_RESOLUTION / 2 + 1E-12;
+
+  private static double[][] spectrum(int n) {
+    final Random random = new Random(42);
+    final double[] mzs = new double[n];
+    final double[] intensities = new double[n];
+    double mz = 50 + random.nextDouble();
+    for (int i = 0; i < n; i++) {
+      // mix profile like and centroid like distances
+      mz += i % 7 == 0 ? random.nextDouble() * 20 : random.nextDouble() * 0.01;
+      mzs[i] = mz;
+      intensities[i] = random.nextDouble() * 1E8;
+    }
+    return new double[][]{mzs, intensities};
+  }
+
+  @Test
+  void testDeltaMzRoundTrip() {
+    final double[][] data = spectrum(1000);
+    final EncodedSpectrumValues values = EncodedSpectrumValues.encode(null,
+        StorageEncoding.DELTA_MZ_FLOAT_INTENSITY, data[0], data[1]);
+    Assertions.assertEquals(1000, values.getNumberOfValues());
+
+    final double[] mzs = new double[1000];
+    final double[] intensities = new double[1000];
+    values.getMzValues(mzs);
+    values.getIntensityValues(intensities);
+    for (int i = 0; i < 1000; i++) {
+      Assertions.assertEquals(data[0][i], mzs[i], MZ_TOLERANCE);
+      Assertions.assertEquals(mzs[i], values.getMz(i));
+      Assertions.assertEquals(data[1][i], intensities[i], data[1][i] * 6E-8);
+      Assertions.assertEquals(intensities[i], values.getIntensity(i));
+    }
+    // less than half of the 16 bytes per data point
+    Assertions.assertTrue(values.getEncodedBytes() < 1000 * 8);
+  }
+
+  @Test
+  void testFloatIntensity() {
+    final double[][] data = spectrum(100);
+    final EncodedSpectrumValues values = EncodedSpectrumValues.encode(null,
+        StorageEncoding.FLOAT_INTENSITY, data[0], data[1]);
+    for (int i = 0; i < 100; i++) {
+      Assertions.assertEquals(data[0][i], values.getMz(i));
+      Assertions.assertEquals((float) data[1][i], values.getIntensity(i));
+    }
+    Assertions.assertEquals(100 * 12, values.getEncodedBytes());
+  }
+
+  @Test
+  void testBlockBoundaries() {
+    for (int n : new int[]{0, 1, StorageEncoding.MZ_BLOCK_SIZE - 1, StorageEncoding.MZ_BLOCK_SIZE,
+        StorageEncoding.MZ_BLOCK_SIZE + 1, 3 * StorageEncoding.MZ_BLOCK_SIZE}) {
+      final double[][] data = spectrum(n);
+      final EncodedSpectrumValues values = EncodedSpectrumValues.encode(null,
+          StorageEncoding.DELTA_MZ_FLOAT_INTENSITY, data[0], data[1]);
+      Assertions.assertEquals(n, values.getNumberOfValues());
+      for (int i = 0; i < n; i++) {
+        Assertions.assertEquals(data[0][i], values.getMz(i), MZ_TOLERANCE);
+      }
+    }
+  }
+
+  @Test
+  void testUnsortedMzs() {
+    final double[] mzs = {100, 200, 150};
+    final double[] intensities = new double[3];
+    Arrays.fill(intensities, 1d);
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> EncodedSpectrumValues.encode(null, StorageEncoding.DELTA_MZ_FLOAT_INTENSITY, mzs,
+            intensities));
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.gui.chartbasics.simplechart;
+
+import io.github.mzmine.gui.chartbasics.simplechart.datasets.ColoredXYDataset;
+import io.github.mzmine.gui.chartbasics.simplechart.datasets.RunOption;
+import io.github.mzmine.gui.chartbasics.simplechart.datasets.XYLevelOfDetail;
+import io.github.mzmine.gui.chartbasics.simplechart.providers.SimpleXYProvider;
+import io.github.mzmine.gui.chartbasics.simplechart.renderers.ColoredXYLineRenderer;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.logging.Logger;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYItemRendererState;
+import org.jfree.data.xy.XYDataset;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Renders large {@link ColoredXYDataset}s headless into an image and checks the number of drawn
+ * items for different zoom levels.
+ */
+class ColoredXYDatasetLevelOfDetailTest {
+
+  private static final Logger logger = Logger.getLogger(
+      ColoredXYDatasetLevelOfDetailTest.class.getName());
+
+  private static final int NUM_VALUES = 200_000;
+  private static final int WIDTH = 800;
+  private static final int HEIGHT = 400;
+  private static final int SPIKE_INDEX = 123_457;
+
+  @BeforeAll
+  static void setHeadless() {
+    System.setProperty("java.awt.headless", "true");
+  }
+
+  private static ColoredXYDataset createDataset() {
+    final Random random = new Random(42);
+    final double[] x = new double[NUM_VALUES];
+    final double[] y = new double[NUM_VALUES];
+    for (int i = 0; i < NUM_VALUES; i++) {
+      x[i] = i * 0.01;
+      y[i] = 100 + random.nextDouble() * 10;
+    }
+    y[SPIKE_INDEX] = 1E5;
+    return new ColoredXYDataset(new SimpleXYProvider("test", Color.BLACK, x, y),
+        RunOption.THIS_THREAD);
+  }
+
+  private static JFreeChart createChart(ColoredXYDataset dataset, CountingRenderer renderer) {
+    final XYPlot plot = new XYPlot(dataset, new NumberAxis("x"), new NumberAxis("y"), renderer);
+    return new JFreeChart(null, JFreeChart.DEFAULT_TITLE_FONT, plot, false);
+  }
+
+  private static long render(JFreeChart chart) {
+    final long start = System.nanoTime();
+    chart.createBufferedImage(WIDTH, HEIGHT);
+    return System.nanoTime() - start;
+  }
+
+  @Test
+  void testZoomedOutIsDecimated() {
+    final ColoredXYDataset dataset = createDataset();
+    final CountingRenderer renderer = new CountingRenderer();
+    final JFreeChart chart = createChart(dataset, renderer);
+
+    final long nanos = render(chart);
+    logger.info(() -> "Rendered %d of %d points in %.1f ms".formatted(renderer.drawn.cardinality(),
+        NUM_VALUES, nanos / 1E6));
+
+    // item indices are stable, only the renderer skips items
+    Assertions.assertEquals(NUM_VALUES, dataset.getItemCount(0));
+    // data area is smaller than the image
+    Assertions.assertTrue(renderer.drawn.cardinality() <= WIDTH * XYLevelOfDetail.POINTS_PER_PIXEL,
+        "drawn " + renderer.drawn.cardinality());
+
+    // bounds and the spike are kept
+    Assertions.assertTrue(renderer.drawn.get(0));
+    Assertions.assertTrue(renderer.drawn.get(NUM_VALUES - 1));
+    Assertions.assertTrue(renderer.drawn.get(SPIKE_INDEX));
+    Assertions.assertEquals(1E5, dataset.getYValue(0, SPIKE_INDEX));
+    Assertions.assertEquals(SPIKE_INDEX, dataset.getValueIndex(SPIKE_INDEX * 0.01, 1E5));
+  }
+
+  @Test
+  void testZoomedInIsFullResolution() {
+    final ColoredXYDataset dataset = createDataset();
+    final CountingRenderer renderer = new CountingRenderer();
+    final JFreeChart chart = createChart(dataset, renderer);
+    render(chart);
+
+    // 500 values visible
+    final ValueAxis domainAxis = chart.getXYPlot().getDomainAxis();
+    domainAxis.setRange(100, 104.99);
+    renderer.drawn.clear();
+    final long nanos = render(chart);
+    logger.info(() -> "Rendered %d points zoomed in in %.1f ms".formatted(
+        renderer.drawn.cardinality(), nanos / 1E6));
+
+    Assertions.assertEquals(NUM_VALUES, dataset.getItemCount(0));
+    // all visible items and one neighbour on each side
+    for (int i = 10_000; i < 10_500; i++) {
+      Assertions.assertTrue(renderer.drawn.get(i), "item " + i);
+    }
+    Assertions.assertTrue(renderer.drawn.cardinality() <= 502);
+
+    // zoom out again
+    domainAxis.setAutoRange(true);
+    renderer.drawn.clear();
+    render(chart);
+    Assertions.assertTrue(renderer.drawn.cardinality() <= WIDTH * XYLevelOfDetail.POINTS_PER_PIXEL);
+  }
+
+  @Test
+  void testSmallDatasetIsNotDecimated() {
+    final double[] x = new double[1000];
+    final double[] y = new double[1000];
+    for (int i = 0; i < x.length; i++) {
+      x[i] = i;
+      y[i] = i % 7;
+    }
+    final ColoredXYDataset dataset = new ColoredXYDataset(
+        new SimpleXYProvider("small", Color.BLACK, x, y), RunOption.THIS_THREAD);
+    final CountingRenderer renderer = new CountingRenderer();
+    render(createChart(dataset, renderer));
+    Assertions.assertEquals(x.length, renderer.drawn.cardinality());
+  }
+
+  /**
+   * Records the items that are drawn as part of the series path.
+   */
+  private static class CountingRenderer extends ColoredXYLineRenderer {
+
+    private final BitSet drawn = new BitSet();
+
+    @Override
+    protected void drawPrimaryLineAsPath(XYItemRendererState state, Graphics2D g2, XYPlot plot,
+        XYDataset dataset, int pass, int series, int item, ValueAxis domainAxis,
+        ValueAxis rangeAxis, Rectangle2D dataArea) {
+      drawn.set(item);
+      super.drawPrimaryLineAsPath(state, g2, plot, dataset, pass, series, item, domainAxis,
+          rangeAxis, dataArea);
+    }
+  }
+}
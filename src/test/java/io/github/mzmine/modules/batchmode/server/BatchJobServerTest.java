@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Submits, queries and cancels jobs over HTTP. The jobs are run by a runner that waits until the
+ * test releases it.
+ */
+class BatchJobServerTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final HttpClient client = HttpClient.newHttpClient();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final CountDownLatch firstStarted = new CountDownLatch(1);
+  @TempDir
+  Path dir;
+  private BatchJobServer server;
+  private String token;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = new BatchJobServer(0, job -> {
+      firstStarted.countDown();
+      release.await(10, TimeUnit.SECONDS);
+      return job.isCancelRequested() ? TaskStatus.CANCELED : TaskStatus.FINISHED;
+    }, dir.resolve("token").toFile());
+    server.start();
+    token = Files.readString(server.getTokenFile().toPath());
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop();
+    // the token is only valid for this session
+    Assertions.assertFalse(server.getTokenFile().exists());
+  }
+
+  private HttpResponse<String> send(String method, String path, String body)
+      throws IOException, InterruptedException {
+    return client.send(request(method, path, body).header("Authorization", "Bearer " + token)
+        .build(), BodyHandlers.ofString());
+  }
+
+  private HttpRequest.Builder request(String method, String path, String body) {
+    return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+        .method(method, body == null ? BodyPublishers.noBody() : BodyPublishers.ofString(body));
+  }
+
+  private JsonNode json(HttpResponse<String> response) throws IOException {
+    return mapper.readTree(response.body());
+  }
+
+  private String awaitStatus(long id, String status) throws Exception {
+    String current = null;
+    for (int i = 0; i < 100; i++) {
+      current = json(send("GET", "/jobs/" + id, null)).get("status").asText();
+      if (current.equals(status)) {
+        break;
+      }
+      Thread.sleep(50);
+    }
+    return current;
+  }
+
+  @Test
+  void testSubmitAndCancel() throws Exception {
+    final HttpResponse<String> first = send("POST", "/jobs", "<batch/>");
+    Assertions.assertEquals(201, first.statusCode());
+    final long firstId = json(first).get("id").asLong();
+    Assertions.assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+    Assertions.assertEquals("PROCESSING", awaitStatus(firstId, "PROCESSING"));
+
+    // second job waits for the first
+    final long secondId = json(send("POST", "/jobs", "<batch/>")).get("id").asLong();
+    Assertions.assertEquals("WAITING", json(send("GET", "/jobs/" + secondId, null)).get("status")
+        .asText());
+    Assertions.assertEquals("CANCELED",
+        json(send("DELETE", "/jobs/" + secondId, null)).get("status").asText());
+
+    release.countDown();
+    Assertions.assertEquals("FINISHED", awaitStatus(firstId, "FINISHED"));
+    Assertions.assertEquals("CANCELED", awaitStatus(secondId, "CANCELED"));
+    Assertions.assertEquals(2, json(send("GET", "/jobs", null)).size());
+    // the temporary batch files are removed after the jobs
+    for (BatchJob job : server.getJobs()) {
+      for (int i = 0; i < 100 && job.getBatchFile().exists(); i++) {
+        Thread.sleep(50);
+      }
+      Assertions.assertFalse(job.getBatchFile().exists());
+    }
+  }
+
+  @Test
+  void testBadRequests() throws Exception {
+    Assertions.assertEquals(400, send("POST", "/jobs", "").statusCode());
+    Assertions.assertEquals(404, send("GET", "/jobs/42", null).statusCode());
+    Assertions.assertEquals(404, send("GET", "/jobs/abc", null).statusCode());
+    Assertions.assertEquals(405, send("PUT", "/jobs", "<batch/>").statusCode());
+  }
+
+  @Test
+  void testRequestsNeedToken() throws Exception {
+    Assertions.assertEquals(401,
+        client.send(request("POST", "/jobs", "<batch/>").build(), BodyHandlers.ofString())
+            .statusCode());
+    Assertions.assertEquals(401,
+        client.send(request("GET", "/jobs", null).header("Authorization", "Bearer wrong").build(),
+            BodyHandlers.ofString()).statusCode());
+    Assertions.assertTrue(server.getJobs().isEmpty());
+
+    if (Files.getFileStore(dir).supportsFileAttributeView("posix")) {
+      Assertions.assertEquals(Set.of(PosixFilePermission.OWNER_READ,
+              PosixFilePermission.OWNER_WRITE),
+          Files.getPosixFilePermissions(server.getTokenFile().toPath()));
+    }
+  }
+
+  @Test
+  void testRejectsBrowserRequests() throws Exception {
+    final HttpRequest request = request("POST", "/jobs", "<batch/>")
+        .header("Authorization", "Bearer " + token).header("Origin", "http://example.com").build();
+    Assertions.assertEquals(403, client.send(request, BodyHandlers.ofString()).statusCode());
+    Assertions.assertTrue(server.getJobs().isEmpty());
+  }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.clustering;
+
+import io.github.mzmine.modules.dataanalysis.clustering.hierarchical.DistanceType;
+import io.github.mzmine.modules.dataanalysis.clustering.hierarchical.LinkType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import weka.clusterers.HierarchicalClusterer;
+import weka.clusterers.SimpleKMeans;
+import weka.core.Instances;
+
+class ClusteringEngineTest {
+
+  /**
+   * three separated blobs, items are shuffled
+   */
+  private static double[][] blobs(int n, int dims) {
+    final Random random = new Random(42);
+    final double[][] data = new double[n][dims];
+    for (int i = 0; i < n; i++) {
+      final int blob = random.nextInt(3);
+      for (int j = 0; j < dims; j++) {
+        data[i][j] = blob * 10 + (j % 3 == blob ? 5 : 0) + random.nextGaussian();
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Numbers the clusters in the order of their first item
+   */
+  private static int[] relabelByFirstItem(int[] clusters) {
+    final int[] labels = new int[clusters.length];
+    final int[] mapping = new int[Arrays.stream(clusters).max().orElse(-1) + 1];
+    Arrays.fill(mapping, -1);
+    int next = 0;
+    for (int i = 0; i < clusters.length; i++) {
+      if (mapping[clusters[i]] == -1) {
+        mapping[clusters[i]] = next++;
+      }
+      labels[i] = mapping[clusters[i]];
+    }
+    return labels;
+  }
+
+  private static double[][] randomData(int n, int dims) {
+    final Random random = new Random(7);
+    final double[][] data = new double[n][dims];
+    for (double[] row : data) {
+      for (int j = 0; j < dims; j++) {
+        row[j] = random.nextDouble();
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Naive O(n^3) agglomerative clustering by the definition of the link types
+   *
+   * @return merge heights in order and the partition into numClusters
+   */
+  private static double[] naiveHierarchical(double[][] data, LinkType link, int numClusters,
+      int[] partition) {
+    final List<List<Integer>> clusters = new ArrayList<>();
+    for (int i = 0; i < data.length; i++) {
+      clusters.add(new ArrayList<>(List.of(i)));
+    }
+    final double[] heights = new double[data.length - 1];
+    for (int m = 0; m < data.length - 1; m++) {
+      int bestA = -1;
+      int bestB = -1;
+      double best = Double.POSITIVE_INFINITY;
+      for (int a = 0; a < clusters.size(); a++) {
+        for (int b = a + 1; b < clusters.size(); b++) {
+          final double d = linkage(data, clusters.get(a), clusters.get(b), link);
+          if (d < best) {
+            best = d;
+            bestA = a;
+            bestB = b;
+          }
+        }
+      }
+      heights[m] = best;
+      clusters.get(bestA).addAll(clusters.remove(bestB));
+      if (clusters.size() == numClusters) {
+        for (int c = 0; c < clusters.size(); c++) {
+          for (int item : clusters.get(c)) {
+            partition[item] = c;
+          }
+        }
+      }
+    }
+    final int[] relabeled = relabelByFirstItem(partition);
+    System.arraycopy(relabeled, 0, partition, 0, partition.length);
+    return heights;
+  }
+
+  private static double linkage(double[][] data, List<Integer> a, List<Integer> b,
+      LinkType link) {
+    double min = Double.POSITIVE_INFINITY;
+    double max = 0;
+    double sum = 0;
+    for (int i : a) {
+      for (int j : b) {
+        final double d = ClusteringEngine.distance(data[i], data[j], DistanceType.EUCLIDIAN);
+        min = Math.min(min, d);
+        max = Math.max(max, d);
+        sum += d;
+      }
+    }
+    return switch (link) {
+      case SINGLE -> min;
+      case COMPLETE -> max;
+      default -> sum / (a.size() * b.size());
+    };
+  }
+
+  private static double[] centroid(double[][] data, List<Integer> items) {
+    final double[] c = new double[data[0].length];
+    for (int i : items) {
+      for (int j = 0; j < c.length; j++) {
+        c[j] += data[i][j] / items.size();
+      }
+    }
+    return c;
+  }
+
+  /**
+   * Random seeds can start in the same blob, so Lloyd iterations only find a local optimum: every
+   * item is closest to the mean of its own cluster.
+   */
+  @Test
+  void testKMeansConverges() {
+    final double[][] data = ClusteringEngine.normalizeRanges(blobs(600, 6));
+    final ClusteringEngine engine = new ClusteringEngine(4);
+
+    final int[] clusters = engine.kMeans(data, 3, 500, 0, 10);
+    Assertions.assertEquals(2, Arrays.stream(clusters).max().orElse(-1));
+    final double[][] means = new double[3][];
+    for (int c = 0; c < 3; c++) {
+      final int cluster = c;
+      means[c] = centroid(data,
+          IntStream.range(0, data.length).filter(i -> clusters[i] == cluster).boxed().toList());
+    }
+    for (int i = 0; i < data.length; i++) {
+      for (int c = 0; c < 3; c++) {
+        Assertions.assertTrue(
+            ClusteringEngine.distance(data[i], means[clusters[i]], DistanceType.EUCLIDIAN)
+                <= ClusteringEngine.distance(data[i], means[c], DistanceType.EUCLIDIAN) + 1E-12);
+      }
+    }
+
+    // mini-batches are deterministic with the seed
+    final int[] miniBatch = engine.kMeans(data, 3, 500, 50, 10);
+    Assertions.assertEquals(2, Arrays.stream(miniBatch).max().orElse(-1));
+    Assertions.assertArrayEquals(miniBatch, new ClusteringEngine(1).kMeans(data, 3, 500, 50, 10));
+  }
+
+  /**
+   * Same clusters and cluster numbers as the Weka SimpleKMeans with its default seed and
+   * iterations, also for data without separated groups.
+   */
+  @Test
+  void testKMeansMatchesWeka() throws Exception {
+    final double[][] blobs = blobs(300, 4);
+    final double[][] random = randomData(400, 5);
+    for (double[][] data : new double[][][]{blobs, random}) {
+      final Instances instances = new ClusteringData(data, new String[data.length],
+          1).toWekaInstances(false);
+      final double[][] normalized = ClusteringEngine.normalizeRanges(data);
+      for (int k : new int[]{1, 2, 3, 5, 8}) {
+        final SimpleKMeans weka = new SimpleKMeans();
+        weka.setOptions(new String[]{"-N", String.valueOf(k)});
+        weka.buildClusterer(instances);
+        final int[] expected = new int[data.length];
+        for (int i = 0; i < data.length; i++) {
+          expected[i] = weka.clusterInstance(instances.instance(i));
+        }
+
+        for (int threads : new int[]{1, 4}) {
+          Assertions.assertArrayEquals(expected,
+              new ClusteringEngine(threads).kMeans(normalized, k, 500, 0, 10));
+        }
+      }
+    }
+  }
+
+  /**
+   * Weka skips seeds that equal a previous seed
+   */
+  @Test
+  void testKMeansWithDuplicatesMatchesWeka() throws Exception {
+    final double[][] data = new double[60][];
+    final double[][] distinct = randomData(6, 2);
+    for (int i = 0; i < data.length; i++) {
+      data[i] = distinct[i % distinct.length].clone();
+    }
+    final Instances instances = new ClusteringData(data, new String[data.length],
+        1).toWekaInstances(false);
+    final SimpleKMeans weka = new SimpleKMeans();
+    weka.setOptions(new String[]{"-N", "4"});
+    weka.buildClusterer(instances);
+    final int[] expected = new int[data.length];
+    for (int i = 0; i < data.length; i++) {
+      expected[i] = weka.clusterInstance(instances.instance(i));
+    }
+
+    Assertions.assertArrayEquals(expected, new ClusteringEngine(2).kMeans(
+        ClusteringEngine.normalizeRanges(data), 4, 500, 0, 10));
+  }
+
+  @Test
+  void testDistanceMatrix() {
+    final double[][] data = randomData(51, 4);
+    for (DistanceType type : DistanceType.values()) {
+      final float[] distances = new ClusteringEngine(4).distanceMatrix(data, type);
+      Assertions.assertEquals(51 * 50 / 2, distances.length);
+      for (int i = 0; i < data.length; i++) {
+        for (int j = i + 1; j < data.length; j++) {
+          Assertions.assertEquals((float) ClusteringEngine.distance(data[i], data[j], type),
+              distances[ClusteringEngine.condensedIndex(i, j, data.length)]);
+        }
+      }
+    }
+  }
+
+  @Test
+  void testHierarchicalMatchesNaiveLinkage() {
+    final double[][] data = randomData(40, 3);
+    final ClusteringEngine engine = new ClusteringEngine(2);
+    for (LinkType link : new LinkType[]{LinkType.SINGLE, LinkType.COMPLETE, LinkType.AVERAGE}) {
+      final int[] expectedPartition = new int[data.length];
+      final double[] expectedHeights = naiveHierarchical(data, link, 4, expectedPartition);
+
+      final Dendrogram dendrogram = engine.hierarchical(
+          engine.distanceMatrix(data, DistanceType.EUCLIDIAN), data.length, link);
+      Assertions.assertEquals(data.length - 1, dendrogram.getNumMerges());
+      for (int m = 0; m < expectedHeights.length; m++) {
+        Assertions.assertEquals(expectedHeights[m], dendrogram.getHeight(m), 1E-5);
+      }
+      Assertions.assertTrue(Arrays.equals(expectedPartition, dendrogram.cut(4)));
+    }
+  }
+
+  /**
+   * Same clusters as the Weka HierarchicalClusterer. Weka numbers the clusters by their first
+   * item like the dendrogram.
+   */
+  @Test
+  void testHierarchicalMatchesWeka() throws Exception {
+    final double[][] blobs = blobs(90, 3);
+    final double[][] random = randomData(70, 4);
+    for (double[][] data : new double[][][]{blobs, random}) {
+      final Instances instances = new ClusteringData(data, new String[data.length],
+          1).toWekaInstances(false);
+      final double[][] normalized = ClusteringEngine.normalizeRanges(data);
+      for (LinkType link : new LinkType[]{LinkType.SINGLE, LinkType.COMPLETE, LinkType.AVERAGE}) {
+        for (DistanceType distanceType : new DistanceType[]{DistanceType.EUCLIDIAN,
+            DistanceType.MANHATTAN, DistanceType.CHEBYSHEV}) {
+          final ClusteringEngine engine = new ClusteringEngine(4);
+          final Dendrogram dendrogram = engine.hierarchical(
+              engine.distanceMatrix(normalized, distanceType), data.length, link);
+          for (int k : new int[]{2, 4}) {
+            final HierarchicalClusterer weka = new HierarchicalClusterer();
+            weka.setOptions(new String[]{"-N", String.valueOf(k), "-L", link.name(), "-A",
+                wekaDistance(distanceType)});
+            weka.buildClusterer(instances);
+            final int[] expected = new int[data.length];
+            for (int i = 0; i < data.length; i++) {
+              expected[i] = weka.clusterInstance(instances.instance(i));
+            }
+            Assertions.assertArrayEquals(expected, dendrogram.cut(k),
+                link + " " + distanceType + " " + k);
+          }
+        }
+      }
+    }
+  }
+
+  private static String wekaDistance(DistanceType type) {
+    return switch (type) {
+      case EUCLIDIAN -> "weka.core.EuclideanDistance";
+      case CHEBYSHEV -> "weka.core.ChebyshevDistance";
+      case MANHATTAN -> "weka.core.ManhattanDistance";
+      case MINKOWSKI -> "weka.core.MinkowskiDistance";
+    };
+  }
+
+  /**
+   * Ward linkage of Weka is not reducible and stays on Weka
+   */
+  @Test
+  void testWardNotSupported() {
+    Assertions.assertFalse(ClusteringEngine.isSupported(LinkType.WARD));
+    final ClusteringEngine engine = new ClusteringEngine(1);
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> engine.hierarchical(new float[]{1f}, 2, LinkType.WARD));
+  }
+
+  @Test
+  void testNewick() {
+    final double[][] data = {{0}, {1}, {10}, {12}};
+    final ClusteringEngine engine = new ClusteringEngine(1);
+    final Dendrogram dendrogram = engine.hierarchical(
+        engine.distanceMatrix(data, DistanceType.EUCLIDIAN), 4, LinkType.SINGLE);
+    final String[] names = {"a", "b", "c", "d"};
+
+    Assertions.assertEquals("Cluster 0\n((a:1.0,b:1.0):8.0,(c:2.0,d:2.0):7.0)\n",
+        dendrogram.toNewick(1, names));
+    Assertions.assertEquals("Cluster 0\n(a:1.0,b:1.0)\nCluster 1\n(c:2.0,d:2.0)\n",
+        dendrogram.toNewick(2, names));
+    Assertions.assertTrue(Arrays.equals(new int[]{0, 0, 1, 1}, dendrogram.cut(2)));
+    Assertions.assertTrue(Arrays.equals(new int[]{0, 1, 2, 3}, dendrogram.cut(10)));
+  }
+}
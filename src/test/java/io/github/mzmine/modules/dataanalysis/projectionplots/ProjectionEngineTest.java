@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.projectionplots;
+
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ProjectionEngineTest {
+
+  /**
+   * samples x features matrix of rank 2 with noise
+   */
+  private static double[][] lowRankData(int samples, int features, double noise) {
+    final Random random = new Random(42);
+    final double[][] u = new double[samples][2];
+    final double[][] v = new double[2][features];
+    for (double[] row : u) {
+      row[0] = random.nextGaussian() * 10;
+      row[1] = random.nextGaussian() * 3;
+    }
+    for (double[] row : v) {
+      for (int j = 0; j < features; j++) {
+        row[j] = random.nextGaussian();
+      }
+    }
+    final double[][] data = new double[samples][features];
+    for (int i = 0; i < samples; i++) {
+      for (int j = 0; j < features; j++) {
+        data[i][j] = u[i][0] * v[0][j] + u[i][1] * v[1][j] + random.nextGaussian() * noise;
+      }
+    }
+    return data;
+  }
+
+  private static double distance(double[][] byComponent, int i, int j) {
+    double sum = 0;
+    for (double[] component : byComponent) {
+      final double d = component[i] - component[j];
+      sum += d * d;
+    }
+    return Math.sqrt(sum);
+  }
+
+  private static double distance(double[] a, double[] b) {
+    double sum = 0;
+    for (int k = 0; k < a.length; k++) {
+      final double d = a[k] - b[k];
+      sum += d * d;
+    }
+    return Math.sqrt(sum);
+  }
+
+  private static double sammonsStress(double[][] data, double[][] projection) {
+    double stress = 0;
+    double total = 0;
+    for (int i = 0; i < data.length; i++) {
+      for (int j = i + 1; j < data.length; j++) {
+        final double dStar = distance(data[i], data[j]);
+        final double d = distance(projection, i, j);
+        stress += (dStar - d) * (dStar - d) / dStar;
+        total += dStar;
+      }
+    }
+    return stress / total;
+  }
+
+  @Test
+  void testAutoscale() {
+    final double[][] data = lowRankData(30, 200, 1);
+    for (double[] row : data) {
+      row[5] = 7; // constant feature
+    }
+    new ProjectionEngine(4, () -> false).autoscale(data);
+
+    for (int j = 0; j < data[0].length; j++) {
+      double mean = 0;
+      for (double[] row : data) {
+        mean += row[j];
+      }
+      mean /= data.length;
+      double var = 0;
+      for (double[] row : data) {
+        var += (row[j] - mean) * (row[j] - mean);
+      }
+      var /= data.length - 1;
+      Assertions.assertEquals(0d, mean, 1E-10);
+      Assertions.assertEquals(j == 5 ? 0d : 1d, var, 1E-10);
+    }
+  }
+
+  @Test
+  void testRandomizedPcaPreservesRankTwoDistances() {
+    final double[][] data = lowRankData(80, 2000, 0);
+    final ProjectionEngine engine = new ProjectionEngine(4, () -> false);
+    final double[][] scores = engine.pca(data, 3);
+
+    Assertions.assertEquals(3, scores.length);
+    Assertions.assertEquals(80, scores[0].length);
+    // all variance is in the first two components, which keep all distances
+    for (int i = 0; i < data.length; i++) {
+      Assertions.assertEquals(0d, scores[2][i], 1E-6);
+      for (int j = i + 1; j < data.length; j++) {
+        Assertions.assertEquals(distance(data[i], data[j]), distance(scores, i, j), 1E-6);
+      }
+    }
+    // components are sorted by variance
+    double var1 = 0;
+    double var2 = 0;
+    for (int i = 0; i < data.length; i++) {
+      var1 += scores[0][i] * scores[0][i];
+      var2 += scores[1][i] * scores[1][i];
+    }
+    Assertions.assertTrue(var1 >= var2);
+  }
+
+  @Test
+  void testPcaIsDeterministic() {
+    final double[][] data = lowRankData(40, 500, 2);
+    final double[][] a = new ProjectionEngine(1, () -> false).pca(data, 2);
+    final double[][] b = new ProjectionEngine(8, () -> false).pca(data, 2);
+    for (int c = 0; c < 2; c++) {
+      for (int i = 0; i < data.length; i++) {
+        Assertions.assertEquals(a[c][i], b[c][i], 1E-9);
+      }
+    }
+  }
+
+  @Test
+  void testSammonsReducesStress() {
+    final double[][] data = lowRankData(60, 300, 4);
+    final ProjectionEngine engine = new ProjectionEngine(4, () -> false);
+    final double[][] start = engine.pca(engine.reduceDimensions(data), 2);
+    final double[][] mapped = engine.sammons(data, 2, 50);
+
+    Assertions.assertEquals(2, mapped.length);
+    Assertions.assertEquals(60, mapped[0].length);
+    Assertions.assertTrue(sammonsStress(data, mapped) < sammonsStress(data, start));
+  }
+
+  @Test
+  void testCanceled() {
+    final double[][] data = lowRankData(20, 100, 1);
+    final ProjectionEngine engine = new ProjectionEngine(2, () -> true);
+    Assertions.assertNull(engine.pca(data, 2));
+    Assertions.assertNull(engine.sammons(data, 2, 10));
+  }
+}
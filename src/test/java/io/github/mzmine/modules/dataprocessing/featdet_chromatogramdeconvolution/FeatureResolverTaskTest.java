@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.gui.preferences.NumOfThreadsParameter;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolverParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class FeatureResolverTaskTest {
+
+  private static final int NUM_SCANS = 80;
+  // more than two chunks of rows to use the parallel resolving
+  private static final int NUM_ROWS = 700;
+
+  @Test
+  void testParallelResolvingMatchesSequential() throws IOException {
+    final ModularFeatureList flist = createFeatureList();
+    final ParameterSet parameters = createParameters();
+
+    final FeatureList sequential = resolve(flist, parameters, 1);
+    final FeatureList parallel = resolve(flist, parameters, 4);
+
+    final List<FeatureListRow> expected = sequential.getRows();
+    final List<FeatureListRow> actual = parallel.getRows();
+    // every chromatogram contains two peaks
+    Assertions.assertTrue(expected.size() > NUM_ROWS);
+    Assertions.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      final FeatureListRow e = expected.get(i);
+      final FeatureListRow a = actual.get(i);
+      Assertions.assertEquals(e.getID(), a.getID());
+      Assertions.assertEquals(e.getAverageMZ(), a.getAverageMZ());
+      Assertions.assertEquals(e.getAverageRT(), a.getAverageRT());
+      Assertions.assertEquals(e.getBestFeature().getHeight(), a.getBestFeature().getHeight());
+      Assertions.assertEquals(e.getBestFeature().getRawDataPointsRTRange(),
+          a.getBestFeature().getRawDataPointsRTRange());
+      Assertions.assertEquals(e.getBestFeature().getScanNumbers(),
+          a.getBestFeature().getScanNumbers());
+    }
+  }
+
+  private static FeatureList resolve(ModularFeatureList flist, ParameterSet parameters,
+      int threads) {
+    final NumOfThreadsParameter numOfThreads = MZmineCore.getConfiguration().getPreferences()
+        .getParameter(MZminePreferences.numOfThreads);
+    final boolean automatic = numOfThreads.isAutomatic();
+    final Integer value = numOfThreads.getValue();
+    try {
+      numOfThreads.setAutomatic(false);
+      numOfThreads.setValue(threads);
+
+      final MZmineProjectImpl project = new MZmineProjectImpl();
+      final FeatureResolverTask task = new FeatureResolverTask(project, null, flist, parameters,
+          FeatureDataUtils.DEFAULT_CENTER_FUNCTION, Instant.now());
+      task.run();
+      Assertions.assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+      Assertions.assertEquals(1, project.getCurrentFeatureLists().size());
+      return project.getCurrentFeatureLists().get(0);
+    } finally {
+      numOfThreads.setAutomatic(automatic);
+      numOfThreads.setValue(value);
+    }
+  }
+
+  private static ParameterSet createParameters() {
+    final MinimumSearchFeatureResolverParameters param = new MinimumSearchFeatureResolverParameters();
+    param.setParameter(MinimumSearchFeatureResolverParameters.SUFFIX, "r");
+    param.setParameter(MinimumSearchFeatureResolverParameters.handleOriginal,
+        OriginalFeatureListOption.KEEP);
+    param.setParameter(MinimumSearchFeatureResolverParameters.dimension,
+        ResolvingDimension.RETENTION_TIME);
+    param.setParameter(MinimumSearchFeatureResolverParameters.CHROMATOGRAPHIC_THRESHOLD_LEVEL,
+        0d);
+    param.setParameter(MinimumSearchFeatureResolverParameters.SEARCH_RT_RANGE, 0.1);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_RELATIVE_HEIGHT, 0d);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_ABSOLUTE_HEIGHT, 1E3);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_RATIO, 1.5);
+    param.setParameter(MinimumSearchFeatureResolverParameters.PEAK_DURATION,
+        Range.closed(0d, 2d));
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_NUMBER_OF_DATAPOINTS, 4);
+    param.setParameter(MinimumSearchFeatureResolverParameters.groupMS2Parameters, false);
+    return param;
+  }
+
+  /**
+   * Chromatograms with two peaks at different retention times.
+   */
+  private static ModularFeatureList createFeatureList() throws IOException {
+    final RawDataFile file = new RawDataFileImpl("resolver", null, null);
+    final List<Scan> scans = new ArrayList<>();
+    for (int i = 0; i < NUM_SCANS; i++) {
+      final Scan scan = new SimpleScan(file, i, 1, 0.05f * i, null, new double[]{100d},
+          new double[]{1d}, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "",
+          Range.closed(0d, 1000d));
+      file.addScan(scan);
+      scans.add(scan);
+    }
+
+    final ModularFeatureList flist = new ModularFeatureList("chromatograms", null, file);
+    flist.setSelectedScans(file, scans);
+    for (int r = 0; r < NUM_ROWS; r++) {
+      final double mz = 100 + 0.01 * r;
+      final int apex1 = 8 + (r * 7) % 25;
+      final int apex2 = 45 + (r * 11) % 25;
+      final double[] mzs = new double[NUM_SCANS];
+      final double[] intensities = new double[NUM_SCANS];
+      for (int i = 0; i < NUM_SCANS; i++) {
+        mzs[i] = mz;
+        intensities[i] = 10 + 1E5 * (1 + r % 5) * Math.exp(-Math.pow((i - apex1) / 2d, 2))
+            + 5E4 * Math.exp(-Math.pow((i - apex2) / 3d, 2));
+      }
+      final ModularFeature feature = new ModularFeature(flist, file,
+          new SimpleIonTimeSeries(null, mzs, intensities, scans), FeatureStatus.DETECTED);
+      flist.addRow(new ModularFeatureListRow(flist, r + 1, feature));
+    }
+    return flist;
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave;
+
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.PeakIntegrationMethod;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the wavelet transform to a brute force convolution, checks the detected peaks on
+ * synthetic gaussian chromatograms and compares the peaks to stored xcms centWave peak tables. The
+ * xcms peak tables are created by src/test/resources/centwave/generate_xcms_reference.R from
+ * chromatogram.csv in the same folder.
+ */
+class CentWaveDetectorTest {
+
+  /**
+   * Gaussian peaks, intensities below 1 are set to 0 to create regions of interest
+   *
+   * @param peaks {center, sigma, height} per peak
+   */
+  private static double[] chromatogram(int n, double[]... peaks) {
+    final double[] y = new double[n];
+    for (int i = 0; i < n; i++) {
+      for (double[] peak : peaks) {
+        y[i] += peak[2] * Math.exp(-0.5 * Math.pow((i - peak[0]) / peak[1], 2));
+      }
+      if (y[i] < 1d) {
+        y[i] = 0d;
+      }
+    }
+    return y;
+  }
+
+  private static double mexicanHat(double t, int scale) {
+    return 2d / (Math.sqrt(3d * scale) * Math.pow(Math.PI, 0.25)) * (1 - t * t) * Math.exp(
+        -t * t / 2);
+  }
+
+  @Test
+  void testScalesLikeXcms() {
+    final int[] scales = CentWaveDetector.scales(0.1, 1.0, 0.01);
+    Assertions.assertEquals(5, scales[0]);
+    Assertions.assertEquals(49, scales[scales.length - 1]);
+    Assertions.assertEquals(23, scales.length);
+
+    Assertions.assertArrayEquals(new int[]{5}, CentWaveDetector.scales(0.001, 0.1, 0.01));
+    Assertions.assertEquals(0, CentWaveDetector.scales(0.001, 0.01, 0.01).length);
+  }
+
+  @Test
+  void testMexicanHatKernel() {
+    final double[] kernel = CentWaveDetector.mexicanHat(4);
+    double sum = 0;
+    for (int i = 0; i < kernel.length; i++) {
+      sum += kernel[i];
+      Assertions.assertEquals(kernel[i], kernel[kernel.length - 1 - i], 1E-15);
+    }
+    Assertions.assertEquals(0d, sum, 1E-12);
+    Assertions.assertEquals(kernel.length / 2, indexOfMax(kernel));
+  }
+
+  @Test
+  void testCwtMatchesBruteForceConvolution() {
+    final Random random = new Random(7);
+    final int n = 300;
+    final double[] y = new double[n];
+    for (int i = 0; i < n; i++) {
+      y[i] = random.nextDouble() * 100;
+    }
+    // small scales are convolved directly, large scales use the FFT
+    final int[] scales = {1, 2, 3, 10, 25};
+    final double[][] coefficients = new CentWaveDetector(scales).cwt(y, n);
+
+    for (int s = 0; s < scales.length; s++) {
+      final int scale = scales[s];
+      final double[] kernel = CentWaveDetector.mexicanHat(scale);
+      final int half = kernel.length / 2;
+      double maxAbs = 0;
+      final double[] expected = new double[n];
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j < n; j++) {
+          if (scale < 4) {
+            expected[i] += Math.abs(j - i) <= half ? y[j] * kernel[j - i + half] : 0d;
+          } else {
+            // FFT uses the spectrum of the untruncated wavelet
+            expected[i] += y[j] * mexicanHat((j - i) / (double) scale, scale);
+          }
+        }
+        maxAbs = Math.max(maxAbs, Math.abs(expected[i]));
+      }
+      for (int i = 0; i < n; i++) {
+        Assertions.assertEquals(expected[i], coefficients[s][i], maxAbs * 1E-6,
+            "scale " + scale + " index " + i);
+      }
+    }
+  }
+
+  @Test
+  void testDetectsSeparatedPeaks() {
+    final double[] y = chromatogram(400, new double[]{100, 5, 1E5}, new double[]{250, 8, 5E4});
+    final CentWaveDetector detector = new CentWaveDetector(CentWaveDetector.scales(4, 40, 1));
+
+    final List<int[]> peaks = detector.detectPeaks(y, y.length, 10, false);
+    Assertions.assertEquals(2, peaks.size());
+    assertContains(peaks.get(0), 100, 5);
+    assertContains(peaks.get(1), 250, 8);
+  }
+
+  @Test
+  void testRawDataBoundsEndAtZeros() {
+    final double[] y = chromatogram(300, new double[]{150, 6, 1E5});
+    int first = 0;
+    while (y[first] == 0d) {
+      first++;
+    }
+    int last = y.length - 1;
+    while (y[last] == 0d) {
+      last--;
+    }
+
+    final CentWaveDetector detector = new CentWaveDetector(CentWaveDetector.scales(4, 40, 1));
+    final List<int[]> peaks = detector.detectPeaks(y, y.length, 10, true);
+    Assertions.assertEquals(1, peaks.size());
+    Assertions.assertEquals(first, peaks.get(0)[0]);
+    Assertions.assertEquals(last, peaks.get(0)[1]);
+  }
+
+  @Test
+  void testSignalBelowThreshold() {
+    // noise level is 1 for chromatograms without intensities outside of the peaks
+    final double[] y = chromatogram(200, new double[]{100, 5, 8});
+    final CentWaveDetector detector = new CentWaveDetector(CentWaveDetector.scales(4, 40, 1));
+    Assertions.assertTrue(detector.detectPeaks(y, y.length, 10, false).isEmpty());
+    Assertions.assertEquals(1, detector.detectPeaks(y, y.length, 3, false).size());
+  }
+
+  @Test
+  void testPeaksMatchXcms() throws IOException {
+    final double[][] chromatogram = readResource("chromatogram");
+    Assertions.assertNotNull(chromatogram);
+    final int n = chromatogram.length;
+    final double[] rt = new double[n];
+    final double[] y = new double[n];
+    for (int i = 0; i < n; i++) {
+      rt[i] = chromatogram[i][0];
+      y[i] = chromatogram[i][1];
+    }
+    final double scanInterval = (rt[n - 1] - rt[0]) / (n - 1);
+    final CentWaveDetector detector = new CentWaveDetector(
+        CentWaveDetector.scales(0.02, 0.3, scanInterval));
+
+    for (PeakIntegrationMethod method : PeakIntegrationMethod.values()) {
+      // rt, rtmin, rtmax (seconds), into, maxo
+      final double[][] expected = readResource("xcms_peaks_integrate" + method.getIndex());
+      Assumptions.assumeTrue(expected != null,
+          "No xcms peak table, run generate_xcms_reference.R");
+
+      final List<int[]> peaks = detector.detectPeaks(y, n, 10,
+          method == PeakIntegrationMethod.UseRawData);
+      Assertions.assertEquals(expected.length, peaks.size(), method.toString());
+      for (int p = 0; p < expected.length; p++) {
+        final int left = peaks.get(p)[0];
+        final int right = peaks.get(p)[1];
+        final String msg = method + " peak " + p + " (" + left + "-" + right + ")";
+
+        int apex = left;
+        double area = 0;
+        for (int i = left; i <= right; i++) {
+          apex = y[i] > y[apex] ? i : apex;
+          area += y[i];
+        }
+        // xcms integrates the intensities times the scan interval in seconds
+        area *= scanInterval * 60;
+
+        Assertions.assertEquals(nearestIndex(rt, expected[p][0] / 60), apex, 1, msg);
+        Assertions.assertEquals(nearestIndex(rt, expected[p][1] / 60), left, 2, msg);
+        Assertions.assertEquals(nearestIndex(rt, expected[p][2] / 60), right, 2, msg);
+        Assertions.assertEquals(expected[p][3], area, expected[p][3] * 0.05, msg);
+        Assertions.assertEquals(expected[p][4], y[apex], expected[p][4] * 1E-6, msg);
+      }
+    }
+  }
+
+  private static int nearestIndex(double[] values, double value) {
+    int nearest = 0;
+    for (int i = 1; i < values.length; i++) {
+      if (Math.abs(values[i] - value) < Math.abs(values[nearest] - value)) {
+        nearest = i;
+      }
+    }
+    return nearest;
+  }
+
+  /**
+   * @return the rows of a csv file with a header line or null if the resource does not exist
+   */
+  private static double[][] readResource(String name) throws IOException {
+    try (InputStream in = CentWaveDetectorTest.class.getClassLoader()
+        .getResourceAsStream("centwave/" + name + ".csv")) {
+      if (in == null) {
+        return null;
+      }
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().skip(1)
+          .map(String::trim).filter(line -> !line.isEmpty())
+          .map(line -> Arrays.stream(line.split(",")).mapToDouble(Double::parseDouble).toArray())
+          .toArray(double[][]::new);
+    }
+  }
+
+  private static void assertContains(int[] peak, int center, double sigma) {
+    Assertions.assertTrue(peak[0] < center && peak[1] > center,
+        "Peak " + peak[0] + "-" + peak[1] + " does not contain " + center);
+    Assertions.assertTrue(peak[0] >= center - 5 * sigma && peak[1] <= center + 5 * sigma,
+        "Peak " + peak[0] + "-" + peak[1] + " is too wide");
+  }
+
+  private static int indexOfMax(double[] values) {
+    int max = 0;
+    for (int i = 1; i < values.length; i++) {
+      if (values[i] > values[max]) {
+        max = i;
+      }
+    }
+    return max;
+  }
+}
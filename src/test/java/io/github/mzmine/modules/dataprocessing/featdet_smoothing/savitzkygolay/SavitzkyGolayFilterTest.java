@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_smoothing.savitzkygolay;
+
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SavitzkyGolayFilterTest {
+
+  /**
+   * Point-by-point convolution as reference
+   */
+  private static double[] convolvePointwise(double[] intensities, int numPoints,
+      double[] weights) {
+    final int fullWidth = weights.length;
+    final int halfWidth = (fullWidth - 1) / 2;
+    final double[] convolved = new double[numPoints];
+    for (int i = 0; i < numPoints; i++) {
+      double sum = 0.0;
+      final int k = i - halfWidth;
+      for (int j = Math.max(0, -k); j < Math.min(fullWidth, numPoints - k); j++) {
+        sum += intensities[k + j] * weights[j];
+      }
+      convolved[i] = sum;
+    }
+    return convolved;
+  }
+
+  @Test
+  void testWeightsAreCached() {
+    Assertions.assertSame(SavitzkyGolayFilter.getNormalizedWeights(7),
+        SavitzkyGolayFilter.getNormalizedWeights(7));
+    double sum = 0;
+    for (double w : SavitzkyGolayFilter.getNormalizedWeights(11)) {
+      sum += w;
+    }
+    Assertions.assertEquals(1d, sum, 1E-12);
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> SavitzkyGolayFilter.getNormalizedWeights(6));
+  }
+
+  @Test
+  void testConvolveIntoBuffer() {
+    final Random random = new Random(42);
+    final double[] intensities = new double[60];
+    for (int i = 0; i < intensities.length; i++) {
+      intensities[i] = random.nextDouble() * 1E5;
+    }
+    // buffer is longer than the data and contains old values
+    final double[] buffer = new double[80];
+    for (int width : new int[]{0, 5, 9, 25}) {
+      final double[] weights = SavitzkyGolayFilter.getNormalizedWeights(width);
+      // also fewer points than the filter width
+      for (int numPoints : new int[]{0, 3, 17, 60}) {
+        final double[] expected = convolvePointwise(intensities, numPoints, weights);
+        SavitzkyGolayFilter.convolve(intensities, numPoints, weights, buffer);
+        for (int i = 0; i < numPoints; i++) {
+          Assertions.assertEquals(expected[i], buffer[i], 0d);
+        }
+      }
+    }
+  }
+}
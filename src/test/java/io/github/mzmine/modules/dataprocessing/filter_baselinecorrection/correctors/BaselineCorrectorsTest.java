@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the native baseline correctors to straightforward reference implementations of the
+ * algorithms of the R packages (dense matrices, brute force windows and envelopes) and to stored
+ * outputs of the R packages. The R outputs are created by
+ * src/test/resources/baselinecorrection/generate_r_references.R from chromatogram.csv in the same
+ * folder.
+ */
+class BaselineCorrectorsTest {
+
+  private static final double EPSILON = 1E-9;
+
+  private static double[] chromatogram(long seed, int n) {
+    final Random random = new Random(seed);
+    final double[] y = new double[n];
+    for (int i = 0; i < n; i++) {
+      // drifting baseline, noise and a few peaks
+      y[i] = 1000 + 5 * i + 50 * random.nextDouble();
+      y[i] += 5000 * Math.exp(-Math.pow((i - n / 3d) / 3d, 2));
+      y[i] += 2000 * Math.exp(-Math.pow((i - 2 * n / 3d) / 5d, 2));
+    }
+    return y;
+  }
+
+  @Test
+  void testAsysmMatchesDenseSolution() {
+    final double[] y = chromatogram(1, 80);
+    final double lambda = 1E4;
+    final double p = 0.01;
+
+    final double[] expected = referenceAsysm(y, lambda, p);
+    final double[] actual = AsymmetryCorrector.asysm(y, lambda, p);
+    assertArrayEquals(expected, actual, 1E-6);
+
+    // the trend is below the peaks
+    Assertions.assertTrue(actual[80 / 3] < y[80 / 3] - 4000);
+    Assertions.assertTrue(actual[2 * 80 / 3] < y[2 * 80 / 3] - 1500);
+  }
+
+  @Test
+  void testAsysmKeepsLinearTrend() {
+    final double[] y = new double[50];
+    for (int i = 0; i < y.length; i++) {
+      y[i] = 100 + 3 * i;
+    }
+    assertArrayEquals(y, AsymmetryCorrector.asysm(y, 1E5, 0.01), 1E-6);
+  }
+
+  @Test
+  void testRollingBallMatchesBruteForce() {
+    final double[] y = chromatogram(2, 200);
+    for (int[] w : new int[][]{{0, 0}, {1, 0}, {7, 3}, {25, 10}, {300, 300}}) {
+      final double[] expected = referenceRollingBall(y, w[0], w[1]);
+      assertArrayEquals(expected, RollingBallCorrector.rollingBall(y, w[0], w[1]), EPSILON);
+    }
+  }
+
+  @Test
+  void testRollingBallRemovesNarrowPeaks() {
+    final double[] y = new double[100];
+    Arrays.fill(y, 10);
+    y[50] = 1000;
+    y[51] = 500;
+    final double[] baseline = RollingBallCorrector.rollingBall(y, 5, 3);
+    for (double v : baseline) {
+      Assertions.assertEquals(10, v, EPSILON);
+    }
+  }
+
+  @Test
+  void testRubberBandMatchesLowerEnvelope() {
+    final double[] y = chromatogram(3, 80);
+    for (double bend : new double[]{0, 500}) {
+      final double[] expected = referenceLowerEnvelope(y, bend);
+      assertArrayEquals(expected, RubberBandCorrector.rubberBand(y, 0, 0, false, bend), 1E-6);
+    }
+  }
+
+  @Test
+  void testRubberBandSplineStaysCloseToSupport() {
+    final double[] y = chromatogram(4, 120);
+    final double[] linear = RubberBandCorrector.rubberBand(y, 0, 0, false, 0);
+    final double[] spline = RubberBandCorrector.rubberBand(y, 0, 0, true, 0);
+    final double[] smoothed = RubberBandCorrector.rubberBand(y, 20, 10, true, 0);
+    Assertions.assertEquals(y.length, spline.length);
+    // the interpolating spline passes through the hull points (first and last point)
+    Assertions.assertEquals(linear[0], spline[0], 1E-6);
+    Assertions.assertEquals(linear[y.length - 1], spline[y.length - 1], 1E-6);
+    for (int i = 0; i < y.length; i++) {
+      Assertions.assertTrue(Double.isFinite(smoothed[i]));
+      Assertions.assertTrue(smoothed[i] < y[i] + 100, "index " + i);
+    }
+  }
+
+  @Test
+  void testLocMinApproxMatchesReference() {
+    final double[] y = chromatogram(5, 150);
+    for (int breaks : new int[]{1, 7, 20, 150}) {
+      final double[] expected = referenceLocMinApprox(y, breaks);
+      assertArrayEquals(expected, LocMinLoessCorrector.locMinLoess(y, false, 0, breaks, 0),
+          EPSILON);
+    }
+  }
+
+  @Test
+  void testLocMinLoessKeepsLinearMinima() {
+    // local linear LOESS reproduces a linear trend of the local minima
+    final double[] y = new double[200];
+    for (int i = 0; i < y.length; i++) {
+      y[i] = 100 + 2 * i + (i % 10 == 0 ? 0 : 50);
+    }
+    final double[] baseline = LocMinLoessCorrector.locMinLoess(y, true, 0.3, 20, 0);
+    for (int i = 0; i < y.length; i += 10) {
+      Assertions.assertEquals(y[i], baseline[i], 1E-6);
+    }
+  }
+
+  @Test
+  void testPeakDetectionRemovesPeaks() {
+    final double[] y = new double[300];
+    for (int i = 0; i < y.length; i++) {
+      y[i] = 100 + 5000 * Math.exp(-Math.pow((i - 100) / 4d, 2)) + 3000 * Math.exp(
+          -Math.pow((i - 200) / 6d, 2));
+    }
+    final double[] baseline = PeakDetectionCorrector.peakDetection(y, 3, 30, 2, 5, 0.5, 0, 1);
+    for (int i = 0; i < y.length; i++) {
+      Assertions.assertEquals(100, baseline[i], 1E-3, "index " + i);
+    }
+
+    final double[] decreasing = PeakDetectionCorrector.peakDetection(
+        chromatogram(6, 100), 2, 10, 2, 5, 0.1, 1, 1);
+    for (int i = 1; i < decreasing.length; i++) {
+      Assertions.assertTrue(decreasing[i] <= decreasing[i - 1]);
+    }
+  }
+
+  @Test
+  void testMovingMedian() {
+    final double[] y = chromatogram(7, 101);
+    for (int w : new int[]{0, 1, 4, 60}) {
+      final double[] actual = BaselineMath.movingMedian(y, w);
+      for (int i = 0; i < y.length; i++) {
+        final double[] window = Arrays.copyOfRange(y, Math.max(0, i - w),
+            Math.min(y.length, i + w + 1));
+        Arrays.sort(window);
+        final int m = window.length;
+        final double median =
+            m % 2 == 1 ? window[m / 2] : (window[m / 2 - 1] + window[m / 2]) / 2d;
+        Assertions.assertEquals(median, actual[i], EPSILON);
+      }
+    }
+  }
+
+  @Test
+  void testAsysmMatchesR() throws IOException {
+    assertMatchesR("asymmetry", AsymmetryCorrector.asysm(rChromatogram(), 1E5, 0.001), 1E-6);
+  }
+
+  @Test
+  void testRollingBallMatchesR() throws IOException {
+    assertMatchesR("rollingball", RollingBallCorrector.rollingBall(rChromatogram(), 20, 5),
+        EPSILON);
+  }
+
+  @Test
+  void testPeakDetectionMatchesR() throws IOException {
+    // the native peak detection approximates the R implementation
+    assertMatchesR("peakdetection",
+        PeakDetectionCorrector.peakDetection(rChromatogram(), 3, 30, 2, 5, 0.5, 0, 1), 1E-2);
+  }
+
+  @Test
+  void testRubberBandMatchesR() throws IOException {
+    final double[] y = rChromatogram();
+    assertMatchesR("rubberband", RubberBandCorrector.rubberBand(y, 0, 0, false, 0), 1E-6);
+    assertMatchesR("rubberband_bend", RubberBandCorrector.rubberBand(y, 0, 0, false, 5E4), 1E-6);
+    // Whittaker smoother instead of smooth.spline
+    assertMatchesR("rubberband_spline", RubberBandCorrector.rubberBand(y, 20, 30, true, 0),
+        5E-2);
+  }
+
+  @Test
+  void testLocMinLoessMatchesR() throws IOException {
+    final double[] y = rChromatogram();
+    assertMatchesR("locmin_approx", LocMinLoessCorrector.locMinLoess(y, false, 0, 30, 0),
+        EPSILON);
+    // R interpolates the loess surface on a kd tree, the native loess is computed at every point
+    assertMatchesR("locmin_loess", LocMinLoessCorrector.locMinLoess(y, true, 0.3, 30, 0), 1E-2);
+    assertMatchesR("locmin_loess_quantile",
+        LocMinLoessCorrector.locMinLoess(y, true, 0.3, 30, 0.2), 1E-2);
+  }
+
+  private static double[] rChromatogram() throws IOException {
+    final double[] y = readResource("chromatogram");
+    Assertions.assertNotNull(y);
+    return y;
+  }
+
+  /**
+   * Compares to a stored R output. Skips the test if the reference has not been generated.
+   * Undefined values of the R output (NA) are not compared.
+   */
+  private static void assertMatchesR(String name, double[] actual, double relTolerance)
+      throws IOException {
+    final double[] expected = readResource(name);
+    Assumptions.assumeTrue(expected != null,
+        "No R reference " + name + ".csv, run generate_r_references.R");
+    Assertions.assertEquals(expected.length, actual.length);
+    double max = 1;
+    for (double v : expected) {
+      if (!Double.isNaN(v)) {
+        max = Math.max(max, Math.abs(v));
+      }
+    }
+    for (int i = 0; i < expected.length; i++) {
+      if (!Double.isNaN(expected[i])) {
+        Assertions.assertEquals(expected[i], actual[i], relTolerance * max, name + " index " + i);
+      }
+    }
+  }
+
+  private static double[] readResource(String name) throws IOException {
+    try (InputStream in = BaselineCorrectorsTest.class.getClassLoader()
+        .getResourceAsStream("baselinecorrection/" + name + ".csv")) {
+      if (in == null) {
+        return null;
+      }
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().map(String::trim)
+          .filter(line -> !line.isEmpty()).mapToDouble(Double::parseDouble).toArray();
+    }
+  }
+
+  private static void assertArrayEquals(double[] expected, double[] actual, double relTolerance) {
+    Assertions.assertEquals(expected.length, actual.length);
+    double max = 1;
+    for (double v : expected) {
+      max = Math.max(max, Math.abs(v));
+    }
+    for (int i = 0; i < expected.length; i++) {
+      Assertions.assertEquals(expected[i], actual[i], relTolerance * max, "index " + i);
+    }
+  }
+
+  /**
+   * ptw::asysm with a dense linear system.
+   */
+  private static double[] referenceAsysm(double[] y, double lambda, double p) {
+    final int n = y.length;
+    final double[][] d = new double[n - 2][n];
+    for (int k = 0; k < n - 2; k++) {
+      d[k][k] = 1;
+      d[k][k + 1] = -2;
+      d[k][k + 2] = 1;
+    }
+    double[] w = new double[n];
+    Arrays.fill(w, 1);
+    double[] z = null;
+    for (int it = 0; it < 25; it++) {
+      final double[][] a = new double[n][n + 1];
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j < n; j++) {
+          double dd = 0;
+          for (int k = 0; k < n - 2; k++) {
+            dd += d[k][i] * d[k][j];
+          }
+          a[i][j] = lambda * dd + (i == j ? w[i] : 0);
+        }
+        a[i][n] = w[i] * y[i];
+      }
+      z = solve(a);
+      final double[] w0 = w;
+      w = new double[n];
+      for (int i = 0; i < n; i++) {
+        w[i] = y[i] > z[i] ? p : 1 - p;
+      }
+      if (Arrays.equals(w, w0)) {
+        break;
+      }
+    }
+    return z;
+  }
+
+  /**
+   * Gaussian elimination with partial pivoting of an augmented matrix.
+   */
+  private static double[] solve(double[][] a) {
+    final int n = a.length;
+    for (int col = 0; col < n; col++) {
+      int pivot = col;
+      for (int row = col + 1; row < n; row++) {
+        if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+          pivot = row;
+        }
+      }
+      final double[] tmp = a[col];
+      a[col] = a[pivot];
+      a[pivot] = tmp;
+      for (int row = col + 1; row < n; row++) {
+        final double f = a[row][col] / a[col][col];
+        for (int k = col; k <= n; k++) {
+          a[row][k] -= f * a[col][k];
+        }
+      }
+    }
+    final double[] x = new double[n];
+    for (int row = n - 1; row >= 0; row--) {
+      double sum = a[row][n];
+      for (int k = row + 1; k < n; k++) {
+        sum -= a[row][k] * x[k];
+      }
+      x[row] = sum / a[row][row];
+    }
+    return x;
+  }
+
+  private static double[] referenceRollingBall(double[] y, int wm, int ws) {
+    final int n = y.length;
+    final double[] t1 = new double[n];
+    final double[] t2 = new double[n];
+    final double[] t3 = new double[n];
+    for (int i = 0; i < n; i++) {
+      t1[i] = Double.POSITIVE_INFINITY;
+      for (int j = Math.max(0, i - wm); j <= Math.min(n - 1, i + wm); j++) {
+        t1[i] = Math.min(t1[i], y[j]);
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      t2[i] = Double.NEGATIVE_INFINITY;
+      for (int j = Math.max(0, i - wm); j <= Math.min(n - 1, i + wm); j++) {
+        t2[i] = Math.max(t2[i], t1[j]);
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      double sum = 0;
+      int count = 0;
+      for (int j = Math.max(0, i - ws); j <= Math.min(n - 1, i + ws); j++) {
+        sum += t2[j];
+        count++;
+      }
+      t3[i] = sum / count;
+    }
+    return t3;
+  }
+
+  /**
+   * The lower convex envelope: the lowest line through two points left and right of each point.
+   */
+  private static double[] referenceLowerEnvelope(double[] y, double bend) {
+    final int n = y.length;
+    final double[] b = new double[n];
+    final double[] bent = new double[n];
+    for (int i = 0; i < n; i++) {
+      final double x = i / (n - 1d);
+      b[i] = bend * x * x;
+      bent[i] = y[i] + b[i];
+    }
+    final double[] envelope = new double[n];
+    for (int i = 0; i < n; i++) {
+      double min = bent[i];
+      for (int a = 0; a <= i; a++) {
+        for (int c = i; c < n; c++) {
+          if (a == c) {
+            continue;
+          }
+          min = Math.min(min, bent[a] + (bent[c] - bent[a]) * (i - a) / (double) (c - a));
+        }
+      }
+      envelope[i] = min - b[i];
+    }
+    return envelope;
+  }
+
+  /**
+   * PROcess::bslnoff with method "approx" and qntl = 0: cut into breaks (right closed intervals
+   * over the extended range as cut in R), local minima, approx with rule = 2.
+   */
+  private static double[] referenceLocMinApprox(double[] y, int breaks) {
+    final int n = y.length;
+    final double dx = n - 1;
+    final double[] edges = new double[breaks + 1];
+    for (int b = 0; b <= breaks; b++) {
+      edges[b] = dx * b / breaks;
+    }
+    edges[0] -= dx / 1000;
+    edges[breaks] += dx / 1000;
+
+    final double[] knotX = new double[breaks];
+    final double[] knotY = new double[breaks];
+    int numKnots = 0;
+    for (int b = 0; b < breaks; b++) {
+      int minIndex = -1;
+      for (int i = 0; i < n; i++) {
+        if (i > edges[b] && i <= edges[b + 1] && (minIndex == -1 || y[i] < y[minIndex])) {
+          minIndex = i;
+        }
+      }
+      if (minIndex != -1) {
+        knotX[numKnots] = minIndex;
+        knotY[numKnots] = y[minIndex];
+        numKnots++;
+      }
+    }
+    final double[] baseline = new double[n];
+    for (int i = 0; i < n; i++) {
+      double value;
+      if (i <= knotX[0]) {
+        value = knotY[0];
+      } else if (i >= knotX[numKnots - 1]) {
+        value = knotY[numKnots - 1];
+      } else {
+        int k = 0;
+        while (knotX[k + 1] < i) {
+          k++;
+        }
+        value = knotY[k] + (knotY[k + 1] - knotY[k]) * (i - knotX[k]) / (knotX[k + 1] - knotX[k]);
+      }
+      baseline[i] = Math.min(value, y[i]);
+    }
+    return baseline;
+  }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_duplicatefilter;
+
+import static io.github.mzmine.datamodel.FeatureStatus.DETECTED;
+import static io.github.mzmine.datamodel.FeatureStatus.ESTIMATED;
+import static io.github.mzmine.datamodel.FeatureStatus.UNKNOWN;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.gui.preferences.NumOfThreadsParameter;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.filter_duplicatefilter.DuplicateFilterParameters.FilterMode;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.FeatureListRowSorter;
+import io.github.mzmine.util.SortingDirection;
+import io.github.mzmine.util.SortingProperty;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the duplicate filter in each mode and compares the result with the loops over all pairs of
+ * rows that the filter used before the sweep.
+ */
+class DuplicateFilterTaskTest {
+
+  private static final int NUM_SCANS = 100;
+  private static final int NUM_ROWS = 600;
+  private static final MZTolerance MZ_TOLERANCE = new MZTolerance(0.0005, 5);
+  private static final RTTolerance RT_TOLERANCE = new RTTolerance(0.05f, Unit.MINUTES);
+
+  @Test
+  void testOldAverageMatchesAllPairs() throws IOException {
+    assertFilterMatchesAllPairs(FilterMode.OLD_AVERAGE);
+  }
+
+  @Test
+  void testNewAverageMatchesAllPairs() throws IOException {
+    assertFilterMatchesAllPairs(FilterMode.NEW_AVERAGE);
+  }
+
+  @Test
+  void testSingleFeatureMatchesAllPairs() throws IOException {
+    assertFilterMatchesAllPairs(FilterMode.SINGLE_FEATURE);
+  }
+
+  private static void assertFilterMatchesAllPairs(FilterMode mode) throws IOException {
+    final ModularFeatureList expected = createFeatureList();
+    final int removed = allPairs(expected, mode);
+    // clusters of rows create many duplicates and chains of matches
+    Assertions.assertTrue(removed > NUM_ROWS / 4);
+
+    for (int threads : new int[]{1, 4}) {
+      final FeatureList filtered = filter(createFeatureList(), mode, threads);
+      assertSameRows(expected, filtered);
+    }
+  }
+
+  private static void assertSameRows(FeatureList expected, FeatureList actual) {
+    final Map<Integer, FeatureListRow> actualRows = actual.getRows().stream()
+        .collect(Collectors.toMap(FeatureListRow::getID, Function.identity()));
+    Assertions.assertEquals(expected.getNumberOfRows(), actualRows.size());
+    for (FeatureListRow e : expected.getRows()) {
+      final FeatureListRow a = actualRows.get(e.getID());
+      Assertions.assertNotNull(a, "Missing row " + e.getID());
+      Assertions.assertEquals(e.getAverageMZ(), a.getAverageMZ());
+      Assertions.assertEquals(e.getAverageRT(), a.getAverageRT());
+      for (RawDataFile file : expected.getRawDataFiles()) {
+        final Feature ef = e.getFeature(file);
+        final Feature af = a.getFeature(actual.getRawDataFiles().stream()
+            .filter(f -> f.getName().equals(file.getName())).findFirst().orElseThrow());
+        Assertions.assertEquals(ef == null, af == null);
+        if (ef != null) {
+          Assertions.assertEquals(ef.getFeatureStatus(), af.getFeatureStatus());
+          Assertions.assertEquals(ef.getHeight(), af.getHeight());
+          Assertions.assertEquals(ef.getRT(), af.getRT());
+        }
+      }
+    }
+  }
+
+  private static FeatureList filter(ModularFeatureList flist, FilterMode mode, int threads) {
+    final NumOfThreadsParameter numOfThreads = MZmineCore.getConfiguration().getPreferences()
+        .getParameter(MZminePreferences.numOfThreads);
+    final boolean automatic = numOfThreads.isAutomatic();
+    final Integer value = numOfThreads.getValue();
+    try {
+      numOfThreads.setAutomatic(false);
+      numOfThreads.setValue(threads);
+
+      final ParameterSet param = new DuplicateFilterParameters().cloneParameterSet();
+      param.setParameter(DuplicateFilterParameters.suffix, "dup");
+      param.setParameter(DuplicateFilterParameters.filterMode, mode);
+      param.setParameter(DuplicateFilterParameters.mzDifferenceMax, MZ_TOLERANCE);
+      param.setParameter(DuplicateFilterParameters.rtDifferenceMax, RT_TOLERANCE);
+      param.setParameter(DuplicateFilterParameters.mobilityDifferenceMax, false,
+          new MobilityTolerance(1f));
+      param.setParameter(DuplicateFilterParameters.requireSameIdentification, false);
+      param.setParameter(DuplicateFilterParameters.handleOriginal, OriginalFeatureListOption.KEEP);
+
+      final MZmineProjectImpl project = new MZmineProjectImpl();
+      final DuplicateFilterTask task = new DuplicateFilterTask(project, flist, param, null,
+          Instant.now());
+      task.run();
+      Assertions.assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+      Assertions.assertEquals(1, project.getCurrentFeatureLists().size());
+      return project.getCurrentFeatureLists().get(0);
+    } finally {
+      numOfThreads.setAutomatic(automatic);
+      numOfThreads.setValue(value);
+    }
+  }
+
+  /**
+   * The loops of the duplicate filter before the sweep. Duplicates are merged in the loop.
+   *
+   * @return the number of removed rows
+   */
+  private static int allPairs(ModularFeatureList flist, FilterMode mode) {
+    final ModularFeatureListRow[] rows = flist.getRows().toArray(ModularFeatureListRow[]::new);
+    final RawDataFile[] rawFiles = flist.getRawDataFiles().toArray(RawDataFile[]::new);
+    Arrays.sort(rows, mode == FilterMode.OLD_AVERAGE ? new FeatureListRowSorter(
+        SortingProperty.Area, SortingDirection.Descending)
+        : new FeatureListRowSorter(SortingProperty.MZ, SortingDirection.Ascending));
+
+    int removed = 0;
+    for (int first = 0; first < rows.length; first++) {
+      final ModularFeatureListRow firstRow = rows[first];
+      if (firstRow == null) {
+        continue;
+      }
+      double lowerMZ = Double.NEGATIVE_INFINITY;
+      double upperMZ = Double.POSITIVE_INFINITY;
+      if (mode == FilterMode.NEW_AVERAGE) {
+        final Range<Double> mzRange = MZ_TOLERANCE.getToleranceRange(firstRow.getAverageMZ());
+        lowerMZ = mzRange.lowerEndpoint();
+        upperMZ = mzRange.upperEndpoint();
+      } else if (mode == FilterMode.SINGLE_FEATURE) {
+        double minMZ = Double.MAX_VALUE;
+        double maxMZ = Double.NEGATIVE_INFINITY;
+        for (ModularFeature feature : firstRow.getFeatures()) {
+          final Double mz = feature.getMZ();
+          if (mz != null) {
+            minMZ = Math.min(minMZ, mz);
+            maxMZ = Math.max(maxMZ, mz);
+          }
+        }
+        lowerMZ = MZ_TOLERANCE.getToleranceRange(minMZ).lowerEndpoint();
+        upperMZ = MZ_TOLERANCE.getToleranceRange(maxMZ).upperEndpoint();
+      }
+
+      for (int second = first + 1; second < rows.length; second++) {
+        final ModularFeatureListRow secondRow = rows[second];
+        if (secondRow == null) {
+          continue;
+        }
+        final boolean duplicate;
+        if (mode == FilterMode.OLD_AVERAGE) {
+          duplicate = MZ_TOLERANCE.checkWithinTolerance(firstRow.getAverageMZ(),
+              secondRow.getAverageMZ()) && RT_TOLERANCE.checkWithinTolerance(
+              firstRow.getAverageRT(), secondRow.getAverageRT());
+        } else {
+          final double mz2 = secondRow.getAverageMZ();
+          if (mz2 < lowerMZ) {
+            continue;
+          }
+          if (mz2 > upperMZ) {
+            break;
+          }
+          duplicate = mode == FilterMode.NEW_AVERAGE ? RT_TOLERANCE.checkWithinTolerance(
+              firstRow.getAverageRT(), secondRow.getAverageRT())
+              : hasSameFeature(rawFiles, firstRow, secondRow);
+        }
+
+        if (duplicate) {
+          if (mode != FilterMode.OLD_AVERAGE) {
+            mergeIntoFirstRow(flist, rawFiles, firstRow, secondRow);
+          }
+          removed++;
+          rows[second] = null;
+        }
+      }
+    }
+    flist.setRows(
+        Arrays.stream(rows).filter(Objects::nonNull).toArray(ModularFeatureListRow[]::new));
+    return removed;
+  }
+
+  private static boolean hasSameFeature(RawDataFile[] rawFiles, FeatureListRow firstRow,
+      FeatureListRow secondRow) {
+    for (RawDataFile raw : rawFiles) {
+      final Feature f1 = firstRow.getFeature(raw);
+      final Feature f2 = secondRow.getFeature(raw);
+      if (f1 != null && f2 != null && MZ_TOLERANCE.checkWithinTolerance(f1.getMZ(), f2.getMZ())
+          && RT_TOLERANCE.checkWithinTolerance(f1.getRT(), f2.getRT())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void mergeIntoFirstRow(ModularFeatureList flist, RawDataFile[] rawFiles,
+      FeatureListRow firstRow, FeatureListRow secondRow) {
+    for (RawDataFile raw : rawFiles) {
+      final Feature f2 = secondRow.getFeature(raw);
+      if (f2 == null) {
+        continue;
+      }
+      final Feature f1 = firstRow.getFeature(raw);
+      final FeatureStatus status1 = f1 != null ? f1.getFeatureStatus() : UNKNOWN;
+      if ((f2.getFeatureStatus() == DETECTED && (status1 != DETECTED
+          || f1.getHeight() < f2.getHeight())) || (f2.getFeatureStatus() == ESTIMATED && (
+          status1 == UNKNOWN || (status1 == ESTIMATED && f1.getHeight() < f2.getHeight())))) {
+        firstRow.addFeature(raw, new ModularFeature(flist, f2));
+      }
+    }
+  }
+
+  /**
+   * Clusters of rows with close m/z and RT in two files. Some rows only have estimated features or
+   * miss a file, so merging changes the features and the average RT of rows.
+   */
+  private static ModularFeatureList createFeatureList() throws IOException {
+    final List<RawDataFile> files = new ArrayList<>();
+    final List<List<Scan>> fileScans = new ArrayList<>();
+    for (int f = 0; f < 2; f++) {
+      final RawDataFile file = new RawDataFileImpl("duplicates" + f, null, null);
+      final List<Scan> scans = new ArrayList<>();
+      for (int i = 0; i < NUM_SCANS; i++) {
+        final Scan scan = new SimpleScan(file, i, 1, 0.02f * i, null, new double[]{100d},
+            new double[]{1d}, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "",
+            Range.closed(0d, 1000d));
+        file.addScan(scan);
+        scans.add(scan);
+      }
+      files.add(file);
+      fileScans.add(scans);
+    }
+
+    final ModularFeatureList flist = new ModularFeatureList("duplicates", null, files);
+    for (int f = 0; f < files.size(); f++) {
+      flist.setSelectedScans(files.get(f), fileScans.get(f));
+    }
+    final Random random = new Random(41);
+    for (int r = 0; r < NUM_ROWS; r++) {
+      final double baseMz = 100 + random.nextInt(60) * 0.05;
+      final double mz = baseMz + random.nextGaussian() * baseMz * 3 / 1E6;
+      final int apex = 10 + random.nextInt(4) * 20 + random.nextInt(4);
+      final ModularFeatureListRow row = new ModularFeatureListRow(flist, r + 1);
+      for (int f = 0; f < files.size(); f++) {
+        if (f > 0 && random.nextInt(4) == 0) {
+          continue;
+        }
+        final int fileApex = apex + random.nextInt(3) - 1;
+        final double height = 1E4 + random.nextInt(1000) * 100;
+        final List<Scan> scans = fileScans.get(f).subList(fileApex - 3, fileApex + 4);
+        final double[] mzs = new double[scans.size()];
+        final double[] intensities = new double[scans.size()];
+        for (int i = 0; i < scans.size(); i++) {
+          mzs[i] = mz + f * 0.0001;
+          intensities[i] = height * Math.exp(-Math.pow(i - 3, 2) / 2d);
+        }
+        final FeatureStatus status = random.nextInt(3) == 0 ? ESTIMATED : DETECTED;
+        row.addFeature(files.get(f), new ModularFeature(flist, files.get(f),
+            new SimpleIonTimeSeries(null, mzs, intensities, scans), status));
+      }
+      flist.addRow(row);
+    }
+    return flist;
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_duplicatefilter;
+
+import io.github.mzmine.modules.dataprocessing.filter_duplicatefilter.DuplicateRowSweep.RowMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the sweep with comparing all pairs of rows like the duplicate filter did before
+ */
+class DuplicateRowSweepTest {
+
+  private static final double PPM = 10;
+  private static final float RT_TOLERANCE = 0.05f;
+
+  /**
+   * Random rows with clusters of close m/z and RT to create many duplicates and chains
+   */
+  private static double[] randomMzs(Random random, int n) {
+    final double[] mzs = new double[n];
+    for (int i = 0; i < n; i++) {
+      final double base = 100 + random.nextInt(n / 4 + 1) * 0.01;
+      mzs[i] = base + random.nextGaussian() * base * PPM / 1E6;
+    }
+    return mzs;
+  }
+
+  private static float[] randomRts(Random random, int n) {
+    final float[] rts = new float[n];
+    for (int i = 0; i < n; i++) {
+      rts[i] = random.nextInt(5) + (float) random.nextGaussian() * RT_TOLERANCE;
+    }
+    return rts;
+  }
+
+  private static double lower(double mz) {
+    return mz - mz * PPM / 1E6;
+  }
+
+  private static double upper(double mz) {
+    return mz + mz * PPM / 1E6;
+  }
+
+  private static boolean inWindow(double[] lowers, double[] uppers, double[] mzs, int first,
+      int second) {
+    return mzs[second] >= lowers[first] && mzs[second] <= uppers[first];
+  }
+
+  /**
+   * The old average filter: rows in priority order, all pairs
+   */
+  private static boolean[] allPairsPriorityOrder(double[] mzs, double[] lowers, double[] uppers,
+      RowMatcher matcher) {
+    final boolean[] duplicates = new boolean[mzs.length];
+    for (int first = 0; first < mzs.length; first++) {
+      if (duplicates[first]) {
+        continue;
+      }
+      for (int second = first + 1; second < mzs.length; second++) {
+        if (!duplicates[second] && matcher.isDuplicate(first, second)) {
+          duplicates[second] = true;
+          matcher.onDuplicate(first, second);
+        }
+      }
+    }
+    return duplicates;
+  }
+
+  /**
+   * The merging filters: rows sorted by m/z, loop stops above the m/z window
+   */
+  private static boolean[] allPairsMzOrder(double[] mzs, double[] lowers, double[] uppers,
+      RowMatcher matcher) {
+    final boolean[] duplicates = new boolean[mzs.length];
+    for (int first = 0; first < mzs.length; first++) {
+      if (duplicates[first]) {
+        continue;
+      }
+      for (int second = first + 1; second < mzs.length; second++) {
+        if (duplicates[second]) {
+          continue;
+        }
+        if (mzs[second] < lowers[first]) {
+          continue;
+        }
+        if (mzs[second] > uppers[first]) {
+          break;
+        }
+        if (matcher.isDuplicate(first, second)) {
+          duplicates[second] = true;
+          matcher.onDuplicate(first, second);
+        }
+      }
+    }
+    return duplicates;
+  }
+
+  @Test
+  void testPriorityOrderMatchesAllPairs() {
+    final Random random = new Random(1);
+    for (int run = 0; run < 20; run++) {
+      final int n = 50 + random.nextInt(2000);
+      final double[] mzs = randomMzs(random, n);
+      final float[] rts = randomRts(random, n);
+      final double[] lowers = Arrays.stream(mzs).map(DuplicateRowSweepTest::lower).toArray();
+      final double[] uppers = Arrays.stream(mzs).map(DuplicateRowSweepTest::upper).toArray();
+      final RowMatcher matcher = (first, second) ->
+          inWindow(lowers, uppers, mzs, first, second)
+          && Math.abs(rts[first] - rts[second]) <= RT_TOLERANCE;
+
+      final boolean[] expected = allPairsPriorityOrder(mzs, lowers, uppers, matcher);
+      for (int threads : new int[]{1, 4}) {
+        final boolean[] duplicates = new DuplicateRowSweep(mzs, lowers, uppers, matcher, threads,
+            () -> false).filterInPriorityOrder();
+        Assertions.assertArrayEquals(expected, duplicates);
+      }
+    }
+  }
+
+  @Test
+  void testMzOrderWithMergingMatchesAllPairs() {
+    final Random random = new Random(2);
+    for (int run = 0; run < 20; run++) {
+      final int n = 50 + random.nextInt(2000);
+      final double[] mzs = randomMzs(random, n);
+      Arrays.sort(mzs);
+      final float[] initialRts = randomRts(random, n);
+      // windows of different widths like the feature m/z ranges, some rows without features
+      final double[] lowers = new double[n];
+      final double[] uppers = new double[n];
+      for (int i = 0; i < n; i++) {
+        if (random.nextInt(50) == 0) {
+          lowers[i] = Double.MAX_VALUE;
+          uppers[i] = Double.NEGATIVE_INFINITY;
+        } else {
+          final double spread = random.nextDouble() * 0.002;
+          lowers[i] = lower(mzs[i] - spread);
+          uppers[i] = upper(mzs[i] + spread);
+        }
+      }
+
+      // rows are merged in the loop, following comparisons see the merged RT
+      final MergingMatcher expectedMatcher = new MergingMatcher(mzs, lowers, uppers, initialRts);
+      final boolean[] expected = allPairsMzOrder(mzs, lowers, uppers, expectedMatcher);
+
+      for (int threads : new int[]{1, 4}) {
+        final MergingMatcher matcher = new MergingMatcher(mzs, lowers, uppers, initialRts);
+        final boolean[] duplicates = new DuplicateRowSweep(mzs, lowers, uppers, matcher, threads,
+            () -> false).filterInMzOrder();
+        Assertions.assertArrayEquals(expected, duplicates);
+        Assertions.assertArrayEquals(expectedMatcher.rts, matcher.rts);
+        Assertions.assertEquals(expectedMatcher.merged, matcher.merged);
+        Assertions.assertEquals(Set.of(Thread.currentThread()), matcher.threads);
+      }
+    }
+  }
+
+  @Test
+  void testBlocks() {
+    final double[] mzs = {100, 100.001, 100.5, 200, 200.0005};
+    final double[] lowers = {99.999, 100, 100.499, 199.999, 200};
+    final double[] uppers = {100.001, 100.002, 100.501, 200.001, 200.001};
+    final List<int[]> blocks = DuplicateRowSweep.findBlocks(mzs, lowers, uppers,
+        IntStream.range(0, mzs.length).toArray());
+    Assertions.assertEquals(3, blocks.size());
+    Assertions.assertArrayEquals(new int[]{0, 1}, blocks.get(0));
+    Assertions.assertArrayEquals(new int[]{2}, blocks.get(1));
+    Assertions.assertArrayEquals(new int[]{3, 4}, blocks.get(2));
+  }
+
+  @Test
+  void testCanceled() {
+    final double[] mzs = {100, 100};
+    Assertions.assertNull(
+        new DuplicateRowSweep(mzs, mzs, mzs, (first, second) -> true, 1, () -> true)
+            .filterInPriorityOrder());
+  }
+
+  /**
+   * Merging changes the RT of the first row like the consensus rows of the duplicate filter.
+   * Records the threads that compare and merge rows.
+   */
+  private static class MergingMatcher implements RowMatcher {
+
+    private final double[] mzs;
+    private final double[] lowers;
+    private final double[] uppers;
+    private final float[] rts;
+    // merged rows for each first row in merge order
+    private final List<List<Integer>> merged = new ArrayList<>();
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    private MergingMatcher(double[] mzs, double[] lowers, double[] uppers, float[] rts) {
+      this.mzs = mzs;
+      this.lowers = lowers;
+      this.uppers = uppers;
+      this.rts = rts.clone();
+      for (int i = 0; i < mzs.length; i++) {
+        merged.add(new ArrayList<>());
+      }
+    }
+
+    @Override
+    public boolean isDuplicate(int first, int second) {
+      threads.add(Thread.currentThread());
+      return inWindow(lowers, uppers, mzs, first, second)
+          && Math.abs(rts[first] - rts[second]) <= RT_TOLERANCE;
+    }
+
+    @Override
+    public void onDuplicate(int first, int second) {
+      threads.add(Thread.currentThread());
+      rts[first] = (rts[first] + rts[second]) / 2f;
+      merged.get(first).add(second);
+    }
+
+    @Override
+    public boolean mergesRows() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_isotopefinder;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.IMSRawDataFile;
+import io.github.mzmine.datamodel.IsotopePattern;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.MobilityScan;
+import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.BinningMobilogramDataAccess;
+import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
+import io.github.mzmine.datamodel.featuredata.impl.IonMobilogramTimeSeriesFactory;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilitySeries;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.impl.BuildingMobilityScan;
+import io.github.mzmine.datamodel.impl.MultiChargeStateIsotopePattern;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.gui.preferences.NumOfThreadsParameter;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.filter_isotopefinder.IsotopeFinderParameters.ScanRange;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.Element;
+
+/**
+ * Runs the isotope finder with the scan sweep and compares the isotope patterns and charges with
+ * the processing of the rows in feature list order.
+ */
+class IsotopeFinderTaskTest {
+
+  private static final double C13_DIFF = 1.0033548;
+  private static final double CL37_DIFF = 1.9970499;
+  /**
+   * m/z differences (for charge 1) and relative intensities of the isotope signals. The last signal
+   * is only added to chlorine compounds.
+   */
+  private static final double[] ISOTOPE_DIFFS = {0d, C13_DIFF, 2 * C13_DIFF, CL37_DIFF};
+  private static final double[] ISOTOPE_RATIOS = {1d, 0.55d, 0.18d, 0.32d};
+  private static final double[] SHAPE = {1d, 0.6d, 0.25d};
+  private static final int NUM_SCANS = 60;
+  private static final int NUM_FRAMES = 40;
+  private static final int NUM_MOBILITY_SCANS = 20;
+  // enough features for multiple blocks of the sweep
+  private static final int NUM_COMPOUNDS = 900;
+
+  @Test
+  void testSweepMatchesRowOrder() throws IOException {
+    final List<Compound> compounds = createCompounds(new Random(7), NUM_SCANS, 1);
+    final RawDataFile raw = createRawDataFile(compounds, new Random(8));
+    assertSweepMatchesRowOrder(raw, compounds);
+  }
+
+  @Test
+  void testSweepMatchesRowOrderIms() throws IOException {
+    final List<Compound> compounds = createCompounds(new Random(9), NUM_FRAMES,
+        NUM_MOBILITY_SCANS);
+    final IMSRawDataFile raw = createImsRawDataFile(compounds, new Random(10));
+    assertSweepMatchesRowOrder(raw, compounds);
+  }
+
+  private static void assertSweepMatchesRowOrder(RawDataFile raw, List<Compound> compounds) {
+    final ModularFeatureList expected = findIsotopes(createFeatureList(raw, compounds), false, 1);
+    final long patterns = expected.getRows().stream()
+        .filter(row -> row.getBestFeature().getIsotopePattern() != null).count();
+    Assertions.assertTrue(patterns > expected.getNumberOfRows() * 0.9,
+        "Only " + patterns + " isotope patterns");
+    for (int charge = 1; charge <= 3; charge++) {
+      final int c = charge;
+      Assertions.assertTrue(expected.getRows().stream()
+          .anyMatch(row -> Integer.valueOf(c).equals(row.getBestFeature().getCharge())));
+    }
+
+    for (int threads : new int[]{1, 4}) {
+      final ModularFeatureList actual = findIsotopes(createFeatureList(raw, compounds), true,
+          threads);
+      assertSamePatterns(expected, actual);
+    }
+  }
+
+  private static void assertSamePatterns(ModularFeatureList expected, ModularFeatureList actual) {
+    Assertions.assertEquals(expected.getNumberOfRows(), actual.getNumberOfRows());
+    for (int i = 0; i < expected.getNumberOfRows(); i++) {
+      final FeatureListRow expectedRow = expected.getRow(i);
+      final FeatureListRow actualRow = actual.getRow(i);
+      Assertions.assertEquals(expectedRow.getID(), actualRow.getID());
+      final Feature e = expectedRow.getBestFeature();
+      final Feature a = actualRow.getBestFeature();
+      final String message = "Row " + expectedRow.getID();
+      Assertions.assertEquals(e.getCharge(), a.getCharge(), message);
+      Assertions.assertEquals(e.getCCS(), a.getCCS(), message);
+      assertSamePattern(e.getIsotopePattern(), a.getIsotopePattern(), message);
+    }
+  }
+
+  private static void assertSamePattern(IsotopePattern expected, IsotopePattern actual,
+      String message) {
+    if (expected == null) {
+      Assertions.assertNull(actual, message);
+      return;
+    }
+    Assertions.assertNotNull(actual, message);
+    Assertions.assertEquals(expected.getClass(), actual.getClass(), message);
+    Assertions.assertEquals(expected.getCharge(), actual.getCharge(), message);
+    Assertions.assertArrayEquals(expected.getMzValues(new double[expected.getNumberOfDataPoints()]),
+        actual.getMzValues(new double[actual.getNumberOfDataPoints()]), message);
+    Assertions.assertArrayEquals(
+        expected.getIntensityValues(new double[expected.getNumberOfDataPoints()]),
+        actual.getIntensityValues(new double[actual.getNumberOfDataPoints()]), message);
+    if (expected instanceof MultiChargeStateIsotopePattern multi) {
+      final List<IsotopePattern> actualPatterns = ((MultiChargeStateIsotopePattern) actual)
+          .getPatterns();
+      Assertions.assertEquals(multi.getPatterns().size(), actualPatterns.size(), message);
+      for (int i = 0; i < actualPatterns.size(); i++) {
+        assertSamePattern(multi.getPatterns().get(i), actualPatterns.get(i), message);
+      }
+    }
+  }
+
+  private static ModularFeatureList findIsotopes(ModularFeatureList flist, boolean scanSweep,
+      int threads) {
+    final NumOfThreadsParameter numOfThreads = MZmineCore.getConfiguration().getPreferences()
+        .getParameter(MZminePreferences.numOfThreads);
+    final boolean automatic = numOfThreads.isAutomatic();
+    final Integer value = numOfThreads.getValue();
+    try {
+      numOfThreads.setAutomatic(false);
+      numOfThreads.setValue(threads);
+
+      final ParameterSet param = new IsotopeFinderParameters().cloneParameterSet();
+      param.setParameter(IsotopeFinderParameters.elements,
+          List.of(new Element("H"), new Element("C"), new Element("Cl")));
+      param.setParameter(IsotopeFinderParameters.isotopeMzTolerance, new MZTolerance(0.0005, 10));
+      param.setParameter(IsotopeFinderParameters.maxCharge, 3);
+      param.setParameter(IsotopeFinderParameters.scanRange, ScanRange.SINGLE_MOST_INTENSE);
+      param.setParameter(IsotopeFinderParameters.scanSweep, scanSweep);
+
+      final IsotopeFinderTask task = new IsotopeFinderTask(new MZmineProjectImpl(), flist, param,
+          Instant.now());
+      task.run();
+      Assertions.assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+      return flist;
+    } finally {
+      numOfThreads.setAutomatic(automatic);
+      numOfThreads.setValue(value);
+    }
+  }
+
+  /**
+   * Features of the mono isotopic signal and of the second isotope signal of some compounds. The
+   * rows are not sorted by scan.
+   */
+  private static ModularFeatureList createFeatureList(RawDataFile raw, List<Compound> compounds) {
+    final ModularFeatureList flist = new ModularFeatureList("flist", null, raw);
+    flist.setSelectedScans(raw, raw.getScans());
+
+    final List<ModularFeature> features = new ArrayList<>();
+    for (int c = 0; c < compounds.size(); c++) {
+      final Compound compound = compounds.get(c);
+      features.add(createFeature(flist, raw, compound, 0));
+      if (c % 3 == 0) {
+        // the mono isotopic signal precedes the feature
+        features.add(createFeature(flist, raw, compound, 1));
+      }
+    }
+    Collections.shuffle(features, new Random(11));
+
+    for (int i = 0; i < features.size(); i++) {
+      final ModularFeatureListRow row = new ModularFeatureListRow(flist, i + 1);
+      row.addFeature(raw, features.get(i));
+      flist.addRow(row);
+    }
+    return flist;
+  }
+
+  private static ModularFeature createFeature(ModularFeatureList flist, RawDataFile raw,
+      Compound compound, int isotope) {
+    final double mz = compound.isotopeMz(isotope);
+    final int from = Math.max(0, compound.apex() - 2);
+    final int to = Math.min(raw.getNumOfScans() - 1, compound.apex() + 2);
+
+    if (!(raw instanceof IMSRawDataFile imsFile)) {
+      final List<Scan> scans = new ArrayList<>();
+      final double[] mzs = new double[to - from + 1];
+      final double[] intensities = new double[mzs.length];
+      for (int s = from; s <= to; s++) {
+        scans.add(raw.getScan(s));
+        mzs[s - from] = mz;
+        intensities[s - from] = compound.intensity(isotope, s, -1);
+      }
+      return new ModularFeature(flist, raw, new SimpleIonTimeSeries(null, mzs, intensities, scans),
+          FeatureStatus.DETECTED);
+    }
+
+    final List<IonMobilitySeries> mobilograms = new ArrayList<>();
+    final int fromMobilityScan = Math.max(0, compound.apexMobilityScan() - 2);
+    final int toMobilityScan = Math.min(NUM_MOBILITY_SCANS - 1,
+        compound.apexMobilityScan() + 2);
+    for (int f = from; f <= to; f++) {
+      final Frame frame = imsFile.getFrame(f);
+      final List<MobilityScan> mobilityScans = new ArrayList<>();
+      final double[] mzs = new double[toMobilityScan - fromMobilityScan + 1];
+      final double[] intensities = new double[mzs.length];
+      for (int m = fromMobilityScan; m <= toMobilityScan; m++) {
+        mobilityScans.add(frame.getMobilityScan(m));
+        mzs[m - fromMobilityScan] = mz;
+        intensities[m - fromMobilityScan] = compound.intensity(isotope, f, m);
+      }
+      mobilograms.add(new SimpleIonMobilitySeries(null, mzs, intensities, mobilityScans));
+    }
+    return new ModularFeature(flist, raw, IonMobilogramTimeSeriesFactory.of(null, mobilograms,
+        new BinningMobilogramDataAccess(imsFile, 1)), FeatureStatus.DETECTED);
+  }
+
+  private static RawDataFile createRawDataFile(List<Compound> compounds, Random random)
+      throws IOException {
+    final RawDataFile raw = new RawDataFileImpl("isotopes", null, null);
+    for (int s = 0; s < NUM_SCANS; s++) {
+      final double[][] data = createSpectrum(compounds, s, -1, random);
+      final SimpleScan scan = new SimpleScan(raw, s, 1, s * 0.05f, null, data[0], data[1],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d));
+      scan.addMassList(new SimpleMassList(null, data[0], data[1]));
+      raw.addScan(scan);
+    }
+    return raw;
+  }
+
+  private static IMSRawDataFile createImsRawDataFile(List<Compound> compounds, Random random)
+      throws IOException {
+    final IMSRawDataFile raw = new IMSRawDataFileImpl("ims isotopes", null, null, Color.BLACK);
+    final double[] mobilities = new double[NUM_MOBILITY_SCANS];
+    for (int m = 0; m < NUM_MOBILITY_SCANS; m++) {
+      mobilities[m] = 1.6d - m * 0.04d;
+    }
+
+    for (int f = 0; f < NUM_FRAMES; f++) {
+      final List<BuildingMobilityScan> mobilityScans = new ArrayList<>();
+      for (int m = 0; m < NUM_MOBILITY_SCANS; m++) {
+        final double[][] data = createSpectrum(compounds, f, m, random);
+        mobilityScans.add(new BuildingMobilityScan(m, data[0], data[1]));
+      }
+      // the frame contains the compound signals without noise
+      final double[][] data = createSpectrum(compounds, f, -1, null);
+      final SimpleFrame frame = new SimpleFrame(raw, f, 1, f * 0.05f, data[0], data[1],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d),
+          MobilityType.TIMS, null, null);
+      frame.setMobilities(mobilities);
+      frame.setMobilityScans(mobilityScans, true);
+      frame.addMassList(new SimpleMassList(null, data[0], data[1]));
+      raw.addScan(frame);
+    }
+    return raw;
+  }
+
+  /**
+   * @param mobilityScan the mobility scan or -1 for scans and frames
+   * @param random       adds noise signals, no noise if null
+   * @return the sorted m/z and intensity values
+   */
+  private static double[][] createSpectrum(List<Compound> compounds, int scan, int mobilityScan,
+      Random random) {
+    final List<double[]> signals = new ArrayList<>();
+    for (Compound compound : compounds) {
+      if (Math.abs(compound.apex() - scan) > 2 || (mobilityScan >= 0
+          && Math.abs(compound.apexMobilityScan() - mobilityScan) > 2)) {
+        continue;
+      }
+      for (int i = 0; i < compound.numIsotopes(); i++) {
+        signals.add(new double[]{compound.isotopeMz(i), compound.intensity(i, scan, mobilityScan)});
+      }
+    }
+    if (random != null) {
+      final int noise = 10 + random.nextInt(20);
+      for (int i = 0; i < noise; i++) {
+        signals.add(new double[]{100d + random.nextDouble() * 900d, 100d + random.nextInt(500)});
+      }
+    }
+    signals.sort(Comparator.comparingDouble(signal -> signal[0]));
+    return new double[][]{signals.stream().mapToDouble(signal -> signal[0]).toArray(),
+        signals.stream().mapToDouble(signal -> signal[1]).toArray()};
+  }
+
+  /**
+   * @param mobilityScans number of mobility scans or 1 without ion mobility
+   */
+  private static List<Compound> createCompounds(Random random, int scans, int mobilityScans) {
+    final List<Compound> compounds = new ArrayList<>();
+    for (int i = 0; i < NUM_COMPOUNDS; i++) {
+      compounds.add(new Compound(150d + random.nextDouble() * 800d, 1 + random.nextInt(3),
+          1000d + random.nextDouble() * 1E5, random.nextInt(scans),
+          random.nextInt(mobilityScans), random.nextInt(4) == 0));
+    }
+    return compounds;
+  }
+
+  /**
+   * @param apex             index of the most intense scan
+   * @param apexMobilityScan index of the most intense mobility scan
+   */
+  private record Compound(double mz, int charge, double height, int apex, int apexMobilityScan,
+                          boolean chlorine) {
+
+    int numIsotopes() {
+      return chlorine ? ISOTOPE_DIFFS.length : ISOTOPE_DIFFS.length - 1;
+    }
+
+    double isotopeMz(int isotope) {
+      return mz + ISOTOPE_DIFFS[isotope] / charge;
+    }
+
+    /**
+     * @param mobilityScan the mobility scan or -1 for scans and frames
+     */
+    double intensity(int isotope, int scan, int mobilityScan) {
+      final double intensity = height * ISOTOPE_RATIOS[isotope] * SHAPE[Math.abs(apex - scan)];
+      return mobilityScan < 0 ? intensity
+          : intensity * SHAPE[Math.abs(apexMobilityScan - mobilityScan)];
+    }
+  }
+}
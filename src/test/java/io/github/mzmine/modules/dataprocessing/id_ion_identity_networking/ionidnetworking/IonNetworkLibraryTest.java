@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.identities.iontype.IonIdentity;
+import io.github.mzmine.datamodel.identities.iontype.IonModification;
+import io.github.mzmine.datamodel.identities.iontype.IonModificationType;
+import io.github.mzmine.datamodel.identities.iontype.IonType;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking.IonNetworkLibrary.CheckMode;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares {@link IonNetworkLibrary#findAdducts} with the loop over all pairs of ion types that
+ * was used before the {@link IonTypeDeltaTable}.
+ */
+class IonNetworkLibraryTest {
+
+  private static final MZTolerance MZ_TOL = new MZTolerance(0.002, 5);
+  private static final double MIN_HEIGHT = 1000d;
+  private static final int NUM_COMPOUNDS = 25;
+
+  private final IonNetworkLibrary library = new IonNetworkLibrary(MZ_TOL, 2, true, 2,
+      new IonModification[]{IonModification.H, IonModification.NA, IonModification.NH4,
+          IonModification.K, IonModification.CA, IonModification.NA_H},
+      new IonModification[]{IonModification.H2O, IonModification.NH3});
+
+  @Test
+  void testAverageMatchesAllPairs() throws IOException {
+    assertFindAdductsMatchesAllPairs(CheckMode.AVGERAGE);
+  }
+
+  @Test
+  void testOneFeatureMatchesAllPairs() throws IOException {
+    assertFindAdductsMatchesAllPairs(CheckMode.ONE_FEATURE);
+  }
+
+  @Test
+  void testAllFeaturesMatchesAllPairs() throws IOException {
+    assertFindAdductsMatchesAllPairs(CheckMode.ALL_FEATURES);
+  }
+
+  private void assertFindAdductsMatchesAllPairs(CheckMode mode) throws IOException {
+    final ModularFeatureList expectedList = createFeatureList();
+    final ModularFeatureList actualList = createFeatureList();
+    final List<FeatureListRow> expectedRows = expectedList.getRows();
+    final List<FeatureListRow> actualRows = actualList.getRows();
+
+    int matches = 0;
+    for (int i = 0; i < expectedRows.size() - 1; i++) {
+      for (int k = i + 1; k < expectedRows.size(); k++) {
+        // undetected, matching and deviating charge states
+        final int z1 = (i + k) % 3;
+        final int z2 = (i * k) % 3;
+        final List<IonIdentity[]> expected = findAdductsAllPairs(expectedList,
+            expectedRows.get(i), expectedRows.get(k), z1, z2, mode);
+        final List<IonIdentity[]> actual = library.findAdducts(actualList, actualRows.get(i),
+            actualRows.get(k), z1, z2, mode, MIN_HEIGHT);
+
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int m = 0; m < expected.size(); m++) {
+          for (int r = 0; r < 2; r++) {
+            Assertions.assertEquals(expected.get(m)[r].getIonType(),
+                actual.get(m)[r].getIonType());
+          }
+        }
+        matches += expected.size();
+      }
+    }
+    // the compounds are detected as multiple ions
+    Assertions.assertTrue(matches > NUM_COMPOUNDS, "Only " + matches + " matches");
+
+    // same identities and partner rows
+    for (int i = 0; i < expectedRows.size(); i++) {
+      final List<IonIdentity> expected = identities(expectedRows.get(i));
+      final List<IonIdentity> actual = identities(actualRows.get(i));
+      Assertions.assertEquals(expected.size(), actual.size());
+      for (int m = 0; m < expected.size(); m++) {
+        Assertions.assertEquals(expected.get(m).getIonType(), actual.get(m).getIonType());
+        Assertions.assertArrayEquals(partnerIDs(expected.get(m)), partnerIDs(actual.get(m)));
+      }
+    }
+  }
+
+  private static List<IonIdentity> identities(FeatureListRow row) {
+    final List<IonIdentity> identities = row.getIonIdentities();
+    return identities == null ? List.of() : identities;
+  }
+
+  private static int[] partnerIDs(IonIdentity identity) {
+    return identity.getPartnerRows().stream().mapToInt(FeatureListRow::getID).sorted().toArray();
+  }
+
+  /**
+   * Each compound is detected as two to four ions in two files. Some features are missing, below
+   * the minimum height or shifted by up to twice the m/z tolerance.
+   */
+  private ModularFeatureList createFeatureList() throws IOException {
+    final Random random = new Random(42);
+    final List<IonType> ions = library.getAllAdducts().stream()
+        .filter(ion -> !ion.isUndefinedAdduct()).toList();
+
+    final RawDataFile[] files = new RawDataFile[2];
+    final Scan[] scans = new Scan[files.length];
+    for (int f = 0; f < files.length; f++) {
+      files[f] = new RawDataFileImpl("file" + f, null, null);
+      scans[f] = new SimpleScan(files[f], 1, 1, 1f, null, new double[0], new double[0],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d));
+      files[f].addScan(scans[f]);
+    }
+    final ModularFeatureList flist = new ModularFeatureList("flist", null, files);
+
+    int id = 1;
+    for (int c = 0; c < NUM_COMPOUNDS; c++) {
+      final double neutralMass = 150d + random.nextDouble() * 700d;
+      final int numIons = 2 + random.nextInt(3);
+      for (int i = 0; i < numIons; i++) {
+        final double mz = ions.get(random.nextInt(ions.size())).getMZ(neutralMass);
+        final ModularFeatureListRow row = new ModularFeatureListRow(flist, id++);
+        for (int f = 0; f < files.length; f++) {
+          if (f > 0 && random.nextInt(5) == 0) {
+            continue;
+          }
+          final double shift = (random.nextDouble() - 0.5) * 4 * MZ_TOL.getMzToleranceForMass(mz);
+          final double height = random.nextInt(6) == 0 ? MIN_HEIGHT / 2 : MIN_HEIGHT * 10;
+          row.addFeature(files[f], new ModularFeature(flist, files[f],
+              new SimpleIonTimeSeries(null, new double[]{mz + shift}, new double[]{height},
+                  List.of(scans[f])), FeatureStatus.DETECTED));
+        }
+        flist.addRow(row);
+      }
+    }
+    return flist;
+  }
+
+  /**
+   * {@link IonNetworkLibrary#findAdducts} before the {@link IonTypeDeltaTable}
+   */
+  private List<IonIdentity[]> findAdductsAllPairs(final FeatureList featureList,
+      final FeatureListRow row1, final FeatureListRow row2, int z1, int z2,
+      final CheckMode mode) {
+    z1 = Math.abs(z1);
+    z2 = Math.abs(z2);
+    List<IonIdentity[]> list = new ArrayList<>();
+    for (IonType adduct : library.getAllAdducts()) {
+      for (IonType adduct2 : library.getAllAdducts()) {
+        if (adduct.equals(adduct2)) {
+          continue;
+        }
+
+        if (checkMolCount(adduct, adduct2) //
+            && checkMaxMod(adduct, adduct2) //
+            && checkChargeStates(adduct, adduct2, z1, z2) //
+            && checkMultiChargeDifference(adduct, adduct2) //
+            && checkSameAdducts(adduct, adduct2)) {
+          if (checkAdduct(featureList, row1, row2, adduct, adduct2, mode)) {
+            if (adduct2.isModificationOf(adduct)) {
+              IonType mod = adduct2.subtractMods(adduct);
+              IonType undefined =
+                  new IonType(IonModification.getUndefinedforCharge(adduct.getCharge()));
+              list.add(IonIdentity.addAdductIdentityToRow(MZ_TOL, row1, undefined, row1, mod));
+            } else if (adduct.isModificationOf(adduct2)) {
+              IonType mod = adduct.subtractMods(adduct2);
+              IonType undefined =
+                  new IonType(IonModification.getUndefinedforCharge(adduct2.getCharge()));
+              list.add(IonIdentity.addAdductIdentityToRow(MZ_TOL, row1, mod, row2, undefined));
+            } else {
+              list.add(IonIdentity.addAdductIdentityToRow(MZ_TOL, row1, adduct, row2, adduct2));
+            }
+          }
+        }
+      }
+    }
+    return list;
+  }
+
+  private static boolean checkSameAdducts(IonType a, IonType b) {
+    return (!a.hasAdductOverlap(b)
+            && !a.getAdduct().getType().equals(IonModificationType.UNDEFINED_ADDUCT)
+            && !b.getAdduct().getType().equals(IonModificationType.UNDEFINED_ADDUCT))
+           || (a.getAdduct().getType().equals(IonModificationType.UNDEFINED_ADDUCT)
+               && b.getAdduct().getType().equals(IonModificationType.UNDEFINED_ADDUCT));
+  }
+
+  private static boolean checkMultiChargeDifference(IonType a, IonType b) {
+    return a.getCharge() != b.getCharge()
+           || (!a.hasModificationOverlap(b) && !a.hasAdductOverlap(b));
+  }
+
+  private static boolean checkMolCount(IonType a, IonType b) {
+    return a.getMolecules() != b.getMolecules() || (a.getMolecules() == 1 && b.getMolecules() == 1);
+  }
+
+  private static boolean checkChargeStates(IonType adduct, IonType adduct2, int z1, int z2) {
+    return (z1 == 0 || adduct.getAbsCharge() == z1) && (z2 == 0 || adduct2.getAbsCharge() == z2);
+  }
+
+  private static boolean checkMaxMod(IonType adduct, IonType adduct2) {
+    return !(adduct.getModCount() > 0 && adduct2.getModCount() > 0);
+  }
+
+  private static boolean checkAdduct(final FeatureList featureList, final FeatureListRow row1,
+      final FeatureListRow row2, final IonType adduct, final IonType adduct2,
+      final CheckMode mode) {
+    if (mode.equals(CheckMode.AVGERAGE)) {
+      double m1 = adduct.getMass(row1.getAverageMZ());
+      double m2 = adduct2.getMass(row2.getAverageMZ());
+      return MZ_TOL.checkWithinTolerance(m1, m2);
+    }
+    boolean hasCommonFeature = false;
+    for (RawDataFile raw : featureList.getRawDataFiles()) {
+      Feature f1 = row1.getFeature(raw);
+      Feature f2 = row2.getFeature(raw);
+      if (f1 != null && f2 != null && f1.getHeight() >= MIN_HEIGHT
+          && f2.getHeight() >= MIN_HEIGHT) {
+        hasCommonFeature = true;
+        boolean sameMZ = MZ_TOL.checkWithinTolerance(adduct.getMass(f1.getMZ()),
+            adduct2.getMass(f2.getMZ()));
+        if (mode == CheckMode.ONE_FEATURE && sameMZ) {
+          return true;
+        }
+        if (mode == CheckMode.ALL_FEATURES && !sameMZ) {
+          return false;
+        }
+      }
+    }
+    return mode.equals(CheckMode.ALL_FEATURES) && hasCommonFeature;
+  }
+}
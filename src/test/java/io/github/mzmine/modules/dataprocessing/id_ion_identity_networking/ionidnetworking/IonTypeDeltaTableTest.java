@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking;
+
+import io.github.mzmine.datamodel.identities.iontype.IonModification;
+import io.github.mzmine.datamodel.identities.iontype.IonType;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class IonTypeDeltaTableTest {
+
+  private static final MZTolerance MZ_TOL = new MZTolerance(0.002, 5);
+
+  private final List<IonType> ions = new IonNetworkLibrary(MZ_TOL, 2, true, 2,
+      new IonModification[]{IonModification.H, IonModification.NA, IonModification.NH4},
+      new IonModification[]{IonModification.H2O}).getAllAdducts();
+
+  @Test
+  void testCandidatesContainAllMatches() {
+    final IonTypeDeltaTable table = new IonTypeDeltaTable(ions, (a, b) -> true);
+    final int n = ions.size();
+    final Random random = new Random(42);
+    for (int test = 0; test < 200; test++) {
+      // pick a real ion pair of the same neutral mass to create matches
+      final double neutralMass = 100 + random.nextDouble() * 900;
+      final IonType ion1 = ions.get(random.nextInt(n));
+      final IonType ion2 = ions.get(random.nextInt(n));
+      final double mz1 = ion1.getMZ(neutralMass);
+      final double mz2 = ion2.getMZ(neutralMass) + (random.nextDouble() - 0.5) * 0.004;
+
+      final IntArrayList candidates = table.findCandidates(mz1, mz1, mz2, mz2, 0, 0, MZ_TOL);
+      for (int i1 = 0; i1 < n; i1++) {
+        for (int i2 = 0; i2 < n; i2++) {
+          final IonType a = ions.get(i1);
+          final IonType b = ions.get(i2);
+          if (i1 != i2 && !a.equals(b) && MZ_TOL.checkWithinTolerance(a.getMass(mz1),
+              b.getMass(mz2))) {
+            Assertions.assertTrue(candidates.contains(i1 * n + i2),
+                "Missing candidate " + a + " " + b);
+          }
+        }
+      }
+      // sorted like nested loops
+      for (int i = 1; i < candidates.size(); i++) {
+        Assertions.assertTrue(candidates.getInt(i - 1) < candidates.getInt(i));
+      }
+    }
+  }
+
+  @Test
+  void testChargeFilter() {
+    final IonTypeDeltaTable table = new IonTypeDeltaTable(ions, (a, b) -> true);
+    final int n = ions.size();
+    final IntArrayList candidates = table.findCandidates(301.1, 301.1, 151.05, 151.05, 1, 2,
+        MZ_TOL);
+    for (int pair : candidates) {
+      Assertions.assertEquals(1, ions.get(pair / n).getAbsCharge());
+      Assertions.assertEquals(2, ions.get(pair % n).getAbsCharge());
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_imzml;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.impl.SimpleImagingScan;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import javafx.scene.paint.Color;
+import javax.xml.stream.XMLStreamException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Writes small continuous and processed imzML files and compares the parsed scans to the written
+ * values.
+ */
+class IbdSpectraReaderTest {
+
+  private static final int POINTS = 5;
+
+  @TempDir
+  Path dir;
+
+  private static double mz(int spectrum, int i, boolean continuous) {
+    return 100d + i * 10d + (continuous ? 0d : spectrum * 0.001);
+  }
+
+  private static double intensity(int spectrum, int i) {
+    return spectrum * 10 + i + 1;
+  }
+
+  /**
+   * Writes an imzML file with width * height spectra. Continuous files share a float64 m/z array,
+   * processed files use float32 m/z and float64 intensities.
+   */
+  private File write(String name, int width, int height, boolean continuous, boolean compressed)
+      throws IOException {
+    final int spectra = width * height;
+    final int mzBytes = continuous ? 8 : 4;
+    final int intensityBytes = continuous ? 4 : 8;
+    final ByteBuffer ibd = ByteBuffer.allocate(
+        16 + POINTS * mzBytes * (continuous ? 1 : spectra) + POINTS * intensityBytes * spectra);
+    ibd.order(ByteOrder.LITTLE_ENDIAN);
+    ibd.position(16); // uuid
+
+    final StringBuilder xml = new StringBuilder();
+    xml.append("""
+        <?xml version="1.0" encoding="ISO-8859-1"?>
+        <mzML xmlns="http://psi.hupo.org/ms/mzml" version="1.1">
+        <fileDescription><fileContent>
+        <cvParam cvRef="IMS" accession="%s" name="mode" value=""/>
+        </fileContent></fileDescription>
+        <referenceableParamGroupList count="2">
+        <referenceableParamGroup id="mzArray">
+        <cvParam cvRef="MS" accession="MS:1000514" name="m/z array" value=""/>
+        <cvParam cvRef="MS" accession="%s" name="type" value=""/>
+        %s
+        </referenceableParamGroup>
+        <referenceableParamGroup id="intensityArray">
+        <cvParam cvRef="MS" accession="MS:1000515" name="intensity array" value=""/>
+        <cvParam cvRef="MS" accession="%s" name="type" value=""/>
+        </referenceableParamGroup>
+        </referenceableParamGroupList>
+        <scanSettingsList count="1"><scanSettings id="scanSettings0">
+        <cvParam cvRef="IMS" accession="IMS:1000042" name="max count of pixels x" value="%d"/>
+        <cvParam cvRef="IMS" accession="IMS:1000043" name="max count of pixels y" value="%d"/>
+        <cvParam cvRef="IMS" accession="IMS:1000046" name="pixel size x" value="20"/>
+        <cvParam cvRef="IMS" accession="IMS:1000410" name="meandering" value=""/>
+        </scanSettings></scanSettingsList>
+        <run id="run"><spectrumList count="%d">
+        """.formatted(continuous ? "IMS:1000030" : "IMS:1000031",
+        continuous ? "MS:1000523" : "MS:1000521",
+        compressed ? "<cvParam cvRef=\"MS\" accession=\"MS:1000574\" name=\"zlib\" value=\"\"/>"
+            : "", continuous ? "MS:1000521" : "MS:1000523", width, height, spectra));
+
+    long sharedMzOffset = -1;
+    if (continuous) {
+      sharedMzOffset = ibd.position();
+      for (int i = 0; i < POINTS; i++) {
+        ibd.putDouble(mz(0, i, true));
+      }
+    }
+
+    for (int s = 0; s < spectra; s++) {
+      final long mzOffset;
+      if (continuous) {
+        mzOffset = sharedMzOffset;
+      } else {
+        mzOffset = ibd.position();
+        for (int i = 0; i < POINTS; i++) {
+          ibd.putFloat((float) mz(s, i, false));
+        }
+      }
+      final long intensityOffset = ibd.position();
+      for (int i = 0; i < POINTS; i++) {
+        if (continuous) {
+          ibd.putFloat((float) intensity(s, i));
+        } else {
+          ibd.putDouble(intensity(s, i));
+        }
+      }
+
+      xml.append("""
+          <spectrum id="scan=%d" defaultArrayLength="0" index="%d">
+          <cvParam cvRef="MS" accession="MS:1000511" name="ms level" value="1"/>
+          <cvParam cvRef="MS" accession="MS:1000130" name="positive scan" value=""/>
+          <scanList count="1"><scan>
+          <cvParam cvRef="IMS" accession="IMS:1000050" name="position x" value="%d"/>
+          <cvParam cvRef="IMS" accession="IMS:1000051" name="position y" value="%d"/>
+          </scan></scanList>
+          <binaryDataArrayList count="2">
+          <binaryDataArray encodedLength="0">
+          <referenceableParamGroupRef ref="mzArray"/>
+          <cvParam cvRef="IMS" accession="IMS:1000103" name="external array length" value="%d"/>
+          <cvParam cvRef="IMS" accession="IMS:1000102" name="external offset" value="%d"/>
+          <binary/>
+          </binaryDataArray>
+          <binaryDataArray encodedLength="0">
+          <referenceableParamGroupRef ref="intensityArray"/>
+          <cvParam cvRef="IMS" accession="IMS:1000103" name="external array length" value="%d"/>
+          <cvParam cvRef="IMS" accession="IMS:1000102" name="external offset" value="%d"/>
+          <binary/>
+          </binaryDataArray>
+          </binaryDataArrayList>
+          </spectrum>
+          """.formatted(s + 1, s, s % width + 1, s / width + 1, POINTS, mzOffset, POINTS,
+          intensityOffset));
+    }
+    xml.append("</spectrumList></run></mzML>\n");
+
+    final File imzML = dir.resolve(name + ".imzML").toFile();
+    Files.writeString(imzML.toPath(), xml.toString(), StandardCharsets.ISO_8859_1);
+    Files.write(dir.resolve(name + ".ibd"), ibd.array());
+    return imzML;
+  }
+
+  private List<SimpleImagingScan> read(File imzML, ImzMLMetadata metadata) throws IOException {
+    final File ibd = IbdSpectraReader.findIbdFile(imzML);
+    Assertions.assertNotNull(ibd);
+    final RawDataFile file = new RawDataFileImpl("test", null, null, Color.BLACK);
+    final IbdSpectraReader reader = new IbdSpectraReader(ibd, metadata, file, 4);
+    final List<SimpleImagingScan> scans = reader.readScans(() -> false);
+    Assertions.assertEquals(metadata.spectra().size(), reader.getProcessedSpectra());
+    return scans;
+  }
+
+  private static void assertScans(List<SimpleImagingScan> scans, int width, boolean continuous) {
+    for (int s = 0; s < scans.size(); s++) {
+      final SimpleImagingScan scan = scans.get(s);
+      Assertions.assertEquals(s + 1, scan.getScanNumber());
+      Assertions.assertEquals(s % width, scan.getCoordinates().getX());
+      Assertions.assertEquals(s / width, scan.getCoordinates().getY());
+      Assertions.assertEquals(POINTS, scan.getNumberOfDataPoints());
+      for (int i = 0; i < POINTS; i++) {
+        Assertions.assertEquals(mz(s, i, continuous), scan.getMzValue(i), 1E-4);
+        Assertions.assertEquals(intensity(s, i), scan.getIntensityValue(i), 1E-6);
+      }
+    }
+  }
+
+  @Test
+  void testContinuous() throws IOException, XMLStreamException {
+    final File imzML = write("continuous", 4, 3, true, false);
+    final ImzMLMetadata metadata = ImzMLMetadataParser.parse(imzML);
+    Assertions.assertNull(metadata.unsupported());
+    Assertions.assertTrue(metadata.continuous());
+    Assertions.assertEquals(4, metadata.imagingParameters().getMaxNumberOfPixelX());
+    Assertions.assertEquals(3, metadata.imagingParameters().getMaxNumberOfPixelY());
+    Assertions.assertEquals(20d, metadata.imagingParameters().getPixelHeight());
+    Assertions.assertEquals(ImagingParameters.Pattern.MEANDER,
+        metadata.imagingParameters().getPattern());
+
+    final List<SimpleImagingScan> scans = read(imzML, metadata);
+    Assertions.assertEquals(12, scans.size());
+    assertScans(scans, 4, true);
+  }
+
+  @Test
+  void testProcessedMultipleChunks() throws IOException, XMLStreamException {
+    // more spectra than fit into a single chunk
+    final int width = 50;
+    final int height = IbdSpectraReader.MAX_SPECTRA_PER_CHUNK * 2 / width + 1;
+    final File imzML = write("processed", width, height, false, false);
+    final ImzMLMetadata metadata = ImzMLMetadataParser.parse(imzML);
+    Assertions.assertNull(metadata.unsupported());
+    Assertions.assertFalse(metadata.continuous());
+
+    final IbdSpectraReader reader = new IbdSpectraReader(new File(""), metadata,
+        new RawDataFileImpl("test", null, null, Color.BLACK), 1);
+    Assertions.assertEquals(3, reader.createChunks(metadata.spectra()).size());
+
+    final List<SimpleImagingScan> scans = read(imzML, metadata);
+    Assertions.assertEquals(width * height, scans.size());
+    assertScans(scans, width, false);
+  }
+
+  @Test
+  void testCompressedIsUnsupported() throws XMLStreamException, IOException {
+    final File imzML = write("compressed", 2, 2, true, true);
+    final ImzMLMetadata metadata = ImzMLMetadataParser.parse(
+        new ByteArrayInputStream(Files.readAllBytes(imzML.toPath())));
+    Assertions.assertNotNull(metadata.unsupported());
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_mzxml;
+
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.modules.io.import_rawdata_mzxml.MzXMLScanDecoder.MzXMLScan;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.Deflater;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Writes small mzXML files with nested MS2 scans and checks the scan offsets and the values decoded
+ * from the offsets or parsed sequentially.
+ */
+class MzXMLScanDecoderTest {
+
+  private static final int MS1_SCANS = 4;
+  private static final int POINTS = 6;
+
+  @TempDir
+  Path dir;
+
+  private static double mz(int scan, int i) {
+    return 100.5 + i * 25d + scan;
+  }
+
+  private static double intensity(int scan, int i) {
+    return 1000d * (scan + 1) + i;
+  }
+
+  private static String peaks(int scan, boolean doublePrecision, boolean compressed) {
+    final ByteBuffer buffer = ByteBuffer.allocate(POINTS * 2 * (doublePrecision ? 8 : 4));
+    for (int i = 0; i < POINTS; i++) {
+      if (doublePrecision) {
+        buffer.putDouble(mz(scan, i)).putDouble(intensity(scan, i));
+      } else {
+        buffer.putFloat((float) mz(scan, i)).putFloat((float) intensity(scan, i));
+      }
+    }
+    byte[] bytes = buffer.array();
+    if (compressed) {
+      final Deflater deflater = new Deflater();
+      deflater.setInput(bytes);
+      deflater.finish();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final byte[] block = new byte[1024];
+      while (!deflater.finished()) {
+        out.write(block, 0, deflater.deflate(block));
+      }
+      deflater.end();
+      bytes = out.toByteArray();
+    }
+    // line breaks are allowed in base64 encoded peaks
+    return Base64.getMimeEncoder(16, "\n".getBytes(StandardCharsets.US_ASCII))
+        .encodeToString(bytes);
+  }
+
+  /**
+   * Every MS1 scan contains a nested MS2 scan. Scan numbers start at 1.
+   *
+   * @param index      writes the scan index
+   * @param wrongIndex writes an index with offsets that do not point to scans
+   */
+  private Path write(String name, boolean index, boolean wrongIndex, boolean doublePrecision,
+      boolean compressed) throws IOException {
+    final StringBuilder xml = new StringBuilder("""
+        <?xml version="1.0" encoding="ISO-8859-1"?>
+        <mzXML xmlns="http://sashimi.sourceforge.net/schema_revision/mzXML_3.2">
+        <msRun scanCount="%d">
+        <parentFile fileName="test.raw" fileType="RAWData" fileSha1="0"/>
+        """.formatted(MS1_SCANS * 2));
+    final List<Integer> offsets = new ArrayList<>();
+    final String peaksAttributes = "precision=\"%s\" byteOrder=\"network\" contentType=\"m/z-int\" compressionType=\"%s\" compressedLen=\"0\"".formatted(
+        doublePrecision ? "64" : "32", compressed ? "zlib" : "none");
+    for (int s = 0; s < MS1_SCANS * 2; s += 2) {
+      offsets.add(xml.length());
+      xml.append("""
+          <scan num="%d"
+                scanType="Full"
+                msLevel="1"
+                peaksCount="%d"
+                polarity="+"
+                retentionTime="PT%sS">
+          <peaks %s>%s</peaks>
+          """.formatted(s + 1, POINTS, 60d * s, peaksAttributes,
+          peaks(s, doublePrecision, compressed)));
+      // nested scans are indented
+      offsets.add(xml.length() + 2);
+      xml.append("""
+            <scan num="%d" msLevel="2" peaksCount="%d" polarity="-" retentionTime="PT%sS" filterLine="MS2">
+            <precursorMz precursorCharge="2">%s</precursorMz>
+            <peaks %s>%s</peaks>
+            </scan>
+          </scan>
+          """.formatted(s + 2, POINTS, 60d * s + 30d, 200d + s, peaksAttributes,
+          peaks(s + 1, doublePrecision, compressed)));
+    }
+    xml.append("</msRun>\n");
+    if (index) {
+      final int indexOffset = xml.length();
+      xml.append("<index name=\"scan\">\n");
+      for (int s = 0; s < offsets.size(); s++) {
+        xml.append("<offset id=\"%d\">%d</offset>\n".formatted(s + 1,
+            offsets.get(s) + (wrongIndex ? 3 : 0)));
+      }
+      xml.append("</index>\n<indexOffset>%d</indexOffset>\n".formatted(indexOffset));
+    }
+    xml.append("</mzXML>\n");
+
+    final Path path = dir.resolve(name + ".mzXML");
+    Files.writeString(path, xml.toString(), StandardCharsets.ISO_8859_1);
+    return path;
+  }
+
+  private static List<MzXMLScan> decodeIndexed(Path path)
+      throws IOException, XMLStreamException {
+    try (FileChannel channel = FileChannel.open(path,
+        StandardOpenOption.READ); MzXMLScanDecoder decoder = new MzXMLScanDecoder()) {
+      final long[] offsets = MzXMLScanOffsets.read(channel);
+      Assertions.assertNotNull(offsets);
+      final List<MzXMLScan> scans = new ArrayList<>();
+      for (int s = 0; s < offsets.length - 1; s++) {
+        scans.add(decoder.decode(channel, offsets[s], offsets[s + 1]));
+      }
+      return scans;
+    }
+  }
+
+  private static List<MzXMLScan> parseSequentially(Path path) throws Exception {
+    final List<MzXMLScan> scans = new ArrayList<>();
+    final int[] scanCount = new int[1];
+    SAXParserFactory.newInstance().newSAXParser().parse(path.toFile(),
+        new MzXMLSaxHandler(count -> scanCount[0] = count, scans::add, () -> false));
+    Assertions.assertEquals(MS1_SCANS * 2, scanCount[0]);
+    return scans;
+  }
+
+  private static void assertScans(List<MzXMLScan> scans, boolean doublePrecision) {
+    Assertions.assertEquals(MS1_SCANS * 2, scans.size());
+    for (int s = 0; s < scans.size(); s++) {
+      final MzXMLScan scan = scans.get(s);
+      final boolean ms2 = s % 2 == 1;
+      Assertions.assertEquals(s + 1, scan.scanNumber());
+      Assertions.assertEquals(ms2 ? 2 : 1, scan.msLevel());
+      Assertions.assertEquals(ms2 ? PolarityType.NEGATIVE : PolarityType.POSITIVE,
+          scan.polarity());
+      Assertions.assertEquals(ms2 ? "MS2" : "Full", scan.scanDefinition());
+      // minutes
+      Assertions.assertEquals(ms2 ? s - 0.5 : s, scan.retentionTime(), 1E-4);
+      Assertions.assertEquals(ms2 ? 200d + s - 1 : 0d, scan.precursorMz(), 1E-8);
+      Assertions.assertEquals(ms2 ? 2 : 0, scan.precursorCharge());
+      Assertions.assertEquals(POINTS, scan.mzs().length);
+      for (int i = 0; i < POINTS; i++) {
+        Assertions.assertEquals(mz(s, i), scan.mzs()[i], doublePrecision ? 1E-10 : 1E-4);
+        Assertions.assertEquals(intensity(s, i), scan.intensities()[i], 1E-4);
+      }
+    }
+  }
+
+  @Test
+  void testIndexedFile() throws Exception {
+    final Path path = write("indexed", true, false, false, false);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final long[] indexed = MzXMLScanOffsets.fromIndex(channel);
+      Assertions.assertNotNull(indexed);
+      Assertions.assertEquals(MS1_SCANS * 2 + 1, indexed.length);
+    }
+    assertScans(decodeIndexed(path), false);
+    // both parsers read the same values
+    assertScans(parseSequentially(path), false);
+  }
+
+  @Test
+  void testFileWithoutIndex() throws Exception {
+    final Path path = write("noindex", false, false, true, false);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      Assertions.assertNull(MzXMLScanOffsets.read(channel));
+    }
+    assertScans(parseSequentially(path), true);
+  }
+
+  @Test
+  void testWrongIndexAndCompression() throws Exception {
+    final Path path = write("wrongindex", true, true, true, true);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      Assertions.assertNull(MzXMLScanOffsets.read(channel));
+    }
+    assertScans(parseSequentially(path), true);
+  }
+
+  @Test
+  void testCompressedIndexedFile() throws Exception {
+    final Path path = write("compressed", true, false, true, true);
+    assertScans(decodeIndexed(path), true);
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_spectral_library;
+
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Writes a library to the cache and reads it back.
+ */
+class SpectralLibraryCacheTest {
+
+  private static final int ENTRIES = 20;
+
+  @TempDir
+  Path dir;
+
+  private File writeSource() throws IOException {
+    final Path source = dir.resolve("library.mgf");
+    Files.writeString(source, "BEGIN IONS\nEND IONS\n");
+    return source.toFile();
+  }
+
+  private static SpectralLibrary createLibrary(File source) {
+    final SpectralLibrary library = new SpectralLibrary(null, source);
+    for (int e = 0; e < ENTRIES; e++) {
+      final int n = e % 4; // also empty spectra
+      final double[] mzs = new double[n];
+      final double[] intensities = new double[n];
+      for (int i = 0; i < n; i++) {
+        mzs[i] = 50.5 + e + i * 10;
+        intensities[i] = 1000d * (i + 1);
+      }
+      final Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
+      fields.put(DBEntryField.NAME, "compound " + e);
+      fields.put(DBEntryField.PRECURSOR_MZ, 100.25 + e);
+      if (e % 2 == 0) {
+        fields.put(DBEntryField.CHARGE, 1);
+        fields.put(DBEntryField.POLARITY, PolarityType.POSITIVE);
+      }
+      fields.put(DBEntryField.CCS, 150.5f);
+      library.getEntries().add(new SpectralDBEntry(null, mzs, intensities, fields));
+    }
+    return library;
+  }
+
+  @Test
+  void testRoundTrip() throws IOException {
+    final File source = writeSource();
+    final SpectralLibraryCache cache = new SpectralLibraryCache(dir.resolve("cache").toFile());
+    Assertions.assertNull(cache.load(source, null));
+
+    final SpectralLibrary library = createLibrary(source);
+    cache.write(source, library);
+    final SpectralLibrary loaded = cache.load(source, null);
+    Assertions.assertNotNull(loaded);
+    Assertions.assertEquals(ENTRIES, loaded.size());
+
+    for (int e = 0; e < ENTRIES; e++) {
+      final SpectralLibraryEntry expected = library.getEntries().get(e);
+      final SpectralLibraryEntry actual = loaded.getEntries().get(e);
+      Assertions.assertEquals(expected.getFields(), actual.getFields());
+      Assertions.assertEquals(expected.getNumberOfDataPoints(), actual.getNumberOfDataPoints());
+      for (int i = 0; i < expected.getNumberOfDataPoints(); i++) {
+        Assertions.assertEquals(expected.getMzValue(i), actual.getMzValue(i), 0d);
+        Assertions.assertEquals(expected.getIntensityValue(i), actual.getIntensityValue(i), 0d);
+      }
+    }
+  }
+
+  @Test
+  void testOutdatedCache() throws IOException {
+    final File source = writeSource();
+    final SpectralLibraryCache cache = new SpectralLibraryCache(dir.resolve("cache").toFile());
+    cache.write(source, createLibrary(source));
+    Assertions.assertNotNull(cache.load(source, null));
+
+    Files.writeString(source.toPath(), "BEGIN IONS\nNAME=changed\nEND IONS\n");
+    Assertions.assertNull(cache.load(source, null));
+  }
+
+  @Test
+  void testLeastRecentlyUsedEviction() throws IOException {
+    final File cacheDir = dir.resolve("cache").toFile();
+    final File first = writeSource();
+    final Path secondPath = dir.resolve("second.mgf");
+    Files.writeString(secondPath, "BEGIN IONS\nEND IONS\n");
+    final File second = secondPath.toFile();
+
+    final SpectralLibraryCache unbounded = new SpectralLibraryCache(cacheDir);
+    unbounded.write(first, createLibrary(first));
+    final long fileBytes = unbounded.getCacheFile(first).length();
+    Assertions.assertTrue(unbounded.getCacheFile(first).setLastModified(1000L));
+
+    // only one library fits, the older cache file is removed
+    final SpectralLibraryCache bounded = new SpectralLibraryCache(cacheDir, fileBytes + 100);
+    bounded.write(second, createLibrary(second));
+    Assertions.assertFalse(bounded.getCacheFile(first).exists());
+    Assertions.assertNotNull(bounded.load(second, null));
+  }
+}
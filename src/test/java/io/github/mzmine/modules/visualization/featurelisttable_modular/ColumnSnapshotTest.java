@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.featurelisttable_modular;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ColumnSnapshotTest {
+
+  @SuppressWarnings("unchecked")
+  private static final Comparator<Object> NATURAL = (a, b) -> ((Comparable<Object>) a).compareTo(
+      b);
+
+  @Test
+  void testNumbersAscendingAndDescending() {
+    final List<Object> values = Arrays.asList(3.0, 1, null, 2f, 5L);
+    Assertions.assertArrayEquals(new int[]{1, 3, 0, 4, 2}, ColumnSnapshot.sortedOrder(5,
+        List.of(ColumnSnapshot.of(values, NATURAL, false))));
+    // missing values stay at the end
+    Assertions.assertArrayEquals(new int[]{4, 0, 3, 1, 2}, ColumnSnapshot.sortedOrder(5,
+        List.of(ColumnSnapshot.of(values, NATURAL, true))));
+  }
+
+  @Test
+  void testObjectsWithComparator() {
+    final List<Object> values = Arrays.asList("b", null, "a", "c");
+    Assertions.assertArrayEquals(new int[]{2, 0, 3, 1}, ColumnSnapshot.sortedOrder(4,
+        List.of(ColumnSnapshot.of(values, NATURAL, false))));
+  }
+
+  @Test
+  void testMultipleColumnsAndStability() {
+    final List<Object> groups = Arrays.asList("x", "y", "x", "y", "x");
+    final List<Object> numbers = Arrays.asList(2, 1, 2, 0, 1);
+    // equal rows keep their order
+    Assertions.assertArrayEquals(new int[]{4, 0, 2, 3, 1}, ColumnSnapshot.sortedOrder(5,
+        List.of(ColumnSnapshot.of(groups, NATURAL, false),
+            ColumnSnapshot.of(numbers, NATURAL, false))));
+  }
+
+  @Test
+  void testSameOrderAsListSort() {
+    final Random random = new Random(42);
+    final List<Object> values = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      values.add(random.nextInt(100) == 0 ? null : random.nextDouble());
+    }
+    final int[] order = ColumnSnapshot.sortedOrder(values.size(),
+        List.of(ColumnSnapshot.of(values, NATURAL, false)));
+
+    final int[] expected = IntStream.range(0, values.size()).boxed().sorted(
+        Comparator.comparing(i -> (Double) values.get(i),
+            Comparator.nullsLast(Comparator.naturalOrder()))).mapToInt(Integer::intValue).toArray();
+    Assertions.assertArrayEquals(expected, order);
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.image.tiles;
+
+import io.github.mzmine.datamodel.ImagingScan;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.modules.io.import_rawdata_imzml.Coordinates;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class ImageTilePyramidTest {
+
+  private static final int WIDTH = 300;
+  private static final int HEIGHT = 100;
+  // image starts at pixel 5/3
+  private static final int OFFSET_X = 5;
+  private static final int OFFSET_Y = 3;
+
+  private List<ImagingScan> scans;
+  private double[] intensities;
+  private ImageTilePyramid pyramid;
+
+  @BeforeEach
+  void setUp() {
+    scans = new ArrayList<>();
+    final List<Double> values = new ArrayList<>();
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        // leave a gap in the first row
+        if (y == 0 && x == 1) {
+          continue;
+        }
+        final ImagingScan scan = Mockito.mock(ImagingScan.class);
+        Mockito.when(scan.getCoordinates())
+            .thenReturn(new Coordinates(x + OFFSET_X, y + OFFSET_Y, 0));
+        scans.add(scan);
+        values.add((double) ((x * 31 + y * 17) % 101));
+      }
+    }
+    intensities = values.stream().mapToDouble(Double::doubleValue).toArray();
+
+    final IonTimeSeries<ImagingScan> series = Mockito.mock(IonTimeSeries.class);
+    Mockito.when(series.getNumberOfValues()).thenReturn(scans.size());
+    Mockito.when(series.getSpectrum(Mockito.anyInt()))
+        .thenAnswer(invocation -> scans.get(invocation.<Integer>getArgument(0)));
+    Mockito.when(series.getIntensity(Mockito.anyInt()))
+        .thenAnswer(invocation -> intensities[invocation.<Integer>getArgument(0)]);
+    Mockito.when(series.getIntensityValues(Mockito.any())).thenReturn(intensities);
+    pyramid = new ImageTilePyramid(series);
+  }
+
+  @Test
+  void testLevels() {
+    Assertions.assertEquals(OFFSET_X, pyramid.getMinX());
+    Assertions.assertEquals(OFFSET_Y, pyramid.getMinY());
+    Assertions.assertEquals(WIDTH, pyramid.getLevelWidth(0));
+    Assertions.assertEquals(150, pyramid.getLevelWidth(1));
+    Assertions.assertEquals(13, pyramid.getLevelHeight(3));
+    Assertions.assertEquals(2, pyramid.getNumTilesX(0));
+    Assertions.assertEquals(1, pyramid.getNumTilesX(1));
+    // 300 -> 150 -> 75 -> 38 -> 19 -> 10
+    Assertions.assertEquals(6, pyramid.getNumberOfLevels());
+
+    Assertions.assertEquals(0, pyramid.getLevelForMaxSize(0));
+    Assertions.assertEquals(0, pyramid.getLevelForMaxSize(200));
+    Assertions.assertEquals(1, pyramid.getLevelForMaxSize(150));
+    Assertions.assertEquals(2, pyramid.getLevelForMaxSize(70));
+    Assertions.assertEquals(5, pyramid.getLevelForMaxSize(1));
+  }
+
+  @Test
+  void testFullResolution() {
+    final ImagePixels pixels = pyramid.getPixels(0);
+    Assertions.assertEquals(scans.size(), pixels.getNumberOfPixels());
+    for (int i = 0; i < pixels.getNumberOfPixels(); i++) {
+      final Coordinates coordinates = scans.get(pixels.sourceIndices()[i]).getCoordinates();
+      Assertions.assertEquals(coordinates.getX(), pixels.getCenterX(i));
+      Assertions.assertEquals(coordinates.getY(), pixels.getCenterY(i));
+      Assertions.assertEquals(intensities[pixels.sourceIndices()[i]], pixels.intensities()[i]);
+    }
+  }
+
+  @Test
+  void testMaximumOfBlocks() {
+    final ImagePixels pixels = pyramid.getPixels(2);
+    Assertions.assertEquals(4, pixels.getBlockSize());
+    Assertions.assertEquals(75 * 25, pixels.getNumberOfPixels());
+
+    for (int i = 0; i < pixels.getNumberOfPixels(); i++) {
+      double max = -1;
+      for (int s = 0; s < scans.size(); s++) {
+        final Coordinates coordinates = scans.get(s).getCoordinates();
+        if (coordinates.getX() >= pixels.x()[i] && coordinates.getX() < pixels.x()[i] + 4
+            && coordinates.getY() >= pixels.y()[i] && coordinates.getY() < pixels.y()[i] + 4) {
+          max = Math.max(max, intensities[s]);
+        }
+      }
+      Assertions.assertEquals(max, pixels.intensities()[i]);
+      Assertions.assertEquals(max, intensities[pixels.sourceIndices()[i]]);
+    }
+  }
+
+  @Test
+  void testTilesAreCached() {
+    final ImageTile tile = pyramid.getTile(0, 1, 0);
+    Assertions.assertEquals(256, tile.x0());
+    Assertions.assertEquals(WIDTH - 256, tile.width());
+    Assertions.assertSame(tile, pyramid.getTile(0, 1, 0));
+    Assertions.assertTrue(pyramid.getTile(0, 0, 0).isEmpty(1, 0));
+
+    ImageTileCache.getInstance().invalidate(pyramid);
+    Assertions.assertNotSame(tile, pyramid.getTile(0, 1, 0));
+  }
+
+  @Test
+  void testMaximumOfSamePixel() {
+    final ImagingScan first = Mockito.mock(ImagingScan.class);
+    final ImagingScan second = Mockito.mock(ImagingScan.class);
+    Mockito.when(first.getCoordinates()).thenReturn(new Coordinates(2, 2, 0));
+    Mockito.when(second.getCoordinates()).thenReturn(new Coordinates(2, 2, 0));
+    final List<ImagingScan> sameScans = List.of(first, second);
+    final double[] sameIntensities = {5, 7};
+
+    final IonTimeSeries<ImagingScan> series = Mockito.mock(IonTimeSeries.class);
+    Mockito.when(series.getNumberOfValues()).thenReturn(2);
+    Mockito.when(series.getSpectrum(Mockito.anyInt()))
+        .thenAnswer(invocation -> sameScans.get(invocation.<Integer>getArgument(0)));
+    Mockito.when(series.getIntensity(Mockito.anyInt()))
+        .thenAnswer(invocation -> sameIntensities[invocation.<Integer>getArgument(0)]);
+    Mockito.when(series.getIntensityValues(Mockito.any())).thenReturn(sameIntensities);
+
+    final ImagePixels pixels = new ImageTilePyramid(series).getPixels(0);
+    Assertions.assertEquals(1, pixels.getNumberOfPixels());
+    Assertions.assertEquals(1, pixels.sourceIndices()[0]);
+    Assertions.assertEquals(7f, pixels.intensities()[0]);
+  }
+
+  @Test
+  void testDispose() {
+    pyramid.getTile(0, 0, 0);
+    final int cachedTiles = ImageTileCache.getInstance().size();
+    pyramid.dispose();
+    Assertions.assertEquals(cachedTiles - 1, ImageTileCache.getInstance().size());
+    Assertions.assertThrows(IllegalStateException.class, () -> pyramid.getTile(0, 0, 0));
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.networking.visual.layout;
+
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BarnesHutLayoutTest {
+
+  /**
+   * two triangles and one single node
+   */
+  private static final int[] SOURCE = {0, 1, 2, 3, 4, 5};
+  private static final int[] TARGET = {1, 2, 0, 4, 5, 3};
+  private static final int NODES = 7;
+
+  @Test
+  void testConnectedComponents() {
+    final int[][] adjacency = BarnesHutLayout.adjacency(NODES, SOURCE, TARGET);
+    final List<int[]> components = BarnesHutLayout.connectedComponents(NODES, adjacency);
+    Assertions.assertEquals(3, components.size());
+    int total = 0;
+    for (int[] component : components) {
+      total += component.length;
+    }
+    Assertions.assertEquals(NODES, total);
+  }
+
+  @Test
+  void testLayoutIsFiniteAndDeterministic() {
+    final double[][] first = new BarnesHutLayout(2).layout(NODES, SOURCE, TARGET);
+    final double[][] second = new BarnesHutLayout(1).layout(NODES, SOURCE, TARGET);
+    for (int i = 0; i < NODES; i++) {
+      Assertions.assertTrue(Double.isFinite(first[0][i]) && Double.isFinite(first[1][i]));
+      Assertions.assertEquals(first[0][i], second[0][i], 1E-9);
+      Assertions.assertEquals(first[1][i], second[1][i], 1E-9);
+    }
+  }
+
+  @Test
+  void testComponentsDoNotOverlap() {
+    final double[][] xy = new BarnesHutLayout(2).layout(NODES, SOURCE, TARGET);
+    // bounding boxes of both triangles must not intersect
+    final double[] a = bounds(xy, 0, 1, 2);
+    final double[] b = bounds(xy, 3, 4, 5);
+    final boolean overlap =
+        a[0] < b[2] && b[0] < a[2] && a[1] < b[3] && b[1] < a[3];
+    Assertions.assertFalse(overlap);
+  }
+
+  private static double[] bounds(double[][] xy, int... nodes) {
+    final double[] box = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+        -Double.MAX_VALUE};
+    for (int n : nodes) {
+      box[0] = Math.min(box[0], xy[0][n]);
+      box[1] = Math.min(box[1], xy[1][n]);
+      box[2] = Math.max(box[2], xy[0][n]);
+      box[3] = Math.max(box[3], xy[1][n]);
+    }
+    return box;
+  }
+}
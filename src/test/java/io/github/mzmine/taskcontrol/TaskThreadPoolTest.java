@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.taskcontrol;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TaskThreadPoolTest {
+
+  @Test
+  void sharedPoolIsBoundedByPreferences() {
+    final ForkJoinPool pool = TaskThreadPool.getPool();
+    Assertions.assertEquals(TaskThreadPool.getMaxThreads(), pool.getParallelism());
+    Assertions.assertSame(pool, TaskThreadPool.getPool());
+  }
+
+  @Test
+  void parallelStreamsRunInSharedPool() throws ExecutionException, InterruptedException {
+    final Set<ForkJoinPool> pools = ConcurrentHashMap.newKeySet();
+    final int sum = TaskThreadPool.invoke(TaskThreadPool.getMaxThreads(),
+        () -> IntStream.range(0, 1000).parallel().peek(i -> {
+          if (Thread.currentThread() instanceof ForkJoinWorkerThread worker) {
+            pools.add(worker.getPool());
+          }
+        }).sum());
+    Assertions.assertEquals(999 * 1000 / 2, sum);
+    Assertions.assertEquals(Set.of(TaskThreadPool.getPool()), pools);
+  }
+
+  @Test
+  void nestedCallsRunDirectly() throws ExecutionException, InterruptedException {
+    final Thread outer = TaskThreadPool.invoke(TaskThreadPool.getMaxThreads(), () -> {
+      final Thread current = Thread.currentThread();
+      final Thread inner = TaskThreadPool.invoke(TaskThreadPool.getMaxThreads(),
+          Thread::currentThread);
+      Assertions.assertSame(current, inner);
+      return current;
+    });
+    Assertions.assertTrue(outer instanceof ForkJoinWorkerThread);
+  }
+
+  @Test
+  void exceptionsAreWrapped() {
+    final ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+        () -> TaskThreadPool.invoke(1, () -> {
+          throw new IllegalStateException("test");
+        }));
+    Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.Element;
+
+class IsotopesUtilsTest {
+
+  private static final MZTolerance MZ_TOLERANCE = new MZTolerance(0.0005, 10);
+  private static final DataPointSorter MZ_SORTER = new DataPointSorter(SortingProperty.MZ,
+      SortingDirection.Ascending);
+
+  /**
+   * The backward search of findIsotopesInScan starts at the target index instead of the last data
+   * point. Compares the candidates to the search that starts at the last data point.
+   */
+  @Test
+  void testFindIsotopesInScanMatchesSearchFromLastDataPoint() {
+    final int maxCharge = 3;
+    final DoubleArrayList[] diffsForCharge = IsotopesUtils.getIsotopesMzDiffsForCharge(
+        List.of(new Element("H"), new Element("C"), new Element("N"), new Element("O"),
+            new Element("S"), new Element("Cl")), maxCharge);
+
+    final Random random = new Random(42);
+    int patterns = 0;
+    for (int i = 0; i < 2000; i++) {
+      final MassSpectrum spectrum = createSpectrum(random, diffsForCharge);
+      final int n = spectrum.getNumberOfDataPoints();
+      // signals of the spectrum at the start, the end and in between, or a close m/z
+      final int index = switch (i % 4) {
+        case 0 -> 0;
+        case 1 -> n - 1;
+        default -> random.nextInt(n);
+      };
+      final double targetMz = spectrum.getMzValue(index) + (i % 5 == 0 ? 0.0002 : 0d);
+      final DataPoint target = new SimpleDataPoint(targetMz, spectrum.getIntensityValue(index));
+
+      for (DoubleArrayList diffs : diffsForCharge) {
+        final double maxDiff = maxIsoMzDiff(diffs);
+        final List<DataPoint> expected = findIsotopesFromLastDataPoint(diffs, maxDiff, spectrum,
+            target);
+        final List<DataPoint> actual = IsotopesUtils.findIsotopesInScan(diffs, maxDiff,
+            MZ_TOLERANCE, spectrum, target);
+        assertSameDataPoints(expected, actual);
+        if (actual.size() > 1) {
+          patterns++;
+        }
+      }
+    }
+    // most spectra contain isotope signals of the target
+    Assertions.assertTrue(patterns > 1000, "Only found " + patterns + " patterns");
+  }
+
+  @Test
+  void testFindIsotopesInScanFindsPrecedingIsotopes() {
+    final List<Double> diffs = List.of(1.003355);
+    final MassSpectrum spectrum = new SimpleMassList(null,
+        new double[]{199.5, 200.0, 201.003355, 202.00671, 203.010065, 204.5},
+        new double[]{10, 80, 100, 50, 20, 10});
+    final List<DataPoint> candidates = IsotopesUtils.findIsotopesInScan(diffs, 1.1, MZ_TOLERANCE,
+        spectrum, new SimpleDataPoint(201.003355, 100));
+    Assertions.assertArrayEquals(new double[]{200.0, 201.003355, 202.00671, 203.010065},
+        candidates.stream().mapToDouble(DataPoint::getMZ).toArray());
+  }
+
+  private static void assertSameDataPoints(List<DataPoint> expected, List<DataPoint> actual) {
+    Assertions.assertArrayEquals(expected.stream().mapToDouble(DataPoint::getMZ).toArray(),
+        actual.stream().mapToDouble(DataPoint::getMZ).toArray());
+    Assertions.assertArrayEquals(expected.stream().mapToDouble(DataPoint::getIntensity).toArray(),
+        actual.stream().mapToDouble(DataPoint::getIntensity).toArray());
+  }
+
+  private static double maxIsoMzDiff(DoubleArrayList diffs) {
+    double max = 0d;
+    for (double diff : diffs) {
+      max = Math.max(max, diff);
+    }
+    return max + 10 * MZ_TOLERANCE.getMzToleranceForMass(max);
+  }
+
+  /**
+   * Isotope patterns of random charge states with noise signals in between
+   */
+  private static MassSpectrum createSpectrum(Random random, DoubleArrayList[] diffsForCharge) {
+    final DoubleArrayList mzs = new DoubleArrayList();
+    final int numPatterns = 1 + random.nextInt(4);
+    for (int p = 0; p < numPatterns; p++) {
+      final DoubleArrayList diffs = diffsForCharge[random.nextInt(diffsForCharge.length)];
+      double mz = 200 + random.nextDouble() * 5;
+      mzs.add(mz);
+      final int isotopes = random.nextInt(5);
+      for (int i = 0; i < isotopes; i++) {
+        mz += diffs.getDouble(random.nextInt(diffs.size()));
+        mzs.add(mz);
+      }
+    }
+    final int noise = random.nextInt(20);
+    for (int i = 0; i < noise; i++) {
+      mzs.add(198 + random.nextDouble() * 12);
+    }
+
+    final double[] sorted = mzs.toDoubleArray();
+    Arrays.sort(sorted);
+    final double[] intensities = new double[sorted.length];
+    for (int i = 0; i < intensities.length; i++) {
+      intensities[i] = 1 + random.nextInt(1000);
+    }
+    return new SimpleMassList(null, sorted, intensities);
+  }
+
+  /**
+   * The search of {@link IsotopesUtils#findIsotopesInScan(List, double, MZTolerance, MassSpectrum,
+   * DataPoint)} that started the backward search at the last data point of the spectrum
+   */
+  private static List<DataPoint> findIsotopesFromLastDataPoint(List<Double> isoMzDiffs,
+      double maxIsoMzDiff, MassSpectrum spectrum, DataPoint target) {
+    int dp = spectrum.getNumberOfDataPoints() - 1;
+
+    List<DataPoint> candidates = new ArrayList<>();
+    final int targetIndex = spectrum.binarySearch(target.getMZ(), true);
+    candidates.add(new SimpleDataPoint(spectrum.getMzValue(targetIndex),
+        spectrum.getIntensityValue(targetIndex)));
+
+    double mz = spectrum.getMzValue(targetIndex);
+    double lastMZ = mz;
+
+    for (; dp >= 0 && mz >= lastMZ - maxIsoMzDiff; dp--) {
+      mz = spectrum.getMzValue(dp);
+
+      if (IsotopesUtils.isPossibleIsotopeMzNegativeDirection(mz, candidates, isoMzDiffs,
+          MZ_TOLERANCE)) {
+        candidates.add(new SimpleDataPoint(mz, spectrum.getIntensityValue(dp)));
+        lastMZ = mz;
+      }
+    }
+
+    candidates.sort(MZ_SORTER);
+
+    mz = spectrum.getMzValue(targetIndex);
+    double maxMZ = mz;
+    dp++;
+    for (; dp < spectrum.getNumberOfDataPoints() && mz <= maxMZ + maxIsoMzDiff; dp++) {
+      mz = spectrum.getMzValue(dp);
+      if (IsotopesUtils.isPossibleIsotopeMz(mz, candidates, isoMzDiffs, MZ_TOLERANCE)) {
+        final var dataPoint = new SimpleDataPoint(mz, spectrum.getIntensityValue(dp));
+        if (mz > maxMZ) {
+          candidates.add(dataPoint);
+          maxMZ = Math.max(mz, maxMZ);
+        } else {
+          insertIfNew(candidates, dataPoint);
+        }
+      }
+    }
+    candidates.sort(MZ_SORTER);
+    return candidates;
+  }
+
+  private static void insertIfNew(List<DataPoint> list, SimpleDataPoint dp) {
+    for (int c = list.size() - 1; c >= 0; c--) {
+      final double cmz = list.get(c).getMZ();
+      switch (Double.compare(cmz, dp.getMZ())) {
+        case 0:
+          return;
+        case -1:
+          list.add(c + 1, dp);
+          return;
+      }
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.PrecursorIonTree;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class MSnTreeIndexTest {
+
+  private static final MZTolerance MZ_TOLERANCE = new MZTolerance(0.005, 10);
+
+  private List<Scan> scans;
+  private MSnTreeIndex index;
+
+  @BeforeEach
+  void setUp() {
+    scans = List.of(scan(1, null), scan(2, 200.000), scan(2, 300.000), scan(1, null),
+        scan(2, 200.002), scan(2, 200.100));
+    index = MSnTreeIndex.build(scans, MZ_TOLERANCE, null);
+  }
+
+  private static Scan scan(int msLevel, Double precursorMz) {
+    final Scan scan = Mockito.mock(Scan.class);
+    Mockito.when(scan.getMSLevel()).thenReturn(msLevel);
+    Mockito.when(scan.getPrecursorMz()).thenReturn(precursorMz);
+    return scan;
+  }
+
+  @Test
+  void testGroupsPrecursorsWithinTolerance() {
+    Assertions.assertEquals(3, index.size());
+    final PrecursorIonTree tree = index.getTree(200.003);
+    Assertions.assertNotNull(tree);
+    Assertions.assertEquals(200.000, tree.getPrecursorMz(), 1E-9);
+    Assertions.assertEquals(2, tree.getAllFragmentScans().size());
+    Assertions.assertNull(index.getTree(250d));
+  }
+
+  @Test
+  void testSortOrder() {
+    final List<PrecursorIonTree> descending = index.getTrees();
+    Assertions.assertEquals(300.000, descending.get(0).getPrecursorMz(), 1E-9);
+    Assertions.assertEquals(200.000, descending.get(2).getPrecursorMz(), 1E-9);
+
+    final List<PrecursorIonTree> ascending = index.getTreesByPrecursorMz();
+    Assertions.assertEquals(200.000, ascending.get(0).getPrecursorMz(), 1E-9);
+    Assertions.assertEquals(200.100, ascending.get(1).getPrecursorMz(), 1E-9);
+    Assertions.assertEquals(300.000, ascending.get(2).getPrecursorMz(), 1E-9);
+  }
+
+  @Test
+  void testPrecursorRangeQuery() {
+    Assertions.assertEquals(2, index.getTrees(Range.closed(199d, 250d)).size());
+    Assertions.assertEquals(2, index.getTrees(Range.closed(200.05, 300d)).size());
+    Assertions.assertTrue(index.getTrees(Range.closed(400d, 500d)).isEmpty());
+  }
+
+  @Test
+  void testCachedPerFileAndTolerance() {
+    final RawDataFile raw = new RawDataFileImpl("cached", null, null);
+    raw.getScans().addAll(scans);
+
+    final MSnTreeIndex cached = MSnTreeIndex.of(raw, MZ_TOLERANCE);
+    Assertions.assertEquals(3, cached.size());
+    Assertions.assertSame(cached, MSnTreeIndex.of(raw, MZ_TOLERANCE));
+
+    final MSnTreeIndex otherTolerance = MSnTreeIndex.of(raw, new MZTolerance(0.5, 10));
+    Assertions.assertNotSame(cached, otherTolerance);
+    Assertions.assertEquals(2, otherTolerance.size());
+    Assertions.assertSame(cached, MSnTreeIndex.of(raw, MZ_TOLERANCE));
+  }
+
+  @Test
+  void testInvalidatedOnScanChange() {
+    final RawDataFile raw = new RawDataFileImpl("invalidated", null, null);
+    raw.getScans().addAll(scans);
+    final MSnTreeIndex cached = MSnTreeIndex.of(raw, MZ_TOLERANCE);
+
+    raw.getScans().add(scan(2, 400d));
+    final MSnTreeIndex rebuilt = MSnTreeIndex.of(raw, MZ_TOLERANCE);
+    Assertions.assertNotSame(cached, rebuilt);
+    Assertions.assertEquals(4, rebuilt.size());
+    Assertions.assertSame(rebuilt, MSnTreeIndex.of(raw, MZ_TOLERANCE));
+
+    MSnTreeIndex.invalidate(raw);
+    Assertions.assertNotSame(rebuilt, MSnTreeIndex.of(raw, MZ_TOLERANCE));
+  }
+
+  @Test
+  void testNotCachedIfScansChangeDuringBuild() {
+    final RawDataFile raw = new RawDataFileImpl("changed during build", null, null);
+    raw.getScans().addAll(scans);
+    // adds a scan to the file while the first index is built
+    final AtomicBoolean added = new AtomicBoolean(false);
+    final Scan changing = Mockito.mock(Scan.class);
+    Mockito.when(changing.getMSLevel()).thenAnswer(invocation -> {
+      if (added.compareAndSet(false, true)) {
+        raw.getScans().add(scan(2, 400d));
+      }
+      return 1;
+    });
+    raw.getScans().add(changing);
+
+    final MSnTreeIndex stale = MSnTreeIndex.of(raw, MZ_TOLERANCE);
+    Assertions.assertTrue(added.get());
+    Assertions.assertEquals(3, stale.size());
+
+    final MSnTreeIndex current = MSnTreeIndex.of(raw, MZ_TOLERANCE);
+    Assertions.assertNotSame(stale, current);
+    Assertions.assertEquals(4, current.size());
+    Assertions.assertSame(current, MSnTreeIndex.of(raw, MZ_TOLERANCE));
+  }
+}
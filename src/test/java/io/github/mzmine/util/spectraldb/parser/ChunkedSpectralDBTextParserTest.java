@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.parser;
+
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import io.github.mzmine.util.spectraldb.parser.ChunkedSpectralDBTextParser.Chunk;
+import io.github.mzmine.util.spectraldb.parser.ChunkedSpectralDBTextParser.RecordSeparator;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Parses generated msp, mgf and jdx libraries in many small chunks and checks that all entries are
+ * handed to the processor in the order of the file.
+ */
+class ChunkedSpectralDBTextParserTest {
+
+  private static final int ENTRIES = 50;
+  private static final int BUFFER_ENTRIES = 7;
+
+  @TempDir
+  Path dir;
+
+  private static double precursor(int entry) {
+    return 100.25 + entry;
+  }
+
+  private static double mz(int entry, int i) {
+    return 50.5 + entry + i * 10;
+  }
+
+  private static int peaks(int entry) {
+    return 2 + entry % 5;
+  }
+
+  private Path writeMsp() throws IOException {
+    final StringBuilder msp = new StringBuilder();
+    for (int e = 0; e < ENTRIES; e++) {
+      msp.append("Name: compound ").append(e).append("\n");
+      msp.append("PrecursorMZ: ").append(precursor(e)).append("\n");
+      msp.append("Num Peaks: ").append(peaks(e)).append("\n");
+      for (int i = 0; i < peaks(e); i++) {
+        msp.append(mz(e, i)).append(i % 2 == 0 ? " " : "\t").append(i + 1).append("\n");
+      }
+      // windows line breaks are fine
+      msp.append(e % 3 == 0 ? "\r\n" : "\n");
+    }
+    final Path path = dir.resolve("library.msp");
+    Files.writeString(path, msp.toString());
+    return path;
+  }
+
+  private Path writeMgf() throws IOException {
+    final StringBuilder mgf = new StringBuilder();
+    for (int e = 0; e < ENTRIES; e++) {
+      mgf.append("BEGIN IONS\n");
+      mgf.append("PEPMASS=").append(precursor(e)).append("\n");
+      mgf.append("SMILES=C").append("\n");
+      for (int i = 0; i < peaks(e); i++) {
+        mgf.append(mz(e, i)).append("\t").append(i + 1).append("\n");
+      }
+      mgf.append(e % 2 == 0 ? "END IONS\n" : "end ions\n\n");
+    }
+    final Path path = dir.resolve("library.mgf");
+    Files.writeString(path, mgf.toString());
+    return path;
+  }
+
+  private Path writeJdx() throws IOException {
+    final StringBuilder jdx = new StringBuilder();
+    for (int e = 0; e < ENTRIES; e++) {
+      jdx.append("##TITLE=compound ").append(e).append("\n");
+      jdx.append("##MW=").append(precursor(e)).append("\n");
+      // odd entries keep the formula of the previous entry
+      if (e % 2 == 0) {
+        jdx.append("##MOLFORM=C").append(e).append("H4\n");
+      }
+      jdx.append("##NPOINTS=").append(peaks(e)).append("\n");
+      jdx.append("##PEAK TABLE=(XY..XY)\n");
+      for (int i = 0; i < peaks(e); i++) {
+        jdx.append(mz(e, i)).append(",").append(i + 1).append(i % 2 == 0 ? " " : "\n");
+      }
+      jdx.append("\n##END=\n");
+    }
+    final Path path = dir.resolve("library.jdx");
+    Files.writeString(path, jdx.toString());
+    return path;
+  }
+
+  private static void assertEntries(List<SpectralLibraryEntry> entries) {
+    Assertions.assertEquals(ENTRIES, entries.size());
+    for (int e = 0; e < ENTRIES; e++) {
+      final SpectralLibraryEntry entry = entries.get(e);
+      Assertions.assertEquals(precursor(e),
+          (Double) entry.getField(DBEntryField.PRECURSOR_MZ).orElseThrow(), 1E-8);
+      Assertions.assertEquals(peaks(e), entry.getNumberOfDataPoints());
+      for (int i = 0; i < peaks(e); i++) {
+        Assertions.assertEquals(mz(e, i), entry.getMzValue(i), 1E-8);
+        Assertions.assertEquals(i + 1, entry.getIntensityValue(i), 1E-8);
+      }
+    }
+  }
+
+  private static void parse(Path path, ChunkedSpectralDBTextParser parser) throws IOException {
+    parser.setThreads(4);
+    // many chunks
+    parser.setChunkBytes(100);
+    Assertions.assertTrue(parser.parse(null, path.toFile(),
+        new SpectralLibrary(null, path.toFile())));
+    Assertions.assertEquals(1d, parser.getProgress(), 1E-8);
+    Assertions.assertEquals(ENTRIES, parser.getProcessedEntries());
+  }
+
+  @Test
+  void testMsp() throws IOException {
+    final Path path = writeMsp();
+    final List<SpectralLibraryEntry> entries = new ArrayList<>();
+    final List<Integer> batchSizes = new ArrayList<>();
+    final NistMspParser parser = new NistMspParser(BUFFER_ENTRIES, (list, alreadyProcessed) -> {
+      Assertions.assertEquals(entries.size(), alreadyProcessed);
+      entries.addAll(list);
+      batchSizes.add(list.size());
+    });
+    parse(path, parser);
+    assertEntries(entries);
+    // batches of the buffer size and the rest
+    for (int i = 0; i < batchSizes.size() - 1; i++) {
+      Assertions.assertEquals(BUFFER_ENTRIES, batchSizes.get(i));
+    }
+  }
+
+  @Test
+  void testMgf() throws IOException {
+    final Path path = writeMgf();
+    final List<SpectralLibraryEntry> entries = new ArrayList<>();
+    final GnpsMgfParser parser = new GnpsMgfParser(BUFFER_ENTRIES,
+        (list, alreadyProcessed) -> entries.addAll(list));
+    parse(path, parser);
+    assertEntries(entries);
+  }
+
+  @Test
+  void testJdx() throws IOException {
+    final Path path = writeJdx();
+    final List<SpectralLibraryEntry> entries = new ArrayList<>();
+    final JdxParser parser = new JdxParser(BUFFER_ENTRIES,
+        (list, alreadyProcessed) -> entries.addAll(list));
+    parser.setThreads(4);
+    parser.setChunkBytes(100);
+    Assertions.assertTrue(parser.parse(null, path.toFile(),
+        new SpectralLibrary(null, path.toFile())));
+    Assertions.assertEquals(ENTRIES, parser.getProcessedEntries());
+
+    Assertions.assertEquals(ENTRIES, entries.size());
+    for (int e = 0; e < ENTRIES; e++) {
+      final SpectralLibraryEntry entry = entries.get(e);
+      Assertions.assertEquals("compound " + e, entry.getField(DBEntryField.NAME).orElseThrow());
+      Assertions.assertEquals(precursor(e),
+          (Double) entry.getField(DBEntryField.EXACT_MASS).orElseThrow(), 1E-8);
+      Assertions.assertEquals("C" + (e - e % 2) + "H4",
+          entry.getField(DBEntryField.FORMULA).orElseThrow());
+      Assertions.assertEquals(peaks(e), entry.getNumberOfDataPoints());
+      for (int i = 0; i < peaks(e); i++) {
+        Assertions.assertEquals(mz(e, i), entry.getMzValue(i), 1E-8);
+        Assertions.assertEquals(i + 1, entry.getIntensityValue(i), 1E-8);
+      }
+    }
+  }
+
+  @Test
+  void testChunksEndAtRecords() throws IOException {
+    final Path path = writeMgf();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final List<Chunk> chunks = ChunkedSpectralDBTextParser.split(channel,
+          RecordSeparator.END_IONS, 100);
+      Assertions.assertTrue(chunks.size() > 1);
+      final String content = Files.readString(path);
+      long start = 0;
+      for (Chunk chunk : chunks) {
+        Assertions.assertEquals(start, chunk.start());
+        // every chunk starts with a record or an empty line
+        final String text = content.substring((int) chunk.start(), (int) chunk.end());
+        Assertions.assertTrue(text.startsWith("BEGIN IONS") || text.startsWith("\n"), text);
+        start = chunk.end();
+      }
+      Assertions.assertEquals(content.length(), start);
+    }
+  }
+}